@@ -0,0 +1,115 @@
+package com.nickrobison.trestle.common.locking;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the contention behavior of the {@link TrestleUpgradableReadWriteLock} and the {@link TrestleStampedReadWriteLock},
+ * guarding a small map, in the same way the cache lock guards the indexes.
+ * JMH can't parameterize the thread count, so run {@link #main(String[])} to sweep from 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class ReadWriteLockBenchmark {
+
+    private static final int KEYS = 1024;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Param({"monitor", "stamped"})
+    private String lockType;
+
+    //    Percentage of operations which write
+    @Param({"0", "1", "10"})
+    private int writePercent;
+
+    private TrestleReadWriteLock lock;
+    private Map<Integer, Integer> values;
+
+    @Setup
+    public void setup() {
+        switch (lockType) {
+            case "monitor":
+                lock = new TrestleUpgradableReadWriteLock();
+                break;
+            case "stamped":
+                lock = new TrestleStampedReadWriteLock();
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported lock type %s", lockType));
+        }
+        values = new HashMap<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            values.put(i, i);
+        }
+    }
+
+    @Benchmark
+    public Integer lockedRead() throws InterruptedException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int key = random.nextInt(KEYS);
+        if (random.nextInt(100) < writePercent) {
+            return write(key);
+        }
+        lock.lockRead();
+        try {
+            return values.get(key);
+        } finally {
+            lock.unlockRead();
+        }
+    }
+
+    @Benchmark
+    public Integer optimisticRead() throws InterruptedException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int key = random.nextInt(KEYS);
+        if (random.nextInt(100) < writePercent) {
+            return write(key);
+        }
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            final Integer value = values.get(key);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        lock.lockRead();
+        try {
+            return values.get(key);
+        } finally {
+            lock.unlockRead();
+        }
+    }
+
+    private Integer write(int key) throws InterruptedException {
+        lock.lockWrite();
+        try {
+            return values.put(key, key + 1);
+        } finally {
+            lock.unlockWrite();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREAD_COUNTS) {
+            final Options opt = new OptionsBuilder()
+                    .include(ReadWriteLockBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .result(String.format("lock-benchmark-%d-threads.json", threads))
+                    .build();
+            new Runner(opt).run();
+        }
+    }
+}
@@ -70,12 +70,8 @@ public class IRIUtils {
      */
     public static String extractPrefix(IRI iri) {
         final Matcher matcher = prefixRegex.matcher(iri.toString());
-        if (matcher.find() && matcher.groupCount() > 0) {
-            final String group = matcher.group(0);
-            if (group == null) {
-                return "";
-            }
-            return group;
+        if (matcher.find()) {
+            return matcher.group();
         }
         return "";
     }
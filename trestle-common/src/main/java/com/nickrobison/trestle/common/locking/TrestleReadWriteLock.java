@@ -0,0 +1,56 @@
+package com.nickrobison.trestle.common.locking;
+
+/**
+ * Read/Write lock which allows a thread holding the Read lock to upgrade it to a Write lock.
+ * Both the Read and Write locks are reentrant, and a thread holding the Write lock can also take the Read lock.
+ */
+public interface TrestleReadWriteLock {
+
+    /**
+     * Take the Read lock
+     * If the calling thread already owns the lock, an internal counter is incremented and the thread continues
+     *
+     * @throws InterruptedException - throws if the lock times out, or the thread is interrupted
+     */
+    void lockRead() throws InterruptedException;
+
+    /**
+     * Give up the Read lock
+     * If the calling thread has claimed the lock multiple times, the lock is held until all holders have given up their Read locks
+     */
+    void unlockRead();
+
+    /**
+     * Take the Write lock
+     * If the calling thread is the only holder of the Read lock, the lock is upgraded to a Write lock
+     *
+     * @throws InterruptedException - throws if the lock times out, or the thread is interrupted
+     */
+    void lockWrite() throws InterruptedException;
+
+    /**
+     * Give up the Write lock
+     * If the calling thread upgraded its Read lock, it still holds the Read lock and must call {@link #unlockRead()}
+     */
+    void unlockWrite();
+
+    /**
+     * Get a stamp for an optimistic read, which must be checked with {@link #validate(long)} once the read is complete.
+     * Optimistic reads don't block writers, so the guarded state may change (or be inconsistent) during the read
+     *
+     * @return - stamp, or {@code 0} if optimistic reads aren't supported or the lock is currently held for writing
+     */
+    default long tryOptimisticRead() {
+        return 0L;
+    }
+
+    /**
+     * Determine whether or not there has been a write since the given stamp was issued
+     *
+     * @param stamp - stamp from {@link #tryOptimisticRead()}
+     * @return - {@code true} no writes have occurred, and the optimistic read is valid
+     */
+    default boolean validate(long stamp) {
+        return false;
+    }
+}
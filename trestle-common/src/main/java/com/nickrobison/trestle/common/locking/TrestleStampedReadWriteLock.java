@@ -0,0 +1,241 @@
+package com.nickrobison.trestle.common.locking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link TrestleReadWriteLock} built on a {@link StampedLock}, with the same semantics as {@link TrestleUpgradableReadWriteLock}.
+ * <p>
+ * Uncontended reads only touch the {@link StampedLock} state (and a thread-local hold count, for reentrancy), rather than a shared monitor.
+ * Optimistic reads are supported via {@link #tryOptimisticRead()}.
+ * <p>
+ * The {@link StampedLock} is not fair, and a Read lock is immediately available whenever no one is writing, so a steady stream of readers could starve a writer.
+ * Instead, like {@link TrestleUpgradableReadWriteLock}, writers are preferred: while any thread is waiting for the Write lock (or to upgrade), new readers wait for it to finish.
+ * Threads which already hold the lock can always re-enter it.
+ * <p>
+ * Upgrades are performed by converting the held Read stamp, which only succeeds once the calling thread is the sole reader.
+ * Until then the thread polls (while still holding its Read lock), so two threads trying to upgrade at the same time will time out, just like {@link TrestleUpgradableReadWriteLock}.
+ * <p>
+ * The time spent waiting for contended locks can be recorded (in nanoseconds) by the provided {@link LongConsumer}s,
+ * uncontended acquisitions are not recorded.
+ */
+public class TrestleStampedReadWriteLock implements TrestleReadWriteLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrestleStampedReadWriteLock.class);
+    private static final long WAIT_TIMEOUT = 50000;
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final LongConsumer NOOP_RECORDER = wait -> {
+        // Not used
+    };
+
+    private final StampedLock lock = new StampedLock();
+    private final ThreadLocal<HoldCount> holds = ThreadLocal.withInitial(HoldCount::new);
+    private final AtomicInteger writeRequests = new AtomicInteger();
+    private final LongConsumer readWaitRecorder;
+    private final LongConsumer writeWaitRecorder;
+
+    public TrestleStampedReadWriteLock() {
+        this(NOOP_RECORDER, NOOP_RECORDER);
+    }
+
+    /**
+     * Create a lock which records the wait times for contended lock acquisitions
+     *
+     * @param readWaitRecorder  - {@link LongConsumer} which receives the nanoseconds spent waiting for the Read lock
+     * @param writeWaitRecorder - {@link LongConsumer} which receives the nanoseconds spent waiting for the Write lock (including upgrades)
+     */
+    public TrestleStampedReadWriteLock(LongConsumer readWaitRecorder, LongConsumer writeWaitRecorder) {
+        this.readWaitRecorder = readWaitRecorder;
+        this.writeWaitRecorder = writeWaitRecorder;
+    }
+
+    @Override
+    public void lockRead() throws InterruptedException {
+        final HoldCount hold = this.holds.get();
+//        If we already hold either lock, just bump the count
+        if (hold.reads > 0 || hold.writes > 0) {
+            hold.reads++;
+            return;
+        }
+//        Don't barge past any waiting writers
+        long stamp = this.writeRequests.get() == 0 ? this.lock.tryReadLock() : 0L;
+        if (stamp == 0L) {
+            stamp = acquireRead();
+        }
+        hold.stamp = stamp;
+        hold.reads = 1;
+    }
+
+    @Override
+    public void unlockRead() {
+        final HoldCount hold = this.holds.get();
+        if (hold.reads == 0) {
+            throw new IllegalMonitorStateException(String.format("Calling thread %s does not hold a read lock on this ReadWriteLock", Thread.currentThread().getName()));
+        }
+        hold.reads--;
+//        If we still hold the write lock, that'll release everything
+        if (hold.reads == 0 && hold.writes == 0) {
+            this.lock.unlockRead(hold.stamp);
+            hold.stamp = 0L;
+        }
+    }
+
+    @Override
+    public void lockWrite() throws InterruptedException {
+        final HoldCount hold = this.holds.get();
+        if (hold.writes > 0) {
+            hold.writes++;
+            return;
+        }
+        final long stamp;
+        if (hold.reads > 0) {
+            stamp = upgrade(hold.stamp);
+        } else {
+            stamp = acquireWrite();
+        }
+        hold.stamp = stamp;
+        hold.writes = 1;
+    }
+
+    @Override
+    public void unlockWrite() {
+        final HoldCount hold = this.holds.get();
+        if (hold.writes == 0) {
+            throw new IllegalMonitorStateException(String.format("Calling thread %s does not hold a write lock on this ReadWriteLock", Thread.currentThread().getName()));
+        }
+        hold.writes--;
+        if (hold.writes > 0) {
+            return;
+        }
+//        If we took the read lock (either before upgrading, or while writing), we need to keep holding it
+        if (hold.reads > 0) {
+            hold.stamp = this.lock.tryConvertToReadLock(hold.stamp);
+        } else {
+            this.lock.unlockWrite(hold.stamp);
+            hold.stamp = 0L;
+        }
+    }
+
+    @Override
+    public long tryOptimisticRead() {
+        return this.lock.tryOptimisticRead();
+    }
+
+    @Override
+    public boolean validate(long stamp) {
+        return stamp != 0L && this.lock.validate(stamp);
+    }
+
+    /**
+     * Whether or not any thread currently holds the Read lock
+     *
+     * @return - {@code true} Read lock is held
+     */
+    public boolean isReadLocked() {
+        return this.lock.isReadLocked();
+    }
+
+    /**
+     * Whether or not any thread currently holds the Write lock
+     *
+     * @return - {@code true} Write lock is held
+     */
+    public boolean isWriteLocked() {
+        return this.lock.isWriteLocked();
+    }
+
+    /**
+     * Whether or not any thread is currently waiting for the Write lock (or to upgrade to it)
+     *
+     * @return - {@code true} a writer is waiting
+     */
+    public boolean hasWaitingWriters() {
+        return this.writeRequests.get() > 0;
+    }
+
+    private long acquireRead() throws InterruptedException {
+        logger.trace("{} waiting {} ms for Read lock", Thread.currentThread().getName(), WAIT_TIMEOUT);
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(WAIT_TIMEOUT);
+        try {
+//            Let the waiting writers go first
+            while (this.writeRequests.get() > 0) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted while waiting for read lock");
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new InterruptedException("Unable to get read lock, timed-out");
+                }
+                LockSupport.parkNanos(BACKOFF_NANOS);
+            }
+            final long stamp = this.lock.tryReadLock(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+            if (stamp == 0L) {
+                throw new InterruptedException("Unable to get read lock, timed-out");
+            }
+            return stamp;
+        } finally {
+            this.readWaitRecorder.accept(System.nanoTime() - start);
+        }
+    }
+
+    private long acquireWrite() throws InterruptedException {
+        long stamp = this.lock.tryWriteLock();
+        if (stamp == 0L) {
+            logger.trace("{} waiting {} ms for Write lock", Thread.currentThread().getName(), WAIT_TIMEOUT);
+            final long start = System.nanoTime();
+            this.writeRequests.incrementAndGet();
+            try {
+                stamp = this.lock.tryWriteLock(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            } finally {
+                this.writeRequests.decrementAndGet();
+                this.writeWaitRecorder.accept(System.nanoTime() - start);
+            }
+            if (stamp == 0L) {
+                throw new InterruptedException("Unable to get write lock, timed-out");
+            }
+        }
+        return stamp;
+    }
+
+    private long upgrade(long readStamp) throws InterruptedException {
+        long stamp = this.lock.tryConvertToWriteLock(readStamp);
+        if (stamp != 0L) {
+            return stamp;
+        }
+//        Other threads are still reading, wait for them to finish
+        logger.trace("{} waiting {} ms to upgrade to Write lock", Thread.currentThread().getName(), WAIT_TIMEOUT);
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(WAIT_TIMEOUT);
+        this.writeRequests.incrementAndGet();
+        try {
+            while ((stamp = this.lock.tryConvertToWriteLock(readStamp)) == 0L) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted while upgrading to write lock");
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new InterruptedException("Unable to upgrade to write lock, timed-out");
+                }
+                LockSupport.parkNanos(BACKOFF_NANOS);
+            }
+        } finally {
+            this.writeRequests.decrementAndGet();
+            this.writeWaitRecorder.accept(System.nanoTime() - start);
+        }
+        return stamp;
+    }
+
+    /**
+     * Per-thread lock state, only accessed by the owning thread
+     */
+    private static class HoldCount {
+        private int reads = 0;
+        private int writes = 0;
+        private long stamp = 0L;
+    }
+}
@@ -13,7 +13,7 @@ import java.util.Map;
  */
 // Since this is kind of complicated, I don't really want to simplify anything
 @SuppressWarnings("SimplifiableIfStatement")
-public class TrestleUpgradableReadWriteLock {
+public class TrestleUpgradableReadWriteLock implements TrestleReadWriteLock {
 
     private static final Logger logger = LoggerFactory.getLogger(TrestleUpgradableReadWriteLock.class);
     private static final long WAIT_TIMEOUT = 50000;
@@ -28,6 +28,7 @@ public class TrestleUpgradableReadWriteLock {
      *
      * @throws InterruptedException - throws if the lock timesout
      */
+    @Override
     @EnsuresLockHeld("this")
     public synchronized void lockRead() throws InterruptedException {
         final Thread callingThread = Thread.currentThread();
@@ -47,6 +48,7 @@ public class TrestleUpgradableReadWriteLock {
      * Give up the Read lock
      * If the calling thread has claimed the lock multiple times, the lock is held until all holders have given up their Read locks
      */
+    @Override
     public synchronized void unlockRead() {
         final Thread callingThread = Thread.currentThread();
         if (!isReader(callingThread)) {
@@ -70,6 +72,7 @@ public class TrestleUpgradableReadWriteLock {
      *
      * @throws InterruptedException - Throws an exception if the thread is interrupted while trying to take the lock
      */
+    @Override
     @EnsuresLockHeld("this")
     public synchronized void lockWrite() throws InterruptedException {
         writeRequests++;
@@ -96,6 +99,7 @@ public class TrestleUpgradableReadWriteLock {
      * If the calling thread has multiple write locks, the lock is relinquished only after all the locks are released
      * If the calling thread has upgraded its read lock to a write lock, when it finally releases the write lock, it will still hold a read lock and must call {@link #unlockRead()}
      */
+    @Override
     public synchronized void unlockWrite() {
         final Thread callingThread = Thread.currentThread();
         if (!isWriter(callingThread)) {
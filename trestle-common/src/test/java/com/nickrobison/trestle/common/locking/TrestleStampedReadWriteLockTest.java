@@ -0,0 +1,148 @@
+package com.nickrobison.trestle.common.locking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class TrestleStampedReadWriteLockTest {
+
+    private AtomicLong writeWaits;
+    private TrestleStampedReadWriteLock lock;
+
+    @BeforeEach
+    public void setup() {
+        writeWaits = new AtomicLong();
+        lock = new TrestleStampedReadWriteLock(wait -> {
+        }, wait -> writeWaits.incrementAndGet());
+    }
+
+    @Test
+    public void testReentrancy() throws InterruptedException {
+        lock.lockRead();
+        lock.lockRead();
+        lock.unlockRead();
+        assertTrue(lock.isReadLocked(), "Should still hold read lock");
+        lock.unlockRead();
+        assertFalse(lock.isReadLocked(), "Should release read lock");
+
+        lock.lockWrite();
+        lock.lockWrite();
+        lock.lockRead();
+        lock.unlockRead();
+        lock.unlockWrite();
+        assertTrue(lock.isWriteLocked(), "Should still hold write lock");
+        lock.unlockWrite();
+        assertAll(() -> assertFalse(lock.isWriteLocked(), "Should release write lock"),
+                () -> assertFalse(lock.isReadLocked(), "Should not hold read lock"));
+    }
+
+    @Test
+    public void testUpgrade() throws InterruptedException {
+        lock.lockRead();
+        lock.lockWrite();
+        assertAll(() -> assertTrue(lock.isWriteLocked(), "Should upgrade to write lock"),
+                () -> assertEquals(0L, lock.tryOptimisticRead(), "Optimistic reads should fail while writing"));
+        lock.unlockWrite();
+//        Releasing the write lock should downgrade back to the read lock
+        assertAll(() -> assertFalse(lock.isWriteLocked(), "Should release write lock"),
+                () -> assertTrue(lock.isReadLocked(), "Should still hold read lock"),
+                () -> assertThrows(IllegalMonitorStateException.class, () -> lock.unlockWrite(), "Should not hold write lock"));
+        lock.unlockRead();
+        assertFalse(lock.isReadLocked(), "Should release read lock");
+    }
+
+    @Test
+    public void testUpgradeWaitsForReaders() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch hasRead = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final Future<?> reader = executor.submit(() -> {
+                lock.lockRead();
+                hasRead.countDown();
+                release.await();
+                lock.unlockRead();
+                return null;
+            });
+            hasRead.await();
+            lock.lockRead();
+            final ScheduledExecutorService releaser = Executors.newSingleThreadScheduledExecutor();
+            releaser.schedule(release::countDown, 50, TimeUnit.MILLISECONDS);
+            lock.lockWrite();
+            releaser.shutdown();
+            reader.get();
+            assertEquals(1L, writeWaits.get(), "Should record upgrade wait");
+            lock.unlockWrite();
+            lock.unlockRead();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWritersPreferred() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final CountDownLatch hasRead = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Queue<String> order = new ConcurrentLinkedQueue<>();
+        try {
+            final Future<?> reader = executor.submit(() -> {
+                lock.lockRead();
+                hasRead.countDown();
+                release.await();
+                lock.unlockRead();
+                return null;
+            });
+            hasRead.await();
+            final Future<?> writer = executor.submit(() -> {
+                lock.lockWrite();
+                order.add("writer");
+                lock.unlockWrite();
+                return null;
+            });
+            while (!lock.hasWaitingWriters()) {
+                Thread.sleep(1);
+            }
+//            A new reader could take the lock right away, but should wait for the writer instead
+            final Future<?> lateReader = executor.submit(() -> {
+                lock.lockRead();
+                order.add("reader");
+                lock.unlockRead();
+                return null;
+            });
+            assertThrows(TimeoutException.class, () -> lateReader.get(50, TimeUnit.MILLISECONDS), "Reader should wait behind writer");
+            release.countDown();
+            reader.get();
+            writer.get();
+            lateReader.get();
+            assertAll(() -> assertEquals(List.of("writer", "reader"), new ArrayList<>(order), "Writer should go first"),
+                    () -> assertFalse(lock.hasWaitingWriters(), "Should not have any waiting writers"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOptimisticRead() throws InterruptedException {
+        final long stamp = lock.tryOptimisticRead();
+        assertTrue(lock.validate(stamp), "Should be valid without writers");
+        lock.lockWrite();
+        lock.unlockWrite();
+        assertAll(() -> assertFalse(lock.validate(stamp), "Should be invalidated by writer"),
+                () -> assertFalse(lock.validate(0L), "Zero stamp should never be valid"));
+    }
+
+    @Test
+    public void testUnlockWithoutHolding() {
+        assertAll(() -> assertThrows(IllegalMonitorStateException.class, () -> lock.unlockRead()),
+                () -> assertThrows(IllegalMonitorStateException.class, () -> lock.unlockWrite()));
+    }
+}
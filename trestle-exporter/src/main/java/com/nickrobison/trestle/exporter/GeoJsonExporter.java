@@ -1,22 +1,27 @@
 package com.nickrobison.trestle.exporter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.nickrobison.trestle.common.CommonSpatialUtils;
 import com.nickrobison.trestle.common.exceptions.TrestleInvalidDataException;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -50,15 +55,6 @@ public class GeoJsonExporter implements ITrestleExporter {
 
     @Override
     public File writePropertiesToByteBuffer(List<TSIndividual> individuals, @Nullable String fileName) throws IOException {
-//        Create a map to hold our WKTReaders
-//        This way we can cache readers, but also support datasets with multiple projections, if those actually exist
-        final GeoJsonWriter geoWriter = new GeoJsonWriter();
-
-//        Create the collection node
-        final ObjectNode collectionNode = this.mapper.createObjectNode();
-        final ArrayNode featuresNode = this.mapper.createArrayNode();
-        collectionNode.put(GeoJsonConstants.NAME_TYPE, GeoJsonConstants.NAME_COLLECTION);
-
         final String exportName;
         if (fileName != null) {
             exportName = String.format("%s_%s", this.prefix, fileName);
@@ -66,42 +62,61 @@ public class GeoJsonExporter implements ITrestleExporter {
             exportName = String.format("%s_Export_%s.json", this.prefix, LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         }
 
-        for (final TSIndividual individual : individuals) {
-            final ObjectNode featureNode = this.mapper.createObjectNode();
-            featureNode.put(GeoJsonConstants.NAME_TYPE, GeoJsonConstants.NAME_FEATURE);
-            final String individualGeom = individual.getGeom();
-            final String wkt = CommonSpatialUtils.getWKTFromLiteral(individualGeom);
-            try {
-
-                final Geometry geometry = this.readerMap
-                        .computeIfAbsent(this.srid, Utils::createProjectedReader)
-                        .read(wkt);
-                final String coordinateString = geoWriter.write(geometry);
-                final JsonNode coordinateNode = mapper.readTree(coordinateString);
-                featureNode.set("geometry", coordinateNode);
-                //                    Add all the properties
-                final ObjectNode propertiesNode = this.mapper.createObjectNode();
-                for (final Map.Entry<String, Object> entry : individual.getProperties().entrySet()) {
-                    final ObjectWriter objectWriter = this.mapper.writerFor(entry.getValue().getClass());
-                    final String propertyValue = objectWriter.writeValueAsString(entry.getValue());
-                    propertiesNode.set(entry.getKey(), this.mapper.readTree(propertyValue));
-                }
-//                        Add the properties
-                featureNode.set(GeoJsonConstants.NAME_PROPERTIES, propertiesNode);
-                featuresNode.add(featureNode);
-            } catch (ParseException | IOException e) {
-                throw new TrestleInvalidDataException("Cannot read wkt", individualGeom);
-            }
-        }
-
-//        Add them and return the value
-        collectionNode.set("features", featuresNode);
-
-        final ObjectWriter writer = mapper.writer(new DefaultPrettyPrinter());
-
         final File file = new File(exportName);
-        writer.writeValue(file, collectionNode);
+        try (OutputStream fos = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            this.writeIndividuals(Flowable.fromIterable(individuals), fos).blockingAwait();
+        }
         return file;
     }
 
+    @Override
+    public Completable writeIndividuals(Flowable<TSIndividual> individuals, OutputStream outputStream) {
+        return Completable.defer(() -> {
+            final GeoJsonWriter geoWriter = new GeoJsonWriter();
+//            Write the collection header, and then each feature as it arrives
+            final JsonGenerator generator = this.mapper.getFactory().createGenerator(outputStream);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+            generator.writeStartObject();
+            generator.writeStringField(GeoJsonConstants.NAME_TYPE, GeoJsonConstants.NAME_COLLECTION);
+            generator.writeArrayFieldStart("features");
+
+            return individuals
+                    .doOnNext(individual -> generator.writeTree(this.buildFeature(individual, geoWriter)))
+                    .ignoreElements()
+                    .andThen(Completable.fromAction(() -> {
+                        generator.writeEndArray();
+                        generator.writeEndObject();
+                        generator.flush();
+                    }));
+        });
+    }
+
+    private ObjectNode buildFeature(TSIndividual individual, GeoJsonWriter geoWriter) {
+        final ObjectNode featureNode = this.mapper.createObjectNode();
+        featureNode.put(GeoJsonConstants.NAME_TYPE, GeoJsonConstants.NAME_FEATURE);
+        final String individualGeom = individual.getGeom();
+        final String wkt = CommonSpatialUtils.getWKTFromLiteral(individualGeom);
+        try {
+//            Cache readers, but also support datasets with multiple projections, if those actually exist
+            final Geometry geometry = this.readerMap
+                    .computeIfAbsent(this.srid, Utils::createProjectedReader)
+                    .read(wkt);
+            final String coordinateString = geoWriter.write(geometry);
+            final JsonNode coordinateNode = mapper.readTree(coordinateString);
+            featureNode.set("geometry", coordinateNode);
+            //                    Add all the properties
+            final ObjectNode propertiesNode = this.mapper.createObjectNode();
+            for (final Map.Entry<String, Object> entry : individual.getProperties().entrySet()) {
+                final ObjectWriter objectWriter = this.mapper.writerFor(entry.getValue().getClass());
+                final String propertyValue = objectWriter.writeValueAsString(entry.getValue());
+                propertiesNode.set(entry.getKey(), this.mapper.readTree(propertyValue));
+            }
+//                        Add the properties
+            featureNode.set(GeoJsonConstants.NAME_PROPERTIES, propertiesNode);
+            return featureNode;
+        } catch (ParseException | IOException e) {
+            throw new TrestleInvalidDataException("Cannot read wkt", individualGeom);
+        }
+    }
 }
@@ -1,7 +1,11 @@
 package com.nickrobison.trestle.exporter;
 
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -33,4 +37,15 @@ public interface ITrestleExporter {
      * @throws IOException - Throws exception
      */
     File writePropertiesToByteBuffer(List<TSIndividual> individuals, String fileName) throws IOException;
+
+    /**
+     * Stream the given individuals to the output format.
+     * Each individual is written as it arrives, so the full set of individuals is never held in memory.
+     * The {@link OutputStream} is flushed, but not closed, when the export completes.
+     *
+     * @param individuals  - {@link Flowable} of {@link TSIndividual} to write
+     * @param outputStream - {@link OutputStream} to write data format into
+     * @return - {@link Completable} when all the individuals have been written
+     */
+    Completable writeIndividuals(Flowable<TSIndividual> individuals, OutputStream outputStream);
 }
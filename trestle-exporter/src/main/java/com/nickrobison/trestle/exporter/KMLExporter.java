@@ -5,13 +5,16 @@ import com.nickrobison.trestle.exporter.kml.*;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
-import org.apache.commons.io.IOUtils;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -20,14 +23,17 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 public class KMLExporter implements ITrestleExporter {
+    private static final String KMZ_DOCUMENT = "doc.kml";
     private final XmlMapper mapper;
     private final String prefix;
     private final XMLInputFactory xmlInputFactory;
+    private final XMLOutputFactory xmlOutputFactory;
     private final boolean compress;
 
     public KMLExporter(boolean compress) {
         this.prefix = "Trestle";
         xmlInputFactory = XMLInputFactory.newFactory();
+        xmlOutputFactory = XMLOutputFactory.newFactory();
         this.mapper = new XmlMapper(xmlInputFactory);
         this.compress = compress;
     }
@@ -39,9 +45,6 @@ public class KMLExporter implements ITrestleExporter {
 
     @Override
     public File writePropertiesToByteBuffer(List<TSIndividual> individuals, String fileName) throws IOException {
-        final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
-        final WKTReader wktReader = new WKTReader(geometryFactory);
-        final KMLWriter kmlWriter = new KMLWriter();
         String exportName;
         if (fileName != null) {
             exportName = String.format("%s_%s", this.prefix, fileName);
@@ -49,50 +52,66 @@ public class KMLExporter implements ITrestleExporter {
             exportName = String.format("%s_Export_%s.kml", this.prefix, LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         }
 
-        final File file = new File(exportName);
-        final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
-//        Try to write the values
-        try (OutputStream fos = Files.newOutputStream(file.toPath())) {
-            final XMLStreamWriter sw = xmlOutputFactory.createXMLStreamWriter(fos);
-            sw.writeStartDocument();
-            sw.writeStartElement("kml");
-            sw.writeNamespace("xmlns", "http://www.opengis.net/kml/2.2");
-
-//            Write each of the Individuals as placemarks
-            for (final TSIndividual individual : individuals) {
-                final Geometry geometry = wktReader.read(individual.getGeom());
-                final String kmlGeometry = kmlWriter.write(geometry);
-                final KMLGeometry geom = this.parseKMLGeom(kmlGeometry, geometry);
-//                Now, write the individual
-                sw.writeStartElement("Placemark");
-                mapper.writeValue(sw, geom);
-                sw.writeEndElement();
-            }
-
-//            Be done
-            sw.writeEndElement();
-            sw.writeEndDocument();
+//        If compress is enabled, the kml is written directly into the kmz
+        final File file = new File(compress ? exportName.replace(".kml", ".kmz") : exportName);
+        try (OutputStream fos = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            this.writeIndividuals(Flowable.fromIterable(individuals), fos).blockingAwait();
+        }
+        return file;
+    }
 
-            //        If compress is enabled, zip up the kml
+    @Override
+    public Completable writeIndividuals(Flowable<TSIndividual> individuals, OutputStream outputStream) {
+        return Completable.defer(() -> {
+            final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+            final WKTReader wktReader = new WKTReader(geometryFactory);
+            final KMLWriter kmlWriter = new KMLWriter();
+            final @Nullable ZipOutputStream zos;
+            final OutputStream target;
             if (compress) {
-                final String kmzFileLocation = exportName.replace(".kml", ".kmz");
-                final File kmzFile = new File(kmzFileLocation);
-                try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(kmzFile.toPath()))) {
-                    final ZipEntry zipEntry = new ZipEntry(exportName);
-                    zos.putNextEntry(zipEntry);
-                    try (InputStream fis = Files.newInputStream(file.toPath())) {
-                        IOUtils.copy(fis, zos);
-                        zos.closeEntry();
-                    }
-                    return kmzFile;
-                }
+                zos = new ZipOutputStream(outputStream);
+                zos.putNextEntry(new ZipEntry(KMZ_DOCUMENT));
+                target = zos;
+            } else {
+                zos = null;
+                target = outputStream;
             }
-            return file;
 
+            final XMLStreamWriter sw = this.xmlOutputFactory.createXMLStreamWriter(target, StandardCharsets.UTF_8.name());
+            sw.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            sw.writeStartElement("kml");
+            sw.writeNamespace("xmlns", "http://www.opengis.net/kml/2.2");
 
-        } catch (XMLStreamException | ParseException e) {
-            throw new IllegalStateException("Cannot parse KML", e);
-        }
+//            Write each of the Individuals as placemarks
+            return individuals
+                    .doOnNext(individual -> {
+                        final Geometry geometry = wktReader.read(individual.getGeom());
+                        final String kmlGeometry = kmlWriter.write(geometry);
+                        final KMLGeometry geom = this.parseKMLGeom(kmlGeometry, geometry);
+//                        Now, write the individual
+                        sw.writeStartElement("Placemark");
+                        mapper.writeValue(sw, geom);
+                        sw.writeEndElement();
+                    })
+                    .ignoreElements()
+                    .andThen(Completable.fromAction(() -> {
+//                        Be done
+                        sw.writeEndElement();
+                        sw.writeEndDocument();
+                        sw.flush();
+                        if (zos != null) {
+                            zos.closeEntry();
+                            zos.finish();
+                        }
+                        outputStream.flush();
+                    }))
+                    .onErrorResumeNext(error -> {
+                        if (error instanceof XMLStreamException || error instanceof ParseException) {
+                            return Completable.error(new IllegalStateException("Cannot parse KML", error));
+                        }
+                        return Completable.error(error);
+                    });
+        });
     }
 
 
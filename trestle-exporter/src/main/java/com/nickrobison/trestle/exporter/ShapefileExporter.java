@@ -6,13 +6,13 @@ import org.locationtech.jts.geom.PrecisionModel;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.referencing.CRS;
@@ -24,11 +24,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.MalformedURLException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -38,8 +40,8 @@ import java.util.zip.ZipOutputStream;
 public class ShapefileExporter<T extends Geometry> implements ITrestleExporter {
 
     private static final Logger logger = LoggerFactory.getLogger(ShapefileExporter.class);
+    private static final String[] SHAPEFILE_EXTENSIONS = {"shp", "dbf", "fix", "prj", "shx"};
     private final SimpleFeatureBuilder simpleFeatureBuilder;
-    private final DefaultFeatureCollection featureCollection;
     private final Class<T> type;
     private final SimpleFeatureType simpleFeatureType;
     private final File directory;
@@ -84,7 +86,6 @@ public class ShapefileExporter<T extends Geometry> implements ITrestleExporter {
         simpleFeatureType = typeBuilder.buildFeatureType();
         simpleFeatureType.getGeometryDescriptor();
         simpleFeatureBuilder = new SimpleFeatureBuilder(simpleFeatureType);
-        featureCollection = new DefaultFeatureCollection();
         this.reader = new WKTReader(new GeometryFactory(new PrecisionModel(), srid));
     }
 
@@ -94,113 +95,169 @@ public class ShapefileExporter<T extends Geometry> implements ITrestleExporter {
     }
 
     @Override
-    @SuppressWarnings({"argument.type.incompatible"})
     public File writePropertiesToByteBuffer(List<TSIndividual> individuals, @Nullable String fileName) throws IOException {
-        individuals.forEach(individual -> {
-
-//            Build the geometry
-            try {
-                final String individualGeom = individual.getGeom();
-
-                final T geometry = type.cast(this.reader.read(individualGeom));
-                simpleFeatureBuilder.add(geometry);
-            } catch (ParseException e) {
-                logger.error("Cannot parse wkt {}", e);
-            }
-
-//            Now the properties
-            individual.getProperties().forEach((key, value) -> simpleFeatureBuilder.add(value));
-
-            final SimpleFeature simpleFeature = simpleFeatureBuilder.buildFeature(null);
-            featureCollection.add(simpleFeature);
-        });
-
-//        Now, write it out
         final String exportName;
         if (fileName != null) {
             exportName = String.format("%s_%s", this.prefix, fileName);
         } else {
             exportName = String.format("%s_Export_%s", this.prefix, LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         }
-        final File shpFile = new File(directory, String.format("%s.shp", exportName));
+        this.writeShapefile(Flowable.fromIterable(individuals), this.directory, exportName).blockingAwait();
 
+//        Now, zip it
+        final File zipFile = new File(directory, String.format("%s.zip", exportName));
+        try (OutputStream fos = Files.newOutputStream(zipFile.toPath())) {
+            addToZipArchive(fos, this.directory, exportName, File::toString);
+        }
+        return zipFile;
+    }
+
+    /**
+     * Stream the individuals into a Shapefile.
+     * Shapefiles can't be written directly to a stream, so the features are written to a temporary directory,
+     * which is then zipped into the {@link OutputStream} and removed.
+     *
+     * @param individuals  - {@link Flowable} of {@link TSIndividual} to write
+     * @param outputStream - {@link OutputStream} to write zipped Shapefile into
+     * @return - {@link Completable} when all the individuals have been written
+     */
+    @Override
+    public Completable writeIndividuals(Flowable<TSIndividual> individuals, OutputStream outputStream) {
+        return Completable.defer(() -> {
+            final Path tempDirectory = Files.createTempDirectory(this.prefix);
+            final String exportName = String.format("%s_Export", this.prefix);
+            return this.writeShapefile(individuals, tempDirectory.toFile(), exportName)
+                    .andThen(Completable.fromAction(() -> {
+                        addToZipArchive(outputStream, tempDirectory.toFile(), exportName, File::getName);
+                        outputStream.flush();
+                    }))
+                    .doFinally(() -> deleteDirectory(tempDirectory));
+        });
+    }
+
+    /**
+     * Write each individual into the Shapefile as it arrives, via a {@link FeatureWriter}, so only a single feature is held in memory at a time.
+     * The writer and its transaction are released however the write finishes, including when the subscriber cancels part way through.
+     */
+    private Completable writeShapefile(Flowable<TSIndividual> individuals, File directory, String exportName) {
+        return Completable.using(() -> this.openShapefile(directory, exportName),
+                shapefile -> individuals
+                        .doOnNext(individual -> this.writeFeature(shapefile.writer, individual))
+                        .ignoreElements()
+                        .doOnComplete(shapefile::commit)
+                        .doOnError(error -> logger.error("Error writing Shapefile properties", error)),
+                ShapefileWriter::close);
+    }
+
+    private ShapefileWriter openShapefile(File directory, String exportName) throws IOException {
+        final File shpFile = new File(directory, String.format("%s.shp", exportName));
         final ShapefileDataStoreFactory shapefileDataStoreFactory = new ShapefileDataStoreFactory();
         final Map<String, Serializable> params = new HashMap<>();
-        try {
-            params.put("url", shpFile.toURI().toURL());
-        } catch (MalformedURLException e) {
-            logger.error("{} is not a valid URL", shpFile.toURI());
-        }
+        params.put("url", shpFile.toURI().toURL());
         params.put("create spatial index", Boolean.TRUE);
         final ShapefileDataStore dataStore = (ShapefileDataStore) shapefileDataStoreFactory.createDataStore(params);
-
-        dataStore.createSchema(simpleFeatureType);
-//            Write it out
         final Transaction transaction = new DefaultTransaction("create");
         try {
-            final String typeName = dataStore.getTypeNames()[0];
-            final SimpleFeatureSource featureSource = dataStore.getFeatureSource(typeName);
-            if (featureSource instanceof SimpleFeatureStore) {
-                SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
-
-                featureStore.setTransaction(transaction);
-                featureStore.addFeatures(featureCollection);
-                transaction.commit();
-            }
-        } catch (Exception e) {
-            logger.error("Error writing Shapefile properties", e);
-            transaction.rollback();
-        } finally {
+            dataStore.createSchema(simpleFeatureType);
+            return new ShapefileWriter(dataStore, transaction, dataStore.getFeatureWriterAppend(transaction));
+        } catch (IOException | RuntimeException e) {
             transaction.close();
+            dataStore.dispose();
+            throw e;
         }
+    }
 
-//        Now, zip it
-        final File zipFile = new File(directory, String.format("%s.zip", exportName));
-        final OutputStream fos = Files.newOutputStream(zipFile.toPath());
-        final ZipOutputStream zos = new ZipOutputStream(fos);
+    @SuppressWarnings({"argument.type.incompatible"})
+    private void writeFeature(FeatureWriter<SimpleFeatureType, SimpleFeature> writer, TSIndividual individual) throws IOException {
+//            Build the geometry
+        final T geometry;
         try {
-            addToZipArchive(zos,
-                    String.format("%s.shp", new File(this.directory, exportName).toString()),
-                    String.format("%s.dbf", new File(this.directory, exportName).toString()),
-                    String.format("%s.fix", new File(this.directory, exportName).toString()),
-                    String.format("%s.prj", new File(this.directory, exportName).toString()),
-                    String.format("%s.shx", new File(this.directory, exportName).toString()));
-            zos.close();
-            fos.close();
-        } catch (IOException e) {
-            logger.error("Error creating zip file", e);
-        } finally {
-            zos.close();
-            fos.close();
+            geometry = type.cast(this.reader.read(individual.getGeom()));
+        } catch (ParseException e) {
+            logger.error("Cannot parse wkt, skipping individual", e);
+            return;
         }
+        simpleFeatureBuilder.add(geometry);
+//            Now the properties
+        individual.getProperties().forEach((key, value) -> simpleFeatureBuilder.add(value));
+        final SimpleFeature simpleFeature = simpleFeatureBuilder.buildFeature(null);
 
+        final SimpleFeature feature = writer.next();
+        feature.setAttributes(simpleFeature.getAttributes());
+        writer.write();
+    }
 
-        return zipFile;
+    private static void addToZipArchive(OutputStream outputStream, File directory, String exportName, Function<File, String> entryName) throws IOException {
+        final ZipOutputStream zos = new ZipOutputStream(outputStream);
+        for (final String extension : SHAPEFILE_EXTENSIONS) {
+            final File file = new File(directory, String.format("%s.%s", exportName, extension));
+            if (!file.exists()) {
+                logger.debug("Shapefile component {} does not exist, skipping", file);
+                continue;
+            }
+            zos.putNextEntry(new ZipEntry(entryName.apply(file)));
+            Files.copy(file.toPath(), zos);
+            zos.closeEntry();
+        }
+//        Finish, but don't close, the output stream is owned by the caller
+        zos.finish();
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            logger.error("Unable to remove temporary directory {}", directory, e);
+        }
     }
 
-    private static void addToZipArchive(ZipOutputStream zos, String... fileName) {
-        Arrays.stream(fileName).forEach(fn -> {
-            final File file = new File(fn);
-            final ZipEntry zipEntry = new ZipEntry(fn);
-            try(InputStream fileInputStream = Files.newInputStream(file.toPath())) {
-                try {
-                    zos.putNextEntry(zipEntry);
-                    final byte[] bytes = new byte[1024];
-                    int length;
-                    while ((length = fileInputStream.read(bytes)) >= 0) {
-                        zos.write(bytes, 0, length);
-                    }
-                    zos.closeEntry();
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    logger.error("Error closing zip entry", e);
+
+    /**
+     * Open {@link FeatureWriter} for a single Shapefile, which is rolled back when closed, unless it has been committed
+     */
+    private static class ShapefileWriter {
+        private final ShapefileDataStore dataStore;
+        private final Transaction transaction;
+        private final FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+        private boolean committed = false;
+
+        private ShapefileWriter(ShapefileDataStore dataStore, Transaction transaction, FeatureWriter<SimpleFeatureType, SimpleFeature> writer) {
+            this.dataStore = dataStore;
+            this.transaction = transaction;
+            this.writer = writer;
+        }
+
+        private void commit() throws IOException {
+            this.writer.close();
+            this.transaction.commit();
+            this.committed = true;
+        }
+
+        private void close() {
+            try {
+                if (!this.committed) {
+                    logger.debug("Rolling back incomplete Shapefile");
+                    closeQuietly(this.writer);
+                    this.transaction.rollback();
                 }
+                this.transaction.close();
             } catch (IOException e) {
-                logger.error("Cannot find file", e);
+                logger.error("Unable to close Shapefile transaction", e);
+            } finally {
+                this.dataStore.dispose();
             }
-        });
-    }
+        }
 
+        private static void closeQuietly(FeatureWriter<SimpleFeatureType, SimpleFeature> writer) {
+            try {
+                writer.close();
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Feature writer already closed", e);
+            }
+        }
+    }
 
     public static class ShapefileExporterBuilder<T extends Geometry> {
 
@@ -1,8 +1,12 @@
 package com.nickrobison.trestle.exporter;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.rxjava3.core.Flowable;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
@@ -12,6 +16,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 public class TestGeoJSONWriter {
 
     @Test
@@ -33,4 +40,20 @@ public class TestGeoJSONWriter {
         final File file = FileUtils.getFile("Trestle_test-out.kml");
         FileUtils.deleteQuietly(file);
     }
+
+    @Test
+    public void testStreamingGeoJSON() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final Flowable<TSIndividual> individuals = Flowable.range(0, 5)
+                .map(idx -> {
+                    final TSIndividual individual = new TSIndividual(String.format("POINT(%d 40)", idx));
+                    individual.addProperty("idx", idx);
+                    return individual;
+                });
+        new GeoJsonExporter(4326).writeIndividuals(individuals, outputStream).blockingAwait();
+
+        final JsonNode collection = new ObjectMapper().readTree(outputStream.toByteArray());
+        assertAll(() -> assertEquals("FeatureCollection", collection.get("type").asText(), "Should be a feature collection"),
+                () -> assertEquals(5, collection.get("features").size(), "Should have all the features"));
+    }
 }
@@ -0,0 +1,180 @@
+package com.nickrobison.trestle.exporter;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.observers.TestObserver;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Point;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for streaming individuals through the KML, KMZ and Shapefile exporters
+ */
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class TestStreamingExport {
+
+    private static final int INDIVIDUALS = 5;
+
+    private ShapefileSchema schema;
+    private Path directory;
+    private String prefix;
+
+    @BeforeEach
+    void setup() throws IOException {
+        schema = new ShapefileSchema(Point.class);
+        schema.addProperty("idx", Integer.class);
+        directory = Files.createTempDirectory("streaming-export-test");
+//        Use a unique prefix, so we can find the exporter's temporary directories
+        prefix = String.format("StreamingTest-%s", UUID.randomUUID());
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void testStreamingKML() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new KMLExporter(false).writeIndividuals(createIndividuals(), outputStream).blockingAwait();
+
+        final Document document = parseXML(outputStream.toByteArray());
+        assertAll(() -> assertEquals("kml", document.getDocumentElement().getTagName(), "Should be a KML document"),
+                () -> assertEquals(INDIVIDUALS, document.getElementsByTagName("Placemark").getLength(), "Should have all the placemarks"));
+    }
+
+    @Test
+    void testStreamingKMZ() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new KMLExporter(true).writeIndividuals(createIndividuals(), outputStream).blockingAwait();
+
+        final List<String> entries = new ArrayList<>();
+        byte[] kml = new byte[0];
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                kml = zis.readAllBytes();
+            }
+        }
+        final Document document = parseXML(kml);
+        assertAll(() -> assertEquals(List.of("doc.kml"), entries, "Should only have the KML document"),
+                () -> assertEquals(INDIVIDUALS, document.getElementsByTagName("Placemark").getLength(), "Should have all the placemarks"));
+    }
+
+    @Test
+    void testStreamingShapefile() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        createExporter().writeIndividuals(createIndividuals(), outputStream).blockingAwait();
+
+        final List<String> entries = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                Files.copy(zis, directory.resolve(entry.getName()));
+            }
+        }
+        final ShapefileDataStore dataStore = new ShapefileDataStore(directory.resolve(String.format("%s_Export.shp", prefix)).toUri().toURL());
+        try {
+            final int features = dataStore.getFeatureSource().getFeatures().size();
+            assertAll(() -> assertTrue(entries.containsAll(List.of(prefix + "_Export.shp", prefix + "_Export.dbf", prefix + "_Export.shx", prefix + "_Export.prj")), "Should have the Shapefile components"),
+                    () -> assertEquals(INDIVIDUALS, features, "Should have all the features"),
+                    () -> assertTrue(exporterDirectories().isEmpty(), "Should remove the temporary directory"));
+        } finally {
+            dataStore.dispose();
+        }
+    }
+
+    @Test
+    void testShapefileCancellation() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+//        Emit a couple of individuals, then hang, as if the client had stopped reading
+        final Flowable<TSIndividual> individuals = createIndividuals()
+                .take(2)
+                .concatWith(Flowable.never())
+                .doOnCancel(() -> cancelled.set(true));
+
+        final TestObserver<Void> observer = createExporter().writeIndividuals(individuals, outputStream).test();
+        assertFalse(exporterDirectories().isEmpty(), "Should be writing into a temporary directory");
+        observer.dispose();
+
+        assertAll(() -> assertTrue(cancelled.get(), "Should cancel the individuals"),
+                () -> assertEquals(0, outputStream.size(), "Should not write a partial Shapefile"),
+                () -> assertTrue(exporterDirectories().isEmpty(), "Should remove the temporary directory"));
+    }
+
+    @Test
+    void testShapefileError() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final Flowable<TSIndividual> individuals = createIndividuals()
+                .take(2)
+                .concatWith(Flowable.error(new IllegalStateException("Failed reading individuals")));
+
+        createExporter().writeIndividuals(individuals, outputStream)
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertError(IllegalStateException.class);
+        assertAll(() -> assertEquals(0, outputStream.size(), "Should not write a partial Shapefile"),
+                () -> assertTrue(exporterDirectories().isEmpty(), "Should remove the temporary directory"));
+    }
+
+    private ShapefileExporter<Point> createExporter() {
+        return new ShapefileExporter.ShapefileExporterBuilder<>(schema.getGeomName(), Point.class, schema)
+                .setExportDirectory(directory.toFile())
+                .setExportPrefix(prefix)
+                .build();
+    }
+
+    private Flowable<TSIndividual> createIndividuals() {
+        return Flowable.range(0, INDIVIDUALS)
+                .map(idx -> {
+                    final TSIndividual individual = new TSIndividual(String.format("POINT(%d 40)", idx), schema);
+                    individual.addProperty("idx", idx);
+                    return individual;
+                });
+    }
+
+    private List<Path> exporterDirectories() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Document parseXML(byte[] xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.nickrobison.trestle.datasets.TigerCountyObject;
 import com.nickrobison.trestle.ontology.exceptions.MissingOntologyEntity;
 import com.nickrobison.trestle.reasoner.TrestleBuilder;
 import com.nickrobison.trestle.reasoner.TrestleReasoner;
+import com.nickrobison.trestle.reasoner.engines.relations.DatasetRelationJob;
 import com.nickrobison.trestle.reasoner.exceptions.TrestleClassException;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
@@ -20,8 +21,6 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Created by detwiler on 2/16/17.
@@ -259,23 +258,13 @@ public class TigerLoader {
                 .withoutMetrics()
                 .build();
 
-//        Make a set of unique IDs
-//        But only for the pacific
-        final Set<String> objectIDs = tigerObjs
-                .stream()
-                .filter(obj -> obj.getState().equals("Washington"))
-                .map(TigerCountyObject::getGeoid)
-                .collect(Collectors.toSet());
-
 //        Set the computation time
         final LocalDate validAt = LocalDate.of(2013, 8, 1);
 
-        for (String id : objectIDs) {
-            final Instant computeStart = Instant.now();
-            logger.info("Computing relationships for {}", id);
-            reasoner.calculateSpatialAndTemporalRelationships(TigerCountyObject.class, id, validAt);
-            logger.info("Writing relations for object {} took {} ms", id, Duration.between(computeStart, Instant.now()).toMillis());
-        }
+        final Instant computeStart = Instant.now();
+        final DatasetRelationJob<TigerCountyObject> job = reasoner.createDatasetRelationJob(TigerCountyObject.class, validAt);
+        job.run().blockingAwait();
+        logger.info("Computing {} relationships, for {} pairs, took {} ms", job.getWrittenRelations(), job.getCompletedPairs(), Duration.between(computeStart, Instant.now()).toMillis());
     }
 
     public static void main(String[] args)
@@ -0,0 +1,75 @@
+package com.nickrobison.trestle.iri;
+
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and parsing throughput of {@link IRIVersion#V1} and {@link IRIVersion#V2} {@link TrestleIRI}s.
+ * The {@code parse*} benchmarks only parse the {@link IRI}, while the {@code read*} benchmarks also access every field, which is where the lazy {@link TrestleIRIV2} view pays for its decoding.
+ * Run with {@code -prof gc} to report the memory allocated per IRI (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IRIEncodingBenchmark {
+
+    private static final String PREFIX = "http://nickrobison.com/dissertation/trestle.owl#";
+    private static final String OBJECT_ID = "GAUL-2010-4326-32817";
+    private static final String OBJECT_FACT = "ADM2_NAME";
+    private static final OffsetDateTime OBJECT_TEMPORAL = OffsetDateTime.of(LocalDate.of(1990, 1, 1).atStartOfDay(), ZoneOffset.UTC);
+    private static final OffsetDateTime DATABASE_TEMPORAL = OffsetDateTime.of(LocalDate.of(2017, 6, 14).atStartOfDay(), ZoneOffset.UTC);
+
+    private IRI v1IRI;
+    private IRI v2IRI;
+
+    @Setup
+    public void setup() {
+        v1IRI = IRIBuilder.encodeIRI(IRIVersion.V1, PREFIX, OBJECT_ID, OBJECT_FACT, OBJECT_TEMPORAL, DATABASE_TEMPORAL).getIRI();
+        v2IRI = IRIBuilder.encodeIRI(IRIVersion.V2, PREFIX, OBJECT_ID, OBJECT_FACT, OBJECT_TEMPORAL, DATABASE_TEMPORAL).getIRI();
+    }
+
+    @Benchmark
+    public IRI encodeV1() {
+        return IRIBuilder.encodeIRI(IRIVersion.V1, PREFIX, OBJECT_ID, OBJECT_FACT, OBJECT_TEMPORAL, DATABASE_TEMPORAL).getIRI();
+    }
+
+    @Benchmark
+    public IRI encodeV2() {
+        return IRIBuilder.encodeIRI(IRIVersion.V2, PREFIX, OBJECT_ID, OBJECT_FACT, OBJECT_TEMPORAL, DATABASE_TEMPORAL).getIRI();
+    }
+
+    @Benchmark
+    public TrestleIRI parseV1() {
+        return IRIBuilder.parseIRIToTrestleIRI(v1IRI);
+    }
+
+    @Benchmark
+    public TrestleIRI parseV2() {
+        return IRIBuilder.parseIRIToTrestleIRI(v2IRI);
+    }
+
+    @Benchmark
+    public int readV1() {
+        return read(IRIBuilder.parseIRIToTrestleIRI(v1IRI));
+    }
+
+    @Benchmark
+    public int readV2() {
+        return read(IRIBuilder.parseIRIToTrestleIRI(v2IRI));
+    }
+
+    private static int read(TrestleIRI trestleIRI) {
+        return trestleIRI.getObjectID().length()
+                + trestleIRI.getObjectFact().map(String::length).orElse(0)
+                + trestleIRI.getObjectTemporal().map(OffsetDateTime::getYear).orElse(0)
+                + trestleIRI.getDbTemporal().map(OffsetDateTime::getYear).orElse(0);
+    }
+}
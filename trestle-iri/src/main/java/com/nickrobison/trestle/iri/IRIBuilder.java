@@ -7,8 +7,6 @@ import org.semanticweb.owlapi.model.IRI;
 
 import java.time.OffsetDateTime;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.nickrobison.trestle.common.IRIUtils.extractTrestleIndividualName;
 
@@ -17,12 +15,12 @@ import static com.nickrobison.trestle.common.IRIUtils.extractTrestleIndividualNa
  */
 public class IRIBuilder {
 
-    private static final Pattern versionPattern = Pattern.compile("^[^:]*");
-
     public static TrestleIRI encodeIRI(IRIVersion version, String prefix, String objectID, @Nullable String objectFact, @Nullable OffsetDateTime objectTemporal, @Nullable OffsetDateTime databaseTemporal) {
         switch (version) {
             case V1:
                 return V1IRIBuilder.encodeIRI(prefix, extractTrestleIndividualName(objectID), extractTrestleIndividualName(objectFact), objectTemporal, databaseTemporal);
+            case V2:
+                return V2IRIBuilder.encodeIRI(prefix, extractTrestleIndividualName(objectID), extractTrestleIndividualName(objectFact), objectTemporal, databaseTemporal);
             default:
                 throw new IRIVersionException(version);
         }
@@ -37,11 +35,14 @@ public class IRIBuilder {
      * @return - {@link TrestleIRI}
      */
     public static TrestleIRI parseIRIToTrestleIRI(IRI encodedIRI) {
-        final IRIVersion iriVersion = getIRIVersion(extractTrestleIndividualName(encodedIRI));
-        getObjectFact(encodedIRI);
+        final String iriString = encodedIRI.getIRIString();
+//        Split on the last / or #, the same as V2IRIBuilder, rather than extracting the individual name with a regex
+        final IRIVersion iriVersion = getIRIVersion(iriString, Math.max(iriString.lastIndexOf('/'), iriString.lastIndexOf('#')) + 1);
         switch (iriVersion) {
             case V1:
                 return V1IRIBuilder.extractFromIRI(encodedIRI);
+            case V2:
+                return V2IRIBuilder.extractFromIRI(encodedIRI);
             default:
                 throw new IRIVersionException(iriVersion);
         }
@@ -63,6 +64,8 @@ public class IRIBuilder {
         switch (version) {
             case V1:
                 return V1IRIBuilder.getObjectID(individualString);
+            case V2:
+                return V2IRIBuilder.getObjectID(individualString);
             default:
                 throw new IRIVersionException(version);
         }
@@ -85,6 +88,8 @@ public class IRIBuilder {
         switch (version) {
             case V1:
                 return V1IRIBuilder.getObjectFact(individualString);
+            case V2:
+                return V2IRIBuilder.getObjectFact(individualString);
             default:
                 throw new IRIVersionException(version);
         }
@@ -108,6 +113,8 @@ public class IRIBuilder {
         switch (version) {
             case V1:
                 return V1IRIBuilder.getObjectTemporal(individualString);
+            case V2:
+                return V2IRIBuilder.getObjectTemporal(individualString);
             default:
                 throw new IRIVersionException(version);
         }
@@ -131,22 +138,67 @@ public class IRIBuilder {
         switch (version) {
             case V1:
                 return V1IRIBuilder.getDatabaseTemporal(individualString);
+            case V2:
+                return V2IRIBuilder.getDatabaseTemporal(individualString);
             default:
                 throw new IRIVersionException(version);
         }
     }
 
-    private static IRIVersion getIRIVersion(IRI iri) {
-        return getIRIVersion(iri.getIRIString());
+    /**
+     * Migrate an encoded {@link IRI} to the given {@link IRIVersion}, preserving all of its encoded values.
+     * Used to rewrite existing (e.g. {@link IRIVersion#V1}) data to a newer encoding.
+     * Throws an {@link IRIParseException} if the {@link IRI} doesn't represent a correctly formed {@link TrestleIRI}
+     * Throws an {@link IRIVersionException} if either {@link IRIVersion} is unsupported by the current TrestleIRI implementation
+     *
+     * @param encodedIRI - {@link IRI} of encoded {@link TrestleIRI}
+     * @param version    - {@link IRIVersion} to migrate to
+     * @return - {@link TrestleIRI} encoded with the given {@link IRIVersion}
+     */
+    public static TrestleIRI migrateIRI(IRI encodedIRI, IRIVersion version) {
+        return migrateIRI(parseIRIToTrestleIRI(encodedIRI), version);
     }
 
-    private static IRIVersion getIRIVersion(String iriString) {
-        final Matcher matcher = versionPattern.matcher(iriString);
-        if (matcher.find()) {
-            return IRIVersion.matchVersion(matcher.group());
-        } else {
-            throw new IRIParseException(iriString);
+    /**
+     * Migrate a {@link TrestleIRI} to the given {@link IRIVersion}, preserving all of its encoded values.
+     * If the {@link TrestleIRI} is already at the given version, it is returned unchanged
+     * Throws an {@link IRIVersionException} if the {@link IRIVersion} is unsupported by the current TrestleIRI implementation
+     *
+     * @param trestleIRI - {@link TrestleIRI} to migrate
+     * @param version    - {@link IRIVersion} to migrate to
+     * @return - {@link TrestleIRI} encoded with the given {@link IRIVersion}
+     */
+    public static TrestleIRI migrateIRI(TrestleIRI trestleIRI, IRIVersion version) {
+        if (trestleIRI.getVersion() == version) {
+            return trestleIRI;
+        }
+        return encodeIRI(version,
+                trestleIRI.getPrefix(),
+                trestleIRI.getObjectID(),
+                trestleIRI.getObjectFact().orElse(null),
+                trestleIRI.getObjectTemporal().orElse(null),
+                trestleIRI.getDbTemporal().orElse(null));
+    }
+
+    private static IRIVersion getIRIVersion(String individualName) {
+        return getIRIVersion(individualName, 0);
+    }
+
+    /**
+     * Get the {@link IRIVersion} from the individual name starting at the given index, which is everything up to the first ':'
+     * Throws an {@link IRIParseException} if the version is unknown
+     *
+     * @param iriString - {@link String} containing the individual name
+     * @param nameStart - index of the start of the individual name
+     * @return - {@link IRIVersion} of the individual name
+     */
+    private static IRIVersion getIRIVersion(String iriString, int nameStart) {
+//        V2 is what we expect to see, so check for it in place, without creating any substrings
+        if (iriString.startsWith(V2IRIBuilder.VERSION_PREFIX, nameStart)) {
+            return IRIVersion.V2;
         }
+        final int versionEnd = iriString.indexOf(':', nameStart);
+        return IRIVersion.matchVersion(iriString.substring(nameStart, versionEnd < 0 ? iriString.length() : versionEnd));
     }
 
 
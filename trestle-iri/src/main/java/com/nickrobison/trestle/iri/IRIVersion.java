@@ -11,7 +11,7 @@ import java.util.stream.Stream;
 /**
  * Specifies the version of the IRIs being generated
  * V1: All date/times converted UNIX timestamps
- * V2: Date/times encoded using Temporenc (not implemented)
+ * V2: Date/times encoded as a compact binary (varint) block
  * V3: Variable length encoding (not implemented)
  */
 public enum IRIVersion {
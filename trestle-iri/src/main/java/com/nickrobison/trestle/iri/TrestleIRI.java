@@ -14,12 +14,10 @@ public abstract class TrestleIRI implements HasIRI, Serializable {
 
     protected final IRIVersion version;
     protected final String prefix;
-    protected final String objectID;
 
-    TrestleIRI(IRIVersion version, String prefix, String objectID) {
+    TrestleIRI(IRIVersion version, String prefix) {
      this.version = version;
      this.prefix = prefix;
-     this.objectID = objectID;
     }
 
     public IRIVersion getVersion() {
@@ -30,9 +28,7 @@ public abstract class TrestleIRI implements HasIRI, Serializable {
         return prefix;
     }
 
-    public String getObjectID() {
-        return objectID;
-    }
+    public abstract String getObjectID();
 
     public abstract Optional<String> getObjectFact();
 
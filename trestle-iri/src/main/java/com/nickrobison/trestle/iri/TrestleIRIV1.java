@@ -12,14 +12,17 @@ import java.util.Optional;
  */
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 public class TrestleIRIV1 extends TrestleIRI {
-    public static final long serialVersionUID = 42L;
+//    Bumped from 42, when the ObjectID moved from TrestleIRI into this class, as previously serialized instances are no longer compatible
+    public static final long serialVersionUID = 44L;
 
+    private final String objectID;
     private final Optional<String> objectFact;
     private final Optional<OffsetDateTime> objectTemporal;
     private final Optional<OffsetDateTime> dbTemporal;
 
     public TrestleIRIV1(IRIVersion version, String prefix, String objectID, @Nullable String objectFact, @Nullable OffsetDateTime objectTemporal, @Nullable OffsetDateTime databaseTemporal) {
-        super(version, prefix, objectID);
+        super(version, prefix);
+        this.objectID = objectID;
         if (objectFact == null || objectFact.equals("")) {
             this.objectFact = Optional.empty();
         } else {
@@ -30,6 +33,11 @@ public class TrestleIRIV1 extends TrestleIRI {
 
     }
 
+    @Override
+    public String getObjectID() {
+        return objectID;
+    }
+
     @Override
     public Optional<String> getObjectFact() {
         return objectFact;
@@ -0,0 +1,111 @@
+package com.nickrobison.trestle.iri;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static com.nickrobison.trestle.iri.V2IRIBuilder.DATABASE_TEMPORAL_FLAG;
+import static com.nickrobison.trestle.iri.V2IRIBuilder.OBJECT_TEMPORAL_FLAG;
+
+/**
+ * {@link IRIVersion#V2} {@link TrestleIRI}, which is a view over the individual name built (or parsed) by the {@link V2IRIBuilder}.
+ * Only the offsets of the ObjectID and Fact are recorded, along with the raw temporal values,
+ * the individual fields (and the {@link IRI} itself) are created the first time they're accessed.
+ */
+public class TrestleIRIV2 extends TrestleIRI {
+    public static final long serialVersionUID = 43L;
+
+    private final String name;
+    private final int idEnd;
+    private final int factEnd;
+    private final int flags;
+    private final long objectMillis;
+    private final long databaseMillis;
+    private transient @Nullable String objectID;
+    private transient @Nullable IRI iri;
+
+    TrestleIRIV2(String prefix, String name, int idEnd, int factEnd, int flags, long objectMillis, long databaseMillis) {
+        super(IRIVersion.V2, prefix);
+        this.name = name;
+        this.idEnd = idEnd;
+        this.factEnd = factEnd;
+        this.flags = flags;
+        this.objectMillis = objectMillis;
+        this.databaseMillis = databaseMillis;
+    }
+
+    @Override
+    public String getObjectID() {
+        String id = this.objectID;
+        if (id == null) {
+            id = V2IRIBuilder.unescape(this.name, V2IRIBuilder.VERSION_PREFIX.length(), this.idEnd);
+            this.objectID = id;
+        }
+        return id;
+    }
+
+    @Override
+    public Optional<String> getObjectFact() {
+        if (this.factEnd == this.idEnd) {
+            return Optional.empty();
+        }
+        return Optional.of(V2IRIBuilder.unescape(this.name, this.idEnd + 1, this.factEnd));
+    }
+
+    @Override
+    public Optional<OffsetDateTime> getObjectTemporal() {
+        if ((this.flags & OBJECT_TEMPORAL_FLAG) == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(toTemporal(this.objectMillis));
+    }
+
+    @Override
+    public Optional<OffsetDateTime> getDbTemporal() {
+        if ((this.flags & DATABASE_TEMPORAL_FLAG) == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(toTemporal(this.databaseMillis));
+    }
+
+    @Override
+    public IRI getIRI() {
+        IRI encoded = this.iri;
+        if (encoded == null) {
+            encoded = IRI.create(this.prefix, this.name);
+            this.iri = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Does the IRI have any properties (Fact or temporals) beyond the ObjectID?
+     *
+     * @return - {@code true} if there's a Fact or temporal
+     */
+    boolean hasProperties() {
+        return this.factEnd != this.idEnd || this.flags != 0;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final TrestleIRIV2 that = (TrestleIRIV2) o;
+        return this.prefix.equals(that.prefix) && this.name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.prefix.hashCode() + this.name.hashCode();
+    }
+
+    private static OffsetDateTime toTemporal(long epochMilli) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneOffset.UTC);
+    }
+}
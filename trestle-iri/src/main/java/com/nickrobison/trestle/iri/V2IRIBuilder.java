@@ -0,0 +1,272 @@
+package com.nickrobison.trestle.iri;
+
+import com.nickrobison.trestle.iri.exceptions.IRIParseException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Builder and parser for {@link IRIVersion#V2} IRIs.
+ * <p>
+ * V2 IRIs keep the ObjectID and Fact as text, but replace the V1 decimal timestamps with a single binary temporal block,
+ * appended as URL-safe Base64 (e.g. {@code V2:test-object@test_fact:Awv-rYLCGOB-tBHu}).
+ * The temporal block is made up of:
+ * <ol>
+ * <li>Flags byte, indicating which of the temporals are present</li>
+ * <li>Optional object temporal, as zig-zag varint encoded Unix timestamp (in ms)</li>
+ * <li>Optional database temporal, as zig-zag varint encoded offset (in ms) from the object temporal, or Unix timestamp if no object temporal is present</li>
+ * </ol>
+ * Temporals are stored at the same (millisecond) precision as {@link IRIVersion#V1}.
+ * The field delimiters ({@code :} and {@code @}), the IRI prefix delimiters ({@code /} and {@code #}) and {@code %} itself
+ * are percent-encoded in the ObjectID and Fact (e.g. {@code county:53} becomes {@code county%3A53}), so any ObjectID can be parsed back out of the IRI.
+ * Parsing only requires a single scan of the individual name, and decoding the (small) temporal block, no regexes or string splitting.
+ */
+final class V2IRIBuilder {
+
+    static final String VERSION_PREFIX = IRIVersion.V2.getName() + ":";
+    static final int OBJECT_TEMPORAL_FLAG = 0x01;
+    static final int DATABASE_TEMPORAL_FLAG = 0x02;
+    private static final int ALL_FLAGS = OBJECT_TEMPORAL_FLAG | DATABASE_TEMPORAL_FLAG;
+    //    Flags byte + two 64-bit varints
+    private static final int MAX_TEMPORAL_BYTES = 1 + 10 * 2;
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private V2IRIBuilder() {
+//        Not used
+    }
+
+    /**
+     * Encode IRI using {@link IRIVersion#V2} specification
+     *
+     * @param prefix           - IRI Prefix
+     * @param objectID         - ObjectID
+     * @param objectFact       - Optional Fact to identify
+     * @param objectTemporal   - Optional temporal to identify object state
+     * @param databaseTemporal - Optional temporal to identify object database state
+     * @return - {@link TrestleIRIV2}
+     */
+    static TrestleIRIV2 encodeIRI(String prefix, String objectID, @Nullable String objectFact, @Nullable OffsetDateTime objectTemporal, @Nullable OffsetDateTime databaseTemporal) {
+        final StringBuilder name = new StringBuilder(VERSION_PREFIX.length() + objectID.length() + 24);
+        name.append(VERSION_PREFIX);
+        appendEscaped(name, objectID);
+        final int idEnd = name.length();
+        int factEnd = idEnd;
+        if (objectFact != null && !objectFact.isEmpty()) {
+            name.append('@');
+            appendEscaped(name, objectFact);
+            factEnd = name.length();
+        }
+
+        final int flags = (objectTemporal != null ? OBJECT_TEMPORAL_FLAG : 0) | (databaseTemporal != null ? DATABASE_TEMPORAL_FLAG : 0);
+        long objectMillis = 0;
+        long databaseMillis = 0;
+        if (flags != 0) {
+            final byte[] temporals = new byte[MAX_TEMPORAL_BYTES];
+            temporals[0] = (byte) flags;
+            int position = 1;
+            if (objectTemporal != null) {
+                objectMillis = objectTemporal.toInstant().toEpochMilli();
+                position = writeVarLong(temporals, position, zigZag(objectMillis));
+            }
+            if (databaseTemporal != null) {
+                databaseMillis = databaseTemporal.toInstant().toEpochMilli();
+                position = writeVarLong(temporals, position, zigZag(databaseMillis - objectMillis));
+            }
+            name.append(':').append(encoder.encodeToString(Arrays.copyOf(temporals, position)));
+        }
+        return new TrestleIRIV2(prefix, name.toString(), idEnd, factEnd, flags, objectMillis, databaseMillis);
+    }
+
+    /**
+     * Parse a given {@link IRI} and return the {@link IRIVersion#V2} - {@link TrestleIRI}
+     *
+     * @param encodedIRI - {@link IRI} to parse
+     * @return - {@link TrestleIRIV2}
+     */
+    static TrestleIRIV2 extractFromIRI(IRI encodedIRI) {
+        final String iriString = encodedIRI.getIRIString();
+//        Split on the last / or #, the same as IRIUtils.extractPrefix
+        final int nameStart = Math.max(iriString.lastIndexOf('/'), iriString.lastIndexOf('#')) + 1;
+        final TrestleIRIV2 trestleIRI = parseName(iriString.substring(0, nameStart), iriString.substring(nameStart));
+//        If we don't have any properties, throw a parse exception
+        if (!trestleIRI.hasProperties()) {
+            throw new IRIParseException(encodedIRI);
+        }
+        return trestleIRI;
+    }
+
+    static String getObjectID(String iriString) {
+        return parseName("", iriString).getObjectID();
+    }
+
+    static Optional<String> getObjectFact(String iriString) {
+        return parseName("", iriString).getObjectFact();
+    }
+
+    static Optional<OffsetDateTime> getObjectTemporal(String iriString) {
+        return parseName("", iriString).getObjectTemporal();
+    }
+
+    static Optional<OffsetDateTime> getDatabaseTemporal(String iriString) {
+        return parseName("", iriString).getDbTemporal();
+    }
+
+    /**
+     * Parse the individual name of a V2 IRI.
+     * The ObjectID and Fact are not extracted until they're accessed, only the temporal block is decoded
+     *
+     * @param prefix - IRI prefix
+     * @param name   - individual name (e.g. V2:test-object@test_fact:Awv-rYLCGOB-tBHu)
+     * @return - {@link TrestleIRIV2}
+     * @throws IRIParseException if the name is malformed
+     */
+    private static TrestleIRIV2 parseName(String prefix, String name) {
+        if (!name.startsWith(VERSION_PREFIX)) {
+            throw new IRIParseException(name);
+        }
+        final int temporalStart = name.indexOf(':', VERSION_PREFIX.length());
+        final int factEnd = temporalStart == -1 ? name.length() : temporalStart;
+        final int factStart = name.indexOf('@', VERSION_PREFIX.length());
+        final int idEnd = factStart == -1 || factStart > factEnd ? factEnd : factStart;
+        if (idEnd == VERSION_PREFIX.length() || !isValidEscaping(name, VERSION_PREFIX.length(), factEnd)) {
+            throw new IRIParseException(name);
+        }
+        if (temporalStart == -1) {
+            return new TrestleIRIV2(prefix, name, idEnd, factEnd, 0, 0, 0);
+        }
+
+        final byte[] temporals;
+        try {
+            temporals = decoder.decode(name.substring(temporalStart + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IRIParseException(name);
+        }
+        if (temporals.length < 2 || (temporals[0] & ~ALL_FLAGS) != 0 || (temporals[0] & ALL_FLAGS) == 0) {
+            throw new IRIParseException(name);
+        }
+        final int flags = temporals[0];
+        try {
+            int position = 1;
+            long objectMillis = 0;
+            long databaseMillis = 0;
+            if ((flags & OBJECT_TEMPORAL_FLAG) != 0) {
+                objectMillis = unZigZag(readVarLong(temporals, position));
+                position = skipVarLong(temporals, position);
+            }
+            if ((flags & DATABASE_TEMPORAL_FLAG) != 0) {
+                databaseMillis = objectMillis + unZigZag(readVarLong(temporals, position));
+                position = skipVarLong(temporals, position);
+            }
+            if (position != temporals.length) {
+                throw new IRIParseException(name);
+            }
+            return new TrestleIRIV2(prefix, name, idEnd, factEnd, flags, objectMillis, databaseMillis);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IRIParseException(name);
+        }
+    }
+
+    /**
+     * Append the field to the builder, percent-encoding any reserved characters
+     *
+     * @param builder - {@link StringBuilder} to append to
+     * @param field   - ObjectID or Fact to append
+     */
+    private static void appendEscaped(StringBuilder builder, String field) {
+        for (int i = 0; i < field.length(); i++) {
+            final char c = field.charAt(i);
+            if (isReserved(c)) {
+                builder.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Decode the percent-encoded field between the given offsets of the individual name.
+     * The escaping is validated when the name is parsed, so this doesn't need to check it again
+     *
+     * @param name  - individual name
+     * @param start - start of the field (inclusive)
+     * @param end   - end of the field (exclusive)
+     * @return - decoded field
+     */
+    static String unescape(String name, int start, int end) {
+        int escape = name.indexOf('%', start);
+        if (escape == -1 || escape >= end) {
+            return name.substring(start, end);
+        }
+        final StringBuilder field = new StringBuilder(end - start);
+        int position = start;
+        while (escape != -1 && escape < end) {
+            field.append(name, position, escape)
+                    .append((char) (Character.digit(name.charAt(escape + 1), 16) << 4 | Character.digit(name.charAt(escape + 2), 16)));
+            position = escape + 3;
+            escape = name.indexOf('%', position);
+        }
+        return field.append(name, position, end).toString();
+    }
+
+    /**
+     * Ensure every {@code %} between the given offsets is followed by two hex digits
+     */
+    private static boolean isValidEscaping(String name, int start, int end) {
+        for (int escape = name.indexOf('%', start); escape != -1 && escape < end; escape = name.indexOf('%', escape + 3)) {
+            if (escape + 2 >= end || Character.digit(name.charAt(escape + 1), 16) == -1 || Character.digit(name.charAt(escape + 2), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isReserved(char c) {
+        return c == ':' || c == '@' || c == '/' || c == '#' || c == '%';
+    }
+
+    private static long readVarLong(byte[] bytes, int position) {
+        long value = 0;
+        int shift = 0;
+        int idx = position;
+        byte b;
+        do {
+            b = bytes[idx++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int skipVarLong(byte[] bytes, int position) {
+        int idx = position;
+        while ((bytes[idx] & 0x80) != 0) {
+            idx++;
+        }
+        return idx + 1;
+    }
+
+    private static int writeVarLong(byte[] bytes, int position, long value) {
+        int idx = position;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            bytes[idx++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        bytes[idx++] = (byte) remaining;
+        return idx;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
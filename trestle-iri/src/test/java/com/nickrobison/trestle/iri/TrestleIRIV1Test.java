@@ -8,6 +8,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.semanticweb.owlapi.model.IRI;
 
+import java.io.*;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.time.LocalDateTime;
@@ -80,8 +81,7 @@ public class TrestleIRIV1Test {
     @PrefixParams
     @DisplayName("Test Other Versions")
     public void testOtherVersions(String prefix) {
-        assertAll(() -> assertThrows(IRIVersionException.class, () -> IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, null, null, null)),
-                () -> assertThrows(IRIVersionException.class, () -> IRIBuilder.encodeIRI(IRIVersion.V3, prefix, OBJECT_ID, null, null, null)));
+        assertThrows(IRIVersionException.class, () -> IRIBuilder.encodeIRI(IRIVersion.V3, prefix, OBJECT_ID, null, null, null));
     }
 
     @PrefixParams
@@ -129,12 +129,41 @@ public class TrestleIRIV1Test {
         assertEquals(IRIBuilder.parseIRIToTrestleIRI(withoutDatabase), objectTIRI.withoutDatabase(), "Should property remove the database temporal");
     }
 
+    @PrefixParams
+    @DisplayName("Test Version Dispatch")
+    public void testVersionDispatch(String prefix) {
+        final IRI v3IRI = IRI.create(prefix, String.format("V3:%s@%s", OBJECT_ID, OBJECT_FACT));
+        assertAll(() -> assertEquals(IRIVersion.V1, IRIBuilder.parseIRIToTrestleIRI(IRIBuilder.encodeIRI(IRIVersion.V1, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, null).getIRI()).getVersion(), "Should parse as V1"),
+                () -> assertEquals(IRIVersion.V2, IRIBuilder.parseIRIToTrestleIRI(IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, null).getIRI()).getVersion(), "Should parse as V2"),
+                () -> assertThrows(IRIVersionException.class, () -> IRIBuilder.parseIRIToTrestleIRI(v3IRI)),
+                () -> assertThrows(IRIVersionException.class, () -> IRIBuilder.getObjectID(v3IRI)),
+                () -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create(prefix, ""))));
+    }
+
+    @PrefixParams
+    @DisplayName("Test Serialization")
+    public void testSerialization(String prefix) throws IOException, ClassNotFoundException {
+        final TrestleIRI v2IRI = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, TEST_DB_TEMPORAL);
+        assertAll(() -> assertEquals(v2IRI, roundTrip(v2IRI), "V2 should survive serialization"),
+                () -> assertEquals(OBJECT_ID, roundTrip(v2IRI).getObjectID(), "V2 should rebuild the ObjectID"),
+                () -> assertNotEquals(42L, ObjectStreamClass.lookup(TrestleIRIV1.class).getSerialVersionUID(), "V1 should not accept the old serialized form"));
+    }
+
     @Test
     @DisplayName("Test Empty IRI")
     public void testMalformedIRI() {
         assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create("http://something-something.com/V1")));
     }
 
+    private static TrestleIRI roundTrip(TrestleIRI trestleIRI) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(trestleIRI);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            return (TrestleIRI) ois.readObject();
+        }
+    }
 
     @Retention(RetentionPolicy.RUNTIME)
     @ParameterizedTest(name = "Prefix: {0}")
@@ -0,0 +1,113 @@
+package com.nickrobison.trestle.iri;
+
+import com.nickrobison.trestle.iri.exceptions.IRIParseException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static com.nickrobison.trestle.iri.TrestleIRIV1Test.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link IRIVersion#V2} encoding, with binary temporals
+ */
+@SuppressWarnings({"squid:S2187"})
+public class TrestleIRIV2Test {
+
+    @PrefixParams
+    @DisplayName("Test Round Trip")
+    public void testRoundTrip(String prefix) {
+        final TrestleIRI objectIRI = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, null, TEST_DATE, TEST_DB_TEMPORAL);
+        final TrestleIRI factIRI = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, TEST_DB_TEMPORAL);
+        assertAll(() -> assertTrue(objectIRI.getIRI().getIRIString().startsWith(prefix + "V2:"), "Should be encoded as V2"),
+                () -> assertEquals(IRIVersion.V2, objectIRI.getVersion(), "Should have V2 version"));
+
+        final TrestleIRI parsedObject = IRIBuilder.parseIRIToTrestleIRI(objectIRI.getIRI());
+        final TrestleIRI parsedFact = IRIBuilder.parseIRIToTrestleIRI(factIRI.getIRI());
+        assertAll(() -> assertEquals(objectIRI, parsedObject, "Parsed IRI should equal encoded IRI"),
+                () -> assertEquals(objectIRI.hashCode(), parsedObject.hashCode(), "Parsed IRI should have the same hash"),
+                () -> assertEquals(prefix, parsedObject.getPrefix(), "Should have the same prefix"),
+                () -> assertEquals(OBJECT_ID, parsedObject.getObjectID(), "Should have the same ObjectID"),
+                () -> assertFalse(parsedObject.getObjectFact().isPresent(), "Should not have a fact"),
+                () -> assertEquals(TEST_DATE, parsedObject.getObjectTemporal().get(), "Should have the same object temporal"),
+                () -> assertEquals(TEST_DB_TEMPORAL, parsedObject.getDbTemporal().get(), "Should have the same database temporal"),
+                () -> assertEquals(OBJECT_FACT, parsedFact.getObjectFact().get(), "Should have the same fact"),
+                () -> assertEquals(TEST_DB_TEMPORAL, parsedFact.getDbTemporal().get(), "Should have the same database temporal"),
+                () -> assertNotEquals(parsedObject, parsedFact, "Fact IRI should not equal object IRI"));
+
+//        Static accessors
+        assertAll(() -> assertEquals(OBJECT_ID, IRIBuilder.getObjectID(factIRI.getIRI()), "Should decode ObjectID"),
+                () -> assertEquals(OBJECT_FACT, IRIBuilder.getObjectFact(factIRI.getIRI()).orElse(""), "Should decode fact"),
+                () -> assertEquals(TEST_DATE, IRIBuilder.getObjectTemporal(factIRI.getIRI()).get(), "Should decode object temporal"),
+                () -> assertEquals(TEST_DB_TEMPORAL, IRIBuilder.getDatabaseTemporal(factIRI.getIRI()).get(), "Should decode database temporal"));
+    }
+
+    @PrefixParams
+    @DisplayName("Test Reserved Characters")
+    public void testReservedCharacters(String prefix) {
+        final String objectID = "county:53@2020/wa#king%3A";
+        final String objectFact = "name@en:us";
+        final TrestleIRI encoded = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, objectID, objectFact, TEST_DATE, TEST_DB_TEMPORAL);
+        final TrestleIRI parsed = IRIBuilder.parseIRIToTrestleIRI(encoded.getIRI());
+        assertAll(() -> assertEquals(prefix + "V2:county%3A53%402020%2Fwa%23king%253A@name%40en%3Aus", encoded.getIRI().getIRIString().substring(0, encoded.getIRI().getIRIString().lastIndexOf(':')), "Should escape reserved characters"),
+                () -> assertEquals(encoded, parsed, "Parsed IRI should equal encoded IRI"),
+                () -> assertEquals(prefix, parsed.getPrefix(), "Should have the same prefix"),
+                () -> assertEquals(objectID, parsed.getObjectID(), "Should have the same ObjectID"),
+                () -> assertEquals(objectFact, parsed.getObjectFact().get(), "Should have the same fact"),
+                () -> assertEquals(TEST_DATE, parsed.getObjectTemporal().get(), "Should have the same object temporal"),
+                () -> assertEquals(TEST_DB_TEMPORAL, parsed.getDbTemporal().get(), "Should have the same database temporal"),
+                () -> assertEquals(objectID, IRIBuilder.getObjectID(encoded.getIRI()), "Should decode ObjectID"),
+                () -> assertEquals(objectFact, IRIBuilder.getObjectFact(encoded.getIRI()).orElse(""), "Should decode fact"));
+
+//        Without a fact, or temporals
+        final TrestleIRI idOnly = IRIBuilder.parseIRIToTrestleIRI(IRIBuilder.encodeIRI(IRIVersion.V2, prefix, "@:", null, TEST_DATE, null).getIRI());
+        assertAll(() -> assertEquals("@:", idOnly.getObjectID(), "Should have the same ObjectID"),
+                () -> assertFalse(idOnly.getObjectFact().isPresent(), "Should not have a fact"));
+        final TrestleIRI noTemporals = IRIBuilder.parseIRIToTrestleIRI(IRIBuilder.encodeIRI(IRIVersion.V2, prefix, objectID, objectFact, null, null).getIRI());
+        assertAll(() -> assertEquals(objectID, noTemporals.getObjectID(), "Should have the same ObjectID"),
+                () -> assertEquals(objectFact, noTemporals.getObjectFact().get(), "Should have the same fact"),
+                () -> assertFalse(noTemporals.getObjectTemporal().isPresent(), "Should not have object temporal"));
+    }
+
+    @PrefixParams
+    @DisplayName("Test Partials")
+    public void testPartials(String prefix) {
+        final OffsetDateTime PDTTime = OffsetDateTime.of(LocalDateTime.of(1989, 3, 26, 8, 15, 15), ZoneOffset.ofHours(-8));
+        final TrestleIRI dbOnly = IRIBuilder.parseIRIToTrestleIRI(IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, null, null, PDTTime).getIRI());
+        assertAll(() -> assertFalse(dbOnly.getObjectTemporal().isPresent(), "Should not have object temporal"),
+                () -> assertEquals(PDTTime.atZoneSameInstant(ZoneOffset.UTC).toOffsetDateTime(), dbOnly.getDbTemporal().get(), "Should have database temporal at UTC"));
+
+        final TrestleIRI full = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, TEST_DB_TEMPORAL);
+        final TrestleIRI withoutDatabase = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, null);
+        assertEquals(withoutDatabase, full.withoutDatabase(), "Should remove the database temporal");
+    }
+
+    @PrefixParams
+    @DisplayName("Test V1 Migration")
+    public void testMigration(String prefix) {
+        final IRI v1IRI = IRI.create(prefix, String.format("V1:%s@%s:%s:%s", OBJECT_ID, OBJECT_FACT, TEST_DATE.toInstant().toEpochMilli(), TEST_DB_TEMPORAL.toInstant().toEpochMilli()));
+        final TrestleIRI migrated = IRIBuilder.migrateIRI(v1IRI, IRIVersion.V2);
+        assertAll(() -> assertEquals(IRIVersion.V2, migrated.getVersion(), "Should be migrated to V2"),
+                () -> assertEquals(IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, TEST_DB_TEMPORAL), migrated, "Should have the same values"),
+                () -> assertTrue(migrated.getIRI().length() < v1IRI.length(), "Should be shorter than the V1 IRI"),
+                () -> assertEquals(v1IRI, IRIBuilder.migrateIRI(migrated, IRIVersion.V1).getIRI(), "Should migrate back to the same V1 IRI"),
+                () -> assertSame(migrated, IRIBuilder.migrateIRI(migrated, IRIVersion.V2), "Should not re-encode the same version"));
+    }
+
+    @Test
+    @DisplayName("Test Malformed IRIs")
+    public void testMalformedIRI() {
+        final String prefix = "http://nickrobison.com/test.owl#";
+        final String encoded = IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, OBJECT_FACT, TEST_DATE, null).getIRI().getIRIString();
+        assertAll(() -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create(encoded.substring(0, encoded.length() - 2)))),
+                () -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create(prefix, "V2:not*base64"))),
+                () -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create(encoded + "AA"))),
+                () -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create(prefix, "V2:test%2@fact"))),
+                () -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRI.create(prefix, "V2:test%zzobject@fact"))),
+                () -> assertThrows(IRIParseException.class, () -> IRIBuilder.parseIRIToTrestleIRI(IRIBuilder.encodeIRI(IRIVersion.V2, prefix, OBJECT_ID, null, null, null).getIRI())));
+    }
+}
@@ -0,0 +1,62 @@
+package com.nickrobison.metrician.backends;
+
+import com.nickrobison.metrician.MetricianReporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sustained number of rows/s the {@link H2Backend} can write, for reports of the given size.
+ * Each invocation writes a single batch of values, half counters and half gauges, with a new timestamp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RDBMSIngestBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private H2Backend backend;
+    private long[] metricIDs;
+    private long timestamp;
+
+    @Setup
+    public void setup() {
+        backend = new H2Backend(new ArrayBlockingQueue<MetricianReporter.DataAccumulator>(1));
+        metricIDs = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            final Long metricID = backend.registerMetric("benchmark-metric-" + i);
+            if (metricID == null) {
+                throw new IllegalStateException("Unable to register benchmark metric");
+            }
+            metricIDs[i] = metricID;
+        }
+        timestamp = System.currentTimeMillis();
+    }
+
+    @TearDown
+    public void teardown() {
+        backend.shutdown(null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertReport() {
+        final long reportTimestamp = timestamp++;
+        final List<MetricianMetricValue> values = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 2 == 0) {
+                values.add(new MetricianMetricValue<>(MetricianMetricValue.ValueType.COUNTER, metricIDs[i], reportTimestamp, (long) i));
+            } else {
+                values.add(new MetricianMetricValue<>(MetricianMetricValue.ValueType.GAUGE, metricIDs[i], reportTimestamp, i * 0.5));
+            }
+        }
+        backend.insertValues(values);
+    }
+}
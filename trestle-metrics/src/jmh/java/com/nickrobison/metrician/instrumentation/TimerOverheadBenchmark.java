@@ -0,0 +1,132 @@
+package com.nickrobison.metrician.instrumentation;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.metrician.instrumentation.transformers.AbstractMetricianTransformer;
+import com.nickrobison.metrician.instrumentation.transformers.HdrTimerTransformer;
+import com.nickrobison.metrician.instrumentation.transformers.TimerTransformer;
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+
+/**
+ * Compares the per-call overhead of the advice woven around {@link Timed} methods.
+ * {@link #dropwizardAdvice()} calls a method woven by the {@link TimerTransformer} (a {@link Timer.Context} and exponentially decaying reservoir),
+ * {@link #hdrAdvice()} calls a method woven by the {@link HdrTimerTransformer} (recording directly into a {@link StripedHdrReservoir}),
+ * and {@link #baseline()} calls the same method without any advice.
+ * {@link #dropwizardTimer()} and {@link #hdrTimer()} use the {@link Timer}s directly, to separate the cost of the advice (method and timer lookup) from the cost of recording.
+ * <p>
+ * The build runs it with the GC profiler ({@code -prof gc}), compare the {@code gc.alloc.rate.norm} (B/op) of each benchmark, {@link #hdrAdvice()} and {@link #hdrTimer()} benchmarks should not allocate.
+ * Run with multiple threads, to show the contention on the shared reservoir.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TimerOverheadBenchmark {
+
+    private static final long WORK = 10;
+
+    private Timer dropwizardTimer;
+    private Timer hdrTimer;
+    private UntimedTarget untimedTarget;
+    private DropwizardTimedTarget dropwizardTarget;
+    private HdrTimedTarget hdrTarget;
+
+    @Setup
+    public void setup() {
+        dropwizardTimer = new Timer();
+        hdrTimer = new Timer(new StripedHdrReservoir(8, 2));
+
+//        Weave each target with its own transformer, the same way as the MetricianAgentBuilder
+        MetricianInventory.reset();
+        try {
+            ByteBuddyAgent.getInstrumentation();
+        } catch (IllegalStateException e) {
+            ByteBuddyAgent.install();
+        }
+        weave(DropwizardTimedTarget.class, new TimerTransformer());
+        weave(HdrTimedTarget.class, new HdrTimerTransformer());
+//        Register the HDR timer up front, as the timer implementation is otherwise selected by the config
+        MetricianInventory.registry.register(MetricRegistry.name(HdrTimedTarget.class, "hdrTimed"), new Timer(new StripedHdrReservoir(8, 2)));
+
+        untimedTarget = new UntimedTarget();
+        dropwizardTarget = new DropwizardTimedTarget();
+        hdrTarget = new HdrTimedTarget();
+//        Make the first call, so the timers are registered before measuring
+        dropwizardTarget.dropwizardTimed();
+        hdrTarget.hdrTimed();
+        if (MetricianInventory.registry.timer(MetricRegistry.name(DropwizardTimedTarget.class, "dropwizardTimed")).getCount() != 1
+                || MetricianInventory.registry.timer(MetricRegistry.name(HdrTimedTarget.class, "hdrTimed")).getCount() != 1) {
+            throw new IllegalStateException("Benchmark targets were not woven");
+        }
+    }
+
+    @Benchmark
+    public void baseline() {
+        untimedTarget.untimed();
+    }
+
+    @Benchmark
+    public void dropwizardAdvice() {
+        dropwizardTarget.dropwizardTimed();
+    }
+
+    @Benchmark
+    public void hdrAdvice() {
+        hdrTarget.hdrTimed();
+    }
+
+    @Benchmark
+    public void dropwizardTimer() {
+        final Timer.Context context = dropwizardTimer.time();
+        Blackhole.consumeCPU(WORK);
+        context.stop();
+    }
+
+    @Benchmark
+    public void hdrTimer() {
+        final long start = System.nanoTime();
+        Blackhole.consumeCPU(WORK);
+        hdrTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static void weave(Class<?> target, AbstractMetricianTransformer transformer) {
+        new AgentBuilder.Default()
+                .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+                .with(AgentBuilder.TypeStrategy.Default.REDEFINE)
+                .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
+                .type(named(target.getName()))
+                .transform(transformer.getTransformer())
+                .installOnByteBuddyAgent();
+    }
+
+    public static class UntimedTarget {
+        public void untimed() {
+            Blackhole.consumeCPU(WORK);
+        }
+    }
+
+    public static class DropwizardTimedTarget {
+        @Timed
+        public void dropwizardTimed() {
+            Blackhole.consumeCPU(WORK);
+        }
+    }
+
+    public static class HdrTimedTarget {
+        @Timed
+        public void hdrTimed() {
+            Blackhole.consumeCPU(WORK);
+        }
+    }
+}
@@ -134,4 +134,9 @@ public class MetricianImpl implements Metrician {
     private int getDataQueueLength() {
         return this.dataQueue.size();
     }
+
+    @Gauge(name = "data-queue-dropped")
+    private long getDroppedReports() {
+        return this.metricianReporter.getDroppedReports();
+    }
 }
@@ -10,6 +10,8 @@ import java.math.BigInteger;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Created by nrobison on 3/20/17.
@@ -27,6 +29,7 @@ public class MetricianReporter extends ScheduledReporter {
     private final Optional<String> prefix;
     private final MetricsDecomposer decomposer;
     private final Queue<DataAccumulator> dataQueue;
+    private final AtomicLong droppedReports = new AtomicLong();
 
     MetricianReporter(MetricRegistry registry,
                       BlockingQueue<DataAccumulator> dataQueue,
@@ -67,10 +70,20 @@ public class MetricianReporter extends ScheduledReporter {
             final boolean offer = this.dataQueue.offer(accumulator);
             if (!offer) {
                 logger.error("Unable to add data to queue");
+                this.droppedReports.incrementAndGet();
             }
         }
     }
 
+    /**
+     * Number of reports which could not be added to the data queue, because the backend was unable to keep up
+     *
+     * @return - dropped report count
+     */
+    public long getDroppedReports() {
+        return this.droppedReports.get();
+    }
+
     private static void processGauges(DataAccumulator accumulator, Map<String, Gauge> gauges) {
         gauges.forEach((key, value) -> accumulator.addGauge(key, value.getValue()));
     }
@@ -91,7 +104,7 @@ public class MetricianReporter extends ScheduledReporter {
         histograms.entrySet().forEach(entry -> {
             final MetricsDecomposer.PartsStreamer streamer = decomposer.streamParts(entry.getKey());
             streamer.countings().forEach(metricPart -> accumulator.addSubCounter(metricPart, entry));
-            streamer.samplings().forEach(metricPart -> accumulator.addSubGauge(metricPart, entry));
+            processSnapshot(accumulator, streamer, entry);
         });
     }
 
@@ -100,17 +113,31 @@ public class MetricianReporter extends ScheduledReporter {
             final MetricsDecomposer.PartsStreamer streamer = decomposer.streamParts(entry.getKey());
             streamer.countings().forEach(metricPart -> accumulator.addSubCounter(metricPart, entry));
             streamer.metered().forEach(metricPart -> accumulator.addSubGauge(metricPart, entry));
-            streamer.samplings().forEach(metricPart -> accumulator.addSubGauge(metricPart, entry));
+            processSnapshot(accumulator, streamer, entry);
         });
     }
 
+    /**
+     * Take a single {@link Snapshot} of the metric, and derive all the sampling parts from it.
+     * Some reservoirs (such as the {@link com.nickrobison.metrician.instrumentation.StripedHdrReservoir}) reset on each snapshot,
+     * so taking one per part would leave every part but the first empty.
+     */
+    private static void processSnapshot(DataAccumulator accumulator, MetricsDecomposer.PartsStreamer streamer, Map.Entry<String, ? extends Sampling> entry) {
+        final List<MetricPart<Snapshot, Object>> parts = streamer.samplings().collect(Collectors.toList());
+        if (parts.isEmpty()) {
+            return;
+        }
+        final Map.Entry<String, Snapshot> snapshot = new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getSnapshot());
+        parts.forEach(metricPart -> accumulator.addSubGauge(metricPart, snapshot));
+    }
+
     public static class DataAccumulator {
         private final Map<String, Double> gauges = new HashMap<>();
         private final Map<String, Long> counters = new HashMap<>();
         private final Optional<String> prefix;
         private final long timestamp;
 
-        private DataAccumulator(long timestamp, Optional<String> prefix) {
+        DataAccumulator(long timestamp, Optional<String> prefix) {
             this.prefix = prefix;
             this.timestamp = timestamp;
         }
@@ -127,13 +154,13 @@ public class MetricianReporter extends ScheduledReporter {
             return counters;
         }
 
-        private DataAccumulator addCounter(String name, long value) {
+        DataAccumulator addCounter(String name, long value) {
             final String finalName = this.prefix.map(p -> p + name).orElse(name);
             counters.put(finalName, value);
             return this;
         }
 
-        private DataAccumulator addGauge(String name, Object value) {
+        DataAccumulator addGauge(String name, Object value) {
             final String finalName = this.prefix.map(p -> p + name).orElse(name);
             if (value instanceof BigDecimal) {
                 gauges.put(finalName, ((BigDecimal) value).doubleValue());
@@ -2,7 +2,7 @@ package com.nickrobison.metrician;
 
 import com.codahale.metrics.Counting;
 import com.codahale.metrics.Metered;
-import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
 
 import java.util.*;
 import java.util.function.Function;
@@ -16,7 +16,7 @@ class MetricsDecomposer {
 
     private static final List<MetricPart<Counting, Long>> COUNTINGS;
     private static final List<MetricPart<Metered, Object>> METERED;
-    private static final List<MetricPart<Sampling, Object>> SAMPLING;
+    private static final List<MetricPart<Snapshot, Object>> SAMPLING;
 
     private final Map<String, Set<String>> namedMetricsComposition;
     private final Collection<RegexContainer<Set<String>>> regexComposition;
@@ -30,16 +30,16 @@ class MetricsDecomposer {
         METERED.add(part(Metered::getFifteenMinuteRate, "15minrt", MetricsListener.METRIC_TYPE_GAUGE));
         METERED.add(part(Metered::getMeanRate, "meanrt", MetricsListener.METRIC_TYPE_GAUGE));
         SAMPLING = new ArrayList<>(10);
-        SAMPLING.add(part(s -> s.getSnapshot().getMin(), "min", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().getMax(), "max", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().getMean(), "mean", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().getMedian(), "median", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().getStdDev(), "stddev", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().get75thPercentile(), "75perc", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().get95thPercentile(), "95perc", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().get98thPercentile(), "98perc", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().get99thPercentile(), "99perc", MetricsListener.METRIC_TYPE_GAUGE));
-        SAMPLING.add(part(s -> s.getSnapshot().get999thPercentile(), "999perc", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::getMin, "min", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::getMax, "max", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::getMean, "mean", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::getMedian, "median", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::getStdDev, "stddev", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::get75thPercentile, "75perc", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::get95thPercentile, "95perc", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::get98thPercentile, "98perc", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::get99thPercentile, "99perc", MetricsListener.METRIC_TYPE_GAUGE));
+        SAMPLING.add(part(Snapshot::get999thPercentile, "999perc", MetricsListener.METRIC_TYPE_GAUGE));
 
     }
 
@@ -106,7 +106,13 @@ class MetricsDecomposer {
                     .filter(metricPart -> metricPredicate.test(metricPart.getSuffix()));
         }
 
-        Stream<MetricPart<Sampling, Object>> samplings() {
+        /**
+         * Parts of a {@link com.codahale.metrics.Sampling} metric, which are all derived from a single {@link Snapshot} of the metric.
+         * Callers should only take one snapshot per report, as some reservoirs (such as the {@link com.nickrobison.metrician.instrumentation.StripedHdrReservoir}) reset on each snapshot
+         *
+         * @return - {@link Stream} of {@link MetricPart}s to read from the {@link Snapshot}
+         */
+        Stream<MetricPart<Snapshot, Object>> samplings() {
             return SAMPLING.stream()
                     .filter(metricPart -> metricPredicate.test(metricPart.getSuffix()));
         }
@@ -1,6 +1,8 @@
 package com.nickrobison.metrician.agent;
 
 import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import com.nickrobison.metrician.instrumentation.MetricianInventory;
+import com.nickrobison.metrician.instrumentation.TimerImplementation;
 import com.nickrobison.metrician.instrumentation.transformers.*;
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.matcher.ElementMatchers;
@@ -13,19 +15,27 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Simple builder class for {@link net.bytebuddy.agent.ByteBuddyAgent}
+ * The {@link com.codahale.metrics.annotation.Timed} transformer is selected by the {@code trestle.metrics.instrumentation.timers} config value
  */
 public class MetricianAgentBuilder {
     private static final Logger logger = LoggerFactory.getLogger(MetricianAgentBuilder.class);
 
     public static AgentBuilder.Identified.Extendable BuildAgent() {
         logger.info("Building Metrician Metrics Agent");
+        final AbstractMetricianTransformer timerTransformer;
+        if (MetricianInventory.timerImplementation == TimerImplementation.HDR) {
+            logger.info("Recording timers with HdrHistogram");
+            timerTransformer = new HdrTimerTransformer();
+        } else {
+            timerTransformer = new TimerTransformer();
+        }
         return new AgentBuilder.Default()
                 .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
                 .with(AgentBuilder.TypeStrategy.Default.REDEFINE)
                 .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
                 .type(ElementMatchers.inheritsAnnotation(Metriced.class))
                 .transform(new GaugeTransformer().getTransformer())
-                .transform(new TimerTransformer().getTransformer())
+                .transform(timerTransformer.getTransformer())
                 .transform(new MeterTransformer().getTransformer())
                 .transform(new CounterTransformer().getTransformer())
                 .transform(new ExceptionMeterTransformer().getTransformer());
@@ -0,0 +1,272 @@
+package com.nickrobison.metrician.backends;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.metrician.MetricianReporter;
+import com.nickrobison.metrician.exceptions.MetricianPersistenceException;
+import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Metrics backend which stores the values in memory-mapped, columnar segment files, rather than in a relational database.
+ * <p>
+ * Each metric is stored as a {@link ColumnarSeries}, with raw values rolled up into one minute and one hour tiers.
+ * Each tier has its own retention period, after which the values are dropped.
+ * Range queries are served directly from the segments, using the finest resolution tier which still covers the requested interval.
+ * Segments are only created once their tier receives a value, so a metric which is registered but never reported doesn't map any files.
+ * <p>
+ * As with the {@link H2Backend}, the stored values are not persisted, the segment directory is cleared on startup and on shutdown.
+ * The segments are only used to keep the values out of the heap, so the retention periods only apply for the lifetime of the process.
+ */
+@Metriced
+public class ColumnarBackend implements IMetricianBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarBackend.class);
+    private static final String SEGMENT_EXTENSION = ".col";
+
+    private final int threadWait;
+    private final Path directory;
+    private final boolean temporaryDirectory;
+    private final int segmentSize;
+    private final long[] retention;
+    private final Map<String, Long> metricMap = new ConcurrentHashMap<>();
+    private final Map<String, ColumnarSeries> series = new ConcurrentHashMap<>();
+    private final AtomicLong metricIDs = new AtomicLong();
+    private final BlockingQueue<MetricianReporter.DataAccumulator> dataQueue;
+    private final Thread eventThread;
+
+    @Inject
+    ColumnarBackend(BlockingQueue<MetricianReporter.DataAccumulator> dataQueue) {
+        this(dataQueue, ConfigFactory.load().getConfig("trestle.metrics.backend"));
+    }
+
+    @SuppressWarnings({"argument.type.incompatible"}) // The event thread is started once all the fields are initialized
+    ColumnarBackend(BlockingQueue<MetricianReporter.DataAccumulator> dataQueue, Config config) {
+        logger.info("Initializing columnar backend");
+        this.dataQueue = dataQueue;
+        this.threadWait = config.getInt("threadWait");
+        final Config columnarConfig = config.getConfig("columnar");
+        this.segmentSize = (int) columnarConfig.getBytes("segmentSize").longValue();
+        this.retention = new long[]{
+                columnarConfig.getDuration("retention.raw", TimeUnit.MILLISECONDS),
+                columnarConfig.getDuration("retention.minute", TimeUnit.MILLISECONDS),
+                columnarConfig.getDuration("retention.hour", TimeUnit.MILLISECONDS)};
+
+        final String configuredDirectory = columnarConfig.getString("directory");
+        try {
+            if (configuredDirectory.isEmpty()) {
+                this.directory = Files.createTempDirectory("trestle-metrics");
+                this.temporaryDirectory = true;
+            } else {
+                this.directory = Files.createDirectories(Paths.get(configuredDirectory));
+                this.temporaryDirectory = false;
+                deleteSegments(this.directory);
+            }
+        } catch (IOException e) {
+            throw new MetricianPersistenceException(e);
+        }
+        logger.debug("Writing metric segments to {}", this.directory);
+
+        this.eventThread = new Thread(new ProcessEvents(), "columnar-event-thread");
+        this.eventThread.start();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown(null);
+    }
+
+    @Override
+    public void shutdown(@Nullable File exportFile) {
+        logger.info("Shutting down columnar backend");
+        this.eventThread.interrupt();
+        try {
+            logger.debug("Waiting {} ms for queue to drain", this.threadWait);
+            this.eventThread.join(this.threadWait);
+        } catch (InterruptedException e) {
+            logger.error("Error while waiting for event thread to finish", e);
+            Thread.currentThread().interrupt();
+        }
+        if (exportFile != null) {
+            exportData(exportFile);
+        }
+        logger.debug("Queue drained, removing segments");
+        this.series.values().forEach(ColumnarSeries::close);
+        this.series.clear();
+        if (this.temporaryDirectory) {
+            try {
+                Files.deleteIfExists(this.directory);
+            } catch (IOException e) {
+                logger.error("Unable to remove segment directory {}", this.directory, e);
+            }
+        }
+    }
+
+    @Override
+    public void exportData(File file) {
+        logger.info("Exporting metrics to {}", file);
+        try (final BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("METRIC,TIMESTAMP,VALUE");
+            writer.newLine();
+            for (final ColumnarSeries metricSeries : sortedSeries(null)) {
+                final List<String> rows = new ArrayList<>();
+                metricSeries.read(ColumnarSeries.Tier.RAW, Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) ->
+                        rows.add(String.format("%s,%d,%s", metricSeries.getMetric(), timestamp, convertValue(metricSeries, value))));
+                for (final String row : rows) {
+                    writer.write(row);
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Unable to export results to {}", file, e);
+        }
+        logger.info("Export complete");
+    }
+
+    @Override
+    public List<MetricianExportedValue> exportMetrics(@Nullable List<String> metrics, Long start, @Nullable Long end) {
+        logger.debug("Exporting values for Metrics {} from {} to {}", metrics, start, end == null ? Long.MAX_VALUE : end);
+        final long now = System.currentTimeMillis();
+        final List<MetricianExportedValue> values = new ArrayList<>();
+        for (final ColumnarSeries metricSeries : sortedSeries(metrics)) {
+            metricSeries.read(start, end == null ? Long.MAX_VALUE : end, now, (timestamp, value) ->
+                    values.add(new MetricianExportedValue(metricSeries.getMetric(), timestamp, convertValue(metricSeries, value))));
+        }
+        logger.info("Export complete");
+        return values;
+    }
+
+    @Override
+    public void registerGauge(String name, @Nullable Gauge<?> gauge) {
+        logger.debug("Registering Gauge {}", name);
+        getSeries(name, false);
+    }
+
+    @Override
+    public void removeGauge(String name) {
+
+    }
+
+    @Override
+    public void registerCounter(String name, @Nullable Counter counter) {
+        logger.debug("Registering counter {}", name);
+        getSeries(name, true);
+    }
+
+    @Override
+    public void removeCounter(String name) {
+
+    }
+
+    @Override
+    public Map<String, Long> getDecomposedMetrics() {
+        return this.metricMap;
+    }
+
+    @Override
+    public Map<Long, Object> getMetricsValues(String metricID, Long start, @Nullable Long end) {
+        final Map<Long, Object> results = new LinkedHashMap<>();
+        final @Nullable ColumnarSeries metricSeries = this.series.get(metricID);
+        if (metricSeries == null) {
+            logger.warn("Metric {} is not registered", metricID);
+            return results;
+        }
+        final long now = System.currentTimeMillis();
+        logger.trace("Reading {} from {} tier", metricID, metricSeries.selectTier(start, now));
+        metricSeries.read(start, end == null ? Long.MAX_VALUE : end, now, (timestamp, value) -> results.put(timestamp, convertValue(metricSeries, value)));
+        return results;
+    }
+
+    @Timed
+    void appendValues(MetricianReporter.DataAccumulator event) {
+        final long timestamp = event.getTimestamp();
+        event.getCounters().forEach((key, value) -> getSeries(key, true).append(timestamp, value));
+        event.getGauges().forEach((key, value) -> getSeries(key, false).append(timestamp, value));
+        this.series.values().forEach(metricSeries -> metricSeries.expire(timestamp));
+    }
+
+    private ColumnarSeries getSeries(String name, boolean counter) {
+        return this.series.computeIfAbsent(name, key -> {
+            final long metricID = this.metricIDs.incrementAndGet();
+            this.metricMap.put(key, metricID);
+            return new ColumnarSeries(key, metricID, counter, this.directory, this.segmentSize, this.retention);
+        });
+    }
+
+    private List<ColumnarSeries> sortedSeries(@Nullable List<String> metrics) {
+        final List<ColumnarSeries> selected = new ArrayList<>();
+        if (metrics == null || metrics.isEmpty()) {
+            selected.addAll(this.series.values());
+        } else {
+            metrics.stream()
+                    .map(this.series::get)
+                    .filter(Objects::nonNull)
+                    .forEach(selected::add);
+        }
+        selected.sort(Comparator.comparing(ColumnarSeries::getMetric));
+        return selected;
+    }
+
+    /**
+     * Counters are stored as doubles, so convert them back to longs, to match the values returned by the RDBMS backends
+     */
+    private static Object convertValue(ColumnarSeries metricSeries, double value) {
+        if (metricSeries.isCounter()) {
+            return (long) value;
+        }
+        return value;
+    }
+
+    private static void deleteSegments(Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            files
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_EXTENSION))
+                    .forEach(file -> {
+                        try {
+                            Files.delete(file);
+                        } catch (IOException e) {
+                            logger.error("Unable to remove old segment {}", file, e);
+                        }
+                    });
+        }
+    }
+
+    private class ProcessEvents implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    appendValues(dataQueue.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.debug("Thread interrupted, draining queue");
+            final ArrayDeque<MetricianReporter.DataAccumulator> remainingEvents = new ArrayDeque<>();
+            final int drainCount = dataQueue.drainTo(remainingEvents);
+            remainingEvents.forEach(ColumnarBackend.this::appendValues);
+            logger.debug("Finished draining {} events", drainCount);
+        }
+    }
+}
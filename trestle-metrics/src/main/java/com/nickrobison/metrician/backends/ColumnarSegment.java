@@ -0,0 +1,249 @@
+package com.nickrobison.metrician.backends;
+
+import com.nickrobison.metrician.exceptions.MetricianPersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Fixed size, memory-mapped segment of (timestamp, value) points for a single metric.
+ * <p>
+ * The segment file is split into a header and two columns, one for the timestamps and one for the values.
+ * Timestamps are stored as the zig-zag varint encoded delta-of-delta from the previous timestamp,
+ * so points reported at a regular interval take a single byte.
+ * Values are stored as the XOR of their bits with the previous value, with the leading and trailing zero bytes dropped,
+ * so unchanged values take a single byte.
+ * <p>
+ * Points are appended by a single writer thread, but the segment can be read concurrently.
+ * Readers only decode the points which were completely written when they started reading.
+ */
+class ColumnarSegment {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarSegment.class);
+    //    count, first timestamp, last timestamp
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES * 2;
+    //    Largest possible encoding of a single timestamp (varint of a 64-bit value) and a single value (header byte + 8 bytes)
+    private static final int MAX_TIMESTAMP_BYTES = 10;
+    private static final int MAX_VALUE_BYTES = 9;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int timestampColumn;
+    private final int valueColumn;
+    private final int columnSize;
+
+    private volatile int count = 0;
+    private long firstTimestamp;
+    private volatile long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int timestampPosition;
+    private int valuePosition;
+
+    private ColumnarSegment(Path path, MappedByteBuffer buffer, int size) {
+        this.path = path;
+        this.buffer = buffer;
+        this.columnSize = (size - HEADER_SIZE) / 2;
+        this.timestampColumn = HEADER_SIZE;
+        this.valueColumn = HEADER_SIZE + this.columnSize;
+        this.timestampPosition = this.timestampColumn;
+        this.valuePosition = this.valueColumn;
+    }
+
+    /**
+     * Create a new segment file, and map it into memory
+     *
+     * @param path - {@link Path} of segment file
+     * @param size - size of the segment file, in bytes
+     * @return - {@link ColumnarSegment}
+     * @throws MetricianPersistenceException if the segment file cannot be created
+     */
+    static ColumnarSegment create(Path path, int size) {
+        try (final RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+            final MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            logger.trace("Created segment {}", path);
+            return new ColumnarSegment(path, buffer, size);
+        } catch (IOException e) {
+            throw new MetricianPersistenceException(e);
+        }
+    }
+
+    /**
+     * Append a point to the segment.
+     * Timestamps must be appended in ascending order
+     *
+     * @param timestamp - Unix timestamp (in ms)
+     * @param value     - value to append
+     * @return - {@code true} point was appended. {@code false} the segment is full
+     */
+    boolean append(long timestamp, double value) {
+        if (this.timestampPosition + MAX_TIMESTAMP_BYTES > this.valueColumn
+                || this.valuePosition + MAX_VALUE_BYTES > this.valueColumn + this.columnSize) {
+            return false;
+        }
+        final int current = this.count;
+        if (current == 0) {
+            this.firstTimestamp = timestamp;
+            this.buffer.putLong(Integer.BYTES, timestamp);
+        } else {
+            final long delta = timestamp - this.lastTimestamp;
+            this.timestampPosition = writeVarLong(this.buffer, this.timestampPosition, zigZag(current == 1 ? delta : delta - this.lastDelta));
+            this.lastDelta = delta;
+        }
+
+        final long valueBits = Double.doubleToRawLongBits(value);
+        this.valuePosition = writeXor(this.buffer, this.valuePosition, valueBits ^ this.lastValueBits);
+        this.lastValueBits = valueBits;
+
+        this.buffer.putLong(Integer.BYTES + Long.BYTES, timestamp);
+        this.buffer.putInt(0, current + 1);
+        this.lastTimestamp = timestamp;
+//        Publish the point, readers only decode up to the count
+        this.count = current + 1;
+        return true;
+    }
+
+    /**
+     * Decode all the points in the segment which fall within the given interval
+     *
+     * @param start    - Unix timestamp (in ms) of start of interval (inclusive)
+     * @param end      - Unix timestamp (in ms) of end of interval (inclusive)
+     * @param consumer - {@link PointConsumer} to pass each point to
+     */
+    void read(long start, long end, PointConsumer consumer) {
+        final int points = this.count;
+        if (points == 0 || this.firstTimestamp > end || this.lastTimestamp < start) {
+            return;
+        }
+        final int[] timestampPosition = {this.timestampColumn};
+        final int[] valuePosition = {this.valueColumn};
+        long timestamp = this.firstTimestamp;
+        long delta = 0;
+        long valueBits = 0;
+        for (int i = 0; i < points; i++) {
+            if (i == 1) {
+                delta = unZigZag(readVarLong(this.buffer, timestampPosition));
+                timestamp += delta;
+            } else if (i > 1) {
+                delta += unZigZag(readVarLong(this.buffer, timestampPosition));
+                timestamp += delta;
+            }
+            valueBits ^= readXor(this.buffer, valuePosition);
+            if (timestamp > end) {
+                return;
+            }
+            if (timestamp >= start) {
+                consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+            }
+        }
+    }
+
+    int getCount() {
+        return this.count;
+    }
+
+    long getLastTimestamp() {
+        return this.lastTimestamp;
+    }
+
+    /**
+     * Number of bytes used to encode the points in the segment
+     *
+     * @return - encoded size, in bytes
+     */
+    int getEncodedSize() {
+        return (this.timestampPosition - this.timestampColumn) + (this.valuePosition - this.valueColumn) + HEADER_SIZE;
+    }
+
+    /**
+     * Delete the segment file.
+     * The mapped memory is released once the segment is no longer referenced, so concurrent readers can finish decoding
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            logger.error("Unable to delete segment {}", this.path, e);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarLong(MappedByteBuffer buffer, int position, long value) {
+        int idx = position;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put(idx++, (byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put(idx++, (byte) remaining);
+        return idx;
+    }
+
+    private static long readVarLong(MappedByteBuffer buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Write the XOR'd value bits.
+     * A zero byte means the value hasn't changed, otherwise the first byte records the number of leading and trailing zero bytes,
+     * followed by the remaining (meaningful) bytes
+     */
+    private static int writeXor(MappedByteBuffer buffer, int position, long xor) {
+        if (xor == 0) {
+            buffer.put(position, (byte) 0);
+            return position + 1;
+        }
+        final int leading = Long.numberOfLeadingZeros(xor) / Byte.SIZE;
+        final int trailing = Long.numberOfTrailingZeros(xor) / Byte.SIZE;
+        buffer.put(position, (byte) (1 + leading * Byte.SIZE + trailing));
+        int idx = position + 1;
+        for (int i = Long.BYTES - 1 - leading; i >= trailing; i--) {
+            buffer.put(idx++, (byte) (xor >>> (i * Byte.SIZE)));
+        }
+        return idx;
+    }
+
+    private static long readXor(MappedByteBuffer buffer, int[] position) {
+        final int header = buffer.get(position[0]++);
+        if (header == 0) {
+            return 0;
+        }
+        final int leading = (header - 1) / Byte.SIZE;
+        final int trailing = (header - 1) % Byte.SIZE;
+        long xor = 0;
+        for (int i = Long.BYTES - 1 - leading; i >= trailing; i--) {
+            xor |= (buffer.get(position[0]++) & 0xFFL) << (i * Byte.SIZE);
+        }
+        return xor;
+    }
+
+    /**
+     * Consumer of decoded (timestamp, value) points
+     */
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+}
@@ -0,0 +1,219 @@
+package com.nickrobison.metrician.backends;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * All the stored values for a single metric, at each of the {@link Tier} resolutions.
+ * <p>
+ * Raw values are appended to the {@link Tier#RAW} segments, and rolled up into the {@link Tier#MINUTE} and {@link Tier#HOUR} segments
+ * once each minute/hour bucket is complete.
+ * Gauges are rolled up to the mean of the bucket, counters to the last value in the bucket.
+ * Segments are dropped once all of their values are older than the retention period for the tier.
+ */
+@ThreadSafe
+class ColumnarSeries {
+
+    /**
+     * Resolution of the stored values
+     */
+    enum Tier {
+        RAW(0),
+        MINUTE(60_000),
+        HOUR(3_600_000);
+
+        private final long resolution;
+
+        Tier(long resolution) {
+            this.resolution = resolution;
+        }
+
+        long getResolution() {
+            return this.resolution;
+        }
+    }
+
+    private final String metric;
+    private final long id;
+    private final boolean counter;
+    private final Path directory;
+    private final int segmentSize;
+    private final long[] retention;
+    private final List<Deque<ColumnarSegment>> segments = new ArrayList<>();
+    private final RollUp[] rollUps = new RollUp[Tier.values().length];
+    private int segmentCount = 0;
+    private long latestTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Create a new series
+     *
+     * @param metric      - metric name
+     * @param id          - metric ID
+     * @param counter     - {@code true} metric is a counter, {@code false} metric is a gauge
+     * @param directory   - {@link Path} to write the segment files into
+     * @param segmentSize - size of each segment file, in bytes
+     * @param retention   - retention period (in ms) for each {@link Tier}, indexed by ordinal
+     */
+    ColumnarSeries(String metric, long id, boolean counter, Path directory, int segmentSize, long[] retention) {
+        this.metric = metric;
+        this.id = id;
+        this.counter = counter;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retention = retention.clone();
+        for (final Tier tier : Tier.values()) {
+            this.segments.add(new ArrayDeque<>());
+            if (tier != Tier.RAW) {
+                this.rollUps[tier.ordinal()] = new RollUp();
+            }
+        }
+    }
+
+    String getMetric() {
+        return this.metric;
+    }
+
+    long getId() {
+        return this.id;
+    }
+
+    boolean isCounter() {
+        return this.counter;
+    }
+
+    /**
+     * Append a value to the series, rolling up any completed buckets.
+     * Values older than the latest appended value are dropped
+     *
+     * @param timestamp - Unix timestamp (in ms)
+     * @param value     - value to append
+     */
+    synchronized void append(long timestamp, double value) {
+        if (timestamp < this.latestTimestamp) {
+            return;
+        }
+        this.latestTimestamp = timestamp;
+        appendToTier(Tier.RAW, timestamp, value);
+        for (final Tier tier : Tier.values()) {
+            final @Nullable RollUp rollUp = this.rollUps[tier.ordinal()];
+            if (rollUp == null) {
+                continue;
+            }
+            final long bucket = timestamp - Math.floorMod(timestamp, tier.getResolution());
+            if (rollUp.count > 0 && rollUp.bucket != bucket) {
+                appendToTier(tier, rollUp.bucket, rollUp.getValue(this.counter));
+                rollUp.count = 0;
+                rollUp.sum = 0;
+            }
+            rollUp.bucket = bucket;
+            rollUp.sum += value;
+            rollUp.last = value;
+            rollUp.count++;
+        }
+    }
+
+    /**
+     * Drop any segments whose values are all older than the retention period of their tier
+     *
+     * @param now - current Unix timestamp (in ms)
+     */
+    synchronized void expire(long now) {
+        for (final Tier tier : Tier.values()) {
+            final Deque<ColumnarSegment> tierSegments = this.segments.get(tier.ordinal());
+            final long cutoff = now - this.retention[tier.ordinal()];
+            @Nullable ColumnarSegment oldest;
+//            Never drop the segment we're currently writing into
+            while (tierSegments.size() > 1 && (oldest = tierSegments.peekFirst()) != null && oldest.getLastTimestamp() < cutoff) {
+                tierSegments.pollFirst();
+                oldest.delete();
+            }
+        }
+    }
+
+    /**
+     * Read the values within the given interval, from the finest resolution {@link Tier} which still retains values from the start of the interval
+     *
+     * @param start    - Unix timestamp (in ms) of start of interval (inclusive)
+     * @param end      - Unix timestamp (in ms) of end of interval (inclusive)
+     * @param now      - current Unix timestamp (in ms)
+     * @param consumer - {@link ColumnarSegment.PointConsumer} to pass each value to
+     */
+    void read(long start, long end, long now, ColumnarSegment.PointConsumer consumer) {
+        read(selectTier(start, now), start, end, consumer);
+    }
+
+    /**
+     * Read the values within the given interval, from the given {@link Tier}
+     *
+     * @param tier     - {@link Tier} to read from
+     * @param start    - Unix timestamp (in ms) of start of interval (inclusive)
+     * @param end      - Unix timestamp (in ms) of end of interval (inclusive)
+     * @param consumer - {@link ColumnarSegment.PointConsumer} to pass each value to
+     */
+    void read(Tier tier, long start, long end, ColumnarSegment.PointConsumer consumer) {
+//        Take a copy of the segments, so we don't block the writer while decoding
+        final List<ColumnarSegment> tierSegments;
+        synchronized (this) {
+            tierSegments = new ArrayList<>(this.segments.get(tier.ordinal()));
+        }
+        tierSegments.forEach(segment -> segment.read(start, end, consumer));
+    }
+
+    /**
+     * Select the finest resolution {@link Tier} which still has values from the given start time
+     *
+     * @param start - Unix timestamp (in ms) of start of interval
+     * @param now   - current Unix timestamp (in ms)
+     * @return - {@link Tier} to read from
+     */
+    Tier selectTier(long start, long now) {
+        for (final Tier tier : Tier.values()) {
+            if (start >= now - this.retention[tier.ordinal()]) {
+                return tier;
+            }
+        }
+        return Tier.HOUR;
+    }
+
+    /**
+     * Delete all the segments in the series
+     */
+    synchronized void close() {
+        this.segments.forEach(tierSegments -> {
+            tierSegments.forEach(ColumnarSegment::delete);
+            tierSegments.clear();
+        });
+    }
+
+    private void appendToTier(Tier tier, long timestamp, double value) {
+        final Deque<ColumnarSegment> tierSegments = this.segments.get(tier.ordinal());
+        final @Nullable ColumnarSegment current = tierSegments.peekLast();
+        if (current != null && current.append(timestamp, value)) {
+            return;
+        }
+        final ColumnarSegment segment = ColumnarSegment.create(this.directory.resolve(String.format("%d-%s-%d.col", this.id, tier.name().toLowerCase(Locale.ROOT), this.segmentCount++)), this.segmentSize);
+        segment.append(timestamp, value);
+        tierSegments.addLast(segment);
+    }
+
+    /**
+     * Accumulated values for the current bucket of a roll-up tier
+     */
+    private static class RollUp {
+        private long bucket;
+        private double sum;
+        private double last;
+        private int count;
+
+        private double getValue(boolean counter) {
+            return counter ? this.last : this.sum / this.count;
+        }
+    }
+}
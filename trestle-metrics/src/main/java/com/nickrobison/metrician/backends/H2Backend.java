@@ -188,7 +188,8 @@ public class H2Backend extends RDBMSBackend {
     @Override
     @Nullable Long registerMetric(String metricName) {
         try (final Connection connection = getConnection();
-             final PreparedStatement preparedStatement = connection.prepareStatement(String.format("INSERT INTO metrics (Metric) VALUES('%s')", metricName.replace("'", "")), Statement.RETURN_GENERATED_KEYS)) {
+             final PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO metrics (Metric) VALUES(?)", Statement.RETURN_GENERATED_KEYS)) {
+            preparedStatement.setString(1, metricName);
             preparedStatement.executeUpdate();
             try (final ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
@@ -208,25 +209,6 @@ public class H2Backend extends RDBMSBackend {
     @Override
     @Timed
     void insertValues(List<MetricianMetricValue> events) {
-        final StringBuilder sqlInsertString = new StringBuilder();
-        events.forEach(event -> {
-            switch (event.getType()) {
-                case COUNTER:
-                    sqlInsertString.append(String.format("INSERT INTO counters VALUES('%s', %s, '%s');%n", event.getKey(), event.getTimestamp(), event.getValue()));
-                    break;
-                case GAUGE:
-                    sqlInsertString.append(String.format("INSERT INTO gauges VALUES('%s', %s, '%s');%n", event.getKey(), event.getTimestamp(), event.getValue()));
-                    break;
-                default:
-                    logger.error("Unable to determine metric type {}, skipping", event.getType());
-                    break;
-            }
-        });
-        try (final Connection connection = getConnection();
-                final PreparedStatement insertStatement = connection.prepareStatement(sqlInsertString.toString())) {
-            insertStatement.execute();
-        } catch (SQLException e) {
-            logger.error("Unable to insert event into H2 database", e);
-        }
+        insertBatch("INSERT INTO counters VALUES(?, ?, ?)", "INSERT INTO gauges VALUES(?, ?, ?)", events);
     }
 }
@@ -134,26 +134,7 @@ public class PostgresBackend extends RDBMSBackend {
     @Override
     @Timed
     void insertValues(List<MetricianMetricValue> events) {
-        final StringBuilder sqlInsertString = new StringBuilder();
-        events.forEach(event -> {
-            switch (event.getType()) {
-                case COUNTER:
-                    sqlInsertString.append(String.format("INSERT INTO metrics.counters VALUES('%s', %s, '%s');%n", event.getKey(), event.getTimestamp(), event.getValue()));
-                    break;
-                case GAUGE:
-                    sqlInsertString.append(String.format("INSERT INTO metrics.gauges VALUES('%s', %s, '%s');%n", event.getKey(), event.getTimestamp(), event.getValue()));
-                    break;
-                default:
-                    logger.error("Unable to determine metric type {}, skipping", event.getType());
-                    break;
-            }
-        });
-        try (final Connection connection = getConnection();
-             final PreparedStatement insertStatement = connection.prepareStatement(sqlInsertString.toString())){
-            insertStatement.execute();
-        } catch (SQLException e) {
-            logger.error("Unable to insert event into Postgres database", e);
-        }
+        insertBatch("INSERT INTO metrics.counters VALUES(?, ?, ?)", "INSERT INTO metrics.gauges VALUES(?, ?, ?)", events);
     }
 
     @Override
@@ -174,7 +155,8 @@ public class PostgresBackend extends RDBMSBackend {
                 logger.error("Unable to lookup metricIDs");
             }
 //            If not, register it
-            try (final PreparedStatement preparedStatement = connection.prepareStatement(String.format("INSERT INTO metrics.METRICS (Metric) VALUES('%s')", metricName), Statement.RETURN_GENERATED_KEYS)) {
+            try (final PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO metrics.METRICS (Metric) VALUES(?)", Statement.RETURN_GENERATED_KEYS)) {
+                preparedStatement.setString(1, metricName);
                 preparedStatement.executeUpdate();
                 try (final ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
@@ -7,6 +7,9 @@ import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import com.zaxxer.hikari.HikariDataSource;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMaps;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import org.checkerframework.checker.initialization.qual.UnderInitialization;
 import org.checkerframework.checker.initialization.qual.UnknownInitialization;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -16,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by nrobison on 4/2/17.
@@ -29,11 +33,15 @@ import java.util.concurrent.BlockingQueue;
 public abstract class RDBMSBackend implements IMetricianBackend {
 
     private static final Logger logger = LoggerFactory.getLogger(RDBMSBackend.class);
+    private static final long UNREGISTERED_METRIC = -1;
     final int threadWait;
+    final int batchSize;
     final Config config;
-    final Map<String, Long> metricMap;
+    final Object2LongMap<String> metricMap;
     final Thread eventThread;
     final String threadName;
+    private final AtomicLong droppedValues = new AtomicLong();
+    private volatile long ingestLag = 0;
 
     final BlockingQueue<MetricianReporter.DataAccumulator> dataQueue;
     protected HikariDataSource ds;
@@ -43,7 +51,10 @@ public abstract class RDBMSBackend implements IMetricianBackend {
         this.dataQueue = dataQueue;
         this.config = ConfigFactory.load().getConfig("trestle.metrics.backend");
         this.threadWait = this.config.getInt("threadWait");
-        this.metricMap = new HashMap<>();
+        this.batchSize = this.config.getInt("batchSize");
+        final Object2LongOpenHashMap<String> metrics = new Object2LongOpenHashMap<>();
+        metrics.defaultReturnValue(UNREGISTERED_METRIC);
+        this.metricMap = Object2LongMaps.synchronize(metrics);
 
         final ProcessEvents processEvents = new ProcessEvents();
         eventThread = new Thread(processEvents, this.threadName);
@@ -63,9 +74,9 @@ public abstract class RDBMSBackend implements IMetricianBackend {
 
     @Override
     public void shutdown() {
-        eventThread.interrupt();
-        this.ds.close();
+//        Drain the queue before closing the data source, otherwise the remaining reports can't be written
         shutdown(null);
+        this.ds.close();
     }
 
     /**
@@ -151,7 +162,11 @@ public abstract class RDBMSBackend implements IMetricianBackend {
     @Override
     public Map<Long, Object> getMetricsValues(String metricID, Long start, @Nullable Long end) {
         Map<Long, Object> results = new HashMap<>();
-        final Long registeredMetricID = this.metricMap.get(metricID);
+        final long registeredMetricID = this.metricMap.getLong(metricID);
+        if (registeredMetricID == UNREGISTERED_METRIC) {
+            logger.warn("Metric {} is not registered", metricID);
+            return results;
+        }
 
         try {
             final ResultSet resultSet = getMetricValueResultSet(registeredMetricID, start, end);
@@ -194,56 +209,148 @@ public abstract class RDBMSBackend implements IMetricianBackend {
 
     @Override
     public Map<String, Long> getDecomposedMetrics() {
-        return this.metricMap;
+        synchronized (this.metricMap) {
+            return new HashMap<>(this.metricMap);
+        }
     }
 
     abstract void insertValues(List<MetricianMetricValue> events);
 
+    /**
+     * Insert the values with batched {@link PreparedStatement}s, in a single transaction.
+     * If the batch fails, the values are dropped and added to the dropped values count
+     *
+     * @param counterInsert - parameterised insert statement for counters (MetricID, Timestamp, Value)
+     * @param gaugeInsert   - parameterised insert statement for gauges (MetricID, Timestamp, Value)
+     * @param events        - {@link List} of {@link MetricianMetricValue} to insert
+     */
+    void insertBatch(String counterInsert, String gaugeInsert, List<MetricianMetricValue> events) {
+        try (final Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (final PreparedStatement counterStatement = connection.prepareStatement(counterInsert);
+                 final PreparedStatement gaugeStatement = connection.prepareStatement(gaugeInsert)) {
+                for (final MetricianMetricValue event : events) {
+                    switch (event.getType()) {
+                        case COUNTER:
+                            counterStatement.setLong(1, event.getKey());
+                            counterStatement.setLong(2, event.getTimestamp());
+                            counterStatement.setLong(3, ((Number) event.getValue()).longValue());
+                            counterStatement.addBatch();
+                            break;
+                        case GAUGE:
+                            gaugeStatement.setLong(1, event.getKey());
+                            gaugeStatement.setLong(2, event.getTimestamp());
+                            gaugeStatement.setDouble(3, ((Number) event.getValue()).doubleValue());
+                            gaugeStatement.addBatch();
+                            break;
+                        default:
+                            logger.error("Unable to determine metric type {}, skipping", event.getType());
+                            this.droppedValues.incrementAndGet();
+                            break;
+                    }
+                }
+                counterStatement.executeBatch();
+                gaugeStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Unable to insert {} values into metrics database", events.size(), e);
+            this.droppedValues.addAndGet(events.size());
+        }
+    }
+
+    /**
+     * Time (in ms) between the oldest report in the most recent batch being generated, and it being written to the database
+     *
+     * @return - ingest lag, in ms
+     */
+    @com.codahale.metrics.annotation.Gauge(name = "metrics-ingest-lag", absolute = true)
+    long getIngestLag() {
+        return this.ingestLag;
+    }
+
+    /**
+     * Number of values which could not be written to the database
+     *
+     * @return - dropped value count
+     */
+    @com.codahale.metrics.annotation.Gauge(name = "metrics-dropped-values", absolute = true)
+    long getDroppedValues() {
+        return this.droppedValues.get();
+    }
+
     protected class ProcessEvents implements Runnable {
 
         @Override
         public void run() {
+            final List<MetricianReporter.DataAccumulator> batch = new ArrayList<>(batchSize);
             try {
                 while (!Thread.currentThread().isInterrupted()) {
-                    final MetricianReporter.DataAccumulator event = dataQueue.take();
-                    processEvent(event);
+//                    Block until we have a report, then take whatever else is waiting
+                    batch.add(dataQueue.take());
+                    dataQueue.drainTo(batch, batchSize - 1);
+                    processEvents(batch);
+                    batch.clear();
                 }
             } catch (InterruptedException e) {
 
                 Thread.currentThread().interrupt();
             }
             logger.debug("Thread interrupted, draining queue");
-            ArrayDeque<MetricianReporter.DataAccumulator> remainingEvents = new ArrayDeque<>();
-            final int drainCount = dataQueue.drainTo(remainingEvents);
-            remainingEvents.forEach(this::processEvent);
+            batch.clear();
+            final int drainCount = dataQueue.drainTo(batch);
+            processEvents(batch);
             logger.debug("Finished draining {} events", drainCount);
         }
 
-        private void processEvent(MetricianReporter.DataAccumulator event) {
-            final long timestamp = event.getTimestamp();
-            List<MetricianMetricValue> events = new ArrayList<>();
-//            Counters
-            event.getCounters().forEach((key, value) -> {
-                logger.trace("Counter {}: {}", key, value);
-                Long metricKey = metricMap.get(key);
-                if (metricKey == null) {
-                    logger.debug("Got null key for metric {}, registering", key);
-                    metricKey = registerMetric(key);
-
-                }
-                events.add(new MetricianMetricValue<>(MetricianMetricValue.ValueType.COUNTER, metricKey, timestamp, value));
-            });
-//            Gauges
-            event.getGauges().forEach((key, value) -> {
-                logger.trace("Gauge {}: {}", key, value);
-                Long metricKey = metricMap.get(key);
-                if (metricKey == null) {
-                    logger.debug("Got null key for metric {}, registering", key);
-                    metricKey = registerMetric(key);
-                }
-                events.add(new MetricianMetricValue<>(MetricianMetricValue.ValueType.GAUGE, metricKey, timestamp, value));
-            });
+        private void processEvents(List<MetricianReporter.DataAccumulator> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            long oldestTimestamp = Long.MAX_VALUE;
+            final List<MetricianMetricValue> events = new ArrayList<>();
+            for (final MetricianReporter.DataAccumulator event : batch) {
+                final long timestamp = event.getTimestamp();
+                oldestTimestamp = Math.min(oldestTimestamp, timestamp);
+//                Counters
+                event.getCounters().forEach((key, value) -> {
+                    logger.trace("Counter {}: {}", key, value);
+                    final long metricKey = getMetricKey(key);
+                    if (metricKey != UNREGISTERED_METRIC) {
+                        events.add(new MetricianMetricValue<>(MetricianMetricValue.ValueType.COUNTER, metricKey, timestamp, value));
+                    }
+                });
+//                Gauges
+                event.getGauges().forEach((key, value) -> {
+                    logger.trace("Gauge {}: {}", key, value);
+                    final long metricKey = getMetricKey(key);
+                    if (metricKey != UNREGISTERED_METRIC) {
+                        events.add(new MetricianMetricValue<>(MetricianMetricValue.ValueType.GAUGE, metricKey, timestamp, value));
+                    }
+                });
+            }
+            logger.trace("Inserting {} values from {} reports", events.size(), batch.size());
             insertValues(events);
+            ingestLag = System.currentTimeMillis() - oldestTimestamp;
+        }
+
+        private long getMetricKey(String metric) {
+            final long metricKey = metricMap.getLong(metric);
+            if (metricKey != UNREGISTERED_METRIC) {
+                return metricKey;
+            }
+            logger.debug("Got null key for metric {}, registering", metric);
+            final @Nullable Long registeredKey = registerMetric(metric);
+            if (registeredKey == null) {
+                droppedValues.incrementAndGet();
+                return UNREGISTERED_METRIC;
+            }
+            return registeredKey;
         }
     }
 }
@@ -0,0 +1,83 @@
+package com.nickrobison.metrician.instrumentation;
+
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Snapshot} of the values recorded into a {@link StripedHdrReservoir}
+ */
+public class HdrSnapshot extends Snapshot {
+
+    private final Histogram histogram;
+
+    HdrSnapshot(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+            throw new IllegalArgumentException(quantile + " is not in [0..1]");
+        }
+        return this.histogram.getValueAtPercentile(quantile * 100.0);
+    }
+
+    /**
+     * Expand the recorded values, at the precision of the histogram.
+     * This allocates an array of every recorded value, so should be avoided in favor of the quantile methods
+     *
+     * @return - all recorded values, in ascending order
+     */
+    @Override
+    public long[] getValues() {
+        final long[] values = new long[size()];
+        int idx = 0;
+        for (final HistogramIterationValue value : this.histogram.recordedValues()) {
+            final long recorded = this.histogram.highestEquivalentValue(value.getValueIteratedTo());
+            for (long i = 0; i < value.getCountAtValueIteratedTo() && idx < values.length; i++) {
+                values[idx++] = recorded;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(this.histogram.getTotalCount(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMax() {
+        return this.histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean() {
+        return this.histogram.getMean();
+    }
+
+    @Override
+    public long getMin() {
+        return this.histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev() {
+        return this.histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+        try (final PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            for (final long value : getValues()) {
+                writer.printf("%d%n", value);
+            }
+        }
+    }
+}
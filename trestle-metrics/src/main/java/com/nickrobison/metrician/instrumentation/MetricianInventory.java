@@ -2,6 +2,8 @@ package com.nickrobison.metrician.instrumentation;
 
 import com.codahale.metrics.*;
 import com.nickrobison.metrician.AnnotatedMetric;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
 
 import java.util.Map;
@@ -22,12 +24,14 @@ public class MetricianInventory {
     public static Map<String, AnnotatedMetric<Meter>> meters;
     public static Map<String, AnnotatedMetric<Timer>> timers;
     public static Map<String, AnnotatedMetric<Counter>> counters;
+    public static TimerImplementation timerImplementation;
+    public static MetricRegistry.MetricSupplier<Timer> timerSupplier;
 
     static {
         reset();
     }
 
-    @EnsuresNonNull(value = {"strategy", "registry", "gauges", "meters", "timers", "counters"})
+    @EnsuresNonNull(value = {"strategy", "registry", "gauges", "meters", "timers", "counters", "timerImplementation", "timerSupplier"})
     public static void reset() {
         strategy = new DefaultMetricsStrategy();
         registry = strategy.resolveMetricRegistry("trestle-registry");
@@ -35,5 +39,15 @@ public class MetricianInventory {
         meters = new ConcurrentHashMap<>();
         timers = new ConcurrentHashMap<>();
         counters = new ConcurrentHashMap<>();
+
+        final Config config = ConfigFactory.load().getConfig("trestle.metrics.instrumentation");
+        timerImplementation = config.getEnum(TimerImplementation.class, "timers");
+        if (timerImplementation == TimerImplementation.HDR) {
+            final int stripes = config.getInt("hdr.stripes");
+            final int significantDigits = config.getInt("hdr.significantDigits");
+            timerSupplier = () -> new Timer(new StripedHdrReservoir(stripes, significantDigits));
+        } else {
+            timerSupplier = Timer::new;
+        }
     }
 }
@@ -0,0 +1,69 @@
+package com.nickrobison.metrician.instrumentation;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * {@link Reservoir} which records values into a set of HdrHistogram {@link Recorder}s, rather than sampling them into an exponentially decaying reservoir.
+ * <p>
+ * Writers are striped across the recorders by thread ID, recording a value is wait-free and does not allocate.
+ * Each call to {@link #getSnapshot()} merges and resets the recorders, so the returned {@link Snapshot} only covers the values recorded since the previous call.
+ * This matches the reporting period of the {@link com.nickrobison.metrician.MetricianReporter}, but means that the reservoir should only have a single reader,
+ * which should derive all the parts it reports (mean, percentiles, etc) from one snapshot, as the reporter does.
+ */
+@ThreadSafe
+public class StripedHdrReservoir implements Reservoir {
+
+    private final Recorder[] recorders;
+    private final @Nullable Histogram[] intervalHistograms;
+    private final Histogram snapshotHistogram;
+    private final int mask;
+    private volatile int lastSize = 0;
+
+    /**
+     * Create a new reservoir
+     *
+     * @param stripes           - number of {@link Recorder}s to stripe the writers across, rounded up to the next power of two
+     * @param significantDigits - number of significant decimal digits to record values with (0-5)
+     */
+    public StripedHdrReservoir(int stripes, int significantDigits) {
+        final int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.mask = stripeCount - 1;
+        this.recorders = new Recorder[stripeCount];
+        this.intervalHistograms = new Histogram[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.recorders[i] = new Recorder(significantDigits);
+        }
+        this.snapshotHistogram = new Histogram(significantDigits);
+    }
+
+    @Override
+    public int size() {
+        return this.lastSize;
+    }
+
+    @Override
+    public void update(long value) {
+        this.recorders[(int) Thread.currentThread().getId() & this.mask].recordValue(Math.max(0, value));
+    }
+
+    @Override
+    @SuppressWarnings({"argument.type.incompatible"}) // Recorder accepts a null histogram to recycle, on the first interval
+    public synchronized Snapshot getSnapshot() {
+        this.snapshotHistogram.reset();
+        for (int i = 0; i < this.recorders.length; i++) {
+//            Hand the previous interval histogram back to the recorder, so it can be reused without allocating
+            final Histogram interval = this.recorders[i].getIntervalHistogram(this.intervalHistograms[i]);
+            this.intervalHistograms[i] = interval;
+            this.snapshotHistogram.add(interval);
+        }
+        final HdrSnapshot snapshot = new HdrSnapshot(this.snapshotHistogram.copy());
+        this.lastSize = snapshot.size();
+        return snapshot;
+    }
+}
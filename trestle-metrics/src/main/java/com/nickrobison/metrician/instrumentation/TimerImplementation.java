@@ -0,0 +1,15 @@
+package com.nickrobison.metrician.instrumentation;
+
+/**
+ * Implementation used to record the {@link com.codahale.metrics.annotation.Timed} methods
+ */
+public enum TimerImplementation {
+    /**
+     * Dropwizard {@link com.codahale.metrics.Timer}, backed by an exponentially decaying reservoir
+     */
+    DROPWIZARD,
+    /**
+     * Dropwizard {@link com.codahale.metrics.Timer}, backed by a {@link StripedHdrReservoir}
+     */
+    HDR
+}
@@ -0,0 +1,74 @@
+package com.nickrobison.metrician.instrumentation.transformers;
+
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.metrician.AnnotatedMetric;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static com.nickrobison.metrician.instrumentation.MetricianInventory.timers;
+import static net.bytebuddy.matcher.ElementMatchers.isAnnotatedWith;
+
+/**
+ * Byte-code transformation class to implement the {@link Timed} annotation, using {@link com.nickrobison.metrician.instrumentation.StripedHdrReservoir} backed {@link Timer}s.
+ * Rather than allocating a {@link Timer.Context} on each call, the start time is carried on the stack and recorded directly into the {@link Timer} when the method exits.
+ * Once the {@link Timer} is registered, the woven code doesn't allocate.
+ */
+public class HdrTimerTransformer extends AbstractMetricianTransformer {
+
+    @Override
+    public AgentBuilder.Transformer getTransformer() {
+        return ((builder, typeDescription, classLoader, module) -> builder.visit(Advice.to(getAdviceClass()).on(isAnnotatedWith(Timed.class))));
+    }
+
+    @Override
+    protected ElementMatcher.Junction<MethodDescription.InDefinedShape> getExtraMethodElementMatcher() {
+        return isAnnotatedWith(Timed.class);
+    }
+
+    @Advice.OnMethodEnter
+    public static long enter() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the duration of the method.
+     * The method is identified by its declaring class and name, which are constants in the woven code, rather than by {@code @Advice.Origin Method},
+     * which is looked up reflectively on every call. The {@link Method} is only resolved the first time the method is called, to register its {@link Timer}
+     */
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void exit(@Advice.Origin Class<?> type, @Advice.Origin("#m") String methodName, @Advice.Enter long start) {
+        final long duration = System.nanoTime() - start;
+        final @Nullable AnnotatedMetric<Timer> timer = timers.get(methodName);
+        if (timer != null) {
+            timer.getMetric().update(duration, TimeUnit.NANOSECONDS);
+        } else {
+            registerAndRecord(type, methodName, duration);
+        }
+    }
+
+    /**
+     * Register the {@link Timer} for the first call of the given method, and record its duration
+     *
+     * @param type       - {@link Class} declaring the method
+     * @param methodName - name of the method annotated with {@link Timed}
+     * @param duration   - duration of the call, in ns
+     */
+    public static void registerAndRecord(Class<?> type, String methodName, long duration) {
+        for (final Method method : type.getDeclaredMethods()) {
+            if (method.getName().equals(methodName) && method.isAnnotationPresent(Timed.class)) {
+                final @Nullable Timer timer = TimerTransformer.getTimer(method);
+                if (timer != null) {
+                    timer.update(duration, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.matcher.ElementMatcher;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,12 +47,26 @@ public class TimerTransformer extends AbstractMetricianTransformer {
 
 
     public static Timer.Context handleTimer(Method method) {
+        final @Nullable Timer timer = getTimer(method);
+        if (timer == null) {
+            return null;
+        }
+        return timer.time();
+    }
+
+    /**
+     * Get the {@link Timer} for the given method, registering it if this is the first time the method has been called
+     *
+     * @param method - {@link Method} annotated with {@link Timed}
+     * @return - {@link Timer}, or {@code null} if the timer could not be registered
+     */
+    public static @Nullable Timer getTimer(Method method) {
         final AnnotatedMetric<Timer> annotatedMetric = timers.get(method.getName());
         if (annotatedMetric == null) {
             final AnnotatedMetric<Timer> timer = metricAnnotation(method, Timed.class, (name, absolute) -> {
                 String finalName = name.isEmpty() ? method.getName() : strategy.resolveMetricName(name);
                 try {
-                    return registry.timer(absolute ? finalName : MetricRegistry.name(method.getDeclaringClass(), finalName));
+                    return registry.timer(absolute ? finalName : MetricRegistry.name(method.getDeclaringClass(), finalName), timerSupplier);
                 } catch (IllegalArgumentException e) {
                     logger.error("Unable to register timer.", e);
                     return null;
@@ -60,12 +75,12 @@ public class TimerTransformer extends AbstractMetricianTransformer {
             if (timer.isPresent()) {
                 timers.put(method.getName(), timer);
                 logger.debug("Registered Timer on {}", method);
-                return timer.getMetric().time();
+                return timer.getMetric();
             } else {
                 return null;
             }
         } else {
-            return annotatedMetric.getMetric().time();
+            return annotatedMetric.getMetric();
         }
     }
 
@@ -0,0 +1,21 @@
+package com.nickrobison.metrician;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Builds {@link MetricianReporter.DataAccumulator}s for the backend tests, without going through the {@link MetricianReporter}
+ */
+public final class DataAccumulators {
+
+    private DataAccumulators() {
+//        Not used
+    }
+
+    public static MetricianReporter.DataAccumulator create(long timestamp, Map<String, Long> counters, Map<String, Double> gauges) {
+        final MetricianReporter.DataAccumulator accumulator = new MetricianReporter.DataAccumulator(timestamp, Optional.empty());
+        counters.forEach(accumulator::addCounter);
+        gauges.forEach(accumulator::addGauge);
+        return accumulator;
+    }
+}
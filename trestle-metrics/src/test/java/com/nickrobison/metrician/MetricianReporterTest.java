@@ -0,0 +1,89 @@
+package com.nickrobison.metrician;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.nickrobison.metrician.instrumentation.StripedHdrReservoir;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for decomposing {@link com.codahale.metrics.Sampling} metrics through the {@link MetricianReporter}
+ */
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class MetricianReporterTest {
+
+    private static final String TIMER = "hdr-timer";
+    private static final List<String> PARTS = Arrays.asList("mean", "median", "stddev", "75perc", "95perc", "98perc", "99perc", "999perc");
+
+    private MetricRegistry registry;
+    private BlockingQueue<MetricianReporter.DataAccumulator> dataQueue;
+    private MetricianReporter reporter;
+
+    @BeforeEach
+    void setup() {
+        registry = new MetricRegistry();
+        dataQueue = new LinkedBlockingQueue<>();
+    }
+
+    @AfterEach
+    void teardown() {
+        reporter.close();
+    }
+
+    @Test
+    void testHdrTimerParts() {
+        reporter = createReporter(new MetricsDecomposer(new HashMap<>(), new ArrayList<>()));
+        final Timer timer = registry.register(TIMER, new Timer(new StripedHdrReservoir(4, 3)));
+        for (int i = 1; i <= 1000; i++) {
+            timer.update(i, TimeUnit.MILLISECONDS);
+        }
+
+        reporter.report();
+        final Map<String, Double> gauges = Objects.requireNonNull(dataQueue.poll(), "Should report timer").getGauges();
+//        Every part should come from the same snapshot, rather than the first part resetting the reservoir for the rest
+        for (final String part : PARTS) {
+            assertTrue(gauges.getOrDefault(String.format("%s.%s", TIMER, part), 0.0) > 0, String.format("Should report %s", part));
+        }
+        assertAll(() -> assertEquals(TimeUnit.MILLISECONDS.toNanos(500), gauges.get(TIMER + ".mean"), TimeUnit.MILLISECONDS.toNanos(5), "Should have mean of all values"),
+                () -> assertEquals(TimeUnit.MILLISECONDS.toNanos(500), gauges.get(TIMER + ".median"), TimeUnit.MILLISECONDS.toNanos(5), "Should have median of all values"),
+                () -> assertEquals(TimeUnit.MILLISECONDS.toNanos(990), gauges.get(TIMER + ".99perc"), TimeUnit.MILLISECONDS.toNanos(5), "Should have 99th percentile of all values"),
+                () -> assertTrue(gauges.get(TIMER + ".75perc") <= gauges.get(TIMER + ".99perc"), "Percentiles should be ordered"));
+
+//        The next report should only cover the values recorded since the last one
+        timer.update(2, TimeUnit.SECONDS);
+        reporter.report();
+        final Map<String, Double> next = Objects.requireNonNull(dataQueue.poll(), "Should report timer").getGauges();
+        assertAll(() -> assertEquals(TimeUnit.SECONDS.toNanos(2), next.get(TIMER + ".mean"), TimeUnit.MILLISECONDS.toNanos(20), "Should only have new value"),
+                () -> assertEquals(TimeUnit.SECONDS.toNanos(2), next.get(TIMER + ".median"), TimeUnit.MILLISECONDS.toNanos(20), "Should only have new value"));
+    }
+
+    @Test
+    void testFilteredParts() {
+        final Map<String, Set<String>> composition = new HashMap<>();
+        composition.put(TIMER, new HashSet<>(Arrays.asList("median", "99perc")));
+        reporter = createReporter(new MetricsDecomposer(composition, new ArrayList<>()));
+        final Timer timer = registry.register(TIMER, new Timer(new StripedHdrReservoir(4, 3)));
+        for (int i = 1; i <= 100; i++) {
+            timer.update(i, TimeUnit.MILLISECONDS);
+        }
+
+        reporter.report();
+        final Map<String, Double> gauges = Objects.requireNonNull(dataQueue.poll(), "Should report timer").getGauges();
+        assertAll(() -> assertEquals(new HashSet<>(Arrays.asList(TIMER + ".median", TIMER + ".99perc")), gauges.keySet(), "Should only report allowed parts"),
+                () -> assertEquals(TimeUnit.MILLISECONDS.toNanos(50), gauges.get(TIMER + ".median"), TimeUnit.MILLISECONDS.toNanos(1), "Should have median"),
+                () -> assertEquals(TimeUnit.MILLISECONDS.toNanos(99), gauges.get(TIMER + ".99perc"), TimeUnit.MILLISECONDS.toNanos(1), "Should have 99th percentile"));
+    }
+
+    private MetricianReporter createReporter(MetricsDecomposer decomposer) {
+        return new MetricianReporter(registry, dataQueue, Optional.empty(), decomposer, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,149 @@
+package com.nickrobison.metrician.backends;
+
+import com.nickrobison.metrician.DataAccumulators;
+import com.nickrobison.metrician.MetricianReporter;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reading and writing metrics through the {@link ColumnarBackend}
+ */
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class ColumnarBackendTest {
+
+    private static final String COUNTER = "test-counter";
+    private static final String GAUGE = "test-gauge";
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private Path directory;
+    private BlockingQueue<MetricianReporter.DataAccumulator> dataQueue;
+    private ColumnarBackend backend;
+    private boolean shutdown;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("columnar-backend-test");
+        dataQueue = new LinkedBlockingQueue<>();
+        shutdown = false;
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        if (!shutdown) {
+            backend.shutdown();
+        }
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testReadValues() {
+        backend = createBackend();
+        backend.registerCounter(COUNTER, null);
+        backend.registerGauge(GAUGE, null);
+        final long start = System.currentTimeMillis() - MINUTE;
+        for (int i = 0; i < 10; i++) {
+            backend.appendValues(DataAccumulators.create(start + i * 500, Collections.singletonMap(COUNTER, (long) i), Collections.singletonMap(GAUGE, i * 0.5)));
+        }
+
+        final Map<Long, Object> counters = backend.getMetricsValues(COUNTER, start, null);
+        final Map<Long, Object> gauges = backend.getMetricsValues(GAUGE, start + 2_000, start + 3_000);
+        assertAll(() -> assertEquals(10, counters.size(), "Should read every counter value"),
+                () -> assertEquals(9L, counters.get(start + 4_500), "Should read counters as longs"),
+                () -> assertEquals(3, gauges.size(), "Should only read gauge values in range"),
+                () -> assertEquals(2.0, gauges.get(start + 2_000), "Should read gauges as doubles"),
+                () -> assertEquals(2, backend.getDecomposedMetrics().size(), "Should register both metrics"),
+                () -> assertTrue(backend.getMetricsValues("missing", start, null).isEmpty(), "Should not read unregistered metric"));
+
+        final List<MetricianExportedValue> exported = backend.exportMetrics(Collections.singletonList(GAUGE), start, null);
+        assertAll(() -> assertEquals(10, exported.size(), "Should export every gauge value"),
+                () -> assertTrue(exported.stream().allMatch(value -> value.getMetric().equals(GAUGE)), "Should only export the gauge"));
+    }
+
+    @Test
+    void testLazySegments() throws IOException {
+        backend = createBackend();
+        backend.registerGauge(GAUGE, null);
+        assertEquals(0, countSegments(), "Should not create segments for registered metrics");
+
+        final long now = System.currentTimeMillis();
+//        Start at the top of the previous hour, so the next minute doesn't also complete an hour roll-up
+        final long bucket = now - Math.floorMod(now, HOUR) - HOUR;
+        for (int i = 0; i < 10; i++) {
+            backend.appendValues(DataAccumulators.create(bucket + i * 1_000, Collections.emptyMap(), Collections.singletonMap(GAUGE, (double) i)));
+        }
+        assertEquals(1, countSegments(), "Should only create the raw segment");
+
+//        Moving into the next minute completes the first roll-up
+        backend.appendValues(DataAccumulators.create(bucket + MINUTE, Collections.emptyMap(), Collections.singletonMap(GAUGE, 10.0)));
+        assertEquals(2, countSegments(), "Should create the minute segment");
+    }
+
+    @Test
+    void testClearsSegmentsOnStartup() throws IOException {
+        final Path oldSegment = Files.createFile(directory.resolve("1-raw-0.col"));
+        final Path otherFile = Files.createFile(directory.resolve("other.txt"));
+        backend = createBackend();
+        assertAll(() -> assertFalse(Files.exists(oldSegment), "Should remove segments from previous run"),
+                () -> assertTrue(Files.exists(otherFile), "Should leave other files alone"));
+    }
+
+    @Test
+    void testExportOnShutdown() throws Exception {
+        final Path exportFile = Files.createTempFile("columnar-backend-test", ".csv");
+        try {
+            backend = createBackend();
+            final long start = System.currentTimeMillis() - MINUTE;
+            for (int i = 0; i < 5; i++) {
+                dataQueue.put(DataAccumulators.create(start + i * 500, Collections.singletonMap(COUNTER, (long) i), Collections.emptyMap()));
+            }
+            backend.shutdown(exportFile.toFile());
+            shutdown = true;
+
+            final List<String> lines = Files.readAllLines(exportFile);
+//            Header, plus a line for each value
+            assertAll(() -> assertEquals(6, lines.size(), "Should drain the queue, and export every value"),
+                    () -> assertEquals(String.format("%s,%d,%d", COUNTER, start + 2_000, 4), lines.get(5), "Should export counters as longs"),
+                    () -> assertEquals(0, countSegments(), "Should remove segments on shutdown"));
+        } finally {
+            Files.deleteIfExists(exportFile);
+        }
+    }
+
+    private ColumnarBackend createBackend() {
+        final Config config = ConfigFactory.load().getConfig("trestle.metrics.backend")
+                .withValue("columnar.directory", ConfigValueFactory.fromAnyRef(directory.toString()))
+                .withValue("columnar.segmentSize", ConfigValueFactory.fromAnyRef("4KB"))
+                .withValue("threadWait", ConfigValueFactory.fromAnyRef(1_000));
+        return new ColumnarBackend(dataQueue, config);
+    }
+
+    private long countSegments() throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(".col"))
+                    .count();
+        }
+    }
+}
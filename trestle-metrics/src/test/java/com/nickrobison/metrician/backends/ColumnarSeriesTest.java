@@ -0,0 +1,130 @@
+package com.nickrobison.metrician.backends;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ColumnarSegment} encoding and the {@link ColumnarSeries} roll-ups
+ */
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class ColumnarSeriesTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long[] RETENTION = {HOUR, 24 * HOUR, 365 * 24 * HOUR};
+
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("columnar-test");
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testSegmentRoundTrip() {
+        final ColumnarSegment segment = ColumnarSegment.create(directory.resolve("segment.col"), 4096);
+        final Map<Long, Double> expected = new LinkedHashMap<>();
+        long timestamp = 1_500_000_000_000L;
+        int appended = 0;
+        while (segment.append(timestamp, appended % 10 == 0 ? appended * 1.5 : appended / 3.0)) {
+            expected.put(timestamp, appended % 10 == 0 ? appended * 1.5 : appended / 3.0);
+//            Mostly regular intervals, with some jitter
+            timestamp += appended % 7 == 0 ? 517 : 500;
+            appended++;
+        }
+        final int points = appended;
+        assertAll(() -> assertEquals(points, segment.getCount(), "Should have all the points"),
+                () -> assertTrue(segment.getEncodedSize() <= 4096, "Should fit in the segment"),
+                () -> assertTrue(points > 4096 / 16, "Should be smaller than the raw values"));
+
+        final Map<Long, Double> actual = new LinkedHashMap<>();
+        segment.read(Long.MIN_VALUE, Long.MAX_VALUE, actual::put);
+        assertEquals(expected, actual, "Should decode the same values");
+
+        final List<Long> ranged = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>(expected.keySet());
+        segment.read(timestamps.get(10), timestamps.get(19), (ts, value) -> ranged.add(ts));
+        assertEquals(timestamps.subList(10, 20), ranged, "Should only read values in range");
+        segment.delete();
+    }
+
+    @Test
+    void testRollUps() {
+        final ColumnarSeries gauge = new ColumnarSeries("gauge", 1, false, directory, 1024, RETENTION);
+        final ColumnarSeries counter = new ColumnarSeries("counter", 2, true, directory, 1024, RETENTION);
+//        Two minutes of values, every 15 seconds
+        for (int i = 0; i < 9; i++) {
+            gauge.append(i * 15_000L, i);
+            counter.append(i * 15_000L, i * 10);
+        }
+
+        final Map<Long, Double> gaugeMinutes = new LinkedHashMap<>();
+        gauge.read(ColumnarSeries.Tier.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE, gaugeMinutes::put);
+        assertEquals(Map.of(0L, 1.5, MINUTE, 5.5), gaugeMinutes, "Gauges should roll up to the mean of each completed minute");
+
+        final Map<Long, Double> counterMinutes = new LinkedHashMap<>();
+        counter.read(ColumnarSeries.Tier.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE, counterMinutes::put);
+        assertEquals(Map.of(0L, 30.0, MINUTE, 70.0), counterMinutes, "Counters should roll up to the last value of each completed minute");
+
+        final List<Double> raw = new ArrayList<>();
+        gauge.read(ColumnarSeries.Tier.RAW, Long.MIN_VALUE, Long.MAX_VALUE, (ts, value) -> raw.add(value));
+        assertEquals(9, raw.size(), "Should have all the raw values");
+
+//        Out of order values should be dropped
+        gauge.append(0, 100);
+        final List<Double> dropped = new ArrayList<>();
+        gauge.read(ColumnarSeries.Tier.RAW, 0, 0, (ts, value) -> dropped.add(value));
+        assertEquals(List.of(0.0), dropped, "Should not overwrite existing value");
+        gauge.close();
+        counter.close();
+    }
+
+    @Test
+    void testTierSelectionAndExpiry() {
+        final long now = 48 * HOUR;
+        final ColumnarSeries series = new ColumnarSeries("expiry", 3, false, directory, 256, RETENTION);
+        assertAll(() -> assertEquals(ColumnarSeries.Tier.RAW, series.selectTier(now - MINUTE, now)),
+                () -> assertEquals(ColumnarSeries.Tier.MINUTE, series.selectTier(now - 2 * HOUR, now)),
+                () -> assertEquals(ColumnarSeries.Tier.HOUR, series.selectTier(now - 25 * HOUR, now)),
+                () -> assertEquals(ColumnarSeries.Tier.HOUR, series.selectTier(0, now + 400 * 24 * HOUR)));
+
+//        One value per minute, for two days, spread across many small segments
+        for (long timestamp = 0; timestamp <= now; timestamp += MINUTE) {
+            series.append(timestamp, 1.0);
+        }
+        series.expire(now);
+
+        final List<Long> raw = new ArrayList<>();
+        series.read(ColumnarSeries.Tier.RAW, Long.MIN_VALUE, Long.MAX_VALUE, (ts, value) -> raw.add(ts));
+        assertFalse(raw.isEmpty(), "Should keep recent raw values");
+        assertTrue(raw.get(0) >= now - HOUR - 256 * MINUTE, "Should drop expired raw segments");
+
+        final List<Long> hours = new ArrayList<>();
+        series.read(now - 30 * HOUR, now, now, (ts, value) -> hours.add(ts));
+        assertEquals(now - 30 * HOUR, (long) hours.get(0), "Should read older values from the hour tier");
+        assertEquals(HOUR, hours.get(1) - hours.get(0), "Should have hourly resolution");
+        series.close();
+    }
+}
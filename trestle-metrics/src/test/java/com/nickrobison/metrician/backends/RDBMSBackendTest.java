@@ -0,0 +1,195 @@
+package com.nickrobison.metrician.backends;
+
+import com.nickrobison.metrician.DataAccumulators;
+import com.nickrobison.metrician.MetricianReporter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the batched writes of the {@link RDBMSBackend}, using an H2 database
+ */
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class RDBMSBackendTest {
+
+    private static final String COUNTER = "test-counter";
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    private BlockingQueue<MetricianReporter.DataAccumulator> dataQueue;
+    private TestBackend backend;
+    private boolean shutdown;
+
+    @BeforeEach
+    void setup() {
+        dataQueue = new LinkedBlockingQueue<>();
+        backend = new TestBackend(dataQueue);
+        shutdown = false;
+    }
+
+    @AfterEach
+    void teardown() {
+        backend.release();
+        if (shutdown) {
+            backend.ds.close();
+        } else {
+            backend.shutdown();
+        }
+    }
+
+    @Test
+    void testFlushOnBatchSize() throws Exception {
+//        Hold the event thread on the first report, so the rest pile up in the queue
+        dataQueue.put(createReport(0));
+        assertTrue(backend.holding.await(10, TimeUnit.SECONDS), "Should start processing first report");
+        final int reports = 2 * backend.batchSize + 5;
+        for (int i = 1; i <= reports; i++) {
+            dataQueue.put(createReport(i));
+        }
+        backend.release();
+
+        awaitCount(reports + 1);
+        assertAll(() -> assertEquals(Arrays.asList(1, backend.batchSize, backend.batchSize, 5), backend.batches, "Should write full batches, then the remainder"),
+                () -> assertEquals(reports + 1, countValues("counters"), "Should write every value"),
+                () -> assertEquals(0, backend.getDroppedValues(), "Should not drop any values"));
+    }
+
+    @Test
+    void testFlushOnShutdown() throws Exception {
+        final Path exportFile = Files.createTempFile("rdbms-backend-test", ".csv");
+        try {
+            dataQueue.put(createReport(0));
+            assertTrue(backend.holding.await(10, TimeUnit.SECONDS), "Should start processing first report");
+            for (int i = 1; i <= 10; i++) {
+                dataQueue.put(createReport(i));
+            }
+
+//            Shutdown while the first report is still being written, the rest of the queue should be drained before the database is dropped
+            final Thread shutdownThread = new Thread(() -> backend.shutdown(exportFile.toFile()));
+            shutdownThread.start();
+            final long deadline = System.nanoTime() + TIMEOUT;
+            while (!backend.eventThread.isInterrupted() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            backend.release();
+            shutdownThread.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT));
+            shutdown = true;
+
+            assertAll(() -> assertFalse(shutdownThread.isAlive(), "Should finish shutting down"),
+                    () -> assertFalse(backend.eventThread.isAlive(), "Should stop event thread"),
+                    () -> assertEquals(Arrays.asList(1, 10), backend.batches, "Should drain remaining reports in a single batch"),
+                    () -> assertEquals(0, backend.getDroppedValues(), "Should not drop any values"),
+//                    Header, plus a line for each value
+                    () -> assertEquals(12, Files.readAllLines(exportFile).size(), "Should export every value"));
+        } finally {
+            Files.deleteIfExists(exportFile);
+        }
+    }
+
+    @Test
+    void testRollbackPartialBatch() throws Exception {
+        backend.release();
+//        The counters are valid, but the second gauge violates the primary key, so nothing from the batch should be written
+        final List<MetricianMetricValue> events = Arrays.asList(
+                new MetricianMetricValue<>(MetricianMetricValue.ValueType.COUNTER, 1L, 1, 1L),
+                new MetricianMetricValue<>(MetricianMetricValue.ValueType.COUNTER, 1L, 2, 2L),
+                new MetricianMetricValue<>(MetricianMetricValue.ValueType.GAUGE, 2L, 1, 1.0),
+                new MetricianMetricValue<>(MetricianMetricValue.ValueType.GAUGE, 2L, 1, 2.0));
+        backend.insertValues(events);
+        assertAll(() -> assertEquals(0, countValues("counters"), "Should roll back counters"),
+                () -> assertEquals(0, countValues("gauges"), "Should roll back gauges"),
+                () -> assertEquals(4, backend.getDroppedValues(), "Should drop the entire batch"));
+
+//        The connection should be usable for the next batch
+        backend.insertValues(Collections.singletonList(new MetricianMetricValue<>(MetricianMetricValue.ValueType.COUNTER, 1L, 3, 3L)));
+        assertAll(() -> assertEquals(1, countValues("counters"), "Should write next batch"),
+                () -> assertEquals(4, backend.getDroppedValues(), "Should not drop next batch"));
+    }
+
+    private void awaitCount(int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TIMEOUT;
+        while (backend.batches.stream().mapToInt(Integer::intValue).sum() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+//        Wait for the last insert to finish
+        while (backend.inserted.get() < backend.batches.size() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private long countValues(String table) throws SQLException {
+        try (final Connection connection = backend.getConnection();
+             final PreparedStatement statement = connection.prepareStatement(String.format("SELECT COUNT(*) FROM %s", table));
+             final ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static MetricianReporter.DataAccumulator createReport(long timestamp) {
+        return DataAccumulators.create(timestamp, Collections.singletonMap(COUNTER, timestamp), Collections.emptyMap());
+    }
+
+    /**
+     * {@link H2Backend} with its own database, which records the size of each batch, and can hold the event thread on its first batch
+     */
+    private static class TestBackend extends H2Backend {
+
+        private static final AtomicInteger databases = new AtomicInteger();
+
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private final AtomicInteger inserted = new AtomicInteger();
+        private final CountDownLatch holding = new CountDownLatch(1);
+        private volatile boolean hold = true;
+
+        TestBackend(BlockingQueue<MetricianReporter.DataAccumulator> dataQueue) {
+            super(dataQueue);
+        }
+
+        @Override
+        HikariDataSource setupDataSource() {
+            final HikariConfig hikariConfig = new HikariConfig();
+            hikariConfig.setAutoCommit(true);
+            hikariConfig.setJdbcUrl(String.format("jdbc:h2:mem:rdbms-backend-test-%d;DB_CLOSE_DELAY=-1", databases.incrementAndGet()));
+            return new HikariDataSource(hikariConfig);
+        }
+
+        @Override
+        void insertValues(List<MetricianMetricValue> events) {
+            if (this.batches.isEmpty() && this.hold) {
+                this.holding.countDown();
+//                Spin, rather than block, so an interrupt is left for the event thread to handle
+                final long deadline = System.nanoTime() + TIMEOUT;
+                while (this.hold && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+            }
+            this.batches.add(events.size());
+            super.insertValues(events);
+            this.inserted.incrementAndGet();
+        }
+
+        void release() {
+            this.hold = false;
+        }
+    }
+}
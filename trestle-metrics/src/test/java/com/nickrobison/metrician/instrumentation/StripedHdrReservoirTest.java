@@ -0,0 +1,60 @@
+package com.nickrobison.metrician.instrumentation;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for recording values into the {@link StripedHdrReservoir}
+ */
+public class StripedHdrReservoirTest {
+
+    @Test
+    void testSnapshot() {
+        final StripedHdrReservoir reservoir = new StripedHdrReservoir(4, 3);
+        for (int i = 1; i <= 1000; i++) {
+            reservoir.update(i);
+        }
+        final Snapshot snapshot = reservoir.getSnapshot();
+        assertAll(() -> assertEquals(1000, snapshot.size(), "Should have all the values"),
+                () -> assertEquals(1, snapshot.getMin(), "Should have min value"),
+                () -> assertEquals(1000, snapshot.getMax(), "Should have max value"),
+                () -> assertEquals(500.5, snapshot.getMean(), 0.5, "Should have mean value"),
+                () -> assertEquals(500, snapshot.getMedian(), 1, "Should have median value"),
+                () -> assertEquals(990, snapshot.get99thPercentile(), 1, "Should have 99th percentile"),
+                () -> assertEquals(1000, snapshot.getValues().length, "Should expand all the values"),
+                () -> assertEquals(1000, reservoir.size(), "Should report size of latest snapshot"));
+
+        final Snapshot empty = reservoir.getSnapshot();
+        assertAll(() -> assertEquals(0, empty.size(), "Should reset after each snapshot"),
+                () -> assertEquals(0, empty.getMax(), "Should have no max value"));
+    }
+
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        final Timer timer = new Timer(new StripedHdrReservoir(8, 2));
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    timer.update(j, TimeUnit.MICROSECONDS);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final Snapshot snapshot = timer.getSnapshot();
+        assertAll(() -> assertEquals(80_000, timer.getCount(), "Timer should count every call"),
+                () -> assertEquals(80_000, snapshot.size(), "Should merge values from every stripe"),
+                () -> assertEquals(TimeUnit.MICROSECONDS.toNanos(9_999), snapshot.getMax(), TimeUnit.MICROSECONDS.toNanos(100), "Should have max value"));
+    }
+}
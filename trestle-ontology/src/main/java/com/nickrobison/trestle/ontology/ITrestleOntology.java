@@ -4,6 +4,7 @@ import com.codahale.metrics.annotation.Gauge;
 import com.nickrobison.trestle.ontology.types.TrestleResult;
 import com.nickrobison.trestle.ontology.types.TrestleResultSet;
 import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
 import com.nickrobison.trestle.transactions.TrestleTransaction;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
@@ -165,6 +166,15 @@ public interface ITrestleOntology {
      */
     Completable writeIndividualObjectProperty(OWLObjectPropertyAssertionAxiom property);
 
+    /**
+     * Write a batch of {@link OWLAxiom}s to the ontology, in a single operation.
+     * Supports {@link OWLClassAssertionAxiom}, {@link OWLSubClassOfAxiom}, {@link OWLDataPropertyAssertionAxiom} and {@link OWLObjectPropertyAssertionAxiom}
+     *
+     * @param axioms - {@link Collection} of {@link OWLAxiom}s to write
+     * @return - {@link Completable} when finished
+     */
+    Completable writeAxioms(Collection<? extends OWLAxiom> axioms);
+
     /**
      * Removes a given OWL individual and all related assertions
      *
@@ -408,6 +418,26 @@ public interface ITrestleOntology {
      */
     Flowable<TrestleResult> executeSPARQLResults(String queryString);
 
+    /**
+     * Execute a parameterized SPARQL query against the ontology.
+     * The query shape is prepared once and cached, with the template values provided as bindings.
+     *
+     * @param template - {@link QueryTemplate} to execute
+     * @return - {@link Flowable} of {@link TrestleResult} for given query
+     */
+    Flowable<TrestleResult> executeSPARQLResults(QueryTemplate template);
+
+    /**
+     * Execute a parameterized SPARQL query against the ontology, using the connection held by the given transaction.
+     * The thread transaction state is not used, so the query can be executed from any thread,
+     * and the transaction is not committed when the query completes.
+     *
+     * @param template    - {@link QueryTemplate} to execute
+     * @param transaction - {@link TrestleTransaction} to execute query within, usually a snapshot transaction
+     * @return - {@link Flowable} of {@link TrestleResult} for given query
+     */
+    Flowable<TrestleResult> executeSPARQLResults(QueryTemplate template, TrestleTransaction transaction);
+
     /**
      * Execute a writing SPARQL query, without returning a {@link TrestleResultSet}
      *
@@ -441,6 +471,17 @@ public interface ITrestleOntology {
      */
     TrestleTransaction createandOpenNewTransaction(boolean write);
 
+    /**
+     * Create a new read-only snapshot {@link TrestleTransaction}
+     * Unlike {@link #createandOpenNewTransaction(boolean)}, the transaction is not bound to the current thread,
+     * it holds its own connection, which sees a consistent snapshot of the repository until the transaction is committed or aborted.
+     * The transaction can be used, committed or aborted from any thread, but only from one thread at a time.
+     * Snapshot transactions are not included in the open read/write transaction counts.
+     *
+     * @return - {@link TrestleTransaction}
+     */
+    TrestleTransaction createSnapshotTransaction();
+
     /**
      * Try to commit the current thread transaction, if the object owns the currently open transaction
      *
@@ -0,0 +1,99 @@
+package com.nickrobison.trestle.ontology;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.parser.ParsedTupleQuery;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailTupleQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of parsed {@link QueryTemplate}s, keyed by template key.
+ * <p>
+ * For {@link SailRepositoryConnection}s (e.g. the embedded stores), each call to {@link #getQuery(RepositoryConnection, QueryTemplate)} builds a new {@link TupleQuery} from the cached {@link ParsedTupleQuery}.
+ * The returned query is owned by the caller, so concurrent (or nested) executions of the same template never share bindings,
+ * and nothing needs to be cleaned up when the connection is closed.
+ * This is safe because the Sail clones the query algebra before optimizing and evaluating it.
+ * <p>
+ * Remote connections only send the query string to the server, so there's nothing to parse locally, and they prepare a new query on each call.
+ */
+@ThreadSafe
+class PreparedQueryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreparedQueryCache.class);
+
+    private final Cache<String, ParsedTupleQuery> parsedQueries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a new cache
+     *
+     * @param maxQueries - maximum number of parsed queries to cache
+     */
+    PreparedQueryCache(long maxQueries) {
+        this.parsedQueries = CacheBuilder.newBuilder()
+                .maximumSize(maxQueries)
+                .build();
+    }
+
+    /**
+     * Get a new {@link TupleQuery} for the given template, parsing the template if it's not already cached.
+     *
+     * @param connection - {@link RepositoryConnection} to prepare query on
+     * @param template   - {@link QueryTemplate} to prepare
+     * @return - {@link TupleQuery} without any bindings
+     */
+    TupleQuery getQuery(RepositoryConnection connection, QueryTemplate template) {
+        if (!(connection instanceof SailRepositoryConnection)) {
+            return connection.prepareTupleQuery(QueryLanguage.SPARQL, template.getQueryString());
+        }
+        @Nullable ParsedTupleQuery parsed = this.parsedQueries.getIfPresent(template.getKey());
+        if (parsed == null) {
+            this.misses.increment();
+            logger.trace("Parsing query {}", template.getKey());
+            parsed = QueryParserUtil.parseTupleQuery(QueryLanguage.SPARQL, template.getQueryString(), null);
+            this.parsedQueries.put(template.getKey(), parsed);
+        } else {
+            this.hits.increment();
+        }
+        return new SharedSailTupleQuery(parsed, (SailRepositoryConnection) connection);
+    }
+
+    long getHitCount() {
+        return this.hits.sum();
+    }
+
+    long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Number of parsed queries
+     *
+     * @return - number of cached queries
+     */
+    long size() {
+        return this.parsedQueries.size();
+    }
+
+    /**
+     * {@link SailTupleQuery} built from an already parsed query, the same as {@link SailRepositoryConnection#prepareTupleQuery(QueryLanguage, String)}
+     */
+    private static class SharedSailTupleQuery extends SailTupleQuery {
+
+        SharedSailTupleQuery(ParsedTupleQuery tupleQuery, SailRepositoryConnection connection) {
+            super(tupleQuery, connection);
+        }
+    }
+}
@@ -1,23 +1,34 @@
 package com.nickrobison.trestle.ontology;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.annotation.Gauge;
 import com.nickrobison.trestle.ontology.types.TrestleResult;
 import com.nickrobison.trestle.ontology.utils.RDF4JLiteralFactory;
 import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
 import com.nickrobison.trestle.transactions.TrestleTransaction;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Single;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
 import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -38,6 +49,7 @@ import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.nickrobison.trestle.ontology.utils.ToDataPropertyAssertionAxiom.toDataPropertyAssertionAxiom;
 
@@ -57,6 +69,9 @@ public abstract class RDF4JOntology extends TransactingOntology {
     protected final OWLDataFactory df;
     protected final QueryBuilder qb;
     protected final RDF4JLiteralFactory lf;
+    protected final PreparedQueryCache preparedQueries;
+    protected final RepositoryConnectionPool connectionPool;
+    private final AtomicInteger openSnapshotTransactions = new AtomicInteger();
 
     protected ThreadLocal<@Nullable RepositoryConnection> tc = ThreadLocal.withInitial(() -> null);
 
@@ -72,6 +87,15 @@ public abstract class RDF4JOntology extends TransactingOntology {
         this.vf = factory.getValueFactory();
         this.qb = new QueryBuilder(QueryBuilder.Dialect.SESAME, this.pm);
         this.lf = factory;
+        final Config queryConfig = ConfigFactory.load().getConfig("trestle.ontology.preparedQueries");
+        this.preparedQueries = new PreparedQueryCache(queryConfig.getLong("maxQueries"));
+        final Config poolConfig = ConfigFactory.load().getConfig("trestle.ontology.connectionPool");
+        final MetricRegistry registry = SharedMetricRegistries.getOrCreate(ConfigFactory.load().getString("trestle.metrics.registryName"));
+        this.connectionPool = new RepositoryConnectionPool(repository,
+                poolConfig.getInt("size"),
+                poolConfig.getDuration("acquireTimeout").toMillis(),
+                registry.histogram("trestle-connection-wait-time"),
+                registry.histogram("trestle-transaction-duration"));
     }
 
     @Override
@@ -228,6 +252,60 @@ public abstract class RDF4JOntology extends TransactingOntology {
                 .doOnComplete(() -> this.commitTransaction(true));
     }
 
+    @Override
+    public Completable writeAxioms(Collection<? extends OWLAxiom> axioms) {
+        final Model model;
+        try {
+            model = buildModel(axioms);
+        } catch (IllegalArgumentException e) {
+            return Completable.error(e);
+        }
+        this.openTransaction(true);
+        return Completable.fromRunnable(() -> {
+            logger.debug("Writing {} statements", model.size());
+            getThreadConnection().add(model);
+        })
+                .doOnError(error -> this.unlockAndAbort(true))
+                .doOnComplete(() -> this.commitTransaction(true));
+    }
+
+    /**
+     * Convert the given {@link OWLAxiom}s into an RDF4J {@link Model}
+     *
+     * @param axioms - {@link Collection} of {@link OWLAxiom}s to convert
+     * @return - {@link Model} of statements
+     * @throws IllegalArgumentException - if an unsupported axiom type is provided
+     */
+    protected Model buildModel(Collection<? extends OWLAxiom> axioms) {
+        final Model model = new LinkedHashModel(axioms.size());
+        for (final OWLAxiom axiom : axioms) {
+            if (axiom instanceof OWLClassAssertionAxiom) {
+                final OWLClassAssertionAxiom classAssertion = (OWLClassAssertionAxiom) axiom;
+                model.add(vf.createIRI(getFullIRIString(classAssertion.getIndividual().asOWLNamedIndividual())),
+                        RDF.TYPE,
+                        vf.createIRI(getFullIRIString(classAssertion.getClassExpression().asOWLClass())));
+            } else if (axiom instanceof OWLSubClassOfAxiom) {
+                final OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+                model.add(vf.createIRI(getFullIRIString(subClassOf.getSubClass().asOWLClass())),
+                        RDFS.SUBCLASSOF,
+                        vf.createIRI(getFullIRIString(subClassOf.getSuperClass().asOWLClass())));
+            } else if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+                final OWLDataPropertyAssertionAxiom dataProperty = (OWLDataPropertyAssertionAxiom) axiom;
+                model.add(vf.createIRI(getFullIRIString(dataProperty.getSubject().asOWLNamedIndividual())),
+                        vf.createIRI(getFullIRIString(dataProperty.getProperty().asOWLDataProperty())),
+                        this.lf.createLiteral(dataProperty.getObject()));
+            } else if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+                final OWLObjectPropertyAssertionAxiom objectProperty = (OWLObjectPropertyAssertionAxiom) axiom;
+                model.add(vf.createIRI(getFullIRIString(objectProperty.getSubject().asOWLNamedIndividual())),
+                        vf.createIRI(getFullIRIString(objectProperty.getProperty().asOWLObjectProperty())),
+                        vf.createIRI(getFullIRIString(objectProperty.getObject().asOWLNamedIndividual())));
+            } else {
+                throw new IllegalArgumentException(String.format("Cannot write axiom of type %s", axiom.getAxiomType()));
+            }
+        }
+        return model;
+    }
+
     @Override
     public Completable removeIndividual(OWLNamedIndividual individual) {
         this.openTransaction(true);
@@ -310,6 +388,7 @@ public abstract class RDF4JOntology extends TransactingOntology {
 
     @Override
     public void close(boolean drop) {
+        this.connectionPool.close();
         this.adminConnection.close();
         repository.shutDown();
         this.closeDatabase(drop);
@@ -501,6 +580,121 @@ public abstract class RDF4JOntology extends TransactingOntology {
         return getFullIRI(owlNamedObject).toString();
     }
 
+    @Override
+    public Flowable<TrestleResult> executeSPARQLResults(QueryTemplate template) {
+        this.openTransaction(false);
+        try {
+            final TupleQuery tupleQuery = this.preparedQueries.getQuery(this.getThreadConnection(), template);
+            template.getBindings().forEach((name, value) -> tupleQuery.setBinding(name, this.buildValue(value)));
+            final TupleQueryResult resultSet = tupleQuery.evaluate();
+            return Flowable.fromIterable(resultSet)
+                    .map(this::buildResult)
+                    .doOnError(error -> this.unlockAndAbort(false))
+                    .doOnComplete(() -> this.commitTransaction(false))
+                    .doFinally(resultSet::close);
+        } catch (Exception e) {
+            this.unlockAndAbort(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public Flowable<TrestleResult> executeSPARQLResults(QueryTemplate template, TrestleTransaction transaction) {
+        final @Nullable RepositoryConnection connection = transaction.getConnection();
+        if (connection == null) {
+            throw new IllegalStateException(String.format("Transaction %s does not have an open connection", transaction.getTransactionID()));
+        }
+        final TupleQuery tupleQuery = this.preparedQueries.getQuery(connection, template);
+        template.getBindings().forEach((name, value) -> tupleQuery.setBinding(name, this.buildValue(value)));
+        final TupleQueryResult resultSet = tupleQuery.evaluate();
+        return Flowable.fromIterable(resultSet)
+                .map(this::buildResult)
+                .doFinally(resultSet::close);
+    }
+
+    @Override
+    public TrestleTransaction createSnapshotTransaction() {
+        final RepositoryConnection connection = this.connectionPool.acquire();
+        try {
+            connection.begin(IsolationLevels.SNAPSHOT_READ);
+        } catch (RuntimeException e) {
+            this.connectionPool.release(connection);
+            throw e;
+        }
+        final TrestleTransaction transaction = new TrestleTransaction(System.nanoTime(), false, true);
+        transaction.setConnection(connection);
+        this.openSnapshotTransactions.incrementAndGet();
+        logger.debug("Opened snapshot transaction {}", transaction.getTransactionID());
+        return transaction;
+    }
+
+    @Override
+    protected void closeSnapshotTransaction(TrestleTransaction transaction, boolean commit) {
+        final @Nullable RepositoryConnection connection = transaction.getConnection();
+        if (connection == null) {
+            logger.warn("Snapshot transaction {} has already been closed", transaction.getTransactionID());
+            return;
+        }
+//        Clear the connection first, so the transaction can't be used after the connection is returned to the pool
+        transaction.setConnection(null);
+        try {
+            if (commit) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+            logger.debug("Closed snapshot transaction {}", transaction.getTransactionID());
+        } finally {
+            this.openSnapshotTransactions.decrementAndGet();
+            this.connectionPool.release(connection);
+        }
+    }
+
+    @Gauge(name = "trestle-open-snapshot-transactions", absolute = true)
+    public int getOpenSnapshotTransactions() {
+        return this.openSnapshotTransactions.get();
+    }
+
+    @Gauge(name = "trestle-connection-pool-leased", absolute = true)
+    public int getLeasedConnectionCount() {
+        return this.connectionPool.getLeasedCount();
+    }
+
+    @Gauge(name = "trestle-connection-pool-idle", absolute = true)
+    public int getIdleConnectionCount() {
+        return this.connectionPool.getIdleCount();
+    }
+
+    @Gauge(name = "trestle-prepared-query-hits", absolute = true)
+    public long getPreparedQueryHits() {
+        return this.preparedQueries.getHitCount();
+    }
+
+    @Gauge(name = "trestle-prepared-query-misses", absolute = true)
+    public long getPreparedQueryMisses() {
+        return this.preparedQueries.getMissCount();
+    }
+
+    @Gauge(name = "trestle-prepared-query-size", absolute = true)
+    public long getPreparedQueryCount() {
+        return this.preparedQueries.size();
+    }
+
+    /**
+     * Convert a {@link QueryTemplate} binding into an RDF4J {@link Value}
+     *
+     * @param primitive - {@link OWLPrimitive} binding value, either an {@link IRI} or an {@link OWLLiteral}
+     * @return - {@link Value}
+     */
+    private Value buildValue(OWLPrimitive primitive) {
+        if (primitive instanceof OWLLiteral) {
+            return this.lf.createLiteral((OWLLiteral) primitive);
+        } else if (primitive instanceof IRI) {
+            return this.vf.createIRI(primitive.toString());
+        }
+        throw new IllegalArgumentException(String.format("Cannot bind %s, only IRIs and Literals are supported", primitive));
+    }
+
     /**
      * Convert an RDF4J {@link BindingSet} to our custom {@link TrestleResult}
      * @param bindingSet - {@link BindingSet} to convert
@@ -564,7 +758,7 @@ public abstract class RDF4JOntology extends TransactingOntology {
         final TrestleTransaction threadTransactionObject = this.getThreadTransactionObject();
         if (threadTransactionObject == null) {
             logger.debug("Thread has no transaction object, getting connection from the pool");
-            this.tc.set(this.repository.getConnection());
+            this.tc.set(this.connectionPool.acquire());
         } else {
             @Nullable final RepositoryConnection connection = threadTransactionObject.getConnection();
             logger.trace("Setting thread connection from transaction object {}", connection);
@@ -573,17 +767,24 @@ public abstract class RDF4JOntology extends TransactingOntology {
     }
 
     /**
-     * Reset thread connection to null
+     * Reset thread connection to null, and return the connection to the pool
      */
     protected void resetThreadConnection() {
         logger.trace("Resetting thread connection");
         @Nullable final RepositoryConnection connection = getThreadConnection();
         if (connection != null) {
-            connection.close();
+            this.connectionPool.release(connection);
         }
         this.tc.remove();
     }
 
+    @Override
+    protected RepositoryConnection acquireOntologyConnection() {
+        final RepositoryConnection connection = this.connectionPool.acquire();
+        logger.trace("Leased ontology connection {}", connection);
+        return connection;
+    }
+
     @Override
     public @NonNull RepositoryConnection getOntologyConnection() {
         final RepositoryConnection connection = this.repository.getConnection();
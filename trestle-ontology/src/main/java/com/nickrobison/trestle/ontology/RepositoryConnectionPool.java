@@ -0,0 +1,176 @@
+package com.nickrobison.trestle.ontology;
+
+import com.codahale.metrics.Histogram;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of {@link RepositoryConnection}s.
+ * Connections are returned to the pool when their transaction is committed or aborted, rather than being closed.
+ * Idle connections are handed out most recently used first, so the pool tends to reuse the same (warm) connections.
+ * <p>
+ * Records how long callers wait for a connection, and how long each connection is leased for (i.e. the transaction duration), both in microseconds.
+ */
+@ThreadSafe
+class RepositoryConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryConnectionPool.class);
+
+    private final Repository repository;
+    private final Semaphore permits;
+    private final long acquireTimeout;
+    private final Deque<RepositoryConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<RepositoryConnection, Long> leased = new ConcurrentHashMap<>();
+    private final Histogram connectionWait;
+    private final Histogram transactionDuration;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a new pool
+     *
+     * @param repository          - {@link Repository} to create connections from
+     * @param size                - maximum number of leased connections
+     * @param acquireTimeout      - maximum time (in ms) to wait for a connection
+     * @param connectionWait      - {@link Histogram} of connection wait times
+     * @param transactionDuration - {@link Histogram} of connection lease times
+     */
+    RepositoryConnectionPool(Repository repository, int size, long acquireTimeout, Histogram connectionWait, Histogram transactionDuration) {
+        this.repository = repository;
+        this.permits = new Semaphore(size, true);
+        this.acquireTimeout = acquireTimeout;
+        this.connectionWait = connectionWait;
+        this.transactionDuration = transactionDuration;
+    }
+
+    /**
+     * Lease a connection from the pool, blocking until one is available
+     *
+     * @return - {@link RepositoryConnection}
+     * @throws IllegalStateException if the pool is closed, or no connection becomes available before the timeout
+     */
+    RepositoryConnection acquire() {
+        if (this.closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+        final long start = System.nanoTime();
+        try {
+            if (!this.permits.tryAcquire(this.acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException(String.format("Timed out after %s ms waiting for a repository connection. %s connections leased", this.acquireTimeout, this.leased.size()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a repository connection", e);
+        }
+        final long acquired = System.nanoTime();
+        this.connectionWait.update(TimeUnit.NANOSECONDS.toMicros(acquired - start));
+
+        try {
+            @Nullable RepositoryConnection connection = pollIdle();
+            if (connection == null) {
+                connection = this.repository.getConnection();
+                logger.debug("Opened new pooled connection {}", connection);
+            }
+            this.leased.put(connection, acquired);
+            return connection;
+        } catch (RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a connection to the pool.
+     * Any transaction left open on the connection is rolled back.
+     * Connections which were not leased from this pool are closed.
+     *
+     * @param connection - {@link RepositoryConnection} to return
+     */
+    void release(RepositoryConnection connection) {
+        final @Nullable Long acquired = this.leased.remove(connection);
+        if (acquired == null) {
+            logger.debug("Connection {} was not leased from the pool, closing", connection);
+            discard(connection);
+            return;
+        }
+        this.transactionDuration.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - acquired));
+        try {
+            if (connection.isActive()) {
+                logger.warn("Connection {} returned with an open transaction, rolling back", connection);
+                connection.rollback();
+            }
+            if (this.closed || !connection.isOpen()) {
+                discard(connection);
+            } else {
+                this.idle.offerFirst(connection);
+            }
+        } catch (RepositoryException e) {
+            logger.error("Unable to return connection {} to the pool", connection, e);
+            discard(connection);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Number of connections currently leased from the pool
+     *
+     * @return - leased connections
+     */
+    int getLeasedCount() {
+        return this.leased.size();
+    }
+
+    /**
+     * Number of open connections waiting in the pool
+     *
+     * @return - idle connections
+     */
+    int getIdleCount() {
+        return this.idle.size();
+    }
+
+    /**
+     * Close the pool, and all the idle connections.
+     * Leased connections are closed as they're returned
+     */
+    void close() {
+        this.closed = true;
+        if (!this.leased.isEmpty()) {
+            logger.warn("Closing connection pool with {} leased connections", this.leased.size());
+        }
+        @Nullable RepositoryConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    private @Nullable RepositoryConnection pollIdle() {
+        @Nullable RepositoryConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            if (connection.isOpen()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private void discard(RepositoryConnection connection) {
+        try {
+            connection.close();
+        } catch (RepositoryException e) {
+            logger.error("Unable to close connection {}", connection, e);
+        }
+    }
+}
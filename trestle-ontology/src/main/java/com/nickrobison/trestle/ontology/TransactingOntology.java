@@ -109,7 +109,7 @@ abstract class TransactingOntology implements ITrestleOntology {
             logger.debug("Unowned transaction, opening new transaction {}", transactionID);
             MDC.put(TRANSACTION, Long.toString(transactionID));
             final TrestleTransaction trestleTransaction = new TrestleTransaction(transactionID, write);
-            trestleTransaction.setConnection(this.getOntologyConnection());
+            trestleTransaction.setConnection(this.acquireOntologyConnection());
             threadTransactionObject.set(trestleTransaction);
             this.openAndLock(write, Boolean.TRUE);
             return trestleTransaction;
@@ -129,6 +129,11 @@ abstract class TransactingOntology implements ITrestleOntology {
      */
     @Override
     public void returnAndCommitTransaction(TrestleTransaction transaction) {
+//        Snapshots aren't bound to the thread, so we don't need to touch the thread state
+        if (transaction.isSnapshot() && transaction.isRoot()) {
+            this.closeSnapshotTransaction(transaction, true);
+            return;
+        }
 //        If the transaction state is inherited, don't commit
         if (transaction.isRoot()) {
             logger.trace("Owns transaction, committing transaction {}", transaction.getTransactionID());
@@ -143,6 +148,10 @@ abstract class TransactingOntology implements ITrestleOntology {
 
     @Override
     public void returnAndAbortTransaction(TrestleTransaction transaction) {
+        if (transaction.isSnapshot() && transaction.isRoot()) {
+            this.closeSnapshotTransaction(transaction, false);
+            return;
+        }
         if (transaction.isRoot()) {
             logger.trace("Transaction object {} owns transaction, aborting", transaction.getTransactionID());
             this.unlockAndAbort(transaction.isWriteTransaction(), Boolean.TRUE);
@@ -156,6 +165,10 @@ abstract class TransactingOntology implements ITrestleOntology {
 
     @Override
     public void returnAndAbortWithForce(TrestleTransaction trestleTransaction) {
+        if (trestleTransaction.isSnapshot()) {
+            this.closeSnapshotTransaction(trestleTransaction, false);
+            return;
+        }
         logger.error("Force aborting the transaction!");
         this.unlockAndAbort(trestleTransaction.isWriteTransaction(), Boolean.TRUE);
         threadTransactionObject.set(null);
@@ -467,6 +480,22 @@ abstract class TransactingOntology implements ITrestleOntology {
      */
     public abstract RepositoryConnection getOntologyConnection();
 
+    /**
+     * Lease a repository connection for a new root TrestleTransaction object
+     * The connection is returned when the transaction is committed or aborted
+     *
+     * @return - RepositoryConnection for transaction
+     */
+    protected abstract RepositoryConnection acquireOntologyConnection();
+
+    /**
+     * Commit or abort a snapshot transaction, and return its connection
+     *
+     * @param transaction - {@link TrestleTransaction} snapshot transaction to close
+     * @param commit      - {@code true} commit the transaction. {@code false} abort the transaction
+     */
+    protected abstract void closeSnapshotTransaction(TrestleTransaction transaction, boolean commit);
+
     protected @Nullable TrestleTransaction getThreadTransactionObject() {
         return this.threadTransactionObject.get();
     }
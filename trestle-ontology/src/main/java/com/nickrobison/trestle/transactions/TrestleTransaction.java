@@ -12,6 +12,7 @@ public class TrestleTransaction {
 
     private final @Nullable Long transactionID;
     private final Boolean writeTransaction;
+    private final boolean snapshot;
     private volatile @Nullable RepositoryConnection connection;
     private final @Nullable TrestleTransaction parent;
     private final String openedThread;
@@ -23,8 +24,22 @@ public class TrestleTransaction {
      * @param write - Is this a write transaction?
      */
     public TrestleTransaction(Long id, boolean write) {
+        this(id, write, false);
+    }
+
+    /**
+     * Create a new TrestleTransaction with the current timestamp, indicating the tread owns the current transaction
+     * Snapshot transactions are read-only, and are not bound to the thread which opened them,
+     * they can be used, committed or aborted from any thread, so long as it's only one thread at a time.
+     *
+     * @param id       - Long of unix timestamp
+     * @param write    - Is this a write transaction?
+     * @param snapshot - Is this a snapshot transaction?
+     */
+    public TrestleTransaction(Long id, boolean write, boolean snapshot) {
         this.transactionID = id;
         this.writeTransaction = write;
+        this.snapshot = snapshot;
         this.openedThread = Thread.currentThread().getName();
         this.parent = null;
     }
@@ -42,6 +57,9 @@ public class TrestleTransaction {
         this.openedThread = Thread.currentThread().getName();
         if (parent != null) {
             this.connection = parent.getConnection();
+            this.snapshot = parent.isSnapshot();
+        } else {
+            this.snapshot = false;
         }
     }
 
@@ -64,6 +82,15 @@ public class TrestleTransaction {
         return writeTransaction;
     }
 
+    /**
+     * Is this a read-only snapshot transaction, which is independent of the thread that opened it?
+     *
+     * @return - {@code true} snapshot transaction
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
     /**
      * Does the object own any transaction?
      * If the transactionID is null, than it doesn't own any transactions at all.
@@ -0,0 +1,108 @@
+package com.nickrobison.trestle.ontology;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
+import com.nickrobison.trestle.transactions.TrestleTransaction;
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.impl.IteratingTupleQueryResult;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTests extends AbstractRDF4JTest {
+
+    @Test
+    void testConnectionReuse() {
+        final Repository poolRepository = Mockito.mock(Repository.class);
+        final RepositoryConnection first = Mockito.mock(RepositoryConnection.class);
+        final RepositoryConnection second = Mockito.mock(RepositoryConnection.class);
+        Mockito.when(first.isOpen()).thenReturn(true);
+        Mockito.when(second.isOpen()).thenReturn(true);
+        Mockito.when(poolRepository.getConnection()).thenReturn(first, second);
+        final Histogram waitTime = new Histogram(new UniformReservoir());
+        final Histogram duration = new Histogram(new UniformReservoir());
+        final RepositoryConnectionPool pool = new RepositoryConnectionPool(poolRepository, 2, 100, waitTime, duration);
+
+        final RepositoryConnection leased = pool.acquire();
+        assertSame(first, leased, "Should open a new connection");
+        pool.release(leased);
+        assertAll(() -> assertSame(first, pool.acquire(), "Should reuse the idle connection"),
+                () -> assertSame(second, pool.acquire(), "Should open another connection"),
+                () -> assertThrows(IllegalStateException.class, pool::acquire, "Should time out when the pool is exhausted"));
+        assertAll(() -> assertEquals(2, pool.getLeasedCount(), "Should have two leased connections"),
+                () -> assertEquals(3, waitTime.getCount(), "Should record each successful wait"),
+                () -> assertEquals(1, duration.getCount(), "Should record each returned connection"));
+
+        pool.release(first);
+        pool.release(second);
+        pool.close();
+        Mockito.verify(first, Mockito.times(1)).close();
+        Mockito.verify(second, Mockito.times(1)).close();
+        assertThrows(IllegalStateException.class, pool::acquire, "Should not lease from a closed pool");
+    }
+
+    @Test
+    void testOpenTransactionRollback() {
+        final Repository poolRepository = Mockito.mock(Repository.class);
+        final RepositoryConnection pooled = Mockito.mock(RepositoryConnection.class);
+        final RepositoryConnection unpooled = Mockito.mock(RepositoryConnection.class);
+        Mockito.when(pooled.isOpen()).thenReturn(true);
+        Mockito.when(pooled.isActive()).thenReturn(true);
+        Mockito.when(poolRepository.getConnection()).thenReturn(pooled);
+        final RepositoryConnectionPool pool = new RepositoryConnectionPool(poolRepository, 1, 100, new Histogram(new UniformReservoir()), new Histogram(new UniformReservoir()));
+
+        pool.release(pool.acquire());
+        Mockito.verify(pooled, Mockito.times(1)).rollback();
+        assertEquals(1, pool.getIdleCount(), "Should return connection to the pool");
+//        Connections which didn't come from the pool should be closed
+        pool.release(unpooled);
+        Mockito.verify(unpooled, Mockito.times(1)).close();
+        assertEquals(1, pool.getIdleCount(), "Should not add unknown connections to the pool");
+    }
+
+    @Test
+    void testSnapshotTransaction() throws ExecutionException, InterruptedException {
+        Mockito.when(repository.getConnection()).thenReturn(connection);
+        final TupleQuery tupleQuery = Mockito.mock(TupleQuery.class);
+        Mockito.when(connection.prepareTupleQuery(Mockito.eq(QueryLanguage.SPARQL), Mockito.anyString())).thenReturn(tupleQuery);
+        Mockito.when(tupleQuery.evaluate()).thenAnswer(answer -> new IteratingTupleQueryResult(Collections.emptyList(), Collections.emptyList()));
+        final int openReads = ontology.getOpenReadTransactions();
+
+        final TrestleTransaction snapshot = ontology.createSnapshotTransaction();
+        Mockito.verify(connection, Mockito.times(1)).begin(IsolationLevels.SNAPSHOT_READ);
+        assertAll(() -> assertTrue(snapshot.isSnapshot(), "Should be a snapshot"),
+                () -> assertEquals(1, ontology.getOpenSnapshotTransactions(), "Should have an open snapshot"),
+                () -> assertEquals(openReads, ontology.getOpenReadTransactions(), "Should not count as a read transaction"));
+
+        final OWLClass owlClass = df.getOWLClass(IRI.create("http://nickrobison.com/test/trestle.owl#", "test-class"));
+        final OWLNamedIndividual individual = df.getOWLNamedIndividual(IRI.create("http://nickrobison.com/test/trestle.owl#", "first"));
+        final QueryTemplate template = ontology.getUnderlyingQueryBuilder().buildObjectHeaderTemplate(owlClass, individual);
+
+//        Query and commit from a different thread
+        CompletableFuture.runAsync(() -> {
+            ontology.executeSPARQLResults(template, snapshot).test().assertComplete().assertNoErrors();
+            ontology.returnAndCommitTransaction(snapshot);
+        }).get();
+
+        Mockito.verify(connection, Mockito.times(1)).commit();
+        Mockito.verify(ontology, Mockito.never()).commitTransaction(Mockito.anyBoolean());
+        assertAll(() -> assertNull(snapshot.getConnection(), "Should release the connection"),
+                () -> assertEquals(0, ontology.getOpenSnapshotTransactions(), "Should not have any open snapshots"));
+//        Closing again should be a no-op
+        ontology.returnAndAbortTransaction(snapshot);
+        Mockito.verify(connection, Mockito.never()).rollback();
+    }
+}
@@ -1,5 +1,6 @@
 package com.nickrobison.trestle.ontology;
 
+import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
@@ -7,9 +8,17 @@ import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.semanticweb.owlapi.model.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * Created by nickrobison on 12/22/20.
  */
@@ -198,4 +207,46 @@ public class IndividualTests extends AbstractRDF4JTest {
         Mockito.verify(ontology, Mockito.times(0)).commitTransaction(Mockito.eq(false));
         Mockito.verify(result, Mockito.times(1)).close();
     }
+
+    @Test
+    void testAxiomBatch() {
+        final OWLNamedIndividual individual = df.getOWLNamedIndividual(IRI.create(":test-individual"));
+        final OWLNamedIndividual other = df.getOWLNamedIndividual(IRI.create(":test-other"));
+        final OWLClass clazz = df.getOWLClass(IRI.create(":test-class"));
+        final OWLDataProperty dataProperty = df.getOWLDataProperty(IRI.create(":test-data"));
+        final OWLObjectProperty objectProperty = df.getOWLObjectProperty(IRI.create(":test-object"));
+
+        ontology.writeAxioms(Arrays.asList(df.getOWLClassAssertionAxiom(clazz, individual),
+                df.getOWLSubClassOfAxiom(clazz, df.getOWLClass(IRI.create(":test-super"))),
+                df.getOWLDataPropertyAssertionAxiom(dataProperty, individual, df.getOWLLiteral(42)),
+                df.getOWLObjectPropertyAssertionAxiom(objectProperty, individual, other)))
+                .test()
+                .assertComplete()
+                .assertNoErrors();
+
+        final ArgumentCaptor<Model> captor = ArgumentCaptor.forClass(Model.class);
+        Mockito.verify(connection, Mockito.times(1)).add(captor.capture());
+        final Model model = captor.getValue();
+        final org.eclipse.rdf4j.model.IRI iIRI = vf.createIRI(ontology.getFullIRIString(individual));
+        assertAll(() -> assertEquals(4, model.size(), "Should have all the statements"),
+                () -> assertTrue(model.contains(iIRI, RDF.TYPE, vf.createIRI(ontology.getFullIRIString(clazz))), "Should have class assertion"),
+                () -> assertTrue(model.contains(iIRI, vf.createIRI(ontology.getFullIRIString(objectProperty)), vf.createIRI(ontology.getFullIRIString(other))), "Should have object assertion"));
+        Mockito.verify(ontology, Mockito.times(1)).commitTransaction(Mockito.eq(true));
+    }
+
+    @Test
+    void testAxiomBatchException() {
+        final OWLNamedIndividual individual = df.getOWLNamedIndividual(IRI.create(":test-individual"));
+        Mockito.doThrow(RepositoryException.class).when(connection).add(Mockito.any(Model.class));
+        ontology.writeAxioms(Collections.singletonList(df.getOWLClassAssertionAxiom(df.getOWLClass(IRI.create(":test-class")), individual)))
+                .test()
+                .assertError(RepositoryException.class);
+        Mockito.verify(ontology, Mockito.times(1)).unlockAndAbort(Mockito.eq(true));
+
+//        Unsupported axioms should fail before opening a transaction
+        ontology.writeAxioms(Collections.singletonList(df.getOWLDeclarationAxiom(individual)))
+                .test()
+                .assertError(IllegalArgumentException.class);
+        Mockito.verify(connection, Mockito.times(1)).add(Mockito.any(Model.class));
+    }
 }
@@ -0,0 +1,129 @@
+package com.nickrobison.trestle.ontology;
+
+import com.nickrobison.trestle.common.StaticIRI;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.impl.IteratingTupleQueryResult;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+public class PreparedQueryTests extends AbstractRDF4JTest {
+
+    private TupleQuery tupleQuery;
+
+    @BeforeEach
+    void setupQuery() {
+        tupleQuery = Mockito.mock(TupleQuery.class);
+        Mockito.when(connection.prepareTupleQuery(Mockito.eq(QueryLanguage.SPARQL), Mockito.anyString())).thenReturn(tupleQuery);
+        Mockito.when(tupleQuery.evaluate()).thenAnswer(answer -> new IteratingTupleQueryResult(Collections.emptyList(), Collections.emptyList()));
+    }
+
+    @Test
+    void testRemoteQueryPreparedPerCall() {
+        final long hits = ontology.getPreparedQueryHits();
+        final long misses = ontology.getPreparedQueryMisses();
+        final OWLClass owlClass = df.getOWLClass(IRI.create("http://nickrobison.com/test/trestle.owl#", "test-class"));
+        final OWLNamedIndividual first = df.getOWLNamedIndividual(IRI.create("http://nickrobison.com/test/trestle.owl#", "first"));
+        final OWLNamedIndividual second = df.getOWLNamedIndividual(IRI.create("http://nickrobison.com/test/trestle.owl#", "second"));
+
+        final QueryTemplate firstQuery = ontology.getUnderlyingQueryBuilder().buildObjectHeaderTemplate(owlClass, first);
+        final QueryTemplate secondQuery = ontology.getUnderlyingQueryBuilder().buildObjectHeaderTemplate(owlClass, second);
+        ontology.executeSPARQLResults(firstQuery).test().assertComplete().assertNoErrors();
+        ontology.executeSPARQLResults(secondQuery).test().assertComplete().assertNoErrors();
+
+//        Remote connections have nothing to parse locally, so each execution gets its own query, which is never shared
+        Mockito.verify(connection, Mockito.times(2)).prepareTupleQuery(Mockito.eq(QueryLanguage.SPARQL), Mockito.eq(firstQuery.getQueryString()));
+        Mockito.verify(tupleQuery, Mockito.never()).clearBindings();
+        assertAll(() -> assertEquals(hits, ontology.getPreparedQueryHits(), "Should not touch the parsed queries"),
+                () -> assertEquals(misses, ontology.getPreparedQueryMisses(), "Should not touch the parsed queries"));
+    }
+
+    @Test
+    void testParsedQueryReuse() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+        final OWLClass owlClass = df.getOWLClass(IRI.create("http://nickrobison.com/test/trestle.owl#", "test-class"));
+        final OWLNamedIndividual first = df.getOWLNamedIndividual(IRI.create("http://nickrobison.com/test/trestle.owl#", "first"));
+        final OWLNamedIndividual second = df.getOWLNamedIndividual(IRI.create("http://nickrobison.com/test/trestle.owl#", "second"));
+        final QueryTemplate firstTemplate = ontology.getUnderlyingQueryBuilder().buildObjectHeaderTemplate(owlClass, first);
+        final QueryTemplate secondTemplate = ontology.getUnderlyingQueryBuilder().buildObjectHeaderTemplate(owlClass, second);
+
+        final SailRepository sailRepository = new SailRepository(new MemoryStore());
+        sailRepository.init();
+        try {
+            try (RepositoryConnection setup = sailRepository.getConnection()) {
+                setup.add(vf.createIRI(first.getIRI().toString()), RDF.TYPE, vf.createIRI(owlClass.getIRI().toString()));
+                setup.add(vf.createIRI(first.getIRI().toString()), vf.createIRI(StaticIRI.temporalExistsFromIRI.toString()), vf.createLiteral("1990-01-01T00:00:00Z"));
+            }
+
+            try (RepositoryConnection queryConnection = sailRepository.getConnection()) {
+                final TupleQuery firstQuery = cache.getQuery(queryConnection, firstTemplate);
+                final TupleQuery secondQuery = cache.getQuery(queryConnection, secondTemplate);
+//                Bind the first query, before evaluating the second, to make sure the bindings aren't shared
+                firstTemplate.getBindings().forEach((name, value) -> firstQuery.setBinding(name, vf.createIRI(((IRI) value).getIRIString())));
+                assertAll(() -> assertNotSame(firstQuery, secondQuery, "Should build a new query for each call"),
+                        () -> assertEquals(0, countResults(secondQuery, secondTemplate), "Should not find the second individual"),
+                        () -> assertEquals(1, QueryResults.asList(firstQuery.evaluate()).size(), "Should find the first individual"),
+                        () -> assertEquals(1, cache.getHitCount(), "Should re-use the parsed query"),
+                        () -> assertEquals(1, cache.getMissCount(), "Should only parse the query once"),
+                        () -> assertEquals(1, cache.size(), "Should have a single parsed query"));
+            }
+        } finally {
+            sailRepository.shutDown();
+        }
+    }
+
+    @Test
+    void testPreparedQuerySurvivesConnection() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+        final OWLClass owlClass = df.getOWLClass(IRI.create("http://nickrobison.com/test/trestle.owl#", "test-class"));
+        final OWLNamedIndividual individual = df.getOWLNamedIndividual(IRI.create("http://nickrobison.com/test/trestle.owl#", "first"));
+        final QueryTemplate template = ontology.getUnderlyingQueryBuilder().buildObjectHeaderTemplate(owlClass, individual);
+
+        final SailRepository sailRepository = new SailRepository(new MemoryStore());
+        sailRepository.init();
+        try {
+            try (RepositoryConnection setup = sailRepository.getConnection()) {
+                setup.add(vf.createIRI(individual.getIRI().toString()), RDF.TYPE, vf.createIRI(owlClass.getIRI().toString()));
+                setup.add(vf.createIRI(individual.getIRI().toString()), vf.createIRI(StaticIRI.temporalExistsFromIRI.toString()), vf.createLiteral("1990-01-01T00:00:00Z"));
+            }
+
+            final TupleQuery firstQuery;
+            try (RepositoryConnection firstConnection = sailRepository.getConnection()) {
+                firstQuery = cache.getQuery(firstConnection, template);
+                assertEquals(1, countResults(firstQuery, template), "Should find the individual");
+            }
+
+//            A new connection should re-use the parsed query, rather than parsing it again
+            try (RepositoryConnection secondConnection = sailRepository.getConnection()) {
+                final TupleQuery secondQuery = cache.getQuery(secondConnection, template);
+                assertAll(() -> assertEquals(1, cache.getHitCount(), "Should hit on the second connection"),
+                        () -> assertEquals(1, cache.getMissCount(), "Should only parse the query once"),
+                        () -> assertNotSame(firstQuery, secondQuery, "Should build a new query for the second connection"),
+                        () -> assertEquals(1, countResults(secondQuery, template), "Should find the individual on the second connection"));
+            }
+        } finally {
+            sailRepository.shutDown();
+        }
+    }
+
+    private static long countResults(TupleQuery query, QueryTemplate template) {
+        template.getBindings().forEach((name, value) -> query.setBinding(name, vf.createIRI(((IRI) value).getIRIString())));
+        return QueryResults.asList(query.evaluate()).size();
+    }
+}
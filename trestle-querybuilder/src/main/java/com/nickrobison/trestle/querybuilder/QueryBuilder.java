@@ -12,8 +12,10 @@ import org.locationtech.jts.io.WKTReader;
 import org.locationtech.jts.io.WKTWriter;
 import org.locationtech.jts.precision.GeometryPrecisionReducer;
 import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
 import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +23,8 @@ import org.slf4j.LoggerFactory;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.nickrobison.trestle.common.StaticIRI.TRESTLE_PREFIX;
@@ -57,6 +61,9 @@ public class QueryBuilder {
     private final Map<String, String> trimmedPrefixMap;
     private static final WKTReader reader = new WKTReader();
     private static final WKTWriter writer = new WKTWriter();
+    private static final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    //    Query strings for each template, these only need to be built once
+    private final Map<String, String> templateStrings = new ConcurrentHashMap<>();
 
     public QueryBuilder(Dialect dialect, DefaultPrefixManager pm) {
         this.dialect = dialect;
@@ -352,6 +359,38 @@ public class QueryBuilder {
         return stringValue;
     }
 
+    /**
+     * Build SPARQL query to return the given object properties for a set of individuals
+     *
+     * @param properties - {@link Collection} of {@link OWLObjectProperty} to return
+     * @param individual - {@link OWLNamedIndividual} to retrieve properties for
+     * @return - SPARQL query string (?individual - Individual, ?property - Property, ?object - Object)
+     */
+    public String buildObjectPropertyRetrievalQuery(Collection<OWLObjectProperty> properties, OWLNamedIndividual... individual) {
+        final ParameterizedSparqlString ps = buildBaseString();
+
+        final String individualValues = Arrays.stream(individual)
+                .map(this::getFullIRIString)
+                .map(ind -> String.format("<%s>", ind))
+                .collect(Collectors.joining(" "));
+
+        final String propertyValues = properties
+                .stream()
+                .map(this::getFullIRIString)
+                .map(property -> String.format("<%s>", property))
+                .collect(Collectors.joining(" "));
+
+        ps.setCommandText(String.format("SELECT DISTINCT ?individual ?property ?object" +
+                " WHERE {" +
+                " ?individual ?property ?object ." +
+                " VALUES ?individual { %s } ." +
+                " VALUES ?property { %s } ." +
+                " FILTER(isURI(?object)) .}", individualValues, propertyValues));
+        final String stringValue = ps.toString();
+        logger.trace(stringValue);
+        return stringValue;
+    }
+
     public String buildContributesToQuery(OWLNamedIndividual individual, OWLDataPropertyAssertionAxiom dataProperty) {
         final ParameterizedSparqlString ps = buildBaseString();
 
@@ -448,6 +487,124 @@ public class QueryBuilder {
         return stringValue;
     }
 
+    /**
+     * Build the {@link QueryTemplate} to retrieve the facts for a single individual, valid at the given temporals.
+     * This is equivalent to {@link QueryBuilder#buildObjectFactRetrievalQuery(OffsetDateTime, OffsetDateTime, boolean, List, OWLNamedIndividual...)},
+     * but the individual and temporals are provided as bindings, so the query shape can be prepared once and re-used.
+     *
+     * @param validTemporal    - {@link OffsetDateTime} of valid time, to filter results on
+     * @param databaseTemporal - {@link OffsetDateTime} of database time, to filter results on
+     * @param filterTemporals  - filter temporal assertions from the resultset?
+     * @param individual       - {@link OWLNamedIndividual} to retrieve results for
+     * @return - {@link QueryTemplate} (?individual ?fact ?property ?object ?df ?dt ?vf ?vt ?va)
+     */
+    public QueryTemplate buildObjectFactRetrievalTemplate(OffsetDateTime validTemporal, OffsetDateTime databaseTemporal, boolean filterTemporals, OWLNamedIndividual individual) {
+        final String key = filterTemporals ? "object-fact-retrieval" : "object-temporal-fact-retrieval";
+        final String queryString = getTemplateString(key, () -> {
+            final ParameterizedSparqlString ps = buildBaseString();
+            ps.setCommandText("SELECT DISTINCT ?individual ?fact ?property ?object ?df ?dt ?vf ?vt ?va" +
+                    " WHERE" +
+                    " { ?individual trestle:has_fact ?fact ." +
+                    "{?fact trestle:database_from ?df} ." +
+                    "OPTIONAL{?fact trestle:database_to ?dt} ." +
+                    "OPTIONAL{?fact trestle:valid_from ?vf} ." +
+                    "OPTIONAL{?fact trestle:valid_to ?vt} ." +
+                    "OPTIONAL{?fact trestle:valid_at ?va} ." +
+                    "?fact ?property ?object ." +
+                    "FILTER(!isURI(?object) && !isBlank(?object)) ." +
+                    "FILTER(!bound(?tEnd)) ." +
+                    "FILTER((!bound(?vf) || ?vf <= ?validAt) && (!bound(?vt) || ?vt > ?validAt)) ." +
+                    "FILTER(!bound(?va) || ?va = ?validAt) ." +
+                    "FILTER((!bound(?df) || ?df <= ?databaseAt) && (!bound(?dt) || ?dt > ?databaseAt)) .");
+            if (filterTemporals) {
+                ps.append(" FILTER NOT EXISTS {?property rdfs:subPropertyOf trestle:Temporal_Property}");
+            } else {
+                ps.append(" FILTER EXISTS {?property rdfs:subPropertyOf trestle:Temporal_Property}");
+            }
+            ps.append('}');
+            return ps.toString();
+        });
+
+        final Map<String, OWLPrimitive> bindings = new HashMap<>();
+        bindings.put("individual", getFullIRI(individual.getIRI()));
+        bindings.put("validAt", buildDateTimeLiteral(validTemporal));
+        bindings.put("databaseAt", buildDateTimeLiteral(databaseTemporal));
+        return new QueryTemplate(key, queryString, bindings);
+    }
+
+    /**
+     * Build the {@link QueryTemplate} to retrieve the object header for the given {@link OWLNamedIndividual}
+     *
+     * @param datasetClass - {@link OWLClass} dataset class to retrieve
+     * @param individual   - {@link OWLNamedIndividual} individual to retrieve header for
+     * @return - {@link QueryTemplate} (?m - Individual, ?ef - Exists_from, ?et Exists_to (Optional))
+     */
+    public QueryTemplate buildObjectHeaderTemplate(OWLClass datasetClass, OWLNamedIndividual individual) {
+        final String key = "object-header";
+        final String queryString = getTemplateString(key, () -> {
+            final ParameterizedSparqlString ps = buildBaseString();
+            ps.setCommandText("SELECT ?m ?ef ?et WHERE {" +
+                    "?m rdf:type ?owlClass ." +
+                    "?m trestle:exists_from ?ef ." +
+                    "OPTIONAL{?m trestle:exists_to ?et} ." +
+                    "}");
+            return ps.toString();
+        });
+
+        final Map<String, OWLPrimitive> bindings = new HashMap<>();
+        bindings.put("m", getFullIRI(individual.getIRI()));
+        bindings.put("owlClass", getFullIRI(datasetClass.getIRI()));
+        return new QueryTemplate(key, queryString, bindings);
+    }
+
+    /**
+     * Build the {@link QueryTemplate} to return all temporal/spatial/event relations for a given individual
+     *
+     * @param individual - {@link OWLNamedIndividual} to retrieve relations for
+     * @return - {@link QueryTemplate} (?m - Individual, ?o - Object, ?p Property)
+     */
+    public QueryTemplate buildIndividualRelationTemplate(OWLNamedIndividual individual) {
+        final String key = "individual-relation";
+        final String queryString = getTemplateString(key, () -> {
+            final ParameterizedSparqlString ps = buildBaseString();
+            ps.setCommandText("SELECT DISTINCT ?m ?o ?p " +
+                    "WHERE { { " +
+                    "?m ?o ?p . " +
+                    "?o rdfs:subPropertyOf trestle:Temporal_Relation } " +
+                    "UNION { " +
+                    "?m ?o ?p . " +
+                    "?o rdfs:subPropertyOf trestle:Spatial_Relation ." +
+                    "} " +
+                    "UNION { ?m ?o ?p . ?o rdfs:subPropertyOf trestle:Event_Relation ." +
+                    " ?p rdf:type trestle:Trestle_Object} " +
+                    "UNION {?m ?o ?p . ?o rdfs:subPropertyOf trestle:Component_Relation ." +
+                    " ?p rdf:type trestle:Trestle_Object} }");
+            return ps.toString();
+        });
+        return new QueryTemplate(key, queryString, Collections.singletonMap("m", getFullIRI(individual.getIRI())));
+    }
+
+    /**
+     * Build the {@link QueryTemplate} to return all TrestleEvents (with their corresponding properties) for a given individual
+     *
+     * @param individual - {@link OWLNamedIndividual} to query
+     * @return - {@link QueryTemplate} (?r - Event Individual, ?type - Event Type (IRI), ?t - at Temporal)
+     */
+    public QueryTemplate buildIndividualEventTemplate(OWLNamedIndividual individual) {
+        final String key = "individual-event";
+        final String queryString = getTemplateString(key, () -> {
+            final ParameterizedSparqlString ps = buildBaseString();
+            ps.setCommandText("SELECT DISTINCT ?r ?type ?t" +
+                    " WHERE { ?m rdf:type trestle:Trestle_Object ." +
+                    "?m trestle:Event_Relation ?r ." +
+                    "?r rdf:type ?type ." +
+                    "?type rdfs:subClassOf trestle:Trestle_Event ." +
+                    "?r trestle:exists_at ?t .}");
+            return ps.toString();
+        });
+        return new QueryTemplate(key, queryString, Collections.singletonMap("m", getFullIRI(individual.getIRI())));
+    }
+
     public String buildSpatialRestrictionFragment(OWLClass datasetClass, String wkt, OffsetDateTime atTemporal, OffsetDateTime dbTemporal) {
         final ParameterizedSparqlString ps = new ParameterizedSparqlString();
         ps.setCommandText("SELECT DISTINCT ?m ?ef ?et " +
@@ -950,6 +1107,54 @@ public class QueryBuilder {
         return stringValue;
     }
 
+    /**
+     * Returns every {@link com.nickrobison.trestle.common.StaticIRI#spatialUnionIRI}, along with the object it is equal to, each of its components, and their existence intervals.
+     * Returns one row per union component, with the following variables: ?union ?whole ?wStart ?wEnd (Optional) ?object ?start ?end (Optional)
+     *
+     * @return - SPARQL Query String
+     */
+    public String buildSTUnionGraphQuery() {
+        final ParameterizedSparqlString ps = buildBaseString();
+        ps.setCommandText("SELECT DISTINCT ?union ?whole ?wStart ?wEnd ?object ?start ?end WHERE {" +
+                "?union rdf:type trestle:SpatialUnion ." +
+                "?whole trestle:equals ?union ." +
+                "?whole rdf:type trestle:Trestle_Object ." +
+                "?whole trestle:exists_from ?wStart ." +
+                "OPTIONAL{?whole trestle:exists_to ?wEnd} ." +
+                "?object trestle:component_of ?union ." +
+                "?object trestle:exists_from ?start ." +
+                "OPTIONAL{?object trestle:exists_to ?end} ." +
+                "FILTER(?whole != ?object) }");
+
+        final String stringValue = ps.toString();
+        logger.trace(stringValue);
+        return stringValue;
+    }
+
+    /**
+     * Returns every direct {@link com.nickrobison.trestle.common.StaticIRI#trestleObjectIRI} to {@link com.nickrobison.trestle.common.StaticIRI#trestleObjectIRI} equals relation, along with the existence intervals of both objects.
+     * Relations to a {@link com.nickrobison.trestle.common.StaticIRI#spatialUnionIRI} are returned by {@link QueryBuilder#buildSTUnionGraphQuery()}.
+     * Returns one row per relation, with the following variables: ?subject ?sStart ?sEnd (Optional) ?object ?start ?end (Optional)
+     *
+     * @return - SPARQL Query String
+     */
+    public String buildSTEqualsGraphQuery() {
+        final ParameterizedSparqlString ps = buildBaseString();
+        ps.setCommandText("SELECT DISTINCT ?subject ?sStart ?sEnd ?object ?start ?end WHERE {" +
+                "?subject trestle:equals ?object ." +
+                "?subject rdf:type trestle:Trestle_Object ." +
+                "?object rdf:type trestle:Trestle_Object ." +
+                "?subject trestle:exists_from ?sStart ." +
+                "OPTIONAL{?subject trestle:exists_to ?sEnd} ." +
+                "?object trestle:exists_from ?start ." +
+                "OPTIONAL{?object trestle:exists_to ?end} ." +
+                "FILTER(?subject != ?object) }");
+
+        final String stringValue = ps.toString();
+        logger.trace(stringValue);
+        return stringValue;
+    }
+
     /**
      * Initialize the base SPARQL String, with the correct prefixes
      *
@@ -962,6 +1167,25 @@ public class QueryBuilder {
         return ps;
     }
 
+    /**
+     * Get the query string for the given template, building it if it hasn't been built yet
+     *
+     * @param key     - {@link String} template key
+     * @param builder - {@link Supplier} which builds the query string
+     * @return - {@link String} SPARQL query
+     */
+    private String getTemplateString(String key, Supplier<String> builder) {
+        return this.templateStrings.computeIfAbsent(key, k -> {
+            final String stringValue = builder.get();
+            logger.trace("Built query template {}: {}", k, stringValue);
+            return stringValue;
+        });
+    }
+
+    private static OWLLiteral buildDateTimeLiteral(OffsetDateTime temporal) {
+        return df.getOWLLiteral(temporal.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), OWL2Datatype.XSD_DATE_TIME);
+    }
+
     // TODO(nrobison): Move this to trestle-common
     private IRI getFullIRI(IRI iri) {
         //        Check to see if it's already been expanded
@@ -0,0 +1,69 @@
+package com.nickrobison.trestle.querybuilder;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLPrimitive;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parameterized SPARQL query.
+ * The query string is identical for every query built from the same template (identified by its key),
+ * while the per-call values are provided as variable bindings.
+ * This allows the ontology to parse each query shape once and re-use the prepared query.
+ * <p>
+ * Binding values are either {@link IRI}s (fully expanded) or {@link OWLLiteral}s.
+ * <p>
+ * Only the four queries executed for every object read are templated (object header, fact retrieval, individual relations and individual events),
+ * since they have a fixed shape where only the individual, class and temporal values change.
+ * The remaining queries are left as plain strings because either their shape changes between calls
+ * (variable length {@code VALUES} lists, optional fact filters, WKT values inside backend specific spatial functions),
+ * which would mean a separate template for each variation,
+ * or they're executed once per request (dataset, search, aggregation and union queries), where parsing is a negligible part of the cost.
+ */
+public final class QueryTemplate {
+
+    private final String key;
+    private final String queryString;
+    private final Map<String, OWLPrimitive> bindings;
+
+    QueryTemplate(String key, String queryString, Map<String, OWLPrimitive> bindings) {
+        this.key = key;
+        this.queryString = queryString;
+        this.bindings = Collections.unmodifiableMap(new LinkedHashMap<>(bindings));
+    }
+
+    /**
+     * Unique key of the query shape
+     *
+     * @return - {@link String} template key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * SPARQL query string, without any of the bound values
+     *
+     * @return - {@link String} SPARQL query
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * Variable bindings for this query
+     *
+     * @return - {@link Map} of variable name to {@link IRI} or {@link OWLLiteral} value
+     */
+    public Map<String, OWLPrimitive> getBindings() {
+        return bindings;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s", this.key, this.bindings);
+    }
+}
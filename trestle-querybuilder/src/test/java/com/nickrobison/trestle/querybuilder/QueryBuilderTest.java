@@ -8,10 +8,12 @@ import org.junit.jupiter.api.Test;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -120,6 +122,18 @@ public class QueryBuilderTest {
             "PREFIX ogcf: <http://www.opengis.net/def/function/geosparql/>\n" +
             "SELECT DISTINCT ?individual ?property ?object WHERE { OPTIONAL{?individual trestle:exists_at ?tAt} . OPTIONAL{?individual trestle:exists_from ?tStart} . OPTIONAL{?individual trestle:exists_to ?tEnd} . ?individual ?property ?object VALUES ?individual { <http://nickrobison.com/dissertation/trestle.owl#test_muni4> } . FILTER(!isURI(?object) && !isBlank(?object)) .}";
 
+    private static final String objectPropertyRetrievalQueryString = "BASE <http://nickrobison.com/dissertation/trestle.owl#>\n" +
+            "PREFIX : <http://nickrobison.com/test/trestle.owl#>\n" +
+            "PREFIX trestle: <http://nickrobison.com/dissertation/trestle.owl#>\n" +
+            "PREFIX owl: <http://www.w3.org/2002/07/owl#>\n" +
+            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+            "PREFIX xml: <http://www.w3.org/XML/1998/namespace>\n" +
+            "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n" +
+            "PREFIX ogc: <http://www.opengis.net/ont/geosparql#>\n" +
+            "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n" +
+            "PREFIX ogcf: <http://www.opengis.net/def/function/geosparql/>\n" +
+            "SELECT DISTINCT ?individual ?property ?object WHERE { ?individual ?property ?object . VALUES ?individual { <http://nickrobison.com/dissertation/trestle.owl#test_muni4> <http://nickrobison.com/dissertation/trestle.owl#test_muni5> } . VALUES ?property { <http://nickrobison.com/dissertation/trestle.owl#has_county> } . FILTER(isURI(?object)) .}";
+
     private static final String tsIntersectString = "BASE <http://nickrobison.com/dissertation/trestle.owl#>\n" +
             "PREFIX : <http://nickrobison.com/test/trestle.owl#>\n" +
             "PREFIX trestle: <http://nickrobison.com/dissertation/trestle.owl#>\n" +
@@ -168,6 +182,18 @@ public class QueryBuilderTest {
             "PREFIX ogcf: <http://www.opengis.net/def/function/geosparql/>\n" +
             "INSERT {?m trestle:database_to \"2017-03-11T00:00:00Z\"^^xsd:dateTime}  WHERE { VALUES ?m {<http://nickrobison.com/dissertation/trestle.owl#test_muni4>} . OPTIONAL{?m trestle:database_to ?dt} . ?m rdf:type trestle:Interval_Object .FILTER(!bound(?dt))}";
 
+    private static final String objectHeaderTemplateString = "BASE <http://nickrobison.com/dissertation/trestle.owl#>\n" +
+            "PREFIX : <http://nickrobison.com/test/trestle.owl#>\n" +
+            "PREFIX trestle: <http://nickrobison.com/dissertation/trestle.owl#>\n" +
+            "PREFIX owl: <http://www.w3.org/2002/07/owl#>\n" +
+            "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+            "PREFIX xml: <http://www.w3.org/XML/1998/namespace>\n" +
+            "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n" +
+            "PREFIX ogc: <http://www.opengis.net/ont/geosparql#>\n" +
+            "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n" +
+            "PREFIX ogcf: <http://www.opengis.net/def/function/geosparql/>\n" +
+            "SELECT ?m ?ef ?et WHERE {?m rdf:type ?owlClass .?m trestle:exists_from ?ef .OPTIONAL{?m trestle:exists_to ?et} .}";
+
     @BeforeAll
     public static void createPrefixes() {
         df = OWLManager.getOWLDataFactory();
@@ -266,4 +292,37 @@ public class QueryBuilderTest {
                     assertEquals(updateTemporalString, updateUnboundedTemporal, "Update unbounded temporal should match");
                 });
     }
+
+    @Test
+    public void testObjectPropertyRetrievalQuery() {
+        final OWLNamedIndividual test_muni4 = df.getOWLNamedIndividual(IRI.create("trestle:", "test_muni4"));
+        final OWLNamedIndividual test_muni5 = df.getOWLNamedIndividual(IRI.create("trestle:", "test_muni5"));
+        final OWLObjectProperty hasCounty = df.getOWLObjectProperty(IRI.create("trestle:", "has_county"));
+        final String objectPropertyQuery = qb.buildObjectPropertyRetrievalQuery(Collections.singleton(hasCounty), test_muni4, test_muni5);
+        assertEquals(objectPropertyRetrievalQueryString, objectPropertyQuery, "Object property query should match");
+    }
+
+    @Test
+    public void testQueryTemplates() {
+        final OWLNamedIndividual test_muni4 = df.getOWLNamedIndividual(IRI.create("trestle:", "test_muni4"));
+        final OWLNamedIndividual test_muni5 = df.getOWLNamedIndividual(IRI.create("trestle:", "test_muni5"));
+        final OWLClass gaulClass = df.getOWLClass(IRI.create("trestle:", "GAUL"));
+        final QueryTemplate firstHeader = qb.buildObjectHeaderTemplate(gaulClass, test_muni4);
+        final QueryTemplate secondHeader = qb.buildObjectHeaderTemplate(gaulClass, test_muni5);
+        assertAll(() -> assertEquals(objectHeaderTemplateString, firstHeader.getQueryString(), "Header template should match"),
+                () -> assertEquals(firstHeader.getKey(), secondHeader.getKey(), "Should have the same template key"),
+                () -> assertSame(firstHeader.getQueryString(), secondHeader.getQueryString(), "Should only build query string once"),
+                () -> assertEquals(IRI.create("http://nickrobison.com/dissertation/trestle.owl#test_muni5"), secondHeader.getBindings().get("m"), "Should bind expanded individual IRI"),
+                () -> assertEquals(IRI.create("http://nickrobison.com/dissertation/trestle.owl#GAUL"), secondHeader.getBindings().get("owlClass"), "Should bind expanded class IRI"));
+
+//        Filtering temporals changes the query shape, so it should be a different template
+        final OffsetDateTime validAt = LocalDate.of(1989, 3, 26).atStartOfDay().atOffset(ZoneOffset.UTC);
+        final OffsetDateTime dbAt = LocalDate.of(2012, 1, 1).atStartOfDay().atOffset(ZoneOffset.UTC);
+        final QueryTemplate factTemplate = qb.buildObjectFactRetrievalTemplate(validAt, dbAt, true, test_muni4);
+        final QueryTemplate temporalTemplate = qb.buildObjectFactRetrievalTemplate(validAt, dbAt, false, test_muni4);
+        assertAll(() -> assertNotEquals(factTemplate.getKey(), temporalTemplate.getKey(), "Should have different keys"),
+                () -> assertNotEquals(factTemplate.getQueryString(), temporalTemplate.getQueryString(), "Should have different queries"),
+                () -> assertEquals(df.getOWLLiteral("1989-03-26T00:00:00Z", OWL2Datatype.XSD_DATE_TIME), factTemplate.getBindings().get("validAt"), "Should bind valid temporal"),
+                () -> assertEquals(df.getOWLLiteral("2012-01-01T00:00:00Z", OWL2Datatype.XSD_DATE_TIME), factTemplate.getBindings().get("databaseAt"), "Should bind database temporal"));
+    }
 }
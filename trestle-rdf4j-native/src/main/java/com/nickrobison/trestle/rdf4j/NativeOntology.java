@@ -0,0 +1,270 @@
+package com.nickrobison.trestle.rdf4j;
+
+import com.nickrobison.trestle.ontology.RDF4JOntology;
+import com.nickrobison.trestle.ontology.types.TrestleResult;
+import com.nickrobison.trestle.ontology.utils.RDF4JLiteralFactory;
+import com.nickrobison.trestle.ontology.utils.SharedOntologyFunctions;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import org.apache.commons.io.FileUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.Update;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategyFactory;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.inferencer.fc.SchemaCachingRDFSInferencer;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.nickrobison.trestle.common.StaticIRI.GEOSPARQLPREFIX;
+import static com.nickrobison.trestle.common.StaticIRI.WKTDatatypeIRI;
+
+/**
+ * {@link RDF4JOntology} backed by an embedded RDF4J {@link NativeStore} (or a {@link MemoryStore}, when persistence is disabled).
+ * RDFS entailments are provided by the {@link SchemaCachingRDFSInferencer},
+ * and the {@link OWLRuleInferencer} adds the OWL 2 RL inverse, symmetric, transitive and property chain rules used by the Trestle ontology.
+ * <p>
+ * Spatial filters are evaluated against an in-process {@link SpatialIndex}, which is kept in sync with the WKT literals written through this ontology.
+ */
+public class NativeOntology extends RDF4JOntology {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeOntology.class);
+    private static final Config config = ConfigFactory.load().getConfig("trestle.ontology.native");
+
+    private final SpatialIndex spatialIndex;
+    private final org.eclipse.rdf4j.model.IRI wktDatatype;
+
+    NativeOntology(String ontologyName, OWLOntology ont, DefaultPrefixManager pm, RDF4JLiteralFactory factory) {
+        this(ontologyName, new SpatialIndex(config.getInt("spatialNodeCapacity")), ont, pm, factory);
+    }
+
+    private NativeOntology(String ontologyName, SpatialIndex spatialIndex, OWLOntology ont, DefaultPrefixManager pm, RDF4JLiteralFactory factory) {
+        super(ontologyName, constructRepository(ontologyName, spatialIndex), ont, pm, factory);
+        this.spatialIndex = spatialIndex;
+        this.wktDatatype = this.vf.createIRI(WKTDatatypeIRI.toString());
+        loadSpatialIndex();
+    }
+
+    private static Repository constructRepository(String ontologyName, SpatialIndex spatialIndex) {
+        final EvaluationStrategyFactory strategyFactory = new SpatialIndexEvaluationStrategy.Factory(spatialIndex);
+        final NotifyingSail store;
+        if (config.getBoolean("persistent")) {
+            final File dataDirectory = getDataDirectory(ontologyName);
+            logger.debug("Constructing native ontology at {}", dataDirectory);
+            final NativeStore nativeStore = new NativeStore(dataDirectory, config.getString("tripleIndexes"));
+            nativeStore.setEvaluationStrategyFactory(strategyFactory);
+            store = nativeStore;
+        } else {
+            logger.debug("Constructing in-memory ontology");
+            final MemoryStore memoryStore = new MemoryStore();
+            memoryStore.setEvaluationStrategyFactory(strategyFactory);
+            store = memoryStore;
+        }
+        final SailRepository repository = new SailRepository(new OWLRuleInferencer(new SchemaCachingRDFSInferencer(store)));
+        repository.init();
+        return repository;
+    }
+
+    private static File getDataDirectory(String ontologyName) {
+        return new File(config.getString("dataDirectory"), ontologyName);
+    }
+
+    /**
+     * Populate the spatial index from any WKT values already in the repository
+     */
+    private void loadSpatialIndex() {
+        final org.eclipse.rdf4j.model.IRI asWKT = this.vf.createIRI(GEOSPARQLPREFIX, "asWKT");
+        try (RepositoryResult<Statement> statements = this.adminConnection.getStatements(null, asWKT, null, false)) {
+            statements.forEach(statement -> {
+                final Value object = statement.getObject();
+                if (isWKT(object)) {
+                    this.spatialIndex.add(object.stringValue());
+                }
+            });
+        }
+        logger.info("Loaded {} geometries into spatial index", this.spatialIndex.size());
+    }
+
+    @Override
+    public void initializeOntology() {
+        logger.info("Initializing new ontology {}", this.ontologyName);
+        logger.info("Removing all statements from repository");
+
+        this.adminConnection.begin();
+        this.adminConnection.clear();
+        this.adminConnection.commit();
+        this.spatialIndex.clear();
+        this.adminConnection.begin();
+        try {
+            this.adminConnection.add(SharedOntologyFunctions.ontologytoIS(this.ontology), "urn:base", RDFFormat.RDFXML);
+        } catch (IOException | OWLOntologyStorageException e) {
+            logger.error("Cannot load ontology", e);
+            throw new RuntimeException("Cannot load ontology", e);
+        } finally {
+            this.adminConnection.commit();
+        }
+        logger.info("Ontology {} ready to go", this.ontologyName);
+    }
+
+    @Override
+    public Completable writeIndividualDataProperty(OWLDataPropertyAssertionAxiom dataProperty) {
+        final Completable write = super.writeIndividualDataProperty(dataProperty);
+        final OWLLiteral literal = dataProperty.getObject();
+        if (literal.getDatatype().getIRI().equals(WKTDatatypeIRI)) {
+            return write.doOnComplete(() -> this.spatialIndex.add(literal.getLiteral()));
+        }
+        return write;
+    }
+
+    @Override
+    public Completable writeAxioms(Collection<? extends OWLAxiom> axioms) {
+        final List<String> wktValues = axioms
+                .stream()
+                .filter(axiom -> axiom instanceof OWLDataPropertyAssertionAxiom)
+                .map(axiom -> ((OWLDataPropertyAssertionAxiom) axiom).getObject())
+                .filter(literal -> literal.getDatatype().getIRI().equals(WKTDatatypeIRI))
+                .map(OWLLiteral::getLiteral)
+                .collect(Collectors.toList());
+        return super.writeAxioms(axioms)
+                .doOnComplete(() -> wktValues.forEach(this.spatialIndex::add));
+    }
+
+    @Override
+    public Completable removeIndividual(OWLNamedIndividual individual) {
+        final org.eclipse.rdf4j.model.IRI individualIRI = vf.createIRI(getFullIRIString(individual));
+        return removeIndexedValues(individualIRI, null, super.removeIndividual(individual));
+    }
+
+    @Override
+    public Completable removeIndividualDataProperty(OWLNamedIndividual individual, OWLDataProperty property, @Nullable OWLLiteral literal) {
+        final Completable remove = super.removeIndividualDataProperty(individual, property, literal);
+        if (literal != null) {
+            if (literal.getDatatype().getIRI().equals(WKTDatatypeIRI)) {
+                return remove.doOnComplete(() -> this.spatialIndex.remove(literal.getLiteral()));
+            }
+            return remove;
+        }
+        final org.eclipse.rdf4j.model.IRI individualIRI = vf.createIRI(getFullIRIString(individual));
+        final org.eclipse.rdf4j.model.IRI propertyIRI = vf.createIRI(getFullIRIString(property));
+        return removeIndexedValues(individualIRI, propertyIRI, remove);
+    }
+
+    /**
+     * Collect the WKT values that are about to be removed, and drop them from the spatial index once the removal completes.
+     * The removal {@link Completable} must have already opened its transaction, so that we read from the same connection.
+     *
+     * @param subject  - {@link org.eclipse.rdf4j.model.IRI} subject of the removed statements
+     * @param property - {@link org.eclipse.rdf4j.model.IRI} optional property of the removed statements
+     * @param remove   - {@link Completable} which performs the removal
+     * @return - {@link Completable} when finished
+     */
+    private Completable removeIndexedValues(org.eclipse.rdf4j.model.IRI subject, org.eclipse.rdf4j.model.@Nullable IRI property, Completable remove) {
+        final List<String> removedValues = new ArrayList<>();
+        return Completable.fromRunnable(() -> {
+            try (RepositoryResult<Statement> statements = getThreadConnection().getStatements(subject, property, null, false)) {
+                statements.forEach(statement -> {
+                    if (isWKT(statement.getObject())) {
+                        removedValues.add(statement.getObject().stringValue());
+                    }
+                });
+            }
+        })
+                .andThen(remove)
+                .doOnComplete(() -> removedValues.forEach(this.spatialIndex::remove));
+    }
+
+    private boolean isWKT(Value value) {
+        return (value instanceof Literal) && ((Literal) value).getDatatype().equals(this.wktDatatype);
+    }
+
+    @Override
+    protected void closeDatabase(boolean drop) {
+        if (drop) {
+            logger.info("Dropping model {}", this.ontologyName);
+            this.adminConnection.begin();
+            this.adminConnection.clear();
+            this.adminConnection.commit();
+            this.spatialIndex.clear();
+        }
+        this.adminConnection.close();
+        this.repository.shutDown();
+        if (drop && config.getBoolean("persistent") && config.getBoolean("removeDirectory")) {
+            final File dataDirectory = getDataDirectory(this.ontologyName);
+            logger.info("Removing data directory {}", dataDirectory);
+            try {
+                FileUtils.deleteDirectory(dataDirectory);
+            } catch (IOException e) {
+                logger.error("Could not delete data directory {}", dataDirectory, e);
+            }
+        }
+    }
+
+    @Override
+    public Completable executeUpdateSPARQL(String queryString) {
+        this.openTransaction(true);
+        return Completable.fromRunnable(() -> {
+            final Update update = this.getThreadConnection().prepareUpdate(QueryLanguage.SPARQL, queryString);
+            update.execute();
+        })
+                .doOnError(error -> this.unlockAndAbort(true))
+                .doOnComplete(() -> this.commitTransaction(true));
+    }
+
+    @Override
+    public Flowable<TrestleResult> executeSPARQLResults(String queryString) {
+        this.openTransaction(false);
+        final TupleQuery tupleQuery = this.getThreadConnection().prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        final TupleQueryResult resultSet = tupleQuery.evaluate();
+        return Flowable.fromIterable(resultSet)
+                .map(this::buildResult)
+                .doOnError(error -> this.unlockAndAbort(false))
+                .doOnComplete(() -> this.commitTransaction(false))
+                .doFinally(resultSet::close);
+    }
+
+    @Override
+    public void openDatasetTransaction(boolean write) {
+        if (this.getThreadTransactionObject() == null && this.tc.get() == null) {
+            logger.debug("Thread has no open connection, creating a new one");
+            this.setOntologyConnection();
+        }
+        this.getThreadConnection().begin();
+        logger.debug("Opened native transaction");
+    }
+
+    @Override
+    public void commitDatasetTransaction(boolean write) {
+        this.getThreadConnection().commit();
+        this.resetThreadConnection();
+        logger.debug("Native transaction committed");
+    }
+
+    @Override
+    public void abortDatasetTransaction(boolean write) {
+        this.getThreadConnection().rollback();
+        this.resetThreadConnection();
+        logger.debug("Native transaction aborted");
+    }
+}
@@ -0,0 +1,24 @@
+package com.nickrobison.trestle.rdf4j;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.ontology.annotations.OntologyName;
+import com.nickrobison.trestle.ontology.utils.RDF4JLiteralFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+public class NativeOntologyModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        final Multibinder<ITrestleOntology> ontologyBinder = Multibinder.newSetBinder(binder(), ITrestleOntology.class);
+        ontologyBinder.addBinding().to(NativeOntology.class);
+    }
+
+    @Provides
+    NativeOntology provideOntology(@OntologyName String name, OWLOntology ontology, DefaultPrefixManager pm, RDF4JLiteralFactory factory) {
+        return new NativeOntology(name, ontology, pm, factory);
+    }
+}
@@ -0,0 +1,72 @@
+package com.nickrobison.trestle.rdf4j;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.NotifyingSailConnection;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.helpers.NotifyingSailWrapper;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+
+/**
+ * Forward chaining inferencer for the OWL 2 RL property rules used by the Trestle ontology, which aren't covered by RDFS:
+ * inverse (prp-inv1, prp-inv2), symmetric (prp-symp) and transitive (prp-trp) properties, along with two property chains (prp-spo2).
+ * <p>
+ * This needs to wrap an inferencing {@link NotifyingSail} (e.g. the {@link org.eclipse.rdf4j.sail.inferencer.fc.SchemaCachingRDFSInferencer}),
+ * which materializes the sub-property (and other RDFS) entailments of the statements inferred here.
+ * The property axioms are read from the repository and cached until a transaction that modifies them is committed.
+ */
+public class OWLRuleInferencer extends NotifyingSailWrapper {
+
+    private final Object schemaLock = new Object();
+    private long schemaVersion = 0;
+    private volatile @Nullable OWLRuleSchema schema;
+
+    public OWLRuleInferencer(NotifyingSail baseSail) {
+        super(baseSail);
+    }
+
+    @Override
+    public InferencerConnection getConnection() throws SailException {
+        final NotifyingSailConnection connection = super.getConnection();
+        if (!(connection instanceof InferencerConnection)) {
+            connection.close();
+            throw new SailException("OWL rule inferencer must wrap an inferencing Sail");
+        }
+        return new OWLRuleInferencerConnection(this, (InferencerConnection) connection);
+    }
+
+    /**
+     * Get the committed property axioms, loading them from the given connection if they're not cached
+     *
+     * @param connection - {@link SailConnection} to load axioms from
+     * @return - {@link OWLRuleSchema}
+     */
+    OWLRuleSchema getSchema(SailConnection connection) {
+        @Nullable OWLRuleSchema cached = this.schema;
+        if (cached == null) {
+            final long version;
+            synchronized (this.schemaLock) {
+                version = this.schemaVersion;
+            }
+            cached = OWLRuleSchema.load(connection);
+//            Don't cache the axioms if they were modified while we were loading them
+            synchronized (this.schemaLock) {
+                if (version == this.schemaVersion) {
+                    this.schema = cached;
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Drop the cached property axioms, after they've been modified
+     */
+    void invalidateSchema() {
+        synchronized (this.schemaLock) {
+            this.schemaVersion++;
+            this.schema = null;
+        }
+    }
+}
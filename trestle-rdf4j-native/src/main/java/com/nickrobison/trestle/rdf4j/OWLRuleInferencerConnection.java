@@ -0,0 +1,212 @@
+package com.nickrobison.trestle.rdf4j;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.sail.SailConnectionListener;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.nickrobison.trestle.rdf4j.OWLRuleSchema.getStatements;
+
+/**
+ * Connection for the {@link OWLRuleInferencer}.
+ * <p>
+ * Statements added to the underlying store (explicit, or inferred by either inferencer) are collected as they're added,
+ * and the rules are applied to only those new statements when the updates are flushed (semi-naive evaluation),
+ * repeating until no more statements are inferred.
+ * Removing any statement causes the wrapped inferencer to clear all the inferred statements,
+ * so the rules are re-applied to the entire store, the same as the RDFS inferencers.
+ */
+class OWLRuleInferencerConnection extends InferencerConnectionWrapper implements SailConnectionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(OWLRuleInferencerConnection.class);
+
+    private final OWLRuleInferencer sail;
+    private Model newStatements = new LinkedHashModel();
+    private boolean statementsRemoved = false;
+    //    Have the axioms changed since we last loaded them?
+    private boolean schemaChanged = false;
+    //    Axioms including this transaction's (uncommitted) changes
+    private @Nullable OWLRuleSchema transactionSchema = null;
+
+    OWLRuleInferencerConnection(OWLRuleInferencer sail, InferencerConnection connection) {
+        super(connection);
+        this.sail = sail;
+        connection.addConnectionListener(this);
+    }
+
+    @Override
+    public void statementAdded(Statement statement) {
+        if (OWLRuleSchema.isSchemaStatement(statement)) {
+            this.schemaChanged = true;
+        }
+        if (!this.statementsRemoved) {
+            this.newStatements.add(statement);
+        }
+    }
+
+    @Override
+    public void statementRemoved(Statement statement) {
+        if (OWLRuleSchema.isSchemaStatement(statement)) {
+            this.schemaChanged = true;
+        }
+        this.statementsRemoved = true;
+        this.newStatements.clear();
+    }
+
+    @Override
+    public void flushUpdates() throws SailException {
+//        Let the wrapped inferencer process any pending changes first, so that we see its entailments
+        super.flushUpdates();
+        int iterations = 0;
+        int inferred = 0;
+        while (this.statementsRemoved || !this.newStatements.isEmpty()) {
+//            New axioms can apply to existing statements, so they need the same full pass as removals
+            final boolean applyToAll = this.statementsRemoved || this.schemaChanged;
+            final OWLRuleSchema schema = getSchema();
+            final Collection<Statement> statements;
+            if (applyToAll) {
+                logger.debug("Statements removed or axioms changed, applying rules to all statements");
+                this.statementsRemoved = false;
+                statements = getStatements(getWrappedConnection(), null, null, null);
+            } else {
+                statements = this.newStatements;
+            }
+            this.newStatements = new LinkedHashModel();
+            inferred += applyRules(schema, statements);
+            iterations++;
+            super.flushUpdates();
+        }
+        if (iterations > 0) {
+            logger.debug("Inferred {} statements in {} iterations", inferred, iterations);
+        }
+    }
+
+    @Override
+    public void commit() throws SailException {
+        super.commit();
+        if (this.transactionSchema != null || this.schemaChanged) {
+            this.sail.invalidateSchema();
+        }
+        resetSchema();
+    }
+
+    @Override
+    public void rollback() throws SailException {
+        super.rollback();
+        this.newStatements = new LinkedHashModel();
+        this.statementsRemoved = false;
+        resetSchema();
+    }
+
+    private void resetSchema() {
+        this.schemaChanged = false;
+        this.transactionSchema = null;
+    }
+
+    private OWLRuleSchema getSchema() {
+        if (this.schemaChanged) {
+            this.transactionSchema = OWLRuleSchema.load(getWrappedConnection());
+            this.schemaChanged = false;
+        }
+        final @Nullable OWLRuleSchema schema = this.transactionSchema;
+        if (schema != null) {
+            return schema;
+        }
+        return this.sail.getSchema(getWrappedConnection());
+    }
+
+    /**
+     * Apply the rules to each of the given statements, joining them against the statements already in the store
+     *
+     * @param schema     - {@link OWLRuleSchema} axioms to apply
+     * @param statements - {@link Collection} of {@link Statement} to apply rules to
+     * @return - number of inferred statements
+     */
+    private int applyRules(OWLRuleSchema schema, Collection<Statement> statements) {
+        int inferred = 0;
+        for (Statement statement : statements) {
+            if (!(statement.getObject() instanceof Resource)) {
+                continue;
+            }
+            final Resource subject = statement.getSubject();
+            final IRI property = statement.getPredicate();
+            final Resource object = (Resource) statement.getObject();
+
+//            prp-inv1, prp-inv2
+            for (IRI inverse : schema.getInverses(property)) {
+                inferred += infer(object, inverse, subject);
+            }
+//            prp-symp
+            if (schema.isSymmetric(property)) {
+                inferred += infer(object, property, subject);
+            }
+//            prp-trp
+            if (schema.isTransitive(property)) {
+                for (Resource next : getObjects(object, property)) {
+                    inferred += infer(subject, property, next);
+                }
+                for (Resource previous : getSubjects(property, subject)) {
+                    inferred += infer(previous, property, object);
+                }
+            }
+//            prp-spo2
+            for (OWLRuleSchema.PropertyChain chain : schema.getChainsStartingWith(property)) {
+                for (Resource next : getObjects(object, chain.second)) {
+                    inferred += infer(subject, chain.property, next);
+                }
+            }
+            for (OWLRuleSchema.PropertyChain chain : schema.getChainsEndingWith(property)) {
+                for (Resource previous : getSubjects(chain.first, subject)) {
+                    inferred += infer(previous, chain.property, object);
+                }
+            }
+        }
+        return inferred;
+    }
+
+    /**
+     * Add the inferred statement, if it's not already in the store.
+     * Only new statements are added, which guarantees that inferencing terminates.
+     *
+     * @return - {@code 1} if the statement was added
+     */
+    private int infer(Resource subject, IRI property, Resource object) {
+        if (!getStatements(getWrappedConnection(), subject, property, object).isEmpty()) {
+            return 0;
+        }
+        getWrappedConnection().addInferredStatement(subject, property, object);
+        return 1;
+    }
+
+    private List<Resource> getObjects(Resource subject, IRI property) {
+        final List<Resource> objects = new ArrayList<>();
+        for (Statement statement : getStatements(getWrappedConnection(), subject, property, null)) {
+            final Value object = statement.getObject();
+            if (object instanceof Resource) {
+                objects.add((Resource) object);
+            }
+        }
+        return objects;
+    }
+
+    private List<Resource> getSubjects(IRI property, Resource object) {
+        final List<Resource> subjects = new ArrayList<>();
+        for (Statement statement : getStatements(getWrappedConnection(), null, property, object)) {
+            subjects.add(statement.getSubject());
+        }
+        return subjects;
+    }
+}
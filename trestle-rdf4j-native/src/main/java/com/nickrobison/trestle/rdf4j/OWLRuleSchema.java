@@ -0,0 +1,180 @@
+package com.nickrobison.trestle.rdf4j;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Immutable set of the OWL property axioms applied by the {@link OWLRuleInferencer}
+ */
+final class OWLRuleSchema {
+
+    private static final Logger logger = LoggerFactory.getLogger(OWLRuleSchema.class);
+    static final IRI PROPERTY_CHAIN_AXIOM = SimpleValueFactory.getInstance().createIRI(OWL.NAMESPACE, "propertyChainAxiom");
+
+    private final Map<IRI, Set<IRI>> inverses;
+    private final Set<IRI> symmetric;
+    private final Set<IRI> transitive;
+    private final Map<IRI, List<PropertyChain>> chainsByFirst;
+    private final Map<IRI, List<PropertyChain>> chainsBySecond;
+
+    private OWLRuleSchema(Map<IRI, Set<IRI>> inverses, Set<IRI> symmetric, Set<IRI> transitive, List<PropertyChain> chains) {
+        this.inverses = inverses;
+        this.symmetric = symmetric;
+        this.transitive = transitive;
+        this.chainsByFirst = new HashMap<>();
+        this.chainsBySecond = new HashMap<>();
+        chains.forEach(chain -> {
+            this.chainsByFirst.computeIfAbsent(chain.first, key -> new ArrayList<>()).add(chain);
+            this.chainsBySecond.computeIfAbsent(chain.second, key -> new ArrayList<>()).add(chain);
+        });
+    }
+
+    Set<IRI> getInverses(IRI property) {
+        return this.inverses.getOrDefault(property, Collections.emptySet());
+    }
+
+    boolean isSymmetric(IRI property) {
+        return this.symmetric.contains(property);
+    }
+
+    boolean isTransitive(IRI property) {
+        return this.transitive.contains(property);
+    }
+
+    /**
+     * Property chains where the given property is the first link
+     *
+     * @param property - {@link IRI} of the property
+     * @return - {@link List} of {@link PropertyChain}
+     */
+    List<PropertyChain> getChainsStartingWith(IRI property) {
+        return this.chainsByFirst.getOrDefault(property, Collections.emptyList());
+    }
+
+    /**
+     * Property chains where the given property is the second link
+     *
+     * @param property - {@link IRI} of the property
+     * @return - {@link List} of {@link PropertyChain}
+     */
+    List<PropertyChain> getChainsEndingWith(IRI property) {
+        return this.chainsBySecond.getOrDefault(property, Collections.emptyList());
+    }
+
+    /**
+     * Does the statement (potentially) modify the property axioms?
+     *
+     * @param statement - {@link Statement} to check
+     * @return - {@code true} if the axioms need to be reloaded
+     */
+    static boolean isSchemaStatement(Statement statement) {
+        final IRI predicate = statement.getPredicate();
+        if (predicate.equals(RDF.TYPE)) {
+            return statement.getObject().equals(OWL.SYMMETRICPROPERTY) || statement.getObject().equals(OWL.TRANSITIVEPROPERTY);
+        }
+        return predicate.equals(OWL.INVERSEOF)
+                || predicate.equals(PROPERTY_CHAIN_AXIOM)
+                || predicate.equals(RDF.FIRST)
+                || predicate.equals(RDF.REST);
+    }
+
+    /**
+     * Read the property axioms (including any inferred ones) from the given connection
+     *
+     * @param connection - {@link SailConnection} to read from
+     * @return - {@link OWLRuleSchema}
+     */
+    static OWLRuleSchema load(SailConnection connection) {
+        final Map<IRI, Set<IRI>> inverses = new HashMap<>();
+        for (Statement statement : getStatements(connection, null, OWL.INVERSEOF, null)) {
+            if (statement.getSubject() instanceof IRI && statement.getObject() instanceof IRI) {
+                final IRI property = (IRI) statement.getSubject();
+                final IRI inverse = (IRI) statement.getObject();
+                inverses.computeIfAbsent(property, key -> new HashSet<>()).add(inverse);
+                inverses.computeIfAbsent(inverse, key -> new HashSet<>()).add(property);
+            }
+        }
+        final Set<IRI> symmetric = getTypedProperties(connection, OWL.SYMMETRICPROPERTY);
+        final Set<IRI> transitive = getTypedProperties(connection, OWL.TRANSITIVEPROPERTY);
+
+        final List<PropertyChain> chains = new ArrayList<>();
+        for (Statement statement : getStatements(connection, null, PROPERTY_CHAIN_AXIOM, null)) {
+            if (!(statement.getSubject() instanceof IRI) || !(statement.getObject() instanceof Resource)) {
+                continue;
+            }
+            final List<IRI> links = readList(connection, (Resource) statement.getObject());
+            if (links.size() == 2) {
+                chains.add(new PropertyChain((IRI) statement.getSubject(), links.get(0), links.get(1)));
+            } else {
+                logger.warn("Only property chains of length 2 are supported, skipping chain for {}", statement.getSubject());
+            }
+        }
+        logger.debug("Loaded {} inverse, {} symmetric, {} transitive properties and {} property chains", inverses.size(), symmetric.size(), transitive.size(), chains.size());
+        return new OWLRuleSchema(inverses, symmetric, transitive, chains);
+    }
+
+    private static Set<IRI> getTypedProperties(SailConnection connection, IRI type) {
+        final Set<IRI> properties = new HashSet<>();
+        for (Statement statement : getStatements(connection, null, RDF.TYPE, type)) {
+            if (statement.getSubject() instanceof IRI) {
+                properties.add((IRI) statement.getSubject());
+            }
+        }
+        return properties;
+    }
+
+    private static List<IRI> readList(SailConnection connection, Resource head) {
+        final List<IRI> members = new ArrayList<>();
+        final Set<Resource> visited = new HashSet<>();
+        Resource node = head;
+        while (!node.equals(RDF.NIL) && visited.add(node)) {
+            final Optional<Value> first = getStatements(connection, node, RDF.FIRST, null).stream().map(Statement::getObject).findFirst();
+            final Optional<Value> rest = getStatements(connection, node, RDF.REST, null).stream().map(Statement::getObject).findFirst();
+            if (!first.isPresent() || !(first.get() instanceof IRI) || !rest.isPresent() || !(rest.get() instanceof Resource)) {
+//                Malformed list, which we can't apply
+                return Collections.emptyList();
+            }
+            members.add((IRI) first.get());
+            node = (Resource) rest.get();
+        }
+        return members;
+    }
+
+    static List<Statement> getStatements(SailConnection connection, @Nullable Resource subject, @Nullable IRI predicate, @Nullable Value object) {
+        final List<Statement> statements = new ArrayList<>();
+        try (CloseableIteration<? extends Statement, SailException> iteration = connection.getStatements(subject, predicate, object, true)) {
+            while (iteration.hasNext()) {
+                statements.add(iteration.next());
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Two property chain, where {@code first o second} is a sub-property of {@code property}
+     */
+    static final class PropertyChain {
+        final IRI property;
+        final IRI first;
+        final IRI second;
+
+        PropertyChain(IRI property, IRI first, IRI second) {
+            this.property = property;
+            this.first = first;
+            this.second = second;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.nickrobison.trestle.rdf4j;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process STR-tree index over the WKT literals stored in the repository.
+ * Geometries are keyed by their WKT string, which is what the query engine hands us when evaluating a spatial filter,
+ * so each stored literal is only parsed once, and the index can discard most of the candidate rows with a simple set lookup.
+ * <p>
+ * The index is only ever used as a pre-filter, the final result is always computed from the actual geometries.
+ * So it's safe for the index to contain stale values (e.g. from an aborted transaction), and WKT values which have not been indexed (e.g. written through a SPARQL update) are parsed on demand.
+ */
+@ThreadSafe
+class SpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialIndex.class);
+    private static final int QUERY_CACHE_SIZE = 64;
+
+    private final int nodeCapacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, IndexedGeometry> geometries = new HashMap<>();
+    private final Cache<String, SpatialQuery> queries = CacheBuilder.newBuilder()
+            .maximumSize(QUERY_CACHE_SIZE)
+            .build();
+    //    Tree is rebuilt lazily, null means it needs to be rebuilt before the next query
+    private @Nullable STRtree tree = null;
+    private volatile long version = 0;
+
+    /**
+     * Create a new, empty, spatial index
+     *
+     * @param nodeCapacity - maximum number of entries in each node of the STR-tree
+     */
+    SpatialIndex(int nodeCapacity) {
+        this.nodeCapacity = nodeCapacity;
+    }
+
+    /**
+     * Add the WKT value to the index.
+     * Values are reference counted, so adding the same value multiple times requires an equal number of removals.
+     *
+     * @param wkt - {@link String} WKT value
+     */
+    void add(String wkt) {
+        final String key = stripCRS(wkt);
+        this.lock.writeLock().lock();
+        try {
+            final IndexedGeometry existing = this.geometries.get(key);
+            if (existing != null) {
+                existing.references++;
+                return;
+            }
+            this.geometries.put(key, new IndexedGeometry(parseWKT(key)));
+            invalidate();
+        } catch (ParseException e) {
+            logger.error("Unable to index invalid WKT value {}", wkt, e);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the WKT value from the index
+     *
+     * @param wkt - {@link String} WKT value
+     */
+    void remove(String wkt) {
+        final String key = stripCRS(wkt);
+        this.lock.writeLock().lock();
+        try {
+            final IndexedGeometry existing = this.geometries.get(key);
+            if (existing == null) {
+                return;
+            }
+            existing.references--;
+            if (existing.references <= 0) {
+                this.geometries.remove(key);
+                invalidate();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove everything from the index
+     */
+    void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.geometries.clear();
+            invalidate();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct geometries in the index
+     *
+     * @return - index size
+     */
+    int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.geometries.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Determine whether or not the given WKT value intersects the query WKT
+     *
+     * @param wkt      - {@link String} WKT value to test, usually the stored value
+     * @param queryWKT - {@link String} WKT value of the query geometry
+     * @return - {@code true} geometries intersect
+     */
+    boolean intersects(String wkt, String queryWKT) {
+        final String key = stripCRS(wkt);
+        final SpatialQuery query = getQuery(stripCRS(queryWKT));
+        final @Nullable Geometry geometry;
+        this.lock.readLock().lock();
+        try {
+            final IndexedGeometry indexed = this.geometries.get(key);
+//            If the value has been indexed since the query was built, we can't rely on the candidate set
+            if (indexed != null && query.version == this.version && !query.candidates.contains(key)) {
+                return false;
+            }
+            geometry = indexed == null ? null : indexed.geometry;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        if (geometry == null) {
+            logger.trace("WKT value is not indexed, parsing on demand");
+            try {
+                return query.geometry.intersects(parseWKT(key));
+            } catch (ParseException e) {
+                throw new IllegalArgumentException(String.format("Cannot parse WKT value %s", wkt), e);
+            }
+        }
+        return query.geometry.intersects(geometry);
+    }
+
+    private SpatialQuery getQuery(String queryWKT) {
+        final @Nullable SpatialQuery cached = this.queries.getIfPresent(queryWKT);
+        if (cached != null && cached.version == this.version) {
+            return cached;
+        }
+
+        final Geometry queryGeometry;
+        try {
+            queryGeometry = parseWKT(queryWKT);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(String.format("Cannot parse query WKT %s", queryWKT), e);
+        }
+        final PreparedGeometry prepared = PreparedGeometryFactory.prepare(queryGeometry);
+
+//        We need the write lock, in case we need to rebuild the tree
+        this.lock.writeLock().lock();
+        try {
+            final STRtree strTree = getTree();
+            @SuppressWarnings("unchecked") final List<String> matches = strTree.query(queryGeometry.getEnvelopeInternal());
+            final SpatialQuery query = new SpatialQuery(prepared, new HashSet<>(matches), this.version);
+            this.queries.put(queryWKT, query);
+            return query;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the STR-tree, building it if necessary.
+     * Must be called while holding the write lock
+     *
+     * @return - {@link STRtree}
+     */
+    private STRtree getTree() {
+        if (this.tree == null) {
+            logger.debug("Building spatial index with {} geometries", this.geometries.size());
+            final STRtree strTree = new STRtree(this.nodeCapacity);
+            this.geometries.forEach((key, value) -> strTree.insert(value.geometry.getEnvelopeInternal(), key));
+            strTree.build();
+            this.tree = strTree;
+        }
+        return this.tree;
+    }
+
+    /**
+     * Mark the tree and cached queries as stale.
+     * Must be called while holding the write lock
+     */
+    private void invalidate() {
+        this.tree = null;
+        this.version++;
+        this.queries.invalidateAll();
+    }
+
+    /**
+     * GeoSPARQL WKT literals can optionally start with the CRS IRI, which JTS can't parse.
+     *
+     * @param wkt - {@link String} WKT literal value
+     * @return - WKT value without the CRS
+     */
+    private static String stripCRS(String wkt) {
+        final String trimmed = wkt.trim();
+        if (trimmed.startsWith("<")) {
+            final int end = trimmed.indexOf('>');
+            if (end > 0) {
+                return trimmed.substring(end + 1).trim();
+            }
+        }
+        return trimmed;
+    }
+
+    private static Geometry parseWKT(String wkt) throws ParseException {
+//        WKTReader is not thread safe, so create a new one each time. We only do this once per distinct geometry
+        return new WKTReader().read(wkt);
+    }
+
+    private static class IndexedGeometry {
+        private final Geometry geometry;
+        private int references = 1;
+
+        private IndexedGeometry(Geometry geometry) {
+            this.geometry = geometry;
+        }
+    }
+
+    private static class SpatialQuery {
+        private final PreparedGeometry geometry;
+        private final Set<String> candidates;
+        private final long version;
+
+        private SpatialQuery(PreparedGeometry geometry, Set<String> candidates, long version) {
+            this.geometry = geometry;
+            this.candidates = candidates;
+            this.version = version;
+        }
+    }
+}
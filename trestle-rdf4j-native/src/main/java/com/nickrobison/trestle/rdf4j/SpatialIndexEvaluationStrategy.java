@@ -0,0 +1,76 @@
+package com.nickrobison.trestle.rdf4j;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.BooleanLiteral;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
+
+import java.util.List;
+
+/**
+ * {@link StrictEvaluationStrategy} which evaluates the GeoSPARQL {@code sfIntersects} filter function against the {@link SpatialIndex},
+ * rather than parsing both WKT literals for every candidate row.
+ * All other functions are evaluated normally.
+ */
+class SpatialIndexEvaluationStrategy extends StrictEvaluationStrategy {
+
+    static final String SF_INTERSECTS = "http://www.opengis.net/def/function/geosparql/sfIntersects";
+
+    private final SpatialIndex index;
+
+    SpatialIndexEvaluationStrategy(TripleSource tripleSource, Dataset dataset, FederatedServiceResolver serviceResolver, long iterationCacheSyncThreshold, EvaluationStatistics evaluationStatistics, SpatialIndex index) {
+        super(tripleSource, dataset, serviceResolver, iterationCacheSyncThreshold, evaluationStatistics);
+        this.index = index;
+    }
+
+    @Override
+    public Value evaluate(FunctionCall node, BindingSet bindings) throws QueryEvaluationException {
+        final List<ValueExpr> args = node.getArgs();
+        if (!SF_INTERSECTS.equals(node.getURI()) || args.size() != 2) {
+            return super.evaluate(node, bindings);
+        }
+
+        final Value wkt = evaluate(args.get(0), bindings);
+        final Value queryWKT = evaluate(args.get(1), bindings);
+        if (!(wkt instanceof Literal) || !(queryWKT instanceof Literal)) {
+            throw new ValueExprEvaluationException("sfIntersects requires two WKT literals");
+        }
+        try {
+            return BooleanLiteral.valueOf(this.index.intersects(((Literal) wkt).getLabel(), ((Literal) queryWKT).getLabel()));
+        } catch (IllegalArgumentException e) {
+            throw new ValueExprEvaluationException(e);
+        }
+    }
+
+    /**
+     * Factory which creates {@link SpatialIndexEvaluationStrategy}s backed by the given {@link SpatialIndex}
+     */
+    static class Factory extends StrictEvaluationStrategyFactory {
+
+        private final SpatialIndex index;
+
+        Factory(SpatialIndex index) {
+            super();
+            this.index = index;
+        }
+
+        @Override
+        public EvaluationStrategy createEvaluationStrategy(Dataset dataset, TripleSource tripleSource, EvaluationStatistics evaluationStatistics) {
+            final SpatialIndexEvaluationStrategy strategy = new SpatialIndexEvaluationStrategy(tripleSource, dataset,
+                    getFederatedServiceResolver(), getQuerySolutionCacheThreshold(), evaluationStatistics, this.index);
+            getOptimizerPipeline().ifPresent(strategy::setOptimizerPipeline);
+            return strategy;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.nickrobison.trestle.rdf4j;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.google.inject.util.Types;
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.ontology.types.TrestleResult;
+import com.nickrobison.trestle.testing.OntologyTest;
+import com.nickrobison.trestle.transactions.TrestleTransaction;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+import java.util.List;
+import java.util.Set;
+
+import static com.nickrobison.trestle.common.StaticIRI.GEOSPARQLPREFIX;
+import static com.nickrobison.trestle.common.StaticIRI.WKTDatatypeIRI;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("integration")
+public class NativeOntologyTest extends OntologyTest {
+
+    private static final String SPATIAL_QUERY = "PREFIX ogc: <http://www.opengis.net/ont/geosparql#>\n" +
+            "PREFIX ogcf: <http://www.opengis.net/def/function/geosparql/>\n" +
+            "SELECT ?m WHERE { ?m ogc:asWKT ?wkt . " +
+            "FILTER(ogcf:sfIntersects(?wkt, \"%s\"^^ogc:wktLiteral)) }";
+
+    @Override
+    protected void setupOntology() {
+        final Injector injector = Guice.createInjector(new TestModule());
+        ontology = getOntology(injector);
+        ontology.initializeOntology();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TypeLiteral<Set<T>> setOf(Class<T> type) {
+        return (TypeLiteral<Set<T>>) TypeLiteral.get(Types.setOf(type));
+    }
+
+    private ITrestleOntology getOntology(Injector injector) {
+        final Set<ITrestleOntology> ontologies = injector.getInstance(Key.get(setOf(ITrestleOntology.class)));
+        return ontologies
+                .stream()
+                .filter(o -> o instanceof NativeOntology)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Cannot find underlying ontology"));
+    }
+
+    @Override
+    protected void shutdownOntology() {
+        ontology.close(true);
+    }
+
+    @Override
+    @Test
+    public void testByteParsing() {
+        final OWLNamedIndividual long_test = df.getOWLNamedIndividual(IRI.create("trestle:", "long_test"));
+        final OWLClass owlCl = df.getOWLClass(IRI.create("trestle:", "test"));
+
+        final OWLDataProperty bigLong = df.getOWLDataProperty(IRI.create("trestle:", "long_big"));
+        writeProperty(owlCl, long_test, bigLong, df.getOWLLiteral(Long.toString(Long.MAX_VALUE), OWL2Datatype.XSD_LONG));
+        List<OWLLiteral> individualDataProperty = ontology.getIndividualDataProperty(long_test, bigLong).toList().blockingGet();
+        assertEquals(Long.toString(Long.MAX_VALUE), individualDataProperty.get(0).getLiteral(), "Wrong long value");
+        assertEquals(OWL2Datatype.XSD_LONG, individualDataProperty.get(0).getDatatype().getBuiltInDatatype(), "Should be long");
+
+        final OWLDataProperty negInt = df.getOWLDataProperty(IRI.create("trestle:", "neg_int"));
+        writeProperty(owlCl, long_test, negInt, df.getOWLLiteral(Integer.toString(Integer.MIN_VALUE), OWL2Datatype.XSD_INTEGER));
+        individualDataProperty = ontology.getIndividualDataProperty(long_test, negInt).toList().blockingGet();
+        assertEquals(Integer.toString(Integer.MIN_VALUE), individualDataProperty.get(0).getLiteral(), "Wrong int value");
+        assertEquals(OWL2Datatype.XSD_INTEGER, individualDataProperty.get(0).getDatatype().getBuiltInDatatype(), "Should be int");
+
+        final OWLDataProperty decimal = df.getOWLDataProperty(IRI.create("trestle:", "float"));
+        writeProperty(owlCl, long_test, decimal, df.getOWLLiteral(Double.toString(4321.43), OWL2Datatype.XSD_DECIMAL));
+        individualDataProperty = ontology.getIndividualDataProperty(long_test, decimal).toList().blockingGet();
+        assertEquals(Double.toString(4321.43), individualDataProperty.get(0).getLiteral(), "Wrong decimal value");
+        assertEquals(OWL2Datatype.XSD_DECIMAL, individualDataProperty.get(0).getDatatype().getBuiltInDatatype(), "Should be decimal");
+    }
+
+    @Test
+    public void testSpatialIndex() {
+        final OWLClass owlCl = df.getOWLClass(IRI.create("trestle:", "test"));
+        final OWLDataProperty asWKT = df.getOWLDataProperty(IRI.create(GEOSPARQLPREFIX, "asWKT"));
+        final OWLDatatype wktDatatype = df.getOWLDatatype(WKTDatatypeIRI);
+        final OWLNamedIndividual inside = df.getOWLNamedIndividual(IRI.create("trestle:", "inside"));
+        final OWLNamedIndividual outside = df.getOWLNamedIndividual(IRI.create("trestle:", "outside"));
+        writeProperty(owlCl, inside, asWKT, df.getOWLLiteral("POLYGON ((0 0, 0 1, 1 1, 1 0, 0 0))", wktDatatype));
+        writeProperty(owlCl, outside, asWKT, df.getOWLLiteral("POLYGON ((10 10, 10 11, 11 11, 11 10, 10 10))", wktDatatype));
+
+        final String query = String.format(SPATIAL_QUERY, "POLYGON ((0.5 0.5, 0.5 2, 2 2, 2 0.5, 0.5 0.5))");
+        List<TrestleResult> results = ontology.executeSPARQLResults(query).toList().blockingGet();
+        assertAll(() -> assertEquals(1, results.size(), "Should only intersect a single individual"),
+                () -> assertEquals(inside.getIRI().toString(), results.get(0).unwrapIndividual("m").toStringID(), "Should intersect inside individual"));
+
+//        Removing the individual should remove it from the index and the results
+        ontology.removeIndividual(inside).blockingAwait();
+        assertEquals(0, ontology.executeSPARQLResults(query).toList().blockingGet().size(), "Should not have any intersections");
+
+//        Values written via SPARQL aren't indexed, but should still be returned
+        ontology.executeUpdateSPARQL("PREFIX ogc: <http://www.opengis.net/ont/geosparql#>\n" +
+                String.format("INSERT DATA { <%s> ogc:asWKT \"POINT (1 1)\"^^ogc:wktLiteral }", inside.getIRI().toString())).blockingAwait();
+        assertEquals(1, ontology.executeSPARQLResults(query).toList().blockingGet().size(), "Should intersect un-indexed value");
+    }
+
+    private void writeProperty(OWLClass owlClass, OWLNamedIndividual individual, OWLDataProperty property, OWLLiteral literal) {
+        final TrestleTransaction transaction = this.ontology.createandOpenNewTransaction(true);
+        ontology.createIndividual(df.getOWLClassAssertionAxiom(owlClass, individual))
+                .andThen(ontology.writeIndividualDataProperty(df.getOWLDataPropertyAssertionAxiom(property, individual, literal)))
+                .doOnComplete(() -> this.ontology.returnAndCommitTransaction(transaction))
+                .blockingAwait();
+    }
+}
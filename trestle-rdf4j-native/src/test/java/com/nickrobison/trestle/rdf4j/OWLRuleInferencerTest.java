@@ -0,0 +1,133 @@
+package com.nickrobison.trestle.rdf4j;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.inferencer.fc.SchemaCachingRDFSInferencer;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OWLRuleInferencerTest {
+
+    private static final String NS = "http://nickrobison.com/test/trestle.owl#";
+
+    private SailRepository repository;
+    private ValueFactory vf;
+    private IRI hasFact;
+    private IRI factOf;
+    private IRI before;
+    private IRI begins;
+    private IRI meets;
+    private IRI temporalRelation;
+
+    @BeforeEach
+    void setup() {
+        repository = new SailRepository(new OWLRuleInferencer(new SchemaCachingRDFSInferencer(new MemoryStore())));
+        repository.init();
+        vf = repository.getValueFactory();
+        hasFact = vf.createIRI(NS, "has_fact");
+        factOf = vf.createIRI(NS, "fact_of");
+        before = vf.createIRI(NS, "before");
+        begins = vf.createIRI(NS, "begins");
+        meets = vf.createIRI(NS, "meets");
+        temporalRelation = vf.createIRI(NS, "Temporal_Relation");
+
+        try (RepositoryConnection connection = repository.getConnection()) {
+            connection.begin();
+            connection.add(factOf, OWL.INVERSEOF, hasFact);
+            connection.add(before, RDF.TYPE, OWL.TRANSITIVEPROPERTY);
+            connection.add(before, RDFS.SUBPROPERTYOF, temporalRelation);
+            connection.add(meets, RDF.TYPE, OWL.SYMMETRICPROPERTY);
+//            begins o before -> before
+            final Resource chain = vf.createBNode();
+            final Resource rest = vf.createBNode();
+            connection.add(before, OWLRuleSchema.PROPERTY_CHAIN_AXIOM, chain);
+            connection.add(chain, RDF.FIRST, begins);
+            connection.add(chain, RDF.REST, rest);
+            connection.add(rest, RDF.FIRST, before);
+            connection.add(rest, RDF.REST, RDF.NIL);
+            connection.commit();
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        repository.shutDown();
+    }
+
+    @Test
+    void testPropertyRules() {
+        final IRI a = vf.createIRI(NS, "a");
+        final IRI b = vf.createIRI(NS, "b");
+        final IRI c = vf.createIRI(NS, "c");
+        final IRI d = vf.createIRI(NS, "d");
+        final IRI fact = vf.createIRI(NS, "fact");
+        try (RepositoryConnection connection = repository.getConnection()) {
+            connection.begin();
+            connection.add(fact, factOf, a);
+            connection.add(a, before, b);
+            connection.add(b, before, c);
+            connection.add(d, begins, a);
+            connection.add(a, meets, b);
+            connection.commit();
+
+            assertAll(() -> assertTrue(connection.hasStatement(a, hasFact, fact, true), "Should infer inverse"),
+                    () -> assertFalse(connection.hasStatement(a, hasFact, fact, false), "Inverse should not be explicit"),
+                    () -> assertTrue(connection.hasStatement(b, meets, a, true), "Should infer symmetric"),
+                    () -> assertTrue(connection.hasStatement(a, before, c, true), "Should infer transitive"),
+                    () -> assertTrue(connection.hasStatement(d, before, b, true), "Should infer property chain"),
+                    () -> assertTrue(connection.hasStatement(d, before, c, true), "Should infer transitive from property chain"),
+                    () -> assertTrue(connection.hasStatement(a, temporalRelation, c, true), "Should infer super property of inferred statement"));
+
+//            Removing an explicit statement should retract its entailments
+            connection.begin();
+            connection.remove(b, before, c);
+            connection.commit();
+            assertAll(() -> assertFalse(connection.hasStatement(a, before, c, true), "Should retract transitive"),
+                    () -> assertFalse(connection.hasStatement(d, before, c, true), "Should retract chained transitive"),
+                    () -> assertTrue(connection.hasStatement(d, before, b, true), "Should keep property chain"),
+                    () -> assertTrue(connection.hasStatement(a, hasFact, fact, true), "Should keep inverse"));
+
+//            Rolled back statements shouldn't leave anything behind
+            connection.begin();
+            connection.add(c, before, d);
+            connection.rollback();
+            assertFalse(connection.hasStatement(b, before, d, true), "Should not have rolled back inference");
+        }
+    }
+
+    @Test
+    void testSchemaChanges() {
+        final IRI a = vf.createIRI(NS, "a");
+        final IRI b = vf.createIRI(NS, "b");
+        final IRI after = vf.createIRI(NS, "after");
+        try (RepositoryConnection connection = repository.getConnection()) {
+            connection.begin();
+            connection.add(a, before, b);
+            connection.commit();
+            assertFalse(connection.hasStatement(b, after, a, true), "Should not have undeclared inverse");
+
+//            Adding the axiom should apply it to the existing statements
+            connection.begin();
+            connection.add(after, OWL.INVERSEOF, before);
+            connection.commit();
+        }
+        try (RepositoryConnection connection = repository.getConnection()) {
+            assertTrue(connection.hasStatement(b, after, a, true), "Should infer new inverse");
+            final IRI c = vf.createIRI(NS, "c");
+            connection.begin();
+            connection.add(c, after, b);
+            connection.commit();
+            assertTrue(connection.hasStatement(b, before, c, true), "Should use cached schema on new connection");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.nickrobison.trestle.rdf4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpatialIndexTest {
+
+    private static final String SQUARE = "POLYGON ((0 0, 0 1, 1 1, 1 0, 0 0))";
+    private static final String FAR_SQUARE = "POLYGON ((10 10, 10 11, 11 11, 11 10, 10 10))";
+    private static final String QUERY = "POLYGON ((0.5 0.5, 0.5 2, 2 2, 2 0.5, 0.5 0.5))";
+
+    private SpatialIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new SpatialIndex(4);
+    }
+
+    @Test
+    void testIntersection() {
+        index.add(SQUARE);
+        index.add(FAR_SQUARE);
+        assertAll(() -> assertEquals(2, index.size(), "Should have two geometries"),
+                () -> assertTrue(index.intersects(SQUARE, QUERY), "Should intersect"),
+                () -> assertFalse(index.intersects(FAR_SQUARE, QUERY), "Should not intersect"),
+                () -> assertTrue(index.intersects("POINT (1.5 1.5)", QUERY), "Should intersect un-indexed value"),
+                () -> assertFalse(index.intersects("POINT (5 5)", QUERY), "Should not intersect un-indexed value"));
+
+//        Adding a new geometry should invalidate the cached query
+        final String overlapping = "POLYGON ((1 1, 1 3, 3 3, 3 1, 1 1))";
+        index.add(overlapping);
+        assertTrue(index.intersects(overlapping, QUERY), "Should intersect new geometry");
+    }
+
+    @Test
+    void testReferenceCounting() {
+        index.add(SQUARE);
+        index.add(SQUARE);
+        assertEquals(1, index.size(), "Should only index geometry once");
+        index.remove(SQUARE);
+        assertEquals(1, index.size(), "Should still have geometry");
+        index.remove(SQUARE);
+        assertEquals(0, index.size(), "Should have removed geometry");
+//        Removed values are still evaluated correctly
+        assertTrue(index.intersects(SQUARE, QUERY), "Should intersect removed value");
+        index.remove(SQUARE);
+        assertEquals(0, index.size(), "Removing missing value should do nothing");
+    }
+
+    @Test
+    void testCRS() {
+        index.add("<http://www.opengis.net/def/crs/OGC/1.3/CRS84> " + SQUARE);
+        assertAll(() -> assertEquals(1, index.size(), "Should index value with CRS"),
+                () -> assertTrue(index.intersects(SQUARE, "<http://www.opengis.net/def/crs/OGC/1.3/CRS84> " + QUERY), "Should strip CRS from query"));
+        index.remove(SQUARE);
+        assertEquals(0, index.size(), "Should remove value without CRS");
+    }
+
+    @Test
+    void testInvalidWKT() {
+        index.add("not wkt");
+        assertEquals(0, index.size(), "Should not index invalid value");
+        assertThrows(IllegalArgumentException.class, () -> index.intersects(SQUARE, "not wkt"));
+        assertThrows(IllegalArgumentException.class, () -> index.intersects("not wkt", QUERY));
+    }
+}
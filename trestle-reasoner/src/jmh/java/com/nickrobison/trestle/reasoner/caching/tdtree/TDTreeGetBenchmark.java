@@ -0,0 +1,139 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.nickrobison.trestle.common.locking.TrestleUpgradableReadWriteLock;
+import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by nrobison on 5/3/17.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode({Mode.SingleShotTime})
+@CompilerControl(CompilerControl.Mode.EXCLUDE)
+@SuppressWarnings({"Duplicates", "initialization.fields.uninitialized", "argument.type.incompatible"})
+public class TDTreeGetBenchmark {
+    private Random r;
+    private TDTree<IndexValues> index;
+    private IndexValues[] values;
+    private int nextValue = 0;
+
+    @Param({"100", "1000", "10000"})
+    public int limit;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        index = new TDTree<>(10);
+        values = IndexValues.generateTestRecords(1234, limit);
+        System.out.println("Writing records");
+        Arrays.stream(values)
+                .forEach(value -> index.insertValue(value.getKey(), value.getStart(), value.getEnd(), value));
+        System.out.println(String.format("%s records, %s leafs", index.getIndexSize(), index.getLeafCount()));
+        System.out.println("Starting benchmark");
+    }
+
+
+    @Benchmark
+    public void testGet(Blackhole bh) {
+        for (int i = 0; i < values.length; i++) {
+            IndexValues value = values[i];
+            bh.consume(index.getValue(value.getKey(), value.getStart()));
+        }
+    }
+
+    /**
+     * Single point lookup, run with the GC profiler (see {@link #main(String[])}) to verify that a cache hit doesn't allocate.
+     * Expect gc.alloc.rate.norm to be ~0 B/op.
+     */
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @CompilerControl(CompilerControl.Mode.DEFAULT)
+    public IndexValues testSingleGet() {
+        final IndexValues value = values[nextValue];
+        nextValue = (nextValue + 1) % values.length;
+        return index.getValue(value.getKey(), value.getStart());
+    }
+
+    /**
+     * Multi-threaded reads against a shared index.
+     * The {@link TDTree} is guarded by the same read/write lock used by the cache, while the {@link ConcurrentTDTree} is read without any locking.
+     */
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void testConcurrentGet(SharedIndex shared, Blackhole bh) throws InterruptedException {
+        final IndexValues value = shared.values[ThreadLocalRandom.current().nextInt(shared.values.length)];
+        bh.consume(shared.get(value));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("Tearing down");
+        System.out.println(String.format("%s values, %s leafs", index.getIndexSize(), index.getLeafCount()));
+    }
+
+    @State(Scope.Benchmark)
+    @SuppressWarnings({"initialization.fields.uninitialized"})
+    public static class SharedIndex {
+        private final TrestleUpgradableReadWriteLock lock = new TrestleUpgradableReadWriteLock();
+        private ITrestleIndex<IndexValues> index;
+        private IndexValues[] values;
+
+        @Param({"tdtree", "concurrent-tdtree"})
+        public String implementation;
+
+        @Param({"10000"})
+        public int sharedLimit;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            if (implementation.equals("tdtree")) {
+                index = new TDTree<>(10);
+            } else {
+                index = new ConcurrentTDTree<>(10);
+            }
+            values = IndexValues.generateTestRecords(1234, sharedLimit);
+            Arrays.stream(values)
+                    .forEach(value -> index.insertValue(value.getKey(), value.getStart(), value.getEnd(), value));
+        }
+
+        IndexValues get(IndexValues value) throws InterruptedException {
+            if (index.isThreadSafe()) {
+                return index.getValue(value.getKey(), value.getStart());
+            }
+            lock.lockRead();
+            try {
+                return index.getValue(value.getKey(), value.getStart());
+            } finally {
+                lock.unlockRead();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(TDTreeGetBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(8)
+                .measurementIterations(8)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.nickrobison.trestle.common.locking.TrestleUpgradableReadWriteLock;
+import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by nrobison on 5/2/17.
+ */
+@SuppressWarnings({"ForLoopReplaceableByForEach", "Duplicates", "initialization.fields.uninitialized"})
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode({Mode.SingleShotTime})
+@CompilerControl(CompilerControl.Mode.EXCLUDE)
+public class TDTreePutBenchmark {
+    private TDTree<IndexValues> index;
+    private IndexValues[] values;
+
+    @Param({"100", "1000", "10000"})
+    public int limit;
+
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        index = new TDTree<>(10);
+        values = IndexValues.generateTestRecords(1234, limit);
+        System.out.println("Starting benchmark");
+    }
+
+    @Benchmark
+    public void testUnwrap(Blackhole bh) {
+        for (int i = 0; i < values.length; i++) {
+            IndexValues value = values[i];
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void testInsert() {
+        for (int i = 0; i < values.length; i++) {
+            IndexValues value = values[i];
+            index.insertValue(value.getKey(), value.getStart(), value.getEnd(), value);
+        }
+    }
+
+    /**
+     * Multi-threaded mixed workload (90% reads, 10% writes) against a shared index.
+     * The {@link TDTree} is guarded by the same read/write lock used by the cache, while the {@link ConcurrentTDTree} is accessed without any locking.
+     */
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void testConcurrentReadWrite(SharedIndex shared, Blackhole bh) throws InterruptedException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final IndexValues value = shared.values[random.nextInt(shared.values.length)];
+        if (random.nextInt(10) == 0) {
+            shared.put(value);
+        } else {
+            bh.consume(shared.get(value));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("Tearing down");
+        System.out.println(String.format("%s values, %s leafs", index.getIndexSize(), index.getLeafCount()));
+    }
+
+    @State(Scope.Benchmark)
+    @SuppressWarnings({"initialization.fields.uninitialized"})
+    public static class SharedIndex {
+        private final TrestleUpgradableReadWriteLock lock = new TrestleUpgradableReadWriteLock();
+        private ITrestleIndex<IndexValues> index;
+        private IndexValues[] values;
+
+        @Param({"tdtree", "concurrent-tdtree"})
+        public String implementation;
+
+        @Param({"10000"})
+        public int sharedLimit;
+
+        @Setup(Level.Iteration)
+        public void setup() throws Exception {
+            if (implementation.equals("tdtree")) {
+                index = new TDTree<>(10);
+            } else {
+                index = new ConcurrentTDTree<>(10);
+            }
+            values = IndexValues.generateTestRecords(1234, sharedLimit);
+        }
+
+        void put(IndexValues value) throws InterruptedException {
+            if (index.isThreadSafe()) {
+                index.insertValue(value.getKey(), value.getStart(), value.getEnd(), value);
+                return;
+            }
+            lock.lockWrite();
+            try {
+                index.insertValue(value.getKey(), value.getStart(), value.getEnd(), value);
+            } finally {
+                lock.unlockWrite();
+            }
+        }
+
+        IndexValues get(IndexValues value) throws InterruptedException {
+            if (index.isThreadSafe()) {
+                return index.getValue(value.getKey(), value.getStart());
+            }
+            lock.lockRead();
+            try {
+                return index.getValue(value.getKey(), value.getStart());
+            } finally {
+                lock.unlockRead();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(TDTreePutBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(8)
+                .measurementIterations(8)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.nickrobison.trestle.reasoner.engines.spatial;
+
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.openjdk.jmh.annotations.*;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares re-projecting a polygon via the cached {@link TransformRegistry} and packed coordinate sequences,
+ * against decoding the CRSs and transforming each coordinate individually, as {@link SpatialEngineUtils#reprojectGeometry(Geometry, int, int)} used to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReprojectionBenchmark {
+
+    private static final int INPUT_SRID = 4326;
+    private static final int OUTPUT_SRID = 3857;
+
+    @Param({"10", "1000", "100000"})
+    private int coordinateCount;
+
+    private Geometry polygon;
+
+    @Setup
+    public void setup() {
+        final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), INPUT_SRID);
+//        Circle around Seattle, with the requested number of vertices
+        final Coordinate[] coordinates = new Coordinate[coordinateCount + 1];
+        for (int i = 0; i < coordinateCount; i++) {
+            final double angle = (2 * Math.PI * i) / coordinateCount;
+            coordinates[i] = new Coordinate(-122.33 + Math.cos(angle), 47.6 + Math.sin(angle));
+        }
+        coordinates[coordinateCount] = coordinates[0];
+        polygon = factory.createPolygon(coordinates);
+    }
+
+    @Benchmark
+    public Geometry cachedPackedTransform() {
+        return SpatialEngineUtils.reprojectGeometry(polygon, INPUT_SRID, OUTPUT_SRID);
+    }
+
+    @Benchmark
+    public Geometry uncachedTransform() throws FactoryException, TransformException {
+        final MathTransform transform = CRS.findMathTransform(CRS.decode("EPSG:" + INPUT_SRID, true), CRS.decode("EPSG:" + OUTPUT_SRID, true), true);
+        return JTS.transform(polygon, transform);
+    }
+}
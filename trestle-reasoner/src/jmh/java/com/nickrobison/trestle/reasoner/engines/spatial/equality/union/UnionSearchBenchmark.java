@@ -0,0 +1,84 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link PrunedUnionSearch} against the {@link ExhaustiveUnionSearch} for a single polygon which has been split into a number of strips,
+ * surrounded by neighbouring polygons which slightly overlap it, as happens with administrative boundaries from different datasets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnionSearchBenchmark {
+
+    private static final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+    private static final double MATCH_THRESHOLD = 0.9;
+
+    @Param({"5", "10", "15", "20"})
+    private int polygonCount;
+
+    private ForkJoinPool pool;
+    private Geometry target;
+    private Set<Geometry> targetSet;
+    private Set<Geometry> candidates;
+    private List<Geometry> allPolygons;
+    private Histogram histogram;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        histogram = new Histogram(new UniformReservoir());
+        target = box(0, 0, 100, 100);
+        targetSet = Collections.singleton(target);
+        candidates = new HashSet<>(polygonCount);
+
+        final int neighbourCount = polygonCount / 3;
+        final int stripCount = polygonCount - neighbourCount;
+        final double stripWidth = 100.0 / stripCount;
+        for (int i = 0; i < stripCount; i++) {
+            candidates.add(box(i * stripWidth, 0, (i + 1) * stripWidth, 100));
+        }
+//        Neighbours overlap the bottom of the target by a small amount
+        final double neighbourWidth = 100.0 / Math.max(neighbourCount, 1);
+        for (int i = 0; i < neighbourCount; i++) {
+            candidates.add(box(i * neighbourWidth, -50, (i + 1) * neighbourWidth, 0.5));
+        }
+
+        allPolygons = new ArrayList<>(candidates);
+        allPolygons.add(target);
+    }
+
+    @TearDown
+    public void teardown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Optional<PolygonMatchSet> prunedSearch() {
+        final PrunedUnionSearch search = new PrunedUnionSearch(pool, allPolygons, 10000, histogram, histogram);
+        return search.findUnion(targetSet, candidates, MATCH_THRESHOLD);
+    }
+
+    @Benchmark
+    public Optional<PolygonMatchSet> exhaustiveSearch() {
+        final ExhaustiveUnionSearch search = new ExhaustiveUnionSearch(factory, histogram);
+        return search.findUnion(targetSet, candidates, MATCH_THRESHOLD);
+    }
+
+    private static Geometry box(double minX, double minY, double maxX, double maxY) {
+        return factory.toGeometry(new Envelope(minX, maxX, minY, maxY));
+    }
+}
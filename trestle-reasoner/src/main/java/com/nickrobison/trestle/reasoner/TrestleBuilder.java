@@ -23,6 +23,7 @@ public class TrestleBuilder {
     Optional<String> password = Optional.empty();
     final Set<Class<?>> inputClasses;
     Optional<String> ontologyName = Optional.empty();
+    Optional<String> ontologyBackend = Optional.empty();
     Optional<TrestleCache> sharedCache = Optional.empty();
     Optional<IRI> ontologyIRI = Optional.empty();
     Optional<String> reasonerPrefix = Optional.empty();
@@ -105,6 +106,18 @@ public class TrestleBuilder {
         return this;
     }
 
+    /**
+     * Set the ontology backend to use, overriding the {@code trestle.ontology.backend} config value.
+     * Supported backends are {@code graphdb} and {@code native}
+     *
+     * @param backend - String of ontology backend
+     * @return - {@link TrestleBuilder}
+     */
+    public TrestleBuilder withOntologyBackend(String backend) {
+        this.ontologyBackend = Optional.of(backend);
+        return this;
+    }
+
     /**
      * Add ontology prefix and URI string to expand to
      *
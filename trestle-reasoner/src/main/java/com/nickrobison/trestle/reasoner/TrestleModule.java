@@ -12,6 +12,8 @@ import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.ontology.ReasonerPrefix;
 import com.nickrobison.trestle.ontology.TrestleOntologyModule;
 import com.nickrobison.trestle.ontology.annotations.OntologyName;
+import com.nickrobison.trestle.rdf4j.NativeOntology;
+import com.nickrobison.trestle.rdf4j.NativeOntologyModule;
 import com.nickrobison.trestle.reasoner.caching.TrestleCacheModule;
 import com.nickrobison.trestle.reasoner.engines.EngineModule;
 import com.nickrobison.trestle.reasoner.exceptions.InvalidOntologyName;
@@ -63,6 +65,7 @@ public class TrestleModule extends AbstractModule {
         // install the ontologies
         install(new TrestleOntologyModule());
         install(new GraphDBOntologyModule());
+        install(new NativeOntologyModule());
 
     }
 
@@ -92,8 +95,16 @@ public class TrestleModule extends AbstractModule {
     }
 
     @Provides
-    Class<? extends ITrestleOntology> provideOntologyClass() {
-        return GraphDBOntology.class;
+    Class<? extends ITrestleOntology> provideOntologyClass(Config config) {
+        final String backend = builder.ontologyBackend.orElseGet(() -> config.getString("ontology.backend"));
+        switch (backend.toLowerCase()) {
+            case "graphdb":
+                return GraphDBOntology.class;
+            case "native":
+                return NativeOntology.class;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported ontology backend %s", backend));
+        }
     }
 
     @Provides
@@ -13,6 +13,7 @@ import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectReader;
 import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectWriter;
 import com.nickrobison.trestle.reasoner.engines.spatial.ITrestleSpatialEngine;
 import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngine;
+import com.nickrobison.trestle.reasoner.engines.relations.DatasetRelationJob;
 import com.nickrobison.trestle.reasoner.engines.spatial.aggregation.AggregationEngine;
 import com.nickrobison.trestle.reasoner.engines.spatial.aggregation.Computable;
 import com.nickrobison.trestle.reasoner.engines.spatial.aggregation.Filterable;
@@ -228,6 +229,17 @@ public interface TrestleReasoner extends ITrestleObjectReader, ITrestleObjectWri
      */
     <T> Completable calculateSpatialAndTemporalRelationships(Class<T> clazz, String individual, @Nullable Temporal validAt) throws TrestleClassException, MissingOntologyEntity;
 
+    /**
+     * Create a job which computes the spatial and temporal relationships between all the objects of the given dataset class.
+     * If the job fails, it can be resumed by calling {@link DatasetRelationJob#run()} again.
+     *
+     * @param <T>     - Generic type parameter
+     * @param clazz   - {@link Class} of dataset
+     * @param validAt - {@link Temporal} optional temporal to read the objects at
+     * @return - {@link DatasetRelationJob}
+     */
+    <T extends @NonNull Object> DatasetRelationJob<T> createDatasetRelationJob(Class<T> clazz, @Nullable Temporal validAt);
+
     /**
      * Build the spatial adjacency graph for a given class.
      *
@@ -243,6 +255,23 @@ public interface TrestleReasoner extends ITrestleObjectReader, ITrestleObjectWri
      */
     <T extends @NonNull Object, B extends Number> Single<AggregationEngine.AdjacencyGraph<T, B>> buildSpatialGraph(Class<T> clazz, String objectID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt);
 
+    /**
+     * Build the spatial adjacency graph for a given class, stopping once the given depth or number of nodes has been reached.
+     *
+     * @param <T>         - {@link T} type parameter for object class
+     * @param <B>         - {@link B} type parameter for return type from {@link Computable} function
+     * @param clazz       - Java {@link Class} of objects to retrieve
+     * @param objectID    - {@link String} ID of object to begin graph computation with
+     * @param edgeCompute - {@link Computable} function to use for computing edge weights
+     * @param filter      - {@link Filterable} function to use for determining whether or not to compute the given node
+     * @param validAt     - {@link Temporal} optional validAt restriction
+     * @param dbAt        - {@link Temporal} optional dbAt restriction
+     * @param maxDepth    - Maximum number of hops from the starting object to expand, 0 for no limit
+     * @param maxNodes    - Maximum number of objects to expand, 0 for no limit
+     * @return - {@link com.nickrobison.trestle.reasoner.engines.spatial.aggregation.AggregationEngine.AdjacencyGraph} spatial adjacency graph
+     */
+    <T extends @NonNull Object, B extends Number> Single<AggregationEngine.AdjacencyGraph<T, B>> buildSpatialGraph(Class<T> clazz, String objectID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt, int maxDepth, int maxNodes);
+
     /**
      * Search the ontology for individuals with IRIs that match the given search string
      *
@@ -18,17 +18,21 @@ import com.nickrobison.trestle.reasoner.engines.collection.ITrestleCollectionEng
 import com.nickrobison.trestle.reasoner.engines.events.TrestleEventEngine;
 import com.nickrobison.trestle.reasoner.engines.exporter.ITrestleDataExporter;
 import com.nickrobison.trestle.reasoner.engines.merge.TrestleMergeEngine;
+import com.nickrobison.trestle.reasoner.engines.object.BulkOptions;
 import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectReader;
 import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectWriter;
+import com.nickrobison.trestle.reasoner.engines.relations.DatasetRelationJob;
 import com.nickrobison.trestle.reasoner.engines.relations.RelationCalculator;
 import com.nickrobison.trestle.reasoner.engines.relations.RelationTracker;
 import com.nickrobison.trestle.reasoner.engines.spatial.SpatialComparisonReport;
 import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngine;
+import com.nickrobison.trestle.reasoner.engines.spatial.TransformRegistry;
 import com.nickrobison.trestle.reasoner.engines.spatial.aggregation.AggregationEngine;
 import com.nickrobison.trestle.reasoner.engines.spatial.aggregation.Computable;
 import com.nickrobison.trestle.reasoner.engines.spatial.aggregation.Filterable;
 import com.nickrobison.trestle.reasoner.engines.spatial.containment.ContainmentEngine;
 import com.nickrobison.trestle.reasoner.engines.spatial.equality.EqualityEngine;
+import com.nickrobison.trestle.reasoner.engines.spatial.equality.union.SpatialEquivalenceGraph;
 import com.nickrobison.trestle.reasoner.engines.spatial.equality.union.UnionContributionResult;
 import com.nickrobison.trestle.reasoner.engines.spatial.equality.union.UnionEqualityResult;
 import com.nickrobison.trestle.reasoner.engines.temporal.TemporalEngine;
@@ -38,6 +42,7 @@ import com.nickrobison.trestle.reasoner.parser.TrestleParser;
 import com.nickrobison.trestle.reasoner.parser.TypeConstructor;
 import com.nickrobison.trestle.reasoner.threading.TrestleExecutorFactory;
 import com.nickrobison.trestle.reasoner.threading.TrestleExecutorService;
+import com.nickrobison.trestle.reasoner.threading.TrestleThreadPools;
 import com.nickrobison.trestle.transactions.TrestleTransaction;
 import com.nickrobison.trestle.types.TrestleIndividual;
 import com.nickrobison.trestle.types.TrestleObjectHeader;
@@ -64,6 +69,7 @@ import javax.measure.Unit;
 import javax.measure.quantity.Length;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
@@ -106,11 +112,13 @@ public class TrestleReasonerImpl implements TrestleReasoner {
     private final AggregationEngine aggregationEngine;
     private final TemporalEngine temporalEngine;
     private final RelationTracker relationTracker;
+    private final SpatialEquivalenceGraph equivalenceGraph;
     private final Config trestleConfig;
     private final TrestleCache trestleCache;
     private final Metrician metrician;
     private final ExecutorService trestleThreadPool;
     private final TrestleExecutorService comparisonThreadPool;
+    private final TrestleThreadPools threadPools;
 
     @SuppressWarnings("dereference.of.nullable")
     TrestleReasonerImpl(TrestleBuilder builder) {
@@ -128,6 +136,7 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         metrician = injector.getInstance(Metrician.class);
 
         TrestleExecutorFactory factory = injector.getInstance(TrestleExecutorFactory.class);
+        threadPools = injector.getInstance(TrestleThreadPools.class);
 
 //        Create our own thread pools to help isolate processes
         trestleThreadPool = factory.create(builder.ontologyName.orElse("default"));
@@ -159,6 +168,7 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         this.aggregationEngine = injector.getInstance(AggregationEngine.class);
         this.temporalEngine = injector.getInstance(TemporalEngine.class);
         this.relationTracker = injector.getInstance(RelationTracker.class);
+        this.equivalenceGraph = injector.getInstance(SpatialEquivalenceGraph.class);
 
 //        Register type constructors from the service loader
         final ServiceLoader<TypeConstructor> constructors = ServiceLoader.load(TypeConstructor.class);
@@ -170,6 +180,7 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         builder.inputClasses.forEach(clazz -> {
             try {
                 this.trestleParser.classRegistry.registerClass(trestleParser.classParser.getObjectClass(clazz), clazz);
+                TransformRegistry.registerProjection(trestleParser.classParser.getClassProjection(clazz));
             } catch (TrestleClassException e) {
                 logger.error("Cannot validate class {}", clazz, e);
             }
@@ -199,9 +210,10 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         }
         this.trestleThreadPool.shutdown();
         this.comparisonThreadPool.shutdown();
-        logger.debug("Waiting 10 Seconds for thread-pool to terminate");
+        logger.debug("Waiting 10 Seconds for thread-pools to terminate");
         try {
-            final boolean awaitTermination = this.trestleThreadPool.awaitTermination(10, TimeUnit.SECONDS);
+//            Shutdown all the pools, including the ones owned by the engines
+            final boolean awaitTermination = this.threadPools.shutdown(10, TimeUnit.SECONDS);
             if (!awaitTermination) {
                 logger.error("thread-pool terminated with processes in flight");
             }
@@ -287,9 +299,18 @@ public class TrestleReasonerImpl implements TrestleReasoner {
     @Override
     public Flowable<TrestleResult> executeSPARQLSelect(String queryString) {
         final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(false);
-        return this.ontology.executeSPARQLResults(queryString)
+        final Flowable<TrestleResult> results;
+        try {
+            results = this.ontology.executeSPARQLResults(queryString);
+        } catch (RuntimeException e) {
+//            The query can fail before we have a Flowable (e.g. it can't be parsed), so we need to close the transaction here
+            this.ontology.returnAndAbortTransaction(trestleTransaction);
+            throw e;
+        }
+        return results
                 .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction))
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction));
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+                .doOnCancel(() -> this.ontology.returnAndAbortTransaction(trestleTransaction));
     }
 
     @Override
@@ -326,6 +347,11 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         return this.objectWriter.writeTrestleObject(inputObject, startTemporal, endTemporal);
     }
 
+    @Override
+    public Completable bulkWrite(Flowable<?> objects, BulkOptions options) {
+        return this.objectWriter.bulkWrite(objects, options);
+    }
+
     @Override
     public Completable addFactToTrestleObject(Class<?> clazz, String individual, String factName, Object value, Temporal validAt, @Nullable Temporal databaseFrom) {
         return this.objectWriter.addFactToTrestleObject(clazz, individual, factName, value, validAt, databaseFrom);
@@ -385,6 +411,16 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         return this.objectReader.readTrestleObject(clazz, individualIRI, bypassCache, validAt, databaseAt, null);
     }
 
+    @Override
+    public <T extends @NonNull Object> Flowable<T> readTrestleObjects(Class<T> clazz, Collection<IRI> individualIRIs, @Nullable Temporal validAt, @Nullable Temporal databaseAt) {
+        return this.objectReader.readTrestleObjects(clazz, individualIRIs, validAt, databaseAt);
+    }
+
+    @Override
+    public <T extends @NonNull Object> Flowable<T> readTrestleObjects(Class<T> clazz, Collection<IRI> individualIRIs, boolean bypassCache, @Nullable Temporal validAt, @Nullable Temporal databaseAt, boolean skipInvalid, @Nullable TrestleTransaction transaction) {
+        return this.objectReader.readTrestleObjects(clazz, individualIRIs, bypassCache, validAt, databaseAt, skipInvalid, transaction);
+    }
+
     @Override
     public Flowable<Object> getFactValues(Class<?> clazz, String individual, String factName, @Nullable Temporal validStart, @Nullable Temporal validEnd, @Nullable Temporal databaseTemporal) {
         return this.objectReader.getFactValues(clazz, individual, factName, validStart, validEnd, databaseTemporal);
@@ -598,6 +634,7 @@ public class TrestleReasonerImpl implements TrestleReasoner {
                             }))
                             .andThen(Completable.defer(() -> {
                                 this.trestleCache.deleteTrestleIndividual(individual);
+                                this.equivalenceGraph.invalidate(individual);
                                 return Completable.complete();
                             }))
                             .doOnComplete(() -> this.ontology.returnAndCommitTransaction(transaction))
@@ -693,11 +730,21 @@ public class TrestleReasonerImpl implements TrestleReasoner {
         return calculator.calculate();
     }
 
+    @Override
+    public <T extends @NonNull Object> DatasetRelationJob<T> createDatasetRelationJob(Class<T> clazz, @Nullable Temporal validAt) {
+        return new DatasetRelationJob<>(this.ontology, this.objectReader, this.objectWriter, this.spatialEngine, this.temporalEngine, this.relationTracker, this.trestleParser, this.comparisonThreadPool.asScheduler(), clazz, validAt);
+    }
+
     @Override
     public <T extends @NonNull Object, B extends Number> Single<AggregationEngine.AdjacencyGraph<T, B>> buildSpatialGraph(Class<T> clazz, String objectID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt) {
         return this.aggregationEngine.buildSpatialGraph(clazz, objectID, edgeCompute, filter, validAt, dbAt);
     }
 
+    @Override
+    public <T extends @NonNull Object, B extends Number> Single<AggregationEngine.AdjacencyGraph<T, B>> buildSpatialGraph(Class<T> clazz, String objectID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt, int maxDepth, int maxNodes) {
+        return this.aggregationEngine.buildSpatialGraph(clazz, objectID, edgeCompute, filter, validAt, dbAt, maxDepth, maxNodes);
+    }
+
     @Override
     public Flowable<String> searchForIndividual(String individualIRI) {
         return searchForIndividual(individualIRI, null, null);
@@ -778,6 +825,8 @@ public class TrestleReasonerImpl implements TrestleReasoner {
     public void registerClass(Class inputClass) throws TrestleClassException {
         final OWLClass owlClass = this.trestleParser.classParser.getObjectClass(inputClass);
         this.trestleParser.classRegistry.registerClass(owlClass, inputClass);
+//        Warm the transforms for the class projection, so we don't have to hit the EPSG database during comparisons
+        TransformRegistry.registerProjection(this.trestleParser.classParser.getClassProjection(inputClass));
     }
 
     @Override
@@ -832,4 +881,9 @@ public class TrestleReasonerImpl implements TrestleReasoner {
     public <T> Single<File> exportDataSetObjects(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ITrestleExporter.DataType exportType) throws IOException {
         return this.dataExporter.exportDataSetObjects(inputClass, objectID, validAt, databaseAt, exportType);
     }
+
+    @Override
+    public <T> Completable exportDataSetObjects(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ITrestleExporter.DataType exportType, OutputStream outputStream) {
+        return this.dataExporter.exportDataSetObjects(inputClass, objectID, validAt, databaseAt, exportType, outputStream);
+    }
 }
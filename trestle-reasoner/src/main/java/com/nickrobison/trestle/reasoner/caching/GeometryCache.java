@@ -0,0 +1,200 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import com.codahale.metrics.annotation.Metered;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nickrobison.metrician.Metrician;
+import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngineUtils;
+import com.nickrobison.trestle.reasoner.parser.IClassParser;
+import com.nickrobison.trestle.reasoner.parser.TrestleParser;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.semanticweb.owlapi.model.IRI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of object {@link Geometry}s, keyed by the object's individual {@link IRI} and the SRID of the geometry,
+ * so that distinct objects never share an entry.
+ * Entries are weighted by their number of coordinates, rather than counted, so the cache is bounded by (approximate) memory usage.
+ * <p>
+ * Each entry also records the {@link Object#hashCode()} of the object it was built from,
+ * if a different version of the same individual is requested, the entry is rebuilt.
+ * Entries lazily build a {@link PreparedGeometry}, for objects which are repeatedly used in spatial predicates.
+ */
+@ThreadSafe
+@Metriced
+public class GeometryCache {
+    private static final Logger logger = LoggerFactory.getLogger(GeometryCache.class);
+    //    Approximate heap size of a single coordinate (object header, x/y/z values and the array reference)
+    private static final long BYTES_PER_COORDINATE = 48;
+
+    private final IClassParser parser;
+    private final Cache<GeometryKey, GeometryEntry> cache;
+
+    @Inject
+    public GeometryCache(TrestleParser trestleParser, Metrician metrician) {
+        this(trestleParser.classParser, ConfigFactory.load().getConfig("trestle.cache.geometryCache"));
+        metrician.registerGauge("geometry-cache-hit-ratio", () -> this.cache.stats().hitRatio());
+        metrician.registerGauge("geometry-cache-size-bytes", this::getEstimatedSize);
+    }
+
+    GeometryCache(IClassParser parser, Config config) {
+        this.parser = parser;
+        final long maxCoordinates = config.getLong("maxCoordinates");
+        logger.debug("Creating geometry cache with {} maximum coordinates", maxCoordinates);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxCoordinates)
+                .weigher((GeometryKey key, GeometryEntry entry) -> entry.geometry.getNumPoints())
+                .expireAfterAccess(config.getDuration("expireAfterAccess", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the {@link Geometry} of the given object, in its own projection, computing if absent
+     *
+     * @param object - {@link Object} to get geometry for
+     * @param srid   - {@link Integer} SRID of the object
+     * @return - {@link Geometry}
+     */
+    public Geometry getGeometry(Object object, int srid) {
+        return getEntry(object, srid, srid).geometry;
+    }
+
+    /**
+     * Get the {@link Geometry} of the given object, re-projected into the output SRID, computing if absent
+     *
+     * @param object     - {@link Object} to get geometry for
+     * @param inputSRID  - {@link Integer} SRID of the object
+     * @param outputSRID - {@link Integer} SRID to project into
+     * @return - {@link Geometry}
+     */
+    public Geometry getGeometry(Object object, int inputSRID, int outputSRID) {
+        return getEntry(object, inputSRID, outputSRID).geometry;
+    }
+
+    /**
+     * Get the {@link PreparedGeometry} of the given object, in its own projection, computing if absent
+     *
+     * @param object - {@link Object} to get geometry for
+     * @param srid   - {@link Integer} SRID of the object
+     * @return - {@link PreparedGeometry}
+     */
+    public PreparedGeometry getPreparedGeometry(Object object, int srid) {
+        return getEntry(object, srid, srid).getPrepared();
+    }
+
+    /**
+     * Remove all the entries from the cache
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Ratio of cache requests which were served from the cache
+     *
+     * @return - hit ratio, between 0 and 1
+     */
+    public double getHitRatio() {
+        return this.cache.stats().hitRatio();
+    }
+
+    /**
+     * Estimated number of bytes used by the cached geometries
+     *
+     * @return - estimated size, in bytes
+     */
+    public long getEstimatedSize() {
+        final long coordinates = this.cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return coordinates * BYTES_PER_COORDINATE;
+    }
+
+    private GeometryEntry getEntry(Object object, int inputSRID, int outputSRID) {
+        final GeometryKey key = new GeometryKey(this.parser.getIndividual(object).getIRI(), outputSRID);
+        final int objectHash = object.hashCode();
+        final @Nullable GeometryEntry cached = this.cache.getIfPresent(key);
+        if (cached != null && cached.objectHash == objectHash) {
+            return cached;
+        }
+
+        final Geometry geometry;
+        if (inputSRID == outputSRID) {
+            logger.trace("Cache miss for {}, computing", key);
+            geometry = computeGeometry(object, inputSRID);
+        } else {
+            logger.trace("Cache miss for {}, re-projecting from {}", key, inputSRID);
+            geometry = SpatialEngineUtils.reprojectGeometry(getEntry(object, inputSRID, inputSRID).geometry, inputSRID, outputSRID);
+        }
+        final GeometryEntry entry = new GeometryEntry(geometry, objectHash);
+        this.cache.put(key, entry);
+        return entry;
+    }
+
+    @Metered(name = "geometry-calculation-meter")
+    private static Geometry computeGeometry(Object object, int srid) {
+        return SpatialEngineUtils.buildObjectGeometry(object, srid);
+    }
+
+    private static class GeometryKey {
+        private final IRI individual;
+        private final int srid;
+
+        private GeometryKey(IRI individual, int srid) {
+            this.individual = individual;
+            this.srid = srid;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final GeometryKey that = (GeometryKey) o;
+            return srid == that.srid && individual.equals(that.individual);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(individual, srid);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%d", individual, srid);
+        }
+    }
+
+    private static class GeometryEntry {
+        private final Geometry geometry;
+        private final int objectHash;
+        //        Built lazily, racing threads may each prepare the geometry, but they'll all produce the same result
+        private volatile @Nullable PreparedGeometry prepared = null;
+
+        private GeometryEntry(Geometry geometry, int objectHash) {
+            this.geometry = geometry;
+            this.objectHash = objectHash;
+        }
+
+        private PreparedGeometry getPrepared() {
+            @Nullable PreparedGeometry current = this.prepared;
+            if (current == null) {
+                current = PreparedGeometryFactory.prepare(this.geometry);
+                this.prepared = current;
+            }
+            return current;
+        }
+    }
+}
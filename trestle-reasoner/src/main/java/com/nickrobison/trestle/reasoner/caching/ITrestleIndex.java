@@ -6,6 +6,7 @@ import com.nickrobison.trestle.reasoner.caching.tdtree.LeafStatistics;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -44,6 +45,27 @@ public interface ITrestleIndex<Value> {
     @SuppressWarnings("Duplicates")
     @Nullable Value getValue(String objectID, long atTime);
 
+    /**
+     * Get all the versions of the given key whose intervals overlap [startTime, endTime)
+     * Point values are returned if they fall within the range.
+     * Results are produced lazily, as the iterator is consumed, so the index must not be modified until the iterator has been exhausted.
+     *
+     * @param objectID  - String object key
+     * @param startTime - Long temporal of start of range (inclusive)
+     * @param endTime   - Long temporal of end of range (exclusive)
+     * @return - {@link Iterator} of matching {@link IndexRecord}s, in no particular order
+     */
+    Iterator<IndexRecord<Value>> getValues(String objectID, long startTime, long endTime);
+
+    /**
+     * Get the values for all the keys which are valid at the given point in time
+     * Results are produced lazily, as the iterator is consumed, so the index must not be modified until the iterator has been exhausted.
+     *
+     * @param atTime - Long temporal of validAt time
+     * @return - {@link Iterator} of matching {@link IndexRecord}s, in no particular order
+     */
+    Iterator<IndexRecord<Value>> getValuesAt(long atTime);
+
     /**
      * Remove the key/value pair for the given objectID at the specified time
      *
@@ -105,6 +127,38 @@ public interface ITrestleIndex<Value> {
      */
     void rebuildIndex();
 
+    /**
+     * Copy all the live records in the index into an {@link IndexSnapshot}, which can be used to build a new index, without blocking readers of this one.
+     * Callers must ensure the index is not modified while the snapshot is being taken.
+     *
+     * @return - {@link IndexSnapshot} of all live records
+     * @throws UnsupportedOperationException if the index does not support online rebuilds
+     */
+    default IndexSnapshot<Value> snapshot() {
+        throw new UnsupportedOperationException(String.format("%s does not support online rebuilds", getClass().getSimpleName()));
+    }
+
+    /**
+     * Build a new, compacted index, with the same configuration as this one, containing the records from the given {@link IndexSnapshot}
+     * This index is not modified.
+     *
+     * @param snapshot - {@link IndexSnapshot} to load
+     * @return - new {@link ITrestleIndex}
+     * @throws UnsupportedOperationException if the index does not support online rebuilds
+     */
+    default ITrestleIndex<Value> buildFromSnapshot(IndexSnapshot<Value> snapshot) {
+        throw new UnsupportedOperationException(String.format("%s does not support online rebuilds", getClass().getSimpleName()));
+    }
+
+    /**
+     * Can the index be rebuilt from a {@link IndexSnapshot}, and then swapped in, rather than being rebuilt in place?
+     *
+     * @return - <code>true</code> index supports {@link #snapshot()} and {@link #buildFromSnapshot(IndexSnapshot)}
+     */
+    default boolean supportsOnlineRebuild() {
+        return false;
+    }
+
     /**
      * Drop index, which removes all values
      */
@@ -139,4 +193,13 @@ public interface ITrestleIndex<Value> {
      * @return - long of maximum value
      */
     long getMaxValue();
+
+    /**
+     * Can the index be safely read and written by multiple threads, without external locking?
+     *
+     * @return - <code>true</code> index is thread-safe. <code>false</code> callers must provide their own locking
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 }
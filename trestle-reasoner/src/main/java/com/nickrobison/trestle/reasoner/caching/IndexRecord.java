@@ -0,0 +1,51 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Single record returned from a temporal scan of an {@link ITrestleIndex}
+ * The objectID is hashed, so records from different keys can only be told apart by their values
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@SuppressWarnings({"squid:S00119"})
+public final class IndexRecord<Value> {
+
+    private final long objectID;
+    private final long startTime;
+    private final long endTime;
+    private final @NonNull Value value;
+
+    public IndexRecord(long objectID, long startTime, long endTime, @NonNull Value value) {
+        this.objectID = objectID;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.value = value;
+    }
+
+    public long getObjectID() {
+        return objectID;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public @NonNull Value getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexRecord{" +
+                "objectID=" + objectID +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", value=" + value +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Point-in-time copy of the records in an {@link ITrestleIndex}, used to build a new index in the background.
+ * Records are stored in parallel arrays, keyed by the hashed objectID, so they can be loaded without re-hashing.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@SuppressWarnings({"squid:S00119"})
+public final class IndexSnapshot<Value> {
+
+    private final LongArrayList objectIDs;
+    private final LongArrayList starts;
+    private final LongArrayList ends;
+    private final ObjectArrayList<@NonNull Value> values;
+
+    public IndexSnapshot(int expectedSize) {
+        this.objectIDs = new LongArrayList(expectedSize);
+        this.starts = new LongArrayList(expectedSize);
+        this.ends = new LongArrayList(expectedSize);
+        this.values = new ObjectArrayList<>(expectedSize);
+    }
+
+    /**
+     * Add a record to the snapshot
+     *
+     * @param objectID  - Hashed objectID
+     * @param startTime - Valid from time
+     * @param endTime   - Valid to time
+     * @param value     - {@link Value} of record
+     */
+    public void add(long objectID, long startTime, long endTime, @NonNull Value value) {
+        this.objectIDs.add(objectID);
+        this.starts.add(startTime);
+        this.ends.add(endTime);
+        this.values.add(value);
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    public long getObjectID(int record) {
+        return this.objectIDs.getLong(record);
+    }
+
+    public long getStart(int record) {
+        return this.starts.getLong(record);
+    }
+
+    public long getEnd(int record) {
+        return this.ends.getLong(record);
+    }
+
+    public @NonNull Value getValue(int record) {
+        return this.values.get(record);
+    }
+}
@@ -0,0 +1,76 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+/**
+ * Converts index values to and from a compact binary representation, which allows {@link ITrestleIndex} implementations to store their values off-heap.
+ * Encoding must be deterministic, equal values must produce equal byte arrays.
+ * <p>
+ * Indexes which provide a {@link StringTable} call {@link #encode(Object, StringTable)} and {@link #decode(byte[], StringTable)},
+ * which allows codecs to store strings which are repeated across many values (such as IRI prefixes) once, rather than in every value.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@SuppressWarnings({"squid:S00119"})
+public interface IndexValueCodec<Value> {
+
+    /**
+     * Encode the value into its binary representation
+     *
+     * @param value - {@link Value} to encode
+     * @return - byte array
+     */
+    byte[] encode(Value value);
+
+    /**
+     * Decode a value from its binary representation
+     *
+     * @param bytes - byte array produced by {@link IndexValueCodec#encode(Object)}
+     * @return - decoded {@link Value}
+     */
+    Value decode(byte[] bytes);
+
+    /**
+     * Encode the value into its binary representation, storing any shared strings in the given {@link StringTable}
+     * Defaults to {@link #encode(Object)}
+     *
+     * @param value   - {@link Value} to encode
+     * @param strings - {@link StringTable} for shared strings
+     * @return - byte array
+     */
+    default byte[] encode(Value value, StringTable strings) {
+        return encode(value);
+    }
+
+    /**
+     * Decode a value from the binary representation produced by {@link IndexValueCodec#encode(Object, StringTable)}
+     * Defaults to {@link #decode(byte[])}
+     *
+     * @param bytes   - byte array to decode
+     * @param strings - {@link StringTable} the value was encoded with
+     * @return - decoded {@link Value}
+     */
+    default Value decode(byte[] bytes, StringTable strings) {
+        return decode(bytes);
+    }
+
+    /**
+     * Table of strings shared between the values of an index
+     */
+    interface StringTable {
+
+        /**
+         * Add the string to the table, if it's not already present
+         *
+         * @param value - String to add
+         * @return - reference to the string, which is stable for the lifetime of the table
+         */
+        long intern(String value);
+
+        /**
+         * Lookup a previously interned string
+         *
+         * @param reference - reference returned by {@link StringTable#intern(String)}
+         * @return - interned String
+         */
+        String lookup(long reference);
+    }
+}
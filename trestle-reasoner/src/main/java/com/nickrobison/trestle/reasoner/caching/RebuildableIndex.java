@@ -0,0 +1,265 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import com.nickrobison.trestle.reasoner.caching.tdtree.LeafStatistics;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * {@link ITrestleIndex} which delegates to an underlying index, which can be replaced by an online rebuild.
+ * <p>
+ * An online rebuild happens in three steps:
+ * <ol>
+ * <li>{@link #beginRebuild()} snapshots the current index and starts recording mutations in a change log</li>
+ * <li>The new index is built from the snapshot, while readers and writers continue to use the current index</li>
+ * <li>{@link #completeRebuild(ITrestleIndex)} replays the change log against the new index and swaps it in</li>
+ * </ol>
+ * This class does not do any locking of its own, it has the same threading requirements as the underlying index.
+ * The caller must hold (at least) the Read lock when beginning the rebuild, and the Write lock when completing it,
+ * which ensures no mutations are missed between taking the snapshot and swapping in the new index.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@SuppressWarnings({"squid:S00119"})
+class RebuildableIndex<Value> implements ITrestleIndex<Value> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RebuildableIndex.class);
+
+    private final String name;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    //    Have we already reported that the index is too fragmented, but can't be rebuilt?
+    private final AtomicBoolean fragmentationReported = new AtomicBoolean(false);
+    private volatile ITrestleIndex<Value> delegate;
+    private volatile @Nullable List<Consumer<ITrestleIndex<Value>>> changeLog = null;
+    //    Last measured values, so they can be read by the metrics gauges, without needing the cache lock
+    private volatile double lastFragmentation = 0.0;
+    private volatile long lastRebuildMillis = 0;
+
+    RebuildableIndex(String name, ITrestleIndex<Value> delegate) {
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    ITrestleIndex<Value> getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Try to mark the index as rebuilding, only one rebuild can run at a time
+     *
+     * @return - <code>true</code> caller now owns the rebuild. <code>false</code> a rebuild is already running
+     */
+    boolean tryStartRebuild() {
+        return this.rebuilding.compareAndSet(false, true);
+    }
+
+    boolean isRebuilding() {
+        return this.rebuilding.get();
+    }
+
+    /**
+     * Snapshot the current index and start recording mutations in the change log
+     * The caller must have already called {@link #tryStartRebuild()}, and must hold the Read lock
+     *
+     * @return - {@link IndexSnapshot} of the current index
+     */
+    IndexSnapshot<Value> beginRebuild() {
+        final IndexSnapshot<Value> snapshot = this.delegate.snapshot();
+        this.changeLog = new ArrayList<>();
+        logger.debug("Took snapshot of {} records from {} index", snapshot.size(), this.name);
+        return snapshot;
+    }
+
+    /**
+     * Replay the change log against the rebuilt index and swap it in
+     * The caller must hold the Write lock
+     *
+     * @param rebuilt - {@link ITrestleIndex} built from the snapshot returned by {@link #beginRebuild()}
+     * @return - number of mutations replayed from the change log
+     */
+    int completeRebuild(ITrestleIndex<Value> rebuilt) {
+        final @Nullable List<Consumer<ITrestleIndex<Value>>> log = this.changeLog;
+        if (log == null) {
+            throw new IllegalStateException(String.format("Index %s is not being rebuilt", this.name));
+        }
+        log.forEach(mutation -> mutation.accept(rebuilt));
+        this.delegate = rebuilt;
+        this.changeLog = null;
+        this.rebuilding.set(false);
+        return log.size();
+    }
+
+    /**
+     * Stop recording mutations and discard any rebuilt index
+     * Does nothing if the rebuild has already completed
+     */
+    void abortRebuild() {
+        if (this.rebuilding.get()) {
+            this.changeLog = null;
+            this.rebuilding.set(false);
+        }
+    }
+
+    double getLastFragmentation() {
+        return this.lastFragmentation;
+    }
+
+    /**
+     * Mark the index as exceeding the fragmentation threshold, when it cannot be rebuilt
+     * The index is only reported once, until {@link #clearFragmentationReported()} is called
+     *
+     * @return - <code>true</code> caller should report the fragmentation. <code>false</code> it has already been reported
+     */
+    boolean tryReportFragmentation() {
+        return this.fragmentationReported.compareAndSet(false, true);
+    }
+
+    /**
+     * Clear the reported flag, once the index is no longer over the fragmentation threshold
+     */
+    void clearFragmentationReported() {
+        this.fragmentationReported.set(false);
+    }
+
+    long getLastRebuildMillis() {
+        return this.lastRebuildMillis;
+    }
+
+    void setLastRebuildMillis(long lastRebuildMillis) {
+        this.lastRebuildMillis = lastRebuildMillis;
+    }
+
+    @Override
+    public void insertValue(String objectID, long startTime, @NonNull Value value) {
+        this.delegate.insertValue(objectID, startTime, value);
+        record(index -> index.insertValue(objectID, startTime, value));
+    }
+
+    @Override
+    public void insertValue(String objectID, long startTime, long endTime, @NonNull Value value) {
+        this.delegate.insertValue(objectID, startTime, endTime, value);
+        record(index -> index.insertValue(objectID, startTime, endTime, value));
+    }
+
+    @Override
+    public @Nullable Value getValue(String objectID, long atTime) {
+        return this.delegate.getValue(objectID, atTime);
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValues(String objectID, long startTime, long endTime) {
+        return this.delegate.getValues(objectID, startTime, endTime);
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValuesAt(long atTime) {
+        return this.delegate.getValuesAt(atTime);
+    }
+
+    @Override
+    public void deleteValue(String objectID, long atTime) {
+        this.delegate.deleteValue(objectID, atTime);
+        record(index -> index.deleteValue(objectID, atTime));
+    }
+
+    @Override
+    public void deleteKeysWithValue(@NonNull Value value) {
+        this.delegate.deleteKeysWithValue(value);
+        record(index -> index.deleteKeysWithValue(value));
+    }
+
+    @Override
+    public void updateValue(String objectID, long atTime, @NonNull Value value) {
+        this.delegate.updateValue(objectID, atTime, value);
+        record(index -> index.updateValue(objectID, atTime, value));
+    }
+
+    @Override
+    public void replaceKeyValue(String objectID, long atTime, long startTime, long endTime, @NonNull Value value) {
+        this.delegate.replaceKeyValue(objectID, atTime, startTime, endTime, value);
+        record(index -> index.replaceKeyValue(objectID, atTime, startTime, endTime, value));
+    }
+
+    @Override
+    public void setKeyTemporals(String objectID, long atTime, long startTime) {
+        this.delegate.setKeyTemporals(objectID, atTime, startTime);
+        record(index -> index.setKeyTemporals(objectID, atTime, startTime));
+    }
+
+    @Override
+    public void setKeyTemporals(String objectID, long atTime, long startTime, long endTime) {
+        this.delegate.setKeyTemporals(objectID, atTime, startTime, endTime);
+        record(index -> index.setKeyTemporals(objectID, atTime, startTime, endTime));
+    }
+
+    @Override
+    public void rebuildIndex() {
+        this.delegate.rebuildIndex();
+    }
+
+    @Override
+    public IndexSnapshot<Value> snapshot() {
+        return this.delegate.snapshot();
+    }
+
+    @Override
+    public ITrestleIndex<Value> buildFromSnapshot(IndexSnapshot<Value> snapshot) {
+        return this.delegate.buildFromSnapshot(snapshot);
+    }
+
+    @Override
+    public boolean supportsOnlineRebuild() {
+        return this.delegate.supportsOnlineRebuild();
+    }
+
+    @Override
+    public void dropIndex() {
+        this.delegate.dropIndex();
+        record(ITrestleIndex::dropIndex);
+    }
+
+    @Override
+    public List<LeafStatistics> getLeafStatistics() {
+        return this.delegate.getLeafStatistics();
+    }
+
+    @Override
+    public double calculateFragmentation() {
+        final double fragmentation = this.delegate.calculateFragmentation();
+        this.lastFragmentation = fragmentation;
+        return fragmentation;
+    }
+
+    @Override
+    public long getIndexSize() {
+        return this.delegate.getIndexSize();
+    }
+
+    @Override
+    public long getMaxValue() {
+        return this.delegate.getMaxValue();
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return this.delegate.isThreadSafe();
+    }
+
+    private void record(Consumer<ITrestleIndex<Value>> mutation) {
+        final @Nullable List<Consumer<ITrestleIndex<Value>>> log = this.changeLog;
+        if (log != null) {
+            log.add(mutation);
+        }
+    }
+}
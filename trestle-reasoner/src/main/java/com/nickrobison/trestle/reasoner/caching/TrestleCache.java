@@ -7,6 +7,7 @@ import org.semanticweb.owlapi.model.OWLNamedIndividual;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.List;
 
 /**
  * Created by nrobison on 5/1/17.
@@ -22,6 +23,31 @@ public interface TrestleCache {
      */
     <T> @Nullable T getTrestleObject(Class<T> clazz, TrestleIRI individualIRI);
 
+    /**
+     * Read, from cache, every version of the object which is valid during [validStart, validEnd), as of the database temporal encoded in the {@link TrestleIRI}
+     * Objects are only cached when they're read, so unless the cached versions cover the entire interval, without any gaps, this returns null.
+     *
+     * @param clazz         - Generic class of to cast results to
+     * @param individualIRI - {@link TrestleIRI} of the object, the object temporal is ignored
+     * @param validStart    - {@link OffsetDateTime} start of interval (inclusive)
+     * @param validEnd      - {@link OffsetDateTime} end of interval (exclusive)
+     * @param <T>           - Generic return type
+     * @return - {@link List} of object versions, ordered by their valid from temporal, or null if the cache does not have the complete history
+     */
+    <T> @Nullable List<T> getTrestleObjectHistory(Class<T> clazz, TrestleIRI individualIRI, OffsetDateTime validStart, OffsetDateTime validEnd);
+
+    /**
+     * Read, from cache, all the objects of the given class which are valid at the given temporal
+     * Only objects which have already been read into the cache are returned, so this does not necessarily return every object valid at that time.
+     *
+     * @param clazz    - Generic class of to cast results to
+     * @param validAt  - {@link OffsetDateTime} valid temporal
+     * @param dbAt     - Optional {@link OffsetDateTime} database temporal, defaults to now
+     * @param <T>      - Generic return type
+     * @return - {@link List} of cached objects
+     */
+    <T> List<T> getTrestleObjectsValidAt(Class<T> clazz, OffsetDateTime validAt, @Nullable OffsetDateTime dbAt);
+
     /**
      * Write TrestleObject to cache with a specified validity interval, using using {@link OffsetDateTime#now(ZoneId)} at {@link java.time.ZoneOffset#UTC}
      *
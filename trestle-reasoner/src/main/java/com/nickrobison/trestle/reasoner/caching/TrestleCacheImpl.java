@@ -1,10 +1,13 @@
 package com.nickrobison.trestle.reasoner.caching;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.nickrobison.metrician.Metrician;
-import com.nickrobison.trestle.common.locking.TrestleUpgradableReadWriteLock;
+import com.nickrobison.trestle.common.locking.TrestleReadWriteLock;
 import com.nickrobison.trestle.iri.TrestleIRI;
 import com.nickrobison.trestle.reasoner.caching.listeners.TrestleObjectCacheEntryListener;
+import com.nickrobison.trestle.reasoner.caching.tdtree.ConcurrentTDTree;
+import com.nickrobison.trestle.reasoner.caching.tdtree.MappedTDTree;
 import com.nickrobison.trestle.reasoner.caching.tdtree.TDTree;
 import com.nickrobison.trestle.types.TrestleIndividual;
 import com.typesafe.config.Config;
@@ -23,8 +26,16 @@ import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
 import javax.cache.configuration.MutableConfiguration;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by nrobison on 8/18/16.
@@ -39,30 +50,39 @@ public class TrestleCacheImpl implements TrestleCache {
     private static final long OFFSET_MILLIS = Duration.between(LocalDate.of(0, 1, 1)
                     .atStartOfDay().toInstant(ZoneOffset.UTC),
             Instant.ofEpochMilli(0)).toMillis();
-    private final TrestleUpgradableReadWriteLock cacheLock;
+    private final TrestleReadWriteLock cacheLock;
     private final CacheManager cacheManager;
     private final Cache<IRI, Object> trestleObjectCache;
     private final @GuardedBy("cacheLock") Cache<IRI, TrestleIndividual> trestleIndividualCache;
-    private final @GuardedBy("cacheLock") ITrestleIndex<TrestleIRI> validIndex;
-    private final @GuardedBy("cacheLock") ITrestleIndex<TrestleIRI> dbIndex;
+    private final @GuardedBy("cacheLock") RebuildableIndex<TrestleIRI> validIndex;
+    private final @GuardedBy("cacheLock") RebuildableIndex<TrestleIRI> dbIndex;
     private final MutableCacheEntryListenerConfiguration<IRI, Object> objectEvictionListener;
+    //    Optimistic reads are only safe if both indexes can be read while a writer is modifying them
+    private final boolean optimisticReads;
+    private final boolean onlineRebuild;
+    private final double fragmentationThreshold;
+    private final @Nullable ScheduledExecutorService rebuildExecutor;
 
     @Inject
     @SuppressWarnings({"argument.type.incompatible"})
     TrestleCacheImpl(@Named("valid") ITrestleIndex<TrestleIRI> validIndex,
                      @Named("database") ITrestleIndex<TrestleIRI> dbIndex,
-                     @Named("cacheLock") TrestleUpgradableReadWriteLock lock,
+                     @Named("cacheLock") TrestleReadWriteLock lock,
                      TrestleObjectCacheEntryListener listener,
                      Metrician metrician,
                      CacheManager manager) {
 //        Setup the indexes
-        this.validIndex = validIndex;
-        this.dbIndex = dbIndex;
+        this.validIndex = new RebuildableIndex<>("valid", validIndex);
+        this.dbIndex = new RebuildableIndex<>("database", dbIndex);
+        this.optimisticReads = validIndex.isThreadSafe() && dbIndex.isThreadSafe();
 //        Create the lock
         this.cacheLock = lock;
 //        Setup the cache manager
         this.cacheManager = manager;
         final Config cacheConfig = ConfigFactory.load().getConfig("trestle.cache");
+        final Config rebuildConfig = cacheConfig.getConfig("rebuild");
+        this.onlineRebuild = rebuildConfig.getBoolean("online");
+        this.fragmentationThreshold = rebuildConfig.getDouble("fragmentationThreshold");
 //        Create trestle object cache
         final MutableConfiguration<IRI, Object> trestleObjectCacheConfiguration = new MutableConfiguration<>();
         trestleObjectCacheConfiguration
@@ -80,6 +100,21 @@ public class TrestleCacheImpl implements TrestleCache {
 
 //        Enable metrics
         metrician.registerMetricSet(new TrestleCacheMetrics(ImmutableSet.of(TRESTLE_INDIVIDUAL_CACHE, TRESTLE_OBJECT_CACHE)));
+        registerIndexGauges(metrician, this.validIndex);
+        registerIndexGauges(metrician, this.dbIndex);
+
+//        Periodically check the index fragmentation, and rebuild them once they get too fragmented
+        if (this.fragmentationThreshold > 0.0) {
+            final long checkInterval = rebuildConfig.getDuration("checkInterval", TimeUnit.MILLISECONDS);
+            final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("Trestle-cache-rebuild-%d")
+                    .setDaemon(true)
+                    .build());
+            executor.scheduleWithFixedDelay(this::checkIndexFragmentation, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+            this.rebuildExecutor = executor;
+        } else {
+            this.rebuildExecutor = null;
+        }
     }
 
 //    TrestleObject methods
@@ -87,29 +122,101 @@ public class TrestleCacheImpl implements TrestleCache {
 
     @Override
     public <T> @Nullable T getTrestleObject(Class<T> clazz, TrestleIRI individualIRI) {
+//        If the indexes can handle concurrent access (e.g. the ConcurrentTDTree), try an optimistic read, which only needs the lock if a writer comes along while we're reading.
+//        Other indexes (e.g. the MappedTDTree) can see torn values mid-write, which may fail with an Error rather than an exception, so they always take the read lock.
+        if (this.optimisticReads) {
+            final long stamp = cacheLock.tryOptimisticRead();
+            if (stamp != 0L) {
+                try {
+                    final @Nullable T value = readTrestleObject(clazz, individualIRI);
+                    if (cacheLock.validate(stamp)) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+//                    The writer may have left the cache in an inconsistent state, if not, it's a real error
+                    if (cacheLock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+                logger.trace("Optimistic read of {} invalidated, taking read lock", individualIRI);
+            }
+        }
+        try {
+            cacheLock.lockRead();
+            return readTrestleObject(clazz, individualIRI);
+        } catch (InterruptedException e) {
+            logger.error("Unable to get read lock, returning null for {}", individualIRI.getIRI(), e);
+            return null;
+        } finally {
+            cacheLock.unlockRead();
+        }
+    }
+
+    private <T> @Nullable T readTrestleObject(Class<T> clazz, TrestleIRI individualIRI) {
 //        Valid first, then db
+        final String individualID = individualIRI.getObjectID();
+        final OffsetDateTime offsetDateTime = individualIRI.getObjectTemporal().orElse(OffsetDateTime.now());
+        logger.trace("Looking for {} from cache @{}", individualIRI, offsetDateTime);
+        @Nullable final TrestleIRI validIndexValue = validIndex.getValue(individualID, adjustOffsetDateTime(offsetDateTime));
+        if (validIndexValue != null) {
+            logger.trace("Valid Index has {} for {} @{}", validIndexValue, individualIRI, offsetDateTime);
+            @Nullable final TrestleIRI dbIndexValue;
+            final Optional<OffsetDateTime> dbTemporal = individualIRI.getDbTemporal();
+            if (dbTemporal.isPresent()) {
+                dbIndexValue = dbIndex.getValue(validIndexValue.toString(), adjustOffsetDateTime(dbTemporal.get()));
+            } else {
+                dbIndexValue = dbIndex.getValue(validIndexValue.toString(), adjustOffsetDateTime(OffsetDateTime.now()));
+            }
+            if (dbIndexValue != null) {
+                logger.trace("DB Index has {} for {} @{}", dbIndexValue, individualIRI, offsetDateTime);
+                return clazz.cast(trestleObjectCache.get(dbIndexValue.getIRI()));
+            }
+        }
+        logger.debug("Indexes do not have {} @{}, going directly to cache", individualIRI, offsetDateTime);
+        return clazz.cast(trestleObjectCache.get(individualIRI.getIRI()));
+    }
+
+    @Override
+    public <T> @Nullable List<T> getTrestleObjectHistory(Class<T> clazz, TrestleIRI individualIRI, OffsetDateTime validStart, OffsetDateTime validEnd) {
+        final long startMillis = adjustOffsetDateTime(validStart);
+        final long endMillis = adjustOffsetDateTime(validEnd);
+        if (endMillis <= startMillis) {
+            logger.debug("Empty history interval for {}, skipping cache", individualIRI);
+            return null;
+        }
+        final String individualID = individualIRI.getObjectID();
+        final long dbAtMillis = adjustOffsetDateTime(individualIRI.getDbTemporal().orElse(OffsetDateTime.now()));
         try {
             cacheLock.lockRead();
-            final String individualID = individualIRI.getObjectID();
-            final OffsetDateTime offsetDateTime = individualIRI.getObjectTemporal().orElse(OffsetDateTime.now());
-            logger.trace("Looking for {} from cache @{}", individualIRI, offsetDateTime);
-            @Nullable final TrestleIRI validIndexValue = validIndex.getValue(individualID, adjustOffsetDateTime(offsetDateTime));
-            if (validIndexValue != null) {
-                logger.trace("Valid Index has {} for {} @{}", validIndexValue, individualIRI, offsetDateTime);
-                @Nullable final TrestleIRI dbIndexValue;
-                final Optional<OffsetDateTime> dbTemporal = individualIRI.getDbTemporal();
-                if (dbTemporal.isPresent()) {
-                    dbIndexValue = dbIndex.getValue(validIndexValue.toString(), adjustOffsetDateTime(dbTemporal.get()));
-                } else {
-                    dbIndexValue = dbIndex.getValue(validIndexValue.toString(), adjustOffsetDateTime(OffsetDateTime.now()));
+            final List<IndexRecord<TrestleIRI>> versions = new ArrayList<>();
+            this.validIndex.getValues(individualID, startMillis, endMillis).forEachRemaining(version -> {
+//                The index keys are hashed, so make sure we don't pick up any collisions
+                if (version.getValue().getObjectID().equals(individualID)) {
+                    versions.add(version);
+                }
+            });
+            versions.sort(Comparator.comparingLong(IndexRecord::getStartTime));
+
+//            Walk through the versions, if there's a gap, or we're missing one of the objects, we don't have the full history
+            long coveredTo = startMillis;
+            final List<T> objects = new ArrayList<>(versions.size());
+            for (final IndexRecord<TrestleIRI> version : versions) {
+                if (version.getStartTime() > coveredTo) {
+                    logger.debug("Cache is missing history of {} from {}", individualIRI, coveredTo - OFFSET_MILLIS);
+                    return null;
                 }
-                if (dbIndexValue != null) {
-                    logger.trace("DB Index has {} for {} @{}", dbIndexValue, individualIRI, offsetDateTime);
-                    return clazz.cast(trestleObjectCache.get(dbIndexValue.getIRI()));
+                coveredTo = Math.max(coveredTo, version.getEndTime());
+                final @Nullable T object = readCachedVersion(clazz, version.getValue(), dbAtMillis);
+                if (object == null) {
+                    return null;
                 }
+                objects.add(object);
             }
-            logger.debug("Indexes do not have {} @{}, going directly to cache", individualIRI, offsetDateTime);
-            return clazz.cast(trestleObjectCache.get(individualIRI.getIRI()));
+            if (coveredTo < endMillis) {
+                logger.debug("Cache is missing history of {} from {}", individualIRI, coveredTo - OFFSET_MILLIS);
+                return null;
+            }
+            return objects;
         } catch (InterruptedException e) {
             logger.error("Unable to get read lock, returning null for {}", individualIRI.getIRI(), e);
             return null;
@@ -118,6 +225,48 @@ public class TrestleCacheImpl implements TrestleCache {
         }
     }
 
+    @Override
+    public <T> List<T> getTrestleObjectsValidAt(Class<T> clazz, OffsetDateTime validAt, @Nullable OffsetDateTime dbAt) {
+        final long validMillis = adjustOffsetDateTime(validAt);
+        final long dbAtMillis = adjustOffsetDateTime(dbAt == null ? OffsetDateTime.now() : dbAt);
+        final List<T> objects = new ArrayList<>();
+        try {
+            cacheLock.lockRead();
+            this.validIndex.getValuesAt(validMillis).forEachRemaining(version -> {
+                final @Nullable T object = readCachedVersion(clazz, version.getValue(), dbAtMillis);
+                if (object != null) {
+                    objects.add(object);
+                }
+            });
+        } catch (InterruptedException e) {
+            logger.error("Unable to get read lock, returning cached objects valid at {}", validAt, e);
+        } finally {
+            cacheLock.unlockRead();
+        }
+        return objects;
+    }
+
+    /**
+     * Read the cached object, of the given class, for the valid index value, as of the given database time
+     *
+     * @param clazz           - Generic class to cast result to
+     * @param validIndexValue - {@link TrestleIRI} value from the valid index
+     * @param dbAtMillis      - Adjusted database time
+     * @param <T>             - Generic return type
+     * @return - Cached object, or null if it doesn't exist, or is of a different class
+     */
+    private <T> @Nullable T readCachedVersion(Class<T> clazz, TrestleIRI validIndexValue, long dbAtMillis) {
+        @Nullable final TrestleIRI dbIndexValue = this.dbIndex.getValue(validIndexValue.toString(), dbAtMillis);
+        if (dbIndexValue == null) {
+            return null;
+        }
+        final @Nullable Object object = this.trestleObjectCache.get(dbIndexValue.getIRI());
+        if (!clazz.isInstance(object)) {
+            return null;
+        }
+        return clazz.cast(object);
+    }
+
     @Override
     public void writeTrestleObject(TrestleIRI individualIRI, OffsetDateTime startTemporal, @Nullable OffsetDateTime endTemporal, Object value) {
         writeTrestleObject(individualIRI, startTemporal, endTemporal, OffsetDateTime.now(ZoneOffset.UTC), null, value);
@@ -292,11 +441,11 @@ public class TrestleCacheImpl implements TrestleCache {
                     this.dbIndex.calculateFragmentation());
 
 //            Check if the indexes are TDTrees, if so, dump the leafs
-            if (this.validIndex instanceof TDTree) {
+            if (isTDTree(this.validIndex)) {
                 cacheStats.addValidLeafStats(this.validIndex.getLeafStatistics());
             }
 
-            if (this.dbIndex instanceof TDTree) {
+            if (isTDTree(this.dbIndex)) {
                 cacheStats.addDBLeafStats(this.dbIndex.getLeafStatistics());
             }
             return cacheStats;
@@ -310,27 +459,116 @@ public class TrestleCacheImpl implements TrestleCache {
 
     @Override
     public void rebuildValidIndex() {
+        rebuildIndex(this.validIndex);
+    }
+
+    @Override
+    public void rebuildDBIndex() {
+        rebuildIndex(this.dbIndex);
+    }
+
+    /**
+     * Rebuild the given index.
+     * If online rebuilds are enabled, and supported by the index, the index is rebuilt in the background, without blocking readers.
+     * Otherwise, the index is rebuilt in place, while holding the write lock.
+     *
+     * @param index - {@link RebuildableIndex} to rebuild
+     */
+    private void rebuildIndex(RebuildableIndex<TrestleIRI> index) {
+        if (!index.tryStartRebuild()) {
+            logger.info("{} index is already being rebuilt", index.getName());
+            return;
+        }
+        final Instant start = Instant.now();
         try {
-            cacheLock.lockWrite();
-            this.validIndex.rebuildIndex();
+            if (this.onlineRebuild && index.supportsOnlineRebuild()) {
+                rebuildIndexOnline(index);
+            } else {
+                rebuildIndexBlocking(index);
+            }
+            index.setLastRebuildMillis(Duration.between(start, Instant.now()).toMillis());
         } catch (InterruptedException e) {
-            logger.error("Cannot get write lock to rebuild valid index", e);
+            logger.error("Cannot get lock to rebuild {} index", index.getName(), e);
             Thread.currentThread().interrupt();
+        } finally {
+            index.abortRebuild();
+        }
+    }
+
+    private void rebuildIndexBlocking(RebuildableIndex<TrestleIRI> index) throws InterruptedException {
+        cacheLock.lockWrite();
+        try {
+            index.rebuildIndex();
+            index.calculateFragmentation();
         } finally {
             cacheLock.unlockWrite();
         }
     }
 
-    @Override
-    public void rebuildDBIndex() {
+    private void rebuildIndexOnline(RebuildableIndex<TrestleIRI> index) throws InterruptedException {
+        logger.info("Starting online rebuild of {} index", index.getName());
+//        Writers are blocked while we take the snapshot, so every mutation afterwards ends up in the change log
+        final IndexSnapshot<TrestleIRI> snapshot;
+        cacheLock.lockRead();
         try {
-            cacheLock.lockWrite();
-            this.dbIndex.rebuildIndex();
+            snapshot = index.beginRebuild();
+        } finally {
+            cacheLock.unlockRead();
+        }
+//        Build the new index without holding any locks
+        final ITrestleIndex<TrestleIRI> rebuilt = index.buildFromSnapshot(snapshot);
+//        Catch up on any mutations made while building, and swap the new index in
+        cacheLock.lockWrite();
+        try {
+            final int replayed = index.completeRebuild(rebuilt);
+            index.calculateFragmentation();
+            logger.info("Rebuilt {} index with {} records, replayed {} changes", index.getName(), snapshot.size(), replayed);
+        } finally {
+            cacheLock.unlockWrite();
+        }
+    }
+
+    /**
+     * Compute the fragmentation of each index, and rebuild any that exceed the configured threshold
+     */
+    private void checkIndexFragmentation() {
+        try {
+            checkFragmentation(this.validIndex);
+            checkFragmentation(this.dbIndex);
+        } catch (RuntimeException e) {
+//            Don't let an exception cancel the scheduled task
+            logger.error("Unable to check index fragmentation", e);
+        }
+    }
+
+    private void checkFragmentation(RebuildableIndex<TrestleIRI> index) {
+        if (index.isRebuilding()) {
+            return;
+        }
+        final double fragmentation;
+        try {
+            cacheLock.lockRead();
+            fragmentation = index.calculateFragmentation();
         } catch (InterruptedException e) {
-            logger.error("Cannot get write lock to rebuild db index", e);
+            logger.error("Cannot get read lock to check {} index fragmentation", index.getName(), e);
             Thread.currentThread().interrupt();
+            return;
         } finally {
-            cacheLock.unlockWrite();
+            cacheLock.unlockRead();
+        }
+        logger.trace("{} index fragmentation is {}", index.getName(), fragmentation);
+        if (fragmentation <= this.fragmentationThreshold) {
+            index.clearFragmentationReported();
+            return;
+        }
+        if (this.onlineRebuild && index.supportsOnlineRebuild()) {
+            logger.info("{} index fragmentation {} exceeds threshold {}, rebuilding", index.getName(), fragmentation, this.fragmentationThreshold);
+            rebuildIndex(index);
+//            Only warn the first time, otherwise we'd log on every check, until the index is dropped
+        } else if (index.tryReportFragmentation()) {
+            logger.warn("{} index fragmentation {} exceeds threshold {}, but cannot be rebuilt online. Not reporting again until it drops below the threshold", index.getName(), fragmentation, this.fragmentationThreshold);
+        } else {
+            logger.debug("{} index fragmentation {} exceeds threshold {}, but cannot be rebuilt online", index.getName(), fragmentation, this.fragmentationThreshold);
         }
     }
 
@@ -364,12 +602,39 @@ public class TrestleCacheImpl implements TrestleCache {
     @Override
     public void shutdown(boolean drop) {
         logger.info("Shutting down TrestleCache");
+        if (this.rebuildExecutor != null) {
+            this.rebuildExecutor.shutdownNow();
+        }
         if (drop) {
             logger.debug("Deleting caches");
             cacheManager.destroyCache(TRESTLE_OBJECT_CACHE);
             cacheManager.destroyCache(TRESTLE_INDIVIDUAL_CACHE);
         }
         cacheManager.close();
+//        Memory-mapped indexes need to be flushed to disk
+        closeIndex(this.validIndex);
+        closeIndex(this.dbIndex);
+    }
+
+    private static void registerIndexGauges(Metrician metrician, RebuildableIndex<TrestleIRI> index) {
+        metrician.registerGauge(String.format("cache-%s-index-fragmentation", index.getName()), index::getLastFragmentation);
+        metrician.registerGauge(String.format("cache-%s-index-rebuild-millis", index.getName()), index::getLastRebuildMillis);
+    }
+
+    private static boolean isTDTree(RebuildableIndex<TrestleIRI> index) {
+        final ITrestleIndex<TrestleIRI> delegate = index.getDelegate();
+        return delegate instanceof TDTree || delegate instanceof ConcurrentTDTree || delegate instanceof MappedTDTree;
+    }
+
+    private static void closeIndex(RebuildableIndex<TrestleIRI> index) {
+        final ITrestleIndex<TrestleIRI> delegate = index.getDelegate();
+        if (delegate instanceof Closeable) {
+            try {
+                ((Closeable) delegate).close();
+            } catch (IOException e) {
+                logger.error("Unable to close index", e);
+            }
+        }
     }
 
     /**
@@ -2,22 +2,26 @@ package com.nickrobison.trestle.reasoner.caching;
 
 import com.google.inject.PrivateModule;
 import com.google.inject.Provides;
-import com.google.inject.TypeLiteral;
+import com.nickrobison.trestle.reasoner.caching.tdtree.ConcurrentTDTree;
+import com.nickrobison.trestle.reasoner.caching.tdtree.MappedTDTree;
 import com.nickrobison.trestle.reasoner.caching.tdtree.TDTree;
+import com.codahale.metrics.Histogram;
+import com.nickrobison.metrician.Metrician;
+import com.nickrobison.trestle.common.locking.TrestleReadWriteLock;
+import com.nickrobison.trestle.common.locking.TrestleStampedReadWriteLock;
 import com.nickrobison.trestle.common.locking.TrestleUpgradableReadWriteLock;
 import com.nickrobison.trestle.iri.TrestleIRI;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
-import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.Caching;
 import javax.cache.spi.CachingProvider;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.nio.file.Paths;
 
 /**
  * Created by nrobison on 2/17/17.
@@ -51,43 +55,42 @@ public class TrestleCacheModule extends PrivateModule {
         }
         expose(TrestleCache.class);
 
-//        Register the geometry cache provider
+//        Register the geometry cache
 //        This cannot currently be disabled, it's always watching, always
-        final TypeLiteral<Cache<Integer, Geometry>> typeLiteral = new TypeLiteral<Cache<Integer, Geometry>>() {
-        };
-        bind(typeLiteral)
-                .toProvider(GeometryCacheProvider.class)
-                .in(Singleton.class);
-        expose(typeLiteral);
+        bind(GeometryCache.class).in(Singleton.class);
+        expose(GeometryCache.class);
     }
 
     @Provides
     @Named("valid")
     @Singleton
     public ITrestleIndex<TrestleIRI> validIndex() {
-        try {
-            return new TDTree<>(cacheConfig.getInt("blockSize"));
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to build TD-Tree index");
-        }
+        return buildIndex("valid");
     }
 
     @Provides
     @Named("database")
     @Singleton
     public ITrestleIndex<TrestleIRI> databaseIndex() {
-        try {
-            return new TDTree<>(cacheConfig.getInt("blockSize"));
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to build TD-Tree index");
-        }
+        return buildIndex("database");
     }
 
     @Provides
     @Singleton
     @Named("cacheLock")
-    public TrestleUpgradableReadWriteLock provideIndexLock() {
-        return new TrestleUpgradableReadWriteLock();
+    public TrestleReadWriteLock provideIndexLock(Metrician metrician) {
+        final String lockImplementation = cacheConfig.getString("lockImplementation");
+        logger.debug("Building {} cache lock", lockImplementation);
+        switch (lockImplementation) {
+            case "stamped":
+                final Histogram readWait = metrician.registerHistogram("cache-lock-read-wait-nanos");
+                final Histogram writeWait = metrician.registerHistogram("cache-lock-write-wait-nanos");
+                return new TrestleStampedReadWriteLock(readWait::update, writeWait::update);
+            case "monitor":
+                return new TrestleUpgradableReadWriteLock();
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported lock implementation %s", lockImplementation));
+        }
     }
 
     @Provides
@@ -95,5 +98,24 @@ public class TrestleCacheModule extends PrivateModule {
         return this.cacheManager;
     }
 
-
+    private ITrestleIndex<TrestleIRI> buildIndex(String name) {
+        final String indexImplementation = cacheConfig.getString("indexImplementation");
+        logger.debug("Building {} {} index", name, indexImplementation);
+        try {
+            switch (indexImplementation) {
+                case "tdtree":
+                    return new TDTree<>(cacheConfig.getInt("blockSize"));
+                case "concurrent-tdtree":
+                    return new ConcurrentTDTree<>(cacheConfig.getInt("blockSize"));
+                case "mapped-tdtree":
+                    return new MappedTDTree<>(Paths.get(cacheConfig.getString("indexDirectory")), name, cacheConfig.getInt("blockSize"), new TrestleIRICodec());
+                default:
+                    throw new IllegalArgumentException(String.format("Unsupported index implementation %s", indexImplementation));
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to build TD-Tree index", e);
+        }
+    }
 }
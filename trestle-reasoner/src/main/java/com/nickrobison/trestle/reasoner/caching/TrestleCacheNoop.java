@@ -8,6 +8,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by nrobison on 5/1/17.
@@ -24,6 +26,16 @@ public class TrestleCacheNoop implements TrestleCache {
         return null;
     }
 
+    @Override
+    public <T> @Nullable List<T> getTrestleObjectHistory(Class<T> clazz, TrestleIRI individualIRI, OffsetDateTime validStart, OffsetDateTime validEnd) {
+        return null;
+    }
+
+    @Override
+    public <T> List<T> getTrestleObjectsValidAt(Class<T> clazz, OffsetDateTime validAt, @Nullable OffsetDateTime dbAt) {
+        return Collections.emptyList();
+    }
+
     @Override
     public void writeTrestleObject(TrestleIRI individualIRI, OffsetDateTime startTemporal, @Nullable OffsetDateTime endTemporal, OffsetDateTime dbStartTemporal, @Nullable OffsetDateTime dbEndTemporal, Object value) {
 //        Not implemented
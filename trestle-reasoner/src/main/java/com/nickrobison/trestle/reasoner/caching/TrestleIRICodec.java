@@ -0,0 +1,115 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import com.nickrobison.trestle.iri.IRIBuilder;
+import com.nickrobison.trestle.iri.IRIVersion;
+import com.nickrobison.trestle.iri.TrestleIRI;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.*;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * {@link IndexValueCodec} which stores the individual components of a {@link TrestleIRI}, rather than the full IRI string.
+ * Temporals are stored as epoch millis, which matches the resolution of the encoded IRIs, so the decoded {@link TrestleIRI} is equal to the original.
+ * When a {@link StringTable} is provided, the IRI prefix (which is generally shared by every value in the index) is stored in the table, and the value only holds a reference to it.
+ */
+public class TrestleIRICodec implements IndexValueCodec<TrestleIRI> {
+
+    private static final int HAS_FACT = 1;
+    private static final int HAS_OBJECT_TEMPORAL = 1 << 1;
+    private static final int HAS_DB_TEMPORAL = 1 << 2;
+    private static final int SHARED_PREFIX = 1 << 3;
+
+    @Override
+    public byte[] encode(TrestleIRI value) {
+        return encodeIRI(value, null);
+    }
+
+    @Override
+    public byte[] encode(TrestleIRI value, StringTable strings) {
+        return encodeIRI(value, strings);
+    }
+
+    @Override
+    public TrestleIRI decode(byte[] bytes) {
+        return decodeIRI(bytes, null);
+    }
+
+    @Override
+    public TrestleIRI decode(byte[] bytes, StringTable strings) {
+        return decodeIRI(bytes, strings);
+    }
+
+    private static byte[] encodeIRI(TrestleIRI value, @Nullable StringTable strings) {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            int flags = 0;
+            final String fact = value.getObjectFact().orElse("");
+            if (!fact.isEmpty()) {
+                flags |= HAS_FACT;
+            }
+            if (value.getObjectTemporal().isPresent()) {
+                flags |= HAS_OBJECT_TEMPORAL;
+            }
+            if (value.getDbTemporal().isPresent()) {
+                flags |= HAS_DB_TEMPORAL;
+            }
+            if (strings != null) {
+                flags |= SHARED_PREFIX;
+            }
+            dos.writeByte(value.getVersion().ordinal());
+            dos.writeByte(flags);
+            if (strings != null) {
+                dos.writeLong(strings.intern(value.getPrefix()));
+            } else {
+                dos.writeUTF(value.getPrefix());
+            }
+            dos.writeUTF(value.getObjectID());
+            if (!fact.isEmpty()) {
+                dos.writeUTF(fact);
+            }
+            if (value.getObjectTemporal().isPresent()) {
+                dos.writeLong(toEpochMilli(value.getObjectTemporal().get()));
+            }
+            if (value.getDbTemporal().isPresent()) {
+                dos.writeLong(toEpochMilli(value.getDbTemporal().get()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to encode %s", value), e);
+        }
+        return bos.toByteArray();
+    }
+
+    private static TrestleIRI decodeIRI(byte[] bytes, @Nullable StringTable strings) {
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final IRIVersion version = IRIVersion.values()[dis.readByte()];
+            final int flags = dis.readByte();
+            final String prefix;
+            if ((flags & SHARED_PREFIX) != 0) {
+                if (strings == null) {
+                    throw new IllegalArgumentException("Cannot decode TrestleIRI with shared prefix, without a StringTable");
+                }
+                prefix = strings.lookup(dis.readLong());
+            } else {
+                prefix = dis.readUTF();
+            }
+            final String objectID = dis.readUTF();
+            final @Nullable String fact = (flags & HAS_FACT) != 0 ? dis.readUTF() : null;
+            final @Nullable OffsetDateTime objectTemporal = (flags & HAS_OBJECT_TEMPORAL) != 0 ? fromEpochMilli(dis.readLong()) : null;
+            final @Nullable OffsetDateTime dbTemporal = (flags & HAS_DB_TEMPORAL) != 0 ? fromEpochMilli(dis.readLong()) : null;
+            return IRIBuilder.encodeIRI(version, prefix, objectID, fact, objectTemporal, dbTemporal);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to decode TrestleIRI", e);
+        }
+    }
+
+    private static long toEpochMilli(OffsetDateTime temporal) {
+        return temporal.atZoneSameInstant(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static OffsetDateTime fromEpochMilli(long millis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
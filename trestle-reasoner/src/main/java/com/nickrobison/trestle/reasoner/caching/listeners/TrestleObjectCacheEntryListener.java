@@ -1,6 +1,6 @@
 package com.nickrobison.trestle.reasoner.caching.listeners;
 
-import com.nickrobison.trestle.common.locking.TrestleUpgradableReadWriteLock;
+import com.nickrobison.trestle.common.locking.TrestleReadWriteLock;
 import com.nickrobison.trestle.iri.IRIBuilder;
 import com.nickrobison.trestle.iri.TrestleIRI;
 import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
@@ -26,10 +26,10 @@ public class TrestleObjectCacheEntryListener implements
     private static final Logger logger = LoggerFactory.getLogger(TrestleObjectCacheEntryListener.class);
     private static final long serialVersionUID = 42L;
     private final ITrestleIndex<TrestleIRI> validIndex;
-    private final transient TrestleUpgradableReadWriteLock cacheLock;
+    private final transient TrestleReadWriteLock cacheLock;
 
     @Inject
-    public TrestleObjectCacheEntryListener(@Named("valid") ITrestleIndex<TrestleIRI> validIndex, @Named("cacheLock") TrestleUpgradableReadWriteLock cacheLock) {
+    public TrestleObjectCacheEntryListener(@Named("valid") ITrestleIndex<TrestleIRI> validIndex, @Named("cacheLock") TrestleReadWriteLock cacheLock) {
         this.validIndex = validIndex;
         this.cacheLock = cacheLock;
         logger.debug("Registering cache listener, waiting for expired or removed events");
@@ -0,0 +1,546 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.trestle.reasoner.annotations.metrics.CounterIncrement;
+import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
+import com.nickrobison.trestle.reasoner.caching.IndexSnapshot;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static com.nickrobison.trestle.reasoner.caching.tdtree.TDTreeHelpers.*;
+
+/**
+ * Thread-safe variant of the {@link TDTree}.
+ * <p>
+ * Rather than keeping the leaves in a flat list, the leaves are stored in a binary trie which mirrors the leaf IDs,
+ * the lower child of a node is at leafID << 1 and the higher child at (leafID << 1) | 1.
+ * This means an insert only needs to walk a single path from the root, rather than sorting all the leaves to find the closest match.
+ * <p>
+ * Each trie node holds either an immutable {@link CopyOnWriteLeaf}, or a pair of child nodes.
+ * Writers build a new leaf (or a new subtree, when a leaf splits) and publish it with a CAS on the node,
+ * so readers never block and always see a consistent leaf.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@ThreadSafe
+@Metriced
+@SuppressWarnings({"squid:S00119"})
+public class ConcurrentTDTree<Value> implements ITrestleIndex<Value> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentTDTree.class);
+    //    We can't go any deeper than this, otherwise the leafID will overflow
+    private static final int MAX_ID_LENGTH = getIDLength(Integer.MAX_VALUE) - 1;
+
+    private final int blockSize;
+    private final AtomicReference<TrieNode<Value>> root;
+    private final AtomicLong cacheSize = new AtomicLong();
+
+    public ConcurrentTDTree(int blockSize) {
+        logger.debug("Creating concurrent TD-Tree index");
+        this.blockSize = blockSize;
+        this.root = new AtomicReference<>(createRoot());
+    }
+
+    @Override
+    public void insertValue(String objectID, long startTime, @NonNull Value value) {
+        insertValue(objectID, startTime, TDTree.maxValue, value);
+    }
+
+    @Override
+    @Timed(name = "concurrent-td-tree.insert-timer", absolute = true)
+    @CounterIncrement(name = "concurrent-td-tree.insert-counter", absolute = true)
+    public void insertValue(String objectID, long startTime, long endTime, @NonNull Value value) {
+//        Verify that the start and end times don't over/under flow. This addresses TRESTLE-559.
+        if (startTime < 0) {
+            throw new IllegalArgumentException("Cache cannot handle negative temporal values");
+        }
+        if (endTime > TDTree.maxValue) {
+            throw new IllegalArgumentException("End temporal exceeds max value for cache");
+        }
+        if (insertValue(this.root.get(), longHashCode(objectID), startTime, endTime, value)) {
+            this.cacheSize.incrementAndGet();
+        }
+    }
+
+    @Override
+    @Timed(name = "concurrent-td-tree.get-timer", absolute = true)
+    public @Nullable Value getValue(String objectID, long atTime) {
+        final long hashedID = longHashCode(objectID);
+        final TrieNode<Value> node = findNode(this.root.get(), hashedID, atTime);
+        if (node == null) {
+            return null;
+        }
+//        The leaf we matched against might have been swapped out since we found it, but that's ok, we still return a value that was valid when we read it
+        final Object state = node.state.get();
+        if (state instanceof CopyOnWriteLeaf) {
+            @SuppressWarnings("unchecked") final CopyOnWriteLeaf<Value> leaf = (CopyOnWriteLeaf<Value>) state;
+            final int idx = leaf.indexOf(hashedID, atTime);
+            if (idx >= 0) {
+                return leaf.getValue(idx);
+            }
+        }
+//        Otherwise, the leaf split out from under us, so try again
+        return getValue(objectID, atTime);
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValues(String objectID, long startTime, long endTime) {
+        return scan(TemporalScan.overlapping(longHashCode(objectID), startTime, endTime));
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValuesAt(long atTime) {
+        return scan(TemporalScan.validAt(atTime));
+    }
+
+    /**
+     * Lazily scan the leaves which might contain records matching the {@link TemporalScan}
+     * The candidate leaves are collected up front, since they're immutable, the iterator sees a consistent view of each leaf,
+     * but may miss records written after the scan started.
+     *
+     * @param scan - {@link TemporalScan} to perform
+     * @return - {@link Iterator} of matching {@link IndexRecord}s
+     */
+    private Iterator<IndexRecord<Value>> scan(TemporalScan scan) {
+        final List<CopyOnWriteLeaf<Value>> candidates = new ArrayList<>();
+        collectCandidateLeaves(this.root.get(), scan, candidates);
+        final Iterator<CopyOnWriteLeaf<Value>> leaves = candidates.iterator();
+        return new ScanIterator<>(buffer -> {
+            if (!leaves.hasNext()) {
+                return false;
+            }
+            final CopyOnWriteLeaf<Value> leaf = leaves.next();
+            for (int i = 0; i < leaf.size(); i++) {
+                if (scan.matches(leaf.objectIDs[i], leaf.starts[i], leaf.ends[i])) {
+                    buffer.add(new IndexRecord<>(leaf.objectIDs[i], leaf.starts[i], leaf.ends[i], leaf.getValue(i)));
+                }
+            }
+            return true;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectCandidateLeaves(TrieNode<Value> node, TemporalScan scan, List<CopyOnWriteLeaf<Value>> candidates) {
+        if (!scan.mayIntersect(node.verticies)) {
+            return;
+        }
+        final Object state = node.state.get();
+        if (state instanceof Branch) {
+            collectCandidateLeaves(((Branch<Value>) state).lower, scan, candidates);
+            collectCandidateLeaves(((Branch<Value>) state).higher, scan, candidates);
+        } else {
+            final CopyOnWriteLeaf<Value> leaf = (CopyOnWriteLeaf<Value>) state;
+            if (leaf.size() > 0) {
+                candidates.add(leaf);
+            }
+        }
+    }
+
+    @Override
+    @Timed(name = "concurrent-td-tree.delete-timer", absolute = true)
+    public void deleteValue(String objectID, long atTime) {
+        final long hashedID = longHashCode(objectID);
+        while (true) {
+            final TrieNode<Value> node = findNode(this.root.get(), hashedID, atTime);
+            if (node == null) {
+                return;
+            }
+            final Object state = node.state.get();
+            if (state instanceof CopyOnWriteLeaf) {
+                @SuppressWarnings("unchecked") final CopyOnWriteLeaf<Value> leaf = (CopyOnWriteLeaf<Value>) state;
+                final int idx = leaf.indexOf(hashedID, atTime);
+                if (idx >= 0 && node.state.compareAndSet(leaf, leaf.withoutRecord(idx))) {
+                    logger.trace("Deleted {}@{} from {}", objectID, atTime, node.binaryID);
+                    this.cacheSize.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteKeysWithValue(@NonNull Value value) {
+        forEachLeafNode(this.root.get(), node -> deleteKeysWithValue(node, value));
+    }
+
+    @Override
+    public void updateValue(String objectID, long atTime, @NonNull Value value) {
+        final long hashedID = longHashCode(objectID);
+        while (true) {
+            final TrieNode<Value> node = findNode(this.root.get(), hashedID, atTime);
+            if (node == null) {
+                return;
+            }
+            final Object state = node.state.get();
+            if (state instanceof CopyOnWriteLeaf) {
+                @SuppressWarnings("unchecked") final CopyOnWriteLeaf<Value> leaf = (CopyOnWriteLeaf<Value>) state;
+                final int idx = leaf.indexOf(hashedID, atTime);
+                if (idx >= 0 && node.state.compareAndSet(leaf, leaf.withValue(idx, value))) {
+                    logger.trace("Updated {}@{} to {} from {}", objectID, atTime, value, node.binaryID);
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void replaceKeyValue(String objectID, long atTime, long startTime, long endTime, @NonNull Value value) {
+        deleteValue(objectID, atTime);
+        insertValue(objectID, startTime, endTime, value);
+    }
+
+    @Override
+    public void setKeyTemporals(String objectID, long atTime, long startTime) {
+        setKeyTemporals(objectID, atTime, startTime, TDTree.maxValue);
+    }
+
+    @Override
+    public void setKeyTemporals(String objectID, long atTime, long startTime, long endTime) {
+        final @Nullable Value value = getValue(objectID, atTime);
+        if (value != null) {
+            deleteValue(objectID, atTime);
+            insertValue(objectID, startTime, endTime, value);
+        }
+    }
+
+    /**
+     * Rebuild the index, by copying all the records into a new trie and then swapping it in.
+     * Readers continue to use the old trie while the rebuild is running, but mutations made during the rebuild may be lost,
+     * so callers should ensure no other writers are active.
+     */
+    @Override
+    @Timed(name = "concurrent-td-tree.rebuild.timer", absolute = true)
+    public void rebuildIndex() {
+        logger.info("Rebuilding concurrent TD-Tree");
+        final Instant start = Instant.now();
+        final TrieNode<Value> currentRoot = this.root.get();
+        final TrieNode<Value> newRoot = createRoot();
+        final AtomicLong records = new AtomicLong();
+        forEachLeaf(currentRoot, leaf -> {
+            for (int i = 0; i < leaf.size(); i++) {
+                if (insertValue(newRoot, leaf.objectIDs[i], leaf.starts[i], leaf.ends[i], leaf.getValue(i))) {
+                    records.incrementAndGet();
+                }
+            }
+        });
+        if (this.root.compareAndSet(currentRoot, newRoot)) {
+            this.cacheSize.set(records.get());
+        } else {
+            logger.warn("Index was dropped during rebuild, discarding rebuilt index");
+        }
+        logger.info("Rebuilding index took {} ms", Duration.between(start, Instant.now()).toMillis());
+    }
+
+    @Override
+    public IndexSnapshot<Value> snapshot() {
+        final IndexSnapshot<Value> snapshot = new IndexSnapshot<>((int) Math.min(this.cacheSize.get(), Integer.MAX_VALUE));
+        forEachLeaf(this.root.get(), leaf -> {
+            for (int i = 0; i < leaf.size(); i++) {
+                snapshot.add(leaf.objectIDs[i], leaf.starts[i], leaf.ends[i], leaf.getValue(i));
+            }
+        });
+        return snapshot;
+    }
+
+    @Override
+    @Timed(name = "concurrent-td-tree.snapshot-build.timer", absolute = true)
+    public ITrestleIndex<Value> buildFromSnapshot(IndexSnapshot<Value> snapshot) {
+        final ConcurrentTDTree<Value> tree = new ConcurrentTDTree<>(this.blockSize);
+        final TrieNode<Value> newRoot = tree.root.get();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (tree.insertValue(newRoot, snapshot.getObjectID(i), snapshot.getStart(i), snapshot.getEnd(i), snapshot.getValue(i))) {
+                tree.cacheSize.incrementAndGet();
+            }
+        }
+        return tree;
+    }
+
+    @Override
+    public boolean supportsOnlineRebuild() {
+        return true;
+    }
+
+    @Override
+    public void dropIndex() {
+        this.root.set(createRoot());
+        this.cacheSize.set(0);
+    }
+
+    /**
+     * Copy-on-write leaves are compacted on every delete, so they never have any fragmentation
+     *
+     * @return - 0.0
+     */
+    @Override
+    public double calculateFragmentation() {
+        return 0.0;
+    }
+
+    @Override
+    public List<LeafStatistics> getLeafStatistics() {
+        logger.debug("Computing index leaf statistics");
+        final List<LeafStatistics> statistics = new ArrayList<>();
+        forEachLeafNode(this.root.get(), node -> {
+            final Object state = node.state.get();
+            if (state instanceof CopyOnWriteLeaf) {
+                final CopyOnWriteLeaf<?> leaf = (CopyOnWriteLeaf<?>) state;
+                statistics.add(new LeafStatistics(node.leafID,
+                        node.binaryID,
+                        leaf.getLeafType(),
+                        node.verticies,
+                        node.direction,
+                        leaf.size()));
+            }
+        });
+        return statistics;
+    }
+
+    @Override
+    @Gauge(name = "concurrent-td-tree.cache-size", absolute = true)
+    public long getIndexSize() {
+        return this.cacheSize.get();
+    }
+
+    @Override
+    public long getMaxValue() {
+        return TDTree.maxValue;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    int getLeafCount() {
+        final AtomicLong count = new AtomicLong();
+        forEachLeafNode(this.root.get(), node -> count.incrementAndGet());
+        return count.intValue();
+    }
+
+    /**
+     * Insert the record into the trie, starting from the given node
+     *
+     * @param start     - {@link TrieNode} to start from
+     * @param objectID  - Hashed objectID
+     * @param startTime - Valid from time
+     * @param endTime   - Valid to time
+     * @param value     - {@link Value} to insert
+     * @return - <code>true</code> record was inserted. <code>false</code> the exact key already exists
+     */
+    @SuppressWarnings("unchecked")
+    private boolean insertValue(TrieNode<Value> start, long objectID, long startTime, long endTime, @NonNull Value value) {
+        TrieNode<Value> node = start;
+        while (true) {
+            final Object state = node.state.get();
+//            Walk down the trie until we hit a leaf
+            if (state instanceof Branch) {
+                node = ((Branch<Value>) state).select(startTime, endTime);
+                continue;
+            }
+            final CopyOnWriteLeaf<Value> leaf = (CopyOnWriteLeaf<Value>) state;
+            if (leaf.containsKey(objectID, startTime, endTime)) {
+                return false;
+            }
+            final Object newState;
+            if (leaf.size() < this.blockSize || leaf.isPoint()) {
+                newState = leaf.withRecord(objectID, startTime, endTime, value);
+            } else {
+                newState = buildState(node, leaf.withRecord(objectID, startTime, endTime, value));
+            }
+//            If the CAS fails, somebody else modified the leaf, so try again from the same node
+            if (node.state.compareAndSet(leaf, newState)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Build the state for the given node, from the provided records.
+     * If the records don't fit into a single leaf, the node is split (recursively, if necessary) into a {@link Branch}.
+     * The new children are not visible to any other threads until the returned state is published
+     *
+     * @param node    - {@link TrieNode} to build state for
+     * @param records - {@link CopyOnWriteLeaf} containing all the records for the node
+     * @return - either a {@link CopyOnWriteLeaf} or a {@link Branch}
+     */
+    private Object buildState(TrieNode<Value> node, CopyOnWriteLeaf<Value> records) {
+        if (records.size() <= this.blockSize || records.isPoint()) {
+            return records;
+        }
+        final TriangleApex childApex = calculateChildApex(node.idLength + 1, node.direction, node.start, node.end);
+        final ChildDirection childDirection = calculateChildDirection(node.direction);
+        final TrieNode<Value> lower = new TrieNode<>(node.leafID << 1, childDirection.lowerChild, childApex.start, childApex.end, new CopyOnWriteLeaf<>(false));
+//        If one of the children is a point, or we're too deep, turn this into a point leaf and move on
+        if (triangleIsPoint(lower.verticies) || node.idLength == MAX_ID_LENGTH) {
+            logger.trace("Converting {} to point leaf", node.binaryID);
+            return records.asPoint();
+        }
+        final TrieNode<Value> higher = new TrieNode<>((node.leafID << 1) | 1, childDirection.higherChild, childApex.start, childApex.end, new CopyOnWriteLeaf<>(false));
+        logger.trace("Splitting {} into {} and {}", node.binaryID, lower.binaryID, higher.binaryID);
+        CopyOnWriteLeaf<Value> lowerRecords = new CopyOnWriteLeaf<>(false);
+        CopyOnWriteLeaf<Value> higherRecords = new CopyOnWriteLeaf<>(false);
+        for (int i = 0; i < records.size(); i++) {
+            if (pointInTriangle(records.starts[i], records.ends[i], lower.verticies)) {
+                lowerRecords = lowerRecords.withRecord(records.objectIDs[i], records.starts[i], records.ends[i], records.getValue(i));
+            } else {
+                higherRecords = higherRecords.withRecord(records.objectIDs[i], records.starts[i], records.ends[i], records.getValue(i));
+            }
+        }
+        lower.state.set(buildState(lower, lowerRecords));
+        higher.state.set(buildState(higher, higherRecords));
+        return new Branch<>(lower, higher);
+    }
+
+    /**
+     * Find the leaf node which contains a record matching the objectID and valid at the given time
+     * Only visits subtrees whose triangles could contain an interval covering the given time
+     *
+     * @param node     - {@link TrieNode} to start search from
+     * @param objectID - Hashed objectID
+     * @param atTime   - Time which the record must be valid
+     * @return - {@link TrieNode} containing the record, or null if no records match
+     */
+    @SuppressWarnings("unchecked")
+    private @Nullable TrieNode<Value> findNode(TrieNode<Value> node, long objectID, long atTime) {
+        if (!node.mayContain(atTime)) {
+            return null;
+        }
+        final Object state = node.state.get();
+        if (state instanceof CopyOnWriteLeaf) {
+            return ((CopyOnWriteLeaf<Value>) state).indexOf(objectID, atTime) >= 0 ? node : null;
+        }
+        final Branch<Value> branch = (Branch<Value>) state;
+        final TrieNode<Value> lowerMatch = findNode(branch.lower, objectID, atTime);
+        if (lowerMatch != null) {
+            return lowerMatch;
+        }
+        return findNode(branch.higher, objectID, atTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deleteKeysWithValue(TrieNode<Value> node, @NonNull Value value) {
+        final Object state = node.state.get();
+        if (state instanceof Branch) {
+            final Branch<Value> branch = (Branch<Value>) state;
+//            The node split out from under us, so visit the new children
+            deleteKeysWithValue(branch.lower, value);
+            deleteKeysWithValue(branch.higher, value);
+            return;
+        }
+        final CopyOnWriteLeaf<Value> leaf = (CopyOnWriteLeaf<Value>) state;
+        final CopyOnWriteLeaf<Value> purged = leaf.withoutValue(value);
+        if (purged != leaf) {
+            if (node.state.compareAndSet(leaf, purged)) {
+                this.cacheSize.addAndGet((long) purged.size() - leaf.size());
+            } else {
+                deleteKeysWithValue(node, value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEachLeaf(TrieNode<Value> node, Consumer<CopyOnWriteLeaf<Value>> consumer) {
+        forEachLeafNode(node, n -> {
+            final Object state = n.state.get();
+            if (state instanceof CopyOnWriteLeaf) {
+                consumer.accept((CopyOnWriteLeaf<Value>) state);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEachLeafNode(TrieNode<V> node, Consumer<TrieNode<V>> consumer) {
+        final Object state = node.state.get();
+        if (state instanceof Branch) {
+            forEachLeafNode(((Branch<V>) state).lower, consumer);
+            forEachLeafNode(((Branch<V>) state).higher, consumer);
+        } else {
+            consumer.accept(node);
+        }
+    }
+
+    private static <V> TrieNode<V> createRoot() {
+        return new TrieNode<>(1, 7, 0, TDTree.maxValue, new CopyOnWriteLeaf<>(false));
+    }
+
+    /**
+     * Node of the binary trie, with the triangle geometry computed once, when the node is created.
+     * The state is either a {@link CopyOnWriteLeaf} or a {@link Branch}. Once a node has been split, it never goes back to being a leaf.
+     *
+     * @param <V> - Generic type of Index value
+     */
+    static final class TrieNode<V> {
+        final int leafID;
+        final int idLength;
+        final String binaryID;
+        final int direction;
+        final double start;
+        final double end;
+        final double[] verticies;
+        private final double minStart;
+        private final double maxEnd;
+        final AtomicReference<Object> state;
+
+        TrieNode(int leafID, int direction, double start, double end, CopyOnWriteLeaf<V> leaf) {
+            this.leafID = leafID;
+            this.idLength = getIDLength(leafID);
+            this.binaryID = Integer.toBinaryString(leafID);
+            this.direction = direction;
+            this.start = start;
+            this.end = end;
+            this.verticies = getTriangleVerticies(adjustedLength[this.idLength], direction, start, end);
+            this.minStart = Math.min(verticies[0], Math.min(verticies[2], verticies[4]));
+            this.maxEnd = Math.max(verticies[1], Math.max(verticies[3], verticies[5]));
+            this.state = new AtomicReference<>(leaf);
+        }
+
+        /**
+         * Conservative check to determine if the triangle could contain an interval which is valid at the given time.
+         * Valid intervals are bounded by start <= atTime and end >= atTime, so we can skip any triangle whose bounding box falls outside of that region.
+         *
+         * @param atTime - Time to check
+         * @return - <code>false</code> if the node definitely does not contain any valid intervals
+         */
+        boolean mayContain(long atTime) {
+//            Pad by a millisecond on either side, to account for any rounding in the triangle verticies
+            return this.minStart <= (atTime + 1) && this.maxEnd >= (atTime - 1);
+        }
+    }
+
+    /**
+     * Split node state, which simply points to the lower and higher children
+     *
+     * @param <V> - Generic type of Index value
+     */
+    static final class Branch<V> {
+        final TrieNode<V> lower;
+        final TrieNode<V> higher;
+
+        Branch(TrieNode<V> lower, TrieNode<V> higher) {
+            this.lower = lower;
+            this.higher = higher;
+        }
+
+        TrieNode<V> select(long startTime, long endTime) {
+            if (pointInTriangle(startTime, endTime, this.lower.verticies)) {
+                return this.lower;
+            }
+            return this.higher;
+        }
+    }
+}
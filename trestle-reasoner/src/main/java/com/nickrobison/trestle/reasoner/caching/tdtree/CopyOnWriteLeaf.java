@@ -0,0 +1,187 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * Immutable block of key/value records used by the {@link ConcurrentTDTree}.
+ * Every mutation returns a new leaf, which is published by swapping the reference held by the owning trie node.
+ * This means readers can scan a leaf without taking any locks, and removed records are compacted immediately, so the leaf never fragments.
+ * <p>
+ * Keys are stored as primitive arrays (objectID, start, end) rather than as FastTuple instances, which allows matches to be performed with plain comparisons.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@Immutable
+@SuppressWarnings({"squid:S00119"})
+final class CopyOnWriteLeaf<Value> {
+
+    private static final long[] EMPTY_KEYS = new long[0];
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    final long[] objectIDs;
+    final long[] starts;
+    final long[] ends;
+    final Object[] values;
+    private final boolean point;
+
+    CopyOnWriteLeaf(boolean point) {
+        this(EMPTY_KEYS, EMPTY_KEYS, EMPTY_KEYS, EMPTY_VALUES, point);
+    }
+
+    CopyOnWriteLeaf(long[] objectIDs, long[] starts, long[] ends, Object[] values, boolean point) {
+        this.objectIDs = objectIDs;
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+        this.point = point;
+    }
+
+    int size() {
+        return this.objectIDs.length;
+    }
+
+    /**
+     * Is this a point leaf?
+     * Point leaves are never split, they simply grow as new records are added
+     *
+     * @return - <code>true</code> leaf is a point leaf. <code>false</code> leaf can be split
+     */
+    boolean isPoint() {
+        return this.point;
+    }
+
+    String getLeafType() {
+        return this.point ? "CopyOnWritePointLeaf" : "CopyOnWriteLeaf";
+    }
+
+    /**
+     * Find the index of the record which matches the given objectID and is valid at the specified time
+     *
+     * @param objectID - Hashed objectID to match
+     * @param atTime   - Time which the record must be valid
+     * @return - index of matching record, -1 if no records match
+     */
+    int indexOf(long objectID, long atTime) {
+        for (int i = 0; i < this.objectIDs.length; i++) {
+            if (matches(i, objectID, atTime)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether or not the record at the given index matches the objectID and is valid at the specified time.
+     * This is the same check performed by {@link LeafNode#matches(LeafKeySchema, long, long)}, an interval match, followed by a point match
+     *
+     * @param idx      - Record index
+     * @param objectID - Hashed objectID to match
+     * @param atTime   - Time which the record must be valid
+     * @return - <code>true</code> record matches
+     */
+    boolean matches(int idx, long objectID, long atTime) {
+        if (this.objectIDs[idx] != objectID) {
+            return false;
+        }
+        final long start = this.starts[idx];
+        final long end = this.ends[idx];
+        return (start <= atTime && end > atTime) || (start == end && start == atTime);
+    }
+
+    boolean containsKey(long objectID, long start, long end) {
+        for (int i = 0; i < this.objectIDs.length; i++) {
+            if (this.objectIDs[i] == objectID && this.starts[i] == start && this.ends[i] == end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    Value getValue(int idx) {
+        return (Value) this.values[idx];
+    }
+
+    CopyOnWriteLeaf<Value> withRecord(long objectID, long start, long end, @NonNull Value value) {
+        final int size = size();
+        final long[] newIDs = Arrays.copyOf(this.objectIDs, size + 1);
+        final long[] newStarts = Arrays.copyOf(this.starts, size + 1);
+        final long[] newEnds = Arrays.copyOf(this.ends, size + 1);
+        final Object[] newValues = Arrays.copyOf(this.values, size + 1);
+        newIDs[size] = objectID;
+        newStarts[size] = start;
+        newEnds[size] = end;
+        newValues[size] = value;
+        return new CopyOnWriteLeaf<>(newIDs, newStarts, newEnds, newValues, this.point);
+    }
+
+    CopyOnWriteLeaf<Value> withoutRecord(int idx) {
+        final int size = size();
+        final long[] newIDs = new long[size - 1];
+        final long[] newStarts = new long[size - 1];
+        final long[] newEnds = new long[size - 1];
+        final Object[] newValues = new Object[size - 1];
+        copyWithout(this.objectIDs, newIDs, idx);
+        copyWithout(this.starts, newStarts, idx);
+        copyWithout(this.ends, newEnds, idx);
+        System.arraycopy(this.values, 0, newValues, 0, idx);
+        System.arraycopy(this.values, idx + 1, newValues, idx, size - idx - 1);
+        return new CopyOnWriteLeaf<>(newIDs, newStarts, newEnds, newValues, this.point);
+    }
+
+    CopyOnWriteLeaf<Value> withValue(int idx, @NonNull Value value) {
+        final Object[] newValues = Arrays.copyOf(this.values, this.values.length);
+        newValues[idx] = value;
+        return new CopyOnWriteLeaf<>(this.objectIDs, this.starts, this.ends, newValues, this.point);
+    }
+
+    /**
+     * Remove all the records which point to the given value
+     *
+     * @param value - {@link Value} to purge from leaf
+     * @return - New {@link CopyOnWriteLeaf}, or the same instance, if no records matched
+     */
+    CopyOnWriteLeaf<Value> withoutValue(@NonNull Value value) {
+        int remaining = 0;
+        for (Object v : this.values) {
+            if (!value.equals(v)) {
+                remaining++;
+            }
+        }
+        if (remaining == size()) {
+            return this;
+        }
+        final long[] newIDs = new long[remaining];
+        final long[] newStarts = new long[remaining];
+        final long[] newEnds = new long[remaining];
+        final Object[] newValues = new Object[remaining];
+        int j = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            if (!value.equals(this.values[i])) {
+                newIDs[j] = this.objectIDs[i];
+                newStarts[j] = this.starts[i];
+                newEnds[j] = this.ends[i];
+                newValues[j] = this.values[i];
+                j++;
+            }
+        }
+        return new CopyOnWriteLeaf<>(newIDs, newStarts, newEnds, newValues, this.point);
+    }
+
+    /**
+     * Convert the leaf into a point leaf, which will not be split
+     *
+     * @return - {@link CopyOnWriteLeaf} with the same records
+     */
+    CopyOnWriteLeaf<Value> asPoint() {
+        return new CopyOnWriteLeaf<>(this.objectIDs, this.starts, this.ends, this.values, true);
+    }
+
+    private static void copyWithout(long[] source, long[] dest, int idx) {
+        System.arraycopy(source, 0, dest, 0, idx);
+        System.arraycopy(source, idx + 1, dest, idx, source.length - idx - 1);
+    }
+}
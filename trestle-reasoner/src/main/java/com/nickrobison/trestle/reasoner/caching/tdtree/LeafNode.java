@@ -1,10 +1,11 @@
 package com.nickrobison.trestle.reasoner.caching.tdtree;
 
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
 import com.nickrobison.tuple.TupleSchema;
-import com.nickrobison.tuple.codegen.TupleExpressionGenerator;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Collection;
 import java.util.Map;
 
 import static com.nickrobison.trestle.reasoner.caching.tdtree.TDTreeHelpers.getIDLength;
@@ -26,11 +27,21 @@ public abstract class LeafNode<Value> {
     final int leafID;
     final String binaryID;
     final LeafSchema leafMetadata;
+    //    The leaf triangle never changes, so compute it once, rather than on every lookup
+    private final double[] verticies;
+    private final double minStart;
+    private final double maxEnd;
 
     LeafNode(int leafID, LeafSchema leafMetadata) {
         this.leafID = leafID;
         this.leafMetadata = leafMetadata;
         this.binaryID = Integer.toBinaryString(leafID);
+        this.verticies = TDTreeHelpers.getTriangleVerticies(TDTreeHelpers.adjustedLength[getIDLength(leafID)],
+                leafMetadata.direction(),
+                leafMetadata.start(),
+                leafMetadata.end());
+        this.minStart = Math.min(verticies[0], Math.min(verticies[2], verticies[4]));
+        this.maxEnd = Math.max(verticies[1], Math.max(verticies[3], verticies[5]));
     }
 
     public int getID() {
@@ -42,10 +53,28 @@ public abstract class LeafNode<Value> {
     }
 
     public double[] getLeafVerticies() {
-        return TDTreeHelpers.getTriangleVerticies(TDTreeHelpers.adjustedLength[getIDLength(this.leafID)],
-                this.leafMetadata.direction(),
-                this.leafMetadata.start(),
-                this.leafMetadata.end());
+        return this.verticies.clone();
+    }
+
+    /**
+     * Determines whether or not the leaf triangle intersects the region of keys which could be valid at the given time
+     *
+     * @param atTime   - Time which the keys must be valid
+     * @param maxValue - Max value of the tree
+     * @return - <code>true</code> leaf may contain keys valid at the given time
+     */
+    boolean intersectsTime(long atTime, long maxValue) {
+        return TDTreeHelpers.checkRectangleIntersection(this.verticies, atTime, atTime, maxValue) != -2;
+    }
+
+    /**
+     * Conservative check to determine if the leaf triangle could contain any keys matching the given {@link TemporalScan}
+     *
+     * @param scan - {@link TemporalScan} to check
+     * @return - <code>false</code> leaf definitely does not contain any matching keys
+     */
+    boolean mayIntersect(TemporalScan scan) {
+        return scan.mayIntersect(this.minStart, this.maxEnd);
     }
 
     public abstract String getLeafType();
@@ -93,14 +122,18 @@ public abstract class LeafNode<Value> {
      * @param atTime   - ValidTime to to restrict matching keys to
      * @return - <code>true</code> matching key was deleted in this leaf. <code>false</code> no keys were removed
      */
-    abstract boolean delete(String objectID, long atTime);
+    boolean delete(String objectID, long atTime) {
+        return delete(longHashCode(objectID), atTime);
+    }
 
     /**
      * Delete key/value pair from leaf
-     * @param expression - Pre-compiled {@link TupleExpressionGenerator.BooleanTupleExpression} to evaluate
+     *
+     * @param objectID - Hashed ObjectID to match
+     * @param atTime   - ValidTime to to restrict matching keys to
      * @return - <code>true</code> matching key was deleted in this leaf. <code>false</code> no keys were removed
      */
-    abstract boolean delete(TupleExpressionGenerator.BooleanTupleExpression expression);
+    abstract boolean delete(long objectID, long atTime);
 
     /**
      * Delete all keys that point to the given value
@@ -120,15 +153,19 @@ public abstract class LeafNode<Value> {
      * @param atTime   - Time which the object must be valid
      * @return - Nullable String value
      */
-    abstract @Nullable Value getValue(String objectID, long atTime);
+    @Nullable Value getValue(String objectID, long atTime) {
+        return getValue(longHashCode(objectID), atTime);
+    }
 
     /**
-     * Retrieve a value from the Leaf that matches the given ObjectID and is valid at the specified timestamp
+     * Retrieve a value from the Leaf that matches the given hashed ObjectID and is valid at the specified timestamp
      * Returns null if no matching object is found
-     * @param expression - Pre-compiled {@link TupleExpressionGenerator.BooleanTupleExpression} to evaluate
+     *
+     * @param objectID - Hashed ID of object to find
+     * @param atTime   - Time which the object must be valid
      * @return - Nullable {@link Value}
      */
-    abstract @Nullable Value getValue(TupleExpressionGenerator.BooleanTupleExpression expression);
+    abstract @Nullable Value getValue(long objectID, long atTime);
 
     /**
      * Dump the key/value pairs for the given leaf
@@ -137,6 +174,14 @@ public abstract class LeafNode<Value> {
      */
     abstract Map<LeafKeySchema, @NonNull Value> dumpLeaf();
 
+    /**
+     * Add all the records in the leaf which match the given {@link TemporalScan} to the results
+     *
+     * @param scan    - {@link TemporalScan} to match
+     * @param results - {@link Collection} of {@link IndexRecord} to add matching records to
+     */
+    abstract void scan(TemporalScan scan, Collection<IndexRecord<Value>> results);
+
     /**
      * Calculates the fragmentation of the leaf-node, which is the number of null records in the storage array with indexes less than the record count
      * @return - Percent fragmentation
@@ -169,20 +214,21 @@ public abstract class LeafNode<Value> {
     }
 
     /**
-     * Build the expression to find the value valid at the given time point
+     * Determines whether or not the given key matches the objectID and is valid at the given time point.
+     * Which is either an interval match, or a point match
      *
-     * @param objectID - ObjectID to match
+     * @param key      - {@link LeafKeySchema} to evaluate
+     * @param objectID - Hashed ObjectID to match
      * @param atTime   - Temporal to find valid value
-     * @return - {@link TupleExpressionGenerator.BooleanTupleExpression} to evaluate against tuples
+     * @return - <code>true</code> key matches
      */
-    static TupleExpressionGenerator.BooleanTupleExpression buildFindExpression(String objectID, long atTime) {
-        try {
-//            We have to do this really weird equality check because FastTuple doesn't support if statements (for now). So we check for a an interval match, then a point match
-            final String queryString = String.format("(tuple.objectID == %sL) && (((tuple.start <= %sL) && (tuple.end > %sL)) | ((tuple.start == tuple.end)  && (tuple.start == %sL)))", longHashCode(objectID), atTime, atTime, atTime);
-            return TupleExpressionGenerator.builder().expression(queryString).schema(splittableKeySchema).returnBoolean();
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to build find expression", e);
+    static boolean matches(LeafKeySchema key, long objectID, long atTime) {
+        if (key.objectID() != objectID) {
+            return false;
         }
+        final long start = key.start();
+        final long end = key.end();
+        return (start <= atTime && end > atTime) || (start == end && start == atTime);
     }
 
     private static TupleSchema buildSplittableKeySchema() {
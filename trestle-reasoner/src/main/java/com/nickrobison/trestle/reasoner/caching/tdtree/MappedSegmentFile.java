@@ -0,0 +1,215 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File which is memory-mapped in fixed size segments, and grown a segment at a time.
+ * A single {@link MappedByteBuffer} can only address 2GB, so splitting the file into segments allows us to address much larger files.
+ * <p>
+ * Primitive values must be written at naturally aligned offsets (ints at multiples of 4, longs/doubles at multiples of 8),
+ * which guarantees they never straddle a segment boundary. Byte arrays can be written anywhere.
+ * <p>
+ * Closing the file unmaps the segments immediately (where the JVM allows it), rather than waiting for them to be garbage collected,
+ * so the file can be safely moved or deleted once it's closed.
+ */
+@NotThreadSafe
+class MappedSegmentFile implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedSegmentFile.class);
+    private static final @Nullable MethodHandle UNMAPPER = lookupUnmapper();
+
+    private final Path path;
+    private final int segmentSize;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * Open (or create) a memory-mapped file
+     *
+     * @param path        - {@link Path} of file
+     * @param segmentSize - Size of each mapped segment, must be a power of two
+     * @throws IOException - if the file cannot be opened or mapped
+     */
+    MappedSegmentFile(Path path, int segmentSize) throws IOException {
+        if (Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("Segment size must be a power of two");
+        }
+        this.path = path;
+        this.segmentSize = segmentSize;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        this.channel = this.file.getChannel();
+//        Map all the existing segments, if there are any, otherwise map the first one
+        final long existingSize = this.channel.size();
+        ensureCapacity(Math.max(existingSize, 1));
+        logger.debug("Opened {} with {} segments", path, this.segments.size());
+    }
+
+    Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Current mapped capacity of the file
+     *
+     * @return - capacity in bytes
+     */
+    long capacity() {
+        return (long) this.segments.size() * this.segmentSize;
+    }
+
+    /**
+     * Ensure the file is large enough to hold the given number of bytes, mapping new segments as necessary
+     *
+     * @param capacity - required capacity in bytes
+     */
+    void ensureCapacity(long capacity) {
+        while (capacity() < capacity) {
+            final long position = capacity();
+            try {
+                this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE, position, this.segmentSize));
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("Unable to map segment at %d of %s", position, this.path), e);
+            }
+        }
+    }
+
+    int getInt(long offset) {
+        return segment(offset).getInt(position(offset));
+    }
+
+    void putInt(long offset, int value) {
+        segment(offset).putInt(position(offset), value);
+    }
+
+    long getLong(long offset) {
+        return segment(offset).getLong(position(offset));
+    }
+
+    void putLong(long offset, long value) {
+        segment(offset).putLong(position(offset), value);
+    }
+
+    double getDouble(long offset) {
+        return segment(offset).getDouble(position(offset));
+    }
+
+    void putDouble(long offset, double value) {
+        segment(offset).putDouble(position(offset), value);
+    }
+
+    /**
+     * Read bytes from the file, spanning segments if necessary
+     *
+     * @param offset      - offset to start reading from
+     * @param destination - byte array to fill
+     */
+    void get(long offset, byte[] destination) {
+        int copied = 0;
+        while (copied < destination.length) {
+            final long current = offset + copied;
+            final int position = position(current);
+            final int length = Math.min(destination.length - copied, this.segmentSize - position);
+            final MappedByteBuffer duplicate = (MappedByteBuffer) segment(current).duplicate();
+            duplicate.position(position);
+            duplicate.get(destination, copied, length);
+            copied += length;
+        }
+    }
+
+    /**
+     * Write bytes to the file, spanning segments if necessary
+     *
+     * @param offset - offset to start writing to
+     * @param source - bytes to write
+     */
+    void put(long offset, byte[] source) {
+        ensureCapacity(offset + source.length);
+        int copied = 0;
+        while (copied < source.length) {
+            final long current = offset + copied;
+            final int position = position(current);
+            final int length = Math.min(source.length - copied, this.segmentSize - position);
+            final MappedByteBuffer duplicate = (MappedByteBuffer) segment(current).duplicate();
+            duplicate.position(position);
+            duplicate.put(source, copied, length);
+            copied += length;
+        }
+    }
+
+    /**
+     * Flush all the changes to disk
+     */
+    void force() {
+        this.segments.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        this.segments.forEach(MappedSegmentFile::unmap);
+        this.segments.clear();
+        this.channel.close();
+        this.file.close();
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        return this.segments.get((int) (offset >>> this.segmentShift));
+    }
+
+    private int position(long offset) {
+        return (int) (offset & this.segmentMask);
+    }
+
+    /**
+     * Release the mapping, if we can. Otherwise, the mapping will be released once the buffer is garbage collected
+     * The buffer must not be accessed after it has been unmapped.
+     *
+     * @param buffer - {@link MappedByteBuffer} to unmap
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            logger.warn("Unable to unmap buffer, it will be released when garbage collected", e);
+        }
+    }
+
+    private static @Nullable MethodHandle lookupUnmapper() {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafeField.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Cannot explicitly unmap memory-mapped files, they will be released when garbage collected", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,1104 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.trestle.reasoner.annotations.metrics.CounterIncrement;
+import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
+import com.nickrobison.trestle.reasoner.caching.IndexValueCodec;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.nickrobison.trestle.reasoner.caching.tdtree.TDTreeHelpers.*;
+
+/**
+ * TD-Tree index whose leaves and values live off-heap, in a pair of memory-mapped files.
+ * <p>
+ * The index file contains a header, followed by fixed size leaf blocks. Each block has a header with the leaf ID and triangle geometry,
+ * followed by up to blockSize records of (objectID, start, end, valueOffset).
+ * When a leaf splits, the new leaves are written into free blocks and the old block is marked as retired, so the file is updated incrementally.
+ * Point leaves, which can't be split any further, are stored as a chain of overflow blocks.
+ * <p>
+ * Values are encoded with an {@link IndexValueCodec} and appended to the value file, records simply point to their value's offset.
+ * Strings which the codec shares between values (e.g. IRI prefixes) are appended to the value file once, as a {@link IndexValueCodec.StringTable}.
+ * Replaced values are left in place until the index is rebuilt, which compacts both files.
+ * <p>
+ * The only on-heap state is a directory of leafID -> block (and the string table), which is recovered from the files when they're re-opened,
+ * so the index does not need to be rebuilt after a restart.
+ * Both files are forced to disk at each commit point (leaf splits, rebuilds, drops and close). Records written since the last commit point may be lost in a crash,
+ * any records which point past the end of the value file are dropped when the index is re-opened.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@NotThreadSafe
+@Metriced
+@SuppressWarnings({"squid:S00119"})
+public class MappedTDTree<Value> implements ITrestleIndex<Value>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedTDTree.class);
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+    private static final int MAX_ID_LENGTH = getIDLength(Integer.MAX_VALUE) - 1;
+    private static final int FORMAT_VERSION = 2;
+    private static final String REBUILD_SUFFIX = "-rebuild";
+    private static final String BACKUP_SUFFIX = "-backup";
+    private static final long NO_BLOCK = -1;
+
+    //    Index file header
+    private static final int INDEX_MAGIC = 0x54445449;
+    private static final long INDEX_HEADER_SIZE = 64;
+    private static final long H_MAGIC = 0;
+    private static final long H_VERSION = 4;
+    private static final long H_BLOCK_SIZE = 8;
+    private static final long H_MAX_VALUE = 16;
+    private static final long H_BLOCK_COUNT = 24;
+
+    //    Block header
+    private static final int B_LEAF_ID = 0;
+    private static final int B_DIRECTION = 4;
+    private static final int B_START = 8;
+    private static final int B_END = 16;
+    private static final int B_FLAGS = 24;
+    private static final int B_COUNT = 28;
+    private static final int B_NEXT = 32;
+    private static final int BLOCK_HEADER_SIZE = 40;
+    private static final int FLAG_LIVE = 1;
+    private static final int FLAG_POINT = 1 << 1;
+    private static final int FLAG_OVERFLOW = 1 << 2;
+
+    //    Records
+    private static final int RECORD_SIZE = 32;
+    private static final int R_OBJECT_ID = 0;
+    private static final int R_START = 8;
+    private static final int R_END = 16;
+    private static final int R_VALUE = 24;
+
+    //    Value file header
+    private static final int VALUE_MAGIC = 0x54445456;
+    private static final long VALUE_HEADER_SIZE = 32;
+    private static final long V_MAGIC = 0;
+    private static final long V_VERSION = 4;
+    private static final long V_END = 8;
+    private static final long V_DEAD = 16;
+
+    private final Path directory;
+    private final String name;
+    private final int blockSize;
+    private final long blockStride;
+    private final int segmentSize;
+    private final IndexValueCodec<Value> codec;
+    private final Int2LongOpenHashMap leafDirectory = new Int2LongOpenHashMap();
+    private final LongArrayList freeBlocks = new LongArrayList();
+    private final ValueStringTable strings = new ValueStringTable();
+    private final AtomicLong cacheSize = new AtomicLong();
+    private MappedSegmentFile index;
+    private MappedSegmentFile values;
+    private long blockCount;
+    private long valueEnd;
+    private long deadBytes;
+
+    /**
+     * Open (or create) a memory-mapped index
+     *
+     * @param directory - {@link Path} of directory to store the index files in
+     * @param name      - Name of the index, used to name the index files
+     * @param blockSize - Number of records per leaf
+     * @param codec     - {@link IndexValueCodec} to encode/decode values
+     * @throws IOException - if the index files cannot be opened
+     */
+    public MappedTDTree(Path directory, String name, int blockSize, IndexValueCodec<Value> codec) throws IOException {
+        this(directory, name, blockSize, codec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @SuppressWarnings({"initialization.fields.uninitialized", "method.invocation.invalid"})
+    MappedTDTree(Path directory, String name, int blockSize, IndexValueCodec<Value> codec, int segmentSize) throws IOException {
+        logger.debug("Creating memory-mapped TD-Tree index {} in {}", name, directory);
+        this.directory = directory;
+        this.name = name;
+        this.blockSize = blockSize;
+        this.blockStride = BLOCK_HEADER_SIZE + ((long) blockSize * RECORD_SIZE);
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+        Files.createDirectories(directory);
+        recoverRebuild(directory, name);
+        open();
+    }
+
+    @Override
+    public void insertValue(String objectID, long startTime, @NonNull Value value) {
+        insertValue(objectID, startTime, TDTree.maxValue, value);
+    }
+
+    @Override
+    @Timed(name = "mapped-td-tree.insert-timer", absolute = true)
+    @CounterIncrement(name = "mapped-td-tree.insert-counter", absolute = true)
+    public void insertValue(String objectID, long startTime, long endTime, @NonNull Value value) {
+//        Verify that the start and end times don't over/under flow. This addresses TRESTLE-559.
+        if (startTime < 0) {
+            throw new IllegalArgumentException("Cache cannot handle negative temporal values");
+        }
+        if (endTime > TDTree.maxValue) {
+            throw new IllegalArgumentException("End temporal exceeds max value for cache");
+        }
+        insertRecord(longHashCode(objectID), startTime, endTime, encodeValue(value));
+    }
+
+    @Override
+    @Timed(name = "mapped-td-tree.get-timer", absolute = true)
+    public @Nullable Value getValue(String objectID, long atTime) {
+        final long record = findRecord(longHashCode(objectID), atTime);
+        if (record == NO_BLOCK) {
+            return null;
+        }
+        return readValue(this.index.getLong(record + R_VALUE));
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValues(String objectID, long startTime, long endTime) {
+        return scan(TemporalScan.overlapping(longHashCode(objectID), startTime, endTime));
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValuesAt(long atTime) {
+        return scan(TemporalScan.validAt(atTime));
+    }
+
+    /**
+     * Lazily scan the leaf chains which might contain records matching the {@link TemporalScan}
+     * Values are only decoded for matching records.
+     *
+     * @param scan - {@link TemporalScan} to perform
+     * @return - {@link Iterator} of matching {@link IndexRecord}s
+     */
+    private Iterator<IndexRecord<Value>> scan(TemporalScan scan) {
+        final LongArrayList candidates = new LongArrayList();
+        this.leafDirectory.int2LongEntrySet().forEach(entry -> {
+            final long offset = blockOffset(entry.getLongValue());
+            final double[] verticies = getTriangleVerticies(adjustedLength[getIDLength(entry.getIntKey())],
+                    this.index.getInt(offset + B_DIRECTION),
+                    this.index.getDouble(offset + B_START),
+                    this.index.getDouble(offset + B_END));
+            if (scan.mayIntersect(verticies)) {
+                candidates.add(entry.getLongValue());
+            }
+        });
+        final int[] next = {0};
+        return new ScanIterator<>(buffer -> {
+            if (next[0] >= candidates.size()) {
+                return false;
+            }
+            final long head = candidates.getLong(next[0]++);
+            for (long block = head; block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+                final int count = this.index.getInt(blockOffset(block) + B_COUNT);
+                for (int i = 0; i < count; i++) {
+                    final long record = recordOffset(block, i);
+                    final long objectID = this.index.getLong(record + R_OBJECT_ID);
+                    final long start = this.index.getLong(record + R_START);
+                    final long end = this.index.getLong(record + R_END);
+                    if (scan.matches(objectID, start, end)) {
+                        buffer.add(new IndexRecord<>(objectID, start, end, readValue(this.index.getLong(record + R_VALUE))));
+                    }
+                }
+            }
+            return true;
+        });
+    }
+
+    @Override
+    @Timed(name = "mapped-td-tree.delete-timer", absolute = true)
+    public void deleteValue(String objectID, long atTime) {
+        final long hashedID = longHashCode(objectID);
+        final long record = findRecord(hashedID, atTime);
+        if (record != NO_BLOCK) {
+            final int leafID = this.index.getInt(blockOffset(blockOf(record)) + B_LEAF_ID);
+            deleteRecord(this.leafDirectory.get(leafID), record);
+            logger.trace("Deleted {}@{} from {}", objectID, atTime, Integer.toBinaryString(leafID));
+        }
+    }
+
+    @Override
+    public void deleteKeysWithValue(@NonNull Value value) {
+        final byte[] encoded = encodeValue(value);
+        for (long head : this.leafDirectory.values().toLongArray()) {
+            long record;
+            while ((record = findRecordWithValue(head, encoded)) != NO_BLOCK) {
+                deleteRecord(head, record);
+            }
+        }
+    }
+
+    @Override
+    public void updateValue(String objectID, long atTime, @NonNull Value value) {
+        final long record = findRecord(longHashCode(objectID), atTime);
+        if (record != NO_BLOCK) {
+            markDead(this.index.getLong(record + R_VALUE));
+            this.index.putLong(record + R_VALUE, appendValue(encodeValue(value)));
+        }
+    }
+
+    @Override
+    public void replaceKeyValue(String objectID, long atTime, long startTime, long endTime, @NonNull Value value) {
+        deleteValue(objectID, atTime);
+        insertValue(objectID, startTime, endTime, value);
+    }
+
+    @Override
+    public void setKeyTemporals(String objectID, long atTime, long startTime) {
+        setKeyTemporals(objectID, atTime, startTime, TDTree.maxValue);
+    }
+
+    @Override
+    public void setKeyTemporals(String objectID, long atTime, long startTime, long endTime) {
+        final long hashedID = longHashCode(objectID);
+        final long record = findRecord(hashedID, atTime);
+        if (record != NO_BLOCK) {
+//            Move the record without decoding the value
+            final long valueOffset = this.index.getLong(record + R_VALUE);
+            final byte[] encoded = readValueBytes(valueOffset);
+            final int leafID = this.index.getInt(blockOffset(blockOf(record)) + B_LEAF_ID);
+            deleteRecord(this.leafDirectory.get(leafID), record);
+            insertRecord(hashedID, startTime, endTime, encoded);
+        }
+    }
+
+    /**
+     * Rebuild the index by copying all the live records into a fresh set of files, which are then swapped in.
+     * This re-balances the leaves and drops any replaced or deleted values (and unused strings) from the value file.
+     * <p>
+     * The current files are closed (and unmapped) and moved aside before the new files are moved into place.
+     * If the swap fails, the original files are restored, and if we crash part way through, the swap is completed or rolled back when the index is next opened.
+     */
+    @Override
+    @Timed(name = "mapped-td-tree.rebuild.timer", absolute = true)
+    public void rebuildIndex() {
+        logger.info("Rebuilding memory-mapped TD-Tree {}", this.name);
+        final Instant start = Instant.now();
+        final String rebuildName = this.name + REBUILD_SUFFIX;
+        try {
+            deleteFiles(this.directory, rebuildName);
+            try (MappedTDTree<Value> rebuilt = new MappedTDTree<>(this.directory, rebuildName, this.blockSize, this.codec, this.segmentSize)) {
+                for (long head : this.leafDirectory.values().toLongArray()) {
+                    for (long block = head; block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+                        final int count = this.index.getInt(blockOffset(block) + B_COUNT);
+                        for (int i = 0; i < count; i++) {
+                            final long record = recordOffset(block, i);
+//                            Values need to be re-encoded, so they reference the new string table
+                            rebuilt.insertRecord(this.index.getLong(record + R_OBJECT_ID),
+                                    this.index.getLong(record + R_START),
+                                    this.index.getLong(record + R_END),
+                                    rebuilt.encodeValue(readValue(this.index.getLong(record + R_VALUE))));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            deleteFilesQuietly(this.directory, rebuildName);
+            throw new UncheckedIOException(String.format("Unable to rebuild index %s", this.name), e);
+        } catch (RuntimeException e) {
+            deleteFilesQuietly(this.directory, rebuildName);
+            throw e;
+        }
+        swapRebuiltFiles(rebuildName);
+        logger.info("Rebuilding index took {} ms", Duration.between(start, Instant.now()).toMillis());
+    }
+
+    /**
+     * Swap the rebuilt files in place of the current ones, and re-open the index.
+     * If the swap fails, the current files are restored and re-opened.
+     *
+     * @param rebuildName - Name of the rebuilt index
+     */
+    private void swapRebuiltFiles(String rebuildName) {
+        final String backupName = this.name + BACKUP_SUFFIX;
+        boolean swapped = false;
+        try {
+            closeFiles();
+            moveFile(indexPath(this.directory, this.name), indexPath(this.directory, backupName));
+            moveFile(valuePath(this.directory, this.name), valuePath(this.directory, backupName));
+            moveFile(indexPath(this.directory, rebuildName), indexPath(this.directory, this.name));
+            moveFile(valuePath(this.directory, rebuildName), valuePath(this.directory, this.name));
+            swapped = true;
+        } catch (IOException e) {
+            logger.error("Unable to swap rebuilt index {}, restoring original files", this.name, e);
+        }
+        try {
+//            Either deletes the backups, or restores them, depending on how far we got
+            recoverRebuild(this.directory, this.name);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to re-open index %s after rebuild", this.name), e);
+        }
+        if (!swapped) {
+            throw new IllegalStateException(String.format("Unable to swap rebuilt index %s, original index has been restored", this.name));
+        }
+    }
+
+    @Override
+    public void dropIndex() {
+        initialize();
+    }
+
+    @Override
+    public List<LeafStatistics> getLeafStatistics() {
+        logger.debug("Computing index leaf statistics");
+        final List<LeafStatistics> statistics = new ArrayList<>();
+        this.leafDirectory.int2LongEntrySet().forEach(entry -> {
+            final long offset = blockOffset(entry.getLongValue());
+            final int leafID = entry.getIntKey();
+            final int direction = this.index.getInt(offset + B_DIRECTION);
+            final boolean point = (this.index.getInt(offset + B_FLAGS) & FLAG_POINT) != 0;
+            statistics.add(new LeafStatistics(leafID,
+                    Integer.toBinaryString(leafID),
+                    point ? "MappedPointLeaf" : "MappedLeaf",
+                    getTriangleVerticies(adjustedLength[getIDLength(leafID)], direction, this.index.getDouble(offset + B_START), this.index.getDouble(offset + B_END)),
+                    direction,
+                    chainCount(entry.getLongValue())));
+        });
+        return statistics;
+    }
+
+    /**
+     * Records are compacted on delete, so the only fragmentation is in the value file, where replaced values are left until the index is rebuilt
+     *
+     * @return - Percent of the value file occupied by dead values
+     */
+    @Override
+    public double calculateFragmentation() {
+        final long used = this.valueEnd - VALUE_HEADER_SIZE;
+        if (used == 0) {
+            return 0.0;
+        }
+        return (double) this.deadBytes / (double) used;
+    }
+
+    @Override
+    @Gauge(name = "mapped-td-tree.cache-size", absolute = true)
+    public long getIndexSize() {
+        return this.cacheSize.get();
+    }
+
+    @Override
+    public long getMaxValue() {
+        return TDTree.maxValue;
+    }
+
+    int getLeafCount() {
+        return this.leafDirectory.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        logger.debug("Closing memory-mapped TD-Tree index {}", this.name);
+        closeFiles();
+    }
+
+    /**
+     * Force all changes to disk
+     */
+    public void force() {
+        this.values.force();
+        this.index.force();
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            this.values.close();
+        } finally {
+            this.index.close();
+        }
+    }
+
+    private void open() throws IOException {
+        this.index = new MappedSegmentFile(indexPath(this.directory, this.name), this.segmentSize);
+        this.values = new MappedSegmentFile(valuePath(this.directory, this.name), this.segmentSize);
+        if (isCompatible()) {
+            load();
+        } else {
+            if (this.index.getInt(H_MAGIC) != 0) {
+                logger.warn("Index {} is incompatible with the current configuration, dropping it", this.name);
+            }
+            initialize();
+        }
+    }
+
+    private boolean isCompatible() {
+        return this.index.getInt(H_MAGIC) == INDEX_MAGIC &&
+                this.index.getInt(H_VERSION) == FORMAT_VERSION &&
+                this.index.getInt(H_BLOCK_SIZE) == this.blockSize &&
+                this.index.getLong(H_MAX_VALUE) == TDTree.maxValue &&
+                this.values.getInt(V_MAGIC) == VALUE_MAGIC &&
+                this.values.getInt(V_VERSION) == FORMAT_VERSION;
+    }
+
+    /**
+     * Reset both files to an empty index, with a single root leaf
+     */
+    private void initialize() {
+        this.index.putInt(H_MAGIC, INDEX_MAGIC);
+        this.index.putInt(H_VERSION, FORMAT_VERSION);
+        this.index.putInt(H_BLOCK_SIZE, this.blockSize);
+        this.index.putLong(H_MAX_VALUE, TDTree.maxValue);
+        this.values.putInt(V_MAGIC, VALUE_MAGIC);
+        this.values.putInt(V_VERSION, FORMAT_VERSION);
+        setBlockCount(0);
+        setValueEnd(VALUE_HEADER_SIZE);
+        setDeadBytes(0);
+        this.leafDirectory.clear();
+        this.freeBlocks.clear();
+        this.strings.clear();
+        this.cacheSize.set(0);
+        this.leafDirectory.put(1, allocateBlock(1, 7, 0, TDTree.maxValue, FLAG_LIVE));
+        force();
+    }
+
+    /**
+     * Recover the leaf directory from the block headers
+     */
+    private void load() {
+//        Only trust as much of the files as were actually written
+        this.blockCount = Math.min(this.index.getLong(H_BLOCK_COUNT), (this.index.capacity() - INDEX_HEADER_SIZE) / this.blockStride);
+        this.valueEnd = Math.min(this.values.getLong(V_END), this.values.capacity());
+        this.deadBytes = this.values.getLong(V_DEAD);
+        this.leafDirectory.clear();
+        this.freeBlocks.clear();
+        this.strings.load();
+        for (long block = 0; block < this.blockCount; block++) {
+            final long offset = blockOffset(block);
+            final int flags = this.index.getInt(offset + B_FLAGS);
+            if ((flags & FLAG_LIVE) == 0) {
+                this.freeBlocks.add(block);
+            } else if ((flags & FLAG_OVERFLOW) == 0) {
+                final int leafID = this.index.getInt(offset + B_LEAF_ID);
+//                If we crashed while converting a leaf into a point leaf, we might have two copies of the leaf, so keep the larger one
+                if (this.leafDirectory.containsKey(leafID)) {
+                    final long existing = this.leafDirectory.get(leafID);
+                    if (chainCount(existing) >= chainCount(block)) {
+                        retireChain(block);
+                        continue;
+                    }
+                    retireChain(existing);
+                }
+                this.leafDirectory.put(leafID, block);
+            }
+        }
+//        If we crashed in the middle of a split, the parent leaf will still be live, and it has all the records, so drop any children
+        for (int leafID : this.leafDirectory.keySet().toIntArray()) {
+            for (int ancestor = leafID >> 1; ancestor > 0; ancestor >>= 1) {
+                if (this.leafDirectory.containsKey(ancestor)) {
+                    logger.warn("Leaf {} was not fully split, removing child {}", Integer.toBinaryString(ancestor), Integer.toBinaryString(leafID));
+                    retireChain(this.leafDirectory.remove(leafID));
+                    break;
+                }
+            }
+        }
+        long records = 0;
+        for (long head : this.leafDirectory.values().toLongArray()) {
+            final int dropped = dropInvalidRecords(head);
+            if (dropped > 0) {
+                logger.warn("Dropped {} records from leaf {} which were not written to disk", dropped, Integer.toBinaryString(this.index.getInt(blockOffset(head) + B_LEAF_ID)));
+            }
+            records += chainCount(head);
+        }
+        this.cacheSize.set(records);
+        logger.info("Loaded index {} with {} leaves and {} records", this.name, this.leafDirectory.size(), records);
+    }
+
+    /**
+     * Insert a record into the index
+     *
+     * @param objectID     - Hashed objectID
+     * @param startTime    - Valid from time
+     * @param endTime      - Valid to time
+     * @param encodedValue - Encoded value
+     */
+    private void insertRecord(long objectID, long startTime, long endTime, byte[] encodedValue) {
+        final int leafID = findLeaf(startTime, endTime);
+        final long head = this.leafDirectory.get(leafID);
+        if (chainContainsKey(head, objectID, startTime, endTime)) {
+            return;
+        }
+        final long valueOffset = appendValue(encodedValue);
+        final long headOffset = blockOffset(head);
+        final int count = this.index.getInt(headOffset + B_COUNT);
+        if ((this.index.getInt(headOffset + B_FLAGS) & FLAG_POINT) != 0) {
+            appendToChain(head, objectID, startTime, endTime, valueOffset);
+        } else if (count < this.blockSize) {
+            writeRecord(head, count, objectID, startTime, endTime, valueOffset);
+            this.index.putInt(headOffset + B_COUNT, count + 1);
+        } else {
+            splitLeaf(head, objectID, startTime, endTime, valueOffset);
+        }
+        this.cacheSize.incrementAndGet();
+    }
+
+    /**
+     * Split a full leaf, along with the new record, into a new set of leaves.
+     * The new leaves are fully written before the old leaf is retired.
+     */
+    private void splitLeaf(long head, long objectID, long startTime, long endTime, long valueOffset) {
+        final long headOffset = blockOffset(head);
+        final int leafID = this.index.getInt(headOffset + B_LEAF_ID);
+        final int count = this.index.getInt(headOffset + B_COUNT);
+        final long[][] records = new long[4][count + 1];
+        for (int i = 0; i < count; i++) {
+            final long record = recordOffset(head, i);
+            records[0][i] = this.index.getLong(record + R_OBJECT_ID);
+            records[1][i] = this.index.getLong(record + R_START);
+            records[2][i] = this.index.getLong(record + R_END);
+            records[3][i] = this.index.getLong(record + R_VALUE);
+        }
+        records[0][count] = objectID;
+        records[1][count] = startTime;
+        records[2][count] = endTime;
+        records[3][count] = valueOffset;
+
+        this.leafDirectory.remove(leafID);
+        writeSubtree(leafID,
+                this.index.getInt(headOffset + B_DIRECTION),
+                this.index.getDouble(headOffset + B_START),
+                this.index.getDouble(headOffset + B_END),
+                records,
+                count + 1);
+//        Make sure the new leaves are on disk before the old one is retired
+        force();
+        retireChain(head);
+    }
+
+    private void writeSubtree(int leafID, int direction, double start, double end, long[][] records, int recordCount) {
+        if (recordCount <= this.blockSize) {
+            final long block = allocateBlock(leafID, direction, start, end, FLAG_LIVE);
+            for (int i = 0; i < recordCount; i++) {
+                writeRecord(block, i, records[0][i], records[1][i], records[2][i], records[3][i]);
+            }
+            this.index.putInt(blockOffset(block) + B_COUNT, recordCount);
+            this.leafDirectory.put(leafID, block);
+            return;
+        }
+        final int idLength = getIDLength(leafID);
+        final TriangleApex childApex = calculateChildApex(idLength + 1, direction, start, end);
+        final ChildDirection childDirection = calculateChildDirection(direction);
+        final double[] lowerVerticies = getTriangleVerticies(adjustedLength[idLength + 1], childDirection.lowerChild, childApex.start, childApex.end);
+//        If one of the children is a point, or we're too deep, turn this into a point leaf and move on
+        if (triangleIsPoint(lowerVerticies) || idLength == MAX_ID_LENGTH) {
+            final long block = allocateBlock(leafID, direction, start, end, FLAG_LIVE | FLAG_POINT);
+            for (int i = 0; i < recordCount; i++) {
+                appendToChain(block, records[0][i], records[1][i], records[2][i], records[3][i]);
+            }
+            this.leafDirectory.put(leafID, block);
+            return;
+        }
+        final long[][] lowerRecords = new long[4][recordCount];
+        final long[][] higherRecords = new long[4][recordCount];
+        int lowerCount = 0;
+        int higherCount = 0;
+        for (int i = 0; i < recordCount; i++) {
+            if (pointInTriangle(records[1][i], records[2][i], lowerVerticies)) {
+                copyRecord(records, i, lowerRecords, lowerCount++);
+            } else {
+                copyRecord(records, i, higherRecords, higherCount++);
+            }
+        }
+        logger.trace("Splitting {}", Integer.toBinaryString(leafID));
+        writeSubtree(leafID << 1, childDirection.lowerChild, childApex.start, childApex.end, lowerRecords, lowerCount);
+        writeSubtree((leafID << 1) | 1, childDirection.higherChild, childApex.start, childApex.end, higherRecords, higherCount);
+    }
+
+    /**
+     * Walk down from the root to find the leaf which would contain the given interval
+     *
+     * @param startTime - Valid from time
+     * @param endTime   - Valid to time
+     * @return - leafID
+     */
+    private int findLeaf(long startTime, long endTime) {
+        int leafID = 1;
+        int direction = 7;
+        double start = 0;
+        double end = TDTree.maxValue;
+        while (!this.leafDirectory.containsKey(leafID)) {
+            final int idLength = getIDLength(leafID);
+            final TriangleApex childApex = calculateChildApex(idLength + 1, direction, start, end);
+            final ChildDirection childDirection = calculateChildDirection(direction);
+            final double[] lowerVerticies = getTriangleVerticies(adjustedLength[idLength + 1], childDirection.lowerChild, childApex.start, childApex.end);
+            if (pointInTriangle(startTime, endTime, lowerVerticies)) {
+                leafID = leafID << 1;
+                direction = childDirection.lowerChild;
+            } else {
+                leafID = (leafID << 1) | 1;
+                direction = childDirection.higherChild;
+            }
+            start = childApex.start;
+            end = childApex.end;
+        }
+        return leafID;
+    }
+
+    /**
+     * Find the record matching the objectID which is valid at the given time
+     *
+     * @param objectID - Hashed objectID
+     * @param atTime   - Time which the record must be valid
+     * @return - Offset of the record in the index file, or {@link MappedTDTree#NO_BLOCK} if no record matches
+     */
+    private long findRecord(long objectID, long atTime) {
+        return findRecord(1, 7, 0, TDTree.maxValue, objectID, atTime);
+    }
+
+    private long findRecord(int leafID, int direction, double start, double end, long objectID, long atTime) {
+        if (this.leafDirectory.containsKey(leafID)) {
+            for (long block = this.leafDirectory.get(leafID); block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+                final int count = this.index.getInt(blockOffset(block) + B_COUNT);
+                for (int i = 0; i < count; i++) {
+                    final long record = recordOffset(block, i);
+                    if (matches(record, objectID, atTime)) {
+                        return record;
+                    }
+                }
+            }
+            return NO_BLOCK;
+        }
+//        Otherwise, it's an internal node, so visit any children which might contain the record
+        final int idLength = getIDLength(leafID);
+        final TriangleApex childApex = calculateChildApex(idLength + 1, direction, start, end);
+        final ChildDirection childDirection = calculateChildDirection(direction);
+        final double childLength = adjustedLength[idLength + 1];
+        if (mayContain(getTriangleVerticies(childLength, childDirection.lowerChild, childApex.start, childApex.end), atTime)) {
+            final long record = findRecord(leafID << 1, childDirection.lowerChild, childApex.start, childApex.end, objectID, atTime);
+            if (record != NO_BLOCK) {
+                return record;
+            }
+        }
+        if (mayContain(getTriangleVerticies(childLength, childDirection.higherChild, childApex.start, childApex.end), atTime)) {
+            return findRecord((leafID << 1) | 1, childDirection.higherChild, childApex.start, childApex.end, objectID, atTime);
+        }
+        return NO_BLOCK;
+    }
+
+    private long findRecordWithValue(long head, byte[] encodedValue) {
+        for (long block = head; block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+            final int count = this.index.getInt(blockOffset(block) + B_COUNT);
+            for (int i = 0; i < count; i++) {
+                final long record = recordOffset(block, i);
+                final long valueOffset = this.index.getLong(record + R_VALUE);
+                if (this.values.getInt(valueOffset) == encodedValue.length && Arrays.equals(readValueBytes(valueOffset), encodedValue)) {
+                    return record;
+                }
+            }
+        }
+        return NO_BLOCK;
+    }
+
+    /**
+     * Remove the record from the leaf, by moving the last record in the leaf chain into its slot.
+     * If this empties an overflow block, the block is unlinked from the chain and retired
+     *
+     * @param head   - Head block of the leaf chain
+     * @param record - Offset of record to remove
+     */
+    private void deleteRecord(long head, long record) {
+        markDead(this.index.getLong(record + R_VALUE));
+        removeRecord(head, record);
+    }
+
+    /**
+     * Remove the record from the leaf chain, without marking its value as dead
+     *
+     * @param head   - Head block of the leaf chain
+     * @param record - Offset of record to remove
+     */
+    private void removeRecord(long head, long record) {
+        long previous = NO_BLOCK;
+        long last = head;
+        long next;
+        while ((next = this.index.getLong(blockOffset(last) + B_NEXT)) != NO_BLOCK) {
+            previous = last;
+            last = next;
+        }
+        final long lastOffset = blockOffset(last);
+        final int lastCount = this.index.getInt(lastOffset + B_COUNT);
+        final long lastRecord = recordOffset(last, lastCount - 1);
+        if (lastRecord != record) {
+            writeRecord(record,
+                    this.index.getLong(lastRecord + R_OBJECT_ID),
+                    this.index.getLong(lastRecord + R_START),
+                    this.index.getLong(lastRecord + R_END),
+                    this.index.getLong(lastRecord + R_VALUE));
+        }
+        this.index.putInt(lastOffset + B_COUNT, lastCount - 1);
+        if (lastCount == 1 && previous != NO_BLOCK) {
+            this.index.putLong(blockOffset(previous) + B_NEXT, NO_BLOCK);
+            retireChain(last);
+        }
+        this.cacheSize.decrementAndGet();
+    }
+
+    private void appendToChain(long head, long objectID, long startTime, long endTime, long valueOffset) {
+        long last = head;
+        long next;
+        while ((next = this.index.getLong(blockOffset(last) + B_NEXT)) != NO_BLOCK) {
+            last = next;
+        }
+        long lastOffset = blockOffset(last);
+        int count = this.index.getInt(lastOffset + B_COUNT);
+        if (count == this.blockSize) {
+            final long headOffset = blockOffset(head);
+            final long overflow = allocateBlock(this.index.getInt(headOffset + B_LEAF_ID),
+                    this.index.getInt(headOffset + B_DIRECTION),
+                    this.index.getDouble(headOffset + B_START),
+                    this.index.getDouble(headOffset + B_END),
+                    FLAG_LIVE | FLAG_POINT | FLAG_OVERFLOW);
+            this.index.putLong(lastOffset + B_NEXT, overflow);
+            last = overflow;
+            lastOffset = blockOffset(overflow);
+            count = 0;
+        }
+        writeRecord(last, count, objectID, startTime, endTime, valueOffset);
+        this.index.putInt(lastOffset + B_COUNT, count + 1);
+    }
+
+    /**
+     * Remove any records whose values are not (fully) contained in the value file, which happens if we crash before the value is flushed to disk
+     *
+     * @param head - Head block of the leaf chain
+     * @return - number of records dropped
+     */
+    private int dropInvalidRecords(long head) {
+        int dropped = 0;
+        long record;
+        while ((record = findInvalidRecord(head)) != NO_BLOCK) {
+            removeRecord(head, record);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    private long findInvalidRecord(long head) {
+        for (long block = head; block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+            final int count = this.index.getInt(blockOffset(block) + B_COUNT);
+            for (int i = 0; i < count; i++) {
+                final long record = recordOffset(block, i);
+                if (!isValidValue(this.index.getLong(record + R_VALUE))) {
+                    return record;
+                }
+            }
+        }
+        return NO_BLOCK;
+    }
+
+    private boolean isValidValue(long valueOffset) {
+        if (valueOffset < VALUE_HEADER_SIZE || valueOffset >= this.valueEnd || (valueOffset & 7) != 0) {
+            return false;
+        }
+        final int length = this.values.getInt(valueOffset);
+        return length >= 0 && valueOffset + Integer.BYTES + length <= this.valueEnd;
+    }
+
+    private boolean chainContainsKey(long head, long objectID, long startTime, long endTime) {
+        for (long block = head; block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+            final int count = this.index.getInt(blockOffset(block) + B_COUNT);
+            for (int i = 0; i < count; i++) {
+                final long record = recordOffset(block, i);
+                if (this.index.getLong(record + R_OBJECT_ID) == objectID &&
+                        this.index.getLong(record + R_START) == startTime &&
+                        this.index.getLong(record + R_END) == endTime) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int chainCount(long head) {
+        int count = 0;
+        for (long block = head; block != NO_BLOCK; block = this.index.getLong(blockOffset(block) + B_NEXT)) {
+            count += this.index.getInt(blockOffset(block) + B_COUNT);
+        }
+        return count;
+    }
+
+    private long allocateBlock(int leafID, int direction, double start, double end, int flags) {
+        final long block;
+        if (this.freeBlocks.isEmpty()) {
+            block = this.blockCount;
+            this.index.ensureCapacity(blockOffset(block + 1));
+            setBlockCount(this.blockCount + 1);
+        } else {
+            block = this.freeBlocks.popLong();
+        }
+        final long offset = blockOffset(block);
+        this.index.putInt(offset + B_LEAF_ID, leafID);
+        this.index.putInt(offset + B_DIRECTION, direction);
+        this.index.putDouble(offset + B_START, start);
+        this.index.putDouble(offset + B_END, end);
+        this.index.putInt(offset + B_COUNT, 0);
+        this.index.putLong(offset + B_NEXT, NO_BLOCK);
+        this.index.putInt(offset + B_FLAGS, flags);
+        return block;
+    }
+
+    private void retireChain(long head) {
+        long block = head;
+        while (block != NO_BLOCK) {
+            final long offset = blockOffset(block);
+            final long next = this.index.getLong(offset + B_NEXT);
+            this.index.putInt(offset + B_FLAGS, 0);
+            this.index.putLong(offset + B_NEXT, NO_BLOCK);
+            this.freeBlocks.add(block);
+            block = next;
+        }
+    }
+
+    private boolean matches(long record, long objectID, long atTime) {
+        if (this.index.getLong(record + R_OBJECT_ID) != objectID) {
+            return false;
+        }
+        final long start = this.index.getLong(record + R_START);
+        final long end = this.index.getLong(record + R_END);
+        return (start <= atTime && end > atTime) || (start == end && start == atTime);
+    }
+
+    private void writeRecord(long block, int slot, long objectID, long startTime, long endTime, long valueOffset) {
+        writeRecord(recordOffset(block, slot), objectID, startTime, endTime, valueOffset);
+    }
+
+    private void writeRecord(long record, long objectID, long startTime, long endTime, long valueOffset) {
+        this.index.putLong(record + R_OBJECT_ID, objectID);
+        this.index.putLong(record + R_START, startTime);
+        this.index.putLong(record + R_END, endTime);
+        this.index.putLong(record + R_VALUE, valueOffset);
+    }
+
+    /**
+     * Append the encoded value to the value file, keeping the end of the file aligned, so the length prefix can be read directly
+     *
+     * @param encodedValue - bytes to append
+     * @return - Offset of the value
+     */
+    private long appendValue(byte[] encodedValue) {
+        final long offset = this.valueEnd;
+        this.values.ensureCapacity(offset + Integer.BYTES + encodedValue.length);
+        this.values.putInt(offset, encodedValue.length);
+        this.values.put(offset + Integer.BYTES, encodedValue);
+        setValueEnd(align(offset + Integer.BYTES + encodedValue.length));
+        return offset;
+    }
+
+    private byte[] encodeValue(Value value) {
+        return this.codec.encode(value, this.strings);
+    }
+
+    private Value readValue(long valueOffset) {
+        return this.codec.decode(readValueBytes(valueOffset), this.strings);
+    }
+
+    private byte[] readValueBytes(long valueOffset) {
+        final byte[] bytes = new byte[this.values.getInt(valueOffset)];
+        this.values.get(valueOffset + Integer.BYTES, bytes);
+        return bytes;
+    }
+
+    private void markDead(long valueOffset) {
+        setDeadBytes(this.deadBytes + align(Integer.BYTES + (long) this.values.getInt(valueOffset)));
+    }
+
+    private void setBlockCount(long blockCount) {
+        this.blockCount = blockCount;
+        this.index.putLong(H_BLOCK_COUNT, blockCount);
+    }
+
+    private void setValueEnd(long valueEnd) {
+        this.valueEnd = valueEnd;
+        this.values.putLong(V_END, valueEnd);
+    }
+
+    private void setDeadBytes(long deadBytes) {
+        this.deadBytes = deadBytes;
+        this.values.putLong(V_DEAD, deadBytes);
+    }
+
+    private long blockOffset(long block) {
+        return INDEX_HEADER_SIZE + (block * this.blockStride);
+    }
+
+    private long blockOf(long record) {
+        return (record - INDEX_HEADER_SIZE) / this.blockStride;
+    }
+
+    private long recordOffset(long block, int slot) {
+        return blockOffset(block) + BLOCK_HEADER_SIZE + ((long) slot * RECORD_SIZE);
+    }
+
+    private static void copyRecord(long[][] source, int sourceIdx, long[][] destination, int destinationIdx) {
+        for (int field = 0; field < source.length; field++) {
+            destination[field][destinationIdx] = source[field][sourceIdx];
+        }
+    }
+
+    /**
+     * Conservative check to determine if the triangle could contain an interval which is valid at the given time.
+     *
+     * @param verticies - Triangle verticies
+     * @param atTime    - Time to check
+     * @return - <code>false</code> if the triangle definitely does not contain any valid intervals
+     */
+    private static boolean mayContain(double[] verticies, long atTime) {
+        final double minStart = Math.min(verticies[0], Math.min(verticies[2], verticies[4]));
+        final double maxEnd = Math.max(verticies[1], Math.max(verticies[3], verticies[5]));
+        return minStart <= (atTime + 1) && maxEnd >= (atTime - 1);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Complete, or roll back, an interrupted swap of rebuilt index files.
+     * The swap moves the current files to the backup files, and then moves the rebuilt files in their place,
+     * so if both of the current files exist, the swap finished and the backups can be deleted, otherwise, the backups are restored.
+     * Any left over rebuild files are deleted.
+     *
+     * @param directory - {@link Path} of index directory
+     * @param name      - Name of the index
+     * @throws IOException - if the files cannot be moved or deleted
+     */
+    private static void recoverRebuild(Path directory, String name) throws IOException {
+        final String backupName = name + BACKUP_SUFFIX;
+        final Path backupIndex = indexPath(directory, backupName);
+        final Path backupValues = valuePath(directory, backupName);
+        if (Files.exists(backupIndex) || Files.exists(backupValues)) {
+            if (Files.exists(indexPath(directory, name)) && Files.exists(valuePath(directory, name))) {
+                logger.debug("Rebuild of {} was completed, removing backup", name);
+                deleteFiles(directory, backupName);
+            } else {
+                logger.warn("Rebuild of {} was not completed, restoring original index", name);
+                if (Files.exists(backupIndex)) {
+                    moveFile(backupIndex, indexPath(directory, name));
+                }
+                if (Files.exists(backupValues)) {
+                    moveFile(backupValues, valuePath(directory, name));
+                }
+            }
+        }
+        deleteFiles(directory, name + REBUILD_SUFFIX);
+    }
+
+    private static void moveFile(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteFiles(Path directory, String name) throws IOException {
+        Files.deleteIfExists(indexPath(directory, name));
+        Files.deleteIfExists(valuePath(directory, name));
+    }
+
+    private static void deleteFilesQuietly(Path directory, String name) {
+        try {
+            deleteFiles(directory, name);
+        } catch (IOException e) {
+            logger.warn("Unable to remove files for index {}", name, e);
+        }
+    }
+
+    static Path indexPath(Path directory, String name) {
+        return directory.resolve(name + ".index");
+    }
+
+    static Path valuePath(Path directory, String name) {
+        return directory.resolve(name + ".values");
+    }
+
+    /**
+     * {@link IndexValueCodec.StringTable} stored in the value file.
+     * Strings are appended just like values, but with a negative length prefix, so they can be found again when the index is re-opened.
+     * References are the offset of the string in the value file.
+     */
+    private class ValueStringTable implements IndexValueCodec.StringTable {
+
+        private final Object2LongOpenHashMap<String> references = new Object2LongOpenHashMap<>();
+        private final Long2ObjectOpenHashMap<String> strings = new Long2ObjectOpenHashMap<>();
+
+        ValueStringTable() {
+            this.references.defaultReturnValue(NO_BLOCK);
+        }
+
+        @Override
+        public long intern(String value) {
+            long offset = this.references.getLong(value);
+            if (offset == NO_BLOCK) {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                offset = MappedTDTree.this.valueEnd;
+                values.ensureCapacity(offset + Integer.BYTES + bytes.length);
+                values.putInt(offset, ~bytes.length);
+                values.put(offset + Integer.BYTES, bytes);
+                setValueEnd(align(offset + Integer.BYTES + bytes.length));
+                this.references.put(value, offset);
+                this.strings.put(offset, value);
+            }
+            return offset;
+        }
+
+        @Override
+        public String lookup(long reference) {
+            final @Nullable String value = this.strings.get(reference);
+            if (value == null) {
+                throw new IllegalArgumentException(String.format("No string at %d in index %s", reference, name));
+            }
+            return value;
+        }
+
+        /**
+         * Walk the value file, and load all the strings
+         */
+        void load() {
+            clear();
+            long offset = VALUE_HEADER_SIZE;
+            while (offset + Integer.BYTES <= MappedTDTree.this.valueEnd) {
+                final int header = values.getInt(offset);
+                final int length = header < 0 ? ~header : header;
+                if (offset + Integer.BYTES + length > MappedTDTree.this.valueEnd) {
+                    break;
+                }
+                if (header < 0) {
+                    final byte[] bytes = new byte[length];
+                    values.get(offset + Integer.BYTES, bytes);
+                    final String value = new String(bytes, StandardCharsets.UTF_8);
+                    this.references.put(value, offset);
+                    this.strings.put(offset, value);
+                }
+                offset = align(offset + Integer.BYTES + length);
+            }
+        }
+
+        void clear() {
+            this.references.clear();
+            this.strings.clear();
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.nickrobison.trestle.reasoner.caching.tdtree;
 
-import com.nickrobison.tuple.FastTuple;
-import com.nickrobison.tuple.codegen.TupleExpressionGenerator;
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
@@ -10,10 +11,10 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -21,7 +22,7 @@ import java.util.stream.Collectors;
  */
 public class PointLeaf<Value> extends LeafNode<Value> {
     private static final Logger logger = LoggerFactory.getLogger(PointLeaf.class);
-    private final Map<LeafKeySchema, Value> values = new Object2ObjectOpenHashMap<>(100, .7f);
+    private final Object2ObjectOpenHashMap<LeafKeySchema, Value> values = new Object2ObjectOpenHashMap<>(100, .7f);
     private int records = 0;
 
     @SuppressWarnings({"method.invocation.invalid"})
@@ -56,20 +57,9 @@ public class PointLeaf<Value> extends LeafNode<Value> {
     }
 
     @Override
-    @Nullable Value getValue(String objectID, long atTime) {
-        final TupleExpressionGenerator.BooleanTupleExpression eval = buildFindExpression(objectID, atTime);
-        return getValue(eval);
-    }
-
-    @Override
-    @SuppressWarnings({"type.argument.incompatible", "assignment.type.incompatible"})
-    @Nullable Value getValue(TupleExpressionGenerator.BooleanTupleExpression expression) {
-        final Optional<Value> value = this.values.entrySet()
-                .stream()
-                .filter(entry -> expression.evaluate((FastTuple) entry.getKey()))
-                .map(Map.Entry::getValue)
-                .findAny();
-        return value.orElse(null);
+    @Nullable Value getValue(long objectID, long atTime) {
+        final Object2ObjectMap.@Nullable Entry<LeafKeySchema, Value> entry = findEntry(objectID, atTime);
+        return entry == null ? null : entry.getValue();
     }
 
     @Override
@@ -87,20 +77,10 @@ public class PointLeaf<Value> extends LeafNode<Value> {
     }
 
     @Override
-    boolean delete(String objectID, long atTime) {
-        final TupleExpressionGenerator.BooleanTupleExpression eval = buildFindExpression(objectID, atTime);
-        return delete(eval);
-    }
-
-    @Override
-    boolean delete(TupleExpressionGenerator.BooleanTupleExpression expression) {
-        final Optional<LeafKeySchema> matchingKey = this.values.entrySet()
-                .stream()
-                .filter(entry -> expression.evaluate((FastTuple) entry.getKey()))
-                .map(Map.Entry::getKey)
-                .findAny();
-        if (matchingKey.isPresent()) {
-            this.values.remove(matchingKey.get());
+    boolean delete(long objectID, long atTime) {
+        final Object2ObjectMap.@Nullable Entry<LeafKeySchema, Value> entry = findEntry(objectID, atTime);
+        if (entry != null) {
+            this.values.remove(entry.getKey());
             this.records--;
             return true;
         }
@@ -133,11 +113,42 @@ public class PointLeaf<Value> extends LeafNode<Value> {
         return new HashMap<>(this.values);
     }
 
+    @Override
+    void scan(TemporalScan scan, Collection<IndexRecord<Value>> results) {
+        final ObjectIterator<Object2ObjectMap.Entry<LeafKeySchema, Value>> iterator = this.values.object2ObjectEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            final Object2ObjectMap.Entry<LeafKeySchema, Value> entry = iterator.next();
+            final LeafKeySchema key = entry.getKey();
+            if (scan.matches(key.objectID(), key.start(), key.end())) {
+                results.add(new IndexRecord<>(key.objectID(), key.start(), key.end(), entry.getValue()));
+            }
+        }
+    }
+
     @Override
     double calculateFragmentation() {
         return 0;
     }
 
+    /**
+     * Find the entry which matches the given objectID and is valid at the specified time
+     * Uses the fastutil fast iterator, which re-uses a single entry, rather than allocating one per record
+     *
+     * @param objectID - Hashed objectID to match
+     * @param atTime   - Time which the record must be valid
+     * @return - matching entry, or null if no records match. Must be used before the map is modified
+     */
+    private Object2ObjectMap.@Nullable Entry<LeafKeySchema, Value> findEntry(long objectID, long atTime) {
+        final ObjectIterator<Object2ObjectMap.Entry<LeafKeySchema, Value>> iterator = this.values.object2ObjectEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            final Object2ObjectMap.Entry<LeafKeySchema, Value> entry = iterator.next();
+            if (matches(entry.getKey(), objectID, atTime)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return "PointLeaf{" +
@@ -0,0 +1,56 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link Iterator} over the results of a {@link TemporalScan}, which scans a single leaf at a time, as results are consumed.
+ *
+ * @param <Value> - Generic type of Index value
+ */
+@SuppressWarnings({"squid:S00119"})
+final class ScanIterator<Value> implements Iterator<IndexRecord<Value>> {
+
+    /**
+     * Scan the next candidate leaf
+     *
+     * @param <Value> - Generic type of Index value
+     */
+    @FunctionalInterface
+    interface LeafScanner<Value> {
+        /**
+         * Add the matching records from the next candidate leaf to the buffer
+         *
+         * @param buffer - {@link ArrayDeque} to add matching records to
+         * @return - <code>false</code> if there are no more leaves to scan
+         */
+        boolean scanNextLeaf(ArrayDeque<IndexRecord<Value>> buffer);
+    }
+
+    private final ArrayDeque<IndexRecord<Value>> buffer = new ArrayDeque<>();
+    private final LeafScanner<Value> scanner;
+    private boolean exhausted = false;
+
+    ScanIterator(LeafScanner<Value> scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.buffer.isEmpty() && !this.exhausted) {
+            this.exhausted = !this.scanner.scanNextLeaf(this.buffer);
+        }
+        return !this.buffer.isEmpty();
+    }
+
+    @Override
+    public IndexRecord<Value> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.buffer.poll();
+    }
+}
@@ -1,7 +1,6 @@
 package com.nickrobison.trestle.reasoner.caching.tdtree;
 
-import com.nickrobison.tuple.FastTuple;
-import com.nickrobison.tuple.codegen.TupleExpressionGenerator;
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
 import org.apache.commons.lang3.ArrayUtils;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -10,10 +9,12 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import static com.nickrobison.trestle.reasoner.caching.tdtree.TDTreeHelpers.getIDLength;
+import static com.nickrobison.trestle.reasoner.caching.tdtree.TDTreeHelpers.longHashCode;
 
 /**
  * Created by nrobison on 2/9/17.
@@ -57,20 +58,9 @@ class SplittableLeaf<Value> extends LeafNode<Value> {
     }
 
     @Override
-    @Nullable Value getValue(String objectID, long atTime) {
-        final TupleExpressionGenerator.BooleanTupleExpression eval = buildFindExpression(objectID, atTime);
-        return getValue(eval);
-    }
-
-    @Override
-    @Nullable Value getValue(TupleExpressionGenerator.BooleanTupleExpression expression) {
-        for (int i = 0; i < this.records; i++) {
-            final LeafKeySchema key = keys[i];
-            if (key != null && expression.evaluate((FastTuple) key)) {
-                return values[i];
-            }
-        }
-        return null;
+    @Nullable Value getValue(long objectID, long atTime) {
+        final int idx = indexOf(objectID, atTime);
+        return idx < 0 ? null : values[idx];
     }
 
     @Override
@@ -171,23 +161,15 @@ class SplittableLeaf<Value> extends LeafNode<Value> {
     }
 
     @Override
-    boolean delete(String objectID, long atTime) {
-        final TupleExpressionGenerator.BooleanTupleExpression eval = buildFindExpression(objectID, atTime);
-        return delete(eval);
-    }
-
-    @Override
-    boolean delete(TupleExpressionGenerator.BooleanTupleExpression expression) {
-        for (int i = 0; i < this.records; i++) {
-            final LeafKeySchema key = keys[i];
-            if (key != null && expression.evaluate((FastTuple) key)) {
-                keys[i] = null;
-                values[i] = null;
-                return true;
-//                    Do we need to collapse?
-            }
+    boolean delete(long objectID, long atTime) {
+        final int idx = indexOf(objectID, atTime);
+        if (idx < 0) {
+            return false;
         }
-        return false;
+        keys[idx] = null;
+        values[idx] = null;
+//        Do we need to collapse?
+        return true;
     }
 
     @Override
@@ -205,15 +187,12 @@ class SplittableLeaf<Value> extends LeafNode<Value> {
 
     @Override
     boolean update(String objectID, long atTime, @NonNull Value value) {
-        final TupleExpressionGenerator.BooleanTupleExpression eval = buildFindExpression(objectID, atTime);
-        for (int i = 0; i < this.records; i++) {
-            final LeafKeySchema key = keys[i];
-            if (key != null && eval.evaluate((FastTuple) key)) {
-                values[i] = value;
-                return true;
-            }
+        final int idx = indexOf(longHashCode(objectID), atTime);
+        if (idx < 0) {
+            return false;
         }
-        return false;
+        values[idx] = value;
+        return true;
     }
 
     @Override
@@ -228,6 +207,17 @@ class SplittableLeaf<Value> extends LeafNode<Value> {
         return leafRecords;
     }
 
+    @Override
+    void scan(TemporalScan scan, Collection<IndexRecord<Value>> results) {
+        for (int i = 0; i < this.records; i++) {
+            final LeafKeySchema key = keys[i];
+            final @Nullable Value value = values[i];
+            if (key != null && value != null && scan.matches(key.objectID(), key.start(), key.end())) {
+                results.add(new IndexRecord<>(key.objectID(), key.start(), key.end(), value));
+            }
+        }
+    }
+
     @Override
     double calculateFragmentation() {
         double nullRecords = 0;
@@ -239,6 +229,23 @@ class SplittableLeaf<Value> extends LeafNode<Value> {
         return nullRecords / (double) this.records;
     }
 
+    /**
+     * Find the index of the record which matches the given objectID and is valid at the specified time
+     *
+     * @param objectID - Hashed objectID to match
+     * @param atTime   - Time which the record must be valid
+     * @return - index of matching record, -1 if no records match
+     */
+    private int indexOf(long objectID, long atTime) {
+        for (int i = 0; i < this.records; i++) {
+            final LeafKeySchema key = keys[i];
+            if (key != null && matches(key, objectID, atTime)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @SuppressWarnings({"argument.type.incompatible"})
     private @Nullable LeafSplit insertValueIntoArray(LeafKeySchema key, Value value) {
         if (!ArrayUtils.contains(keys, key)) {
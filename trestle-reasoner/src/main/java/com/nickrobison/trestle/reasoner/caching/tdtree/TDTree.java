@@ -5,8 +5,9 @@ import com.codahale.metrics.annotation.Timed;
 import com.nickrobison.trestle.reasoner.annotations.metrics.CounterIncrement;
 import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
 import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
+import com.nickrobison.trestle.reasoner.caching.IndexSnapshot;
 import com.nickrobison.tuple.TupleSchema;
-import com.nickrobison.tuple.codegen.TupleExpressionGenerator;
 import org.apache.commons.math3.util.FastMath;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -17,8 +18,8 @@ import javax.annotation.concurrent.NotThreadSafe;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
@@ -115,44 +116,73 @@ public class TDTree<Value> implements ITrestleIndex<Value> {
 
     @Override
     @Timed(name = "td-tree.get-timer", absolute = true)
-    @SuppressWarnings("Duplicates")
     public @Nullable Value getValue(String objectID, long atTime) {
-
-        final List<LeafNode<Value>> candidateLeafs = findCandidateLeafs(atTime);
-        if (candidateLeafs.isEmpty()) {
-            return null;
-        }
-
-//        Build the find expression
-        final TupleExpressionGenerator.BooleanTupleExpression findExpression = LeafNode.buildFindExpression(objectID, atTime);
-        for (LeafNode node : candidateLeafs) {
-            //noinspection unchecked
-            @Nullable final Value value = (Value) node.getValue(findExpression);
+        final long hashedID = longHashCode(objectID);
+        for (int i = nextCandidateLeaf(0, atTime); i >= 0; i = nextCandidateLeaf(i + 1, atTime)) {
+            final LeafNode<Value> node = this.leafs.get(i);
+            @Nullable final Value value = node.getValue(hashedID, atTime);
             if (value != null) {
-                logger.trace("Returning value {} for {} @ {} from {}", value, objectID, atTime, node.getBinaryStringID());
                 return value;
             }
-            logger.trace(EMPTY_LEAF_VALUE, node.getBinaryStringID(), objectID, atTime);
+//            Guard the trace, as this is the cache read path and the binary ID is built eagerly
+            if (logger.isTraceEnabled()) {
+                logger.trace(EMPTY_LEAF_VALUE, node.getBinaryStringID(), objectID, atTime);
+            }
         }
-        return null;
+        final @Nullable LeafNode<Value> soleLeaf = getUncheckedSoleLeaf(atTime);
+        return soleLeaf == null ? null : soleLeaf.getValue(hashedID, atTime);
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValues(String objectID, long startTime, long endTime) {
+        return scan(TemporalScan.overlapping(longHashCode(objectID), startTime, endTime));
+    }
+
+    @Override
+    public Iterator<IndexRecord<Value>> getValuesAt(long atTime) {
+        return scan(TemporalScan.validAt(atTime));
+    }
+
+    /**
+     * Lazily scan the leaves which might contain records matching the {@link TemporalScan}
+     * Like the point lookups, if there's only a single populated leaf, it's always scanned.
+     *
+     * @param scan - {@link TemporalScan} to perform
+     * @return - {@link Iterator} of matching {@link IndexRecord}s
+     */
+    private Iterator<IndexRecord<Value>> scan(TemporalScan scan) {
+        final List<LeafNode<Value>> currentLeafs = this.leafs;
+        final boolean scanAll = currentLeafs.stream().filter(leaf -> leaf.getRecordCount() > 0).count() <= 1;
+        final int[] next = {0};
+        return new ScanIterator<>(buffer -> {
+            while (next[0] < currentLeafs.size()) {
+                final LeafNode<Value> leaf = currentLeafs.get(next[0]++);
+                if (leaf.getRecordCount() > 0 && (scanAll || leaf.mayIntersect(scan))) {
+                    leaf.scan(scan, buffer);
+                    return true;
+                }
+            }
+            return false;
+        });
     }
 
     @Override
     @Timed(name = "td-tree.delete-timer", absolute = true)
     public void deleteValue(String objectID, long atTime) {
-        final List<LeafNode<Value>> candidateLeafs = findCandidateLeafs(atTime);
-        if (candidateLeafs.isEmpty()) {
-            return;
-        }
-        final TupleExpressionGenerator.BooleanTupleExpression expression = LeafNode.buildFindExpression(objectID, atTime);
-        for (LeafNode node : candidateLeafs) {
-            if (node.delete(expression)) {
+        final long hashedID = longHashCode(objectID);
+        for (int i = nextCandidateLeaf(0, atTime); i >= 0; i = nextCandidateLeaf(i + 1, atTime)) {
+            final LeafNode<Value> node = this.leafs.get(i);
+            if (node.delete(hashedID, atTime)) {
                 logger.trace("Deleted {}@{} from {}", objectID, atTime, node.getBinaryStringID());
                 this.cacheSize.decrementAndGet();
                 return;
             }
             logger.trace(EMPTY_LEAF_VALUE, node.getBinaryStringID(), objectID, atTime);
         }
+        final @Nullable LeafNode<Value> soleLeaf = getUncheckedSoleLeaf(atTime);
+        if (soleLeaf != null && soleLeaf.delete(hashedID, atTime)) {
+            this.cacheSize.decrementAndGet();
+        }
     }
 
     @Override
@@ -170,15 +200,18 @@ public class TDTree<Value> implements ITrestleIndex<Value> {
 
     @Override
     public void updateValue(String objectID, long atTime, @NonNull Value value) {
-        final List<LeafNode<Value>> candidateLeafs = findCandidateLeafs(atTime);
-
-        for (LeafNode<Value> node : candidateLeafs) {
+        for (int i = nextCandidateLeaf(0, atTime); i >= 0; i = nextCandidateLeaf(i + 1, atTime)) {
+            final LeafNode<Value> node = this.leafs.get(i);
             if (node.update(objectID, atTime, value)) {
                 logger.trace("Updated {}@{} to {} from {}", objectID, atTime, value, node.getBinaryStringID());
                 return;
             }
             logger.trace(EMPTY_LEAF_VALUE, node.getBinaryStringID(), objectID, atTime);
         }
+        final @Nullable LeafNode<Value> soleLeaf = getUncheckedSoleLeaf(atTime);
+        if (soleLeaf != null) {
+            soleLeaf.update(objectID, atTime, value);
+        }
     }
 
     @Override
@@ -224,6 +257,37 @@ public class TDTree<Value> implements ITrestleIndex<Value> {
         logger.info("Rebuilding index took {} ms", Duration.between(start, end).toMillis());
     }
 
+    @Override
+    public IndexSnapshot<Value> snapshot() {
+        final IndexSnapshot<Value> snapshot = new IndexSnapshot<>((int) Math.min(this.cacheSize.get(), Integer.MAX_VALUE));
+        this.leafs
+                .stream()
+                .filter(leaf -> leaf.getRecordCount() > 0)
+                .map(LeafNode::dumpLeaf)
+                .forEach(values -> values.forEach((key, value) -> snapshot.add(key.objectID(), key.start(), key.end(), value)));
+        return snapshot;
+    }
+
+    @Override
+    @Timed(name = "td-tree.snapshot-build.timer", absolute = true)
+    public ITrestleIndex<Value> buildFromSnapshot(IndexSnapshot<Value> snapshot) {
+        final TDTree<Value> tree;
+        try {
+            tree = new TDTree<>(this.blockSize);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to create TD-Tree", e);
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            tree.insertValue(snapshot.getObjectID(i), snapshot.getStart(i), snapshot.getEnd(i), snapshot.getValue(i));
+        }
+        return tree;
+    }
+
+    @Override
+    public boolean supportsOnlineRebuild() {
+        return true;
+    }
+
     @Override
     public void dropIndex() {
         this.leafs = new ArrayList<>();
@@ -270,64 +334,46 @@ public class TDTree<Value> implements ITrestleIndex<Value> {
         return this.leafs.size();
     }
 
-    private List<LeafNode<Value>> findCandidateLeafs(long atTime) {
-        List<LeafNode<Value>> candidateLeafs = new ArrayList<>();
-        long[] rectApex = {atTime, atTime};
-        int length = 1;
-        final ArrayDeque<LeafNode<Value>> populatedLeafs = this.leafs.stream()
-                .filter(leaf -> leaf.getRecordCount() > 0)
-                .collect(Collectors.toCollection(ArrayDeque::new));
-//        If we only have 1 leaf (such as when things split down into a single leaf), return it and try to match against it
-//        We don't really need to go through all the
-//        This is a really gross hack, and I'm pretty sure it doesn't actually work. But whatever.
-        if (populatedLeafs.size() == 1) {
-            candidateLeafs.add(populatedLeafs.pop());
-            return candidateLeafs;
+    /**
+     * Find the next leaf, starting from the given index, which has records and whose triangle intersects the rectangle of keys valid at the given time.
+     * Leaves are walked in place, so lookups don't need to allocate an intermediate collection of candidates.
+     *
+     * @param from   - index to start searching from
+     * @param atTime - time which the keys must be valid
+     * @return - index of the next candidate leaf, or -1 if there are no more candidates
+     */
+    private int nextCandidateLeaf(int from, long atTime) {
+        for (int i = from; i < this.leafs.size(); i++) {
+            final LeafNode<Value> leaf = this.leafs.get(i);
+            if (leaf.getRecordCount() > 0 && leaf.intersectsTime(atTime, maxValue)) {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        while (!populatedLeafs.isEmpty()) {
-            final LeafNode<Value> first = populatedLeafs.pop();
-            final int firstID = first.getID();
-            int overlappingPrefix = firstID >> (getIDLength(firstID) - length);
-
-            final TDTreeHelpers.TriangleApex triangleApex = calculateTriangleApex(overlappingPrefix, 0, 7, 0., maxValue);
-            final int triangleDirection = calculateTriangleDirection(overlappingPrefix, 0, 7);
-//            Filter the triangle results
-            final int intersection = checkRectangleIntersection(triangleApex, triangleDirection, length, rectApex, maxValue);
-//                If the triangle is fully contained within the rectangle, add all the leafs with the same prefix
-            if (intersection == 1) {
-                final int currentSize = populatedLeafs.size();
-                for (int i = 0; i < currentSize; i++) {
-                    final LeafNode<Value> next = populatedLeafs.pop();
-                    if (idSimilarity(next.getID(), overlappingPrefix) == length) {
-                        candidateLeafs.add(next);
-                    } else {
-                        populatedLeafs.add(next);
-                    }
-                }
-                candidateLeafs.add(first);
-                length = 1;
-//                If it's fully disjoint from the rectangle, remove all sub-leafs
-            } else if (intersection == -2) {
-                final int currentSize = populatedLeafs.size();
-                for (int i = 0; i < currentSize; i++) {
-                    final LeafNode<Value> next = populatedLeafs.pop();
-                    if ((idSimilarity(next.getID(), overlappingPrefix) != length)) {
-                        populatedLeafs.add(next);
-                    }
+    /**
+     * If only a single leaf has records (such as when things split down into a single leaf), we always try to match against it,
+     * even if its triangle doesn't intersect the query rectangle.
+     *
+     * @param atTime - time which the keys must be valid
+     * @return - the single populated leaf, if it was not already a candidate, otherwise null
+     */
+    private @Nullable LeafNode<Value> getUncheckedSoleLeaf(long atTime) {
+        @Nullable LeafNode<Value> populated = null;
+        for (int i = 0; i < this.leafs.size(); i++) {
+            final LeafNode<Value> leaf = this.leafs.get(i);
+            if (leaf.getRecordCount() > 0) {
+                if (populated != null) {
+                    return null;
                 }
-                length = 1;
-//                If R matches F, add it to the candidate list
-            } else if (firstID == overlappingPrefix) {
-                candidateLeafs.add(first);
-                length = 1;
-            } else {
-                populatedLeafs.push(first);
-                length++;
+                populated = leaf;
             }
         }
-
-        return candidateLeafs;
+        if (populated == null || populated.intersectsTime(atTime, maxValue)) {
+            return null;
+        }
+        return populated;
     }
 
     /**
@@ -383,27 +429,6 @@ public class TDTree<Value> implements ITrestleIndex<Value> {
         return getMatchingLeaf(startTime, endTime, (leafID << 1) | 1, childDirection.higherChild, childApex);
     }
 
-    /**
-     * Determines how many bits match between two numbers
-     * Shifts the numbers so that they're the same length
-     *
-     * @param leafID  - LeafID to match
-     * @param matchID - matchID to match LeafID against
-     * @return - Number of common bits left->right
-     */
-    private static int idSimilarity(int leafID, int matchID) {
-        if (leafID == 0 || matchID == 0) {
-            return 0;
-        }
-        final int idLength = TDTreeHelpers.getIDLength(leafID);
-        final int matchLength = TDTreeHelpers.getIDLength(matchID);
-        if (matchLength > idLength) {
-            return idLength - Integer.bitCount(leafID ^ (matchID >> (matchLength - idLength)));
-        } else {
-            return matchLength - Integer.bitCount(matchID ^ (leafID >> (idLength - matchLength)));
-        }
-    }
-
     /**
      * Moves left->right through a string representation of two binary numbers, and counts the number of bits in common, until they start to diverge
      *
@@ -1,11 +1,10 @@
 package com.nickrobison.trestle.reasoner.caching.tdtree;
 
-import it.unimi.dsi.fastutil.doubles.Double2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import org.apache.commons.math3.util.FastMath;
 import org.apache.commons.math3.util.Precision;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by nrobison on 2/10/17.
@@ -16,8 +15,9 @@ public class TDTreeHelpers {
     static final double ROOTTWO = FastMath.sqrt(2);
     private static final double LOG_10_2 = FastMath.log10(2);
     static final double[] adjustedLength;
-    static final Map<Integer, Integer> computedIDLengths = new Int2IntOpenHashMap(2000, .7f);
-    static final Map<Double, Double> normalizedZeroes = new Double2DoubleOpenHashMap(2000, 0.7f);
+    //    These lookup tables are shared by every index instance, and readers hit them concurrently, so they need to be thread-safe
+    static final Map<Integer, Integer> computedIDLengths = new ConcurrentHashMap<>(2000, .7f);
+    static final Map<Double, Double> normalizedZeroes = new ConcurrentHashMap<>(2000, 0.7f);
     public static final String ILLEGAL_DIRECTION = "Cannot have a direction that is not 0-7";
 
     static {
@@ -56,9 +56,23 @@ public class TDTreeHelpers {
      */
     static int checkRectangleIntersection(TriangleApex apex, int direction, int leafLength, long[] rectangleApex, long maxValue) {
         final double[] triangleVerticies = getTriangleVerticies(adjustedLength[leafLength], direction, apex.start, apex.end);
-        final int apexInside = ((triangleVerticies[0] <= rectangleApex[0]) && (triangleVerticies[0] >= 0)) && ((triangleVerticies[1] >= rectangleApex[1]) && (triangleVerticies[1] <= maxValue)) ? 1 : 0;
-        final int p2Inside = ((triangleVerticies[2] <= rectangleApex[0]) && (triangleVerticies[2] >= 0)) && ((triangleVerticies[3] >= rectangleApex[1]) && (triangleVerticies[3] <= maxValue)) ? 1 : 0;
-        final int p3Inside = ((triangleVerticies[4] <= rectangleApex[0]) && (triangleVerticies[4] >= 0)) && ((triangleVerticies[5] >= rectangleApex[1]) && (triangleVerticies[5] <= maxValue)) ? 1 : 0;
+        return checkRectangleIntersection(triangleVerticies, rectangleApex[0], rectangleApex[1], maxValue);
+    }
+
+    /**
+     * Determines if the given triangle is fully contained in the rectangle denoted by the X/Y bottom-right corner
+     * Allocation free version of {@link #checkRectangleIntersection(TriangleApex, int, int, long[], long)}, for pre-computed triangle verticies
+     *
+     * @param triangleVerticies - Triangle verticies (x/y counter-clockwise points)
+     * @param rectangleX        - bottom-right X coordinate of rectangle
+     * @param rectangleY        - bottom-right Y coordinate of rectangle
+     * @param maxValue          - max value of the tree
+     * @return - <code>1</code> if the triangle is fully within the rectangle. <code>-2</code> if fully outside, and 0 to -1 if it partially intersects.
+     */
+    static int checkRectangleIntersection(double[] triangleVerticies, long rectangleX, long rectangleY, long maxValue) {
+        final int apexInside = ((triangleVerticies[0] <= rectangleX) && (triangleVerticies[0] >= 0)) && ((triangleVerticies[1] >= rectangleY) && (triangleVerticies[1] <= maxValue)) ? 1 : 0;
+        final int p2Inside = ((triangleVerticies[2] <= rectangleX) && (triangleVerticies[2] >= 0)) && ((triangleVerticies[3] >= rectangleY) && (triangleVerticies[3] <= maxValue)) ? 1 : 0;
+        final int p3Inside = ((triangleVerticies[4] <= rectangleX) && (triangleVerticies[4] >= 0)) && ((triangleVerticies[5] >= rectangleY) && (triangleVerticies[5] <= maxValue)) ? 1 : 0;
 
         return apexInside + p2Inside + p3Inside - 2;
     }
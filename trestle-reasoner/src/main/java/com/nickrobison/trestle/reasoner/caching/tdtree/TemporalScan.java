@@ -0,0 +1,90 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+/**
+ * Temporal range query against the TD-Tree indexes, which selects every key (optionally restricted to a single objectID) whose interval overlaps [startTime, endTime)
+ * Point keys (where start == end) overlap the range if the point falls within it.
+ * <p>
+ * In the TD-Tree space, the matching keys all fall within the rectangle bounded by start < endTime and end >= startTime,
+ * so leaves whose triangles fall outside of that rectangle can be skipped.
+ */
+final class TemporalScan {
+
+    private final boolean anyObject;
+    private final long objectID;
+    private final long startTime;
+    private final long endTime;
+
+    private TemporalScan(boolean anyObject, long objectID, long startTime, long endTime) {
+        this.anyObject = anyObject;
+        this.objectID = objectID;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Select all the keys for the given objectID which overlap [startTime, endTime)
+     *
+     * @param objectID  - Hashed objectID
+     * @param startTime - Start of range (inclusive)
+     * @param endTime   - End of range (exclusive)
+     * @return - {@link TemporalScan}
+     */
+    static TemporalScan overlapping(long objectID, long startTime, long endTime) {
+        if (endTime <= startTime) {
+            throw new IllegalArgumentException("End of scan range must be after the start");
+        }
+        return new TemporalScan(false, objectID, startTime, endTime);
+    }
+
+    /**
+     * Select all the keys, for any objectID, which are valid at the given time
+     * This is the same as a scan of [atTime, atTime + 1), which matches the semantics of the point lookups
+     *
+     * @param atTime - Time which the keys must be valid
+     * @return - {@link TemporalScan}
+     */
+    static TemporalScan validAt(long atTime) {
+        return new TemporalScan(true, 0, atTime, atTime + 1);
+    }
+
+    /**
+     * Does the given key match the scan?
+     *
+     * @param keyObjectID - Hashed objectID of key
+     * @param keyStart    - Start of key interval
+     * @param keyEnd      - End of key interval
+     * @return - <code>true</code> key matches the scan
+     */
+    boolean matches(long keyObjectID, long keyStart, long keyEnd) {
+        if (!this.anyObject && keyObjectID != this.objectID) {
+            return false;
+        }
+        if (keyStart >= this.endTime) {
+            return false;
+        }
+        return keyEnd > this.startTime || (keyStart == keyEnd && keyStart >= this.startTime);
+    }
+
+    /**
+     * Conservative check to determine if a triangle, with the given bounding box, could contain any matching keys
+     *
+     * @param minStart - Minimum start (X) coordinate of the triangle
+     * @param maxEnd   - Maximum end (Y) coordinate of the triangle
+     * @return - <code>false</code> if the triangle definitely does not contain any matching keys
+     */
+    boolean mayIntersect(double minStart, double maxEnd) {
+//        Pad by a millisecond on either side, to account for any rounding in the triangle verticies
+        return minStart <= this.endTime && maxEnd >= (this.startTime - 1);
+    }
+
+    /**
+     * Conservative check to determine if the given triangle could contain any matching keys
+     *
+     * @param verticies - Triangle verticies (x/y counter-clockwise points)
+     * @return - <code>false</code> if the triangle definitely does not contain any matching keys
+     */
+    boolean mayIntersect(double[] verticies) {
+        return mayIntersect(Math.min(verticies[0], Math.min(verticies[2], verticies[4])),
+                Math.max(verticies[1], Math.max(verticies[3], verticies[5])));
+    }
+}
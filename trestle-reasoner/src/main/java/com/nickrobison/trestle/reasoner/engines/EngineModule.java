@@ -1,6 +1,9 @@
 package com.nickrobison.trestle.reasoner.engines;
 
 import com.google.inject.PrivateModule;
+import com.google.inject.Provides;
+import com.nickrobison.metrician.Metrician;
+import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.reasoner.engines.collection.CollectionEngine;
 import com.nickrobison.trestle.reasoner.engines.collection.ITrestleCollectionEngine;
 import com.nickrobison.trestle.reasoner.engines.events.EventEngineImpl;
@@ -24,7 +27,9 @@ import com.nickrobison.trestle.reasoner.engines.spatial.containment.ContainmentE
 import com.nickrobison.trestle.reasoner.engines.spatial.containment.ContainmentEngineImpl;
 import com.nickrobison.trestle.reasoner.engines.spatial.equality.EqualityEngine;
 import com.nickrobison.trestle.reasoner.engines.spatial.equality.EqualityEngineImpl;
+import com.nickrobison.trestle.reasoner.engines.spatial.equality.union.SpatialEquivalenceGraph;
 import com.nickrobison.trestle.reasoner.engines.temporal.TemporalEngine;
+import com.typesafe.config.ConfigFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -116,5 +121,15 @@ public class EngineModule extends PrivateModule {
         expose(TrestleEventEngine.class);
         expose(TrestleMergeEngine.class);
         expose(RelationTracker.class);
+        expose(SpatialEquivalenceGraph.class);
+    }
+
+    @Provides
+    @Singleton
+    SpatialEquivalenceGraph provideEquivalenceGraph(ITrestleOntology ontology, Metrician metrician) {
+//        The graph is maintained from the split/merge events, so there's nothing to put in it if events are disabled
+        final boolean graphEnabled = this.eventEnabled && ConfigFactory.load().getBoolean("trestle.union.graph.enabled");
+        logger.debug("Spatial equivalence graph enabled: {}", graphEnabled);
+        return new SpatialEquivalenceGraph(ontology, metrician, graphEnabled);
     }
 }
@@ -5,6 +5,7 @@ import com.nickrobison.trestle.common.exceptions.TrestleMissingFactException;
 import com.nickrobison.trestle.reasoner.exceptions.TrestleMissingIndividualException;
 import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
 import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
 import com.nickrobison.trestle.reasoner.caching.TrestleCache;
 import com.nickrobison.trestle.reasoner.parser.ITypeConverter;
@@ -135,7 +136,7 @@ public class IndividualEngine {
                 .flatMapSingle(fact -> buildTrestleFact(fact.getObject().asOWLNamedIndividual(), trestleTransaction)).toList();
 
         // Get the relationships
-        String query = this.qb.buildIndividualRelationQuery(individual);
+        final QueryTemplate query = this.qb.buildIndividualRelationTemplate(individual);
         final Single<List<TrestleRelation>> relationSingle = ontology.executeSPARQLResults(query)
                 //                            We want the subProperties of Temporal/Spatial/Event relations. So we filter them out
                 .filter(result -> !result.unwrapIndividual("o").asOWLNamedIndividual().getIRI().equals(temporalRelationIRI))
@@ -149,7 +150,7 @@ public class IndividualEngine {
                         result.unwrapIndividual("p").toStringID())).toList();
 
         // Get the events
-        final String eQuery = this.qb.buildIndividualEventQuery(individual);
+        final QueryTemplate eQuery = this.qb.buildIndividualEventTemplate(individual);
         final Single<List<TrestleEvent>> eventSingle = this.ontology.executeSPARQLResults(eQuery)
                 .filter(result -> !result.unwrapIndividual("type").asOWLNamedIndividual().getIRI().equals(trestleEventIRI))
                 .map(result -> {
@@ -196,7 +197,7 @@ public class IndividualEngine {
         final Class<? extends Temporal> temporalType = TemporalParser.getTemporalType(clazz);
         logger.debug("Retrieving events for {}", individual);
         //        Build the query string
-        final String eventQuery = this.qb.buildIndividualEventQuery(individual);
+        final QueryTemplate eventQuery = this.qb.buildIndividualEventTemplate(individual);
         final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(transaction, false);
 
         return this.ontology.executeSPARQLResults(eventQuery)
@@ -54,6 +54,21 @@ public class EventEngineImpl implements TrestleEventEngine {
         }
     }
 
+    @Override
+    public List<OWLAxiom> buildEventAxioms(TrestleEventType event, OWLNamedIndividual individual, Temporal eventTemporal) {
+        if (event != TrestleEventType.CREATED && event != TrestleEventType.DESTROYED) {
+            throw new IllegalArgumentException("Only CREATED or DESTROYED events are supported");
+        }
+        final OWLNamedIndividual eventID = TrestleEventEngine.buildEventName(df, this.prefix, individual, event);
+        return Arrays.asList(df.getOWLClassAssertionAxiom(df.getOWLClass(trestleEventIRI), eventID),
+                df.getOWLDataPropertyAssertionAxiom(df.getOWLDataProperty(temporalExistsAtIRI),
+                        eventID,
+                        TemporalParser.temporalToLiteral(eventTemporal)),
+                df.getOWLObjectPropertyAssertionAxiom(df.getOWLObjectProperty(event.getIRI()),
+                        individual,
+                        eventID));
+    }
+
     @Override
     public Completable adjustObjectEvents(List<OWLDataPropertyAssertionAxiom> objectExistenceAxioms) {
         return Observable.fromIterable(objectExistenceAxioms)
@@ -2,12 +2,14 @@ package com.nickrobison.trestle.reasoner.engines.events;
 
 import com.nickrobison.trestle.types.events.TrestleEventType;
 import io.reactivex.rxjava3.core.Completable;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.temporal.Temporal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -23,6 +25,11 @@ public class EventEngineNoOp implements TrestleEventEngine {
         return Completable.complete();
     }
 
+    @Override
+    public List<OWLAxiom> buildEventAxioms(TrestleEventType event, OWLNamedIndividual individual, Temporal eventTemporal) {
+        return Collections.emptyList();
+    }
+
     @Override
     public Completable adjustObjectEvents(List<OWLDataPropertyAssertionAxiom> objectExistenceAxioms) {
         return Completable.complete();
@@ -4,6 +4,7 @@ import com.nickrobison.trestle.common.IRIUtils;
 import com.nickrobison.trestle.types.events.TrestleEventType;
 import io.reactivex.rxjava3.core.Completable;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
@@ -36,6 +37,17 @@ public interface TrestleEventEngine {
      */
     Completable addEvent(TrestleEventType event, OWLNamedIndividual individual, Temporal eventTemporal);
 
+    /**
+     * Build the {@link OWLAxiom}s required to add a Trestle_Event to the given individual, without writing them
+     * throws {@link IllegalArgumentException} if something other than {@link TrestleEventType#CREATED} or {@link TrestleEventType#DESTROYED} is passed
+     *
+     * @param event         - {@link TrestleEventType} to add
+     * @param individual    - {@link OWLNamedIndividual} to add event to
+     * @param eventTemporal - {@link Temporal} of when event occurred
+     * @return - {@link List} of {@link OWLAxiom} to write
+     */
+    List<OWLAxiom> buildEventAxioms(TrestleEventType event, OWLNamedIndividual individual, Temporal eventTemporal);
+
     /**
      * Adjusts an object's events based on modified temporals
      *
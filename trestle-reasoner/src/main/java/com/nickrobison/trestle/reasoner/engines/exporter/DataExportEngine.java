@@ -12,12 +12,13 @@ import com.nickrobison.trestle.transactions.TrestleTransaction;
 import com.nickrobison.trestle.types.temporal.IntervalTemporal;
 import com.nickrobison.trestle.types.temporal.PointTemporal;
 import com.nickrobison.trestle.types.temporal.TemporalObject;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
-import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLDataProperty;
 import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
 import org.slf4j.Logger;
@@ -26,9 +27,11 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.temporal.Temporal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Created by nickrobison on 2/19/18.
@@ -70,9 +73,43 @@ public class DataExportEngine implements ITrestleDataExporter {
 
     @Override
     public <T> Single<File> exportDataSetObjects(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ITrestleExporter.DataType exportType) throws IOException {
+        final ShapefileSchema shapefileSchema = this.buildShapefileSchema(inputClass);
+        final ITrestleExporter exporter = this.buildExporter(inputClass, shapefileSchema, exportType);
+        return this.readIndividuals(inputClass, objectID, validAt, databaseAt, shapefileSchema)
+                .toList()
+                .map(individuals -> exporter.writePropertiesToByteBuffer(individuals, null));
+    }
 
-        final Integer classProjection = this.classParser.getClassProjection(inputClass);
+    @Override
+    public <T> Completable exportDataSetObjects(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ITrestleExporter.DataType exportType, OutputStream outputStream) {
+        final ShapefileSchema shapefileSchema = this.buildShapefileSchema(inputClass);
+        final ITrestleExporter exporter = this.buildExporter(inputClass, shapefileSchema, exportType);
+        return exporter.writeIndividuals(this.readIndividuals(inputClass, objectID, validAt, databaseAt, shapefileSchema), outputStream);
+    }
 
+    /**
+     * Read the requested objects and convert them into {@link TSIndividual}s, within a single read transaction
+     * Objects without a valid state are excluded from the export
+     */
+    private <T> Flowable<TSIndividual> readIndividuals(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ShapefileSchema shapefileSchema) {
+        final List<IRI> objectIRIs = objectID
+                .stream()
+                .map(id -> IRIUtils.parseStringToIRI(this.reasonerPrefix, id))
+                .collect(Collectors.toList());
+
+        return Flowable.defer(() -> {
+            final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(false);
+            return this.objectReader.readTrestleObjects(inputClass, objectIRIs, false, validAt, databaseAt, true, trestleTransaction)
+                    .map(object -> parseIndividualToShapefile(object, shapefileSchema))
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+                    .doOnCancel(() -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+                    .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction));
+        });
+    }
+
+    private <T> ShapefileSchema buildShapefileSchema(Class<T> inputClass) {
 //        Build shapefile schema
 //        TODO(nrobison): Extract type from wkt
 //        FIXME(nrobison): Shapefile schema doesn't support multiple languages. Need to figure out how to flatten
@@ -83,44 +120,29 @@ public class DataExportEngine implements ITrestleDataExporter {
 //        Now the temporals
         final Optional<List<OWLDataProperty>> temporalProperties = this.temporalParser.getTemporalsAsDataProperties(inputClass);
         temporalProperties.ifPresent(owlDataProperties -> owlDataProperties.forEach(temporal -> shapefileSchema.addProperty(this.classParser.matchWithClassMember(inputClass, temporal.asOWLDataProperty().getIRI().getShortForm()), this.typeConverter.lookupJavaClassFromOWLDataProperty(inputClass, temporal))));
+        return shapefileSchema;
+    }
 
-
-        final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(false);
-
-        return Flowable.fromIterable(objectID)
-                .map(id -> IRIUtils.parseStringToIRI(this.reasonerPrefix, id))
-                .flatMapMaybe(id -> this.objectReader.readTrestleObject(inputClass, id, false, validAt, databaseAt, trestleTransaction)
-                        .toMaybe()
-                        .onErrorResumeNext(error -> {
-                            logger.debug("No valid state found for {}. Excluding from export", id, error);
-                            return Maybe.empty();
-                        }))
-                .map(object -> parseIndividualToShapefile(object, shapefileSchema))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .toList()
-                .map(individuals -> {
-                    switch (exportType) {
-                        case SHAPEFILE: {
-                            @SuppressWarnings("rawtypes") final ShapefileExporter shapeFileExporter = new ShapefileExporter.ShapefileExporterBuilder(shapefileSchema.getGeomName(), shapefileSchema.getGeomType(), shapefileSchema).setSRID(classProjection).build();
-                            return shapeFileExporter.writePropertiesToByteBuffer(individuals, null);
-                        }
-                        case GEOJSON: {
-                            return new GeoJsonExporter(classProjection).writePropertiesToByteBuffer(individuals, null);
-                        }
-                        case KML: {
-                            return new KMLExporter(false).writePropertiesToByteBuffer(individuals, null);
-                        }
-                        case KMZ: {
-                            return new KMLExporter(true).writePropertiesToByteBuffer(individuals, null);
-                        }
-                        default: {
-                            throw new IllegalArgumentException(String.format("Cannot export to %s format", exportType.toString()));
-                        }
-                    }
-                })
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
-                .doOnSuccess(success -> this.ontology.returnAndCommitTransaction(trestleTransaction));
+    private <T> ITrestleExporter buildExporter(Class<T> inputClass, ShapefileSchema shapefileSchema, ITrestleExporter.DataType exportType) {
+        final Integer classProjection = this.classParser.getClassProjection(inputClass);
+        switch (exportType) {
+            case SHAPEFILE: {
+                @SuppressWarnings("rawtypes") final ShapefileExporter shapeFileExporter = new ShapefileExporter.ShapefileExporterBuilder(shapefileSchema.getGeomName(), shapefileSchema.getGeomType(), shapefileSchema).setSRID(classProjection).build();
+                return shapeFileExporter;
+            }
+            case GEOJSON: {
+                return new GeoJsonExporter(classProjection);
+            }
+            case KML: {
+                return new KMLExporter(false);
+            }
+            case KMZ: {
+                return new KMLExporter(true);
+            }
+            default: {
+                throw new IllegalArgumentException(String.format("Cannot export to %s format", exportType.toString()));
+            }
+        }
     }
 
     @SuppressWarnings("rawtypes")
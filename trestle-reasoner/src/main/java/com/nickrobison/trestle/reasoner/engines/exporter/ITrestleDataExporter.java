@@ -1,11 +1,13 @@
 package com.nickrobison.trestle.reasoner.engines.exporter;
 
 import com.nickrobison.trestle.exporter.ITrestleExporter;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Single;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.temporal.Temporal;
 import java.util.List;
 
@@ -38,4 +40,20 @@ public interface ITrestleDataExporter {
      * @throws IOException - Throws if it can't create the file
      */
     <T> Single<File> exportDataSetObjects(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ITrestleExporter.DataType exportType) throws IOException;
+
+    /**
+     * Stream TrestleObjects at the specified valid/database temporal into the given {@link OutputStream}
+     * Objects are written as they're read, so the dataset is never fully held in memory.
+     * The {@link OutputStream} is not closed when the export completes.
+     *
+     * @param <T>          - Generic type parameter
+     * @param inputClass   - {@link Class} to parse
+     * @param objectID     - {@link List} of objectID strings to return
+     * @param validAt      - {@link Temporal} of validAt time
+     * @param databaseAt   - {@link Temporal} of databaseAt time
+     * @param exportType   - {@link ITrestleExporter.DataType} export datatype
+     * @param outputStream - {@link OutputStream} to write exported data into
+     * @return - {@link Completable} when the export has been written
+     */
+    <T> Completable exportDataSetObjects(Class<T> inputClass, List<String> objectID, @Nullable Temporal validAt, @Nullable Temporal databaseAt, ITrestleExporter.DataType exportType, OutputStream outputStream);
 }
@@ -0,0 +1,148 @@
+package com.nickrobison.trestle.reasoner.engines.object;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.time.temporal.Temporal;
+import java.util.Optional;
+
+/**
+ * Options for bulk loading objects via {@link ITrestleObjectWriter#bulkWrite(io.reactivex.rxjava3.core.Flowable, BulkOptions)}
+ * Defaults are read from the {@code trestle.bulkWriter} config section
+ */
+public class BulkOptions {
+
+    private final int batchSize;
+    private final int parallelism;
+    private final boolean mergeEnabled;
+    private final @Nullable Temporal databaseFrom;
+
+    private BulkOptions(int batchSize, int parallelism, boolean mergeEnabled, @Nullable Temporal databaseFrom) {
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.mergeEnabled = mergeEnabled;
+        this.databaseFrom = databaseFrom;
+    }
+
+    /**
+     * Number of objects to commit in each batch
+     *
+     * @return - batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Number of objects to convert in parallel
+     *
+     * @return - parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Whether or not existing objects should be merged, as per the reasoner's merge-on-load setting.
+     * If disabled, objects are assumed to be new, and no existence checks are performed
+     *
+     * @return - {@code true} merges enabled
+     */
+    public boolean isMergeEnabled() {
+        return mergeEnabled;
+    }
+
+    /**
+     * Optional start of the database time interval for all written objects
+     *
+     * @return - {@link Optional} {@link Temporal} database time
+     */
+    public Optional<Temporal> getDatabaseFrom() {
+        return Optional.ofNullable(databaseFrom);
+    }
+
+    /**
+     * Create {@link BulkOptions} with the default values
+     *
+     * @return - {@link BulkOptions}
+     */
+    public static BulkOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Create a new {@link Builder}, initialized with the default values
+     *
+     * @return - {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int batchSize;
+        private int parallelism;
+        private boolean mergeEnabled = true;
+        private @Nullable Temporal databaseFrom = null;
+
+        private Builder() {
+            final Config config = ConfigFactory.load().getConfig("trestle.bulkWriter");
+            this.batchSize = config.getInt("batchSize");
+            this.parallelism = config.getInt("parallelism");
+        }
+
+        /**
+         * Set the number of objects to commit in each batch
+         *
+         * @param batchSize - batch size, must be positive
+         * @return - {@link Builder}
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Set the number of objects to convert in parallel
+         *
+         * @param parallelism - parallelism, must be positive
+         * @return - {@link Builder}
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Skip merging, and assume that all objects are new
+         *
+         * @return - {@link Builder}
+         */
+        public Builder withoutMerge() {
+            this.mergeEnabled = false;
+            return this;
+        }
+
+        /**
+         * Manually set the start of the database time interval
+         *
+         * @param databaseFrom - {@link Temporal} database time
+         * @return - {@link Builder}
+         */
+        public Builder databaseFrom(Temporal databaseFrom) {
+            this.databaseFrom = databaseFrom;
+            return this;
+        }
+
+        public BulkOptions build() {
+            return new BulkOptions(this.batchSize, this.parallelism, this.mergeEnabled, this.databaseFrom);
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.semanticweb.owlapi.model.OWLDataProperty;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
 
 import java.time.temporal.Temporal;
+import java.util.Collection;
 
 /**
  * Created by nickrobison on 2/13/18.
@@ -113,6 +114,39 @@ public interface ITrestleObjectReader {
      */
     <T extends @NonNull Object> Single<T> readTrestleObject(Class<T> clazz, IRI individualIRI, boolean bypassCache, @Nullable Temporal validAt, @Nullable Temporal databaseAt, @Nullable TrestleTransaction transaction);
 
+    /**
+     * Read a batch of objects from the database, returning the state of each object at the specified valid/database point
+     * Rather than issuing separate queries for each individual, the facts, temporals and related objects are fetched for whole chunks of individuals at once
+     * Objects are not necessarily returned in the same order as the provided {@link IRI}s
+     *
+     * @param <T>            - Java {@link Class} to return
+     * @param clazz          - Java {@link Class} of type {@link T} to return
+     * @param individualIRIs - {@link Collection} of {@link IRI} IDs of individuals
+     * @param validAt        - Optional {@link Temporal} to specify a validAt time
+     * @param databaseAt     - Optional {@link Temporal} to specify databaseAt time
+     * @return - {@link Flowable} of Java objects of type {@link T}
+     * @throws com.nickrobison.trestle.reasoner.exceptions.TrestleMissingIndividualException - If any of the individuals do not exist
+     * @throws com.nickrobison.trestle.reasoner.exceptions.NoValidStateException            - If unable to find all properties for any individual at the given time point
+     */
+    <T extends @NonNull Object> Flowable<T> readTrestleObjects(Class<T> clazz, Collection<IRI> individualIRIs, @Nullable Temporal validAt, @Nullable Temporal databaseAt);
+
+    /**
+     * Read a batch of objects from the database, returning the state of each object at the specified valid/database point
+     * Rather than issuing separate queries for each individual, the facts, temporals and related objects are fetched for whole chunks of individuals at once
+     * Objects are not necessarily returned in the same order as the provided {@link IRI}s
+     *
+     * @param <T>            - Java {@link Class} to return
+     * @param clazz          - Java {@link Class} of type {@link T} to return
+     * @param individualIRIs - {@link Collection} of {@link IRI} IDs of individuals
+     * @param bypassCache    - {@code true} bypass object cache. {@code false} use cache if possible
+     * @param validAt        - Optional {@link Temporal} to specify a validAt time
+     * @param databaseAt     - Optional {@link Temporal} to specify databaseAt time
+     * @param skipInvalid    - {@code true} skip individuals which are missing, or have no valid state. {@code false} return an error
+     * @param transaction    - {@link TrestleTransaction} to continue with
+     * @return - {@link Flowable} of Java objects of type {@link T}
+     */
+    <T extends @NonNull Object> Flowable<T> readTrestleObjects(Class<T> clazz, Collection<IRI> individualIRIs, boolean bypassCache, @Nullable Temporal validAt, @Nullable Temporal databaseAt, boolean skipInvalid, @Nullable TrestleTransaction transaction);
+
     /**
      * Retrieve {@link TrestleObjectHeader} for the given Individual
      *
@@ -7,6 +7,7 @@ import com.nickrobison.trestle.transactions.TrestleTransaction;
 import com.nickrobison.trestle.types.events.TrestleEventType;
 import com.nickrobison.trestle.types.relations.ObjectRelation;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
@@ -50,6 +51,18 @@ public interface ITrestleObjectWriter {
      */
     Completable writeTrestleObject(Object inputObject, Temporal startTemporal, @Nullable Temporal endTemporal) throws MissingOntologyEntity, UnregisteredClassException;
 
+    /**
+     * Bulk load a stream of Java {@link Object}s as Trestle_Objects
+     * Objects are converted to axioms in parallel, and written in batches, with each batch committed in a single transaction.
+     * If merging is enabled, objects which already exist are merged individually, within their batch.
+     * Objects are not guaranteed to be written in the order they are emitted.
+     *
+     * @param objects - {@link Flowable} of {@link Object}s to write
+     * @param options - {@link BulkOptions} to use
+     * @return - {@link Completable} when finished
+     */
+    Completable bulkWrite(Flowable<?> objects, BulkOptions options);
+
     /**
      * Manually add a Fact to a TrestleObject, along with a specified validity point
      *
@@ -115,6 +128,18 @@ public interface ITrestleObjectWriter {
      */
     Completable writeSpatialOverlap(Object subject, Object object, String wkt);
 
+    /**
+     * Create a spatial overlap association between two objects.
+     * If one or both of the object do not exist, create them.
+     *
+     * @param subject     - Java {@link Object} to write as subject of relationship
+     * @param object      - Java {@link Object} to write as object of relationship
+     * @param wkt         - {@link String} of wkt boundary of spatial overlap
+     * @param transaction - {@link TrestleTransaction} to continue with
+     * @return - {@link Completable} when finished
+     */
+    Completable writeSpatialOverlap(Object subject, Object object, String wkt, @Nullable TrestleTransaction transaction);
+
     /**
      * Create a spatial overlap association between two objects.
      * If one or both of the object do not exist, create them.
@@ -7,7 +7,9 @@ import com.nickrobison.trestle.iri.IRIBuilder;
 import com.nickrobison.trestle.iri.TrestleIRI;
 import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.ontology.ReasonerPrefix;
+import com.nickrobison.trestle.ontology.types.TrestleResult;
 import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.querybuilder.QueryTemplate;
 import com.nickrobison.trestle.reasoner.caching.TrestleCache;
 import com.nickrobison.trestle.reasoner.exceptions.MissingConstructorException;
 import com.nickrobison.trestle.reasoner.exceptions.NoValidStateException;
@@ -21,12 +23,12 @@ import com.nickrobison.trestle.types.temporal.IntervalTemporal;
 import com.nickrobison.trestle.types.temporal.PointTemporal;
 import com.nickrobison.trestle.types.temporal.TemporalObject;
 import com.nickrobison.trestle.types.temporal.TemporalObjectBuilder;
+import com.typesafe.config.ConfigFactory;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Scheduler;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.functions.Supplier;
-import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.semanticweb.owlapi.apibinding.OWLManager;
@@ -43,6 +45,7 @@ import java.util.*;
 
 import static com.nickrobison.trestle.common.IRIUtils.parseStringToIRI;
 import static com.nickrobison.trestle.iri.IRIVersion.V1;
+import static com.nickrobison.trestle.ontology.utils.ToDataPropertyAssertionAxiom.toDataPropertyAssertionAxiom;
 import static com.nickrobison.trestle.reasoner.parser.TemporalParser.parseTemporalToOntologyDateTime;
 import static com.nickrobison.trestle.reasoner.parser.TemporalParser.parseToTemporal;
 
@@ -68,6 +71,7 @@ public class TrestleObjectReader implements ITrestleObjectReader {
     private final QueryBuilder qb;
     private final TrestleCache trestleCache;
     private final String reasonerPrefix;
+    private final int batchSize;
 
     @Inject
     public TrestleObjectReader(@ReasonerPrefix String reasonerPrefix,
@@ -88,8 +92,9 @@ public class TrestleObjectReader implements ITrestleObjectReader {
         this.qb = qb;
         this.trestleCache = trestleCache;
         this.reasonerPrefix = reasonerPrefix;
+        this.batchSize = ConfigFactory.load().getInt("trestle.objectReader.batchSize");
 
-        this.objectReaderScheduler = Schedulers.from(factory.create("object-reader-pool"));
+        this.objectReaderScheduler = factory.create("object-reader-pool").asScheduler();
     }
 
     @Override
@@ -136,9 +141,7 @@ public class TrestleObjectReader implements ITrestleObjectReader {
         databaseTemporal = TemporalObjectBuilder.database().at(Objects.requireNonNullElseGet(databaseAt, OffsetDateTime::now)).build();
 
 //        Build the TrestleIRI
-        final TrestleIRI trestleIRI = IRIBuilder.encodeIRI(V1, this.reasonerPrefix, individualIRI.getIRIString(), null,
-                parseTemporalToOntologyDateTime(validTemporal.getIdTemporal(), ZoneOffset.UTC),
-                parseTemporalToOntologyDateTime(databaseTemporal.getIdTemporal(), ZoneOffset.UTC));
+        final TrestleIRI trestleIRI = buildTrestleIRI(individualIRI, validTemporal, databaseTemporal);
 
 //        Try from cache first, unless we've manually set the bypass
         final boolean isCacheable = this.classRegister.isCacheable(clazz) && !bypassCache;
@@ -194,26 +197,12 @@ public class TrestleObjectReader implements ITrestleObjectReader {
         final Class<? extends Temporal> baseTemporalType = TemporalParser.getTemporalType(clazz);
 
 //        Build the fact query
-        final String factQuery = qb.buildObjectFactRetrievalQuery(validAtTemporal, dbAtTemporal, true, null, individual);
+        final QueryTemplate factQuery = qb.buildObjectFactRetrievalTemplate(validAtTemporal, dbAtTemporal, true, individual);
 
         // Build the actual query and execution
         final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(transaction);
         final Single<List<TrestleFact<@NonNull Object>>> factsFlowable = this.ontology.executeSPARQLResults(factQuery)
-                .map(result -> {
-                    final OWLDataPropertyAssertionAxiom assertion = df.getOWLDataPropertyAssertionAxiom(
-                            df.getOWLDataProperty(result.getIndividual("property").orElseThrow(() -> new IllegalStateException(MISSING_INDIVIDUAL)).toStringID()),
-                            result.getIndividual("individual").orElseThrow(() -> new IllegalStateException(MISSING_INDIVIDUAL)),
-                            result.getLiteral("object").orElseThrow(() -> new IllegalStateException(MISSING_INDIVIDUAL)));
-//                                    Get valid temporal
-                    final Optional<TemporalObject> factValidTemporal = TemporalObjectBuilder.buildTemporalFromResults(TemporalScope.VALID, result.getLiteral("va"), result.getLiteral("vf"), result.getLiteral("vt"));
-//                                    Get database temporal
-                    final Optional<TemporalObject> factDatabaseTemporal = TemporalObjectBuilder.buildTemporalFromResults(TemporalScope.DATABASE, Optional.empty(), result.getLiteral("df"), result.getLiteral("dt"));
-                    return this.factFactory.createFact(
-                            clazz,
-                            assertion,
-                            factValidTemporal.orElseThrow(() -> new RuntimeException("Unable to build fact valid temporal")),
-                            factDatabaseTemporal.orElseThrow(() -> new RuntimeException("Unable to build fact database temporal")));
-                })
+                .map(result -> this.buildFact(clazz, result))
                 .toList();
 
 //         Fetch related objects
@@ -254,13 +243,65 @@ public class TrestleObjectReader implements ITrestleObjectReader {
                 .doOnError(error -> this.ontology.returnAndAbortTransaction(tt));
     }
 
+    @Override
+    public <T extends @NonNull Object> Flowable<T> readTrestleObjects(Class<T> clazz, Collection<IRI> individualIRIs, @Nullable Temporal validAt, @Nullable Temporal databaseAt) {
+        return readTrestleObjects(clazz, individualIRIs, false, validAt, databaseAt, false, null);
+    }
+
+    @Override
+    public <T extends @NonNull Object> Flowable<T> readTrestleObjects(Class<T> clazz, Collection<IRI> individualIRIs, boolean bypassCache, @Nullable Temporal validAt, @Nullable Temporal databaseAt, boolean skipInvalid, @Nullable TrestleTransaction transaction) {
+        logger.debug("Reading {} objects", individualIRIs.size());
+        if (!this.engineUtils.checkRegisteredClass(clazz)) {
+            logger.error("Class {} is not registered", clazz.getName());
+            throw new IllegalArgumentException(String.format("Class %s is not registered", clazz.getName()));
+        }
+
+        final PointTemporal<?> validTemporal = TemporalObjectBuilder.valid().at(Objects.requireNonNullElseGet(validAt, OffsetDateTime::now)).build();
+        final PointTemporal<?> databaseTemporal = TemporalObjectBuilder.database().at(Objects.requireNonNullElseGet(databaseAt, OffsetDateTime::now)).build();
+
+//        Pull what we can from the cache, everything else gets read from the database in batches
+        final boolean isCacheable = this.classRegister.isCacheable(clazz) && !bypassCache;
+        final List<T> cachedObjects = new ArrayList<>();
+        final List<IRI> uncachedIRIs = new ArrayList<>();
+        for (final IRI individualIRI : individualIRIs) {
+            @Nullable T individual = null;
+            if (isCacheable) {
+                individual = this.trestleCache.getTrestleObject(clazz, buildTrestleIRI(individualIRI, validTemporal, databaseTemporal));
+            }
+            if (individual == null) {
+                uncachedIRIs.add(individualIRI);
+            } else {
+                cachedObjects.add(individual);
+            }
+        }
+        logger.debug("Found {} objects in cache, reading {} from the database", cachedObjects.size(), uncachedIRIs.size());
+
+        final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(transaction);
+        final Flowable<T> databaseObjects = readTrestleObjectBatches(clazz, uncachedIRIs, validTemporal, databaseTemporal, skipInvalid)
+                .map(value -> {
+                    if (isCacheable) {
+                        try {
+                            this.trestleCache.writeTrestleObject(buildTrestleIRI(value.getIndividual(), validTemporal, databaseTemporal), value.getValidFrom().toInstant().atOffset(ZoneOffset.UTC), value.getValidTo().toInstant().atOffset(ZoneOffset.UTC), value.getObject());
+                        } catch (Exception e) {
+                            logger.error("Unable to write Trestle Object {} to cache", value.getIndividual(), e);
+                        }
+                    }
+                    return value.getObject();
+                });
+
+        return Flowable.fromIterable(cachedObjects)
+                .concatWith(databaseObjects)
+                .doOnComplete(() -> this.ontology.returnAndCommitTransaction(tt))
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(tt));
+    }
+
     @Override
     public Maybe<TrestleObjectHeader> readObjectHeader(Class<?> clazz, String individual) {
         final OWLClass objectClass = this.classParser.getObjectClass(clazz);
         final IRI individualIRI = parseStringToIRI(this.reasonerPrefix, individual);
         final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(false);
 
-        final String headerQuery = this.qb.buildObjectHeaderQuery(objectClass, df.getOWLNamedIndividual(individualIRI));
+        final QueryTemplate headerQuery = this.qb.buildObjectHeaderTemplate(objectClass, df.getOWLNamedIndividual(individualIRI));
         return this.ontology.executeSPARQLResults(headerQuery)
                 .map(result -> {
                     final Optional<OWLLiteral> existsToLiteral = result.getLiteral("et");
@@ -316,6 +357,7 @@ public class TrestleObjectReader implements ITrestleObjectReader {
             db = null;
         }
 
+//        The fact values are filtered by the temporals of each fact, which the cached objects don't have, so this always goes to the database
         final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(false);
         final String historyQuery = this.qb.buildFactHistoryQuery(individual, factName, start, end, db);
         return this.ontology.executeSPARQLResults(historyQuery)
@@ -366,6 +408,169 @@ public class TrestleObjectReader implements ITrestleObjectReader {
     }
 
 
+    /**
+     * Split the individuals into batches and read each batch in turn
+     *
+     * @param <T>              - Java class to return
+     * @param clazz            - Java class of type T to return
+     * @param individualIRIs   - {@link Collection} of {@link IRI} of individuals
+     * @param validTemporal    - Valid temporal to filter results with
+     * @param databaseTemporal - Database temporal to filter results with
+     * @param skipInvalid      - {@code true} skip individuals which cannot be read
+     * @return - {@link Flowable} of {@link TrestleObjectResult} {@link T}
+     */
+    private <T extends @NonNull Object> Flowable<TrestleObjectResult<T>> readTrestleObjectBatches(Class<T> clazz, Collection<IRI> individualIRIs, PointTemporal<?> validTemporal, PointTemporal<?> databaseTemporal, boolean skipInvalid) {
+        return Flowable.fromIterable(individualIRIs)
+                .buffer(this.batchSize)
+                .concatMap(batch -> this.readTrestleObjectsImpl(clazz, batch, validTemporal, databaseTemporal, skipInvalid));
+    }
+
+    /**
+     * Batch version of {@link TrestleObjectReader#readTrestleObjectImpl(Class, IRI, PointTemporal, PointTemporal, TrestleTransaction)}
+     * Fetches the facts, temporals and related objects for all the individuals at once, and then assembles the objects in memory.
+     * Individuals without any temporals do not exist in the database.
+     *
+     * @param <T>              - Java class to return
+     * @param clazz            - Java class of type T to return
+     * @param individualIRIs   - {@link List} of {@link IRI} of individuals in the batch
+     * @param validTemporal    - Valid temporal to filter results with
+     * @param databaseTemporal - Database temporal to filter results with
+     * @param skipInvalid      - {@code true} skip individuals which cannot be read, {@code false} return an error
+     * @return - {@link Flowable} of {@link TrestleObjectResult} {@link T}
+     */
+    @Timed
+    @Metered(name = "read-trestle-object-batch", absolute = true)
+    private <T extends @NonNull Object> Flowable<TrestleObjectResult<T>> readTrestleObjectsImpl(Class<T> clazz, List<IRI> individualIRIs, PointTemporal<?> validTemporal, PointTemporal<?> databaseTemporal, boolean skipInvalid) {
+        logger.trace("Reading batch of {} individuals at {}/{}", individualIRIs.size(), validTemporal, databaseTemporal);
+        final OWLNamedIndividual[] individuals = individualIRIs
+                .stream()
+                .map(df::getOWLNamedIndividual)
+                .toArray(OWLNamedIndividual[]::new);
+        final OffsetDateTime dbAtTemporal = parseTemporalToOntologyDateTime(databaseTemporal.getPointTime(), ZoneOffset.UTC);
+        final OffsetDateTime validAtTemporal = parseTemporalToOntologyDateTime(validTemporal.getPointTime(), ZoneOffset.UTC);
+        final Class<? extends Temporal> baseTemporalType = TemporalParser.getTemporalType(clazz);
+
+//        Facts, grouped by individual
+        final String factQuery = qb.buildObjectFactRetrievalQuery(validAtTemporal, dbAtTemporal, true, null, individuals);
+        final Single<HashMap<IRI, List<TrestleFact<@NonNull Object>>>> factsSingle = this.ontology.executeSPARQLResults(factQuery)
+                .collect((Supplier<HashMap<IRI, List<TrestleFact<@NonNull Object>>>>) HashMap::new, (facts, result) -> facts
+                        .computeIfAbsent(IRI.create(result.unwrapIndividual("individual").toStringID()), key -> new ArrayList<>())
+                        .add(this.buildFact(clazz, result)));
+
+//        Temporals, grouped by individual
+        final Single<HashMap<IRI, Set<OWLDataPropertyAssertionAxiom>>> temporalsSingle = this.ontology.executeSPARQLResults(qb.buildIndividualTemporalQuery(individuals))
+                .lift(toDataPropertyAssertionAxiom(df))
+                .collect((Supplier<HashMap<IRI, Set<OWLDataPropertyAssertionAxiom>>>) HashMap::new, (temporals, axiom) -> temporals
+                        .computeIfAbsent(axiom.getSubject().asOWLNamedIndividual().getIRI(), key -> new HashSet<>())
+                        .add(axiom));
+
+//        Related objects, which are also read in batches
+        final Set<OWLObjectProperty> objectProperties = this.classBuilder.getObjectPropertyMembers(clazz);
+        final Single<Map<IRI, List<TrestleAssociatedObject<Object>>>> associatedObjectsSingle;
+        if (objectProperties.isEmpty()) {
+            associatedObjectsSingle = Single.just(Collections.emptyMap());
+        } else {
+            associatedObjectsSingle = this.ontology.executeSPARQLResults(qb.buildObjectPropertyRetrievalQuery(objectProperties, individuals))
+                    .map(result -> df.getOWLObjectPropertyAssertionAxiom(
+                            df.getOWLObjectProperty(IRI.create(result.unwrapIndividual("property").toStringID())),
+                            df.getOWLNamedIndividual(IRI.create(result.unwrapIndividual("individual").toStringID())),
+                            df.getOWLNamedIndividual(IRI.create(result.unwrapIndividual("object").toStringID()))))
+                    .toList()
+                    .flatMap(assertions -> this.readAssociatedObjects(clazz, assertions, validTemporal, databaseTemporal, skipInvalid));
+        }
+
+        final Single<List<TrestleObjectResult<T>>> resultsSingle = Single.zip(factsSingle, temporalsSingle, associatedObjectsSingle, (facts, temporals, associatedObjects) -> {
+            final List<TrestleObjectResult<T>> results = new ArrayList<>(individualIRIs.size());
+            for (final IRI individualIRI : individualIRIs) {
+                final IRI fullIRI = this.ontology.getFullIRI(individualIRI);
+                try {
+                    final @Nullable Set<OWLDataPropertyAssertionAxiom> temporalProperties = temporals.get(fullIRI);
+                    if (temporalProperties == null) {
+                        throw new TrestleMissingIndividualException(individualIRI.toString());
+                    }
+                    final TemporalObject temporal = TemporalObjectBuilder.buildTemporalFromProperties(temporalProperties, baseTemporalType, clazz)
+                            .orElseThrow(() -> new IllegalStateException(String.format("Cannot restore temporal from ontology for %s", individualIRI)));
+                    results.add(this.buildTrestleObjectResult(clazz, individualIRI,
+                            facts.getOrDefault(fullIRI, Collections.emptyList()),
+                            associatedObjects.getOrDefault(fullIRI, Collections.emptyList()),
+                            temporal, validTemporal, databaseTemporal));
+                } catch (RuntimeException e) {
+                    if (!skipInvalid) {
+                        throw e;
+                    }
+                    logger.debug("Unable to read {}, skipping", individualIRI, e);
+                }
+            }
+            return results;
+        });
+        return resultsSingle.flattenAsFlowable(results -> results);
+    }
+
+    /**
+     * Read the objects related to a batch of individuals
+     * Objects are grouped by their Java class, so that each class can be read in batches
+     *
+     * @param clazz            - Java class of the parent individuals
+     * @param assertions       - {@link List} of {@link OWLObjectPropertyAssertionAxiom} linking the parent individuals to their related objects
+     * @param validTemporal    - Valid temporal to filter results with
+     * @param databaseTemporal - Database temporal to filter results with
+     * @param skipInvalid      - {@code true} skip objects which cannot be read
+     * @return - {@link Single} {@link Map} of parent {@link IRI} and its {@link TrestleAssociatedObject}s
+     */
+    private Single<Map<IRI, List<TrestleAssociatedObject<Object>>>> readAssociatedObjects(Class<?> clazz, List<OWLObjectPropertyAssertionAxiom> assertions, PointTemporal<?> validTemporal, PointTemporal<?> databaseTemporal, boolean skipInvalid) {
+        final Map<Class<@NonNull ?>, Set<IRI>> objectsByClass = new HashMap<>();
+        // We can't handle multiple objects yet, so we can only have a 1-1 mapping.
+        assertions.forEach(assertion -> objectsByClass
+                .computeIfAbsent(this.classParser.getPropertyDatatype(clazz, assertion.getProperty().getNamedProperty().getIRI().getIRIString()), key -> new HashSet<>())
+                .add(assertion.getObject().asOWLNamedIndividual().getIRI()));
+
+        return Flowable.fromIterable(objectsByClass.entrySet())
+                .concatMap(entry -> this.readTrestleObjectBatches(entry.getKey(), entry.getValue(), validTemporal, databaseTemporal, skipInvalid)
+                        .map(result -> new AbstractMap.SimpleImmutableEntry<IRI, Object>(result.getIndividual(), result.getObject())))
+                .toMap(Map.Entry::getKey, Map.Entry::getValue)
+                .map(objects -> {
+                    final Map<IRI, List<TrestleAssociatedObject<Object>>> associatedObjects = new HashMap<>();
+                    assertions.forEach(assertion -> {
+                        final @Nullable Object object = objects.get(assertion.getObject().asOWLNamedIndividual().getIRI());
+                        if (object != null) {
+                            associatedObjects
+                                    .computeIfAbsent(assertion.getSubject().asOWLNamedIndividual().getIRI(), key -> new ArrayList<>())
+                                    .add(new TrestleAssociatedObject<>(assertion.getProperty().getNamedProperty(), object));
+                        }
+                    });
+                    return associatedObjects;
+                });
+    }
+
+    /**
+     * Build a {@link TrestleFact} from a row of the object fact query
+     *
+     * @param clazz  - Java {@link Class} of the fact's individual
+     * @param result - {@link TrestleResult} row
+     * @return - {@link TrestleFact}
+     */
+    private TrestleFact<@NonNull Object> buildFact(Class<?> clazz, TrestleResult result) {
+        final OWLDataPropertyAssertionAxiom assertion = df.getOWLDataPropertyAssertionAxiom(
+                df.getOWLDataProperty(result.getIndividual("property").orElseThrow(() -> new IllegalStateException(MISSING_INDIVIDUAL)).toStringID()),
+                result.getIndividual("individual").orElseThrow(() -> new IllegalStateException(MISSING_INDIVIDUAL)),
+                result.getLiteral("object").orElseThrow(() -> new IllegalStateException(MISSING_INDIVIDUAL)));
+//                                    Get valid temporal
+        final Optional<TemporalObject> factValidTemporal = TemporalObjectBuilder.buildTemporalFromResults(TemporalScope.VALID, result.getLiteral("va"), result.getLiteral("vf"), result.getLiteral("vt"));
+//                                    Get database temporal
+        final Optional<TemporalObject> factDatabaseTemporal = TemporalObjectBuilder.buildTemporalFromResults(TemporalScope.DATABASE, Optional.empty(), result.getLiteral("df"), result.getLiteral("dt"));
+        return this.factFactory.createFact(
+                clazz,
+                assertion,
+                factValidTemporal.orElseThrow(() -> new RuntimeException("Unable to build fact valid temporal")),
+                factDatabaseTemporal.orElseThrow(() -> new RuntimeException("Unable to build fact database temporal")));
+    }
+
+    private TrestleIRI buildTrestleIRI(IRI individualIRI, PointTemporal<?> validTemporal, PointTemporal<?> databaseTemporal) {
+        return IRIBuilder.encodeIRI(V1, this.reasonerPrefix, individualIRI.getIRIString(), null,
+                parseTemporalToOntologyDateTime(validTemporal.getIdTemporal(), ZoneOffset.UTC),
+                parseTemporalToOntologyDateTime(databaseTemporal.getIdTemporal(), ZoneOffset.UTC));
+    }
+
     /**
      * Handle extracting and reprojecting a given {@link OWLLiteral}
      *
@@ -1,5 +1,6 @@
 package com.nickrobison.trestle.reasoner.engines.object;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.annotation.Metered;
 import com.codahale.metrics.annotation.Timed;
@@ -18,6 +19,7 @@ import com.nickrobison.trestle.reasoner.engines.events.TrestleEventEngine;
 import com.nickrobison.trestle.reasoner.engines.merge.MergeScript;
 import com.nickrobison.trestle.reasoner.engines.merge.TrestleMergeEngine;
 import com.nickrobison.trestle.reasoner.engines.relations.RelationTracker;
+import com.nickrobison.trestle.reasoner.engines.spatial.equality.union.SpatialEquivalenceGraph;
 import com.nickrobison.trestle.reasoner.exceptions.UnregisteredClassException;
 import com.nickrobison.trestle.reasoner.parser.*;
 import com.nickrobison.trestle.reasoner.threading.TrestleExecutorFactory;
@@ -46,6 +48,8 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.nickrobison.trestle.common.IRIUtils.parseStringToIRI;
@@ -64,6 +68,7 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
 
     private final TrestleEventEngine eventEngine;
     private final TrestleExecutorService objectWriterThreadPool;
+    private final Scheduler objectWriterScheduler;
     private final Metrician metrician;
     private final ObjectEngineUtils engineUtils;
     private final IClassParser classParser;
@@ -75,7 +80,11 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
     private final QueryBuilder qb;
     private final TrestleCache trestleCache;
     private final RelationTracker relationTracker;
+    private final SpatialEquivalenceGraph equivalenceGraph;
     private final String reasonerPrefix;
+    private final Meter bulkObjectMeter;
+    private final Meter bulkAxiomMeter;
+    private final Timer bulkBatchTimer;
 
 
     @Inject
@@ -89,6 +98,7 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                                QueryBuilder queryBuilder,
                                TrestleCache trestleCache,
                                RelationTracker relationTracker,
+                               SpatialEquivalenceGraph equivalenceGraph,
                                TrestleExecutorFactory factory) {
         this.eventEngine = eventEngine;
         this.metrician = metrician;
@@ -102,9 +112,14 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
         this.qb = queryBuilder;
         this.trestleCache = trestleCache;
         this.relationTracker = relationTracker;
+        this.equivalenceGraph = equivalenceGraph;
         this.reasonerPrefix = reasonerPrefix;
 
         this.objectWriterThreadPool = factory.create("object-writer-pool");
+        this.objectWriterScheduler = this.objectWriterThreadPool.asScheduler();
+        this.bulkObjectMeter = metrician.registerMeter("trestle-bulk-write-objects");
+        this.bulkAxiomMeter = metrician.registerMeter("trestle-bulk-write-axioms");
+        this.bulkBatchTimer = metrician.registerTimer("trestle-bulk-write-batch-timer");
     }
 
     @Override
@@ -132,6 +147,31 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                 .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction));
     }
 
+    @Override
+    public Completable bulkWrite(Flowable<?> objects, BulkOptions options) {
+        final Temporal databaseFrom = options.getDatabaseFrom().orElseGet(() -> OffsetDateTime.now().atZoneSameInstant(ZoneOffset.UTC));
+        @SuppressWarnings("unchecked") final TemporalObject dTemporal = TemporalObjectBuilder.database().from(databaseFrom).build();
+        final boolean merge = options.isMergeEnabled() && this.mergeEngine.mergeOnLoad();
+        final AtomicLong objectCount = new AtomicLong();
+        final long start = System.nanoTime();
+
+        return objects
+                .parallel(options.getParallelism())
+                .runOn(this.objectWriterScheduler)
+                .map(object -> buildBulkObject(object, dTemporal))
+                .sequential()
+                .buffer(options.getBatchSize())
+                .concatMapCompletable(batch -> writeBulkBatch(batch, dTemporal, merge)
+                        .doOnComplete(() -> objectCount.addAndGet(batch.size())))
+                .doOnComplete(() -> {
+                    final long elapsed = System.nanoTime() - start;
+                    final double seconds = Math.max(elapsed, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+                    logger.info("Bulk wrote {} objects in {} ms ({} objects/sec)", objectCount.get(),
+                            TimeUnit.NANOSECONDS.toMillis(elapsed),
+                            String.format("%.2f", objectCount.get() / seconds));
+                });
+    }
+
     @Override
     public Completable addFactToTrestleObject(Class<?> clazz, String individual, String factName, Object value, Temporal validAt, @Nullable Temporal databaseFrom) {
         final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(true);
@@ -182,6 +222,15 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                 .stream()
                 .map(this.classParser::getIndividual)
                 .collect(Collectors.toSet());
+//        Grab the object temporals as well, so we can add the union to the equivalence graph
+        final Map<OWLNamedIndividual, TemporalObject> objectTemporals = new HashMap<>();
+        for (final T object : objects) {
+            final Optional<List<TemporalObject>> objectTemporalObjects = this.temporalParser.getTemporalObjects(object);
+            if (objectTemporalObjects.isEmpty()) {
+                return Completable.error(new IllegalStateException("Cannot get temporals for individual"));
+            }
+            objectTemporals.put(this.classParser.getIndividual(object), objectTemporalObjects.get().get(0));
+        }
 
 //        Write everyone
         final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(true);
@@ -193,16 +242,31 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                 // Write the strength
                 .andThen(Completable.defer(() -> this.ontology.writeIndividualDataProperty(eventIndividual, df.getOWLDataProperty(relationStrengthIRI), df.getOWLLiteral(strength))))
                 .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
-                .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction));
+                .doOnComplete(() -> {
+                    this.ontology.returnAndCommitTransaction(trestleTransaction);
+//                    The event is the union, which is equal to the subject
+                    this.equivalenceGraph.addUnion(eventIndividual, subjectIndividual, subjectTemporal, objectTemporals);
+                });
     }
 
     @Override
     public Completable writeObjectRelationship(Object subject, Object object, ObjectRelation relation, @Nullable TrestleTransaction transaction) {
-        return this.writeObjectProperty(subject, object, df.getOWLObjectProperty(relation.getIRI()), transaction);
+        final Completable relationCompletable = this.writeObjectProperty(subject, object, df.getOWLObjectProperty(relation.getIRI()), transaction);
+        if (relation != ObjectRelation.EQUALS) {
+            return relationCompletable;
+        }
+//        Equals relations are traversed by the SpatialUnionTraverser, so add them to the equivalence graph as well
+        return relationCompletable
+                .doOnComplete(() -> this.addEqualsToGraph(subject, object));
     }
 
     @Override
     public Completable writeSpatialOverlap(Object subject, Object object, String wkt) {
+        return this.writeSpatialOverlap(subject, object, wkt, null);
+    }
+
+    @Override
+    public Completable writeSpatialOverlap(Object subject, Object object, String wkt, @Nullable TrestleTransaction transaction) {
         final OWLNamedIndividual subjectIndividual = this.classParser.getIndividual(subject);
         final OWLNamedIndividual objectIndividual = this.classParser.getIndividual(object);
         final OWLNamedIndividual overlapIndividual = df.getOWLNamedIndividual(IRI.create(this.reasonerPrefix,
@@ -212,6 +276,7 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
 
 //        Write the overlap
         final OWLClassAssertionAxiom overlapClassAssertion = df.getOWLClassAssertionAxiom(df.getOWLClass(trestleOverlapIRI), overlapIndividual);
+        final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(transaction, true);
         return this.ontology.createIndividual(overlapClassAssertion)
                 .andThen(Completable.defer(() -> {
                     //        Write the overlap intersection
@@ -224,9 +289,9 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                     //        Write the object relation
                     return this.writeIndirectObjectProperty(overlapIndividual, subject, overlapProperty)
                             .andThen(Completable.defer(() -> this.writeIndirectObjectProperty(overlapIndividual, object, overlapProperty)));
-                }));
-
-
+                }))
+                .doOnError(err -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+                .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction));
     }
 
     //    TODO(nrobison): Correctly implement this
@@ -378,7 +443,8 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                         final String updateExistenceQuery = this.qb.updateObjectProperties(axioms, trestleObjectIRI);
                         return this.ontology.executeUpdateSPARQL(updateExistenceQuery)
                                 //                                Update object events
-                                .andThen(Completable.defer(() -> this.eventEngine.adjustObjectEvents(axioms)));
+                                .andThen(Completable.defer(() -> this.eventEngine.adjustObjectEvents(axioms)))
+                                .doOnComplete(() -> this.equivalenceGraph.invalidate(owlNamedIndividual));
                     });
 
             return Completable.mergeArray(dbTemporalsCompletable, newVersionCompletable, existenceCompletable, associatedCompletable)
@@ -424,6 +490,206 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                 }));
     }
 
+    /**
+     * Write a batch of converted objects in a single transaction.
+     * New objects are written with a single call to {@link ITrestleOntology#writeAxioms(Collection)},
+     * while objects which already exist are merged via {@link TrestleObjectWriter#writeTrestleObjectImpl(Object, TemporalObject)}.
+     * If the batch contains multiple objects with the same individual, only the first one is written with the batch,
+     * the rest are then written in order via {@link TrestleObjectWriter#writeTrestleObjectImpl(Object, TemporalObject)}, the same as if they had been written one at a time.
+     *
+     * @param batch     - {@link List} of {@link BulkObject} to write
+     * @param dTemporal - {@link TemporalObject} database temporal to write
+     * @param merge     - {@code true} check for existing objects and merge them
+     * @return - {@link Completable} when finished
+     */
+    private Completable writeBulkBatch(List<BulkObject> batch, TemporalObject dTemporal, boolean merge) {
+        return Completable.defer(() -> {
+            final Timer.Context batchTimer = this.bulkBatchTimer.time();
+            final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(true);
+//            Writing the axioms for two versions of the same individual would give it two sets of temporals, so only the first version goes in with the batch
+            final Set<OWLNamedIndividual> batchIndividuals = new HashSet<>();
+            final List<BulkObject> unique = new ArrayList<>(batch.size());
+            final List<BulkObject> duplicates = new ArrayList<>();
+            for (final BulkObject object : batch) {
+                if (batchIndividuals.add(object.getIndividual())) {
+                    unique.add(object);
+                } else {
+                    duplicates.add(object);
+                }
+            }
+            final Single<List<BulkObject>> existingSingle;
+            if (merge) {
+                existingSingle = Flowable.fromIterable(unique)
+                        .concatMapMaybe(object -> Flowable.fromIterable(object.individuals)
+                                .concatMapSingle(individual -> this.engineUtils.checkExists(individual.getIRI()))
+                                .any(exists -> exists)
+                                .filter(exists -> exists)
+                                .map(exists -> object))
+                        .toList();
+            } else {
+                existingSingle = Single.just(Collections.emptyList());
+            }
+
+            return existingSingle.flatMapCompletable(existing -> {
+                final Set<BulkObject> existingObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+                existingObjects.addAll(existing);
+                final List<OWLAxiom> axioms = new ArrayList<>();
+                final List<String> updates = new ArrayList<>();
+                unique
+                        .stream()
+                        .filter(object -> !existingObjects.contains(object))
+                        .forEach(object -> {
+                            axioms.addAll(object.axioms);
+                            updates.addAll(object.updates);
+                        });
+                logger.debug("Writing batch of {} objects with {} axioms, merging {} existing objects and {} duplicates", unique.size() - existing.size(), axioms.size(), existing.size(), duplicates.size());
+
+                final Completable axiomCompletable = axioms.isEmpty() ? Completable.complete() : this.ontology.writeAxioms(axioms);
+                return axiomCompletable
+                        .andThen(Completable.defer(() -> Flowable.fromIterable(updates)
+                                .concatMapCompletable(this.ontology::executeUpdateSPARQL)))
+                        .andThen(Completable.defer(() -> Flowable.fromIterable(existing)
+                                .concatMapCompletable(object -> this.writeTrestleObjectImpl(object.inputObject, dTemporal))))
+                        .andThen(Completable.defer(() -> Flowable.fromIterable(duplicates)
+                                .concatMapCompletable(object -> this.writeTrestleObjectImpl(object.inputObject, dTemporal))))
+                        .doOnComplete(() -> {
+                            unique
+                                    .stream()
+                                    .filter(object -> !existingObjects.contains(object))
+                                    .forEach(this::purgeBulkObject);
+                            this.bulkAxiomMeter.mark(axioms.size());
+                        });
+            })
+                    .doOnError(error -> {
+                        batchTimer.stop();
+                        this.ontology.returnAndAbortTransaction(trestleTransaction);
+                    })
+                    .doOnComplete(() -> {
+                        this.ontology.returnAndCommitTransaction(trestleTransaction);
+                        batchTimer.stop();
+                        this.bulkObjectMeter.mark(batch.size());
+                    });
+        });
+    }
+
+    private void purgeBulkObject(BulkObject object) {
+        object.cacheIRIs.forEach(individualIRI -> {
+            logger.debug("Purging {} from the cache", individualIRI);
+            trestleCache.deleteTrestleObject(individualIRI);
+        });
+        object.individuals.forEach(individual -> {
+            this.relationTracker.removeComputedRelations(individual);
+            this.equivalenceGraph.invalidate(individual);
+        });
+    }
+
+    /**
+     * Add the equals relation between the two objects to the {@link SpatialEquivalenceGraph}.
+     * If we can't get the temporals for either object, the graph is invalidated and will pick up the relation when it's reloaded
+     *
+     * @param subject - {@link Object} subject of the relation
+     * @param object  - {@link Object} object of the relation
+     */
+    private void addEqualsToGraph(Object subject, Object object) {
+        final Optional<List<TemporalObject>> subjectTemporals = this.temporalParser.getTemporalObjects(subject);
+        final Optional<List<TemporalObject>> objectTemporals = this.temporalParser.getTemporalObjects(object);
+        if (subjectTemporals.isEmpty() || objectTemporals.isEmpty()) {
+            logger.warn("Cannot get temporals for equals relation, invalidating spatial equivalence graph");
+            this.equivalenceGraph.invalidate();
+            return;
+        }
+        this.equivalenceGraph.addEquals(this.classParser.getIndividual(subject), subjectTemporals.get().get(0),
+                this.classParser.getIndividual(object), objectTemporals.get().get(0));
+    }
+
+    /**
+     * Convert the given object (and any associated objects) into the {@link OWLAxiom}s required to write it as a new Trestle_Object.
+     * This mirrors {@link TrestleObjectWriter#doSimpleObjectWrite(Object, Class, OWLNamedIndividual, TemporalObject, TemporalObject, TemporalObject)}, but does not touch the ontology,
+     * so it's safe to call in parallel.
+     *
+     * @param inputObject - {@link Object} to convert
+     * @param dTemporal   - {@link TemporalObject} database temporal to write
+     * @return - {@link BulkObject}
+     * @throws UnregisteredClassException - if the object class is not registered
+     */
+    private BulkObject buildBulkObject(Object inputObject, TemporalObject dTemporal) throws UnregisteredClassException {
+        final BulkObject bulkObject = new BulkObject(inputObject);
+        addObjectAxioms(bulkObject, inputObject, dTemporal);
+        return bulkObject;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addObjectAxioms(BulkObject bulkObject, Object inputObject, TemporalObject dTemporal) throws UnregisteredClassException {
+        final Class<?> aClass = inputObject.getClass();
+        if (!this.engineUtils.checkRegisteredClass(aClass)) {
+            throw new UnregisteredClassException(aClass);
+        }
+        final OWLNamedIndividual owlNamedIndividual = this.classParser.getIndividual(inputObject);
+        final Optional<List<TemporalObject>> temporalObjects = this.temporalParser.getTemporalObjects(inputObject);
+        if (temporalObjects.isEmpty()) {
+            throw new IllegalStateException(String.format("Cannot parse temporals for %s", owlNamedIndividual));
+        }
+        final TemporalObject objectTemporal = temporalObjects.get().get(0);
+        final TemporalObject factTemporal = objectTemporal.castTo(TemporalScope.VALID);
+
+        final OWLClass owlClass = this.classParser.getObjectClass(inputObject);
+        final List<OWLAxiom> axioms = bulkObject.axioms;
+        axioms.add(df.getOWLSubClassOfAxiom(owlClass, DATASET_CLASS));
+        axioms.add(df.getOWLClassAssertionAxiom(owlClass, owlNamedIndividual));
+        axioms.addAll(buildRequiredTemporalAxioms(objectTemporal, owlNamedIndividual));
+
+//        Facts
+        final OWLClass factClass = df.getOWLClass(factClassIRI);
+        final OWLObjectProperty hasFactProperty = df.getOWLObjectProperty(hasFactIRI);
+        for (final OWLDataPropertyAssertionAxiom property : this.classParser.getFacts(inputObject).orElse(Collections.emptyList())) {
+            final TrestleIRI factIdentifier = IRIBuilder.encodeIRI(V1,
+                    this.reasonerPrefix,
+                    owlNamedIndividual.toStringID(),
+                    property.getProperty().asOWLDataProperty().getIRI().toString(),
+                    parseTemporalToOntologyDateTime(factTemporal.getIdTemporal(), ZoneOffset.UTC),
+                    parseTemporalToOntologyDateTime(dTemporal.getIdTemporal(), ZoneOffset.UTC));
+            final OWLNamedIndividual propertyIndividual = df.getOWLNamedIndividual(factIdentifier);
+            axioms.add(df.getOWLClassAssertionAxiom(factClass, propertyIndividual));
+            axioms.add(df.getOWLDataPropertyAssertionAxiom(property.getProperty(), propertyIndividual, property.getObject()));
+            axioms.addAll(buildRequiredTemporalAxioms(factTemporal, propertyIndividual));
+            axioms.add(df.getOWLObjectPropertyAssertionAxiom(hasFactProperty, owlNamedIndividual, propertyIndividual));
+            axioms.addAll(buildRequiredTemporalAxioms(dTemporal, propertyIndividual));
+            if (this.classParser.isFactRelated(aClass, property.getProperty().asOWLDataProperty().getIRI().getShortForm())) {
+                bulkObject.updates.add(this.qb.buildContributesToQuery(owlNamedIndividual, property));
+            }
+        }
+
+//        Associated objects
+        for (final Object associatedObject : this.classParser.getAssociatedObjects(inputObject)) {
+            addObjectAxioms(bulkObject, associatedObject, dTemporal);
+        }
+        axioms.addAll(this.classParser.getObjectProperties(inputObject));
+
+//        Events
+        axioms.addAll(this.eventEngine.buildEventAxioms(TrestleEventType.CREATED, owlNamedIndividual, objectTemporal.getIdTemporal()));
+        if (!objectTemporal.isContinuing()) {
+            if (objectTemporal.isInterval()) {
+                //noinspection OptionalGetWithoutIsPresent
+                axioms.addAll(this.eventEngine.buildEventAxioms(TrestleEventType.DESTROYED, owlNamedIndividual, (Temporal) objectTemporal.asInterval().getToTime().get()));
+            } else {
+                axioms.addAll(this.eventEngine.buildEventAxioms(TrestleEventType.DESTROYED, owlNamedIndividual, objectTemporal.getIdTemporal()));
+            }
+        }
+
+        bulkObject.individuals.add(owlNamedIndividual);
+        bulkObject.cacheIRIs.add(IRIBuilder.encodeIRI(V1, this.reasonerPrefix, owlNamedIndividual.toStringID(), null,
+                parseTemporalToOntologyDateTime(factTemporal.getIdTemporal(), ZoneOffset.UTC),
+                parseTemporalToOntologyDateTime(dTemporal.getIdTemporal(), ZoneOffset.UTC)));
+    }
+
+    private List<OWLDataPropertyAssertionAxiom> buildRequiredTemporalAxioms(TemporalObject temporal, OWLNamedIndividual individual) {
+        final List<OWLDataPropertyAssertionAxiom> axioms = buildTemporalAxioms(temporal, individual);
+        if (axioms.isEmpty()) {
+            throw new IllegalStateException("Unable to write temporal");
+        }
+        return axioms;
+    }
+
     private Completable writeAssociatedObjects(Object inputObject, TemporalObject dTemporal) {
         final List<Object> associatedObjects = this.classParser.getAssociatedObjects(inputObject);
         final List<OWLObjectPropertyAssertionAxiom> objectProperties = this.classParser.getObjectProperties(inputObject);
@@ -539,7 +805,12 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
             final List<OWLDataPropertyAssertionAxiom> individualExistenceAxioms = newFactMergeScript.getIndividualExistenceAxioms();
             final String updateExistenceQuery = this.qb.updateObjectProperties(individualExistenceAxioms, trestleObjectIRI);
             final Completable existenceCompletable = this.ontology.executeUpdateSPARQL(updateExistenceQuery)
-                    .andThen(Completable.defer(() -> this.eventEngine.adjustObjectEvents(individualExistenceAxioms)));
+                    .andThen(Completable.defer(() -> this.eventEngine.adjustObjectEvents(individualExistenceAxioms)))
+                    .doOnComplete(() -> {
+                        if (!individualExistenceAxioms.isEmpty()) {
+                            this.equivalenceGraph.invalidate(owlNamedIndividual);
+                        }
+                    });
 
             return Completable.mergeArray(dbUpdateCompletable, newFactsCompletable, newFactVerionCompletable, existenceCompletable);
         }).flatMapCompletable(val -> val);
@@ -595,98 +866,63 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                 });
     }
 
-    @SuppressWarnings("unchecked")
     private Completable writeTemporal(TemporalObject temporal, OWLNamedIndividual individual) {
-//        Write the object
-//        final IRI temporalIRI = IRI.create(this.reasonerPrefix, temporal.getID());
-//        ontology.createIndividual(temporalIRI, temporalClassIRI);
-        TemporalScope scope = temporal.getScope();
-        TemporalType type = temporal.getType();
+        final List<OWLDataPropertyAssertionAxiom> axioms = buildTemporalAxioms(temporal, individual);
+        if (axioms.isEmpty()) {
+            return Completable.error(() -> new IllegalStateException("Unable to write temporal"));
+        }
+        return Observable.fromIterable(axioms)
+                .concatMapCompletable(this.ontology::writeIndividualDataProperty);
+    }
 
-//        if (overrideTemporalScope != null) {
-//            scope = overrideTemporalScope;
-//        }
+    /**
+     * Build the {@link OWLDataPropertyAssertionAxiom}s which represent the given {@link TemporalObject}
+     *
+     * @param temporal   - {@link TemporalObject} to convert
+     * @param individual - {@link OWLNamedIndividual} the temporal belongs to
+     * @return - {@link List} of {@link OWLDataPropertyAssertionAxiom}, empty if the temporal cannot be represented
+     */
+    @SuppressWarnings("unchecked")
+    private static List<OWLDataPropertyAssertionAxiom> buildTemporalAxioms(TemporalObject temporal, OWLNamedIndividual individual) {
+        final TemporalScope scope = temporal.getScope();
+        final List<OWLDataPropertyAssertionAxiom> axioms = new ArrayList<>(2);
 
 //        Write the properties using the scope and type variables set above
-        if (type == TemporalType.INTERVAL) {
+        if (temporal.getType() == TemporalType.INTERVAL) {
+            final IRI fromIRI;
+            final IRI toIRI;
             if (scope == TemporalScope.VALID) {
-//                Write from
-                return ontology.writeIndividualDataProperty(
-                        individual.getIRI(),
-                        temporalValidFromIRI,
-                        parseTemporalToOntologyDateTime(temporal.asInterval().getFromTime(), temporal.asInterval().getStartTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                        dateTimeDatatypeIRI)
-                        .andThen(Completable.defer(() -> {
-                            //                Write to, if exists
-                            final Optional<Temporal> toTime = temporal.asInterval().getToTime();
-                            if (toTime.isPresent()) {
-                                return ontology.writeIndividualDataProperty(
-                                        individual.getIRI(),
-                                        temporalValidToIRI,
-                                        parseTemporalToOntologyDateTime(toTime.get(), temporal.asInterval().getEndTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                                        dateTimeDatatypeIRI);
-                            }
-                            return Completable.complete();
-                        }));
+                fromIRI = temporalValidFromIRI;
+                toIRI = temporalValidToIRI;
             } else if (scope == TemporalScope.DATABASE) {
-                //                Write from
-                return ontology.writeIndividualDataProperty(
-                        individual.getIRI(),
-                        temporalDatabaseFromIRI,
-                        parseTemporalToOntologyDateTime(temporal.asInterval().getFromTime(), temporal.asInterval().getStartTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                        dateTimeDatatypeIRI)
-                        .andThen(Completable.defer(() -> {
-                            //                Write to, if exists
-                            final Optional<Temporal> toTime = temporal.asInterval().getToTime();
-                            if (toTime.isPresent()) {
-                                return ontology.writeIndividualDataProperty(
-                                        individual.getIRI(),
-                                        temporalDatabaseToIRI,
-                                        parseTemporalToOntologyDateTime(toTime.get(), temporal.asInterval().getEndTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                                        dateTimeDatatypeIRI);
-                            }
-                            return Completable.complete();
-                        }));
+                fromIRI = temporalDatabaseFromIRI;
+                toIRI = temporalDatabaseToIRI;
             } else {
-//                Write from
-                return ontology.writeIndividualDataProperty(
-                        individual.getIRI(),
-                        StaticIRI.temporalExistsFromIRI,
-                        parseTemporalToOntologyDateTime(temporal.asInterval().getFromTime(), temporal.asInterval().getStartTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                        dateTimeDatatypeIRI)
-                        .andThen(Completable.defer(() -> {
-                            //                Write to, if exists
-                            final Optional<Temporal> toTime = temporal.asInterval().getToTime();
-                            if (toTime.isPresent()) {
-                                return ontology.writeIndividualDataProperty(
-                                        individual.getIRI(),
-                                        StaticIRI.temporalExistsToIRI,
-                                        parseTemporalToOntologyDateTime(toTime.get(), temporal.asInterval().getEndTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                                        dateTimeDatatypeIRI);
-                            }
-                            return Completable.complete();
-                        }));
+                fromIRI = StaticIRI.temporalExistsFromIRI;
+                toIRI = StaticIRI.temporalExistsToIRI;
             }
+//            Write from
+            axioms.add(buildTemporalAxiom(individual, fromIRI, parseTemporalToOntologyDateTime(temporal.asInterval().getFromTime(), temporal.asInterval().getStartTimeZone())));
+//            Write to, if exists
+            final Optional<Temporal> toTime = temporal.asInterval().getToTime();
+            toTime.ifPresent(to -> axioms.add(buildTemporalAxiom(individual, toIRI, parseTemporalToOntologyDateTime(to, temporal.asInterval().getEndTimeZone()))));
         } else {
 //            Is point
             if (scope == TemporalScope.VALID) {
-                return ontology.writeIndividualDataProperty(
-                        individual.getIRI(),
-                        StaticIRI.temporalValidAtIRI,
-                        parseTemporalToOntologyDateTime(temporal.asPoint().getPointTime(), temporal.asPoint().getTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                        dateTimeDatatypeIRI);
+                axioms.add(buildTemporalAxiom(individual, StaticIRI.temporalValidAtIRI, parseTemporalToOntologyDateTime(temporal.asPoint().getPointTime(), temporal.asPoint().getTimeZone())));
             } else if (scope == TemporalScope.DATABASE) {
                 logger.warn("Database time cannot be a point {}", individual);
             } else {
-                return ontology.writeIndividualDataProperty(
-                        individual.getIRI(),
-                        StaticIRI.temporalExistsAtIRI,
-                        parseTemporalToOntologyDateTime(temporal.asPoint().getPointTime(), temporal.asPoint().getTimeZone()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
-                        dateTimeDatatypeIRI);
+                axioms.add(buildTemporalAxiom(individual, StaticIRI.temporalExistsAtIRI, parseTemporalToOntologyDateTime(temporal.asPoint().getPointTime(), temporal.asPoint().getTimeZone())));
             }
         }
+        return axioms;
+    }
 
-        return Completable.error(() -> new IllegalStateException("Unable to write temporal"));
+    private static OWLDataPropertyAssertionAxiom buildTemporalAxiom(OWLNamedIndividual individual, IRI propertyIRI, OffsetDateTime temporal) {
+        return df.getOWLDataPropertyAssertionAxiom(df.getOWLDataProperty(propertyIRI),
+                individual,
+                df.getOWLLiteral(temporal.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), df.getOWLDatatype(dateTimeDatatypeIRI)));
     }
 
     /**
@@ -741,4 +977,28 @@ public class TrestleObjectWriter implements ITrestleObjectWriter {
                 .doOnError(err -> this.ontology.returnAndAbortTransaction(trestleTransaction))
                 .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction));
     }
+
+    /**
+     * An object which has been converted into axioms, ready to be written by the bulk loader
+     */
+    private static class BulkObject {
+        private final Object inputObject;
+        private final List<OWLAxiom> axioms = new ArrayList<>();
+        private final List<String> updates = new ArrayList<>();
+        private final List<OWLNamedIndividual> individuals = new ArrayList<>();
+        private final List<TrestleIRI> cacheIRIs = new ArrayList<>();
+
+        private BulkObject(Object inputObject) {
+            this.inputObject = inputObject;
+        }
+
+        /**
+         * Get the individual of the input object, which is added after the individuals of any of its associated objects
+         *
+         * @return - {@link OWLNamedIndividual}
+         */
+        private OWLNamedIndividual getIndividual() {
+            return this.individuals.get(this.individuals.size() - 1);
+        }
+    }
 }
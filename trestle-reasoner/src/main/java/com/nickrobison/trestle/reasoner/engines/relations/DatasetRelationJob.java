@@ -0,0 +1,292 @@
+package com.nickrobison.trestle.reasoner.engines.relations;
+
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectReader;
+import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectWriter;
+import com.nickrobison.trestle.reasoner.engines.spatial.SpatialComparisonReport;
+import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngine;
+import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngineUtils;
+import com.nickrobison.trestle.reasoner.engines.temporal.TemporalComparisonReport;
+import com.nickrobison.trestle.reasoner.engines.temporal.TemporalEngine;
+import com.nickrobison.trestle.reasoner.parser.TrestleParser;
+import com.nickrobison.trestle.transactions.TrestleTransaction;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.semanticweb.owlapi.model.HasIRI;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the spatial and temporal relationships between all the objects of a given dataset class.
+ * <p>
+ * Rather than intersecting each object against the database (as {@link RelationCalculator} does),
+ * the job reads all the objects once, builds an in-memory {@link STRtree} of their envelopes and compares each pair of objects whose envelopes intersect.
+ * The comparisons are run in parallel, and the resulting relationships are written in batches, each batch in a single transaction.
+ * <p>
+ * Each pair is only computed once, pairs which have already been written (either by this job, or recorded in the {@link RelationTracker}) are skipped.
+ * The pairs are recorded in a checkpoint file (in {@code trestle.relations.checkpointDirectory}) after each batch commits,
+ * so if the job fails, calling {@link #run()} again (or running a new job for the same class and temporal, e.g. after a restart) resumes from the last written batch.
+ * The checkpoint is removed once the job completes.
+ *
+ * @param <T> - Java class of dataset objects
+ */
+public class DatasetRelationJob<T extends @NonNull Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetRelationJob.class);
+    private static final double MATCH_THRESHOLD = 0.9;
+
+    private final ITrestleOntology ontology;
+    private final ITrestleObjectReader objectReader;
+    private final ITrestleObjectWriter objectWriter;
+    private final SpatialEngine spatialEngine;
+    private final TemporalEngine temporalEngine;
+    private final RelationTracker relationTracker;
+    private final TrestleParser trestleParser;
+    private final Scheduler comparisonScheduler;
+    private final Class<T> clazz;
+    private final @Nullable Temporal validAt;
+    private final int writeBatchSize;
+    private final long progressInterval;
+
+    private final RelationCheckpoint checkpoint;
+    //    Pairs written by this job, or loaded from the checkpoint
+    private final Set<RelationPair> completed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong candidatePairs = new AtomicLong();
+    private final AtomicLong comparedPairs = new AtomicLong();
+    private final AtomicLong writtenRelations = new AtomicLong();
+
+    public DatasetRelationJob(ITrestleOntology ontology, ITrestleObjectReader objectReader, ITrestleObjectWriter objectWriter, SpatialEngine spatialEngine, TemporalEngine temporalEngine, RelationTracker tracker, TrestleParser parser, Scheduler comparisonScheduler, Class<T> clazz, @Nullable Temporal validAt) {
+        this(ontology, objectReader, objectWriter, spatialEngine, temporalEngine, tracker, parser, comparisonScheduler, clazz, validAt, createCheckpoint(clazz, validAt));
+    }
+
+    DatasetRelationJob(ITrestleOntology ontology, ITrestleObjectReader objectReader, ITrestleObjectWriter objectWriter, SpatialEngine spatialEngine, TemporalEngine temporalEngine, RelationTracker tracker, TrestleParser parser, Scheduler comparisonScheduler, Class<T> clazz, @Nullable Temporal validAt, RelationCheckpoint checkpoint) {
+        this.ontology = ontology;
+        this.objectReader = objectReader;
+        this.objectWriter = objectWriter;
+        this.spatialEngine = spatialEngine;
+        this.temporalEngine = temporalEngine;
+        this.relationTracker = tracker;
+        this.trestleParser = parser;
+        this.comparisonScheduler = comparisonScheduler;
+        this.clazz = clazz;
+        this.validAt = validAt;
+        final Config config = ConfigFactory.load().getConfig("trestle.relations");
+        this.writeBatchSize = config.getInt("writeBatchSize");
+        this.progressInterval = config.getLong("progressInterval");
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Run (or resume) the job
+     *
+     * @return - {@link Completable} when all the relationships have been written
+     */
+    public Completable run() {
+        final OWLClass datasetClass = this.trestleParser.classParser.getObjectClass(this.clazz);
+        final int srid = this.trestleParser.classParser.getClassProjection(this.clazz);
+        this.candidatePairs.set(0);
+        this.comparedPairs.set(0);
+
+        return Completable.fromAction(this::loadCheckpoint)
+                .andThen(Single.defer(() -> readObjects(datasetClass)))
+                .flatMapCompletable(objects -> computeRelations(objects, srid))
+                .andThen(Completable.fromAction(() -> {
+                    this.checkpoint.delete();
+                    logger.debug("Removed checkpoint {}", this.checkpoint.getFile());
+                }));
+    }
+
+    /**
+     * Number of candidate pairs (with intersecting envelopes) found during the current run
+     *
+     * @return - number of candidate pairs
+     */
+    public long getCandidatePairs() {
+        return this.candidatePairs.get();
+    }
+
+    /**
+     * Number of pairs compared during the current run
+     *
+     * @return - number of compared pairs
+     */
+    public long getComparedPairs() {
+        return this.comparedPairs.get();
+    }
+
+    /**
+     * Number of pairs which have been compared and written, across all runs of the job (including any runs recorded in the checkpoint)
+     *
+     * @return - number of completed pairs
+     */
+    public long getCompletedPairs() {
+        return this.completed.size();
+    }
+
+    /**
+     * Number of relationships written, across all runs of the job
+     *
+     * @return - number of relationships written
+     */
+    public long getWrittenRelations() {
+        return this.writtenRelations.get();
+    }
+
+    private void loadCheckpoint() throws IOException {
+        final Set<RelationPair> pairs = this.checkpoint.load();
+        if (!pairs.isEmpty()) {
+            logger.info("Resuming from checkpoint {} with {} completed pairs", this.checkpoint.getFile(), pairs.size());
+            this.completed.addAll(pairs);
+        }
+    }
+
+    private Single<List<T>> readObjects(OWLClass datasetClass) {
+        final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(false);
+        return this.ontology.getInstances(datasetClass, true)
+                .map(HasIRI::getIRI)
+                .toList()
+                .flatMap(individuals -> this.objectReader.readTrestleObjects(this.clazz, individuals, false, this.validAt, null, true, tt).toList())
+                .doOnSuccess(objects -> this.ontology.returnAndCommitTransaction(tt))
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(tt));
+    }
+
+    private Completable computeRelations(List<T> objects, int srid) {
+        logger.info("Building spatial index of {} objects", objects.size());
+        final List<IRI> individuals = new ArrayList<>(objects.size());
+        final List<Envelope> envelopes = new ArrayList<>(objects.size());
+        final STRtree tree = new STRtree();
+        for (int i = 0; i < objects.size(); i++) {
+            final T object = objects.get(i);
+            final Envelope envelope = SpatialEngineUtils.buildObjectGeometry(object, srid).getEnvelopeInternal();
+            individuals.add(this.trestleParser.classParser.getIndividual(object).getIRI());
+            envelopes.add(envelope);
+            tree.insert(envelope, i);
+        }
+        tree.build();
+
+        return Flowable.range(0, objects.size())
+                .concatMapIterable(subject -> findCandidates(tree, subject, envelopes, individuals))
+                .doOnNext(pair -> this.candidatePairs.incrementAndGet())
+                .parallel()
+                .runOn(this.comparisonScheduler)
+                .map(pair -> compare(objects.get(pair[0]), objects.get(pair[1])))
+                .sequential()
+                .buffer(this.writeBatchSize)
+                .concatMapCompletable(this::writeBatch)
+                .doOnComplete(() -> logger.info("Computed relationships for {} pairs, wrote {} relationships", this.comparedPairs.get(), this.writtenRelations.get()));
+    }
+
+    /**
+     * Find the candidate objects whose envelopes intersect the given subject.
+     * Each pair is only returned for the lower index of the two objects, and pairs which have already been computed are skipped
+     */
+    private List<int[]> findCandidates(STRtree tree, int subject, List<Envelope> envelopes, List<IRI> individuals) {
+        final List<int[]> candidates = new ArrayList<>();
+        for (final Object item : tree.query(envelopes.get(subject))) {
+            final int object = (Integer) item;
+            if (object <= subject) {
+                continue;
+            }
+            final IRI subjectIRI = individuals.get(subject);
+            final IRI objectIRI = individuals.get(object);
+            if (this.completed.contains(new RelationPair(subjectIRI, objectIRI)) || this.relationTracker.hasRelation(subjectIRI, objectIRI)) {
+                continue;
+            }
+            candidates.add(new int[]{subject, object});
+        }
+        return candidates;
+    }
+
+    private PairComparison<T> compare(T subject, T object) {
+        final SpatialComparisonReport spatialReport = this.spatialEngine.compareTrestleObjects(subject, object, MATCH_THRESHOLD);
+        final TemporalComparisonReport temporalReport = this.temporalEngine.compareObjects(subject, object);
+        final long compared = this.comparedPairs.incrementAndGet();
+        if (compared % this.progressInterval == 0) {
+            logger.info("Compared {} of {} candidate pairs", compared, this.candidatePairs.get());
+        }
+        return new PairComparison<>(subject, object, spatialReport, temporalReport);
+    }
+
+    /**
+     * Write all the relationships (and overlaps) for the batch in a single transaction, and then checkpoint the pairs as completed
+     */
+    private Completable writeBatch(List<PairComparison<T>> batch) {
+        final List<Completable> writes = new ArrayList<>();
+        final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(true);
+        int relationCount = 0;
+        for (final PairComparison<T> comparison : batch) {
+//            Only write the pairs which are spatially related, as the RelationCalculator does
+            if (comparison.spatialReport.getRelations().isEmpty()) {
+                continue;
+            }
+            comparison.spatialReport.getRelations().forEach(relation -> writes.add(this.objectWriter.writeObjectRelationship(comparison.subject, comparison.object, relation, tt)));
+            comparison.spatialReport.getSpatialOverlap().ifPresent(overlap -> writes.add(this.objectWriter.writeSpatialOverlap(comparison.subject, comparison.object, overlap, tt)));
+            comparison.temporalReport.getRelations().forEach(relation -> writes.add(this.objectWriter.writeObjectRelationship(comparison.subject, comparison.object, relation, tt)));
+            relationCount += comparison.spatialReport.getRelations().size() + comparison.temporalReport.getRelations().size();
+        }
+        final int batchRelations = relationCount;
+        return Completable.concat(writes)
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(tt))
+                .andThen(Completable.fromAction(() -> {
+                    this.ontology.returnAndCommitTransaction(tt);
+                    completeBatch(batch, batchRelations);
+                }));
+    }
+
+    /**
+     * Record the pairs of a committed batch in the checkpoint, and then mark them as completed
+     * If the job dies between the commit and the checkpoint, the batch is recomputed (and rewritten) when the job is resumed.
+     */
+    private void completeBatch(List<PairComparison<T>> batch, int batchRelations) throws IOException {
+        final List<RelationPair> pairs = new ArrayList<>(batch.size());
+        for (final PairComparison<T> comparison : batch) {
+            final IRI subjectIRI = this.trestleParser.classParser.getIndividual(comparison.subject).getIRI();
+            final IRI objectIRI = this.trestleParser.classParser.getIndividual(comparison.object).getIRI();
+            pairs.add(new RelationPair(subjectIRI, objectIRI));
+            this.relationTracker.addRelation(subjectIRI, objectIRI);
+        }
+        this.checkpoint.record(pairs);
+        this.completed.addAll(pairs);
+        final long written = this.writtenRelations.addAndGet(batchRelations);
+        logger.debug("Wrote batch of {} pairs, {} relationships written", batch.size(), written);
+    }
+
+    private static RelationCheckpoint createCheckpoint(Class<?> clazz, @Nullable Temporal validAt) {
+        final String directory = ConfigFactory.load().getString("trestle.relations.checkpointDirectory");
+        final String name = validAt == null ? clazz.getName() : String.format("%s-%s", clazz.getName(), validAt);
+        return new RelationCheckpoint(Paths.get(directory, String.format("%s.checkpoint", name.replaceAll("[^A-Za-z0-9._-]", "_"))));
+    }
+
+    private static class PairComparison<T> {
+        private final T subject;
+        private final T object;
+        private final SpatialComparisonReport spatialReport;
+        private final TemporalComparisonReport temporalReport;
+
+        private PairComparison(T subject, T object, SpatialComparisonReport spatialReport, TemporalComparisonReport temporalReport) {
+            this.subject = subject;
+            this.object = object;
+            this.spatialReport = spatialReport;
+            this.temporalReport = temporalReport;
+        }
+    }
+}
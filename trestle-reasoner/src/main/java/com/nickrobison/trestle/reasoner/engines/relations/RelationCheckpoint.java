@@ -0,0 +1,107 @@
+package com.nickrobison.trestle.reasoner.engines.relations;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append-only file of the object pairs whose relationships have been committed by a {@link DatasetRelationJob}, so that the job can be resumed after a failure (or restart).
+ * <p>
+ * Each pair is written on its own line, as the two individual IRIs separated by a tab, and the file is synced to disk after each batch.
+ * A line which was only partially written (because the process died mid-write) is ignored when loading.
+ */
+final class RelationCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelationCheckpoint.class);
+    private static final char SEPARATOR = '\t';
+    private static final char NEWLINE = '\n';
+
+    private final Path file;
+
+    RelationCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Load all the pairs recorded in the checkpoint
+     *
+     * @return - {@link Set} of {@link RelationPair}, empty if there's no checkpoint
+     * @throws IOException - if the checkpoint cannot be read
+     */
+    Set<RelationPair> load() throws IOException {
+        final Set<RelationPair> pairs = new HashSet<>();
+        if (!Files.exists(this.file)) {
+            return pairs;
+        }
+        final String contents = new String(Files.readAllBytes(this.file), StandardCharsets.UTF_8);
+//        Anything after the last newline is a partial write
+        final int end = contents.lastIndexOf(NEWLINE);
+        if (end < contents.length() - 1) {
+            logger.warn("Ignoring partially written pair at the end of checkpoint {}", this.file);
+        }
+        if (end < 0) {
+            return pairs;
+        }
+        for (final String line : contents.substring(0, end).split(String.valueOf(NEWLINE))) {
+            final int separator = line.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == line.length() - 1) {
+                logger.warn("Ignoring malformed line in checkpoint {}: {}", this.file, line);
+                continue;
+            }
+            pairs.add(new RelationPair(IRI.create(line.substring(0, separator)), IRI.create(line.substring(separator + 1))));
+        }
+        logger.debug("Loaded {} completed pairs from checkpoint {}", pairs.size(), this.file);
+        return pairs;
+    }
+
+    /**
+     * Append the given pairs to the checkpoint, and sync it to disk
+     *
+     * @param pairs - {@link Collection} of {@link RelationPair} to record
+     * @throws IOException - if the pairs cannot be written
+     */
+    void record(Collection<RelationPair> pairs) throws IOException {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (final RelationPair pair : pairs) {
+            builder.append(pair.getFirst()).append(SEPARATOR).append(pair.getSecond()).append(NEWLINE);
+        }
+        final Path parent = this.file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Remove the checkpoint, once the job has completed
+     *
+     * @throws IOException - if the checkpoint cannot be deleted
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+}
@@ -0,0 +1,53 @@
+package com.nickrobison.trestle.reasoner.engines.relations;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.semanticweb.owlapi.model.IRI;
+
+/**
+ * Unordered pair of individual {@link IRI}s, used to record which relationships have already been computed.
+ * Unlike combining the hashes of the two IRIs, the pair compares the full IRIs, so distinct pairs never collide.
+ * The IRIs are stored in sorted order, so (a, b) is equal to (b, a).
+ */
+final class RelationPair {
+
+    private final String first;
+    private final String second;
+
+    RelationPair(IRI subject, IRI object) {
+        final String subjectID = subject.toString();
+        final String objectID = object.toString();
+        if (subjectID.compareTo(objectID) <= 0) {
+            this.first = subjectID;
+            this.second = objectID;
+        } else {
+            this.first = objectID;
+            this.second = subjectID;
+        }
+    }
+
+    String getFirst() {
+        return this.first;
+    }
+
+    String getSecond() {
+        return this.second;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final RelationPair that = (RelationPair) o;
+        return first.equals(that.first) && second.equals(that.second);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * first.hashCode() + second.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%s, %s)", first, second);
+    }
+}
@@ -1,24 +1,31 @@
 package com.nickrobison.trestle.reasoner.engines.relations;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by nickrobison on 7/21/18.
+ * <p>
+ * Computed relations are indexed by each of the two objects, so removing the relations of an object only touches that object's partners,
+ * rather than scanning every recorded pair.
+ * A pair is only reported as computed while it's recorded for both objects, so a pair that is part way through being removed is never reported.
  */
 public class RelationTrackerImpl implements RelationTracker {
 
     private final static Logger logger = LoggerFactory.getLogger(RelationTrackerImpl.class);
 
-    private final Set<Integer> cache;
+    //    Object IRI -> IRIs of the objects it has computed relations with
+    private final Map<String, Set<String>> relations;
 
     RelationTrackerImpl() {
-        this.cache = ConcurrentHashMap.newKeySet();
+        this.relations = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -28,9 +35,9 @@ public class RelationTrackerImpl implements RelationTracker {
 
     @Override
     public boolean hasRelation(IRI subject, IRI object) {
-        final int hash = subject.hashCode() ^ object.hashCode();
-
-        return this.cache.contains(hash);
+        final String subjectID = subject.toString();
+        final String objectID = object.toString();
+        return isRecorded(subjectID, objectID) && isRecorded(objectID, subjectID);
     }
 
     @Override
@@ -40,18 +47,42 @@ public class RelationTrackerImpl implements RelationTracker {
 
     @Override
     public void addRelation(IRI subject, IRI object) {
-        final int hash = subject.hashCode() ^ object.hashCode();
-
-        this.cache.add(hash);
+        final String subjectID = subject.toString();
+        final String objectID = object.toString();
+        record(subjectID, objectID);
+        record(objectID, subjectID);
     }
 
     @Override
     public void removeComputedRelations(OWLNamedIndividual object) {
-        logger.warn("Removing relations is not implemented yet");
+        removeComputedRelations(object.getIRI());
     }
 
     @Override
     public void removeComputedRelations(IRI object) {
-        logger.warn("Removing relations is not implemented yet");
+        logger.debug("Removing computed relations for {}", object);
+        final String objectID = object.toString();
+        final @Nullable Set<String> partners = this.relations.remove(objectID);
+        if (partners == null) {
+            return;
+        }
+        partners.forEach(partner -> this.relations.computeIfPresent(partner, (key, partnerRelations) -> {
+            partnerRelations.remove(objectID);
+            return partnerRelations.isEmpty() ? null : partnerRelations;
+        }));
+    }
+
+    private boolean isRecorded(String from, String to) {
+        final @Nullable Set<String> partners = this.relations.get(from);
+        return partners != null && partners.contains(to);
+    }
+
+    private void record(String from, String to) {
+//        Add inside compute, so we can't add to a set which is concurrently being dropped
+        this.relations.compute(from, (key, partners) -> {
+            final Set<String> updated = partners == null ? ConcurrentHashMap.newKeySet() : partners;
+            updated.add(to);
+            return updated;
+        });
     }
 }
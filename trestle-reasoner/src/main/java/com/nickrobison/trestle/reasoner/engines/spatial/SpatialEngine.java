@@ -6,6 +6,7 @@ import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.ontology.exceptions.MissingOntologyEntity;
 import com.nickrobison.trestle.querybuilder.QueryBuilder;
 import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import com.nickrobison.trestle.reasoner.caching.GeometryCache;
 import com.nickrobison.trestle.reasoner.engines.IndividualEngine;
 import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectReader;
 import com.nickrobison.trestle.reasoner.engines.object.ObjectEngineUtils;
@@ -27,6 +28,7 @@ import io.reactivex.rxjava3.core.Single;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.locationtech.jts.io.WKTWriter;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLClass;
@@ -35,14 +37,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import si.uom.SI;
 
-import javax.cache.Cache;
 import javax.inject.Inject;
 import javax.measure.Unit;
 import javax.measure.quantity.Length;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.Temporal;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -61,7 +61,7 @@ public class SpatialEngine implements ITrestleSpatialEngine {
     private final EqualityEngine equalityEngine;
     private final ContainmentEngine containmentEngine;
     private final TrestleExecutorService spatialPool;
-    private final Cache<Integer, Geometry> geometryCache;
+    private final GeometryCache geometryCache;
 
 
     @Inject
@@ -74,7 +74,7 @@ public class SpatialEngine implements ITrestleSpatialEngine {
                          EqualityEngine equalityEngine,
                          ContainmentEngine containmentEngine,
                          TrestleExecutorFactory factory,
-                         Cache<Integer, Geometry> cache) {
+                         GeometryCache cache) {
         this.tp = trestleParser;
         this.qb = qb;
         this.ontology = ontology;
@@ -160,7 +160,8 @@ public class SpatialEngine implements ITrestleSpatialEngine {
                 .map(result -> result.unwrapIndividual("m"))
                 .flatMapSingle(individual -> this.individualEngine.getTrestleIndividual(individual.asOWLNamedIndividual(), trestleTransaction))
                 .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction))
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction));
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+                .doOnCancel(() -> this.ontology.returnAndAbortTransaction(trestleTransaction));
     }
 
 
@@ -182,7 +183,7 @@ public class SpatialEngine implements ITrestleSpatialEngine {
     @Override
     public <T extends @NonNull Object> Flowable<T> spatialIntersectObject(T inputObject, double buffer, Unit<Length> bufferUnit, @Nullable Temporal temporalAt, @Nullable Temporal dbAt, @Nullable TrestleTransaction transaction) {
         // Reproject the input object into WGS 84, which is what the underlying ontologies use
-        final Geometry projectedGeom = SpatialEngineUtils.reprojectObject(inputObject, this.tp.classParser.getClassProjection(inputObject.getClass()), 4326, this.geometryCache);
+        final Geometry projectedGeom = this.geometryCache.getGeometry(inputObject, this.tp.classParser.getClassProjection(inputObject.getClass()), 4326);
         final WKTWriter writer = new WKTWriter();
         final String wkt = writer.write(projectedGeom);
         //noinspection unchecked
@@ -240,13 +241,14 @@ public class SpatialEngine implements ITrestleSpatialEngine {
                 // Otherwise, the nested SPARQL queries collide and block
                 // Even if we return a million elements, that's probably fine because it's just a list of IDs
                 .toList()
-                .flattenStreamAsFlowable(Collection::stream)
-                .flatMapSingle(iri -> this.objectReader.readTrestleObject(clazz, iri, false, atTemporal, dbTemporal, trestleTransaction))
+                .flatMapPublisher(iris -> this.objectReader.readTrestleObjects(clazz, iris, false, atTemporal, dbTemporal, false, trestleTransaction))
                 .doOnComplete(() -> {
                     this.ontology.returnAndCommitTransaction(trestleTransaction);
                     logger.debug("Closing transaction, {} are still open", this.ontology.getCurrentlyOpenTransactions());
                 })
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction));
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+//                Streaming consumers (e.g. the HTTP endpoints) cancel when the client goes away
+                .doOnCancel(() -> this.ontology.returnAndAbortTransaction(trestleTransaction));
     }
 
 
@@ -265,16 +267,17 @@ public class SpatialEngine implements ITrestleSpatialEngine {
         final SpatialComparisonReport spatialComparisonReport = new SpatialComparisonReport(objectAID, objectBID);
 
         //        Build the geometries
-        final Geometry aPolygon = SpatialEngineUtils.getGeomFromCache(objectA, aSRID, this.geometryCache);
-        final Geometry bPolygon = SpatialEngineUtils.getGeomFromCache(objectB, bSRID, this.geometryCache);
+        final PreparedGeometry preparedA = this.geometryCache.getPreparedGeometry(objectA, aSRID);
+        final Geometry aPolygon = preparedA.getGeometry();
+        final Geometry bPolygon = this.geometryCache.getGeometry(objectB, bSRID);
 
 //        Reproject to coordinate system of Geometry A
         logger.debug("Potentially reprojecting {} from {} to {}", objectBID, bSRID, aSRID);
-        final Geometry transformedB = SpatialEngineUtils.reprojectGeometry(bPolygon, bSRID, aSRID, this.geometryCache, objectB.hashCode());
+        final Geometry transformedB = this.geometryCache.getGeometry(objectB, bSRID, aSRID);
 
 
         //        If they're disjoint, return
-        if (aPolygon.disjoint(transformedB)) {
+        if (preparedA.disjoint(transformedB)) {
             return spatialComparisonReport;
         }
 
@@ -286,7 +289,7 @@ public class SpatialEngine implements ITrestleSpatialEngine {
         }
 
 //        Meets
-        if (aPolygon.touches(transformedB)) {
+        if (preparedA.touches(transformedB)) {
             logger.debug("{} touches {}", objectA, objectB);
             spatialComparisonReport.addRelation(ObjectRelation.SPATIAL_MEETS);
 //            Contains means totally inside, without any touching of the perimeter
@@ -298,14 +301,14 @@ public class SpatialEngine implements ITrestleSpatialEngine {
 //                            .orElseThrow(() -> new IllegalStateException("Can't parse Polygon")),
 //                    calculateOverlapPercentage(aPolygon, bPolygon));
 //            //            Covers catches all contains relationships that also allow for touching the perimeter
-        } else if (aPolygon.covers(transformedB)) {
+        } else if (preparedA.covers(transformedB)) {
             logger.debug("{} covers {}", objectA, objectB);
             spatialComparisonReport.addRelation(ObjectRelation.COVERS);
 //            Also add an overlap, since the overlap is total
             spatialComparisonReport.addSpatialOverlap(SpatialParser.parseWKTFromGeom(bPolygon)
                             .orElseThrow(() -> new IllegalStateException("Can't parse Polygon")),
                     calculateOverlapPercentage(aPolygon, bPolygon));
-        } else if (aPolygon.intersects(transformedB)) { // Overlaps
+        } else if (preparedA.intersects(transformedB)) { // Overlaps
             logger.debug("Found overlap between {} and {}", objectA, objectB);
             final Geometry intersection = aPolygon.intersection(bPolygon);
             spatialComparisonReport.addSpatialOverlap(SpatialParser.parseWKTFromGeom(intersection)
@@ -368,7 +371,9 @@ public class SpatialEngine implements ITrestleSpatialEngine {
                                 .flatMap(temporal -> this.getAdjustedIndividual(datasetID, id, temporal, trestleTransaction)))
                         .map(objectB -> this.compareTrestleObjects(objectA, objectB, matchThreshold)))
                 .doOnComplete(() -> this.ontology.returnAndCommitTransaction(trestleTransaction))
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction));
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction))
+//                Streaming consumers (e.g. the HTTP endpoints) cancel when the client goes away
+                .doOnCancel(() -> this.ontology.returnAndAbortTransaction(trestleTransaction));
     }
 
 
@@ -1,28 +1,24 @@
 package com.nickrobison.trestle.reasoner.engines.spatial;
 
-import com.codahale.metrics.annotation.Metered;
 import com.esri.core.geometry.OperatorExportToWkb;
 import com.esri.core.geometry.Polygon;
 import com.nickrobison.trestle.common.exceptions.TrestleInvalidDataException;
 import com.nickrobison.trestle.reasoner.parser.SpatialParser;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.util.GeometryTransformer;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKBReader;
 import org.locationtech.jts.io.WKTReader;
 import org.locationtech.jts.io.WKTWriter;
-import org.checkerframework.checker.nullness.qual.Nullable;
-import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.CRS;
 import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.cache.Cache;
 import javax.measure.UnitConverter;
 import javax.measure.quantity.Length;
 import javax.measure.Unit;
@@ -42,45 +38,9 @@ public class SpatialEngineUtils {
 //        UNUSED
     }
 
-    /**
-     * Re-project input {@link Geometry} into the given SRID
-     * Adding to the provided {@link Cache}
-     *
-     * @param inputObject   - {@link Object} to reproject
-     * @param inputSRID     - {@link Integer} SRID of input geometry
-     * @param outputSRID    - {@link Integer} SRID to project into
-     * @param geometryCache - {@link Cache} cache to add value to
-     * @return - {@link Geometry} reprojected
-     */
-    public static Geometry reprojectObject(Object inputObject, int inputSRID, int outputSRID, Cache<Integer, Geometry> geometryCache) {
-
-        final int hashCode = inputObject.hashCode();
-
-//        Check to see if we already have a reprojected geometry, or an original one
-//        Reprojected first
-        final Geometry cachedProjectedGeom = geometryCache.get(hashCode + outputSRID);
-        if (cachedProjectedGeom != null) {
-            return cachedProjectedGeom;
-        }
-
-//        Original next
-        final Geometry originalGeom;
-        if (geometryCache.containsKey(hashCode + inputSRID)) {
-            originalGeom = geometryCache.get(hashCode + inputSRID);
-        } else {
-            originalGeom = SpatialEngineUtils.buildObjectGeometry(inputObject, inputSRID);
-//            Add to cache
-            geometryCache.put(hashCode + inputSRID, originalGeom);
-        }
-        final Geometry projectedGeom = reprojectGeometry(originalGeom, inputSRID, outputSRID, null, null);
-//        Add it to the cache, and return the value
-        geometryCache.put(hashCode + outputSRID, projectedGeom);
-        return projectedGeom;
-    }
-
     /**
      * Reproject input {@link Geometry} into the given SRID
-     * Optionally, adding to the provided {@link Cache}
+     * The {@link MathTransform} is retrieved from the {@link TransformRegistry}, and each coordinate sequence is transformed in a single bulk call
      *
      * @param inputGeom  - {@link Geometry} to reproject
      * @param inputSRID  - {@link Integer} SRID of input geometry
@@ -88,80 +48,29 @@ public class SpatialEngineUtils {
      * @return - {@link Geometry} reprojected
      */
     public static Geometry reprojectGeometry(Geometry inputGeom, int inputSRID, int outputSRID) {
-        return reprojectGeometry(inputGeom, inputSRID, outputSRID, null, null);
-    }
-
-    /**
-     * Reproject input {@link Geometry} into the given SRID
-     * Optionally, adding to the provided {@link Cache}
-     *
-     * @param inputGeom      - {@link Geometry} to reproject
-     * @param inputSRID      - {@link Integer} SRID of input geometry
-     * @param outputSRID     - {@link Integer} SRID to project into
-     * @param geometryCache  - {@link Cache} optional cache to add value to
-     * @param objectHashCode - {@link Integer} object hash code to use as key
-     * @return - {@link Geometry} reprojected
-     */
-    public static Geometry reprojectGeometry(Geometry inputGeom, int inputSRID, int outputSRID, @Nullable Cache<Integer, Geometry> geometryCache, @Nullable Integer objectHashCode) {
 
 //        If we're the same, don't reproject
         if (inputSRID == outputSRID) {
             return inputGeom;
         }
 
-//        See if we already have a reprojected geom
-        if (geometryCache != null && objectHashCode != null) {
-            final Geometry geometry = geometryCache.get(objectHashCode + outputSRID);
-            if (geometry != null) {
-                return geometry;
-            }
-        }
         final Geometry transformedGeom;
         try {
-//          Make sure we force longitude first mode
-            final CoordinateReferenceSystem inputCRS = CRS.decode("EPSG:" + inputSRID, true);
-            final CoordinateReferenceSystem outputCRS = CRS.decode("EPSG:" + outputSRID, true);
-
-            final MathTransform mathTransform = CRS.findMathTransform(inputCRS, outputCRS, true);
-            transformedGeom = JTS.transform(inputGeom, mathTransform);
+            final MathTransform mathTransform = TransformRegistry.getTransform(inputSRID, outputSRID);
+            transformedGeom = new PackedSequenceTransformer(mathTransform).transform(inputGeom);
         } catch (FactoryException e) {
             final String projectionError = String.format("Cannot find transformation from %s to %s", inputSRID, outputSRID);
             logger.error(projectionError, e);
             throw new IllegalStateException(projectionError);
-        } catch (TransformException e) {
+        } catch (PackedTransformException e) {
             final String transformError = String.format("Cannot re-project %s into %s", inputSRID, outputSRID);
-            logger.error(transformError, e);
+            logger.error(transformError, e.getCause());
             throw new IllegalStateException(transformError);
         }
 
-        //        Add the transformed Polygon to the cache
-        if (geometryCache != null && objectHashCode != null) {
-            geometryCache.put(objectHashCode + outputSRID, transformedGeom);
-        }
         return transformedGeom;
     }
 
-    /**
-     * Get the object {@link Geometry}, in the specified projection from the provided cache, computing if absent
-     * Object keys are built by calling {@link Object#hashCode()} and adding to the projection SRID to it
-     *
-     * @param object        - {@link Object inputObject}
-     * @param srid          - {@link Integer} srid
-     * @param geometryCache - {@link Cache} of pre-computed geometries to use
-     * @return - {@link Geometry}
-     */
-    public static Geometry getGeomFromCache(Object object, int srid, Cache<Integer, Geometry> geometryCache) {
-        final int objectKey = object.hashCode() + srid;
-        final Geometry value = geometryCache.get(objectKey);
-
-        if (value == null) {
-            final Geometry geometry = computeGeometry(object, srid);
-            geometryCache.put(objectKey, geometry);
-            return geometry;
-        }
-        return value;
-    }
-
     /**
      * Add Buffer to WKT value
      * If Buffer amount is 0, the original WKT is returned
@@ -190,20 +99,6 @@ public class SpatialEngineUtils {
         return wkt;
     }
 
-    /**
-     * Compute {@link Geometry} for the given {@link Object}
-     *
-     * @param object  - {@link Object} to get Geometry from
-     * @param inputSR - {@link Integer} input spatial reference
-     * @return - {@link Geometry}
-     */
-    @Metered(name = "geometry-calculation-meter")
-    private static Geometry computeGeometry(Object object, int inputSR) {
-        logger.trace("Cache miss for {}, computing", object);
-        return SpatialEngineUtils.buildObjectGeometry(object, inputSR);
-    }
-
-
     /**
      * Compute {@link Geometry} for the given {@link Object}
      *
@@ -230,6 +125,18 @@ public class SpatialEngineUtils {
         return parseJTSGeometry(SpatialParser.getSpatialValue(object), wktReader, wkbReader);
     }
 
+    /**
+     * Build a {@link Geometry} from a spatial value (WKT {@link String}, ESRI {@link Polygon} or JTS {@link Geometry}) using the provided Readers
+     *
+     * @param spatialValue - {@link Object} representing a spatial value
+     * @param wktReader    - {@link WKTReader} to use
+     * @param wkbReader    - {@link WKBReader} to use
+     * @return - {@link Geometry}
+     */
+    public static Geometry parseSpatialValue(Object spatialValue, WKTReader wktReader, WKBReader wkbReader) {
+        return parseJTSGeometry(Optional.of(spatialValue), wktReader, wkbReader);
+    }
+
     /**
      * Returns a new {@link WKTReader} for the specified SRID
      *
@@ -292,4 +199,53 @@ public class SpatialEngineUtils {
             throw new TrestleInvalidDataException(e.getMessage(), spatial);
         }
     }
+
+    /**
+     * {@link GeometryTransformer} which packs each {@link CoordinateSequence} into a flat XY array,
+     * so the entire sequence can be transformed in a single call to the {@link MathTransform}, rather than one call per coordinate
+     * Any additional ordinates (Z/M) are copied through unchanged.
+     */
+    private static class PackedSequenceTransformer extends GeometryTransformer {
+
+        private final MathTransform transform;
+
+        private PackedSequenceTransformer(MathTransform transform) {
+            this.transform = transform;
+        }
+
+        @Override
+        protected CoordinateSequence transformCoordinates(CoordinateSequence coords, Geometry parent) {
+            final int size = coords.size();
+            final double[] packed = new double[size * 2];
+            for (int i = 0; i < size; i++) {
+                packed[i * 2] = coords.getX(i);
+                packed[i * 2 + 1] = coords.getY(i);
+            }
+            try {
+                this.transform.transform(packed, 0, packed, 0, size);
+            } catch (TransformException e) {
+                throw new PackedTransformException(e);
+            }
+
+            final int dimension = coords.getDimension();
+            final CoordinateSequence transformed = this.factory.getCoordinateSequenceFactory().create(size, dimension, coords.getMeasures());
+            for (int i = 0; i < size; i++) {
+                transformed.setOrdinate(i, CoordinateSequence.X, packed[i * 2]);
+                transformed.setOrdinate(i, CoordinateSequence.Y, packed[i * 2 + 1]);
+                for (int ordinate = 2; ordinate < dimension; ordinate++) {
+                    transformed.setOrdinate(i, ordinate, coords.getOrdinate(i, ordinate));
+                }
+            }
+            return transformed;
+        }
+    }
+
+    /**
+     * Unchecked wrapper, so that a {@link TransformException} can escape from the {@link GeometryTransformer}
+     */
+    private static class PackedTransformException extends RuntimeException {
+        private PackedTransformException(TransformException cause) {
+            super(cause);
+        }
+    }
 }
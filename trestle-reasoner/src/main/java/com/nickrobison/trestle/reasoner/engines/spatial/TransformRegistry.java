@@ -0,0 +1,111 @@
+package com.nickrobison.trestle.reasoner.engines.spatial;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of {@link CoordinateReferenceSystem}s and {@link MathTransform}s, keyed by SRID,
+ * which avoids hitting the EPSG database each time a geometry is re-projected.
+ * <p>
+ * Transforms are looked up on first use, or warmed ahead of time via {@link #registerProjection(int)},
+ * which is called for the projection of each registered dataset class.
+ * Both CRS and transform objects are immutable, so they can be safely shared between threads.
+ */
+@ThreadSafe
+public final class TransformRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransformRegistry.class);
+    //    Projection which all spatial intersections are performed in
+    private static final int DEFAULT_SRID = 4326;
+
+    private static final ConcurrentMap<Integer, CoordinateReferenceSystem> crsCache = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, MathTransform> transformCache = new ConcurrentHashMap<>();
+    private static final Set<Integer> registeredProjections = ConcurrentHashMap.newKeySet();
+
+    private TransformRegistry() {
+//        UNUSED
+    }
+
+    /**
+     * Get the {@link MathTransform} from the input SRID into the output SRID, computing if absent
+     *
+     * @param inputSRID  - {@link Integer} SRID to project from
+     * @param outputSRID - {@link Integer} SRID to project into
+     * @return - {@link MathTransform}
+     * @throws FactoryException if the CRS or transform cannot be found
+     */
+    public static MathTransform getTransform(int inputSRID, int outputSRID) throws FactoryException {
+        final long key = transformKey(inputSRID, outputSRID);
+        final @Nullable MathTransform cached = transformCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+//        We don't use computeIfAbsent, because we don't want to hold the map lock while searching the EPSG database
+//        Racing threads may each compute the transform, but they'll all produce the same result
+        logger.debug("Finding transform from {} to {}", inputSRID, outputSRID);
+        final MathTransform transform = CRS.findMathTransform(getCRS(inputSRID), getCRS(outputSRID), true);
+        final @Nullable MathTransform existing = transformCache.putIfAbsent(key, transform);
+        return existing == null ? transform : existing;
+    }
+
+    /**
+     * Get the {@link CoordinateReferenceSystem} for the given SRID, forcing longitude first axis order, computing if absent
+     *
+     * @param srid - {@link Integer} EPSG code
+     * @return - {@link CoordinateReferenceSystem}
+     * @throws FactoryException if the EPSG code cannot be decoded
+     */
+    public static CoordinateReferenceSystem getCRS(int srid) throws FactoryException {
+        final @Nullable CoordinateReferenceSystem cached = crsCache.get(srid);
+        if (cached != null) {
+            return cached;
+        }
+        final CoordinateReferenceSystem crs = CRS.decode("EPSG:" + srid, true);
+        final @Nullable CoordinateReferenceSystem existing = crsCache.putIfAbsent(srid, crs);
+        return existing == null ? crs : existing;
+    }
+
+    /**
+     * Register the projection of a dataset class,
+     * and warm the transforms between it, the default projection and any previously registered projections
+     * Failures are logged, rather than thrown, they'll be reported again if the transform is ever used.
+     *
+     * @param srid - {@link Integer} SRID of dataset class
+     */
+    public static void registerProjection(int srid) {
+        if (!registeredProjections.add(srid)) {
+            return;
+        }
+        logger.debug("Warming transforms for projection {}", srid);
+        warmTransform(srid, DEFAULT_SRID);
+        for (final Integer registered : registeredProjections) {
+            warmTransform(srid, registered);
+        }
+    }
+
+    private static void warmTransform(int sridA, int sridB) {
+        if (sridA == sridB) {
+            return;
+        }
+        try {
+            getTransform(sridA, sridB);
+            getTransform(sridB, sridA);
+        } catch (FactoryException e) {
+            logger.error("Cannot find transformation between {} and {}", sridA, sridB, e);
+        }
+    }
+
+    private static long transformKey(int inputSRID, int outputSRID) {
+        return ((long) inputSRID << 32) | (outputSRID & 0xFFFFFFFFL);
+    }
+}
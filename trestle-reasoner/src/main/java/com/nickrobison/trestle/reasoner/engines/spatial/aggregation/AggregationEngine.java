@@ -1,5 +1,8 @@
 package com.nickrobison.trestle.reasoner.engines.spatial.aggregation;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.nickrobison.metrician.Metrician;
 import com.nickrobison.trestle.common.StaticIRI;
 import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.ontology.ReasonerPrefix;
@@ -11,15 +14,19 @@ import com.nickrobison.trestle.reasoner.parser.ITypeConverter;
 import com.nickrobison.trestle.reasoner.parser.TemporalParser;
 import com.nickrobison.trestle.reasoner.parser.TrestleParser;
 import com.nickrobison.trestle.reasoner.threading.TrestleExecutorFactory;
-import com.nickrobison.trestle.reasoner.threading.TrestleExecutorService;
 import com.nickrobison.trestle.transactions.TrestleTransaction;
 import com.nickrobison.trestle.types.relations.ObjectRelation;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
 import io.reactivex.rxjava3.core.Single;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKTReader;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.slf4j.Logger;
@@ -30,6 +37,10 @@ import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.nickrobison.trestle.common.IRIUtils.parseStringToIRI;
@@ -43,6 +54,8 @@ public class AggregationEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(AggregationEngine.class);
     private static final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    //    Log aggregation progress every time this many geometries have been read
+    private static final long PROGRESS_INTERVAL = 1000;
 
     private final String reasonerPrefix;
     private final ITrestleObjectReader reader;
@@ -50,7 +63,12 @@ public class AggregationEngine {
     private final ITypeConverter typeConverter;
     private final QueryBuilder qb;
     private final ITrestleOntology ontology;
-    private final TrestleExecutorService aggregationPool;
+    private final Scheduler aggregationScheduler;
+    private final int batchSize;
+    private final int partitionSize;
+    private final Meter geometryMeter;
+    private final Timer aggregationTimer;
+    private final Timer partitionTimer;
 
     @Inject
     public AggregationEngine(@ReasonerPrefix String reasonerPrefix,
@@ -58,17 +76,34 @@ public class AggregationEngine {
                              QueryBuilder queryBuilder,
                              ITrestleOntology ontology,
                              TrestleParser trestleParser,
-                             TrestleExecutorFactory factory) {
+                             TrestleExecutorFactory factory,
+                             Metrician metrician) {
         this.reasonerPrefix = reasonerPrefix;
         this.reader = objectReader;
         this.qb = queryBuilder;
         this.ontology = ontology;
         this.parser = trestleParser.classParser;
         this.typeConverter = trestleParser.typeConverter;
-        this.aggregationPool = factory.create("aggregation-pool");
-
+        this.aggregationScheduler = factory.create("aggregation-pool").asScheduler();
+        final Config config = ConfigFactory.load().getConfig("trestle.aggregation");
+        this.batchSize = config.getInt("batchSize");
+        this.partitionSize = config.getInt("partitionSize");
+        this.geometryMeter = metrician.registerMeter("aggregation-geometry-meter");
+        this.aggregationTimer = metrician.registerTimer("aggregation-timer");
+        this.partitionTimer = metrician.registerTimer("aggregation-partition-union-timer");
     }
 
+    /**
+     * Compute the spatial union of all the objects of the given class which match the restriction (and optional aggregation operation)
+     * Only the spatial fact of each matching object is retrieved (in batches), and the geometries are unioned in parallel partitions, as they arrive.
+     * The partial unions are then merged, a partition at a time, until a single {@link Geometry} remains.
+     *
+     * @param <T>         - {@link T} type parameter for object class
+     * @param clazz       - Java {@link Class} of objects to aggregate
+     * @param restriction - {@link AggregationRestriction} to select objects with
+     * @param operation   - {@link AggregationOperation} optional operation to further filter the objects
+     * @return - {@link Single} {@link Geometry} union of the exterior rings of the matching objects
+     */
     public <T extends @NonNull Object> Single<Geometry> aggregateDataset(Class<T> clazz, AggregationRestriction restriction, @Nullable AggregationOperation operation) {
         final OffsetDateTime atTemporal = OffsetDateTime.now();
         final OffsetDateTime dbTemporal = OffsetDateTime.now();
@@ -89,23 +124,48 @@ public class AggregationEngine {
         final Class<?> factDatatype = this.parser.getFactDatatype(clazz, factIRI.toString())
                 .orElseThrow(() -> new IllegalArgumentException(String.format(MISSING_FACT_ERROR, restriction.getFact(), objectClass)));
 
+//        We only need the spatial fact of each object
+        final IRI spatialIRI = IRI.create(StaticIRI.GEOSPARQLPREFIX, "asWKT");
+        final Class<?> spatialDatatype = this.parser.getFactDatatype(clazz, spatialIRI.toString())
+                .orElseThrow(() -> new IllegalArgumentException(String.format(MISSING_FACT_ERROR, "asWKT", objectClass)));
+        final List<OWLDataProperty> spatialProperty = Collections.singletonList(df.getOWLDataProperty(spatialIRI));
+        final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), classProjection);
+        final WKTReader wktReader = new WKTReader(geometryFactory);
+        final WKBReader wkbReader = new WKBReader(geometryFactory);
 
         final String intersectionQuery = buildAggregationQuery(clazz, objectClass, factIRI, factDatatype, restriction, operation, atTemporal, dbTemporal);
         final TrestleTransaction trestleTransaction = this.ontology.createandOpenNewTransaction(false);
-        return this.ontology.executeSPARQLResults(intersectionQuery)
-                .map(result -> result.unwrapIndividual("m"))
-                .map(AsOWLNamedIndividual::asOWLNamedIndividual)
-                .map(HasIRI::getIRI)
-                .flatMapSingle(individual -> this.reader.readTrestleObject(clazz, individual, false, null, null, trestleTransaction))
-                .map((obj) -> SpatialEngineUtils.buildObjectGeometry(obj, classProjection))
-                .toList()
-                .map(geoms -> {
-                    logger.debug("Performing actual spatial union.");
-                    final List<Polygon> jtsExteriorRings = SpatialEngineUtils.getJTSExteriorRings(geoms, classProjection);
-                    return new GeometryCollection(jtsExteriorRings.toArray(new Geometry[0]), new GeometryFactory(new PrecisionModel(), classProjection)).union();
+        final AtomicLong geometryCount = new AtomicLong();
+        final PartitionedUnion partitionedUnion = new PartitionedUnion(this.aggregationScheduler, this.partitionSize, geometryFactory, this.partitionTimer);
+        final Timer.Context aggregationTimer = this.aggregationTimer.time();
+        final Flowable<Polygon> exteriorRings = this.ontology.executeSPARQLResults(intersectionQuery)
+                .map(result -> result.unwrapIndividual("m").asOWLNamedIndividual())
+                .distinct()
+                .buffer(this.batchSize)
+                .concatMap(batch -> this.ontology.executeSPARQLResults(this.qb.buildObjectFactRetrievalQuery(atTemporal, dbTemporal, true, spatialProperty, batch.toArray(new OWLNamedIndividual[0]))))
+                .map(result -> {
+                    final Object spatialValue = this.typeConverter.reprojectSpatial(this.typeConverter.extractOWLLiteral(spatialDatatype, result.unwrapLiteral("object")), classProjection);
+                    return SpatialEngineUtils.parseSpatialValue(spatialValue, wktReader, wkbReader);
+                })
+                .doOnNext(geom -> {
+                    this.geometryMeter.mark();
+                    final long count = geometryCount.incrementAndGet();
+                    if (count % PROGRESS_INTERVAL == 0) {
+                        logger.debug("Read {} geometries for aggregation of {}", count, objectClass);
+                    }
+                })
+                .concatMapIterable(geom -> SpatialEngineUtils.getJTSExteriorRings(Collections.singletonList(geom), classProjection));
+//        Union each partition as soon as it fills up
+        return partitionedUnion.union(exteriorRings)
+                .doOnSuccess(success -> {
+                    final long elapsed = aggregationTimer.stop();
+                    logger.debug("Aggregated {} geometries in {} ms", geometryCount.get(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+                    this.ontology.returnAndCommitTransaction(trestleTransaction);
                 })
-                .doOnSuccess(success -> this.ontology.returnAndCommitTransaction(trestleTransaction))
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(trestleTransaction));
+                .doOnError(error -> {
+                    aggregationTimer.stop();
+                    this.ontology.returnAndAbortTransaction(trestleTransaction);
+                });
     }
 
     /**
@@ -122,44 +182,160 @@ public class AggregationEngine {
      * @return - {@link Single} {@link AdjacencyGraph} for object
      */
     public <T extends @NonNull Object, B extends Number> Single<AdjacencyGraph<T, B>> buildSpatialGraph(Class<T> clazz, String objectID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt) {
-        final AdjacencyGraph<T, B> adjacencyGraph = new AdjacencyGraph<>();
-        final IRI startIRI = parseStringToIRI(this.reasonerPrefix, objectID);
-
-        Set<String> visited = new HashSet<>();
-        Queue<String> individualQueue = new ArrayDeque<>();
-        individualQueue.add(startIRI.toString());
+        return buildSpatialGraph(clazz, objectID, edgeCompute, filter, validAt, dbAt, 0, 0);
+    }
 
+    /**
+     * Build the spatial adjacency graph for a given class, stopping once the given depth or number of nodes has been reached.
+     * The graph is built breadth-first, the relations for each level of the graph are fetched in batch queries,
+     * the newly discovered objects are read in batches (each object is only read once) and the edge weights are computed in parallel.
+     *
+     * @param <T>         - {@link T} type parameter for object class
+     * @param <B>         - {@link B} type parameter for return type from {@link Computable} function
+     * @param clazz       - Java {@link Class} of objects to retrieve
+     * @param objectID    - {@link String} ID of object to begin graph computation with
+     * @param edgeCompute - {@link Computable} function to use for computing edge weights
+     * @param filter      - {@link Filterable} function to use for determining whether or not to compute the given node
+     * @param validAt     - {@link Temporal} optional validAt restriction
+     * @param dbAt        - {@link Temporal} optional dbAt restriction
+     * @param maxDepth    - Maximum number of hops from the starting object to expand, 0 for no limit
+     * @param maxNodes    - Maximum number of objects to expand, 0 for no limit
+     * @return - {@link Single} {@link AdjacencyGraph} for object
+     */
+    public <T extends @NonNull Object, B extends Number> Single<AdjacencyGraph<T, B>> buildSpatialGraph(Class<T> clazz, String objectID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt, int maxDepth, int maxNodes) {
+        final IRI startIRI = parseStringToIRI(this.reasonerPrefix, objectID);
         final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(false);
+        final SpatialGraphBuilder<T, B> builder = new SpatialGraphBuilder<>(clazz, startIRI.toString(), edgeCompute, filter, validAt, dbAt, maxDepth, maxNodes, tt);
+
+        return this.reader.readTrestleObject(clazz, objectID, validAt, dbAt)
+                .flatMapCompletable(start -> {
+                    builder.objects.put(builder.startID, start);
+                    builder.visited.add(builder.startID);
+                    return builder.expandFrontier(Collections.singletonList(builder.startID), 0);
+                })
+                .andThen(Single.fromCallable(() -> builder.graph))
+                .doOnSuccess(success -> {
+                    logger.debug("Built spatial graph of {} objects", builder.visited.size());
+                    this.ontology.returnAndCommitTransaction(tt);
+                })
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(tt));
+    }
 
+    /**
+     * State of a single breadth-first traversal of the spatial adjacency graph
+     * The frontier is only modified between levels, the object memo, visited set and graph are safe to access from the parallel edge computations.
+     *
+     * @param <T> - {@link T} type parameter for object class
+     * @param <B> - {@link B} type parameter for return type from {@link Computable} function
+     */
+    private class SpatialGraphBuilder<T extends @NonNull Object, B extends Number> {
+        private final Class<T> clazz;
+        private final String startID;
+        private final Computable<T, T, B> edgeCompute;
+        private final Filterable<T> filter;
+        private final @Nullable Temporal validAt;
+        private final @Nullable Temporal dbAt;
+        private final int maxDepth;
+        private final int maxNodes;
+        private final TrestleTransaction transaction;
+        private final AdjacencyGraph<T, B> graph = new AdjacencyGraph<>();
+        //        Objects which have already been read, keyed by individual IRI
+        private final Map<String, T> objects = new ConcurrentHashMap<>();
+        private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+        private SpatialGraphBuilder(Class<T> clazz, String startID, Computable<T, T, B> edgeCompute, Filterable<T> filter, @Nullable Temporal validAt, @Nullable Temporal dbAt, int maxDepth, int maxNodes, TrestleTransaction transaction) {
+            this.clazz = clazz;
+            this.startID = startID;
+            this.edgeCompute = edgeCompute;
+            this.filter = filter;
+            this.validAt = validAt;
+            this.dbAt = dbAt;
+            this.maxDepth = maxDepth;
+            this.maxNodes = maxNodes;
+            this.transaction = transaction;
+        }
 
-        return Flowable.fromIterable(individualQueue)
-                .takeWhile(Objects::nonNull)
-                .doOnEach(notification -> visited.add(notification.getValue()))
-                .flatMapCompletable(fromID -> {
-                    final Single<T> initialSingle = this.reader.readTrestleObject(clazz, fromID, validAt, dbAt);
+        /**
+         * Add the edges for each object in the frontier, and then expand the newly discovered objects
+         *
+         * @param frontier - {@link List} of individual IRIs to expand
+         * @param depth    - Number of hops from the starting object
+         * @return - {@link Completable} when the traversal has finished
+         */
+        private Completable expandFrontier(List<String> frontier, int depth) {
+            if (frontier.isEmpty() || (this.maxDepth > 0 && depth >= this.maxDepth)) {
+                return Completable.complete();
+            }
+            logger.debug("Expanding {} objects at depth {}", frontier.size(), depth);
+            return fetchRelations(frontier)
+                    .flatMap(relations -> readMissingObjects(relations).andThen(computeEdges(relations)))
+                    .flatMapCompletable(accepted -> expandFrontier(nextFrontier(accepted), depth + 1));
+        }
 
-                    return initialSingle
-                            .flatMapCompletable(from -> {
-                                final Flowable<Edge<T, B>> relatedObjectsFlow = this.reader.getRelatedObjects(clazz, fromID, ObjectRelation.SPATIAL_MEETS, validAt, dbAt)
-                                        .filter(filter::filter)
-//                        Remove self
-                                        .filter(related -> !this.parser.getIndividual(related).toStringID().equals(startIRI.toString()))
-                                        .map(related -> new Edge<>(from, related, edgeCompute.compute(from, related))).publish().autoConnect(2);
+        private Single<List<Map.Entry<String, String>>> fetchRelations(List<String> frontier) {
+            final List<OWLObjectProperty> meets = Collections.singletonList(df.getOWLObjectProperty(ObjectRelation.SPATIAL_MEETS.getIRI()));
+            return Flowable.fromIterable(frontier)
+                    .map(individual -> df.getOWLNamedIndividual(IRI.create(individual)))
+                    .buffer(batchSize)
+                    .concatMap(batch -> ontology.executeSPARQLResults(qb.buildObjectPropertyRetrievalQuery(meets, batch.toArray(new OWLNamedIndividual[0]))))
+                    .map(result -> (Map.Entry<String, String>) new AbstractMap.SimpleImmutableEntry<>(
+                            result.unwrapIndividual("individual").toStringID(),
+                            result.unwrapIndividual("object").toStringID()))
+//                    Remove self
+                    .filter(relation -> !relation.getValue().equals(this.startID))
+                    .toList();
+        }
 
-                                final Single<AdjacencyGraph<T, B>> adjacencyGraphSingle = relatedObjectsFlow.collectInto(adjacencyGraph, AdjacencyGraph::addEdge);
+        private Completable readMissingObjects(List<Map.Entry<String, String>> relations) {
+            final Set<IRI> missing = relations
+                    .stream()
+                    .map(Map.Entry::getValue)
+                    .filter(individual -> !this.objects.containsKey(individual))
+                    .map(IRI::create)
+                    .collect(Collectors.toSet());
+            if (missing.isEmpty()) {
+                return Completable.complete();
+            }
+            return reader.readTrestleObjects(this.clazz, missing, false, this.validAt, this.dbAt, true, this.transaction)
+                    .doOnNext(object -> this.objects.put(parser.getIndividual(object).toStringID(), object))
+                    .ignoreElements();
+        }
 
-                                final Single<Queue<String>> individualCompletable = relatedObjectsFlow
-                                        .map(edge -> this.parser.getIndividual(edge.to))
-                                        .map(OWLIndividual::toStringID)
-                                        .filter(individual -> !visited.contains(individual))
-                                        .collectInto(individualQueue, Queue::add);
+        /**
+         * Compute the edges for the given relations, in parallel
+         *
+         * @param relations - {@link List} of from/to individual IRIs
+         * @return - {@link Single} {@link List} of individual IRIs which passed the filter
+         */
+        private Single<List<String>> computeEdges(List<Map.Entry<String, String>> relations) {
+            return Flowable.fromIterable(relations)
+                    .filter(relation -> this.objects.containsKey(relation.getKey()) && this.objects.containsKey(relation.getValue()))
+                    .parallel()
+                    .runOn(aggregationScheduler)
+                    .filter(relation -> this.filter.filter(this.objects.get(relation.getValue())))
+                    .map(relation -> {
+                        final T from = this.objects.get(relation.getKey());
+                        final T to = this.objects.get(relation.getValue());
+                        this.graph.addEdge(new Edge<>(from, to, this.edgeCompute.compute(from, to)));
+                        return relation.getValue();
+                    })
+                    .sequential()
+                    .toList();
+        }
 
-                                return Completable.fromSingle(adjacencyGraphSingle);
-                            });
-                })
-                .andThen(Single.just(adjacencyGraph))
-                .doOnSuccess(success -> this.ontology.returnAndCommitTransaction(tt))
-                .doOnError(error -> this.ontology.returnAndAbortTransaction(tt));
+        private List<String> nextFrontier(List<String> accepted) {
+            final List<String> next = new ArrayList<>();
+            for (final String individual : accepted) {
+                if (this.maxNodes > 0 && this.visited.size() >= this.maxNodes) {
+                    logger.debug("Reached limit of {} objects, stopping traversal", this.maxNodes);
+                    break;
+                }
+                if (this.visited.add(individual)) {
+                    next.add(individual);
+                }
+            }
+            return next;
+        }
     }
 
     private String buildAggregationQuery(Class<?> clazz, OWLClass datasetClass, IRI factIRI, Class<?> factDatatype, AggregationRestriction restriction, @Nullable AggregationOperation operation, OffsetDateTime atTemporal, OffsetDateTime dbTemporal) {
@@ -239,16 +415,22 @@ public class AggregationEngine {
         }
     }
 
+    /**
+     * Spatial adjacency graph, backed by concurrent collections, so edges can be added from multiple threads
+     *
+     * @param <A> - Type of graph nodes
+     * @param <B> - Type of edge weights
+     */
     public static class AdjacencyGraph<A, B extends Number> {
 
         private Set<A> nodes;
         private Set<Edge<A, B>> edges;
-        private Map<A, List<Edge<A, B>>> adj;
+        private Map<A, Queue<Edge<A, B>>> adj;
 
         public AdjacencyGraph() {
-            this.nodes = new HashSet<>();
-            this.edges = new HashSet<>();
-            this.adj = new HashMap<>();
+            this.nodes = ConcurrentHashMap.newKeySet();
+            this.edges = ConcurrentHashMap.newKeySet();
+            this.adj = new ConcurrentHashMap<>();
         }
 
         public void addEdge(Edge<A, B> edge) {
@@ -270,7 +452,7 @@ public class AggregationEngine {
         }
 
         public Optional<List<Edge<A, B>>> getNodeEdges(A node, Comparator<Edge<A, B>> comparator) {
-            final List<Edge<A, B>> edges = this.adj.get(node);
+            final Queue<Edge<A, B>> edges = this.adj.get(node);
             if (edges == null) {
                 return Optional.empty();
             }
@@ -307,19 +489,11 @@ public class AggregationEngine {
         }
 
         private void updateNodeEdge(A node, Edge<A, B> edge) {
-            final List<Edge<A, B>> nodeEdges = this.adj.get(node);
-            if (nodeEdges == null) {
-                List<Edge<A, B>> edges = new ArrayList<>();
-                edges.add(edge);
-                this.adj.put(node, edges);
-            } else {
-                nodeEdges.add(edge);
-                this.adj.put(node, nodeEdges);
-            }
+            this.adj.computeIfAbsent(node, key -> new ConcurrentLinkedQueue<>()).add(edge);
         }
 
         private void removeNodeEdge(A node, Edge<A, B> edge) {
-            final List<Edge<A, B>> nodeEdges = this.adj.get(node);
+            final Queue<Edge<A, B>> nodeEdges = this.adj.get(node);
             if (nodeEdges != null) {
                 nodeEdges.remove(edge);
             }
@@ -0,0 +1,107 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.aggregation;
+
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the union of a stream of polygonal {@link Geometry}s in parallel partitions.
+ * Each partition is unioned as soon as it fills up, and the partial unions are then merged, a partition at a time, until a single {@link Geometry} remains.
+ * An empty stream results in an empty {@link org.locationtech.jts.geom.GeometryCollection}.
+ */
+class PartitionedUnion {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedUnion.class);
+
+    private final Scheduler scheduler;
+    private final int partitionSize;
+    private final GeometryFactory geometryFactory;
+    private final Timer partitionTimer;
+
+    /**
+     * @param scheduler       - {@link Scheduler} to union the partitions on
+     * @param partitionSize   - Maximum number of {@link Geometry}s to union at once, must be at least 2
+     * @param geometryFactory - {@link GeometryFactory} to create an empty result with
+     * @param partitionTimer  - {@link Timer} to record the time taken to union each partition
+     */
+    PartitionedUnion(Scheduler scheduler, int partitionSize, GeometryFactory geometryFactory, Timer partitionTimer) {
+        if (partitionSize < 2) {
+            throw new IllegalArgumentException("Partition size must be at least 2");
+        }
+        this.scheduler = scheduler;
+        this.partitionSize = partitionSize;
+        this.geometryFactory = geometryFactory;
+        this.partitionTimer = partitionTimer;
+    }
+
+    /**
+     * Union all the geometries emitted by the given {@link Flowable}
+     *
+     * @param geometries - {@link Flowable} of polygonal {@link Geometry} to union
+     * @return - {@link Single} {@link Geometry} union
+     */
+    Single<Geometry> union(Flowable<? extends Geometry> geometries) {
+        return geometries
+                .buffer(this.partitionSize)
+                .parallel()
+                .runOn(this.scheduler)
+                .map(this::unionPartition)
+                .sequential()
+                .toList()
+                .flatMap(partials -> {
+                    logger.debug("Merging {} partial unions", partials.size());
+                    return mergePartialUnions(partials);
+                });
+    }
+
+    /**
+     * Recursively union the partial results, in parallel partitions, until only a single {@link Geometry} remains
+     *
+     * @param partials - {@link List} of partial union {@link Geometry}
+     * @return - {@link Single} {@link Geometry} union
+     */
+    Single<Geometry> mergePartialUnions(List<Geometry> partials) {
+        if (partials.size() <= this.partitionSize) {
+            return Single.fromCallable(() -> unionPartition(partials))
+                    .subscribeOn(this.scheduler);
+        }
+        return Flowable.fromIterable(Lists.partition(partials, this.partitionSize))
+                .parallel()
+                .runOn(this.scheduler)
+                .map(this::unionPartition)
+                .sequential()
+                .toList()
+                .flatMap(this::mergePartialUnions);
+    }
+
+    /**
+     * Union a single partition, skipping any empty geometries (such as the result of a partition which only contained empty geometries)
+     *
+     * @param partition - {@link List} of polygonal {@link Geometry} to union
+     * @return - {@link Geometry} union, or an empty {@link org.locationtech.jts.geom.GeometryCollection} if there was nothing to union
+     */
+    Geometry unionPartition(List<? extends Geometry> partition) {
+        final Timer.Context context = this.partitionTimer.time();
+        try {
+            final List<Geometry> geometries = partition
+                    .stream()
+                    .filter(geometry -> !geometry.isEmpty())
+                    .collect(Collectors.toList());
+            final @Nullable Geometry union = CascadedPolygonUnion.union(geometries);
+            return union == null ? this.geometryFactory.createGeometryCollection() : union;
+        } finally {
+            context.stop();
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package com.nickrobison.trestle.reasoner.engines.spatial.containment;
 
-import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngineUtils;
+import com.nickrobison.trestle.reasoner.caching.GeometryCache;
 import com.nickrobison.trestle.reasoner.parser.IClassParser;
 import com.nickrobison.trestle.reasoner.parser.TrestleParser;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import javax.cache.Cache;
 import javax.inject.Inject;
 
 /**
@@ -14,11 +14,11 @@ import javax.inject.Inject;
  */
 public class ContainmentEngineImpl implements ContainmentEngine {
 
-    private final Cache<Integer, Geometry> geometryCache;
+    private final GeometryCache geometryCache;
     private final IClassParser parser;
 
     @Inject
-    ContainmentEngineImpl(Cache<Integer, Geometry> geometryCache, TrestleParser trestleParser) {
+    ContainmentEngineImpl(GeometryCache geometryCache, TrestleParser trestleParser) {
         this.geometryCache = geometryCache;
         this.parser = trestleParser.classParser;
     }
@@ -27,10 +27,10 @@ public class ContainmentEngineImpl implements ContainmentEngine {
     public <A extends @NonNull Object, B extends @NonNull Object> ContainmentDirection getApproximateContainment(A objectA, B objectB, double threshold) {
         final Integer aSRID = this.parser.getClassProjection(objectA.getClass());
         final Integer bSRID = this.parser.getClassProjection(objectB.getClass());
-        final Geometry polygonA = SpatialEngineUtils.getGeomFromCache(objectA, aSRID, this.geometryCache);
-        final Geometry polygonB = SpatialEngineUtils.reprojectObject(objectB, bSRID, aSRID, this.geometryCache);
+        final PreparedGeometry polygonA = this.geometryCache.getPreparedGeometry(objectA, aSRID);
+        final Geometry polygonB = this.geometryCache.getGeometry(objectB, bSRID, aSRID);
 
-        final double areaA = polygonA.getArea();
+        final double areaA = polygonA.getGeometry().getArea();
         final double areaB = polygonB.getArea();
         double smallerArea;
         ContainmentDirection containmentDir;
@@ -42,7 +42,17 @@ public class ContainmentEngineImpl implements ContainmentEngine {
             containmentDir = ContainmentDirection.CONTAINS;
         }
 
-        final double intersectionArea = polygonA.intersection(polygonB).getArea();
+//        Use the prepared predicates to avoid computing the intersection, when we can
+        final double intersectionArea;
+        if (!polygonA.intersects(polygonB)) {
+            intersectionArea = 0.0;
+        } else if (polygonA.covers(polygonB)) {
+            intersectionArea = areaB;
+        } else if (polygonA.coveredBy(polygonB)) {
+            intersectionArea = areaA;
+        } else {
+            intersectionArea = polygonA.getGeometry().intersection(polygonB).getArea();
+        }
 
         if (intersectionArea / smallerArea >= threshold) {
             // found containment above threshold
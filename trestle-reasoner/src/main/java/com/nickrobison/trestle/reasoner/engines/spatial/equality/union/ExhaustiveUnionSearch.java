@@ -0,0 +1,115 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.annotation.Metered;
+import com.codahale.metrics.annotation.Timed;
+import com.esri.core.geometry.Polygon;
+import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static com.nickrobison.trestle.reasoner.engines.spatial.equality.union.SpatialUnionBuilder.calculateEqualityPercentage;
+
+/**
+ * {@link UnionSearch} which walks the power sets of the input and match polygons, unioning each subset from scratch.
+ * Only suitable for small inputs, but it makes no assumptions about the input geometries.
+ */
+@Metriced
+class ExhaustiveUnionSearch implements UnionSearch {
+    private static final Logger logger = LoggerFactory.getLogger(ExhaustiveUnionSearch.class);
+
+    private final GeometryFactory geometryFactory;
+    private final Histogram unionSetSize;
+
+    ExhaustiveUnionSearch(GeometryFactory geometryFactory, Histogram unionSetSize) {
+        this.geometryFactory = geometryFactory;
+        this.unionSetSize = unionSetSize;
+    }
+
+    @Override
+    public Optional<PolygonMatchSet> findUnion(Set<Geometry> inputPolygons, Set<Geometry> matchPolygons, double matchThreshold) {
+        final Set<Set<Geometry>> allInputSets = powerSet(inputPolygons);
+
+        for (Set<Geometry> inputSet : allInputSets) {
+            if (inputSet.isEmpty()) {
+                continue;
+            }
+
+            Optional<PolygonMatchSet> matchSet = executeUnionCalculation(matchPolygons, inputSet, matchThreshold);
+            if (matchSet.isPresent()) {
+                return matchSet;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Timed(name = "union-calculation-timer", absolute = true)
+    @Metered(name = "union-calculation-meter", absolute = true)
+    private Optional<PolygonMatchSet> executeUnionCalculation(Set<Geometry> matchPolygons, Set<Geometry> inputSet, double matchThreshold) {
+        final GeometryCollection geometryCollection = new GeometryCollection(inputSet.toArray(new Geometry[inputSet.size()]), geometryFactory);
+        logger.trace("Executing union operation for {}", inputSet);
+        final Geometry unionInputGeom = geometryCollection.union();
+
+        this.unionSetSize.update(inputSet.size());
+
+//                Get all subsets of matchPolygons
+        final Set<Set<Geometry>> allMatchSets = powerSet(matchPolygons);
+        for (Set<Geometry> matchSet : allMatchSets) {
+            if (matchSet.isEmpty()) {
+                continue;
+            }
+            final double matchStrength;
+            if ((matchStrength = executeUnion(matchThreshold, unionInputGeom, new ArrayList<>(matchSet))) > matchThreshold) {
+                return Optional.of(new PolygonMatchSet(inputSet, matchSet, matchStrength));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Timed(name = "union-strength-timer", absolute = true)
+    @Metered(name = "union-strength-meter", absolute = true)
+    private double executeUnion(double matchThreshold, Geometry unionInputGeom, List<Geometry> matchGeomList) {
+        final GeometryCollection geometryCollection = new GeometryCollection(matchGeomList.toArray(new Geometry[matchGeomList.size()]), geometryFactory);
+        logger.trace("Executing union operation for {}", matchGeomList);
+        this.unionSetSize.update(matchGeomList.size());
+        final Geometry unionMatchGeom = geometryCollection.union();
+        final double approxEqual = calculateEqualityPercentage(unionInputGeom, unionMatchGeom);
+        if (approxEqual > matchThreshold) {
+            return approxEqual;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Constructs a {@link Set} of {@link Set} representing all possible combinations of the input set of {@link Polygon}
+     *
+     * @param originalSet - {@link Set} of {@link Polygon} representing possible input combinations
+     * @return - {@link Set} of {@link Set} of {@link Polygon} to determine if a union combination exists
+     */
+    private static Set<Set<Geometry>> powerSet(Set<Geometry> originalSet) {
+//        No idea why we need to do this instead of ComparingInt.reversed(), but we do
+        SortedSet<Set<Geometry>> sets = new TreeSet<>((o1, o2) -> Integer.compare(o2.size(), o1.size()));
+//        Null safe way of handling an empty queue
+        final Queue<Geometry> list = new ArrayDeque<>(originalSet);
+        Geometry head = list.poll();
+        if (head == null) {
+            sets.add(new HashSet<>());
+            return sets;
+        }
+
+        Set<Geometry> rest = new HashSet<>(list);
+        for (Set<Geometry> set : powerSet(rest)) {
+            Set<Geometry> newSet = new HashSet<>();
+            newSet.add(head);
+            newSet.addAll(set);
+            sets.add(newSet);
+            sets.add(set);
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,33 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Set;
+
+/**
+ * Set of early and late {@link Geometry} whose unions are approximately equal, along with the strength of the match
+ */
+class PolygonMatchSet {
+
+    private final Set<Geometry> earlyPolygons;
+    private final Set<Geometry> latePolygons;
+    private final double strength;
+
+    PolygonMatchSet(Set<Geometry> earlyPolygons, Set<Geometry> latePolygons, double strength) {
+        this.earlyPolygons = earlyPolygons;
+        this.latePolygons = latePolygons;
+        this.strength = strength;
+    }
+
+    Set<Geometry> getEarlyPolygons() {
+        return earlyPolygons;
+    }
+
+    Set<Geometry> getLatePolygons() {
+        return latePolygons;
+    }
+
+    double getStrength() {
+        return this.strength;
+    }
+}
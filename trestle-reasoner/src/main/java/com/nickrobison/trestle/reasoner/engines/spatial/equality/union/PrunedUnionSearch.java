@@ -0,0 +1,329 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * {@link UnionSearch} which performs a branch and bound search over the possible unions, rather than walking the entire power set.
+ * <p>
+ * Before doing any unions, candidates are pruned to those which the {@link STRtree} reports as adjacent to the target polygon,
+ * which actually overlap the target, and which don't have so much area outside of the target that no union containing them could ever match.
+ * The remaining candidates are then searched in order of decreasing overlap, with each union built incrementally from its parent union,
+ * and whole branches are skipped once their area bounds show they can't match, or can't beat the largest match found so far.
+ * Independent branches are searched in parallel on the provided {@link ForkJoinPool}.
+ * <p>
+ * Unlike the {@link ExhaustiveUnionSearch}, polygons which don't overlap the target (including ones which only share an edge) are never part of a match.
+ * They can't add anything to the intersection with the target, only to the area outside of it,
+ * so the exhaustive search only accepts them while the rest of the union is smaller than the target, at which point they pad the match with objects that share no area with the target.
+ * Those objects would then be related to the target by the union equality, which is never what we want, so the match is the largest set of overlapping polygons whose union matches the target.
+ * <p>
+ * Partial unions are cached for the lifetime of the search, so they can be re-used when matching multiple targets against the same polygons.
+ * Each instance is only valid for the set of polygons it was created with.
+ */
+@Metriced
+class PrunedUnionSearch implements UnionSearch {
+    private static final Logger logger = LoggerFactory.getLogger(PrunedUnionSearch.class);
+    //    Nodes smaller than this fork their children into separate tasks, larger ones are searched sequentially
+    private static final int FORK_DEPTH = 2;
+
+    private final ForkJoinPool pool;
+    private final Map<Geometry, Integer> polygonIndex;
+    private final STRtree tree;
+    private final Map<BitSet, Geometry> unionCache = new ConcurrentHashMap<>();
+    private final int maxCachedUnions;
+    private final Histogram unionSetSize;
+    private final Histogram candidateSize;
+
+    PrunedUnionSearch(ForkJoinPool pool, Collection<Geometry> polygons, int maxCachedUnions, Histogram unionSetSize, Histogram candidateSize) {
+        this.pool = pool;
+        this.maxCachedUnions = maxCachedUnions;
+        this.unionSetSize = unionSetSize;
+        this.candidateSize = candidateSize;
+//        Geometry equality is too expensive (and too loose) to use as a key, so index by identity
+        this.polygonIndex = new IdentityHashMap<>(polygons.size());
+        this.tree = new STRtree();
+        for (Geometry polygon : polygons) {
+            if (!this.polygonIndex.containsKey(polygon)) {
+                this.polygonIndex.put(polygon, this.polygonIndex.size());
+                this.tree.insert(polygon.getEnvelopeInternal(), polygon);
+            }
+        }
+        this.tree.build();
+    }
+
+    @Override
+    public Optional<PolygonMatchSet> findUnion(Set<Geometry> inputPolygons, Set<Geometry> matchPolygons, double matchThreshold) {
+        if (inputPolygons.size() == 1) {
+            return searchUnion(inputPolygons.iterator().next(), matchPolygons, matchThreshold)
+                    .map(match -> new PolygonMatchSet(inputPolygons, new HashSet<>(match.polygons), match.strength));
+        } else if (matchPolygons.size() == 1) {
+            return searchUnion(matchPolygons.iterator().next(), inputPolygons, matchThreshold)
+                    .map(match -> new PolygonMatchSet(new HashSet<>(match.polygons), matchPolygons, match.strength));
+        }
+        throw new IllegalArgumentException("Pruned union search requires either a single input polygon, or a single match polygon");
+    }
+
+    @Timed(name = "union-search-timer", absolute = true)
+    private Optional<SearchNode> searchUnion(Geometry target, Set<Geometry> candidatePolygons, double matchThreshold) {
+        final double targetArea = target.getArea();
+        if (targetArea == 0.0) {
+            return Optional.empty();
+        }
+        final List<Candidate> candidates = pruneCandidates(target, targetArea, candidatePolygons, matchThreshold);
+        logger.trace("Searching {} of {} candidates", candidates.size(), candidatePolygons.size());
+        this.candidateSize.update(candidates.size());
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final SearchState state = new SearchState(target, targetArea, candidates, matchThreshold);
+        this.pool.invoke(new SearchTask(state, new SearchNode()));
+        return Optional.ofNullable(state.best.get());
+    }
+
+    /**
+     * Determine which candidates could possibly contribute to a matching union, ordered by decreasing overlap with the target.
+     * Candidates which don't overlap the target are dropped, see the class documentation.
+     *
+     * @param target            - {@link Geometry} to match against
+     * @param targetArea        - {@link Double} area of the target
+     * @param candidatePolygons - {@link Set} of {@link Geometry} candidates
+     * @param matchThreshold    - {@link Double} minimum match strength
+     * @return - {@link List} of {@link Candidate}
+     */
+    private List<Candidate> pruneCandidates(Geometry target, double targetArea, Set<Geometry> candidatePolygons, double matchThreshold) {
+        final Set<Geometry> members = Collections.newSetFromMap(new IdentityHashMap<>(candidatePolygons.size()));
+        members.addAll(candidatePolygons);
+        final PreparedGeometry preparedTarget = PreparedGeometryFactory.prepare(target);
+
+        @SuppressWarnings("unchecked") final List<Geometry> adjacent = this.tree.query(target.getEnvelopeInternal());
+        final List<Candidate> candidates = new ArrayList<>(adjacent.size());
+        for (Geometry polygon : adjacent) {
+            if (!members.contains(polygon) || !preparedTarget.intersects(polygon)) {
+                continue;
+            }
+            final double intersection = target.intersection(polygon).getArea();
+            final double area = polygon.getArea();
+//            Any union containing this polygon has at least this much area outside of the target, which bounds its best possible match
+            if (intersection == 0.0 || (targetArea / (targetArea + area - intersection)) <= matchThreshold) {
+                continue;
+            }
+            candidates.add(new Candidate(polygon, indexOf(polygon), intersection, area));
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.intersection).reversed());
+        return candidates;
+    }
+
+    /**
+     * Build each of the child nodes of the given node which could possibly lead to a better match
+     *
+     * @param state - {@link SearchState} for the current search
+     * @param node  - {@link SearchNode} to expand
+     * @return - {@link List} of {@link SearchNode} children
+     */
+    private List<SearchNode> expand(SearchState state, SearchNode node) {
+        final int candidateCount = state.candidates.size();
+        final List<SearchNode> children = new ArrayList<>(candidateCount - node.next);
+        for (int i = node.next; i < candidateCount; i++) {
+//            If adding every remaining candidate won't beat the size of the best match, there's no point continuing
+            if ((node.size() + (candidateCount - i)) < state.bestSize()) {
+                break;
+            }
+            final Candidate candidate = state.candidates.get(i);
+//            Adding polygons can never shrink the union, and can only increase the overlap by their own overlap with the target
+            final double maxIntersection = Math.min(state.targetArea, node.intersection + state.remainingIntersection[i]);
+            final double minArea = Math.max(state.targetArea, Math.max(node.area, candidate.area));
+            if ((maxIntersection / minArea) <= state.threshold) {
+                continue;
+            }
+
+            final SearchNode child = buildChild(state, node, candidate, i);
+            state.offer(child);
+            children.add(child);
+        }
+        return children;
+    }
+
+    private SearchNode buildChild(SearchState state, SearchNode parent, Candidate candidate, int position) {
+        final BitSet key = (BitSet) parent.key.clone();
+        key.set(candidate.index);
+        final List<Geometry> polygons = new ArrayList<>(parent.polygons.size() + 1);
+        polygons.addAll(parent.polygons);
+        polygons.add(candidate.geometry);
+
+        if (parent.union == null) {
+            return new SearchNode(key, polygons, candidate.geometry, candidate.intersection, candidate.area, state.targetArea, position + 1);
+        }
+        final Geometry union = getUnion(key, parent.union, candidate.geometry);
+        final double intersection = state.target.intersection(union).getArea();
+        return new SearchNode(key, polygons, union, intersection, union.getArea(), state.targetArea, position + 1);
+    }
+
+    /**
+     * Get the union for the given set of polygons, either from the cache, or by adding the new polygon to its parent union
+     *
+     * @param key      - {@link BitSet} of polygon indexes in the union
+     * @param parent   - {@link Geometry} union of every polygon except the new one
+     * @param addition - {@link Geometry} new polygon
+     * @return - {@link Geometry} union
+     */
+    private Geometry getUnion(BitSet key, Geometry parent, Geometry addition) {
+        final @Nullable Geometry cached = this.unionCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Geometry union = parent.union(addition);
+        this.unionSetSize.update(key.cardinality());
+        if (this.unionCache.size() < this.maxCachedUnions) {
+            this.unionCache.put(key, union);
+        }
+        return union;
+    }
+
+    private int indexOf(Geometry polygon) {
+        final Integer index = this.polygonIndex.get(polygon);
+        if (index == null) {
+            throw new IllegalArgumentException("Polygon is not part of the search set");
+        }
+        return index;
+    }
+
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 42L;
+
+        private final transient SearchState state;
+        private final transient SearchNode node;
+
+        private SearchTask(SearchState state, SearchNode node) {
+            this.state = state;
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.node.size() < FORK_DEPTH) {
+                invokeAll(expand(this.state, this.node)
+                        .stream()
+                        .map(child -> new SearchTask(this.state, child))
+                        .collect(Collectors.toList()));
+            } else {
+                search(this.node);
+            }
+        }
+
+        private void search(SearchNode parent) {
+            for (SearchNode child : expand(this.state, parent)) {
+                search(child);
+            }
+        }
+    }
+
+    private static class SearchState {
+        private final Geometry target;
+        private final double targetArea;
+        private final List<Candidate> candidates;
+        //        Total overlap of each candidate, and all the ones after it
+        private final double[] remainingIntersection;
+        private final double threshold;
+        private final AtomicReference<@Nullable SearchNode> best = new AtomicReference<>();
+
+        private SearchState(Geometry target, double targetArea, List<Candidate> candidates, double threshold) {
+            this.target = target;
+            this.targetArea = targetArea;
+            this.candidates = candidates;
+            this.threshold = threshold;
+            this.remainingIntersection = new double[candidates.size() + 1];
+            for (int i = candidates.size() - 1; i >= 0; i--) {
+                this.remainingIntersection[i] = this.remainingIntersection[i + 1] + candidates.get(i).intersection;
+            }
+        }
+
+        private int bestSize() {
+            final @Nullable SearchNode current = this.best.get();
+            return current == null ? 0 : current.size();
+        }
+
+        /**
+         * Record the node as the best match, if it matches, and is either larger than the current best, or the same size and stronger
+         *
+         * @param node - {@link SearchNode} to offer
+         */
+        private void offer(SearchNode node) {
+            if (node.strength <= this.threshold) {
+                return;
+            }
+            this.best.accumulateAndGet(node, (current, update) -> {
+                if (current == null
+                        || update.size() > current.size()
+                        || (update.size() == current.size() && update.strength > current.strength)) {
+                    return update;
+                }
+                return current;
+            });
+        }
+    }
+
+    private static class SearchNode {
+        private final BitSet key;
+        private final List<Geometry> polygons;
+        private final @Nullable Geometry union;
+        private final double intersection;
+        private final double area;
+        private final double strength;
+        //        Position of the next candidate that can be added to this node
+        private final int next;
+
+        private SearchNode() {
+            this.key = new BitSet();
+            this.polygons = Collections.emptyList();
+            this.union = null;
+            this.intersection = 0.0;
+            this.area = 0.0;
+            this.strength = 0.0;
+            this.next = 0;
+        }
+
+        private SearchNode(BitSet key, List<Geometry> polygons, Geometry union, double intersection, double area, double targetArea, int next) {
+            this.key = key;
+            this.polygons = polygons;
+            this.union = union;
+            this.intersection = intersection;
+            this.area = area;
+            this.strength = intersection / Math.max(targetArea, area);
+            this.next = next;
+        }
+
+        private int size() {
+            return this.polygons.size();
+        }
+    }
+
+    private static class Candidate {
+        private final Geometry geometry;
+        private final int index;
+        private final double intersection;
+        private final double area;
+
+        private Candidate(Geometry geometry, int index, double intersection, double area) {
+            this.geometry = geometry;
+            this.index = index;
+            this.intersection = intersection;
+            this.area = area;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import com.nickrobison.metrician.Metrician;
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.ontology.types.TrestleResult;
+import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.transactions.TrestleTransaction;
+import com.nickrobison.trestle.types.TemporalScope;
+import com.nickrobison.trestle.types.temporal.TemporalObject;
+import com.nickrobison.trestle.types.temporal.TemporalObjectBuilder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.nickrobison.trestle.common.StaticIRI.spatialUnionIRI;
+import static com.nickrobison.trestle.common.StaticIRI.trestleObjectIRI;
+
+/**
+ * In-memory DAG of the spatial unions in the database.
+ * Each union links the object it is equal to (the whole), with the set of objects that make it up (the components).
+ * Objects which are directly equal to each other (e.g. from the {@link com.nickrobison.trestle.reasoner.engines.relations.RelationCalculator}) are linked as well.
+ * Every object in the graph carries its existence interval, so the {@link SpatialUnionTraverser} can walk a lineage forwards or backwards in time without querying the database.
+ * <p>
+ * The graph is loaded from the ontology the first time it's used,
+ * and then kept up to date as split/merge events and equals relations are written by the {@link com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectWriter}.
+ * When an object in the graph is removed, or its existence interval changes, the graph is invalidated and reloaded the next time it's used.
+ * Unions written directly to the database (or by another reasoner instance) are not seen until the graph is reloaded.
+ */
+@ThreadSafe
+public class SpatialEquivalenceGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpatialEquivalenceGraph.class);
+
+    private final ITrestleOntology ontology;
+    private final Map<OWLNamedIndividual, STObjectWrapper> objects = new ConcurrentHashMap<>();
+    private final Map<OWLNamedIndividual, UnionEdge> unions = new ConcurrentHashMap<>();
+    private final Map<OWLNamedIndividual, Set<UnionEdge>> wholeOf = new ConcurrentHashMap<>();
+    private final Map<OWLNamedIndividual, Set<UnionEdge>> componentOf = new ConcurrentHashMap<>();
+    private final Map<OWLNamedIndividual, Set<STObjectWrapper>> equalTo = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile boolean loaded = false;
+
+    /**
+     * Create a new graph
+     *
+     * @param ontology  - {@link ITrestleOntology} to load the graph from
+     * @param metrician - {@link Metrician} to register graph size gauges with
+     * @param enabled   - {@code false} the graph is never used, and all traversals fall back to SPARQL
+     */
+    public SpatialEquivalenceGraph(ITrestleOntology ontology, Metrician metrician, boolean enabled) {
+        this.ontology = ontology;
+        this.enabled = enabled;
+        metrician.registerGauge("union-graph-unions", this.unions::size);
+        metrician.registerGauge("union-graph-objects", this.objects::size);
+    }
+
+    /**
+     * Determine whether the graph can be used to answer traversal queries, loading it from the ontology if it hasn't been loaded yet.
+     * If the graph fails to load, it is disabled and the error is logged
+     *
+     * @param transaction - {@link TrestleTransaction} optional transaction to continue with, when loading the graph
+     * @return - {@code true} graph is loaded and can be used. {@code false} graph is disabled
+     */
+    public boolean isAvailable(@Nullable TrestleTransaction transaction) {
+        if (!this.enabled) {
+            return false;
+        }
+        if (!this.loaded) {
+            synchronized (this) {
+                if (!this.loaded) {
+                    try {
+                        load(transaction);
+                        this.loaded = true;
+                    } catch (RuntimeException e) {
+                        logger.error("Unable to load spatial equivalence graph, falling back to SPARQL traversal", e);
+                        this.enabled = false;
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a spatial union to the graph
+     *
+     * @param union          - {@link OWLNamedIndividual} representing the union (e.g. the split/merge event)
+     * @param whole          - {@link OWLNamedIndividual} the union is equal to
+     * @param wholeExistence - {@link TemporalObject} existence interval of the whole
+     * @param components     - {@link Map} of {@link OWLNamedIndividual} components of the union, and their {@link TemporalObject} existence intervals
+     */
+    public void addUnion(OWLNamedIndividual union, OWLNamedIndividual whole, TemporalObject wholeExistence, Map<OWLNamedIndividual, TemporalObject> components) {
+        if (!this.enabled) {
+            return;
+        }
+        logger.trace("Adding union {} of {} with {} components", union, whole, components.size());
+        final STObjectWrapper wholeObject = this.objects.computeIfAbsent(whole, key -> new STObjectWrapper(key, trestleObjectIRI, wholeExistence));
+        final UnionEdge edge = addEdge(union, wholeObject);
+        components.forEach((component, existence) -> addComponent(edge, this.objects.computeIfAbsent(component, key -> new STObjectWrapper(key, trestleObjectIRI, existence))));
+    }
+
+    /**
+     * Add a direct equals relation between two objects to the graph.
+     * The relation is symmetric, so it's added in both directions
+     *
+     * @param subject          - {@link OWLNamedIndividual} subject of the relation
+     * @param subjectExistence - {@link TemporalObject} existence interval of the subject
+     * @param object           - {@link OWLNamedIndividual} object of the relation
+     * @param objectExistence  - {@link TemporalObject} existence interval of the object
+     */
+    public void addEquals(OWLNamedIndividual subject, TemporalObject subjectExistence, OWLNamedIndividual object, TemporalObject objectExistence) {
+        if (!this.enabled || subject.equals(object)) {
+            return;
+        }
+        logger.trace("Adding equals relation between {} and {}", subject, object);
+        final STObjectWrapper subjectObject = this.objects.computeIfAbsent(subject, key -> new STObjectWrapper(key, trestleObjectIRI, subjectExistence));
+        final STObjectWrapper objectObject = this.objects.computeIfAbsent(object, key -> new STObjectWrapper(key, trestleObjectIRI, objectExistence));
+        addEqualTo(subjectObject, objectObject);
+        addEqualTo(objectObject, subjectObject);
+    }
+
+    /**
+     * Invalidate the graph, if it contains the given object.
+     * Used when the object is removed, or its existence interval changes, since any unions or relations it's part of are no longer correct
+     *
+     * @param individual - {@link OWLNamedIndividual} which has changed
+     */
+    public void invalidate(OWLNamedIndividual individual) {
+        if (this.objects.containsKey(individual)) {
+            logger.debug("{} has changed, invalidating spatial equivalence graph", individual);
+            invalidate();
+        }
+    }
+
+    /**
+     * Remove all the unions and objects from the graph, they will be reloaded from the ontology the next time the graph is used
+     */
+    public void invalidate() {
+        synchronized (this) {
+            this.loaded = false;
+            this.objects.clear();
+            this.unions.clear();
+            this.wholeOf.clear();
+            this.componentOf.clear();
+            this.equalTo.clear();
+        }
+    }
+
+    /**
+     * Get the object (and its existence interval) from the graph
+     *
+     * @param individual - {@link OWLNamedIndividual} to get
+     * @return - {@link Optional} {@link STObjectWrapper}, empty if the object is not part of any union
+     */
+    Optional<STObjectWrapper> getObject(OWLNamedIndividual individual) {
+        return Optional.ofNullable(this.objects.get(individual));
+    }
+
+    /**
+     * Get the unions which the given object is equal to
+     *
+     * @param individual - {@link OWLNamedIndividual} whole
+     * @return - {@link Set} of {@link UnionEdge}
+     */
+    Set<UnionEdge> getUnionsOf(OWLNamedIndividual individual) {
+        return this.wholeOf.getOrDefault(individual, Collections.emptySet());
+    }
+
+    /**
+     * Get the unions which the given object is a component of
+     *
+     * @param individual - {@link OWLNamedIndividual} component
+     * @return - {@link Set} of {@link UnionEdge}
+     */
+    Set<UnionEdge> getUnionsContaining(OWLNamedIndividual individual) {
+        return this.componentOf.getOrDefault(individual, Collections.emptySet());
+    }
+
+    /**
+     * Get the objects which the given object is directly equal to
+     *
+     * @param individual - {@link OWLNamedIndividual} to get equal objects of
+     * @return - {@link Set} of {@link STObjectWrapper}
+     */
+    Set<STObjectWrapper> getEqualObjects(OWLNamedIndividual individual) {
+        return this.equalTo.getOrDefault(individual, Collections.emptySet());
+    }
+
+    private void load(@Nullable TrestleTransaction transaction) {
+        logger.info("Loading spatial equivalence graph");
+        final QueryBuilder qb = this.ontology.getUnderlyingQueryBuilder();
+        for (final TrestleResult result : executeQuery(qb.buildSTUnionGraphQuery(), transaction)) {
+            final STObjectWrapper whole = this.objects.computeIfAbsent(result.unwrapIndividual("whole").asOWLNamedIndividual(),
+                    key -> new STObjectWrapper(key, trestleObjectIRI, buildExistenceTemporal(result, "wStart", "wEnd")));
+            final UnionEdge edge = addEdge(result.unwrapIndividual("union").asOWLNamedIndividual(), whole);
+            addComponent(edge, this.objects.computeIfAbsent(result.unwrapIndividual("object").asOWLNamedIndividual(),
+                    key -> new STObjectWrapper(key, trestleObjectIRI, buildExistenceTemporal(result, "start", "end"))));
+        }
+
+        int equalsCount = 0;
+        for (final TrestleResult result : executeQuery(qb.buildSTEqualsGraphQuery(), transaction)) {
+            final STObjectWrapper subject = this.objects.computeIfAbsent(result.unwrapIndividual("subject").asOWLNamedIndividual(),
+                    key -> new STObjectWrapper(key, trestleObjectIRI, buildExistenceTemporal(result, "sStart", "sEnd")));
+            final STObjectWrapper object = this.objects.computeIfAbsent(result.unwrapIndividual("object").asOWLNamedIndividual(),
+                    key -> new STObjectWrapper(key, trestleObjectIRI, buildExistenceTemporal(result, "start", "end")));
+//            The relation is symmetric, but we only add the direction returned by the query, the same as the SPARQL traversal
+            addEqualTo(subject, object);
+            equalsCount++;
+        }
+        logger.info("Loaded {} unions and {} equals relations of {} objects into the spatial equivalence graph", this.unions.size(), equalsCount, this.objects.size());
+    }
+
+    private List<TrestleResult> executeQuery(String query, @Nullable TrestleTransaction transaction) {
+        final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(transaction);
+        return this.ontology.executeSPARQLResults(query).toList()
+                .doOnSuccess(success -> this.ontology.returnAndCommitTransaction(tt))
+                .doOnError(error -> this.ontology.returnAndAbortTransaction(tt))
+                .blockingGet();
+    }
+
+    private UnionEdge addEdge(OWLNamedIndividual union, STObjectWrapper whole) {
+        final UnionEdge edge = this.unions.computeIfAbsent(union, key -> new UnionEdge(new STObjectWrapper(key, spatialUnionIRI, whole.getExistenceTemporal()), whole));
+        this.wholeOf.computeIfAbsent(whole.getIndividual(), key -> ConcurrentHashMap.newKeySet()).add(edge);
+        return edge;
+    }
+
+    private void addComponent(UnionEdge edge, STObjectWrapper component) {
+        edge.components.add(component);
+        this.componentOf.computeIfAbsent(component.getIndividual(), key -> ConcurrentHashMap.newKeySet()).add(edge);
+    }
+
+    private void addEqualTo(STObjectWrapper subject, STObjectWrapper object) {
+        this.equalTo.computeIfAbsent(subject.getIndividual(), key -> ConcurrentHashMap.newKeySet()).add(object);
+    }
+
+    private static TemporalObject buildExistenceTemporal(TrestleResult result, String start, String end) {
+        return TemporalObjectBuilder.buildTemporalFromResults(TemporalScope.EXISTS,
+                Optional.empty(),
+                result.getLiteral(start),
+                result.getLiteral(end)).orElseThrow(() -> new IllegalStateException("Cannot get temporals for object"));
+    }
+
+    /**
+     * A spatial union, linking the whole object to each of its components
+     */
+    static final class UnionEdge {
+        final STObjectWrapper union;
+        final STObjectWrapper whole;
+        final Set<STObjectWrapper> components = ConcurrentHashMap.newKeySet();
+
+        private UnionEdge(STObjectWrapper union, STObjectWrapper whole) {
+            this.union = union;
+            this.whole = whole;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return union.equals(((UnionEdge) o).union);
+        }
+
+        @Override
+        public int hashCode() {
+            return union.hashCode();
+        }
+    }
+}
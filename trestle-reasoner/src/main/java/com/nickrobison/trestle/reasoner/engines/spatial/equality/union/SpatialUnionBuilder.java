@@ -1,19 +1,20 @@
 package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
 
 import com.codahale.metrics.Histogram;
-import com.codahale.metrics.annotation.Metered;
 import com.codahale.metrics.annotation.Timed;
 import com.esri.core.geometry.Polygon;
 import com.nickrobison.metrician.Metrician;
 import com.nickrobison.trestle.common.TrestlePair;
+import com.nickrobison.trestle.reasoner.caching.GeometryCache;
 import com.nickrobison.trestle.reasoner.annotations.metrics.Metriced;
-import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngineUtils;
 import com.nickrobison.trestle.reasoner.parser.TemporalParser;
 import com.nickrobison.trestle.reasoner.parser.TrestleParser;
+import com.nickrobison.trestle.reasoner.threading.TrestleThreadPools;
 import com.nickrobison.trestle.types.events.TrestleEventType;
 import com.nickrobison.trestle.types.temporal.TemporalObject;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.locationtech.jts.io.WKBReader;
@@ -23,10 +24,10 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.cache.Cache;
 import javax.inject.Inject;
 import java.time.temporal.Temporal;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 import static com.nickrobison.trestle.common.TemporalUtils.compareTemporals;
@@ -41,13 +42,38 @@ public class SpatialUnionBuilder {
 
     private final TrestleParser tp;
     private final Histogram unionSetSize;
-    private final Cache<Integer, Geometry> geometryCache;
+    private final Histogram unionCandidateSize;
+    private final GeometryCache geometryCache;
+    private final boolean exhaustiveSearch;
+    private final int maxCachedUnions;
+    private final @Nullable ForkJoinPool searchPool;
 
     @Inject
-    public SpatialUnionBuilder(TrestleParser tp, Metrician metrician, Cache<Integer, Geometry> cache) {
+    public SpatialUnionBuilder(TrestleParser tp, Metrician metrician, GeometryCache cache, TrestleThreadPools threadPools) {
         this.tp = tp;
         unionSetSize = metrician.registerHistogram("union-set-size");
+        unionCandidateSize = metrician.registerHistogram("union-candidate-size");
         this.geometryCache = cache;
+
+        final Config config = ConfigFactory.load().getConfig("trestle.union");
+        final String strategy = config.getString("strategy");
+        switch (strategy) {
+            case "pruned": {
+                this.exhaustiveSearch = false;
+//                The pool is shared, and shutdown along with the other reasoner pools
+                this.searchPool = threadPools.getForkJoinPool("union-pool");
+                break;
+            }
+            case "exhaustive": {
+                this.exhaustiveSearch = true;
+                this.searchPool = null;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported union search strategy: %s", strategy));
+        }
+        this.maxCachedUnions = config.getInt("maxCachedUnions");
+        logger.debug("Using {} union search", strategy);
     }
 
     public <T extends @NonNull Object> UnionContributionResult calculateContribution(UnionEqualityResult<T> equalityResult, int inputSRID) {
@@ -56,7 +82,7 @@ public class SpatialUnionBuilder {
 
 //        Determine the class of the object
         final T unionObject = equalityResult.getUnionObject();
-        final Geometry geometry = SpatialEngineUtils.getGeomFromCache(unionObject, inputSRID, this.geometryCache);
+        final Geometry geometry = this.geometryCache.getGeometry(unionObject, inputSRID);
 
 //        Build the contribution object
         final UnionContributionResult result = new UnionContributionResult(this.tp.classParser.getIndividual(unionObject),
@@ -68,8 +94,7 @@ public class SpatialUnionBuilder {
                 .stream()
 //                Build geometry object
                 .map(object -> new TrestlePair<>(this.tp.classParser.getIndividual(object),
-                        SpatialEngineUtils.getGeomFromCache(object,
-                                inputSRID, this.geometryCache)))
+                        this.geometryCache.getGeometry(object, inputSRID)))
                 .map(pair -> {
 //                    Calculate the proportion contribution
                     final double percentage = calculateEqualityPercentage(geometry, pair.getRight());
@@ -103,7 +128,7 @@ public class SpatialUnionBuilder {
         final Map<Geometry, T> earlyObjectMap = new HashMap<>(earlyObjects.size());
         final Set<Geometry> earlyPolygons = new HashSet<>(earlyObjects.size());
         for (T earlyObject : earlyObjects) {
-            final Geometry earlyGeom = SpatialEngineUtils.getGeomFromCache(earlyObject, inputSRID, this.geometryCache);
+            final Geometry earlyGeom = this.geometryCache.getGeometry(earlyObject, inputSRID);
             earlyObjectMap.put(earlyGeom, earlyObject);
             earlyPolygons.add(earlyGeom);
         }
@@ -112,13 +137,14 @@ public class SpatialUnionBuilder {
         final Map<Geometry, T> lateObjectMap = new HashMap<>(lateObjects.size());
         final Set<Geometry> latePolygons = new HashSet<>(lateObjects.size());
         for (T lateObject : lateObjects) {
-            final Geometry lateGeom = SpatialEngineUtils.getGeomFromCache(lateObject, inputSRID, this.geometryCache);
+            final Geometry lateGeom = this.geometryCache.getGeometry(lateObject, inputSRID);
             lateObjectMap.put(lateGeom, lateObject);
             latePolygons.add(lateGeom);
         }
 
 //        In some cases, we might have multiple objects in the early/late polygons.
 //        If that happens, we need to figure out if we're a split/merge and then piecewise iterate through the possible matches
+        final UnionSearch unionSearch = createUnionSearch(geometryFactory, earlyPolygons, latePolygons);
         final Queue<PolygonMatchSet> matchSetQueue;
         final MATCH_DIRECTION matchDirection = determineMatchDirection(dividedObjects);
         switch (matchDirection) {
@@ -127,7 +153,7 @@ public class SpatialUnionBuilder {
                 matchSetQueue = new PriorityQueue<>(lateObjects.size(), strengthComparator);
                 latePolygons
                         .forEach(latePoly -> {
-                            final Optional<PolygonMatchSet> match = getApproxEqualUnion(geometryFactory, earlyPolygons, Collections.singleton(latePoly), matchThreshold);
+                            final Optional<PolygonMatchSet> match = unionSearch.findUnion(earlyPolygons, Collections.singleton(latePoly), matchThreshold);
                             match.ifPresent(matchSetQueue::add);
                         });
                 break;
@@ -136,7 +162,7 @@ public class SpatialUnionBuilder {
                 matchSetQueue = new PriorityQueue<>(earlyObjects.size(), strengthComparator);
                 earlyPolygons
                         .forEach(earlyPoly -> {
-                            final Optional<PolygonMatchSet> match = getApproxEqualUnion(geometryFactory, Collections.singleton(earlyPoly), latePolygons, matchThreshold);
+                            final Optional<PolygonMatchSet> match = unionSearch.findUnion(Collections.singleton(earlyPoly), latePolygons, matchThreshold);
                             match.ifPresent(matchSetQueue::add);
                         });
                 break;
@@ -147,13 +173,13 @@ public class SpatialUnionBuilder {
                 matchSetQueue = new PriorityQueue<>(lateObjects.size() + earlyObjects.size(), strengthComparator);
                 latePolygons
                         .forEach(latePoly -> {
-                            final Optional<PolygonMatchSet> match = getApproxEqualUnion(geometryFactory, earlyPolygons, Collections.singleton(latePoly), matchThreshold);
+                            final Optional<PolygonMatchSet> match = unionSearch.findUnion(earlyPolygons, Collections.singleton(latePoly), matchThreshold);
                             match.ifPresent(matchSetQueue::add);
                         });
 //                Then split
                 earlyPolygons
                         .forEach(earlyPoly -> {
-                            final Optional<PolygonMatchSet> match = getApproxEqualUnion(geometryFactory, Collections.singleton(earlyPoly), latePolygons, matchThreshold);
+                            final Optional<PolygonMatchSet> match = unionSearch.findUnion(Collections.singleton(earlyPoly), latePolygons, matchThreshold);
                             match.ifPresent(matchSetQueue::add);
                         });
                 break;
@@ -169,15 +195,15 @@ public class SpatialUnionBuilder {
 //            If we're a merge, get the late object, and its associated early objects
             case MERGE: {
                 return Optional.of(new UnionEqualityResult<>(
-                        getSetFirstFromMap(lateObjectMap, polygonMatchSet.latePolygons),
-                        getMapValuesFromSet(earlyObjectMap, polygonMatchSet.earlyPolygons),
+                        getSetFirstFromMap(lateObjectMap, polygonMatchSet.getLatePolygons()),
+                        getMapValuesFromSet(earlyObjectMap, polygonMatchSet.getEarlyPolygons()),
                         TrestleEventType.MERGED,
                         polygonMatchSet.getStrength()));
             }
             case SPLIT: {
                 return Optional.of(new UnionEqualityResult<>(
-                        getSetFirstFromMap(earlyObjectMap, polygonMatchSet.earlyPolygons),
-                        getMapValuesFromSet(lateObjectMap, polygonMatchSet.latePolygons),
+                        getSetFirstFromMap(earlyObjectMap, polygonMatchSet.getEarlyPolygons()),
+                        getMapValuesFromSet(lateObjectMap, polygonMatchSet.getLatePolygons()),
                         TrestleEventType.SPLIT,
                         polygonMatchSet.getStrength()));
             }
@@ -198,66 +224,31 @@ public class SpatialUnionBuilder {
     public <A extends @NonNull Object, B extends @NonNull Object> double calculateSpatialEquals(A inputObject, B matchObject) {
         final Integer aSRID = this.tp.classParser.getClassProjection(inputObject.getClass());
         final Integer bSRID = this.tp.classParser.getClassProjection(matchObject.getClass());
-        final Geometry inputPolygon = SpatialEngineUtils.getGeomFromCache(inputObject, aSRID, this.geometryCache);
+        final Geometry inputPolygon = this.geometryCache.getGeometry(inputObject, aSRID);
 //        Re-project match object to input object SRID, unless we already have one in the cache
-        final Geometry matchPolygon = SpatialEngineUtils.reprojectObject(matchObject, bSRID, aSRID, this.geometryCache);
+        final Geometry matchPolygon = this.geometryCache.getGeometry(matchObject, bSRID, aSRID);
 
 
         return calculateEqualityPercentage(inputPolygon, matchPolygon);
     }
 
 
-    private Optional<PolygonMatchSet> getApproxEqualUnion(GeometryFactory geometryFactory, Set<Geometry> inputPolygons, Set<Geometry> matchPolygons, double matchThreshold) {
-        final Set<Set<Geometry>> allInputSets = powerSet(inputPolygons);
-
-        for (Set<Geometry> inputSet : allInputSets) {
-            if (inputSet.isEmpty()) {
-                continue;
-            }
-
-            Optional<PolygonMatchSet> matchSet = executeUnionCalculation(geometryFactory, matchPolygons, inputSet, matchThreshold);
-            if (matchSet.isPresent()) {
-                return matchSet;
-            }
-        }
-        return Optional.empty();
-    }
-
-    @Timed(name = "union-calculation-timer", absolute = true)
-    @Metered(name = "union-calculation-meter", absolute = true)
-    private Optional<PolygonMatchSet> executeUnionCalculation(GeometryFactory geometryFactory, Set<Geometry> matchPolygons, Set<Geometry> inputSet, double matchThreshold) {
-        final GeometryCollection geometryCollection = new GeometryCollection(inputSet.toArray(new Geometry[inputSet.size()]), geometryFactory);
-        logger.trace("Executing union operation for {}", inputSet);
-        final Geometry unionInputGeom = geometryCollection.union();
-
-        this.unionSetSize.update(inputSet.size());
-
-//                Get all subsets of matchPolygons
-        final Set<Set<Geometry>> allMatchSets = powerSet(matchPolygons);
-        for (Set<Geometry> matchSet : allMatchSets) {
-            if (matchSet.isEmpty()) {
-                continue;
-            }
-            final double matchStrength;
-            if ((matchStrength = executeUnion(geometryFactory, matchThreshold, unionInputGeom, new ArrayList<>(matchSet))) > matchThreshold) {
-                return Optional.of(new PolygonMatchSet(inputSet, matchSet, matchStrength));
-            }
-        }
-        return Optional.empty();
-    }
-
-    @Timed(name = "union-strength-timer", absolute = true)
-    @Metered(name = "union-strength-meter", absolute = true)
-    private double executeUnion(GeometryFactory geometryFactory, double matchThreshold, Geometry unionInputGeom, List<Geometry> matchGeomList) {
-        final GeometryCollection geometryCollection = new GeometryCollection(matchGeomList.toArray(new Geometry[matchGeomList.size()]), geometryFactory);
-        logger.trace("Executing union operation for {}", matchGeomList);
-        this.unionSetSize.update(matchGeomList.size());
-        final Geometry unionMatchGeom = geometryCollection.union();
-        final double approxEqual = calculateEqualityPercentage(unionInputGeom, unionMatchGeom);
-        if (approxEqual > matchThreshold) {
-            return approxEqual;
+    /**
+     * Create the {@link UnionSearch} for the given early and late polygons, based on the configured strategy
+     *
+     * @param geometryFactory - {@link GeometryFactory} for the input SRID
+     * @param earlyPolygons   - {@link Set} of early {@link Geometry}
+     * @param latePolygons    - {@link Set} of late {@link Geometry}
+     * @return - {@link UnionSearch}
+     */
+    private UnionSearch createUnionSearch(GeometryFactory geometryFactory, Set<Geometry> earlyPolygons, Set<Geometry> latePolygons) {
+        if (this.exhaustiveSearch || this.searchPool == null) {
+            return new ExhaustiveUnionSearch(geometryFactory, this.unionSetSize);
         }
-        return 0.0;
+        final List<Geometry> polygons = new ArrayList<>(earlyPolygons.size() + latePolygons.size());
+        polygons.addAll(earlyPolygons);
+        polygons.addAll(latePolygons);
+        return new PrunedUnionSearch(this.searchPool, polygons, this.maxCachedUnions, this.unionSetSize, this.unionCandidateSize);
     }
 
     /**
@@ -267,7 +258,7 @@ public class SpatialUnionBuilder {
      * @param matchPolygon - {@link Polygon} to match against input polygon
      * @return - {@link Double} value of percent overlap
      */
-    private static double calculateEqualityPercentage(Geometry inputPolygon, Geometry matchPolygon) {
+    static double calculateEqualityPercentage(Geometry inputPolygon, Geometry matchPolygon) {
         final double inputArea = inputPolygon.getArea();
         final double matchArea = matchPolygon.getArea();
         double greaterArea = inputArea >= matchArea ? inputArea : matchArea;
@@ -277,35 +268,6 @@ public class SpatialUnionBuilder {
         return intersectionArea / greaterArea;
     }
 
-    /**
-     * Constructs a {@link Set} of {@link Set} representing all possible combinations of the input set of {@link Polygon}
-     *
-     * @param originalSet - {@link Set} of {@link Polygon} representing possible input combinations
-     * @return - {@link Set} of {@link Set} of {@link Polygon} to determine if a union combination exists
-     */
-    private static Set<Set<Geometry>> powerSet(Set<Geometry> originalSet) {
-//        No idea why we need to do this instead of ComparingInt.reversed(), but we do
-        SortedSet<Set<Geometry>> sets = new TreeSet<>((o1, o2) -> Integer.compare(o2.size(), o1.size()));
-//        Null safe way of handling an empty queue
-        final Queue<Geometry> list = new ArrayDeque<>(originalSet);
-        Geometry head = list.poll();
-        if (head == null) {
-            sets.add(new HashSet<>());
-            return sets;
-        }
-
-        Set<Geometry> rest = new HashSet<>(list);
-        for (Set<Geometry> set : powerSet(rest)) {
-            Set<Geometry> newSet = new HashSet<>();
-            newSet.add(head);
-            newSet.addAll(set);
-            sets.add(newSet);
-            sets.add(set);
-        }
-        return sets;
-    }
-
-
     /**
      * Divide objects into 2 temporal regions
      *
@@ -428,29 +390,4 @@ public class SpatialUnionBuilder {
         MERGE,
         UNKNOWN
     }
-
-    private static class PolygonMatchSet {
-
-        private final Set<Geometry> earlyPolygons;
-        private final Set<Geometry> latePolygons;
-        private final double strength;
-
-        PolygonMatchSet(Set<Geometry> earlyPolygons, Set<Geometry> latePolygons, double strength) {
-            this.earlyPolygons = earlyPolygons;
-            this.latePolygons = latePolygons;
-            this.strength = strength;
-        }
-
-        Set<Geometry> getEarlyPolygons() {
-            return earlyPolygons;
-        }
-
-        Set<Geometry> getLatePolygons() {
-            return latePolygons;
-        }
-
-        double getStrength() {
-            return this.strength;
-        }
-    }
 }
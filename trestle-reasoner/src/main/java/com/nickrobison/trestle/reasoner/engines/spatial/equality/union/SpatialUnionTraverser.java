@@ -1,7 +1,9 @@
 package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
 
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.annotation.Metered;
 import com.codahale.metrics.annotation.Timed;
+import com.nickrobison.metrician.Metrician;
 import com.nickrobison.trestle.common.TemporalUtils;
 import com.nickrobison.trestle.ontology.ITrestleOntology;
 import com.nickrobison.trestle.ontology.types.TrestleResult;
@@ -13,6 +15,7 @@ import com.nickrobison.trestle.types.TemporalScope;
 import com.nickrobison.trestle.types.temporal.TemporalObject;
 import com.nickrobison.trestle.types.temporal.TemporalObjectBuilder;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.functions.Supplier;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -45,11 +48,17 @@ public class SpatialUnionTraverser {
 
     private final ITrestleOntology ontology;
     private final QueryBuilder qb;
+    private final SpatialEquivalenceGraph equivalenceGraph;
+    private final Timer graphLookupTimer;
+    private final Timer sparqlLookupTimer;
 
     @Inject
-    public SpatialUnionTraverser(ITrestleOntology ontology) {
+    public SpatialUnionTraverser(ITrestleOntology ontology, SpatialEquivalenceGraph equivalenceGraph, Metrician metrician) {
         this.ontology = ontology;
         this.qb = ontology.getUnderlyingQueryBuilder();
+        this.equivalenceGraph = equivalenceGraph;
+        this.graphLookupTimer = metrician.registerTimer("union-graph-lookup-timer");
+        this.sparqlLookupTimer = metrician.registerTimer("union-sparql-lookup-timer");
     }
 
     /**
@@ -91,9 +100,17 @@ public class SpatialUnionTraverser {
 
 //        Start the transaction
         final TrestleTransaction tt = this.ontology.createandOpenNewTransaction(transaction);
+//        If we have the equivalence graph, we can answer the query without going back to the database
+        final boolean useGraph = this.equivalenceGraph.isAvailable(tt);
 
         return Flowable.fromIterable(subjects)
                 .flatMapSingle(subject -> {
+                    if (useGraph) {
+                        final Optional<STObjectWrapper> graphObject = this.equivalenceGraph.getObject(subject);
+                        if (graphObject.isPresent()) {
+                            return Single.just(graphObject.get());
+                        }
+                    }
                     return this.ontology.getAllDataPropertiesForIndividual(subject)
                             .collect((Supplier<HashSet<OWLDataPropertyAssertionAxiom>>) HashSet::new, HashSet::add)
                     .map(axioms -> {
@@ -130,7 +147,16 @@ public class SpatialUnionTraverser {
                     currentValidObjects.removeAll(currentInvalidObjects);
                     validObjects.addAll(currentValidObjects);
 
-                    final Set<STObjectWrapper> equivalence = getEquivalence(validObjects, invalidObjects, seenObjects, queryTemporal, temporalDirection.get(), tt);
+                    final Set<STObjectWrapper> equivalence;
+                    if (useGraph) {
+                        try (Timer.Context ignored = this.graphLookupTimer.time()) {
+                            equivalence = getGraphEquivalence(validObjects, invalidObjects, seenObjects, queryTemporal, temporalDirection.get());
+                        }
+                    } else {
+                        try (Timer.Context ignored = this.sparqlLookupTimer.time()) {
+                            equivalence = getEquivalence(validObjects, invalidObjects, seenObjects, queryTemporal, temporalDirection.get(), tt);
+                        }
+                    }
                     if (!equivalence.isEmpty()) {
                         logger.debug("Found equivalence: {}", equivalence);
                     }
@@ -220,6 +246,79 @@ public class SpatialUnionTraverser {
         return getEquivalence(validObjects, invalidObjects, seenObjects, queryTemporal, temporalDirection, transaction);
     }
 
+    /**
+     * Walk the {@link SpatialEquivalenceGraph} to return a {@link Set} of {@link STObjectWrapper} that represent the {@link OWLNamedIndividual}s equivalent to the input Set
+     * Follows the same steps as {@link SpatialUnionTraverser#getEquivalence(Set, Queue, Set, Temporal, TemporalDirection, TrestleTransaction)}, but without querying the database
+     *
+     * @param validObjects      - {@link Set} of {@link STObjectWrapper} of valid objects that make up the equivalence set
+     * @param invalidObjects    - {@link Queue} of {@link STObjectWrapper} representing invalid objects that could contain additional valid objects
+     * @param seenObjects       - {@link Set} of {@link STObjectWrapper} of objects that have already been seen by the equivalence algorithm
+     * @param queryTemporal     - {@link Temporal} query temporal
+     * @param temporalDirection - {@link TemporalDirection} determining whether the algorithm is moving forwards or backwards in time
+     * @return - {@link Set} of {@link STObjectWrapper} that are equivalent to the input set, or an empty {@link Set} if there is no equivalence
+     */
+    private Set<STObjectWrapper> getGraphEquivalence(Set<STObjectWrapper> validObjects, Queue<STObjectWrapper> invalidObjects, Set<STObjectWrapper> seenObjects, Temporal queryTemporal, TemporalDirection temporalDirection) {
+        final Set<STObjectWrapper> processedObjects = new HashSet<>();
+        STObjectWrapper object;
+        while ((object = invalidObjects.poll()) != null) {
+//            Objects can be reached through multiple unions, but we only need to walk them once
+            if (!processedObjects.add(object)) {
+                continue;
+            }
+            final Set<STObjectWrapper> eqObjects = getGraphEqualObjects(object, temporalDirection, seenObjects);
+            if (eqObjects.isEmpty()) {
+                return new HashSet<>();
+            }
+            seenObjects.addAll(eqObjects);
+
+            final Set<STObjectWrapper> currentInvalidObjects = getInvalidObjects(eqObjects, queryTemporal);
+            invalidObjects.addAll(currentInvalidObjects);
+            eqObjects
+                    .stream()
+                    .filter(eqObj -> !currentInvalidObjects.contains(eqObj))
+                    .forEach(validObjects::add);
+        }
+        return validObjects;
+    }
+
+    /**
+     * Get the {@link Set} of {@link STObjectWrapper} from the {@link SpatialEquivalenceGraph} that are equivalent to the given {@link STObjectWrapper} input object
+     *
+     * @param inputObject - {@link STObjectWrapper} to determine equality of
+     * @param direction   - {@link TemporalDirection} whether the traversal is moving forwards or backwards in time
+     * @param seenObjects - {@link Set} of {@link STObjectWrapper} of objects that have already been processed by the algorithm
+     * @return - {@link Set} of {@link STObjectWrapper} objects that are equivalent to the given input object
+     */
+    private Set<STObjectWrapper> getGraphEqualObjects(STObjectWrapper inputObject, TemporalDirection direction, Set<STObjectWrapper> seenObjects) {
+        final Set<STObjectWrapper> equivalentObjects = new HashSet<>();
+//        Objects directly equal to the input object
+        this.equivalenceGraph.getEqualObjects(inputObject.getIndividual())
+                .stream()
+                .filter(object -> !object.equals(inputObject))
+                .filter(object -> isInDirection(object, inputObject, direction))
+                .forEach(equivalentObjects::add);
+//        If the object is equal to a union, it's equivalent to the components
+        for (final SpatialEquivalenceGraph.UnionEdge union : this.equivalenceGraph.getUnionsOf(inputObject.getIndividual())) {
+            union.components
+                    .stream()
+                    .filter(component -> !component.equals(inputObject))
+                    .filter(component -> isInDirection(component, inputObject, direction))
+                    .forEach(equivalentObjects::add);
+        }
+//        If the object is a component of a union, then we need all the components before we can move to the whole
+        for (final SpatialEquivalenceGraph.UnionEdge union : this.equivalenceGraph.getUnionsContaining(inputObject.getIndividual())) {
+            if (union.whole.equals(inputObject) || !isInDirection(union.whole, inputObject, direction)) {
+                continue;
+            }
+            if (!seenObjects.containsAll(union.components)) {
+                logger.trace("{} is not a complete union", union.union.getIndividual());
+                return new HashSet<>();
+            }
+            equivalentObjects.add(union.whole);
+        }
+        return equivalentObjects;
+    }
+
     /**
      * Execute equality query to determine the {@link Set} of {@link STObjectWrapper} that are equivalent to the given {@link STObjectWrapper} input object
      *
@@ -248,13 +347,7 @@ public class SpatialUnionTraverser {
 //                Filter out self object
                 .filter(object -> !object.getIndividual().equals(inputObject.getIndividual()))
 //                Filter out objects that are pointed in the wrong direction
-                .filter(object -> {
-                    if (direction == TemporalDirection.FORWARD) {
-                        return object.getExistenceTemporal().compareTo(inputObject.getExistenceTemporal().getIdTemporal()) != -1;
-                    } else {
-                        return object.getExistenceTemporal().compareTo(inputObject.getExistenceTemporal().getIdTemporal()) != 1;
-                    }
-                })
+                .filter(object -> isInDirection(object, inputObject, direction))
                 .collect(Collectors.toSet());
 
         for (STObjectWrapper queryObject : queryObjects) {
@@ -361,6 +454,22 @@ public class SpatialUnionTraverser {
         return Optional.ofNullable(direction);
     }
 
+    /**
+     * Determine whether the given object is pointed in the correct direction, relative to the input object
+     *
+     * @param object      - {@link STObjectWrapper} to check
+     * @param inputObject - {@link STObjectWrapper} input object
+     * @param direction   - {@link TemporalDirection} whether the traversal is moving forwards or backwards in time
+     * @return - {@code true} object exists in the given direction from the input object
+     */
+    private static boolean isInDirection(STObjectWrapper object, STObjectWrapper inputObject, TemporalDirection direction) {
+        if (direction == TemporalDirection.FORWARD) {
+            return object.getExistenceTemporal().compareTo(inputObject.getExistenceTemporal().getIdTemporal()) != -1;
+        } else {
+            return object.getExistenceTemporal().compareTo(inputObject.getExistenceTemporal().getIdTemporal()) != 1;
+        }
+    }
+
     static Comparator<STObjectWrapper> forwardComparator = (object1, object2) -> TemporalUtils.compareTemporals(object1.getExistenceTemporal().getIdTemporal(), object2.getExistenceTemporal().getIdTemporal());
 
     static Comparator<STObjectWrapper> backwardComparator = (object1, object2) -> TemporalUtils.compareTemporals(object2.getExistenceTemporal().getIdTemporal(), object1.getExistenceTemporal().getIdTemporal());
@@ -0,0 +1,22 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Strategy for finding the subsets of input and match polygons whose unions are approximately equal
+ */
+interface UnionSearch {
+
+    /**
+     * Find the subsets of the input and match polygons whose unions have a spatial match greater than the given threshold
+     *
+     * @param inputPolygons  - {@link Set} of {@link Geometry} to use as inputs
+     * @param matchPolygons  - {@link Set} of {@link Geometry} to match against
+     * @param matchThreshold - {@link Double} minimum match strength
+     * @return - {@link Optional} {@link PolygonMatchSet}, if a match exists
+     */
+    Optional<PolygonMatchSet> findUnion(Set<Geometry> inputPolygons, Set<Geometry> matchPolygons, double matchThreshold);
+}
@@ -2,13 +2,11 @@ package com.nickrobison.trestle.reasoner.threading;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.nickrobison.metrician.Metrician;
-import com.typesafe.config.Config;
-import com.typesafe.config.ConfigException;
-import com.typesafe.config.ConfigFactory;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,12 +14,16 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
  * Created by nrobison on 7/7/17.
+ * <p>
+ * Named executor which times how long each task waits in the queue and runs for.
+ * The backing thread pool (and its size, mode, queue bound and rejection policy) is provided by {@link TrestleThreadPools}.
  */
 // I hate overriding the null warnings, but I don't really know how to fix them.
 @SuppressWarnings({"pmd:DoNotUseThreads", "pmd:LawOfDemeter", "override.return.invalid", "return.type.invalid", "return.type.incompatible"})
@@ -30,90 +32,111 @@ public class TrestleExecutorService implements ExecutorService {
     private static final String THIS_CALL_IS_NOT_WRAPPED_BY_STACK_CLEANER_OR_TIMER = "This call is not wrapped by stack cleaner or timer";
 
     private final ExecutorService target;
+    private final boolean ownsTarget;
     private final Timer queueTimer;
     private final Timer executionTimer;
     private final Meter executionCount;
+    private final Meter rejectedCount;
+    private final Scheduler scheduler;
+    private volatile boolean shutdown = false;
 
     @Inject
-    public TrestleExecutorService(@Assisted String executorName, Metrician metrician) {
-        final Config config = ConfigFactory.load().getConfig("trestle.threading");
-//        Try to get the config, otherwise, fallback to the default
-        int executorSize;
-        try {
-            executorSize = config.getInt(executorName + ".size");
-        } catch (ConfigException.Missing e) {
-            logger.debug("Unable to find configuration for {}. Falling back to defaults", executorName);
-            executorSize = config.getInt("default-pool.size");
-        }
-
-        //        Setup the thread pool
-        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
-                .setNameFormat(String.format("Trestle-%s-%%d", executorName))
-                .setDaemon(false)
-                .build();
-        final LinkedBlockingQueue<Runnable> backingQueue = new LinkedBlockingQueue<>();
-        logger.debug("Creating thread-pool {} with size {}", executorName, executorSize);
-        this.target = new ThreadPoolExecutor(executorSize,
-                executorSize,
-                0L,
-                TimeUnit.MILLISECONDS,
-                backingQueue,
-                threadFactory);
+    public TrestleExecutorService(@Assisted String executorName, Metrician metrician, TrestleThreadPools threadPools) {
+//        Get the backing pool, which may be shared with other executors
+        final TrestleThreadPools.Pool pool = threadPools.getPool(executorName);
+        this.target = pool.executor;
+        this.ownsTarget = pool.name.equals(executorName);
+        this.scheduler = Schedulers.from(this);
 
 //        Setup Metrician Timers
         queueTimer = metrician.registerTimer(String.format("%s-queue-time", executorName));
         executionTimer = metrician.registerTimer(String.format("%s-execution-time", executorName));
         executionCount = metrician.registerMeter(String.format("%s-execution-count", executorName));
-        metrician.registerGauge(String.format("%s-queue-length", executorName), backingQueue::size);
+        rejectedCount = metrician.registerMeter(String.format("%s-rejected-count", executorName));
+        metrician.registerGauge(String.format("%s-queue-length", executorName), pool.queueLength::getAsInt);
     }
 
+    /**
+     * Get an RxJava {@link Scheduler} which runs its work on this executor,
+     * so tasks scheduled through Rx are still timed and bounded by the executor's queue
+     *
+     * @return - {@link Scheduler}
+     */
+    public Scheduler asScheduler() {
+        return this.scheduler;
+    }
 
+    /**
+     * Shutdown the executor.
+     * If the executor is backed by the shared-pool, it stops accepting new tasks, but the pool itself is left running,
+     * it's shutdown via {@link TrestleThreadPools#shutdown(long, TimeUnit)}
+     */
     @Override
     public void shutdown() {
-        this.target.shutdown();
+        this.shutdown = true;
+        if (this.ownsTarget) {
+            this.target.shutdown();
+        }
     }
 
     @NonNull
     @Override
     public List<Runnable> shutdownNow() {
-        return this.target.shutdownNow();
+        this.shutdown = true;
+        if (this.ownsTarget) {
+            return this.target.shutdownNow();
+        }
+        return Collections.emptyList();
     }
 
     @Override
     public boolean isShutdown() {
-        return this.target.isShutdown();
+        return this.ownsTarget ? this.target.isShutdown() : this.shutdown;
     }
 
     @Override
     public boolean isTerminated() {
-        return this.target.isTerminated();
+        return this.ownsTarget ? this.target.isTerminated() : this.shutdown;
     }
 
     @Override
     public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
-        return this.target.awaitTermination(timeout, unit);
+        if (this.ownsTarget) {
+            return this.target.awaitTermination(timeout, unit);
+        }
+        return this.shutdown;
     }
 
     @NonNull
     @Override
     public <T> Future<T> submit(@NonNull Callable<T> task) {
         final Instant taskSubmit = Instant.now();
+        if (this.shutdown) {
+            this.rejectedCount.mark();
+            throw new RejectedExecutionException("Executor has been shutdown");
+        }
         final Timer.Context time = this.queueTimer.time();
-        return this.target.submit(() -> {
-            time.stop();
-            logger.trace("Task took {} ms to start", Duration.between(taskSubmit, Instant.now()).toMillis());
-            this.executionCount.mark();
-            try (Timer.Context execTimer = executionTimer.time()) {
-                try {
-                    return task.call();
-                } catch (Exception e) {
-                    logger.error("Exception {} in task submitted from thread {}, here:", e, Thread.currentThread().getName(), clientTrace());
-                    throw e;
-                } finally {
-                    execTimer.stop();
+        try {
+            return this.target.submit(() -> {
+                time.stop();
+                logger.trace("Task took {} ms to start", Duration.between(taskSubmit, Instant.now()).toMillis());
+                this.executionCount.mark();
+                try (Timer.Context execTimer = executionTimer.time()) {
+                    try {
+                        return task.call();
+                    } catch (Exception e) {
+                        logger.error("Exception {} in task submitted from thread {}, here:", e, Thread.currentThread().getName(), clientTrace());
+                        throw e;
+                    } finally {
+                        execTimer.stop();
+                    }
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            time.stop();
+            this.rejectedCount.mark();
+            throw e;
+        }
     }
 
     @NonNull
@@ -0,0 +1,203 @@
+package com.nickrobison.trestle.reasoner.threading;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.IntSupplier;
+
+/**
+ * Owns the thread pools which back each of the {@link TrestleExecutorService}s.
+ * <p>
+ * Each named executor reads its settings from trestle.threading.{name}, falling back to trestle.threading.default-pool.
+ * Executors can either have their own pool, or run their tasks on the shared-pool, which avoids each engine holding its own set of (mostly idle) threads.
+ * Pools can be one of three modes:
+ * <ul>
+ * <li>fixed - {@link ThreadPoolExecutor} with a bounded queue, and a policy for handling tasks when the queue is full. Idle threads time out</li>
+ * <li>work-stealing - {@link ForkJoinPool}, in async (FIFO) mode</li>
+ * <li>virtual - a new virtual thread for each task, which is best suited to blocking I/O. Requires Java 21+, otherwise falls back to work-stealing</li>
+ * </ul>
+ */
+@Singleton
+@SuppressWarnings({"pmd:DoNotUseThreads"})
+public class TrestleThreadPools {
+
+    static final String SHARED_POOL = "shared-pool";
+    private static final Logger logger = LoggerFactory.getLogger(TrestleThreadPools.class);
+
+    private final Config config;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    @Inject
+    public TrestleThreadPools() {
+        this(ConfigFactory.load().getConfig("trestle.threading"));
+    }
+
+    TrestleThreadPools(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Get the {@link Pool} which backs the named executor, creating it if necessary.
+     * If the executor is configured to use the shared-pool, the shared {@link Pool} is returned
+     *
+     * @param executorName - {@link String} executor name
+     * @return - {@link Pool}
+     */
+    Pool getPool(String executorName) {
+        final Config settings = getSettings(executorName);
+        if (!executorName.equals(SHARED_POOL) && settings.getBoolean("shared")) {
+            logger.debug("Executor {} will use the shared pool", executorName);
+            return this.pools.computeIfAbsent(SHARED_POOL, name -> createPool(name, getSettings(name)));
+        }
+        return this.pools.computeIfAbsent(executorName, name -> createPool(name, settings));
+    }
+
+    /**
+     * Get the {@link ForkJoinPool} which backs the named executor, for work that's split into recursive tasks.
+     * The pool is owned by this class, so callers must not shut it down.
+     *
+     * @param executorName - {@link String} executor name
+     * @return - {@link ForkJoinPool}
+     * @throws IllegalStateException if the executor is not backed by a work-stealing pool
+     */
+    public ForkJoinPool getForkJoinPool(String executorName) {
+        final Pool pool = getPool(executorName);
+        if (!(pool.executor instanceof ForkJoinPool)) {
+            throw new IllegalStateException(String.format("Executor %s must use a work-stealing pool", executorName));
+        }
+        return (ForkJoinPool) pool.executor;
+    }
+
+    /**
+     * Shutdown all of the pools, waiting for the given time for any running tasks to complete
+     *
+     * @param timeout - time to wait
+     * @param unit    - {@link TimeUnit} of timeout
+     * @return - {@code true} all the pools terminated. {@code false} some pools still had running tasks
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        this.pools.values().forEach(pool -> pool.executor.shutdown());
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (final Pool pool : this.pools.values()) {
+            terminated &= pool.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return terminated;
+    }
+
+    private Config getSettings(String executorName) {
+        final Config defaults = this.config.getConfig("default-pool");
+        if (this.config.hasPath(executorName)) {
+            return this.config.getConfig(executorName).withFallback(defaults);
+        }
+        logger.debug("Unable to find configuration for {}. Falling back to defaults", executorName);
+        return defaults;
+    }
+
+    private static Pool createPool(String name, Config settings) {
+        final int size = settings.getInt("size");
+        final String mode = settings.getString("mode").toLowerCase(Locale.ROOT);
+        logger.debug("Creating {} thread-pool {} with size {}", mode, name, size);
+        switch (mode) {
+            case "fixed":
+                return createFixedPool(name, size, settings);
+            case "work-stealing":
+                return createWorkStealingPool(name, size);
+            case "virtual":
+                return createVirtualPool(name, size);
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported thread-pool mode %s for %s", mode, name));
+        }
+    }
+
+    private static Pool createFixedPool(String name, int size, Config settings) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(String.format("Trestle-%s-%%d", name))
+                .setDaemon(false)
+                .build();
+        final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(settings.getInt("queueSize"));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(size,
+                size,
+                settings.getDuration("keepAlive", TimeUnit.MILLISECONDS),
+                TimeUnit.MILLISECONDS,
+                queue,
+                threadFactory,
+                buildRejectionHandler(name, settings.getString("rejectionPolicy")));
+//        Let idle pools give up their threads
+        executor.allowCoreThreadTimeOut(true);
+        return new Pool(name, executor, queue::size);
+    }
+
+    private static Pool createWorkStealingPool(String name, int size) {
+        final ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(String.format("Trestle-%s-%d", name, thread.getPoolIndex()));
+            return thread;
+        };
+        final ForkJoinPool executor = new ForkJoinPool(size, threadFactory, null, true);
+        return new Pool(name, executor, executor::getQueuedSubmissionCount);
+    }
+
+    private static Pool createVirtualPool(String name, int size) {
+        try {
+//            Look this up reflectively, so we can still build and run on older JVMs
+            final ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new Pool(name, executor, () -> 0);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not supported by this JVM, falling back to a work-stealing pool for {}", name);
+            return createWorkStealingPool(name, size);
+        }
+    }
+
+    private static RejectedExecutionHandler buildRejectionHandler(String name, String policy) {
+        switch (policy.toLowerCase(Locale.ROOT)) {
+            case "caller-runs":
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case "abort":
+                return new ThreadPoolExecutor.AbortPolicy();
+            case "block":
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException(String.format("Thread-pool %s has been shutdown", name));
+                    }
+                    try {
+//                        Block the submitting thread until there's room in the queue
+                        executor.getQueue().put(runnable);
+//                        If all the workers have timed out, make sure there's one to pick up the queued task
+                        if (executor.getPoolSize() == 0) {
+                            executor.prestartCoreThread();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(String.format("Interrupted while waiting to submit to %s", name), e);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported rejection policy %s for %s", policy, name));
+        }
+    }
+
+    /**
+     * Backing {@link ExecutorService}, the name of the pool and a function to measure its queue length
+     */
+    static final class Pool {
+        final String name;
+        final ExecutorService executor;
+        final IntSupplier queueLength;
+
+        private Pool(String name, ExecutorService executor, IntSupplier queueLength) {
+            this.name = name;
+            this.executor = executor;
+            this.queueLength = queueLength;
+        }
+    }
+}
@@ -5,14 +5,17 @@ import com.esri.core.geometry.Polygon;
 import com.google.common.collect.ImmutableList;
 import com.nickrobison.trestle.SharedTestUtils;
 import com.nickrobison.trestle.ontology.exceptions.MissingOntologyEntity;
+import com.nickrobison.trestle.reasoner.engines.object.BulkOptions;
 import com.nickrobison.trestle.reasoner.exceptions.NoValidStateException;
 import com.nickrobison.trestle.reasoner.exceptions.TrestleClassException;
 import com.nickrobison.trestle.reasoner.exceptions.TrestleMissingIndividualException;
+import com.nickrobison.trestle.reasoner.exceptions.UnregisteredClassException;
 import com.nickrobison.trestle.types.TrestleIndividual;
 import com.nickrobison.trestle.types.TrestleRelation;
 import com.nickrobison.trestle.types.events.TrestleEvent;
 import com.nickrobison.trestle.types.events.TrestleEventType;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -30,6 +33,8 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -109,6 +114,99 @@ public class TrestleAPITest extends AbstractReasonerTest {
         assertEquals(25, reasoner.getUnderlyingOntology().getCommittedTransactionCount(), "Should have the correct number of committed transactions");
     }
 
+    @Test
+    public void testBatchRead() throws TrestleClassException, MissingOntologyEntity {
+        final List<TestClasses.StateParent> states = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final TestClasses.CountyRelated county = new TestClasses.CountyRelated(String.format("County-%d", i), LocalDate.of(2018, 3, 11), i, String.format("County %d", i), i * 100);
+            states.add(new TestClasses.StateParent(i, String.format("State-%d", i), LocalDate.of(2020, 1, 1), county));
+        }
+        for (TestClasses.StateParent state : states) {
+            reasoner.writeTrestleObject(state).blockingAwait();
+        }
+
+        final List<IRI> stateIRIs = states
+                .stream()
+                .map(state -> tp.classParser.getIndividual(state).getIRI())
+                .collect(Collectors.toList());
+        final List<TestClasses.StateParent> batchStates = reasoner.readTrestleObjects(TestClasses.StateParent.class, stateIRIs, null, null).toList().blockingGet();
+        assertAll(() -> assertEquals(states.size(), batchStates.size(), "Should have read all the states"),
+                () -> assertTrue(batchStates.containsAll(states), "Should have read the states, along with their counties"));
+
+//        Missing individuals should either be skipped, or fail the entire read
+        final List<IRI> withMissing = new ArrayList<>(stateIRIs);
+        withMissing.add(IRI.create(OVERRIDE_PREFIX, "missing-state"));
+        final List<TestClasses.StateParent> skippedStates = reasoner.readTrestleObjects(TestClasses.StateParent.class, withMissing, true, null, null, true, null).toList().blockingGet();
+        assertEquals(states.size(), skippedStates.size(), "Should skip the missing state");
+        assertThrows(TrestleMissingIndividualException.class, () -> reasoner.readTrestleObjects(TestClasses.StateParent.class, withMissing, true, null, null, false, null).toList().blockingGet());
+    }
+
+    @Test
+    public void testBulkWrite() {
+        final List<TestClasses.StateParent> states = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            final TestClasses.CountyRelated county = new TestClasses.CountyRelated(String.format("Bulk-County-%d", i), LocalDate.of(2018, 3, 11), i, String.format("Bulk County %d", i), i * 100);
+            states.add(new TestClasses.StateParent(i, String.format("Bulk-State-%d", i), LocalDate.of(2020, 1, 1), county));
+        }
+        final BulkOptions options = BulkOptions.builder()
+                .batchSize(3)
+                .parallelism(2)
+                .build();
+        reasoner.bulkWrite(Flowable.fromIterable(states), options).blockingAwait();
+
+        final List<IRI> stateIRIs = states
+                .stream()
+                .map(state -> tp.classParser.getIndividual(state).getIRI())
+                .collect(Collectors.toList());
+        final List<TestClasses.StateParent> bulkStates = reasoner.readTrestleObjects(TestClasses.StateParent.class, stateIRIs, null, null).toList().blockingGet();
+        assertAll(() -> assertEquals(states.size(), bulkStates.size(), "Should have read all the states"),
+                () -> assertTrue(bulkStates.containsAll(states), "Should have read the states, along with their counties"));
+
+        final List<TrestleEvent> events = reasoner.getIndividualEvents(TestClasses.StateParent.class, tp.classParser.getIndividual(states.get(0))).toList().blockingGet();
+        assertTrue(events.stream().anyMatch(event -> event.getType() == TrestleEventType.CREATED), "Should have created event");
+
+//        Writing the same objects again should merge them
+        reasoner.bulkWrite(Flowable.fromIterable(states), options).blockingAwait();
+        assertEquals(states.size(), reasoner.readTrestleObjects(TestClasses.StateParent.class, stateIRIs, null, null).toList().blockingGet().size(), "Should not duplicate states");
+
+//        Unregistered classes should fail the load
+        reasoner.bulkWrite(Flowable.just(new Object()), options)
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertError(UnregisteredClassException.class);
+    }
+
+    @Test
+    public void testBulkWriteDuplicates() {
+        final LocalDate date = LocalDate.of(2020, 1, 1);
+        final TestClasses.CountyRelated bulkCounty = new TestClasses.CountyRelated("Bulk-Duplicate-County", LocalDate.of(2018, 3, 11), 9001, "Bulk Duplicate County", 100);
+        final TestClasses.CountyRelated sequentialCounty = new TestClasses.CountyRelated("Sequential-Duplicate-County", LocalDate.of(2018, 3, 11), 9002, "Sequential Duplicate County", 100);
+        final TestClasses.StateParent bulkFirst = new TestClasses.StateParent(9001, "Duplicate-State-First", date, bulkCounty);
+        final TestClasses.StateParent bulkSecond = new TestClasses.StateParent(9001, "Duplicate-State-Second", date, bulkCounty);
+        final TestClasses.StateParent sequentialFirst = new TestClasses.StateParent(9002, "Duplicate-State-First", date, sequentialCounty);
+        final TestClasses.StateParent sequentialSecond = new TestClasses.StateParent(9002, "Duplicate-State-Second", date, sequentialCounty);
+
+//        Both versions of the state end up in the same batch, which should give the same result as writing them one at a time
+        final BulkOptions options = BulkOptions.builder()
+                .batchSize(10)
+                .parallelism(1)
+                .build();
+        reasoner.bulkWrite(Flowable.just(bulkFirst, bulkSecond), options).blockingAwait();
+        reasoner.writeTrestleObject(sequentialFirst).blockingAwait();
+        reasoner.writeTrestleObject(sequentialSecond).blockingAwait();
+
+        final OWLNamedIndividual bulkIndividual = tp.classParser.getIndividual(bulkFirst);
+        final OWLNamedIndividual sequentialIndividual = tp.classParser.getIndividual(sequentialFirst);
+        final TestClasses.StateParent bulkState = reasoner.readTrestleObject(TestClasses.StateParent.class, bulkIndividual.getIRI(), false, null).blockingGet();
+        final TestClasses.StateParent sequentialState = reasoner.readTrestleObject(TestClasses.StateParent.class, sequentialIndividual.getIRI(), false, null).blockingGet();
+        final List<TrestleEvent> bulkEvents = reasoner.getIndividualEvents(TestClasses.StateParent.class, bulkIndividual).toList().blockingGet();
+        final List<TrestleEvent> sequentialEvents = reasoner.getIndividualEvents(TestClasses.StateParent.class, sequentialIndividual).toList().blockingGet();
+        assertAll(() -> assertEquals(sequentialState.getName(), bulkState.getName(), "Should have the same facts as writing one at a time"),
+                () -> assertEquals(sequentialState.getDate(), bulkState.getDate(), "Should have the same temporal as writing one at a time"),
+                () -> assertEquals(sequentialEvents.size(), bulkEvents.size(), "Should have the same events as writing one at a time"),
+                () -> assertEquals(1, bulkEvents.stream().filter(event -> event.getType() == TrestleEventType.CREATED).count(), "Should only be created once"));
+    }
+
     @Test
     public void testClassRegistration() throws TrestleClassException, MissingOntologyEntity {
         final TestClasses.GAULComplexClassTest gaulComplexClassTest = new TestClasses.GAULComplexClassTest();
@@ -199,6 +199,20 @@ public class TrestleFactTests extends AbstractReasonerTest {
                 () -> assertEquals(LocalDate.of(1989, 3, 26).plusYears(10).plusDays(1), boundedExtendedEvents.stream().filter(event -> event.getType() == TrestleEventType.DESTROYED).findFirst().get().getAtTemporal(), "DESTROYED should equal existsTo"));
     }
 
+    @Test
+    public void testFactValuesCache() {
+        final TestClasses.GAULTestClass cachedFact = new TestClasses.GAULTestClass(4115, "cached-fact-object", LocalDate.of(1989, 3, 26).atStartOfDay(), LocalDate.of(1990, 3, 26).atStartOfDay(), "POINT(0.71255092695307 -25.572028714467507)");
+        this.reasoner.writeTrestleObject(cachedFact).blockingAwait();
+
+//        Read the values before and after the object has been cached, they should be the same
+        final List<Object> coldValues = this.reasoner.getFactValues(TestClasses.GAULTestClass.class, "cached-fact-object", "adm0_code", LocalDate.of(1989, 1, 1), LocalDate.of(1991, 1, 1), null).toList().blockingGet();
+        final TestClasses.GAULTestClass cachedObject = this.reasoner.readTrestleObject(TestClasses.GAULTestClass.class, "cached-fact-object", LocalDate.of(1989, 5, 14), null).blockingGet();
+        assertEquals(cachedFact, cachedObject, "Should read object into cache");
+        final List<Object> warmValues = this.reasoner.getFactValues(TestClasses.GAULTestClass.class, "cached-fact-object", "adm0_code", LocalDate.of(1989, 1, 1), LocalDate.of(1991, 1, 1), null).toList().blockingGet();
+        assertAll(() -> assertFalse(coldValues.isEmpty(), "Should have fact values"),
+                () -> assertEquals(coldValues, warmValues, "Cached object should not change fact values"));
+    }
+
     @DatasetClass(name = "BoundedVersionTest")
     public static class BoundedFact implements Serializable {
         private static final long serialVersionUID = 42L;
@@ -0,0 +1,106 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import com.nickrobison.trestle.reasoner.annotations.IndividualIdentifier;
+import com.nickrobison.trestle.reasoner.annotations.Spatial;
+import com.nickrobison.trestle.reasoner.parser.IClassParser;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.mockito.Mockito;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class GeometryCacheTest {
+
+    private static final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    private static final String PREFIX = "http://nickrobison.com/test/trestle.owl#";
+
+    private IClassParser parser;
+    private GeometryCache cache;
+
+    @BeforeEach
+    void setup() {
+        parser = Mockito.mock(IClassParser.class);
+        Mockito.when(parser.getIndividual(Mockito.any())).thenAnswer(answer -> {
+            final CollidingObject object = answer.getArgument(0);
+            return df.getOWLNamedIndividual(IRI.create(PREFIX, object.getId()));
+        });
+        final Map<String, Object> config = new HashMap<>();
+        config.put("maxCoordinates", 1000);
+        config.put("expireAfterAccess", "5 minutes");
+        cache = new GeometryCache(parser, ConfigFactory.parseMap(config));
+    }
+
+    @Test
+    void testHashCollisions() {
+        final CollidingObject first = new CollidingObject("first", "POINT (1 1)");
+        final CollidingObject second = new CollidingObject("second", "POINT (2 2)");
+        assertEquals(first.hashCode(), second.hashCode(), "Objects should collide");
+
+        final Geometry firstGeom = cache.getGeometry(first, 4326);
+        final Geometry secondGeom = cache.getGeometry(second, 4326);
+        assertAll(() -> assertEquals(1.0, firstGeom.getCoordinate().x, "Should have first geometry"),
+                () -> assertEquals(2.0, secondGeom.getCoordinate().x, "Should have second geometry"),
+                () -> assertSame(firstGeom, cache.getGeometry(first, 4326), "Should read geometry from cache"));
+    }
+
+    @Test
+    void testUpdatedObject() {
+        final CollidingObject original = new CollidingObject("first", "POINT (1 1)");
+        final Geometry originalGeom = cache.getGeometry(original, 4326);
+        assertEquals(1.0, originalGeom.getCoordinate().x, "Should have original geometry");
+
+//        Same individual, with a new geometry, should be rebuilt
+        final CollidingObject updated = new CollidingObject("first", "POINT (3 3)", 2);
+        assertEquals(3.0, cache.getGeometry(updated, 4326).getCoordinate().x, "Should have updated geometry");
+    }
+
+    @Test
+    void testPreparedGeometry() {
+        final CollidingObject object = new CollidingObject("polygon", "POLYGON ((0 0, 0 10, 10 10, 10 0, 0 0))");
+        final PreparedGeometry prepared = cache.getPreparedGeometry(object, 4326);
+        assertAll(() -> assertSame(prepared, cache.getPreparedGeometry(object, 4326), "Should only prepare once"),
+                () -> assertSame(cache.getGeometry(object, 4326), prepared.getGeometry(), "Should prepare cached geometry"),
+                () -> assertTrue(cache.getHitRatio() > 0.0, "Should have cache hits"));
+    }
+
+    public static class CollidingObject {
+        private final String id;
+        private final String wkt;
+        private final int hash;
+
+        CollidingObject(String id, String wkt) {
+            this(id, wkt, 1);
+        }
+
+        CollidingObject(String id, String wkt, int hash) {
+            this.id = id;
+            this.wkt = wkt;
+            this.hash = hash;
+        }
+
+        @IndividualIdentifier
+        public String getId() {
+            return this.id;
+        }
+
+        @Spatial
+        public String getWkt() {
+            return this.wkt;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
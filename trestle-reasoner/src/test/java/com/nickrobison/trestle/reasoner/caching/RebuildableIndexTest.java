@@ -0,0 +1,81 @@
+package com.nickrobison.trestle.reasoner.caching;
+
+import com.nickrobison.trestle.reasoner.caching.tdtree.ConcurrentTDTree;
+import com.nickrobison.trestle.reasoner.caching.tdtree.TDTree;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RebuildableIndexTest {
+
+    @Test
+    public void testTDTreeOnlineRebuild() throws Exception {
+        onlineRebuildTest(new RebuildableIndex<>("test", new TDTree<>(5)));
+    }
+
+    @Test
+    public void testConcurrentTDTreeOnlineRebuild() {
+        onlineRebuildTest(new RebuildableIndex<>("test", new ConcurrentTDTree<>(5)));
+    }
+
+    @Test
+    public void testSingleRebuild() throws Exception {
+        final RebuildableIndex<String> index = new RebuildableIndex<>("test", new TDTree<>(5));
+        assertTrue(index.tryStartRebuild(), "Should start rebuild");
+        assertAll(() -> assertTrue(index.isRebuilding(), "Should be rebuilding"),
+                () -> assertFalse(index.tryStartRebuild(), "Should not start a second rebuild"));
+        index.beginRebuild();
+        index.abortRebuild();
+        assertAll(() -> assertFalse(index.isRebuilding(), "Should abort rebuild"),
+                () -> assertThrows(IllegalStateException.class, () -> index.completeRebuild(new TDTree<>(5)), "Should not complete aborted rebuild"));
+        assertTrue(index.tryStartRebuild(), "Should be able to rebuild again");
+    }
+
+    @Test
+    public void testFragmentationReportedOnce() {
+        final RebuildableIndex<String> index = new RebuildableIndex<>("test", new TDTree<>(5));
+        assertAll(() -> assertTrue(index.tryReportFragmentation(), "Should report first time"),
+                () -> assertFalse(index.tryReportFragmentation(), "Should not report again"));
+        index.clearFragmentationReported();
+        assertTrue(index.tryReportFragmentation(), "Should report again after clearing");
+    }
+
+    private static void onlineRebuildTest(RebuildableIndex<String> index) {
+        for (int i = 0; i < 100; i++) {
+            index.insertValue(String.format("object-%d", i), i, i + 10, String.format("value-%d", i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            index.deleteValue(String.format("object-%d", i), i + 5);
+        }
+        final ITrestleIndex<String> original = index.getDelegate();
+
+        assertTrue(index.tryStartRebuild(), "Should start rebuild");
+        final IndexSnapshot<String> snapshot = index.beginRebuild();
+        assertEquals(50, snapshot.size(), "Should only snapshot live records");
+
+//        Mutate the index while the new one is being built
+        index.insertValue("new-object", 1, 5, "new-value");
+        index.deleteValue("object-1", 6);
+        index.updateValue("object-3", 6, "updated-value");
+        final ITrestleIndex<String> rebuilt = index.buildFromSnapshot(snapshot);
+        assertAll(() -> assertSame(original, index.getDelegate(), "Should not swap until complete"),
+                () -> assertEquals("new-value", index.getValue("new-object", 2), "Should read mutations from current index"),
+                () -> assertNull(rebuilt.getValue("new-object", 2), "Should not have mutations before replay"));
+
+        assertEquals(3, index.completeRebuild(rebuilt), "Should replay all changes");
+        assertAll(() -> assertSame(rebuilt, index.getDelegate(), "Should swap in rebuilt index"),
+                () -> assertFalse(index.isRebuilding(), "Should finish rebuilding"),
+                () -> assertEquals(0.0, index.calculateFragmentation(), "Should compact index"),
+                () -> assertEquals("new-value", index.getValue("new-object", 2), "Should replay insert"),
+                () -> assertNull(index.getValue("object-1", 6), "Should replay delete"),
+                () -> assertEquals("updated-value", index.getValue("object-3", 6), "Should replay update"),
+                () -> assertEquals("value-99", index.getValue("object-99", 100), "Should have snapshot records"),
+                () -> assertNull(index.getValue("object-98", 100), "Should not have deleted records"));
+
+//        Further mutations shouldn't be recorded
+        index.insertValue("another-object", 1, 5, "another-value");
+        assertTrue(index.tryStartRebuild(), "Should start another rebuild");
+        final IndexSnapshot<String> second = index.beginRebuild();
+        assertEquals(0, index.completeRebuild(index.buildFromSnapshot(second)), "Should not have any changes to replay");
+    }
+}
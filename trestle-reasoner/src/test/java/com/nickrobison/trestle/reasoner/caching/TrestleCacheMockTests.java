@@ -1,7 +1,7 @@
 package com.nickrobison.trestle.reasoner.caching;
 
 import com.nickrobison.metrician.Metrician;
-import com.nickrobison.trestle.common.locking.TrestleUpgradableReadWriteLock;
+import com.nickrobison.trestle.common.locking.TrestleStampedReadWriteLock;
 import com.nickrobison.trestle.iri.IRIBuilder;
 import com.nickrobison.trestle.iri.IRIVersion;
 import com.nickrobison.trestle.iri.TrestleIRI;
@@ -57,7 +57,7 @@ public class TrestleCacheMockTests {
         this.dbIndex = new TDTree<>(10);
         MockitoAnnotations.initMocks(this);
         when(manager.getCache(eq(CACHE_NAME), any(), eq(Object.class))).thenReturn(cache);
-        trestleCache = new TrestleCacheImpl(validIndex, dbIndex, new TrestleUpgradableReadWriteLock(), listener, metrician, manager);
+        trestleCache = new TrestleCacheImpl(validIndex, dbIndex, new TrestleStampedReadWriteLock(), listener, metrician, manager);
         verify(manager, times(1)).getCache(eq(CACHE_NAME), eq(IRI.class), eq(Object.class));
 //        Reset everything, in case the cache object gets instantiated in a running VM. Like in the test suite
         reset(cache);
@@ -0,0 +1,125 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("Duplicates")
+public class ConcurrentTDTreeTest {
+
+    private static final String TEMPORAL_TEST_ID = "temporal-test";
+
+    @BeforeEach
+    public void setup() {
+        TDTree.resetMaxValue();
+        TDTreeHelpers.computeAdjustedLengths();
+        TDTreeHelpers.resetCaches();
+    }
+
+    @Test
+    public void testSimpleFunction() {
+        final ConcurrentTDTree<String> tdTree = new ConcurrentTDTree<>(2);
+        tdTree.insertValue("test-object", 8, 9, "test-object-string");
+        tdTree.insertValue("test-object2", 6, 9, "test-object-string2");
+        tdTree.insertValue("test-object3", 6, 9, "test-object-string3");
+        tdTree.insertValue("test-object4", 1, 2, "test-object-string4");
+        tdTree.insertValue("test-object", 1, 3, "test-object-string-early");
+        @Nullable final String value = tdTree.getValue("test-object", 2);
+        assertEquals("test-object-string-early", value, "Should have early value");
+        assertTrue(tdTree.getLeafCount() > 1, "Should have split");
+
+//        Test correct temporal provisioning
+        tdTree.insertValue(TEMPORAL_TEST_ID, 1, 5, "first-value");
+        tdTree.insertValue(TEMPORAL_TEST_ID, 5, 5, "second-value");
+        tdTree.insertValue(TEMPORAL_TEST_ID, 6, "third-value");
+        assertAll(() -> assertEquals("first-value", tdTree.getValue(TEMPORAL_TEST_ID, 4)),
+                () -> assertEquals("second-value", tdTree.getValue(TEMPORAL_TEST_ID, 5)),
+                () -> assertEquals("third-value", tdTree.getValue(TEMPORAL_TEST_ID, 9)));
+
+//        Try for some deletions
+        tdTree.deleteValue("test-object", 2);
+        assertNull(tdTree.getValue("test-object", 2), "Should have null value");
+        assertEquals("test-object-string4", tdTree.getValue("test-object4", 1), "Shouldn't throw an error after deleting a key/value pair");
+
+//        Try to update values and temporals
+        tdTree.updateValue(TEMPORAL_TEST_ID, 5, "new-value");
+        assertEquals("new-value", tdTree.getValue(TEMPORAL_TEST_ID, 5));
+        tdTree.setKeyTemporals(TEMPORAL_TEST_ID, 6, 6, 8);
+        assertAll(() -> assertNull(tdTree.getValue(TEMPORAL_TEST_ID, 10), "Should not have any value valid at time 10"),
+                () -> assertEquals("third-value", tdTree.getValue(TEMPORAL_TEST_ID, 7)));
+        tdTree.replaceKeyValue(TEMPORAL_TEST_ID, 3, 3, 4, "updated-temporal-value");
+        assertAll(() -> assertEquals("updated-temporal-value", tdTree.getValue(TEMPORAL_TEST_ID, 3)),
+                () -> assertNull(tdTree.getValue(TEMPORAL_TEST_ID, 1)));
+
+//        Try to remove a key and see if it returns a null
+        tdTree.deleteKeysWithValue("test-object-string2");
+        assertNull(tdTree.getValue("test-object2", 7));
+
+//        Rebuild and make sure everything is still there
+        final long size = tdTree.getIndexSize();
+        tdTree.rebuildIndex();
+        assertAll(() -> assertEquals(size, tdTree.getIndexSize()),
+                () -> assertEquals("updated-temporal-value", tdTree.getValue(TEMPORAL_TEST_ID, 3)),
+                () -> assertEquals("test-object-string3", tdTree.getValue("test-object3", 7)),
+                () -> assertEquals(0.0, tdTree.calculateFragmentation()));
+    }
+
+    @Test
+    public void testTemporalScans() {
+        TemporalScanTests.temporalScanTest(new ConcurrentTDTree<>(2));
+    }
+
+    @Test
+    public void testOverUnderflow() {
+        final ConcurrentTDTree<String> tdTree = new ConcurrentTDTree<>(2);
+        assertAll(() -> assertThrows(IllegalArgumentException.class, () -> tdTree.insertValue("hello", 1, TDTree.maxValue + 1, "overflow")),
+                () -> assertThrows(IllegalArgumentException.class, () -> tdTree.insertValue("hello", -1, 5, "overflow")));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException, ExecutionException {
+        final ConcurrentTDTree<String> tdTree = new ConcurrentTDTree<>(10);
+        final int threads = 8;
+        final int recordsPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    IntStream.range(0, recordsPerThread).forEach(i -> {
+                        final String key = String.format("object-%d-%d", thread, i);
+                        final long start = (thread * 100_000L) + (i * 100L);
+                        tdTree.insertValue(key, start, start + 50, key);
+//                        Read our own writes, while the other threads are splitting leaves
+                        assertEquals(key, tdTree.getValue(key, start + 10), String.format("Should have %s", key));
+                    });
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * recordsPerThread, tdTree.getIndexSize(), "Should have all the records");
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < recordsPerThread; i++) {
+                final String key = String.format("object-%d-%d", t, i);
+                assertEquals(key, tdTree.getValue(key, (t * 100_000L) + (i * 100L) + 25));
+            }
+        }
+    }
+}
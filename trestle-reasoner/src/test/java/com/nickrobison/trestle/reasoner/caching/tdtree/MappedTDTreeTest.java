@@ -0,0 +1,236 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.nickrobison.trestle.iri.IRIBuilder;
+import com.nickrobison.trestle.iri.IRIVersion;
+import com.nickrobison.trestle.iri.TrestleIRI;
+import com.nickrobison.trestle.reasoner.caching.IndexValueCodec;
+import com.nickrobison.trestle.reasoner.caching.TrestleIRICodec;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("Duplicates")
+public class MappedTDTreeTest {
+
+    private static final String TEMPORAL_TEST_ID = "temporal-test";
+    //    Use a tiny segment size, so we exercise growing the files
+    private static final int SEGMENT_SIZE = 4096;
+    private static final IndexValueCodec<String> STRING_CODEC = new IndexValueCodec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setup() {
+        TDTree.resetMaxValue();
+        TDTreeHelpers.computeAdjustedLengths();
+        TDTreeHelpers.resetCaches();
+    }
+
+    @Test
+    public void testSimpleFunction() throws IOException {
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "simple", 2, STRING_CODEC, SEGMENT_SIZE)) {
+            tdTree.insertValue("test-object", 8, 9, "test-object-string");
+            tdTree.insertValue("test-object2", 6, 9, "test-object-string2");
+            tdTree.insertValue("test-object3", 6, 9, "test-object-string3");
+            tdTree.insertValue("test-object4", 1, 2, "test-object-string4");
+            tdTree.insertValue("test-object", 1, 3, "test-object-string-early");
+            @Nullable final String value = tdTree.getValue("test-object", 2);
+            assertEquals("test-object-string-early", value, "Should have early value");
+            assertTrue(tdTree.getLeafCount() > 1, "Should have split");
+
+//        Test correct temporal provisioning
+            tdTree.insertValue(TEMPORAL_TEST_ID, 1, 5, "first-value");
+            tdTree.insertValue(TEMPORAL_TEST_ID, 5, 5, "second-value");
+            tdTree.insertValue(TEMPORAL_TEST_ID, 6, "third-value");
+            assertAll(() -> assertEquals("first-value", tdTree.getValue(TEMPORAL_TEST_ID, 4)),
+                    () -> assertEquals("second-value", tdTree.getValue(TEMPORAL_TEST_ID, 5)),
+                    () -> assertEquals("third-value", tdTree.getValue(TEMPORAL_TEST_ID, 9)));
+
+//        Try for some deletions
+            tdTree.deleteValue("test-object", 2);
+            assertNull(tdTree.getValue("test-object", 2), "Should have null value");
+            assertEquals("test-object-string4", tdTree.getValue("test-object4", 1), "Shouldn't throw an error after deleting a key/value pair");
+
+//        Try to update values and temporals
+            tdTree.updateValue(TEMPORAL_TEST_ID, 5, "new-value");
+            assertEquals("new-value", tdTree.getValue(TEMPORAL_TEST_ID, 5));
+            tdTree.setKeyTemporals(TEMPORAL_TEST_ID, 6, 6, 8);
+            assertAll(() -> assertNull(tdTree.getValue(TEMPORAL_TEST_ID, 10), "Should not have any value valid at time 10"),
+                    () -> assertEquals("third-value", tdTree.getValue(TEMPORAL_TEST_ID, 7)));
+            tdTree.replaceKeyValue(TEMPORAL_TEST_ID, 3, 3, 4, "updated-temporal-value");
+            assertAll(() -> assertEquals("updated-temporal-value", tdTree.getValue(TEMPORAL_TEST_ID, 3)),
+                    () -> assertNull(tdTree.getValue(TEMPORAL_TEST_ID, 1)));
+
+//        Try to remove a key and see if it returns a null
+            tdTree.deleteKeysWithValue("test-object-string2");
+            assertNull(tdTree.getValue("test-object2", 7));
+            assertTrue(tdTree.calculateFragmentation() > 0.0, "Should have dead values");
+
+//        Rebuild and make sure everything is still there
+            final long size = tdTree.getIndexSize();
+            tdTree.rebuildIndex();
+            assertAll(() -> assertEquals(size, tdTree.getIndexSize()),
+                    () -> assertEquals("updated-temporal-value", tdTree.getValue(TEMPORAL_TEST_ID, 3)),
+                    () -> assertEquals("test-object-string3", tdTree.getValue("test-object3", 7)),
+                    () -> assertEquals(0.0, tdTree.calculateFragmentation()));
+        }
+    }
+
+    @Test
+    public void testTemporalScans() throws IOException {
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "scans", 2, STRING_CODEC, SEGMENT_SIZE)) {
+            TemporalScanTests.temporalScanTest(tdTree);
+        }
+    }
+
+    @Test
+    public void testOverUnderflow() throws IOException {
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "overflow", 2, STRING_CODEC, SEGMENT_SIZE)) {
+            assertAll(() -> assertThrows(IllegalArgumentException.class, () -> tdTree.insertValue("hello", 1, TDTree.maxValue + 1, "overflow")),
+                    () -> assertThrows(IllegalArgumentException.class, () -> tdTree.insertValue("hello", -1, 5, "overflow")));
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        final int records = 1000;
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "reopen", 10, STRING_CODEC, SEGMENT_SIZE)) {
+            for (int i = 0; i < records; i++) {
+                tdTree.insertValue(String.format("object-%d", i), i * 100L, (i * 100L) + 50, String.format("value-%d", i));
+            }
+//            Add a bunch of records with the same interval, which will end up in a point leaf
+            for (int i = 0; i < 50; i++) {
+                tdTree.insertValue(String.format("point-%d", i), 1000, 2000, String.format("point-value-%d", i));
+            }
+            tdTree.deleteValue("object-0", 10);
+        }
+
+//        Open it back up, everything should still be there
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "reopen", 10, STRING_CODEC, SEGMENT_SIZE)) {
+            assertEquals(records + 49, tdTree.getIndexSize(), "Should have all the records");
+            assertNull(tdTree.getValue("object-0", 10), "Should not have deleted value");
+            for (int i = 1; i < records; i++) {
+                assertEquals(String.format("value-%d", i), tdTree.getValue(String.format("object-%d", i), (i * 100L) + 25));
+            }
+            for (int i = 0; i < 50; i++) {
+                assertEquals(String.format("point-value-%d", i), tdTree.getValue(String.format("point-%d", i), 1500));
+            }
+        }
+
+//        Changing the block size should drop the index
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "reopen", 20, STRING_CODEC, SEGMENT_SIZE)) {
+            assertEquals(0, tdTree.getIndexSize(), "Should be empty");
+        }
+    }
+
+    @Test
+    public void testSharedStrings() throws IOException {
+        final String prefix = "http://nickrobison.com/dissertation/trestle.owl#";
+        final TrestleIRICodec codec = new TrestleIRICodec();
+        final OffsetDateTime validFrom = OffsetDateTime.of(LocalDate.of(1990, 1, 1).atStartOfDay(), ZoneOffset.UTC);
+        try (MappedTDTree<TrestleIRI> tdTree = new MappedTDTree<>(directory, "strings", 10, codec, SEGMENT_SIZE)) {
+            for (int i = 0; i < 100; i++) {
+                tdTree.insertValue(String.format("object-%d", i), i * 100L, (i * 100L) + 50, IRIBuilder.encodeIRI(IRIVersion.V1, prefix, String.format("object-%d", i), null, validFrom, null));
+            }
+        }
+
+//        The prefix should only be written once, so the value file should be smaller than the values encoded on their own
+        final TrestleIRI value = IRIBuilder.encodeIRI(IRIVersion.V1, prefix, "object-1", null, validFrom, null);
+        try (RandomAccessFile values = new RandomAccessFile(MappedTDTree.valuePath(directory, "strings").toFile(), "r")) {
+            values.seek(8);
+            assertTrue(values.readLong() < 100L * codec.encode(value).length, "Should not store the prefix in every value");
+        }
+        try (MappedTDTree<TrestleIRI> tdTree = new MappedTDTree<>(directory, "strings", 10, codec, SEGMENT_SIZE)) {
+            assertEquals(value, tdTree.getValue("object-1", 125), "Should decode shared prefix after re-opening");
+//            Re-inserting after a restart should find the existing string, rather than appending a new one
+            tdTree.insertValue("object-new", 20000, 20050, value);
+            tdTree.deleteKeysWithValue(value);
+            assertAll(() -> assertNull(tdTree.getValue("object-1", 125), "Should match values encoded before the restart"),
+                    () -> assertNull(tdTree.getValue("object-new", 20025), "Should match values encoded after the restart"),
+                    () -> assertEquals(99, tdTree.getIndexSize()));
+            tdTree.rebuildIndex();
+            assertEquals(IRIBuilder.encodeIRI(IRIVersion.V1, prefix, "object-2", null, validFrom, null), tdTree.getValue("object-2", 225), "Should re-encode values during rebuild");
+        }
+    }
+
+    @Test
+    public void testInterruptedRebuild() throws IOException {
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "swap", 2, STRING_CODEC, SEGMENT_SIZE)) {
+            for (int i = 0; i < 20; i++) {
+                tdTree.insertValue(String.format("object-%d", i), i * 100L, (i * 100L) + 50, String.format("value-%d", i));
+            }
+        }
+
+//        Crash after moving the current files aside, but before the rebuilt values were moved in
+        Files.move(MappedTDTree.indexPath(directory, "swap"), MappedTDTree.indexPath(directory, "swap-backup"));
+        Files.move(MappedTDTree.valuePath(directory, "swap"), MappedTDTree.valuePath(directory, "swap-backup"));
+        Files.write(MappedTDTree.indexPath(directory, "swap"), new byte[SEGMENT_SIZE]);
+        Files.write(MappedTDTree.valuePath(directory, "swap-rebuild"), new byte[SEGMENT_SIZE]);
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "swap", 2, STRING_CODEC, SEGMENT_SIZE)) {
+            assertAll(() -> assertEquals(20, tdTree.getIndexSize(), "Should restore original index"),
+                    () -> assertEquals("value-5", tdTree.getValue("object-5", 525)));
+        }
+        assertAll(() -> assertFalse(Files.exists(MappedTDTree.indexPath(directory, "swap-backup")), "Should remove backup"),
+                () -> assertFalse(Files.exists(MappedTDTree.valuePath(directory, "swap-rebuild")), "Should remove rebuild files"));
+
+//        Crash after the swap finished, but before the backups were removed
+        Files.copy(MappedTDTree.indexPath(directory, "swap"), MappedTDTree.indexPath(directory, "swap-backup"));
+        Files.copy(MappedTDTree.valuePath(directory, "swap"), MappedTDTree.valuePath(directory, "swap-backup"));
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "swap", 2, STRING_CODEC, SEGMENT_SIZE)) {
+            assertEquals(20, tdTree.getIndexSize(), "Should keep swapped index");
+            tdTree.rebuildIndex();
+            assertEquals("value-7", tdTree.getValue("object-7", 725), "Should be readable after rebuild");
+        }
+        assertAll(() -> assertFalse(Files.exists(MappedTDTree.indexPath(directory, "swap-backup")), "Should remove backup"),
+                () -> assertFalse(Files.exists(MappedTDTree.valuePath(directory, "swap-backup")), "Should remove backup"));
+    }
+
+    @Test
+    public void testUnflushedValues() throws IOException {
+        final long valueEnd;
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "unflushed", 10, STRING_CODEC, SEGMENT_SIZE)) {
+            for (int i = 0; i < 5; i++) {
+                tdTree.insertValue(String.format("object-%d", i), i * 100L, (i * 100L) + 50, String.format("value-%d", i));
+            }
+            tdTree.force();
+            try (RandomAccessFile values = new RandomAccessFile(MappedTDTree.valuePath(directory, "unflushed").toFile(), "r")) {
+                values.seek(8);
+                valueEnd = values.readLong();
+            }
+            tdTree.insertValue("object-lost", 10000, 10050, "value-lost");
+        }
+//        Simulate the records reaching disk, but not the value
+        try (RandomAccessFile values = new RandomAccessFile(MappedTDTree.valuePath(directory, "unflushed").toFile(), "rw")) {
+            values.seek(8);
+            values.writeLong(valueEnd);
+        }
+        try (MappedTDTree<String> tdTree = new MappedTDTree<>(directory, "unflushed", 10, STRING_CODEC, SEGMENT_SIZE)) {
+            assertAll(() -> assertEquals(5, tdTree.getIndexSize(), "Should drop record without a value"),
+                    () -> assertNull(tdTree.getValue("object-lost", 10025)),
+                    () -> assertEquals("value-4", tdTree.getValue("object-4", 425)));
+        }
+    }
+}
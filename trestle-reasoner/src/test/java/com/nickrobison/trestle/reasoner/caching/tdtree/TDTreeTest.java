@@ -87,6 +87,33 @@ public class TDTreeTest {
                 () -> assertNull(tdTree.getValue(TEMPORAL_TEST_ID, 1)));
     }
 
+    @Test
+    public void testManyLeafLookup() throws Exception {
+        TDTree.maxValue = 12346;
+        TDTreeHelpers.computeAdjustedLengths();
+        final TDTree<String> tdTree = new TDTree<>(2);
+//        Insert enough values to force a number of splits
+        for (int i = 0; i < 500; i++) {
+            tdTree.insertValue(String.format("object-%d", i), i, i + 10, String.format("value-%d", i));
+        }
+        assertTrue(tdTree.getLeafStatistics().size() > 1, "Should have split into multiple leafs");
+        for (int i = 0; i < 500; i++) {
+            assertEquals(String.format("value-%d", i), tdTree.getValue(String.format("object-%d", i), i + 5), "Should find value in correct leaf");
+        }
+        assertAll(() -> assertNull(tdTree.getValue("object-10", 30), "Should not find value outside of interval"),
+                () -> assertNull(tdTree.getValue("missing-object", 10), "Should not find missing object"));
+        tdTree.deleteValue("object-10", 15);
+        assertAll(() -> assertNull(tdTree.getValue("object-10", 15), "Should delete value"),
+                () -> assertEquals("value-11", tdTree.getValue("object-11", 15), "Should not delete neighboring value"));
+    }
+
+    @Test
+    public void testTemporalScans() throws Exception {
+        TDTree.maxValue = 12346;
+        TDTreeHelpers.computeAdjustedLengths();
+        TemporalScanTests.temporalScanTest(new TDTree<>(2));
+    }
+
     @Test
     public void testOverUnderflow() throws Exception {
         TDTree.maxValue = 12346;
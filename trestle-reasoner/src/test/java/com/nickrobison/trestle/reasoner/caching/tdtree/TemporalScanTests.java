@@ -0,0 +1,48 @@
+package com.nickrobison.trestle.reasoner.caching.tdtree;
+
+import com.nickrobison.trestle.reasoner.caching.ITrestleIndex;
+import com.nickrobison.trestle.reasoner.caching.IndexRecord;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Shared range/snapshot scan checks, run against each of the TD-Tree implementations
+ */
+final class TemporalScanTests {
+
+    private TemporalScanTests() {
+        // Not used
+    }
+
+    static void temporalScanTest(ITrestleIndex<String> index) {
+        index.insertValue("scan-object", 1, 5, "first-value");
+        index.insertValue("scan-object", 5, 10, "second-value");
+        index.insertValue("scan-object", 10, "third-value");
+        index.insertValue("scan-object", 7, 7, "point-value");
+        for (int i = 0; i < 20; i++) {
+            index.insertValue(String.format("other-object-%d", i), i, i + 3, String.format("other-value-%d", i));
+        }
+
+        assertAll(() -> assertEquals(Set.of("first-value", "second-value"), values(index.getValues("scan-object", 4, 6)), "Should have overlapping versions"),
+                () -> assertEquals(Set.of("second-value", "point-value"), values(index.getValues("scan-object", 5, 10)), "Should exclude adjacent versions"),
+                () -> assertEquals(Set.of("third-value"), values(index.getValues("scan-object", 100, 200)), "Should have open interval"),
+                () -> assertTrue(values(index.getValues("scan-object", 0, 1)).isEmpty(), "Should not have any versions"),
+                () -> assertThrows(IllegalArgumentException.class, () -> index.getValues("scan-object", 5, 5), "Should reject empty range"));
+
+        assertAll(() -> assertEquals(Set.of("second-value", "other-value-3", "other-value-4", "other-value-5"), values(index.getValuesAt(5))),
+                () -> assertEquals(Set.of("second-value", "point-value", "other-value-5", "other-value-6", "other-value-7"), values(index.getValuesAt(7))));
+
+        index.deleteValue("other-object-5", 6);
+        assertEquals(Set.of("second-value", "point-value", "other-value-6", "other-value-7"), values(index.getValuesAt(7)), "Should not have deleted value");
+    }
+
+    private static Set<String> values(Iterator<IndexRecord<String>> records) {
+        final Set<String> values = new HashSet<>();
+        records.forEachRemaining(record -> assertTrue(values.add(record.getValue()), "Should not return duplicate records"));
+        return values;
+    }
+}
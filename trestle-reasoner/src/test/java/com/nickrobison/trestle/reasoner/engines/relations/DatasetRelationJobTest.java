@@ -0,0 +1,215 @@
+package com.nickrobison.trestle.reasoner.engines.relations;
+
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.reasoner.annotations.Spatial;
+import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectReader;
+import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectWriter;
+import com.nickrobison.trestle.reasoner.engines.spatial.SpatialComparisonReport;
+import com.nickrobison.trestle.reasoner.engines.spatial.SpatialEngine;
+import com.nickrobison.trestle.reasoner.engines.temporal.TemporalComparisonReport;
+import com.nickrobison.trestle.reasoner.engines.temporal.TemporalEngine;
+import com.nickrobison.trestle.reasoner.parser.IClassBuilder;
+import com.nickrobison.trestle.reasoner.parser.IClassParser;
+import com.nickrobison.trestle.reasoner.parser.IClassRegister;
+import com.nickrobison.trestle.reasoner.parser.ITypeConverter;
+import com.nickrobison.trestle.reasoner.parser.TrestleParser;
+import com.nickrobison.trestle.transactions.TrestleTransaction;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetRelationJobTest {
+
+    private static final String PREFIX = "http://nickrobison.com/test/relations#";
+    private static final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    private static final int GRID_SIZE = 10;
+    //    Every horizontal, vertical and diagonal neighbour in the grid has an intersecting envelope
+    private static final int PAIRS = 2 * (GRID_SIZE - 1) * GRID_SIZE + 2 * (GRID_SIZE - 1) * (GRID_SIZE - 1);
+    //    trestle.relations.writeBatchSize
+    private static final int BATCH_SIZE = 100;
+
+    @TempDir
+    Path directory;
+
+    private final List<CellObject> cells = new ArrayList<>();
+    private final TrestleTransaction readTransaction = new TrestleTransaction(1L, false);
+    private final TrestleTransaction writeTransaction = new TrestleTransaction(2L, true);
+    private final AtomicInteger batches = new AtomicInteger();
+    private final Set<RelationPair> written = ConcurrentHashMap.newKeySet();
+    private volatile int failingBatch = -1;
+    private ExecutorService executor;
+    private ITrestleOntology ontology;
+    private ITrestleObjectReader reader;
+    private ITrestleObjectWriter writer;
+    private SpatialEngine spatialEngine;
+    private TemporalEngine temporalEngine;
+    private TrestleParser parser;
+    private RelationCheckpoint checkpoint;
+
+    @BeforeEach
+    public void setup() {
+        for (int x = 0; x < GRID_SIZE; x++) {
+            for (int y = 0; y < GRID_SIZE; y++) {
+                cells.add(new CellObject(x, y));
+            }
+        }
+        executor = Executors.newFixedThreadPool(4);
+        ontology = Mockito.mock(ITrestleOntology.class);
+        reader = Mockito.mock(ITrestleObjectReader.class);
+        writer = Mockito.mock(ITrestleObjectWriter.class);
+        spatialEngine = Mockito.mock(SpatialEngine.class);
+        temporalEngine = Mockito.mock(TemporalEngine.class);
+        final IClassParser classParser = Mockito.mock(IClassParser.class);
+        parser = new TrestleParser(classParser, Mockito.mock(IClassBuilder.class), Mockito.mock(IClassRegister.class), Mockito.mock(ITypeConverter.class));
+        checkpoint = new RelationCheckpoint(directory.resolve("cells.checkpoint"));
+
+        Mockito.when(classParser.getObjectClass(CellObject.class)).thenReturn(df.getOWLClass(IRI.create(PREFIX, "Cell")));
+        Mockito.when(classParser.getClassProjection(CellObject.class)).thenReturn(4326);
+        Mockito.when(classParser.getIndividual(Mockito.any())).thenAnswer(invocation -> individual(invocation.getArgument(0)));
+
+        Mockito.when(ontology.createandOpenNewTransaction(false)).thenReturn(readTransaction);
+//        Each batch opens a single write transaction
+        Mockito.when(ontology.createandOpenNewTransaction(true)).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            return writeTransaction;
+        });
+        Mockito.when(ontology.getInstances(Mockito.any(), Mockito.anyBoolean())).thenAnswer(invocation -> Flowable.fromIterable(cells).map(DatasetRelationJobTest::individual));
+        Mockito.when(reader.readTrestleObjects(Mockito.eq(CellObject.class), Mockito.anyCollection(), Mockito.anyBoolean(), Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.any()))
+                .thenAnswer(invocation -> Flowable.fromIterable(cells));
+
+        Mockito.when(spatialEngine.compareTrestleObjects(Mockito.any(), Mockito.any(), Mockito.anyDouble())).thenAnswer(invocation -> {
+            final SpatialComparisonReport report = new SpatialComparisonReport(individual(invocation.getArgument(0)), individual(invocation.getArgument(1)));
+            report.addSpatialOverlap("POLYGON EMPTY", 0.0);
+            return report;
+        });
+        Mockito.when(temporalEngine.compareObjects(Mockito.any(), Mockito.any())).thenAnswer(invocation -> new TemporalComparisonReport(individual(invocation.getArgument(0)), individual(invocation.getArgument(1))));
+
+        Mockito.when(writer.writeObjectRelationship(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            if (batches.get() == failingBatch) {
+                return Completable.error(new IllegalStateException("Unable to write relationship"));
+            }
+            written.add(new RelationPair(individual(invocation.getArgument(0)).getIRI(), individual(invocation.getArgument(1)).getIRI()));
+            return Completable.complete();
+        });
+        Mockito.when(writer.writeSpatialOverlap(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any())).thenReturn(Completable.complete());
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCompleteRun() throws Exception {
+        final RelationTrackerImpl tracker = new RelationTrackerImpl();
+        final DatasetRelationJob<CellObject> job = createJob(tracker);
+        assertTrue(job.run().blockingAwait(30, TimeUnit.SECONDS), "Should complete job");
+
+        assertAll(() -> assertEquals(PAIRS, job.getCandidatePairs(), "Should find every neighbouring pair"),
+                () -> assertEquals(PAIRS, job.getComparedPairs(), "Should compare every pair"),
+                () -> assertEquals(PAIRS, job.getCompletedPairs(), "Should complete every pair"),
+                () -> assertEquals(PAIRS, job.getWrittenRelations(), "Should write a relationship for each pair"),
+                () -> assertEquals(PAIRS, written.size(), "Should write each pair"),
+                () -> assertTrue(tracker.hasRelation(individual(cells.get(0)).getIRI(), individual(cells.get(1)).getIRI()), "Should record pairs in the tracker"),
+                () -> assertFalse(Files.exists(checkpoint.getFile()), "Should remove checkpoint once complete"));
+
+//        Overlaps should be written in the batch transaction
+        Mockito.verify(writer, Mockito.times(PAIRS)).writeSpatialOverlap(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.same(writeTransaction));
+        Mockito.verify(writer, Mockito.never()).writeSpatialOverlap(Mockito.any(), Mockito.any(), Mockito.anyString());
+        Mockito.verify(ontology, Mockito.times((PAIRS + BATCH_SIZE - 1) / BATCH_SIZE)).returnAndCommitTransaction(writeTransaction);
+        Mockito.verify(ontology, Mockito.never()).returnAndAbortTransaction(Mockito.any());
+
+//        Running again shouldn't recompute anything
+        assertTrue(job.run().blockingAwait(30, TimeUnit.SECONDS), "Should complete job");
+        assertEquals(0, job.getComparedPairs(), "Should skip completed pairs");
+    }
+
+    @Test
+    public void testPartialFailureAndResume() throws Exception {
+        failingBatch = 3;
+        final DatasetRelationJob<CellObject> failedJob = createJob(new RelationTrackerImpl());
+        failedJob.run()
+                .test()
+                .awaitDone(30, TimeUnit.SECONDS)
+                .assertError(IllegalStateException.class);
+
+        final Set<RelationPair> checkpointed = checkpoint.load();
+        assertAll(() -> assertEquals(2 * BATCH_SIZE, checkpointed.size(), "Should checkpoint the committed batches"),
+                () -> assertEquals(2 * BATCH_SIZE, failedJob.getCompletedPairs(), "Should only complete the committed batches"),
+                () -> assertTrue(written.containsAll(checkpointed), "Should only checkpoint written pairs"));
+        Mockito.verify(ontology, Mockito.times(2)).returnAndCommitTransaction(writeTransaction);
+        Mockito.verify(ontology, Mockito.times(1)).returnAndAbortTransaction(writeTransaction);
+
+//        Resume with a new job (and tracker), as if the process had been restarted
+        failingBatch = -1;
+        written.clear();
+        final DatasetRelationJob<CellObject> resumedJob = createJob(new RelationTrackerImpl());
+        assertTrue(resumedJob.run().blockingAwait(30, TimeUnit.SECONDS), "Should complete resumed job");
+
+        assertAll(() -> assertEquals(PAIRS - 2 * BATCH_SIZE, resumedJob.getComparedPairs(), "Should only compare the remaining pairs"),
+                () -> assertEquals(PAIRS, resumedJob.getCompletedPairs(), "Should complete every pair"),
+                () -> assertTrue(Collections.disjoint(checkpointed, written), "Should not rewrite checkpointed pairs"),
+                () -> assertEquals(PAIRS, checkpointed.size() + written.size(), "Should write every remaining pair"),
+                () -> assertFalse(Files.exists(checkpoint.getFile()), "Should remove checkpoint once complete"));
+    }
+
+    @Test
+    public void testPartiallyWrittenCheckpoint() throws Exception {
+        final RelationPair first = new RelationPair(individual(cells.get(0)).getIRI(), individual(cells.get(1)).getIRI());
+        final RelationPair second = new RelationPair(individual(cells.get(1)).getIRI(), individual(cells.get(2)).getIRI());
+        checkpoint.record(Arrays.asList(first, second));
+        checkpoint.record(Collections.emptyList());
+//        Simulate dying part way through writing the next pair
+        Files.write(checkpoint.getFile(), String.format("%s\t%s", PREFIX, PREFIX).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(new HashSet<>(Arrays.asList(first, second)), checkpoint.load(), "Should ignore partial pair");
+        checkpoint.delete();
+        assertTrue(checkpoint.load().isEmpty(), "Should not have pairs without a checkpoint");
+    }
+
+    private DatasetRelationJob<CellObject> createJob(RelationTracker tracker) {
+        return new DatasetRelationJob<>(ontology, reader, writer, spatialEngine, temporalEngine, tracker, parser, Schedulers.from(executor), CellObject.class, null, checkpoint);
+    }
+
+    private static OWLNamedIndividual individual(CellObject cell) {
+        return df.getOWLNamedIndividual(IRI.create(PREFIX, cell.id));
+    }
+
+    public static class CellObject {
+        private final String id;
+        @Spatial
+        public final String wkt;
+
+        CellObject(int x, int y) {
+            this.id = String.format("cell-%d-%d", x, y);
+            this.wkt = String.format("POLYGON ((%d %d, %d %d, %d %d, %d %d, %d %d))", x, y, x + 1, y, x + 1, y + 1, x, y + 1, x, y);
+        }
+    }
+}
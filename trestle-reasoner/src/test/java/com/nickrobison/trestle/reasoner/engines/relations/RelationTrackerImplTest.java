@@ -0,0 +1,43 @@
+package com.nickrobison.trestle.reasoner.engines.relations;
+
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RelationTrackerImplTest {
+
+    private static final IRI FIRST = IRI.create("http://nickrobison.com/test#", "first");
+    private static final IRI SECOND = IRI.create("http://nickrobison.com/test#", "second");
+    private static final IRI THIRD = IRI.create("http://nickrobison.com/test#", "third");
+
+    @Test
+    public void testRelations() {
+        final RelationTrackerImpl tracker = new RelationTrackerImpl();
+        tracker.addRelation(FIRST, SECOND);
+        assertAll(() -> assertTrue(tracker.hasRelation(FIRST, SECOND), "Should have relation"),
+                () -> assertTrue(tracker.hasRelation(SECOND, FIRST), "Should have relation in either direction"),
+                () -> assertFalse(tracker.hasRelation(FIRST, THIRD), "Should not have relation"));
+
+//        These pairs have the same XOR hash (0), but should not collide
+        tracker.addRelation(FIRST, FIRST);
+        assertFalse(tracker.hasRelation(THIRD, THIRD), "Should not collide with other pairs");
+
+        tracker.addRelation(SECOND, THIRD);
+        tracker.removeComputedRelations(FIRST);
+        assertAll(() -> assertFalse(tracker.hasRelation(FIRST, SECOND), "Should remove relation"),
+                () -> assertFalse(tracker.hasRelation(FIRST, FIRST), "Should remove relation"),
+                () -> assertTrue(tracker.hasRelation(SECOND, THIRD), "Should keep unrelated relation"));
+
+//        Removing the second object of a pair should remove it from the first object's relations as well
+        tracker.addRelation(FIRST, THIRD);
+        tracker.removeComputedRelations(THIRD);
+        assertAll(() -> assertFalse(tracker.hasRelation(SECOND, THIRD), "Should remove relation from other object"),
+                () -> assertFalse(tracker.hasRelation(FIRST, THIRD), "Should remove relation from other object"));
+
+//        Removing an object without relations should do nothing
+        tracker.addRelation(FIRST, SECOND);
+        tracker.removeComputedRelations(THIRD);
+        assertTrue(tracker.hasRelation(FIRST, SECOND), "Should keep unrelated relation");
+    }
+}
@@ -1,17 +1,21 @@
 package com.nickrobison.trestle.reasoner.engines.spatial;
 
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
 import org.locationtech.jts.io.WKTWriter;
+import org.opengis.referencing.operation.MathTransform;
 
 import javax.measure.MetricPrefix;
 import javax.measure.Unit;
 import javax.measure.quantity.Length;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static si.uom.SI.METRE;
 import static systems.uom.common.USCustomary.FOOT;
@@ -68,4 +72,16 @@ public class SpatialUtilsTest {
         assertTrue(bufferedGeom.equalsExact(WKT_READER.read(buff_in), 0.999), "Should be equal when adding 50m in ft");
 
     }
+
+    @Test
+    public void testReprojection() throws Exception {
+        final Geometry input = WKT_READER.read(wktInput);
+        final MathTransform transform = CRS.findMathTransform(CRS.decode("EPSG:4326", true), CRS.decode("EPSG:3857", true), true);
+        final Geometry expected = JTS.transform(input, transform);
+
+        final Geometry projected = SpatialEngineUtils.reprojectGeometry(input, 4326, 3857);
+        assertTrue(expected.equalsExact(projected, 0.0001), "Should match per-coordinate transform");
+        assertTrue(input.equalsExact(SpatialEngineUtils.reprojectGeometry(projected, 3857, 4326), 0.000001), "Should round trip");
+        assertSame(TransformRegistry.getTransform(4326, 3857), TransformRegistry.getTransform(4326, 3857), "Should cache transform");
+    }
 }
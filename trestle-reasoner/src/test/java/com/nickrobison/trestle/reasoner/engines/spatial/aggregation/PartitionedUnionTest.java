@@ -0,0 +1,146 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.aggregation;
+
+import com.codahale.metrics.Timer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedUnionTest {
+
+    private static final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private ExecutorService executor;
+    private Scheduler scheduler;
+    private Timer partitionTimer;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+        scheduler = Schedulers.from(executor);
+        partitionTimer = new Timer();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMatchesSinglePass() {
+//        100 overlapping squares, with a partition size of 4 means three levels of merging (25 -> 7 -> 2 -> 1)
+        final List<Polygon> squares = createSquares(10, 10);
+        final Geometry expected = CascadedPolygonUnion.union(squares);
+        final Geometry union = new PartitionedUnion(scheduler, 4, geometryFactory, partitionTimer)
+                .union(Flowable.fromIterable(squares))
+                .blockingGet();
+
+        assertAll(() -> assertTrue(expected.equalsTopo(union), "Should match single pass union"),
+                () -> assertEquals(expected.getArea(), union.getArea(), 1e-9, "Should have the same area"),
+                () -> assertEquals(25 + 7 + 2 + 1, partitionTimer.getCount(), "Should union each partition and merge level"));
+    }
+
+    @Test
+    public void testSinglePartition() {
+        final List<Polygon> squares = createSquares(2, 2);
+        final Geometry expected = CascadedPolygonUnion.union(squares);
+        final Geometry union = new PartitionedUnion(scheduler, 64, geometryFactory, partitionTimer)
+                .union(Flowable.fromIterable(squares))
+                .blockingGet();
+
+        assertAll(() -> assertTrue(expected.equalsTopo(union), "Should match single pass union"),
+                () -> assertEquals(2, partitionTimer.getCount(), "Should union the partition, then merge the single result"));
+    }
+
+    @Test
+    public void testSingleGeometry() {
+        final Polygon square = createSquare(0, 0);
+        final Geometry union = new PartitionedUnion(scheduler, 4, geometryFactory, partitionTimer)
+                .union(Flowable.just(square))
+                .blockingGet();
+        assertTrue(square.equalsTopo(union), "Union of a single geometry should be itself");
+    }
+
+    @Test
+    public void testEmptyInput() {
+        final Geometry union = new PartitionedUnion(scheduler, 4, geometryFactory, partitionTimer)
+                .union(Flowable.empty())
+                .blockingGet();
+        assertAll(() -> assertTrue(union.isEmpty(), "Should have empty union"),
+                () -> assertEquals(4326, union.getSRID(), "Should use provided factory"));
+    }
+
+    @Test
+    public void testEmptyPartitions() {
+        final List<Polygon> squares = createSquares(5, 5);
+        final Geometry expected = CascadedPolygonUnion.union(squares);
+
+//        The first two partitions only have empty geometries, and the others have a mix
+        final List<Polygon> input = new ArrayList<>(Collections.nCopies(8, geometryFactory.createPolygon()));
+        for (Polygon square : squares) {
+            input.add(square);
+            input.add(geometryFactory.createPolygon());
+        }
+        final Geometry union = new PartitionedUnion(scheduler, 4, geometryFactory, partitionTimer)
+                .union(Flowable.fromIterable(input))
+                .blockingGet();
+        assertTrue(expected.equalsTopo(union), "Empty partitions should not change the union");
+
+//        Nothing but empty partitions
+        final Geometry empty = new PartitionedUnion(scheduler, 4, geometryFactory, partitionTimer)
+                .union(Flowable.fromIterable(Collections.nCopies(10, geometryFactory.createPolygon())))
+                .blockingGet();
+        assertTrue(empty.isEmpty(), "Should have empty union");
+    }
+
+    @Test
+    public void testMergePartialUnions() {
+        final PartitionedUnion partitionedUnion = new PartitionedUnion(scheduler, 2, geometryFactory, partitionTimer);
+        final List<Polygon> squares = createSquares(3, 3);
+        final Geometry expected = CascadedPolygonUnion.union(squares);
+        final List<Geometry> partials = new ArrayList<>(squares);
+        partials.add(geometryFactory.createGeometryCollection());
+
+        assertAll(() -> assertTrue(expected.equalsTopo(partitionedUnion.mergePartialUnions(partials).blockingGet()), "Should merge partials"),
+                () -> assertTrue(partitionedUnion.mergePartialUnions(Collections.emptyList()).blockingGet().isEmpty(), "Should have empty merge"),
+                () -> assertThrows(IllegalArgumentException.class, () -> new PartitionedUnion(scheduler, 1, geometryFactory, partitionTimer), "Should not allow single geometry partitions"));
+    }
+
+    /**
+     * Create a grid of overlapping squares, each 1.5 wide, with their origins 1 apart
+     */
+    private static List<Polygon> createSquares(int columns, int rows) {
+        final List<Polygon> squares = new ArrayList<>();
+        for (int x = 0; x < columns; x++) {
+            for (int y = 0; y < rows; y++) {
+                squares.add(createSquare(x, y));
+            }
+        }
+        return squares;
+    }
+
+    private static Polygon createSquare(double x, double y) {
+        return geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(x, y),
+                new Coordinate(x + 1.5, y),
+                new Coordinate(x + 1.5, y + 1.5),
+                new Coordinate(x, y + 1.5),
+                new Coordinate(x, y)});
+    }
+}
@@ -0,0 +1,274 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.aggregation;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.nickrobison.metrician.Metrician;
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.ontology.types.TrestleResult;
+import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.reasoner.engines.object.ITrestleObjectReader;
+import com.nickrobison.trestle.reasoner.parser.IClassBuilder;
+import com.nickrobison.trestle.reasoner.parser.IClassParser;
+import com.nickrobison.trestle.reasoner.parser.IClassRegister;
+import com.nickrobison.trestle.reasoner.parser.ITypeConverter;
+import com.nickrobison.trestle.reasoner.parser.TrestleParser;
+import com.nickrobison.trestle.reasoner.threading.TrestleExecutorFactory;
+import com.nickrobison.trestle.reasoner.threading.TrestleExecutorService;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the breadth-first construction of the spatial adjacency graph, against a mocked ontology
+ */
+public class SpatialGraphTest {
+
+    private static final String PREFIX = "http://nickrobison.com/test/trestle.owl#";
+    private static final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final Map<String, Set<String>> meets = new HashMap<>();
+    private final List<String> reads = Collections.synchronizedList(new ArrayList<>());
+    private ExecutorService executor;
+    private ITrestleOntology ontology;
+    private AggregationEngine engine;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        ontology = Mockito.mock(ITrestleOntology.class);
+        final ITrestleObjectReader reader = Mockito.mock(ITrestleObjectReader.class);
+        final QueryBuilder qb = Mockito.mock(QueryBuilder.class);
+        final IClassParser classParser = Mockito.mock(IClassParser.class);
+        final TrestleExecutorFactory factory = Mockito.mock(TrestleExecutorFactory.class);
+        final TrestleExecutorService executorService = Mockito.mock(TrestleExecutorService.class);
+        final Metrician metrician = Mockito.mock(Metrician.class);
+
+        Mockito.when(executorService.asScheduler()).thenReturn(Schedulers.from(executor));
+        Mockito.when(factory.create(Mockito.anyString())).thenReturn(executorService);
+        Mockito.when(metrician.registerMeter(Mockito.anyString())).thenReturn(new Meter());
+        Mockito.when(metrician.registerTimer(Mockito.anyString())).thenReturn(new Timer());
+        Mockito.when(classParser.getIndividual(Mockito.any())).thenAnswer(invocation -> individual(((GraphNode) invocation.getArgument(0)).id));
+
+//        Encode the batch of individuals in the query string, so we can return their relations
+        Mockito.when(qb.buildObjectPropertyRetrievalQuery(Mockito.anyCollection(), Mockito.any())).thenAnswer(invocation -> Arrays.stream(invocation.getArguments())
+                .skip(1)
+                .flatMap(arg -> arg instanceof Object[] ? Arrays.stream((Object[]) arg) : Stream.of(arg))
+                .map(individual -> ((OWLNamedIndividual) individual).toStringID())
+                .collect(Collectors.joining(" ")));
+        Mockito.when(ontology.executeSPARQLResults(Mockito.anyString())).thenAnswer(invocation -> {
+            final List<TrestleResult> results = new ArrayList<>();
+            for (String individual : ((String) invocation.getArgument(0)).split(" ")) {
+                for (String object : meets.getOrDefault(individual.replace(PREFIX, ""), Collections.emptySet())) {
+                    final TrestleResult result = new TrestleResult();
+                    result.addValue("individual", df.getOWLNamedIndividual(IRI.create(individual)));
+                    result.addValue("object", individual(object));
+                    results.add(result);
+                }
+            }
+            return Flowable.fromIterable(results);
+        });
+
+        Mockito.when(reader.readTrestleObject(Mockito.eq(GraphNode.class), Mockito.anyString(), Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> Single.just(new GraphNode(invocation.getArgument(1))));
+        Mockito.when(reader.readTrestleObjects(Mockito.eq(GraphNode.class), Mockito.anyCollection(), Mockito.anyBoolean(), Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    final Collection<IRI> individuals = invocation.getArgument(1);
+                    final List<GraphNode> nodes = individuals
+                            .stream()
+                            .map(individual -> individual.toString().replace(PREFIX, ""))
+                            .peek(reads::add)
+                            .map(GraphNode::new)
+                            .collect(Collectors.toList());
+                    return Flowable.fromIterable(nodes);
+                });
+
+        final TrestleParser parser = new TrestleParser(classParser, Mockito.mock(IClassBuilder.class), Mockito.mock(IClassRegister.class), Mockito.mock(ITypeConverter.class));
+        engine = new AggregationEngine(PREFIX, reader, qb, ontology, parser, factory, metrician);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFullGraph() {
+        chain("a", "b", "c", "d", "e");
+        final AggregationEngine.AdjacencyGraph<GraphNode, Double> graph = buildGraph("a", 0, 0);
+        assertAll(() -> assertEquals(setOf("a-b", "b-c", "c-d", "d-e"), edges(graph, "a", "b", "c", "d", "e"), "Should have entire chain"),
+                () -> assertEquals(setOf("b", "c", "d", "e"), new HashSet<>(reads), "Should read each object"));
+        Mockito.verify(ontology).returnAndCommitTransaction(Mockito.any());
+    }
+
+    @Test
+    public void testMaxDepth() {
+        chain("a", "b", "c", "d", "e", "f");
+        final AggregationEngine.AdjacencyGraph<GraphNode, Double> graph = buildGraph("a", 2, 0);
+        assertAll(() -> assertEquals(setOf("a-b", "b-c"), edges(graph, "a", "b", "c", "d"), "Should stop after two hops"),
+                () -> assertFalse(graph.getNodeEdges(new GraphNode("d")).isPresent(), "Should not add objects beyond max depth"),
+                () -> assertEquals(setOf("b", "c"), new HashSet<>(reads), "Should not read objects beyond max depth"));
+    }
+
+    @Test
+    public void testMaxNodes() {
+        chain("a", "b", "c", "d", "e", "f");
+        final AggregationEngine.AdjacencyGraph<GraphNode, Double> graph = buildGraph("a", 0, 3);
+//        The third object is the last one to be expanded, which adds the edge to its neighbour
+        assertAll(() -> assertEquals(setOf("a-b", "b-c", "c-d"), edges(graph, "a", "b", "c", "d", "e"), "Should only expand three objects"),
+                () -> assertFalse(reads.contains("e"), "Should not read neighbours of unexpanded objects"),
+                () -> assertFalse(graph.getNodeEdges(new GraphNode("e")).isPresent(), "Should not add objects beyond max nodes"));
+    }
+
+    @Test
+    public void testMemoizedReads() {
+//        3x3 grid, so most objects are reachable along multiple paths, and from multiple objects in the same frontier
+        final List<String> nodes = new ArrayList<>();
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                nodes.add(gridNode(x, y));
+                if (x < 2) {
+                    meet(gridNode(x, y), gridNode(x + 1, y));
+                }
+                if (y < 2) {
+                    meet(gridNode(x, y), gridNode(x, y + 1));
+                }
+            }
+        }
+        final AggregationEngine.AdjacencyGraph<GraphNode, Double> graph = buildGraph(gridNode(0, 0), 0, 0);
+        assertAll(() -> assertEquals(12, edges(graph, nodes.toArray(new String[0])).size(), "Should have every edge in the grid"),
+                () -> assertEquals(8, reads.size(), "Should read each object exactly once"),
+                () -> assertEquals(8, new HashSet<>(reads).size(), "Should not read any object twice"),
+                () -> assertFalse(reads.contains(gridNode(0, 0)), "Should not re-read starting object"));
+    }
+
+    @Test
+    public void testFilter() {
+        chain("a", "b", "c", "d");
+        final AggregationEngine.AdjacencyGraph<GraphNode, Double> graph = engine.buildSpatialGraph(GraphNode.class, "a", this::computeEdge, node -> !node.id.equals("c"), null, null, 0, 0).blockingGet();
+        assertAll(() -> assertEquals(setOf("a-b"), edges(graph, "a", "b", "c", "d"), "Should not add edges to filtered objects"),
+                () -> assertFalse(reads.contains("d"), "Should not expand filtered objects"));
+    }
+
+    @Test
+    public void testConcurrentEdgeInsertion() throws Exception {
+        final AggregationEngine.AdjacencyGraph<GraphNode, Double> graph = new AggregationEngine.AdjacencyGraph<>();
+        final GraphNode shared = new GraphNode("shared");
+        final int threads = 8;
+        final int edgesPerThread = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final GraphNode hub = new GraphNode(String.format("hub-%d", t));
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < edgesPerThread; i++) {
+                    final GraphNode leaf = new GraphNode(String.format("%s-leaf-%d", hub.id, i));
+                    graph.addEdge(new AggregationEngine.Edge<>(hub, leaf, (double) i));
+                    graph.addEdge(new AggregationEngine.Edge<>(shared, leaf, (double) i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(threads * edgesPerThread, edgeCount(graph, shared), "Should have every edge to the shared node");
+        for (int t = 0; t < threads; t++) {
+            final GraphNode hub = new GraphNode(String.format("hub-%d", t));
+            assertEquals(edgesPerThread, edgeCount(graph, hub), "Should have every edge from each thread");
+            assertEquals(2, edgeCount(graph, new GraphNode(String.format("hub-%d-leaf-0", t))), "Leaf should have both edges");
+        }
+    }
+
+    private AggregationEngine.AdjacencyGraph<GraphNode, Double> buildGraph(String start, int maxDepth, int maxNodes) {
+        return engine.buildSpatialGraph(GraphNode.class, start, this::computeEdge, node -> true, null, null, maxDepth, maxNodes).blockingGet();
+    }
+
+    private Double computeEdge(GraphNode from, GraphNode to) {
+        return 1.0;
+    }
+
+    private static int edgeCount(AggregationEngine.AdjacencyGraph<GraphNode, Double> graph, GraphNode node) {
+        return graph.getNodeEdges(node).map(List::size).orElse(0);
+    }
+
+    private void chain(String... nodes) {
+        for (int i = 1; i < nodes.length; i++) {
+            meet(nodes[i - 1], nodes[i]);
+        }
+    }
+
+    private void meet(String a, String b) {
+        meets.computeIfAbsent(a, key -> new LinkedHashSet<>()).add(b);
+        meets.computeIfAbsent(b, key -> new LinkedHashSet<>()).add(a);
+    }
+
+    private static String gridNode(int x, int y) {
+        return String.format("n%d%d", x, y);
+    }
+
+    private static OWLNamedIndividual individual(String id) {
+        return df.getOWLNamedIndividual(IRI.create(PREFIX, id));
+    }
+
+    private static Set<String> setOf(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    /**
+     * Undirected edges of the given nodes, as sorted from-to pairs
+     */
+    private static Set<String> edges(AggregationEngine.AdjacencyGraph<GraphNode, Double> graph, String... nodes) {
+        return Arrays.stream(nodes)
+                .map(GraphNode::new)
+                .map(graph::getNodeEdges)
+                .filter(Optional::isPresent)
+                .flatMap(edges -> edges.get().stream())
+                .map(edge -> edge.getFrom().id.compareTo(edge.getTo().id) < 0 ?
+                        String.format("%s-%s", edge.getFrom().id, edge.getTo().id) :
+                        String.format("%s-%s", edge.getTo().id, edge.getFrom().id))
+                .collect(Collectors.toSet());
+    }
+
+    private static class GraphNode {
+        private final String id;
+
+        private GraphNode(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return id.equals(((GraphNode) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.nickrobison.trestle.reasoner.engines.spatial.equality.union.SpatialUnionBuilder.calculateEqualityPercentage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.fields.uninitialized", "OptionalGetWithoutIsPresent"})
+public class PrunedUnionSearchTest {
+
+    private static final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+    private static ForkJoinPool pool;
+
+    private Geometry target;
+    private Set<Geometry> quadrants;
+    private Set<Geometry> candidates;
+
+    @BeforeAll
+    static void setupPool() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterAll
+    static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @BeforeEach
+    void setupPolygons() {
+        target = box(0, 0, 10, 10);
+        quadrants = new HashSet<>(Arrays.asList(
+                box(0, 0, 5, 5),
+                box(5, 0, 10, 5),
+                box(0, 5, 5, 10),
+                box(5, 5, 10, 10)));
+        candidates = new HashSet<>(quadrants);
+//        Neighbours which only share an edge
+        candidates.add(box(10, 0, 20, 10));
+        candidates.add(box(0, 10, 10, 20));
+//        Neighbour which slightly overlaps the target, but is mostly outside of it
+        candidates.add(box(-9, 0, 1, 10));
+//        Something far away
+        candidates.add(box(100, 100, 110, 110));
+    }
+
+    @Test
+    void testSplit() {
+        final PrunedUnionSearch search = createSearch();
+        final PolygonMatchSet matchSet = search.findUnion(Collections.singleton(target), candidates, 0.9).get();
+        assertAll(() -> assertEquals(Collections.singleton(target), matchSet.getEarlyPolygons(), "Should have target as early polygon"),
+                () -> assertEquals(quadrants, matchSet.getLatePolygons(), "Should only match the quadrants"),
+                () -> assertEquals(1.0, matchSet.getStrength(), 0.0001, "Should have perfect match"));
+    }
+
+    @Test
+    void testMerge() {
+        final PrunedUnionSearch search = createSearch();
+        final PolygonMatchSet matchSet = search.findUnion(candidates, Collections.singleton(target), 0.9).get();
+        assertAll(() -> assertEquals(quadrants, matchSet.getEarlyPolygons(), "Should only match the quadrants"),
+                () -> assertEquals(Collections.singleton(target), matchSet.getLatePolygons(), "Should have target as late polygon"));
+    }
+
+    @Test
+    void testNoMatch() {
+        final PrunedUnionSearch search = createSearch();
+        final List<Geometry> halfQuadrants = new ArrayList<>(quadrants).subList(0, 2);
+        assertTrue(search.findUnion(Collections.singleton(target), new HashSet<>(halfQuadrants), 0.9).isEmpty(), "Half the target should not match");
+    }
+
+    @Test
+    void testMatchesExhaustive() {
+        final PrunedUnionSearch search = createSearch();
+        final ExhaustiveUnionSearch exhaustive = new ExhaustiveUnionSearch(factory, new Histogram(new UniformReservoir()));
+        final PolygonMatchSet pruned = search.findUnion(Collections.singleton(target), quadrants, 0.9).get();
+        final PolygonMatchSet expected = exhaustive.findUnion(Collections.singleton(target), quadrants, 0.9).get();
+        assertAll(() -> assertEquals(expected.getLatePolygons(), pruned.getLatePolygons(), "Should match the same polygons"),
+                () -> assertEquals(expected.getStrength(), pruned.getStrength(), 0.0001, "Should have the same strength"));
+    }
+
+    @Test
+    void testNearThreshold() {
+        final Geometry left = box(0, 0, 5, 10);
+        final Geometry justInside = box(5, 0, 9.05, 10);
+        final Geometry justShort = box(5, 0, 8.95, 10);
+        final Geometry justOutside = box(5, 0, 11, 10);
+        final Geometry tooFarOutside = box(5, 0, 11.2, 10);
+        final PrunedUnionSearch search = createSearch(Arrays.asList(left, justInside, justShort, justOutside, tooFarOutside));
+
+        assertAll(() -> assertEquals(0.905, search.findUnion(Collections.singleton(target), new HashSet<>(Arrays.asList(left, justInside)), 0.9).get().getStrength(), 0.0001, "Should match just above the threshold"),
+                () -> assertTrue(search.findUnion(Collections.singleton(target), new HashSet<>(Arrays.asList(left, justShort)), 0.9).isEmpty(), "Should not match just below the threshold"),
+                () -> assertEquals(100 / 110.0, search.findUnion(Collections.singleton(target), new HashSet<>(Arrays.asList(left, justOutside)), 0.9).get().getStrength(), 0.0001, "Should match with area outside of the target"),
+                () -> assertTrue(search.findUnion(Collections.singleton(target), new HashSet<>(Arrays.asList(left, tooFarOutside)), 0.9).isEmpty(), "Should not match with too much area outside of the target"));
+    }
+
+    @Test
+    void testIgnoresNonOverlapping() {
+        final Geometry overlapping = box(0, 0, 10, 9.5);
+//        Neither of these overlap the target, but adding them doesn't push the union area past the target, so they don't change the match strength
+        final Geometry disjoint = box(20, 20, 21, 21);
+        final Geometry touching = box(10, 0, 10.4, 1);
+        final Set<Geometry> matchPolygons = new HashSet<>(Arrays.asList(overlapping, disjoint, touching));
+        final PrunedUnionSearch search = createSearch(matchPolygons);
+        final ExhaustiveUnionSearch exhaustive = new ExhaustiveUnionSearch(factory, new Histogram(new UniformReservoir()));
+
+        final PolygonMatchSet pruned = search.findUnion(Collections.singleton(target), matchPolygons, 0.9).get();
+        final PolygonMatchSet padded = exhaustive.findUnion(Collections.singleton(target), matchPolygons, 0.9).get();
+        assertAll(() -> assertEquals(Collections.singleton(overlapping), pruned.getLatePolygons(), "Should only match the overlapping polygon"),
+                () -> assertEquals(matchPolygons, padded.getLatePolygons(), "Exhaustive search should pad the match with the non-overlapping polygons"),
+                () -> assertEquals(padded.getStrength(), pruned.getStrength(), 0.0001, "Should have the same strength"));
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        final double[] thresholds = {0.6, 0.75, 0.9, 0.95};
+        int matches = 0;
+        for (int seed = 0; seed < 25; seed++) {
+            final Random random = new Random(seed);
+            final Set<Geometry> polygons = randomPolygons(random);
+            final double threshold = thresholds[random.nextInt(thresholds.length)];
+            final PrunedUnionSearch search = createSearch(polygons);
+            final String message = String.format("Seed %d, threshold %s", seed, threshold);
+
+            final Optional<PolygonMatchSet> expected = bruteForce(target, polygons, threshold);
+            final Optional<PolygonMatchSet> split = search.findUnion(Collections.singleton(target), polygons, threshold);
+            final Optional<PolygonMatchSet> merge = search.findUnion(polygons, Collections.singleton(target), threshold);
+            assertEquals(expected.isPresent(), split.isPresent(), message);
+            assertEquals(expected.isPresent(), merge.isPresent(), message);
+            if (expected.isPresent()) {
+                matches++;
+                final PolygonMatchSet expectedMatch = expected.get();
+                final PolygonMatchSet splitMatch = split.get();
+                final PolygonMatchSet mergeMatch = merge.get();
+//                Different sets can tie, so compare the size and the strength, and make sure the strength is real
+                assertAll(message,
+                        () -> assertEquals(expectedMatch.getLatePolygons().size(), splitMatch.getLatePolygons().size(), "Should match as many polygons"),
+                        () -> assertEquals(expectedMatch.getStrength(), splitMatch.getStrength(), 0.000001, "Should have the same strength"),
+                        () -> assertEquals(splitMatch.getStrength(), calculateEqualityPercentage(target, union(splitMatch.getLatePolygons())), 0.000001, "Should report the strength of the union"),
+                        () -> assertEquals(expectedMatch.getLatePolygons().size(), mergeMatch.getEarlyPolygons().size(), "Should merge as many polygons"),
+                        () -> assertEquals(expectedMatch.getStrength(), mergeMatch.getStrength(), 0.000001, "Should have the same merge strength"));
+            }
+        }
+        assertTrue(matches > 0, "Should have some matching fixtures");
+    }
+
+    @Test
+    void testMultipleInputAndMatch() {
+        final PrunedUnionSearch search = createSearch();
+        assertThrows(IllegalArgumentException.class, () -> search.findUnion(quadrants, candidates, 0.9));
+    }
+
+    private PrunedUnionSearch createSearch() {
+        return createSearch(candidates);
+    }
+
+    private PrunedUnionSearch createSearch(Collection<Geometry> candidatePolygons) {
+        final List<Geometry> polygons = new ArrayList<>(candidatePolygons);
+        polygons.add(target);
+        return new PrunedUnionSearch(pool, polygons, 100, new Histogram(new UniformReservoir()), new Histogram(new UniformReservoir()));
+    }
+
+    /**
+     * Split the target into a random grid of slightly jittered pieces, and add some neighbours which straddle, touch, or miss the target
+     *
+     * @param random - {@link Random} to generate polygons from
+     * @return - {@link Set} of {@link Geometry} candidates
+     */
+    private static Set<Geometry> randomPolygons(Random random) {
+        final Set<Geometry> polygons = new HashSet<>();
+        final double[] columns = randomCuts(random, 2 + random.nextInt(2));
+        for (int column = 0; column < columns.length - 1; column++) {
+            final double[] rows = randomCuts(random, 1 + random.nextInt(2));
+            for (int row = 0; row < rows.length - 1; row++) {
+                polygons.add(box(columns[column] + jitter(random), rows[row] + jitter(random), columns[column + 1] + jitter(random), rows[row + 1] + jitter(random)));
+            }
+        }
+        final double y = random.nextDouble() * 8;
+        polygons.add(box(9 + random.nextDouble(), y, 11 + random.nextDouble() * 3, y + 1 + random.nextDouble()));
+        polygons.add(box(-2, y, -1.5 + random.nextDouble(), y + 1));
+        polygons.add(box(10, y, 10.5, y + 0.5));
+        polygons.add(box(100, 100, 110, 110));
+        return polygons;
+    }
+
+    private static double[] randomCuts(Random random, int parts) {
+        final double[] cuts = new double[parts + 1];
+        for (int i = 1; i < parts; i++) {
+            cuts[i] = 2 + random.nextDouble() * 6;
+        }
+        cuts[parts] = 10;
+        Arrays.sort(cuts);
+        return cuts;
+    }
+
+    private static double jitter(Random random) {
+        return (random.nextDouble() - 0.5) * 0.6;
+    }
+
+    /**
+     * Walk every subset of the polygons which overlap the target, returning the largest (and then strongest) one which matches
+     *
+     * @param target    - {@link Geometry} to match against
+     * @param polygons  - {@link Set} of {@link Geometry} candidates
+     * @param threshold - {@link Double} minimum match strength
+     * @return - {@link Optional} {@link PolygonMatchSet}, if a match exists
+     */
+    private static Optional<PolygonMatchSet> bruteForce(Geometry target, Set<Geometry> polygons, double threshold) {
+        final List<Geometry> overlapping = polygons
+                .stream()
+                .filter(polygon -> target.intersection(polygon).getArea() > 0.0)
+                .collect(Collectors.toList());
+        final Geometry[] unions = new Geometry[1 << overlapping.size()];
+        Set<Geometry> bestSet = Collections.emptySet();
+        double bestStrength = 0.0;
+        for (int mask = 1; mask < unions.length; mask++) {
+            final Geometry polygon = overlapping.get(Integer.numberOfTrailingZeros(mask));
+            final int rest = mask & (mask - 1);
+            unions[mask] = rest == 0 ? polygon : unions[rest].union(polygon);
+            final double strength = calculateEqualityPercentage(target, unions[mask]);
+            final int size = Integer.bitCount(mask);
+            if (strength > threshold && (size > bestSet.size() || (size == bestSet.size() && strength > bestStrength))) {
+                final Set<Geometry> set = new HashSet<>();
+                for (int i = 0; i < overlapping.size(); i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        set.add(overlapping.get(i));
+                    }
+                }
+                bestSet = set;
+                bestStrength = strength;
+            }
+        }
+        if (bestSet.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new PolygonMatchSet(Collections.singleton(target), bestSet, bestStrength));
+    }
+
+    private static Geometry union(Set<Geometry> polygons) {
+        return factory.buildGeometry(polygons).union();
+    }
+
+    private static Geometry box(double minX, double minY, double maxX, double maxY) {
+        return factory.toGeometry(new Envelope(minX, maxX, minY, maxY));
+    }
+}
@@ -0,0 +1,344 @@
+package com.nickrobison.trestle.reasoner.engines.spatial.equality.union;
+
+import com.codahale.metrics.Timer;
+import com.nickrobison.metrician.Metrician;
+import com.nickrobison.trestle.ontology.ITrestleOntology;
+import com.nickrobison.trestle.ontology.types.TrestleResult;
+import com.nickrobison.trestle.querybuilder.QueryBuilder;
+import com.nickrobison.trestle.types.temporal.TemporalObject;
+import com.nickrobison.trestle.types.temporal.TemporalObjectBuilder;
+import io.reactivex.rxjava3.core.Flowable;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static com.nickrobison.trestle.common.StaticIRI.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for traversing the {@link SpatialEquivalenceGraph}, without going to the database
+ */
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class SpatialEquivalenceGraphTest {
+
+    private static final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    private static final String PREFIX = "http://nickrobison.com/test/trestle.owl#";
+    private static final String UNION_GRAPH = "union-graph";
+    private static final String EQUALS_GRAPH = "equals-graph";
+    private static final String EQUIVALENCE = "equivalence:";
+    private static final String COMPONENTS = "components:";
+
+    private ITrestleOntology ontology;
+    private Metrician metrician;
+    private QueryBuilder qb;
+    private SpatialEquivalenceGraph graph;
+
+    @BeforeEach
+    void setup() {
+        ontology = Mockito.mock(ITrestleOntology.class);
+        metrician = Mockito.mock(Metrician.class);
+        qb = Mockito.mock(QueryBuilder.class);
+        Mockito.when(ontology.getUnderlyingQueryBuilder()).thenReturn(qb);
+        Mockito.when(qb.buildSTUnionGraphQuery()).thenReturn(UNION_GRAPH);
+        Mockito.when(qb.buildSTEqualsGraphQuery()).thenReturn(EQUALS_GRAPH);
+        Mockito.when(qb.buildSTEquivalenceQuery(Mockito.any())).thenAnswer(answer -> EQUIVALENCE + answer.getArgument(0, OWLNamedIndividual.class).toStringID());
+        Mockito.when(qb.buildSTUnionComponentQuery(Mockito.any())).thenAnswer(answer -> COMPONENTS + answer.getArgument(0, OWLNamedIndividual.class).toStringID());
+        Mockito.when(ontology.executeSPARQLResults(Mockito.anyString())).thenReturn(Flowable.empty());
+        Mockito.when(metrician.registerTimer(Mockito.anyString())).thenAnswer(answer -> new Timer());
+        graph = new SpatialEquivalenceGraph(ontology, metrician, true);
+
+//        A splits into B and C, which are then merged into D
+        graph.addUnion(individual("A-split"), individual("A"), existence(2000, 2005), components("B", "C"));
+        graph.addUnion(individual("D-merged"), individual("D"), existence(2010, null), components("B", "C"));
+    }
+
+    @Test
+    void testForwardTraversal() {
+        final SpatialUnionTraverser traverser = new SpatialUnionTraverser(ontology, graph, metrician);
+        final List<OWLNamedIndividual> equivalence = traverser.traverseUnion(Object.class, individual("A"), LocalDate.of(2007, 1, 1)).toList().blockingGet();
+        assertEquals(2, equivalence.size(), "Should be equivalent to the split components");
+        assertTrue(equivalence.containsAll(List.of(individual("B"), individual("C"))), "Should have both components");
+
+        final List<OWLNamedIndividual> merged = traverser.traverseUnion(Object.class, individual("A"), LocalDate.of(2012, 1, 1)).toList().blockingGet();
+        assertEquals(Collections.singletonList(individual("D")), merged, "Should walk through both unions");
+
+//        Should only have loaded the graph once (unions and equals relations), and never run the per-object queries
+        Mockito.verify(ontology, Mockito.times(2)).executeSPARQLResults(Mockito.anyString());
+        Mockito.verify(qb, Mockito.never()).buildSTEquivalenceQuery(Mockito.any());
+        Mockito.verify(ontology, Mockito.never()).getAllDataPropertiesForIndividual(Mockito.any(OWLNamedIndividual.class));
+    }
+
+    @Test
+    void testBackwardTraversal() {
+        final SpatialUnionTraverser traverser = new SpatialUnionTraverser(ontology, graph, metrician);
+        final List<OWLNamedIndividual> equivalence = traverser.traverseUnion(Object.class, individual("D"), LocalDate.of(2001, 1, 1)).toList().blockingGet();
+        assertEquals(Collections.singletonList(individual("A")), equivalence, "Should walk back to the original object");
+    }
+
+    @Test
+    void testIncompleteUnion() {
+        final SpatialUnionTraverser traverser = new SpatialUnionTraverser(ontology, graph, metrician);
+        final List<OWLNamedIndividual> equivalence = traverser.traverseUnion(Object.class, individual("B"), LocalDate.of(2012, 1, 1)).toList().blockingGet();
+        assertTrue(equivalence.isEmpty(), "A single component should not be equivalent to the merged object");
+        final List<OWLNamedIndividual> valid = traverser.traverseUnion(Object.class, individual("B"), LocalDate.of(2007, 1, 1)).toList().blockingGet();
+        assertEquals(Collections.singletonList(individual("B")), valid, "Should return self-set when valid");
+    }
+
+    @Test
+    void testEqualsRelations() {
+//        P is equal to Q, which is equal to R
+        graph.addEquals(individual("P"), existence(1990, 1995), individual("Q"), existence(1995, 2000));
+        graph.addEquals(individual("Q"), existence(1995, 2000), individual("R"), existence(2000, null));
+//        X is equal to A, which is then split
+        graph.addEquals(individual("X"), existence(1995, 2000), individual("A"), existence(2000, 2005));
+        final SpatialUnionTraverser traverser = new SpatialUnionTraverser(ontology, graph, metrician);
+        assertEquals(Collections.singletonList(individual("R")), traverser.traverseUnion(Object.class, individual("P"), LocalDate.of(2001, 1, 1)).toList().blockingGet(), "Should walk through equals relations");
+        assertEquals(Collections.singletonList(individual("P")), traverser.traverseUnion(Object.class, individual("R"), LocalDate.of(1991, 1, 1)).toList().blockingGet(), "Equals relations should be symmetric");
+        assertEquals(Set.of(individual("B"), individual("C")), new HashSet<>(traverser.traverseUnion(Object.class, individual("X"), LocalDate.of(2007, 1, 1)).toList().blockingGet()), "Should walk through equals relation, then union");
+    }
+
+    @Test
+    void testMatchesSPARQLTraversal() {
+        final TestDatabase database = new TestDatabase()
+//                P is equal to Q, which is equal to R
+                .object("P", 2000, 2005)
+                .object("Q", 2005, 2010)
+                .object("R", 2010, null)
+                .equal("P", "Q")
+                .equal("Q", "R")
+//                A splits into B and C, which are each equal to a later object
+                .object("A", 2000, 2005)
+                .object("B", 2005, 2010)
+                .object("C", 2005, 2010)
+                .object("B2", 2010, null)
+                .object("C2", 2010, null)
+                .union("A-split", "A", "B", "C")
+                .equal("B", "B2")
+                .equal("C", "C2")
+//                E and F merge into G
+                .object("E", 2005, 2010)
+                .object("F", 2005, 2010)
+                .object("G", 2010, null)
+                .union("G-merged", "G", "E", "F");
+        Mockito.when(ontology.executeSPARQLResults(Mockito.anyString())).thenAnswer(answer -> Flowable.fromIterable(database.query(answer.getArgument(0))));
+        Mockito.when(ontology.getAllDataPropertiesForIndividual(Mockito.any(OWLNamedIndividual.class))).thenAnswer(answer -> Flowable.fromIterable(database.getExistence(answer.getArgument(0))));
+
+        final SpatialUnionTraverser graphTraverser = new SpatialUnionTraverser(ontology, new SpatialEquivalenceGraph(ontology, metrician, true), metrician);
+        final SpatialUnionTraverser sparqlTraverser = new SpatialUnionTraverser(ontology, new SpatialEquivalenceGraph(ontology, metrician, false), metrician);
+        final Map<String, LocalDate> queries = new LinkedHashMap<>();
+        queries.put("P", LocalDate.of(2012, 1, 1));
+        queries.put("R", LocalDate.of(2001, 1, 1));
+        queries.put("A", LocalDate.of(2012, 1, 1));
+        queries.put("G", LocalDate.of(2007, 1, 1));
+        queries.put("B2", LocalDate.of(2001, 1, 1));
+        queries.put("B", LocalDate.of(2012, 1, 1));
+
+        final Map<String, Set<OWLNamedIndividual>> expected = new HashMap<>();
+        expected.put("P", Set.of(individual("R")));
+        expected.put("R", Set.of(individual("P")));
+        expected.put("A", Set.of(individual("B2"), individual("C2")));
+        expected.put("G", Set.of(individual("E"), individual("F")));
+        expected.put("B2", Collections.emptySet());
+        expected.put("B", Set.of(individual("B2")));
+
+        queries.forEach((subject, queryDate) -> {
+            final Set<OWLNamedIndividual> graphResult = new HashSet<>(graphTraverser.traverseUnion(Object.class, individual(subject), queryDate).toList().blockingGet());
+            final Set<OWLNamedIndividual> sparqlResult = new HashSet<>(sparqlTraverser.traverseUnion(Object.class, individual(subject), queryDate).toList().blockingGet());
+            assertAll(() -> assertEquals(sparqlResult, graphResult, String.format("Graph should match SPARQL traversal of %s at %s", subject, queryDate)),
+                    () -> assertEquals(expected.get(subject), graphResult, String.format("Should have correct equivalence of %s at %s", subject, queryDate)));
+        });
+        assertEquals(Set.of(individual("B"), individual("C")), new HashSet<>(graphTraverser.traverseUnion(Object.class, individual("A"), LocalDate.of(2007, 1, 1)).toList().blockingGet()), "Should split into components");
+        assertEquals(Set.of(individual("B"), individual("C")), new HashSet<>(sparqlTraverser.traverseUnion(Object.class, individual("A"), LocalDate.of(2007, 1, 1)).toList().blockingGet()), "Should split into components");
+    }
+
+    @Test
+    void testInvalidate() {
+        assertTrue(graph.isAvailable(null), "Should load graph");
+        Mockito.verify(ontology, Mockito.times(2)).executeSPARQLResults(Mockito.anyString());
+
+//        Objects which aren't in the graph can't change it
+        graph.invalidate(individual("missing"));
+        assertTrue(graph.isAvailable(null), "Should still be available");
+        assertTrue(graph.getObject(individual("A")).isPresent(), "Should not clear graph");
+        Mockito.verify(ontology, Mockito.times(2)).executeSPARQLResults(Mockito.anyString());
+
+//        Changing an object in the graph should clear it, and reload it when it's next used
+        graph.invalidate(individual("B"));
+        assertTrue(graph.getObject(individual("A")).isEmpty(), "Should clear graph");
+        assertTrue(graph.isAvailable(null), "Should reload graph");
+        Mockito.verify(ontology, Mockito.times(4)).executeSPARQLResults(Mockito.anyString());
+    }
+
+    @Test
+    void testDisabledGraph() {
+        final SpatialEquivalenceGraph disabled = new SpatialEquivalenceGraph(ontology, metrician, false);
+        disabled.addUnion(individual("A-split"), individual("A"), existence(2000, 2005), components("B", "C"));
+        assertAll(() -> assertFalse(disabled.isAvailable(null), "Should not be available"),
+                () -> assertTrue(disabled.getObject(individual("A")).isEmpty(), "Should not add unions"));
+
+//        If the graph fails to load, we should fall back to SPARQL
+        Mockito.when(ontology.executeSPARQLResults(Mockito.anyString())).thenReturn(Flowable.error(new IllegalStateException("Cannot load")));
+        final SpatialEquivalenceGraph failed = new SpatialEquivalenceGraph(ontology, metrician, true);
+        assertFalse(failed.isAvailable(null), "Should be disabled after failing to load");
+    }
+
+    private static OWLNamedIndividual individual(String name) {
+        return df.getOWLNamedIndividual(IRI.create(PREFIX, name));
+    }
+
+    private static TemporalObject existence(int from, @Nullable Integer to) {
+        if (to == null) {
+            return TemporalObjectBuilder.exists().from(LocalDate.of(from, 1, 1)).build();
+        }
+        return TemporalObjectBuilder.exists().from(LocalDate.of(from, 1, 1)).to(LocalDate.of(to, 1, 1)).build();
+    }
+
+    private static Map<OWLNamedIndividual, TemporalObject> components(String... names) {
+        final Map<OWLNamedIndividual, TemporalObject> components = new HashMap<>();
+        for (final String name : names) {
+            components.put(individual(name), existence(2005, 2010));
+        }
+        return components;
+    }
+
+    /**
+     * In-memory set of objects, unions and equals relations, which answers the same queries as the ontology would
+     */
+    private static final class TestDatabase {
+        private final Map<OWLNamedIndividual, Integer> starts = new HashMap<>();
+        private final Map<OWLNamedIndividual, Integer> ends = new HashMap<>();
+        private final Map<OWLNamedIndividual, Set<OWLNamedIndividual>> equalTo = new HashMap<>();
+        private final Map<OWLNamedIndividual, OWLNamedIndividual> wholes = new HashMap<>();
+        private final Map<OWLNamedIndividual, List<OWLNamedIndividual>> components = new HashMap<>();
+
+        TestDatabase object(String name, int from, @Nullable Integer to) {
+            this.starts.put(individual(name), from);
+            if (to != null) {
+                this.ends.put(individual(name), to);
+            }
+            return this;
+        }
+
+        TestDatabase equal(String subject, String object) {
+//            Equals is symmetric
+            this.equalTo.computeIfAbsent(individual(subject), key -> new HashSet<>()).add(individual(object));
+            this.equalTo.computeIfAbsent(individual(object), key -> new HashSet<>()).add(individual(subject));
+            return this;
+        }
+
+        TestDatabase union(String union, String whole, String... components) {
+            this.wholes.put(individual(union), individual(whole));
+            final List<OWLNamedIndividual> unionComponents = new ArrayList<>();
+            for (final String component : components) {
+                unionComponents.add(individual(component));
+            }
+            this.components.put(individual(union), unionComponents);
+            return this;
+        }
+
+        List<OWLDataPropertyAssertionAxiom> getExistence(OWLNamedIndividual individual) {
+            final List<OWLDataPropertyAssertionAxiom> axioms = new ArrayList<>();
+            axioms.add(df.getOWLDataPropertyAssertionAxiom(df.getOWLDataProperty(temporalExistsFromIRI), individual, literal(this.starts.get(individual))));
+            final @Nullable Integer end = this.ends.get(individual);
+            if (end != null) {
+                axioms.add(df.getOWLDataPropertyAssertionAxiom(df.getOWLDataProperty(temporalExistsToIRI), individual, literal(end)));
+            }
+            return axioms;
+        }
+
+        List<TrestleResult> query(String query) {
+            final List<TrestleResult> results = new ArrayList<>();
+            if (query.equals(UNION_GRAPH)) {
+                this.components.forEach((union, unionComponents) -> unionComponents.forEach(component -> {
+                    final TrestleResult result = new TrestleResult();
+                    result.addValue("union", union);
+                    addObject(result, "whole", "wStart", "wEnd", this.wholes.get(union));
+                    addObject(result, "object", "start", "end", component);
+                    results.add(result);
+                }));
+            } else if (query.equals(EQUALS_GRAPH)) {
+                this.equalTo.forEach((subject, objects) -> objects.forEach(object -> {
+                    final TrestleResult result = new TrestleResult();
+                    addObject(result, "subject", "sStart", "sEnd", subject);
+                    addObject(result, "object", "start", "end", object);
+                    results.add(result);
+                }));
+            } else if (query.startsWith(COMPONENTS)) {
+                final OWLNamedIndividual union = df.getOWLNamedIndividual(IRI.create(query.substring(COMPONENTS.length())));
+                this.components.getOrDefault(union, Collections.emptyList()).forEach(component -> results.add(objectResult(component, trestleObjectIRI)));
+            } else if (query.startsWith(EQUIVALENCE)) {
+                results.addAll(getEquivalence(df.getOWLNamedIndividual(IRI.create(query.substring(EQUIVALENCE.length())))));
+            }
+            return results;
+        }
+
+        /**
+         * Mirrors the three parts of {@link QueryBuilder#buildSTEquivalenceQuery(OWLNamedIndividual)}
+         */
+        private List<TrestleResult> getEquivalence(OWLNamedIndividual input) {
+            final List<TrestleResult> results = new ArrayList<>();
+//            Directly equal objects, unions are equal to their whole
+            this.equalTo.getOrDefault(input, Collections.emptySet()).forEach(object -> results.add(objectResult(object, trestleObjectIRI)));
+            final @Nullable OWLNamedIndividual unionWhole = this.wholes.get(input);
+            if (unionWhole != null) {
+                results.add(objectResult(unionWhole, trestleObjectIRI));
+            }
+            this.wholes.forEach((union, whole) -> {
+//                Components of the unions the input is equal to
+                if (whole.equals(input)) {
+                    this.components.get(union).forEach(component -> results.add(objectResult(component, trestleObjectIRI)));
+                }
+//                Unions the input is a component of, with the temporals of the next object
+                if (this.components.get(union).contains(input)) {
+                    final int wholeStart = this.starts.get(whole);
+                    final @Nullable Integer wholeEnd = this.ends.get(whole);
+                    final @Nullable Integer inputEnd = this.ends.get(input);
+                    if (wholeStart > this.starts.get(input)) {
+                        results.add(unionResult(union, wholeStart));
+                    }
+                    if (wholeEnd != null && inputEnd != null && wholeEnd < inputEnd) {
+                        results.add(unionResult(union, wholeEnd));
+                    }
+                }
+            });
+            return results;
+        }
+
+        private TrestleResult objectResult(OWLNamedIndividual object, IRI type) {
+            final TrestleResult result = new TrestleResult();
+            addObject(result, "object", "start", "end", object);
+            result.addValue("type", df.getOWLNamedIndividual(type));
+            return result;
+        }
+
+        private static TrestleResult unionResult(OWLNamedIndividual union, int year) {
+            final TrestleResult result = new TrestleResult();
+            result.addValue("object", union);
+            result.addValue("start", literal(year));
+            result.addValue("end", literal(year));
+            result.addValue("type", df.getOWLNamedIndividual(spatialUnionIRI));
+            return result;
+        }
+
+        private void addObject(TrestleResult result, String name, String start, String end, OWLNamedIndividual object) {
+            result.addValue(name, object);
+            result.addValue(start, literal(this.starts.get(object)));
+            final @Nullable Integer objectEnd = this.ends.get(object);
+            if (objectEnd != null) {
+                result.addValue(end, literal(objectEnd));
+            }
+        }
+
+        private static OWLLiteral literal(int year) {
+            return df.getOWLLiteral(LocalDate.of(year, 1, 1).atStartOfDay().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), df.getOWLDatatype(dateTimeDatatypeIRI));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.nickrobison.trestle.reasoner.threading;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link TrestleThreadPools} pool settings and rejection policies
+ */
+@SuppressWarnings({"pmd:DoNotUseThreads", "FutureReturnValueIgnored"})
+public class TrestleThreadPoolsTest {
+
+    private static final String DEFAULTS = "default-pool {size = 1, mode = fixed, queueSize = 1, rejectionPolicy = caller-runs, keepAlive = 1s, shared = false}\n" +
+            "shared-pool {size = 2}\n";
+
+    @Test
+    public void testSharedPool() throws InterruptedException {
+        final TrestleThreadPools pools = new TrestleThreadPools(buildConfig("shared-a {shared = true}\nshared-b {shared = true}"));
+        final TrestleThreadPools.Pool a = pools.getPool("shared-a");
+        assertAll(() -> assertSame(a, pools.getPool("shared-b"), "Should share the same pool"),
+                () -> assertEquals(TrestleThreadPools.SHARED_POOL, a.name, "Should be backed by the shared pool"),
+                () -> assertNotSame(a, pools.getPool("separate"), "Should have a separate pool"));
+        assertTrue(pools.shutdown(1, TimeUnit.SECONDS), "Should terminate all pools");
+    }
+
+    @Test
+    public void testAbortPolicy() throws InterruptedException {
+        final TrestleThreadPools pools = new TrestleThreadPools(buildConfig("abort-pool {rejectionPolicy = abort}"));
+        final ExecutorService executor = pools.getPool("abort-pool").executor;
+        final CountDownLatch latch = new CountDownLatch(1);
+//        One running, one queued, the third should be rejected
+        executor.submit(() -> awaitLatch(latch));
+        executor.submit(() -> awaitLatch(latch));
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> awaitLatch(latch)));
+        latch.countDown();
+        assertTrue(pools.shutdown(1, TimeUnit.SECONDS), "Should terminate all pools");
+    }
+
+    @Test
+    public void testCallerRunsPolicy() throws InterruptedException, ExecutionException {
+        final TrestleThreadPools pools = new TrestleThreadPools(buildConfig(""));
+        final ExecutorService executor = pools.getPool("caller-pool").executor;
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.submit(() -> awaitLatch(latch));
+        executor.submit(() -> awaitLatch(latch));
+        final Thread caller = Thread.currentThread();
+        final Future<Boolean> ranOnCaller = executor.submit(() -> Thread.currentThread() == caller);
+        assertTrue(ranOnCaller.get(), "Should run on the submitting thread");
+        latch.countDown();
+        assertTrue(pools.shutdown(1, TimeUnit.SECONDS), "Should terminate all pools");
+    }
+
+    @Test
+    public void testBlockPolicy() throws InterruptedException, ExecutionException, TimeoutException {
+        final TrestleThreadPools pools = new TrestleThreadPools(buildConfig("block-pool {rejectionPolicy = block}"));
+        final ExecutorService executor = pools.getPool("block-pool").executor;
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.submit(() -> awaitLatch(latch));
+        executor.submit(() -> awaitLatch(latch));
+//        Submit from another thread, which should block until the queue drains
+        final CompletableFuture<Future<?>> blocked = CompletableFuture.supplyAsync(() -> executor.submit(() -> awaitLatch(latch)));
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS), "Should block while the queue is full");
+        latch.countDown();
+        blocked.get(1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        assertTrue(pools.shutdown(1, TimeUnit.SECONDS), "Should terminate all pools");
+    }
+
+    @Test
+    public void testWorkStealingPool() throws InterruptedException {
+        final TrestleThreadPools pools = new TrestleThreadPools(buildConfig("stealing-pool {mode = work-stealing}"));
+        assertTrue(pools.getPool("stealing-pool").executor instanceof ForkJoinPool, "Should be a work-stealing pool");
+        assertThrows(IllegalArgumentException.class, () -> new TrestleThreadPools(buildConfig("bad-pool {mode = missing}")).getPool("bad-pool"));
+        assertTrue(pools.shutdown(1, TimeUnit.SECONDS), "Should terminate all pools");
+    }
+
+    @Test
+    public void testForkJoinPool() throws InterruptedException {
+        final TrestleThreadPools pools = new TrestleThreadPools(buildConfig("stealing-pool {mode = work-stealing}"));
+        final ForkJoinPool forkJoinPool = pools.getForkJoinPool("stealing-pool");
+        assertAll(() -> assertSame(forkJoinPool, pools.getForkJoinPool("stealing-pool"), "Should re-use the same pool"),
+                () -> assertThrows(IllegalStateException.class, () -> pools.getForkJoinPool("fixed-pool"), "Fixed pool should not be returned"));
+//        The pool is owned by the thread pools, and shutdown along with them
+        assertTrue(pools.shutdown(1, TimeUnit.SECONDS), "Should terminate all pools");
+        assertTrue(forkJoinPool.isTerminated(), "Should terminate fork-join pool");
+    }
+
+    private static Config buildConfig(String overrides) {
+        return ConfigFactory.parseString(DEFAULTS + overrides);
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.nickrobison.trestle.server.config;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration for the streaming result endpoints
+ */
+public class StreamingConfig {
+
+    @Min(1)
+    private int maxConcurrentStreams = 16;
+    @Min(1)
+    private int prefetch = 128;
+    @Min(1)
+    private int flushInterval = 64;
+    @Min(0)
+    private int retryAfter = 5;
+
+    /**
+     * Maximum number of result streams which can be open at the same time.
+     * Requests beyond this are rejected with a 503
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * Number of results requested from the reasoner ahead of the client
+     */
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(int prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Number of results written between each flush of the response
+     */
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Seconds a rejected client should wait before retrying
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
@@ -28,6 +28,10 @@ public class TrestleServerConfiguration extends Configuration {
     private TrestleReasonerConfiguration reasoner;
     @JsonProperty
     private SwaggerBundleConfiguration swaggerBundleConfiguration;
+    @Valid
+    @NotNull
+    @JsonProperty
+    private StreamingConfig streaming = new StreamingConfig();
 
     @JsonProperty("database")
     public DataSourceFactory getDataSourceFactory() {
@@ -48,4 +52,9 @@ public class TrestleServerConfiguration extends Configuration {
     public SwaggerBundleConfiguration getSwaggerBundleConfiguration() {
         return this.swaggerBundleConfiguration;
     }
+
+    @JsonProperty("streaming")
+    public StreamingConfig getStreamingConfig() {
+        return this.streaming;
+    }
 }
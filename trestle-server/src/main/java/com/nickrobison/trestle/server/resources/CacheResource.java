@@ -54,7 +54,7 @@ public class CacheResource {
     @GET
     @Path("/rebuild/{index}")
     @ApiOperation(value = "Rebuild index",
-            notes = "Rebuild the specified index. Which will requiring locking the indexes for all users")
+            notes = "Rebuild the specified index. If online rebuilds are enabled, readers are not blocked, otherwise this requires locking the indexes for all users")
     @ApiResponses({
             @ApiResponse(code = 500, message = "Unable to rebuild the index"),
             @ApiResponse(code = 404, message = "Not a registered index")
@@ -16,8 +16,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.File;
-import java.io.IOException;
 
 import static javax.ws.rs.core.Response.ok;
 
@@ -36,7 +36,7 @@ public class ExportResource {
 
     @POST
     @ApiOperation(value = "Export data",
-            notes = "Exports the given set of objects into the specified output format. Returns a file descriptor, which can then be downloaded",
+            notes = "Exports the given set of objects into the specified output format. The export is streamed to the client as the objects are read",
             response = File.class)
     public Response exportData(@Valid ExportRequest request) {
         final ITrestleExporter.DataType dataType = ITrestleExporter.DataType.valueOf(request.getType());
@@ -62,11 +62,8 @@ public class ExportResource {
         } catch (UnregisteredClassException e) {
             return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
         }
-        try {
-            final File dataSetObjects = this.reasoner.exportDataSetObjects(datasetClass, request.getIndividuals(), dataType).blockingGet();
-            return ok(dataSetObjects).type(responseType).build();
-        } catch (IOException e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).build();
-        }
+//        Write the objects directly to the response, rather than building the entire file on disk first
+        final StreamingOutput output = outputStream -> this.reasoner.exportDataSetObjects(datasetClass, request.getIndividuals(), null, null, dataType, outputStream).blockingAwait();
+        return ok(output).type(responseType).build();
     }
 }
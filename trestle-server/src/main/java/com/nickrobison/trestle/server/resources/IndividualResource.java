@@ -9,13 +9,14 @@ import com.nickrobison.trestle.reasoner.TrestleReasoner;
 import com.nickrobison.trestle.reasoner.exceptions.UnregisteredClassException;
 import com.nickrobison.trestle.server.modules.ManagedReasoner;
 import com.nickrobison.trestle.server.resources.requests.IntersectRequest;
+import com.nickrobison.trestle.server.streaming.FlowableStreamer;
 import com.nickrobison.trestle.types.TrestleIndividual;
 import com.nickrobison.trestle.types.temporal.TemporalObject;
-import io.reactivex.rxjava3.annotations.NonNull;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.glassfish.jersey.server.CloseableService;
 import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,12 +25,12 @@ import org.wololo.jts2geojson.GeoJSONReader;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import static javax.ws.rs.core.Response.ok;
 
@@ -50,10 +51,12 @@ public class IndividualResource {
   private final DateTimeFormatter localDateTimeToJavascriptFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
   private final TrestleReasoner reasoner;
+  private final FlowableStreamer streamer;
 
   @Inject
-  public IndividualResource(ManagedReasoner managedReasoner) {
+  public IndividualResource(ManagedReasoner managedReasoner, FlowableStreamer streamer) {
     this.reasoner = managedReasoner.getReasoner();
+    this.streamer = streamer;
   }
 
   @GET
@@ -76,17 +79,20 @@ public class IndividualResource {
 
   @POST
   @Path("/intersect-individuals")
+  @Produces({MediaType.APPLICATION_JSON, FlowableStreamer.NDJSON})
   @ApiOperation(value = "Retrieve all individuals, from a specified dataset, valid at the specified time point, that intersects the provided GeoJSON object",
     notes = "Performs a spatial-temporal intersection for all matching objects for the given dataset. " +
       "Allows the user to specify both valid temporal and database temporal intersection points. " +
-      "This method returns a TrestleIndividual, which represents the entirety of all individual properties",
+      "This method returns a TrestleIndividual, which represents the entirety of all individual properties. " +
+      "Results are streamed as they're read, requesting application/x-ndjson returns newline delimited JSON",
     response = TrestleIndividual.class,
     responseContainer = "List")
   @ApiResponses({
     @ApiResponse(code = 440, message = "Object class is not registered with the database"),
-    @ApiResponse(code = 500, message = "Problem while performing spatial intersection")
+    @ApiResponse(code = 500, message = "Problem while performing spatial intersection"),
+    @ApiResponse(code = 503, message = "Too many concurrent result streams")
   })
-  public Response intersectIndividuals(@NotNull IntersectRequest request) {
+  public Response intersectIndividuals(@NotNull IntersectRequest request, @Context HttpHeaders headers, @Context CloseableService closeables) {
     final Class<?> datasetClass;
     try {
       datasetClass = this.getClassFromRequest(request);
@@ -102,16 +108,13 @@ public class IndividualResource {
       return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(e).build();
     }
 
-    final @NonNull List<TrestleIndividual> trestleIndividuals = this.reasoner.spatialIntersectIndividuals(datasetClass,
-      geom.toString(),
+    final String wkt = geom.toString();
+    return this.streamer.streamArray(headers, closeables, () -> this.reasoner.spatialIntersectIndividuals(datasetClass,
+      wkt,
       request.getBuffer(),
       request.getValidAt(),
-      request.getDatabaseAt()).toList().blockingGet();
-    final List<ObjectNode> builtIndividuals = trestleIndividuals
-      .stream()
-      .map(this::buildIndividualFromJSON)
-      .collect(Collectors.toList());
-    return Response.ok(builtIndividuals).build();
+      request.getDatabaseAt())
+      .map(this::buildIndividualFromJSON));
   }
 
   private Class<?> getClassFromRequest(IntersectRequest request) throws UnregisteredClassException {
@@ -1,15 +1,16 @@
 package com.nickrobison.trestle.server.resources;
 
-import com.nickrobison.trestle.ontology.types.TrestleResult;
 import com.nickrobison.trestle.ontology.types.TrestleResultSet;
 import com.nickrobison.trestle.reasoner.TrestleReasoner;
 import com.nickrobison.trestle.server.annotations.PrivilegesAllowed;
 import com.nickrobison.trestle.server.auth.Privilege;
 import com.nickrobison.trestle.server.modules.ManagedReasoner;
+import com.nickrobison.trestle.server.streaming.FlowableStreamer;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.glassfish.jersey.server.CloseableService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,14 +20,12 @@ import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
-import static javax.ws.rs.core.Response.ok;
-
 /**
  * Created by nrobison on 2/27/17.
  */
@@ -38,11 +37,13 @@ public class QueryResource {
 
     private static final Logger logger = LoggerFactory.getLogger(QueryResource.class);
     private final TrestleReasoner reasoner;
+    private final FlowableStreamer streamer;
 
 
     @Inject
-    public QueryResource(ManagedReasoner managedReasoner) {
+    public QueryResource(ManagedReasoner managedReasoner, FlowableStreamer streamer) {
         this.reasoner = managedReasoner.getReasoner();
+        this.streamer = streamer;
     }
 
     @GET
@@ -55,20 +56,17 @@ public class QueryResource {
     }
 
     @POST
+    @Produces({MediaType.APPLICATION_JSON, FlowableStreamer.NDJSON})
     @ApiOperation(value = "Execute SPARQL Query",
-            notes = "Execute SPARQL query against database",
+            notes = "Execute SPARQL query against database. " +
+                    "Results are streamed as they're read, requesting application/x-ndjson returns newline delimited results, without the result set wrapper",
             response = TrestleResultSet.class)
     @ApiResponses({
-            @ApiResponse(code = 400, message = "Error while executing query")
+            @ApiResponse(code = 400, message = "Error while executing query"),
+            @ApiResponse(code = 503, message = "Too many concurrent result streams")
     })
-    public Response executeQuery(@NotEmpty String queryString) {
+    public Response executeQuery(@NotEmpty String queryString, @Context HttpHeaders headers, @Context CloseableService closeables) {
         logger.debug("Executing query {}", queryString);
-        try {
-            final List<TrestleResult> results = this.reasoner.executeSPARQLSelect(queryString).toList().blockingGet();
-
-            return ok(new TrestleResultSet(results.size(), Collections.emptyList(), results)).build();
-        } catch (Exception e) {
-            return Response.status(Response.Status.BAD_REQUEST).entity(e).build();
-        }
+        return this.streamer.streamResultSet(headers, closeables, () -> this.reasoner.executeSPARQLSelect(queryString));
     }
 }
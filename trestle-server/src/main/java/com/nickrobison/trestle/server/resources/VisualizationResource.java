@@ -14,6 +14,7 @@ import com.nickrobison.trestle.server.modules.ManagedReasoner;
 import com.nickrobison.trestle.server.resources.requests.ComparisonRequest;
 import com.nickrobison.trestle.server.resources.requests.DatasetValueRequest;
 import com.nickrobison.trestle.server.resources.requests.IntersectRequest;
+import com.nickrobison.trestle.server.streaming.FlowableStreamer;
 import com.nickrobison.trestle.types.relations.ObjectRelation;
 import io.dropwizard.jersey.params.NonEmptyStringParam;
 import io.reactivex.rxjava3.annotations.NonNull;
@@ -21,6 +22,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.glassfish.jersey.server.CloseableService;
 import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,8 @@ import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.time.Duration;
@@ -61,10 +65,12 @@ public class VisualizationResource {
     public static final String VALID_ID = "validID";
     private final DateTimeFormatter localDateTimeToJavascriptFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
     private final TrestleReasoner reasoner;
+    private final FlowableStreamer streamer;
 
     @Inject
-    public VisualizationResource(ManagedReasoner managedReasoner) {
+    public VisualizationResource(ManagedReasoner managedReasoner, FlowableStreamer streamer) {
         this.reasoner = managedReasoner.getReasoner();
+        this.streamer = streamer;
         mapper.registerModule(new JtsModule());
     }
 
@@ -99,17 +105,20 @@ public class VisualizationResource {
 
     @POST
     @Path("/intersect")
+    @Produces({MediaType.APPLICATION_JSON, FlowableStreamer.NDJSON})
     @ApiOperation(value = "Retrieve all objects, from a specified dataset, valid at the specified time point, that intersects the provided GeoJSON object",
             notes = "Performs a spatial-temporal intersection for all matching objects for the given dataset. " +
                     "Allows the user to specify both valid temporal and database temporal intersection points. " +
-                    "This method returns a specific object state, not the entirety of the object properties",
+                    "This method returns a specific object state, not the entirety of the object properties. " +
+                    "Results are streamed as they're read, requesting application/x-ndjson returns newline delimited JSON",
             response = Object.class,
             responseContainer = "List")
     @ApiResponses({
             @ApiResponse(code = 440, message = "Object class is not registered with the database"),
-            @ApiResponse(code = 500, message = "Problem while performing spatial intersection")
+            @ApiResponse(code = 500, message = "Problem while performing spatial intersection"),
+            @ApiResponse(code = 503, message = "Too many concurrent result streams")
     })
-    public Response intersect(@NotNull IntersectRequest request) {
+    public Response intersect(@NotNull IntersectRequest request, @Context HttpHeaders headers, @Context CloseableService closeables) {
 
         final Class<?> datasetClass;
         try {
@@ -126,12 +135,11 @@ public class VisualizationResource {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(e).build();
         }
 
-        final @NonNull List<?> intersectedObjects = this.reasoner.spatialIntersect(datasetClass,
-                read.buffer(request.getBuffer()).toString(),
+        final String wkt = read.buffer(request.getBuffer()).toString();
+        return this.streamer.streamArray(headers, closeables, () -> this.reasoner.spatialIntersect(datasetClass,
+                wkt,
                 request.getBuffer(),
-                request.getValidAt(), null).toList().blockingGet();
-
-        return ok(intersectedObjects).build();
+                request.getValidAt(), null));
     }
 
     @POST
@@ -0,0 +1,200 @@
+package com.nickrobison.trestle.server.streaming;
+
+import com.codahale.metrics.Gauge;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nickrobison.trestle.server.config.StreamingConfig;
+import com.nickrobison.trestle.server.config.TrestleServerConfiguration;
+import io.dropwizard.setup.Environment;
+import io.reactivex.rxjava3.core.Flowable;
+import org.glassfish.jersey.server.CloseableService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes the results of a {@link Flowable} directly to the HTTP response, rather than collecting them into a {@link java.util.List} first.
+ * <p>
+ * Results are pulled from the {@link Flowable} (at most {@link StreamingConfig#getPrefetch()} ahead of the client),
+ * so a slow client blocks the response thread, which stops requesting more results from the reasoner.
+ * If the client disconnects, the {@link Flowable} is cancelled.
+ * <p>
+ * By default, results are written as a JSON array, so existing clients see the same response body.
+ * Clients which accept {@link #NDJSON} receive newline delimited JSON instead.
+ * <p>
+ * The number of concurrently open streams is bounded, requests above the limit are rejected with a 503 and a Retry-After header.
+ * Each stream holds its permit until Jersey closes the request, so the permit is returned even if the response is never written.
+ * The {@link Flowable} supplier is not called until the response is actually being written,
+ * so rejected (or failed) requests never open a reasoner transaction.
+ */
+@Singleton
+public class FlowableStreamer {
+    private static final Logger logger = LoggerFactory.getLogger(FlowableStreamer.class);
+    public static final String NDJSON = "application/x-ndjson";
+    public static final MediaType NDJSON_TYPE = MediaType.valueOf(NDJSON);
+
+    private final ObjectWriter writer;
+    private final StreamingConfig config;
+    private final Semaphore permits;
+
+    @Inject
+    public FlowableStreamer(TrestleServerConfiguration configuration, Environment environment) {
+        this(environment.getObjectMapper(), configuration.getStreamingConfig());
+        environment.metrics().register("trestle-streams-active", (Gauge<Integer>) this::getActiveStreams);
+    }
+
+    FlowableStreamer(ObjectMapper mapper, StreamingConfig config) {
+//        We handle flushing ourselves
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxConcurrentStreams());
+    }
+
+    /**
+     * Stream the results as a JSON array (or NDJSON, if requested by the client).
+     * Errors which occur before the first result is written are returned as a 500.
+     *
+     * @param headers    - {@link HttpHeaders} of the request, used to select the response format
+     * @param closeables - {@link CloseableService} of the request, which releases the stream when the request completes
+     * @param source     - {@link Supplier} of the {@link Flowable} to stream, called when the response is written
+     * @param <T>        - type of result
+     * @return - {@link Response}
+     */
+    public <T> Response streamArray(HttpHeaders headers, CloseableService closeables, Supplier<Flowable<T>> source) {
+        return stream(headers, closeables, source, false, Response.Status.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Stream the results in the same shape as a {@link com.nickrobison.trestle.ontology.types.TrestleResultSet}
+     * (or as NDJSON, if requested by the client).
+     * The row count is written after the results, once it's known.
+     * Errors which occur before the first result is written are returned as a 400.
+     *
+     * @param headers    - {@link HttpHeaders} of the request, used to select the response format
+     * @param closeables - {@link CloseableService} of the request, which releases the stream when the request completes
+     * @param source     - {@link Supplier} of the {@link Flowable} to stream, called when the response is written
+     * @param <T>        - type of result
+     * @return - {@link Response}
+     */
+    public <T> Response streamResultSet(HttpHeaders headers, CloseableService closeables, Supplier<Flowable<T>> source) {
+        return stream(headers, closeables, source, true, Response.Status.BAD_REQUEST);
+    }
+
+    /**
+     * Number of streams currently being written
+     *
+     * @return - active streams
+     */
+    public int getActiveStreams() {
+        return this.config.getMaxConcurrentStreams() - this.permits.availablePermits();
+    }
+
+    private <T> Response stream(HttpHeaders headers, CloseableService closeables, Supplier<Flowable<T>> source, boolean resultSet, Response.Status errorStatus) {
+        final boolean ndjson = headers.getAcceptableMediaTypes()
+                .stream()
+                .anyMatch(type -> NDJSON_TYPE.getType().equalsIgnoreCase(type.getType()) && NDJSON_TYPE.getSubtype().equalsIgnoreCase(type.getSubtype()));
+
+        if (!this.permits.tryAcquire()) {
+            logger.warn("Rejecting request, {} streams are already open", this.config.getMaxConcurrentStreams());
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, this.config.getRetryAfter())
+                    .entity("Too many concurrent result streams")
+                    .type(MediaType.TEXT_PLAIN_TYPE)
+                    .build();
+        }
+
+//        Jersey closes the permit once the request completes, whether or not the entity was written
+        closeables.add(new StreamPermit());
+        final StreamingOutput output = outputStream -> this.write(outputStream, source, ndjson, resultSet, errorStatus);
+        return Response.ok(output, ndjson ? NDJSON_TYPE : MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
+    private <T> void write(OutputStream outputStream, Supplier<Flowable<T>> source, boolean ndjson, boolean resultSet, Response.Status errorStatus) throws IOException {
+//        Closing the stream cancels the Flowable, which happens if the client disconnects part way through
+//        Deferring the supplier means that errors thrown while building the Flowable are handled the same as errors it emits
+        try (Stream<T> results = Flowable.defer(source::get).blockingStream(this.config.getPrefetch());
+             JsonGenerator generator = this.writer.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            final Iterator<T> iterator = results.iterator();
+
+//            Wait for the first result before writing anything, so early failures can still set the response status
+            try {
+                iterator.hasNext();
+            } catch (RuntimeException e) {
+                logger.error("Unable to stream results", e);
+                throw new WebApplicationException(e, Response.status(errorStatus)
+                        .entity(e.getMessage())
+                        .type(MediaType.TEXT_PLAIN_TYPE)
+                        .build());
+            }
+
+            if (ndjson) {
+//                Results are separated by newlines, rather than the default root separator
+                generator.setRootValueSeparator(null);
+                writeResults(generator, iterator, true);
+            } else if (resultSet) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("bindingNames");
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("results");
+                final long rows = writeResults(generator, iterator, false);
+                generator.writeEndArray();
+                generator.writeNumberField("rows", rows);
+                generator.writeEndObject();
+            } else {
+                generator.writeStartArray();
+                writeResults(generator, iterator, false);
+                generator.writeEndArray();
+            }
+            generator.flush();
+        }
+    }
+
+    private <T> long writeResults(JsonGenerator generator, Iterator<T> iterator, boolean ndjson) throws IOException {
+        long count = 0;
+        while (iterator.hasNext()) {
+            this.writer.writeValue(generator, iterator.next());
+            if (ndjson) {
+                generator.writeRaw('\n');
+            }
+            count++;
+//            Get the first result to the client as soon as possible, then flush periodically
+            if (count == 1 || count % this.config.getFlushInterval() == 0) {
+                generator.flush();
+            }
+        }
+        logger.debug("Streamed {} results", count);
+        return count;
+    }
+
+    /**
+     * Stream permit, which is only released once, no matter how many times it's closed
+     */
+    private final class StreamPermit implements Closeable {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        @Override
+        public void close() {
+            if (this.released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
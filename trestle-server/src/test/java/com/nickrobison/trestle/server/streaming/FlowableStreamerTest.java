@@ -0,0 +1,179 @@
+package com.nickrobison.trestle.server.streaming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nickrobison.trestle.server.config.StreamingConfig;
+import io.reactivex.rxjava3.core.Flowable;
+import org.glassfish.jersey.server.CloseableService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.fields.uninitialized"})
+public class FlowableStreamerTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private FlowableStreamer streamer;
+    private HttpHeaders jsonHeaders;
+    private HttpHeaders ndjsonHeaders;
+    private List<Closeable> requestCloseables;
+    private CloseableService closeables;
+
+    @BeforeEach
+    public void setup() {
+        final StreamingConfig config = new StreamingConfig();
+        config.setMaxConcurrentStreams(1);
+        config.setPrefetch(2);
+        config.setFlushInterval(2);
+        streamer = new FlowableStreamer(mapper, config);
+
+        jsonHeaders = Mockito.mock(HttpHeaders.class);
+        Mockito.when(jsonHeaders.getAcceptableMediaTypes()).thenReturn(Collections.singletonList(MediaType.APPLICATION_JSON_TYPE));
+        ndjsonHeaders = Mockito.mock(HttpHeaders.class);
+        Mockito.when(ndjsonHeaders.getAcceptableMediaTypes()).thenReturn(Collections.singletonList(FlowableStreamer.NDJSON_TYPE));
+        requestCloseables = new ArrayList<>();
+        closeables = requestCloseables::add;
+    }
+
+    @Test
+    public void testArray() throws IOException {
+        final Response response = streamer.streamArray(jsonHeaders, closeables, () -> Flowable.range(0, 5));
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getMediaType(), "Should default to JSON");
+        final JsonNode node = mapper.readTree(write(response));
+        assertAll(() -> assertTrue(node.isArray(), "Should be an array"),
+                () -> assertEquals(5, node.size(), "Should have all results"),
+                () -> assertEquals(4, node.get(4).asInt(), "Should preserve ordering"));
+    }
+
+    @Test
+    public void testResultSet() throws IOException {
+        final Response response = streamer.streamResultSet(jsonHeaders, closeables, () -> Flowable.just("a", "b", "c"));
+        final JsonNode node = mapper.readTree(write(response));
+        assertAll(() -> assertEquals(3, node.get("rows").asInt(), "Should count rows"),
+                () -> assertEquals(0, node.get("bindingNames").size(), "Should have empty bindings"),
+                () -> assertEquals("c", node.get("results").get(2).asText(), "Should have results"));
+    }
+
+    @Test
+    public void testNDJSON() {
+        final Response response = streamer.streamResultSet(ndjsonHeaders, closeables, () -> Flowable.just("a", "b"));
+        assertAll(() -> assertEquals(FlowableStreamer.NDJSON_TYPE, response.getMediaType(), "Should use NDJSON"),
+                () -> assertEquals("\"a\"\n\"b\"\n", write(response), "Should write newline delimited results"));
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        final AtomicBoolean subscribed = new AtomicBoolean(false);
+        final Response first = streamer.streamArray(jsonHeaders, closeables, () -> Flowable.just(1).doOnSubscribe(sub -> subscribed.set(true)));
+        assertFalse(subscribed.get(), "Should not subscribe until written");
+
+        final Response rejected = streamer.streamArray(jsonHeaders, closeables, () -> Flowable.just(2));
+        assertAll(() -> assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), rejected.getStatus(), "Should reject stream"),
+                () -> assertNotNull(rejected.getHeaderString(HttpHeaders.RETRY_AFTER), "Should have retry header"));
+
+        write(first);
+        assertAll(() -> assertTrue(subscribed.get(), "Should subscribe when written"),
+                () -> assertEquals(1, streamer.getActiveStreams(), "Should hold stream until the request completes"));
+        completeRequest();
+        assertAll(() -> assertEquals(0, streamer.getActiveStreams(), "Should release stream"),
+                () -> assertEquals(Response.Status.OK.getStatusCode(), streamer.streamArray(jsonHeaders, closeables, () -> Flowable.just(3)).getStatus(), "Should accept new stream"));
+    }
+
+    @Test
+    public void testEarlyError() {
+        final Response response = streamer.streamResultSet(jsonHeaders, closeables, () -> Flowable.error(new IllegalStateException("Bad query")));
+        final StreamingOutput output = (StreamingOutput) response.getEntity();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final WebApplicationException exception = assertThrows(WebApplicationException.class, () -> output.write(stream));
+        completeRequest();
+        assertAll(() -> assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), exception.getResponse().getStatus(), "Should be a bad request"),
+                () -> assertEquals(0, stream.size(), "Should not write anything"),
+                () -> assertEquals(0, streamer.getActiveStreams(), "Should release stream"));
+    }
+
+    @Test
+    public void testSupplierError() {
+//        Malformed queries are rejected while building the Flowable, rather than by it
+        final Response response = streamer.streamResultSet(jsonHeaders, closeables, () -> {
+            throw new IllegalArgumentException("Malformed query");
+        });
+        final StreamingOutput output = (StreamingOutput) response.getEntity();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final WebApplicationException exception = assertThrows(WebApplicationException.class, () -> output.write(stream));
+        completeRequest();
+        assertAll(() -> assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), exception.getResponse().getStatus(), "Should be a bad request"),
+                () -> assertEquals("Malformed query", exception.getResponse().getEntity(), "Should return error message"),
+                () -> assertEquals(0, stream.size(), "Should not write anything"),
+                () -> assertEquals(0, streamer.getActiveStreams(), "Should release stream"));
+    }
+
+    @Test
+    public void testUnwrittenResponse() {
+        final AtomicBoolean subscribed = new AtomicBoolean(false);
+        streamer.streamArray(jsonHeaders, closeables, () -> Flowable.just(1).doOnSubscribe(sub -> subscribed.set(true)));
+        assertEquals(1, streamer.getActiveStreams(), "Should have active stream");
+//        If the response is never written (e.g. it's replaced by an exception mapper), the request still releases the stream
+        completeRequest();
+        completeRequest();
+        assertAll(() -> assertFalse(subscribed.get(), "Should never subscribe"),
+                () -> assertEquals(0, streamer.getActiveStreams(), "Should only release stream once"));
+    }
+
+    @Test
+    public void testClientDisconnect() {
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final Response response = streamer.streamArray(jsonHeaders, closeables, () -> Flowable.range(0, 1000).doOnCancel(() -> cancelled.set(true)));
+        final StreamingOutput output = (StreamingOutput) response.getEntity();
+        final OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        assertThrows(IOException.class, () -> output.write(closed));
+        completeRequest();
+        assertAll(() -> assertTrue(cancelled.get(), "Should cancel upstream"),
+                () -> assertEquals(0, streamer.getActiveStreams(), "Should release stream"));
+    }
+
+    /**
+     * Close everything registered with the request, the same as Jersey does once the request completes
+     */
+    private void completeRequest() {
+        for (Closeable closeable : requestCloseables) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static String write(Response response) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try {
+            ((StreamingOutput) response.getEntity()).write(stream);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return stream.toString(StandardCharsets.UTF_8);
+    }
+}